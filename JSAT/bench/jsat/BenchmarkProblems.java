@@ -0,0 +1,97 @@
+package jsat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+
+/**
+ * Generates the synthetic inputs shared by the benchmark suites. All methods
+ * are deterministic for a given source of randomness, so that runs of
+ * different versions of the library see the same data.
+ *
+ * @author Edward Raff
+ */
+public class BenchmarkProblems
+{
+    /**
+     * Creates a list of dense vectors with values drawn uniformly from [0, 1)
+     * @param n the number of vectors
+     * @param d the dimension of the vectors
+     * @param rand the source of randomness
+     * @return a list of random dense vectors
+     */
+    public static List<Vec> randomDense(int n, int d, Random rand)
+    {
+        List<Vec> vecs = new ArrayList<Vec>(n);
+        for(int i = 0; i < n; i++)
+            vecs.add(DenseVector.random(d, rand));
+        return vecs;
+    }
+
+    /**
+     * Creates a sparse vector with the given number of non zero values at
+     * random positions
+     * @param d the dimension of the vector
+     * @param nnz the number of non zero values
+     * @param rand the source of randomness
+     * @return a random sparse vector
+     */
+    public static SparseVector randomSparse(int d, int nnz, Random rand)
+    {
+        SparseVector sv = new SparseVector(d, nnz);
+        for(int i = 0; i < nnz; i++)
+            sv.set(rand.nextInt(d), rand.nextDouble());
+        return sv;
+    }
+
+    /**
+     * Creates a list of sparse vectors
+     * @param n the number of vectors
+     * @param d the dimension of the vectors
+     * @param nnz the number of non zero values per vector
+     * @param rand the source of randomness
+     * @return a list of random sparse vectors
+     */
+    public static List<Vec> randomSparse(int n, int d, int nnz, Random rand)
+    {
+        List<Vec> vecs = new ArrayList<Vec>(n);
+        for(int i = 0; i < n; i++)
+            vecs.add(randomSparse(d, nnz, rand));
+        return vecs;
+    }
+
+    /**
+     * Creates a classification problem with {@code K} Gaussian blobs in
+     * {@code d} dimensions, one blob per class.
+     * @param n the total number of data points
+     * @param d the number of numeric features
+     * @param K the number of classes
+     * @param rand the source of randomness
+     * @return a classification data set
+     */
+    public static ClassificationDataSet gaussianBlobs(int n, int d, int K, Random rand)
+    {
+        Vec[] means = new Vec[K];
+        for(int k = 0; k < K; k++)
+        {
+            means[k] = DenseVector.random(d, rand);
+            means[k].mutableMultiply(10);
+        }
+
+        ClassificationDataSet data = new ClassificationDataSet(d, new CategoricalData[0], new CategoricalData(K));
+        for(int i = 0; i < n; i++)
+        {
+            int k = i % K;
+            Vec x = new DenseVector(d);
+            for(int j = 0; j < d; j++)
+                x.set(j, means[k].get(j) + rand.nextGaussian());
+            data.addDataPoint(x, new int[0], k);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,63 @@
+package jsat.classifiers.svm;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.distributions.kernels.RBFKernel;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the training time of {@link PlatSMO} on a two class problem under
+ * each kernel caching mode. The row cache is given a memory budget of about a
+ * tenth of the full kernel matrix.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KernelCacheBenchmark
+{
+    @Param({"5000"})
+    public int n;
+
+    @Param({"NONE", "ROWS", "ROWS_FLOAT", "FULL"})
+    public String cache;
+
+    private ClassificationDataSet data;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        ClassificationDataSet blobs = BenchmarkProblems.gaussianBlobs(n, 10, 4, new Random(42));
+        //merge the blobs into two overlapping classes
+        data = new ClassificationDataSet(10, blobs.getCategories(), new CategoricalData(2));
+        for(int i = 0; i < blobs.getSampleSize(); i++)
+        {
+            DataPoint dp = blobs.getDataPoint(i);
+            data.addDataPoint(dp.getNumericalValues(), dp.getCategoricalValues(), blobs.getDataPointCategory(i) % 2);
+        }
+    }
+
+    @Benchmark
+    public PlatSMO train()
+    {
+        PlatSMO smo = new PlatSMO(new RBFKernel(2.0));
+        if(cache.startsWith("ROWS"))
+        {
+            smo.setCacheMode(SupportVectorLearner.CacheMode.ROWS);
+            smo.setCacheFloats(cache.endsWith("FLOAT"));
+            smo.setCacheBytes(n*(long)n*8/10);
+        }
+        else
+            smo.setCacheMode(SupportVectorLearner.CacheMode.valueOf(cache));
+        smo.trainC(data);
+        return smo;
+    }
+}
@@ -0,0 +1,72 @@
+package jsat.classifiers.svm;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.distributions.kernels.RBFKernel;
+import jsat.utils.SystemInfo;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the training time of {@link PlatSMO} with and without shrinking,
+ * serially and with a thread pool.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class PlatSMOBenchmark
+{
+    @Param({"10000"})
+    public int n;
+
+    @Param({"true", "false"})
+    public boolean shrinking;
+
+    @Param({"true", "false"})
+    public boolean parallel;
+
+    private ClassificationDataSet data;
+    private ExecutorService threadPool;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        ClassificationDataSet blobs = BenchmarkProblems.gaussianBlobs(n, 10, 4, new Random(42));
+        //merge the blobs into two overlapping classes
+        data = new ClassificationDataSet(10, blobs.getCategories(), new CategoricalData(2));
+        for(int i = 0; i < blobs.getSampleSize(); i++)
+        {
+            DataPoint dp = blobs.getDataPoint(i);
+            data.addDataPoint(dp.getNumericalValues(), dp.getCategoricalValues(), blobs.getDataPointCategory(i) % 2);
+        }
+        threadPool = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        threadPool.shutdownNow();
+    }
+
+    @Benchmark
+    public PlatSMO train()
+    {
+        PlatSMO smo = new PlatSMO(new RBFKernel(2.0));
+        smo.setShrinking(shrinking);
+        if(parallel)
+            smo.trainC(data, threadPool);
+        else
+            smo.trainC(data);
+        return smo;
+    }
+}
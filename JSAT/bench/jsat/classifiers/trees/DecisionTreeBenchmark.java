@@ -0,0 +1,72 @@
+package jsat.classifiers.trees;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.utils.SystemInfo;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the training time of an unpruned {@link DecisionTree} on numeric
+ * features, using the exact values or histograms of quantized features.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DecisionTreeBenchmark
+{
+    @Param({"10000", "100000"})
+    public int n;
+
+    @Param({"10", "50"})
+    public int dim;
+
+    /**
+     * Zero for exact split finding, otherwise the number of histogram bins
+     */
+    @Param({"0", "256"})
+    public int bins;
+
+    /**
+     * Whether or not to build the tree with a thread pool
+     */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private ClassificationDataSet data;
+    private ExecutorService threadPool;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        data = BenchmarkProblems.gaussianBlobs(n, dim, 5, new Random(42));
+        threadPool = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        threadPool.shutdownNow();
+    }
+
+    @Benchmark
+    public DecisionTree train()
+    {
+        DecisionTree tree = new DecisionTree();
+        tree.setPruningMethod(TreePruner.PruningMethod.NONE);
+        tree.setHistogramBins(bins);
+        if(parallel)
+            tree.trainC(data, threadPool);
+        else
+            tree.trainC(data);
+        return tree;
+    }
+}
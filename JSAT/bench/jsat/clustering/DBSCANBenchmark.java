@@ -0,0 +1,101 @@
+package jsat.clustering;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jsat.SimpleDataSet;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+import jsat.linear.VecPaired;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.linear.vectorcollection.KDTree;
+import jsat.utils.SystemInfo;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures sequential DBSCAN against the parallel union-find version on 2D
+ * data shaped like geospatial points: dense "cities" of varied size scattered
+ * over a sparse background. Run with <tt>-p n=10000000</tt> and a large heap 
+ * for the 10 million point case. 
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class DBSCANBenchmark
+{
+    @Param({"1000000"})
+    public int n;
+
+    @Param({"10"})
+    public int minPts;
+
+    /**
+     * The search radius, in degrees
+     */
+    @Param({"0.01"})
+    public double eps;
+
+    private SimpleDataSet data;
+    private ExecutorService threadPool;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        int cities = 2000;
+        double[][] centers = new double[cities][];
+        double[] spread = new double[cities];
+        for(int c = 0; c < cities; c++)
+        {
+            centers[c] = new double[]{rand.nextDouble()*360-180, rand.nextDouble()*140-70};
+            spread[c] = 0.01+rand.nextDouble()*rand.nextDouble()*0.5;
+        }
+        CategoricalData[] noCats = new CategoricalData[0];
+        data = new SimpleDataSet(noCats, 2);
+        for(int i = 0; i < n; i++)
+        {
+            Vec x;
+            if(i % 10 == 0)//background
+                x = DenseVector.toDenseVec(rand.nextDouble()*360-180, rand.nextDouble()*140-70);
+            else
+            {
+                //cities of heavy tailed popularity
+                int c = (int) (cities*Math.pow(rand.nextDouble(), 3));
+                x = DenseVector.toDenseVec(centers[c][0]+rand.nextGaussian()*spread[c], centers[c][1]+rand.nextGaussian()*spread[c]);
+            }
+            data.add(new DataPoint(x, new int[0], noCats));
+        }
+        threadPool = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        threadPool.shutdownNow();
+    }
+
+    private DBSCAN newDBSCAN()
+    {
+        return new DBSCAN(new EuclideanDistance(), new KDTree.KDTreeFactory<VecPaired<Vec, Integer>>());
+    }
+
+    @Benchmark
+    public int[] cluster()
+    {
+        return newDBSCAN().cluster(data, eps, minPts, (int[]) null);
+    }
+
+    @Benchmark
+    public int[] clusterParallel()
+    {
+        return newDBSCAN().cluster(data, eps, minPts, threadPool, null);
+    }
+}
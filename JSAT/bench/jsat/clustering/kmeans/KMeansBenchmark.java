@@ -0,0 +1,76 @@
+package jsat.clustering.kmeans;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import jsat.DataSet;
+import jsat.clustering.SeedSelectionMethods.SeedSelection;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.utils.SystemInfo;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the accelerated exact k-means implementations, single and multi
+ * threaded. A fixed seed is used so every invocation does the same work.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KMeansBenchmark
+{
+    @Param({"ElkanKMeans", "HamerlyKMeans"})
+    public String algorithm;
+
+    @Param({"50000"})
+    public int n;
+
+    @Param({"2", "20"})
+    public int dim;
+
+    @Param({"10", "100"})
+    public int clusters;
+
+    private DataSet data;
+    private ExecutorService threadPool;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        data = BenchmarkProblems.gaussianBlobs(n, dim, clusters, new Random(42));
+        threadPool = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        threadPool.shutdownNow();
+    }
+
+    private KMeans newKMeans()
+    {
+        if(algorithm.equals("ElkanKMeans"))
+            return new ElkanKMeans(new EuclideanDistance(), new Random(7), SeedSelection.KPP);
+        else if(algorithm.equals("HamerlyKMeans"))
+            return new HamerlyKMeans(new EuclideanDistance(), SeedSelection.KPP, new Random(7));
+        throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+    }
+
+    @Benchmark
+    public int[] cluster()
+    {
+        return newKMeans().cluster(data, clusters, (int[]) null);
+    }
+
+    @Benchmark
+    public int[] clusterParallel()
+    {
+        return newKMeans().cluster(data, clusters, threadPool, (int[]) null);
+    }
+}
@@ -0,0 +1,121 @@
+package jsat.io;
+
+import java.io.*;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import jsat.DataSet;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.linear.Vec;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the binary format of {@link BinaryDataLoader} against
+ * {@link LIBSVMLoader} for writing and reading back a whole sparse data set,
+ * and for opening a file and reading a few random rows from it.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BinaryDataLoaderBenchmark
+{
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"100000"})
+    public int dim;
+
+    @Param({"20"})
+    public int nnz;
+
+    @Param({"1000"})
+    public int randomReads;
+
+    private ClassificationDataSet data;
+    private File libsvmFile;
+    private File binaryFile;
+    private int[] readOrder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        Random rand = new Random(42);
+        List<Vec> vecs = BenchmarkProblems.randomSparse(rows, dim, nnz, rand);
+        data = new ClassificationDataSet(dim, new CategoricalData[0], new CategoricalData(2));
+        for(Vec v : vecs)
+            data.addDataPoint(v, new int[0], rand.nextInt(2));
+
+        libsvmFile = File.createTempFile("jsat_bench", ".libsvm");
+        libsvmFile.deleteOnExit();
+        writeLIBSVM(libsvmFile);
+        binaryFile = File.createTempFile("jsat_bench", ".bin");
+        binaryFile.deleteOnExit();
+        BinaryDataLoader.write(data, binaryFile);
+
+        readOrder = new int[randomReads];
+        for(int i = 0; i < readOrder.length; i++)
+            readOrder[i] = rand.nextInt(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        libsvmFile.delete();
+        binaryFile.delete();
+    }
+
+    private void writeLIBSVM(File file) throws IOException
+    {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        LIBSVMLoader.write(data, os);
+        os.close();
+    }
+
+    @Benchmark
+    public ClassificationDataSet libsvmRoundTrip() throws IOException
+    {
+        writeLIBSVM(libsvmFile);
+        return LIBSVMLoader.loadC(libsvmFile);
+    }
+
+    @Benchmark
+    public double binaryRoundTrip() throws IOException
+    {
+        BinaryDataLoader.write(data, binaryFile);
+        MappedDataSet mapped = BinaryDataLoader.map(binaryFile);
+        //touch every row, so the whole file is read like LIBSVMLoader must
+        double sum = 0;
+        for(int i = 0; i < mapped.getSampleSize(); i++)
+            sum += mapped.getDataPoint(i).getNumericalValues().sum();
+        return sum;
+    }
+
+    @Benchmark
+    public double libsvmOpenRandomAccess() throws IOException
+    {
+        ClassificationDataSet loaded = LIBSVMLoader.loadC(libsvmFile);
+        return sumRows(loaded, readOrder);
+    }
+
+    @Benchmark
+    public double binaryOpenRandomAccess() throws IOException
+    {
+        MappedDataSet mapped = BinaryDataLoader.map(binaryFile);
+        return sumRows(mapped, readOrder);
+    }
+
+    private static double sumRows(DataSet d, int[] order)
+    {
+        double sum = 0;
+        for(int i : order)
+            sum += d.getDataPoint(i).getNumericalValues().sum();
+        return sum;
+    }
+}
@@ -0,0 +1,92 @@
+package jsat.io;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.utils.SystemInfo;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link LIBSVMLoader#loadC(java.io.File) } and the parallel byte
+ * range loader on a generated sparse file that is written once per trial to a
+ * temporary location.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LIBSVMLoaderBenchmark
+{
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"100000"})
+    public int dim;
+
+    @Param({"20"})
+    public int nnz;
+
+    private File file;
+    private ExecutorService threadPool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("jsat_bench", ".libsvm");
+        file.deleteOnExit();
+        Random rand = new Random(42);
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        for(int i = 0; i < rows; i++)
+        {
+            //same layout as LIBSVMLoader.write, every value followed by a space
+            writer.print(rand.nextInt(2) + " ");
+            //LIBSVM requires increasing indices, so step forward by a random gap
+            int index = 0;
+            for(int j = 0; j < nnz; j++)
+            {
+                index += 1 + rand.nextInt(Math.max(1, 2*dim/nnz - 1));
+                if(index > dim)
+                    break;
+                writer.print(index + ":" + rand.nextGaussian() + " ");
+            }
+            writer.print("\n");
+        }
+        writer.close();
+        threadPool = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        file.delete();
+        threadPool.shutdownNow();
+    }
+
+    @Benchmark
+    public ClassificationDataSet loadC() throws IOException
+    {
+        return LIBSVMLoader.loadC(file);
+    }
+
+    @Benchmark
+    public ClassificationDataSet loadCSerialBytes() throws IOException
+    {
+        return LIBSVMLoader.loadC(file, (ExecutorService) null);
+    }
+
+    @Benchmark
+    public ClassificationDataSet loadCParallel() throws IOException
+    {
+        return LIBSVMLoader.loadC(file, threadPool);
+    }
+}
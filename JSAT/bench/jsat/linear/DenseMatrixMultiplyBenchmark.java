@@ -0,0 +1,131 @@
+package jsat.linear;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jsat.utils.SystemInfo;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the matrix-matrix products of {@link DenseMatrix} against the
+ * packed GEMM kernel of {@link FlatDenseMatrix}.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DenseMatrixMultiplyBenchmark
+{
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    private DenseMatrix A, B, C;
+    private FlatDenseMatrix fA, fB, fC;
+    private ExecutorService threadPool;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        A = Matrix.random(size, size, rand);
+        B = Matrix.random(size, size, rand);
+        C = new DenseMatrix(size, size);
+        fA = new FlatDenseMatrix(A);
+        fB = new FlatDenseMatrix(B);
+        fC = new FlatDenseMatrix(size, size);
+        threadPool = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    /**
+     * The products accumulate into their target, so the targets are cleared
+     * once per iteration. Doing it per invocation would add the cost of the
+     * setup call to the timing of the small sizes.
+     */
+    @Setup(Level.Iteration)
+    public void zeroTargets()
+    {
+        C.zeroOut();
+        fC.zeroOut();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        threadPool.shutdownNow();
+    }
+
+    @Benchmark
+    public Matrix denseMultiply()
+    {
+        A.multiply(B, C);
+        return C;
+    }
+
+    @Benchmark
+    public Matrix flatMultiply()
+    {
+        fA.multiply(fB, fC);
+        return fC;
+    }
+
+    @Benchmark
+    public Matrix denseMultiplyParallel()
+    {
+        A.multiply(B, C, threadPool);
+        return C;
+    }
+
+    @Benchmark
+    public Matrix flatMultiplyParallel()
+    {
+        fA.multiply(fB, fC, threadPool);
+        return fC;
+    }
+
+    @Benchmark
+    public Matrix denseMultiplyTranspose()
+    {
+        A.multiplyTranspose(B, C);
+        return C;
+    }
+
+    @Benchmark
+    public Matrix flatMultiplyTranspose()
+    {
+        fA.multiplyTranspose(fB, fC);
+        return fC;
+    }
+
+    @Benchmark
+    public Matrix denseTransposeMultiply()
+    {
+        A.transposeMultiply(B, C);
+        return C;
+    }
+
+    @Benchmark
+    public Matrix flatTransposeMultiply()
+    {
+        fA.transposeMultiply(fB, fC);
+        return fC;
+    }
+
+    @Benchmark
+    public Matrix denseTransposeMultiplyParallel()
+    {
+        A.transposeMultiply(B, C, threadPool);
+        return C;
+    }
+
+    @Benchmark
+    public Matrix flatTransposeMultiplyParallel()
+    {
+        fA.transposeMultiply(fB, fC, threadPool);
+        return fC;
+    }
+}
@@ -0,0 +1,99 @@
+package jsat.linear;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link Vec#dot(jsat.linear.Vec) } and
+ * {@link Vec#mutableAdd(double, jsat.linear.Vec) } for every mix of dense and
+ * sparse operands.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VecBenchmark
+{
+    @Param({"100", "10000", "1000000"})
+    public int dim;
+
+    /**
+     * Fraction of the dimensions that are non zero in the sparse operands
+     */
+    @Param({"0.01", "0.1"})
+    public double density;
+
+    private Vec denseA, denseB;
+    private SparseVector sparseA, sparseB;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        int nnz = Math.max(1, (int) (dim*density));
+        denseA = DenseVector.random(dim, rand);
+        denseB = DenseVector.random(dim, rand);
+        sparseA = BenchmarkProblems.randomSparse(dim, nnz, rand);
+        sparseB = BenchmarkProblems.randomSparse(dim, nnz, rand);
+    }
+
+    @Benchmark
+    public double dotDenseDense()
+    {
+        return denseA.dot(denseB);
+    }
+
+    @Benchmark
+    public double dotDenseSparse()
+    {
+        return denseA.dot(sparseB);
+    }
+
+    @Benchmark
+    public double dotSparseDense()
+    {
+        return sparseA.dot(denseB);
+    }
+
+    @Benchmark
+    public double dotSparseSparse()
+    {
+        return sparseA.dot(sparseB);
+    }
+
+    /*
+     * The mutableAdd benchmarks add and then subtract the same vector, so that
+     * the target does not drift (or fill in, for sparse targets) across
+     * invocations.
+     */
+
+    @Benchmark
+    public Vec mutableAddDenseDense()
+    {
+        denseA.mutableAdd(0.5, denseB);
+        denseA.mutableAdd(-0.5, denseB);
+        return denseA;
+    }
+
+    @Benchmark
+    public Vec mutableAddDenseSparse()
+    {
+        denseA.mutableAdd(0.5, sparseB);
+        denseA.mutableAdd(-0.5, sparseB);
+        return denseA;
+    }
+
+    @Benchmark
+    public Vec mutableAddSparseSparse()
+    {
+        sparseA.mutableAdd(0.5, sparseB);
+        sparseA.mutableAdd(-0.5, sparseB);
+        return sparseA;
+    }
+}
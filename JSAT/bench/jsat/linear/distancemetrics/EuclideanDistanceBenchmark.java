@@ -0,0 +1,91 @@
+package jsat.linear.distancemetrics;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import jsat.linear.Vec;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures a query against every point of a collection with
+ * {@link EuclideanDistance}, both directly and through the acceleration cache.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EuclideanDistanceBenchmark
+{
+    @Param({"10000"})
+    public int n;
+
+    @Param({"10", "100"})
+    public int dim;
+
+    @Param({"true", "false"})
+    public boolean sparse;
+
+    private EuclideanDistance dm;
+    private List<Vec> vecs;
+    private List<Double> cache;
+    private Vec query;
+    private List<Double> queryInfo;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        dm = new EuclideanDistance();
+        if(sparse)
+        {
+            int nnz = Math.max(1, dim/10);
+            vecs = BenchmarkProblems.randomSparse(n, dim, nnz, rand);
+            query = BenchmarkProblems.randomSparse(dim, nnz, rand);
+        }
+        else
+        {
+            vecs = BenchmarkProblems.randomDense(n, dim, rand);
+            query = BenchmarkProblems.randomDense(1, dim, rand).get(0);
+        }
+        cache = dm.getAccelerationCache(vecs);
+        queryInfo = dm.getQueryInfo(query);
+    }
+
+    @Benchmark
+    public double dist()
+    {
+        double sum = 0;
+        for(int i = 0; i < vecs.size(); i++)
+            sum += dm.dist(query, vecs.get(i));
+        return sum;
+    }
+
+    @Benchmark
+    public double distCached()
+    {
+        double sum = 0;
+        for(int i = 0; i < vecs.size(); i++)
+            sum += dm.dist(i, query, queryInfo, vecs, cache);
+        return sum;
+    }
+
+    @Benchmark
+    public double distCachedPairs()
+    {
+        double sum = 0;
+        for(int i = 1; i < vecs.size(); i++)
+            sum += dm.dist(i-1, i, vecs, cache);
+        return sum;
+    }
+
+    @Benchmark
+    public List<Double> buildCache()
+    {
+        return dm.getAccelerationCache(vecs);
+    }
+}
@@ -0,0 +1,97 @@
+package jsat.linear.vectorcollection;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import jsat.linear.Vec;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.linear.vectorcollection.lsh.RandomProjectionLSH;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the recall and query throughput of the approximate
+ * {@link HNSW} graph at several search widths, against
+ * {@link RandomProjectionLSH} and the exact trees. The score is in queries
+ * per second. The recall@k of each configuration against a brute force
+ * search is printed once per trial, so the two together give the recall vs
+ * QPS curve. <br>
+ * The points are normalized so that the Euclidean neighbors are also the
+ * cosine neighbors that {@link RandomProjectionLSH} approximates.
+ * {@link jsat.linear.vectorcollection.lsh.E2LSH E2LSH} is not included as it
+ * only supports range queries.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ApproximateSearchBenchmark.QUERIES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ApproximateSearchBenchmark
+{
+    @Param({"HNSW-ef10", "HNSW-ef50", "HNSW-ef200", "RandomProjectionLSH", "VPTree", "KDTree"})
+    public String collection;
+
+    @Param({"100000"})
+    public int n;
+
+    @Param({"10", "100"})
+    public int dim;
+
+    @Param({"10"})
+    public int k;
+
+    static final int QUERIES = 200;
+
+    private List<Vec> queries;
+    private IndexedVectorCollection<Vec> vc;
+    private NeighborResults results;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        List<Vec> points = BenchmarkProblems.randomDense(n, dim, rand);
+        queries = BenchmarkProblems.randomDense(QUERIES, dim, rand);
+        for(Vec v : points)
+            v.normalize();
+        for(Vec v : queries)
+            v.normalize();
+        EuclideanDistance dm = new EuclideanDistance();
+        if(collection.startsWith("HNSW-ef"))
+        {
+            int efSearch = Integer.parseInt(collection.substring("HNSW-ef".length()));
+            vc = new HNSW<Vec>(points, dm, HNSW.DEFAULT_M, HNSW.DEFAULT_EF_CONSTRUCTION, efSearch, new Random(42), null);
+        }
+        else if(collection.equals("RandomProjectionLSH"))
+            vc = new RandomProjectionLSH<Vec>(points, 16, true);
+        else if(collection.equals("VPTree"))
+            vc = new VPTree<Vec>(points, dm);
+        else if(collection.equals("KDTree"))
+            vc = new KDTree<Vec>(points, dm);
+        else
+            throw new IllegalArgumentException("Unknown collection " + collection);
+        results = new NeighborResults();
+
+        NeighborResults truth = new VectorArray<Vec>(dm, points).searchKNN(queries, k, null, null);
+        NeighborResults found = vc.searchKNN(queries, k, null, null);
+        int hits = 0;
+        for(int q = 0; q < QUERIES; q++)
+        {
+            double kthDist = truth.getDistance(q, k-1);
+            for(int j = 0; j < found.getNeighborCount(q); j++)
+                if(dm.dist(queries.get(q), points.get(found.getNeighbor(q, j))) <= kthDist+1e-10)
+                    hits++;
+        }
+        System.out.println("\n" + collection + " dim=" + dim + " recall@" + k + " = " + hits/(double)(k*QUERIES));
+    }
+
+    @Benchmark
+    public NeighborResults searchKNN()
+    {
+        return vc.searchKNN(queries, k, results, null);
+    }
+}
@@ -0,0 +1,115 @@
+package jsat.linear.vectorcollection;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import jsat.BenchmarkProblems;
+import jsat.linear.Vec;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.utils.SystemInfo;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures k-NN search over the exact vector collections. Each invocation runs
+ * a fixed batch of queries so that the per query cost dominates the
+ * measurement overhead. The batch is run both one query at a time and through
+ * the batch search, serially and in parallel. <br>
+ * The flat trees are listed next to the object based trees they replace. Run
+ * with {@code -prof gc} to compare the allocation per query, and the heap
+ * footprint of each collection is reported by the {@code construction}
+ * benchmark's allocation rate.
+ *
+ * @author Edward Raff
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VectorCollectionSearchBenchmark
+{
+    @Param({"KDTree", "FlatKDTree", "VPTree", "FlatVPTree", "RandomBallCover"})
+    public String collection;
+
+    @Param({"100000"})
+    public int n;
+
+    @Param({"2", "10", "50"})
+    public int dim;
+
+    @Param({"10"})
+    public int k;
+
+    private static final int QUERIES = 1000;
+
+    private List<Vec> points;
+    private List<Vec> queries;
+    private IndexedVectorCollection<Vec> vc;
+    private NeighborResults results;
+    private ExecutorService threadPool;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(42);
+        points = BenchmarkProblems.randomDense(n, dim, rand);
+        queries = BenchmarkProblems.randomDense(QUERIES, dim, rand);
+        vc = build();
+        results = new NeighborResults();
+        threadPool = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        threadPool.shutdownNow();
+    }
+
+    private IndexedVectorCollection<Vec> build()
+    {
+        EuclideanDistance dm = new EuclideanDistance();
+        if(collection.equals("KDTree"))
+            return new KDTree<Vec>(points, dm);
+        else if(collection.equals("FlatKDTree"))
+            return new FlatKDTree<Vec>(points, dm);
+        else if(collection.equals("VPTree"))
+            return new VPTree<Vec>(points, dm);
+        else if(collection.equals("FlatVPTree"))
+            return new FlatVPTree<Vec>(points, dm);
+        else if(collection.equals("RandomBallCover"))
+            return new RandomBallCover<Vec>(points, dm);
+        throw new IllegalArgumentException("Unknown collection " + collection);
+    }
+
+    @Benchmark
+    public int searchKNN()
+    {
+        int found = 0;
+        for(Vec q : queries)
+            found += vc.search(q, k).size();
+        return found;
+    }
+
+    @Benchmark
+    public NeighborResults searchKNNBatch()
+    {
+        return vc.searchKNN(queries, k, results, null);
+    }
+
+    @Benchmark
+    public NeighborResults searchKNNBatchParallel()
+    {
+        return vc.searchKNN(queries, k, results, threadPool);
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public VectorCollection<Vec> construction()
+    {
+        return build();
+    }
+}
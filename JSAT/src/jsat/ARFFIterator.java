@@ -0,0 +1,287 @@
+package jsat;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.classifiers.DataPointPair;
+import jsat.io.DataPointIterator;
+import jsat.linear.DenseVector;
+
+/**
+ * Streams the data points of an ARFF file, see {@link DataPointIterator}. The
+ * header of the file is read when the iterator is created, and the data
+ * section is streamed. As with {@link ARFFLoader}, data points with missing
+ * values are skipped.
+ *
+ * @param <P> the type of the target, an {@link Integer} class index for
+ * classification or a {@link Double} target value for regression
+ * @author Edward Raff
+ */
+public class ARFFIterator<P> extends DataPointIterator<P>
+{
+    private final File file;
+    /**
+     * The index of the target among the categorical attributes for
+     * classification, or among the numeric attributes for regression
+     */
+    private final int target;
+    private final boolean classification;
+    private final BufferedReader reader;
+
+    /**
+     * Whether or not each attribute, in file order, is numeric
+     */
+    private final List<Boolean> isReal = new ArrayList<Boolean>();
+    /**
+     * The option name to value map of each attribute, {@code null} for
+     * numeric attributes
+     */
+    private final List<Map<String, Integer>> catVals = new ArrayList<Map<String, Integer>>();
+    private final List<String> numericNames = new ArrayList<String>();
+    private CategoricalData[] allCategories;
+    private CategoricalData[] categories;
+    private CategoricalData predicting;
+    private int numReal = 0;
+
+    private ARFFIterator(File file, int target, boolean classification) throws IOException
+    {
+        this.file = file;
+        this.target = target;
+        this.classification = classification;
+        this.reader = new BufferedReader(new FileReader(file), 1 << 16);
+        try
+        {
+            readHeader();
+        }
+        catch(IOException ex)
+        {
+            reader.close();
+            throw ex;
+        }
+        catch(RuntimeException ex)
+        {
+            reader.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates a new iterator over an ARFF file for a classification problem.
+     *
+     * @param file the file to read
+     * @param predicting the categorical attribute to use as the target class,
+     * counting only the categorical attributes
+     * @return an iterator over the data points and their class index
+     * @throws IOException if an error occurred reading the header of the file
+     */
+    public static ARFFIterator<Integer> classification(File file, int predicting) throws IOException
+    {
+        return new ARFFIterator<Integer>(file, predicting, true);
+    }
+
+    /**
+     * Creates a new iterator over an ARFF file for a regression problem.
+     *
+     * @param file the file to read
+     * @param predicting the numeric attribute to use as the target value,
+     * counting only the numeric attributes
+     * @return an iterator over the data points and their target value
+     * @throws IOException if an error occurred reading the header of the file
+     */
+    public static ARFFIterator<Double> regression(File file, int predicting) throws IOException
+    {
+        return new ARFFIterator<Double>(file, predicting, false);
+    }
+
+    private void readHeader() throws IOException
+    {
+        List<String> variableNames = new ArrayList<String>();
+        String line;
+        while((line = reader.readLine()) != null)
+        {
+            if(line.startsWith("%") || line.trim().isEmpty())
+                continue;//Its a comment, skip
+            line = line.trim();
+            if(!line.startsWith("@"))
+                continue;
+            line = line.substring(1).toLowerCase();
+            if(line.startsWith("data"))
+            {
+                setUpCategories(variableNames);
+                return;
+            }
+            else if(!line.startsWith("attribute"))
+                continue;
+            line = line.substring("attribute".length()).trim();
+            line = line.replace("\t", " ");
+            String variableName;
+            if(line.startsWith("'"))
+            {
+                Matcher m = Pattern.compile("'.+?'").matcher(line);
+                m.find();
+                variableName = ARFFLoader.nameTrim(m.group());
+                line = line.replaceFirst("'.+?'", "placeHolder");
+            }
+            else
+                variableName = ARFFLoader.nameTrim(line.trim().replaceAll("\\s+.*", ""));
+            variableNames.add(variableName);
+            String type = line.split("\\s+", 2)[1].trim();
+
+            if(type.equals("real") || type.equals("numeric") || type.startsWith("integer"))
+            {
+                numReal++;
+                isReal.add(true);
+                catVals.add(null);
+            }
+            else//Not correct, but we arent supporting anything other than real and categorical right now
+            {
+                isReal.add(false);
+                String cats = type.replace("{", "").replace("}", "").trim();
+                if(cats.endsWith(","))
+                    cats = cats.substring(0, cats.length()-1);
+                String[] catValsRaw = cats.split(",");
+                Map<String, Integer> tempMap = new HashMap<String, Integer>();
+                for(int i = 0; i < catValsRaw.length; i++)
+                    tempMap.put(ARFFLoader.nameTrim(catValsRaw[i]), i);
+                catVals.add(tempMap);
+            }
+        }
+        throw new IOException("ARFF file has no @data section");
+    }
+
+    private void setUpCategories(List<String> variableNames)
+    {
+        allCategories = new CategoricalData[isReal.size()-numReal];
+        int k = 0;
+        for(int i = 0; i < catVals.size(); i++)
+        {
+            if(catVals.get(i) == null)
+            {
+                numericNames.add(variableNames.get(i));
+                continue;
+            }
+            allCategories[k] = new CategoricalData(catVals.get(i).size());
+            allCategories[k].setCategoryName(variableNames.get(i));
+            for(Map.Entry<String, Integer> entry : catVals.get(i).entrySet())
+                allCategories[k].setOptionName(entry.getKey(), entry.getValue());
+            k++;
+        }
+
+        if(classification)
+        {
+            if(target < 0 || target >= allCategories.length)
+                throw new IllegalArgumentException("There is no categorical attribute " + target + " to predict");
+            predicting = allCategories[target];
+            categories = new CategoricalData[allCategories.length-1];
+            for(int i = 0; i < categories.length; i++)
+                categories[i] = allCategories[i >= target ? i+1 : i];
+        }
+        else
+        {
+            if(target < 0 || target >= numReal)
+                throw new IllegalArgumentException("There is no numeric attribute " + target + " to predict");
+            categories = allCategories;
+            numericNames.remove(target);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected DataPointPair<P> readNext() throws IOException
+    {
+        String line;
+        while((line = reader.readLine()) != null)
+        {
+            if(line.startsWith("%"))
+                continue;
+            line = line.trim();
+            if(line.isEmpty() || line.contains("?"))//We dont handle missing data
+                continue;
+
+            double weight = 1.0;
+            String[] tmp = line.split(",");
+            if(tmp.length != isReal.size())
+            {
+                String s = tmp[Math.min(isReal.size(), tmp.length-1)];
+                if(tmp.length == isReal.size()+1 && s.matches("\\{\\d+(\\.\\d+)?\\}"))//{#} means the # is the weight
+                    weight = Double.parseDouble(s.substring(1, s.length()-1));
+                else
+                    throw new IOException("Column had " + tmp.length + " values instead of " + isReal.size());
+            }
+
+            DenseVector vec = new DenseVector(classification ? numReal : numReal-1);
+            int[] cats = new int[categories.length];
+            double targetValue = 0;
+            int numPos = 0, catPos = 0;
+            for(int i = 0; i < isReal.size(); i++)
+            {
+                if(isReal.get(i))
+                {
+                    double val = Double.parseDouble(tmp[i].trim());
+                    if(!classification && numPos == target)
+                        targetValue = val;
+                    else
+                        vec.set(classification || numPos < target ? numPos : numPos-1, val);
+                    numPos++;
+                }
+                else//Categorical
+                {
+                    int val = catVals.get(i).get(ARFFLoader.nameTrim(tmp[i]).toLowerCase());
+                    if(classification && catPos == target)
+                        targetValue = val;
+                    else
+                        cats[classification && catPos > target ? catPos-1 : catPos] = val;
+                    catPos++;
+                }
+            }
+
+            DataPoint dp = new DataPoint(vec, cats, categories, weight);
+            if(classification)
+                return new DataPointPair<P>(dp, (P) Integer.valueOf((int) targetValue));
+            return new DataPointPair<P>(dp, (P) Double.valueOf(targetValue));
+        }
+        return null;
+    }
+
+    @Override
+    protected void closeSource() throws IOException
+    {
+        reader.close();
+    }
+
+    @Override
+    public ARFFIterator<P> reopen() throws IOException
+    {
+        return new ARFFIterator<P>(file, target, classification);
+    }
+
+    @Override
+    public int getNumNumericalVars()
+    {
+        return classification ? numReal : numReal-1;
+    }
+
+    /**
+     * Returns the names of the numeric features, in order
+     * @return the names of the numeric features
+     */
+    public List<String> getNumericNames()
+    {
+        return Collections.unmodifiableList(numericNames);
+    }
+
+    @Override
+    public CategoricalData[] getCategories()
+    {
+        return categories;
+    }
+
+    @Override
+    public CategoricalData getPredicting()
+    {
+        return predicting;
+    }
+}
@@ -292,7 +292,7 @@ public class ARFFLoader
      * @param in the string to trim
      * @return the white space and quote trimmed string
      */
-    private static String nameTrim(String in)
+    static String nameTrim(String in)
     {
         in = in.trim();
         if(in.startsWith("'") || in.startsWith("\""))
@@ -0,0 +1,713 @@
+package jsat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.datatransform.DataTransform;
+import jsat.datatransform.InPlaceTransform;
+import jsat.linear.*;
+import jsat.math.OnLineStatistics;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.FakeExecutor;
+import jsat.utils.IntList;
+import jsat.utils.ListUtils;
+import jsat.utils.SystemInfo;
+
+/**
+ * A data set that stores every field in primitive arrays, rather than as a
+ * list of {@link DataPoint} objects. This avoids the per point object headers
+ * and pointer chasing of {@link ClassificationDataSet} and
+ * {@link RegressionDataSet}, which dominate the memory use when there are
+ * many millions of rows. <br>
+ * <br>
+ * The storage is laid out as follows:
+ * <ul>
+ * <li>The numeric features are one contiguous {@code double[]} block in row
+ * major order, so that each data point is a contiguous slice of it.</li>
+ * <li>Each categorical feature is its own {@code int[]} column.</li>
+ * <li>The target values and the weights are one {@code double[]} column each.
+ * For classification problems the target value is the class index.</li>
+ * </ul>
+ * {@link #getDataPoint(int) } returns a light weight view of a row. Its
+ * numeric vector is backed by the data set, so changes to it (such as from an
+ * {@link InPlaceTransform}) are changes to the data set, as are changes to the
+ * weight. {@link #getNumericColumn(int) }, {@link #getDataMatrixView() } and
+ * the folds returned by {@link #cvSet(int, java.util.Random) } are views over
+ * the same storage, and do not copy any values. <br>
+ * <br>
+ * Adding data points may grow, and so move, the backing storage. Views
+ * obtained before the data set was grown are no longer backed by it. Since the
+ * numeric features are a single array, the number of rows times the number of
+ * numeric features can not exceed {@link Integer#MAX_VALUE}, and an 
+ * {@link IllegalArgumentException} is thrown when it would.
+ *
+ * @author Edward Raff
+ */
+public class ColumnarDataSet extends DataSet
+{
+    private static final int[] emptyInt = new int[0];
+
+    /**
+     * The numeric values, in row major order
+     */
+    private double[] numeric;
+    /**
+     * One column per categorical feature
+     */
+    private int[][] categorical;
+    /**
+     * The target value of each row, or the class index for classification
+     */
+    private double[] targets;
+    private double[] weights;
+    /**
+     * The categories of the target, or {@code null} if this is not a
+     * classification data set
+     */
+    private CategoricalData predicting;
+    /**
+     * Maps the logical index of a row to its position in the storage, or
+     * {@code null} if they are the same. Only views have this set.
+     */
+    private int[] rows;
+    /**
+     * The number of rows in this data set
+     */
+    private int size;
+    /**
+     * The number of rows the storage can hold
+     */
+    private int capacity;
+
+    /**
+     * Creates a new empty data set with no target class, with each row
+     * having a real valued target value.
+     *
+     * @param numerical the number of numeric features
+     * @param categories the categorical features
+     */
+    public ColumnarDataSet(int numerical, CategoricalData[] categories)
+    {
+        this(numerical, categories, null, 16);
+    }
+
+    /**
+     * Creates a new empty data set for classification problems.
+     *
+     * @param numerical the number of numeric features
+     * @param categories the categorical features
+     * @param predicting the categories of the target class
+     */
+    public ColumnarDataSet(int numerical, CategoricalData[] categories, CategoricalData predicting)
+    {
+        this(numerical, categories, predicting, 16);
+    }
+
+    /**
+     * Creates a new empty data set.
+     *
+     * @param numerical the number of numeric features
+     * @param categories the categorical features
+     * @param predicting the categories of the target class, or {@code null} if
+     * the target value of each row is real valued
+     * @param initialCapacity the number of rows to allocate space for up front
+     */
+    public ColumnarDataSet(int numerical, CategoricalData[] categories, CategoricalData predicting, int initialCapacity)
+    {
+        if(numerical < 0)
+            throw new IllegalArgumentException("Number of numeric features must be non negative, not " + numerical);
+        this.numNumerVals = numerical;
+        this.categories = categories;
+        this.predicting = predicting;
+        this.numericalVariableNames = new ArrayList<String>(numerical);
+        for(int i = 0; i < numerical; i++)
+            this.numericalVariableNames.add("Numeric Input " + (i+1));
+        this.capacity = Math.max(initialCapacity, 1);
+        this.numeric = new double[numericLength(capacity, numerical)];
+        this.categorical = new int[categories.length][capacity];
+        this.targets = new double[capacity];
+        this.weights = new double[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Creates a new data set that holds a copy of the given data set. If the
+     * source is a {@link ClassificationDataSet} or a
+     * {@link RegressionDataSet}, the targets are copied as well.
+     *
+     * @param source the data set to copy
+     */
+    public ColumnarDataSet(DataSet source)
+    {
+        this(source.getNumNumericalVars(), CategoricalData.copyOf(source.getCategories()),
+                source instanceof ClassificationDataSet ? ((ClassificationDataSet)source).getPredicting().clone() : null,
+                source.getSampleSize());
+        try
+        {
+            for(int i = 0; i < getNumNumericalVars(); i++)
+                numericalVariableNames.set(i, source.getNumericName(i));
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            //the source does not name all of its features, keep the defaults
+        }
+
+        for(int i = 0; i < source.getSampleSize(); i++)
+        {
+            DataPoint dp = source.getDataPoint(i);
+            double target = 0;
+            if(source instanceof ClassificationDataSet)
+                target = ((ClassificationDataSet)source).getDataPointCategory(i);
+            else if(source instanceof RegressionDataSet)
+                target = ((RegressionDataSet)source).getTargetValue(i);
+            addDataPoint(dp.getNumericalValues(), dp.getCategoricalValues(), target, dp.getWeight());
+        }
+    }
+
+    /**
+     * Copy constructor used to create views, all storage is shared
+     */
+    private ColumnarDataSet(ColumnarDataSet toView, int[] rows, int size)
+    {
+        this.numNumerVals = toView.numNumerVals;
+        this.categories = toView.categories;
+        this.numericalVariableNames = new ArrayList<String>(toView.numericalVariableNames);
+        this.predicting = toView.predicting;
+        this.numeric = toView.numeric;
+        this.categorical = toView.categorical;
+        this.targets = toView.targets;
+        this.weights = toView.weights;
+        this.capacity = toView.capacity;
+        this.rows = rows;
+        this.size = size;
+    }
+
+    /**
+     * Adds a new row with a weight of 1.0 to the data set
+     *
+     * @param numerical the numeric values of the row
+     * @param categories the categorical values of the row
+     * @param target the target value of the row, or the class index for
+     * classification problems
+     */
+    public void addDataPoint(Vec numerical, int[] categories, double target)
+    {
+        addDataPoint(numerical, categories, target, 1.0);
+    }
+
+    /**
+     * Adds a new row to the data set
+     *
+     * @param numerical the numeric values of the row
+     * @param categories the categorical values of the row
+     * @param target the target value of the row, or the class index for
+     * classification problems
+     * @param weight the weight of the row
+     */
+    public void addDataPoint(Vec numerical, int[] categories, double target, double weight)
+    {
+        if(rows != null)
+            throw new UnsupportedOperationException("Can not add data points to a view of a data set");
+        if(numerical.length() != numNumerVals)
+            throw new RuntimeException("Data point does not contain enough numerical data points");
+        if(categories.length != this.categories.length)
+            throw new RuntimeException("Data point does not contain enough categorical data points");
+        for(int i = 0; i < categories.length; i++)
+            if(!this.categories[i].isValidCategory(categories[i]))
+                throw new RuntimeException("Categoriy value given is invalid");
+        if(predicting != null && (target != (int) target || !predicting.isValidCategory((int) target)))
+            throw new RuntimeException("Target value " + target + " is not a valid class");
+
+        if(size == capacity)
+            grow();
+
+        final int offset = size*numNumerVals;
+        for(IndexValue iv : numerical)//new rows are always zero, so only non zeros need to be set
+            numeric[offset+iv.getIndex()] = iv.getValue();
+        for(int i = 0; i < categories.length; i++)
+            categorical[i][size] = categories[i];
+        targets[size] = target;
+        weights[size] = weight;
+        size++;
+        columnVecCache.clear();
+    }
+
+    private void grow()
+    {
+        long newCapacity = Math.min(capacity + (long) (capacity >> 1), Integer.MAX_VALUE);
+        if(numNumerVals > 0)//don't grow past what the numeric storage can hold
+            newCapacity = Math.min(newCapacity, Integer.MAX_VALUE/numNumerVals);
+        newCapacity = Math.max(newCapacity, capacity+1L);
+        numeric = Arrays.copyOf(numeric, numericLength(newCapacity, numNumerVals));
+        for(int i = 0; i < categorical.length; i++)
+            categorical[i] = Arrays.copyOf(categorical[i], (int) newCapacity);
+        targets = Arrays.copyOf(targets, (int) newCapacity);
+        weights = Arrays.copyOf(weights, (int) newCapacity);
+        capacity = (int) newCapacity;
+    }
+    
+    /**
+     * Returns the length of the numeric storage needed for the given number of
+     * rows. The products of a row and {@link #numNumerVals} used to index the 
+     * storage are only safe because this length is checked to fit in an int. 
+     * 
+     * @param rows the number of rows to store
+     * @param numerical the number of numeric features in each row
+     * @return the length of the numeric storage
+     * @throws IllegalArgumentException if the storage would not fit in a single
+     * array
+     */
+    private static int numericLength(long rows, int numerical)
+    {
+        long length = rows*numerical;
+        if(rows > Integer.MAX_VALUE || length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(rows + " rows of " + numerical 
+                    + " numeric features need " + length + " values, more than the "
+                    + Integer.MAX_VALUE + " that can be stored");
+        return (int) length;
+    }
+
+    /**
+     * Returns the position in the storage of the given row
+     */
+    private int storageIndex(int i)
+    {
+        if(i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("There are not that many samples in the data set: " + i);
+        return rows == null ? i : rows[i];
+    }
+
+    @Override
+    public DataPoint getDataPoint(int i)
+    {
+        return new RowView(storageIndex(i));
+    }
+
+    @Override
+    public void setDataPoint(int i, DataPoint dp)
+    {
+        final int r = storageIndex(i);
+        if(dp instanceof RowView && ((RowView)dp).owner() == this && ((RowView)dp).row == r)
+            return;//already in place
+        if(dp.getNumericalValues().length() != numNumerVals)
+            throw new RuntimeException("Data point does not contain enough numerical data points");
+        if(dp.getCategoricalValues().length != categories.length)
+            throw new RuntimeException("Data point does not contain enough categorical data points");
+
+        final int offset = r*numNumerVals;
+        Arrays.fill(numeric, offset, offset+numNumerVals, 0.0);
+        for(IndexValue iv : dp.getNumericalValues())
+            numeric[offset+iv.getIndex()] = iv.getValue();
+        for(int j = 0; j < categories.length; j++)
+            categorical[j][r] = dp.getCategoricalValue(j);
+        weights[r] = dp.getWeight();
+        columnVecCache.clear();
+    }
+
+    @Override
+    public int getSampleSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the target value of the <tt>i</tt>'th row. For classification
+     * problems this is the class index.
+     * @param i the <tt>i</tt>'th data point
+     * @return the target value of the <tt>i</tt>'th data point
+     */
+    public double getTargetValue(int i)
+    {
+        return targets[storageIndex(i)];
+    }
+
+    /**
+     * Sets the target value of the <tt>i</tt>'th row.
+     * @param i the <tt>i</tt>'th data point
+     * @param target the new target value, or class index for classification
+     * problems
+     */
+    public void setTargetValue(int i, double target)
+    {
+        if(predicting != null && (target != (int) target || !predicting.isValidCategory((int) target)))
+            throw new RuntimeException("Target value " + target + " is not a valid class");
+        targets[storageIndex(i)] = target;
+    }
+
+    /**
+     * Returns the class of the <tt>i</tt>'th row of a classification data set
+     * @param i the <tt>i</tt>'th data point
+     * @return the class index of the <tt>i</tt>'th data point
+     */
+    public int getDataPointCategory(int i)
+    {
+        if(predicting == null)
+            throw new UnsupportedOperationException("Data set does not have a target class");
+        return (int) targets[storageIndex(i)];
+    }
+
+    /**
+     * Returns the categories of the target class, or {@code null} if this is
+     * not a classification data set
+     * @return the categories of the target class
+     */
+    public CategoricalData getPredicting()
+    {
+        return predicting;
+    }
+
+    /**
+     * Returns the number of possible target classes
+     * @return the number of target classes
+     */
+    public int getClassSize()
+    {
+        if(predicting == null)
+            throw new UnsupportedOperationException("Data set does not have a target class");
+        return predicting.getNumOfCategories();
+    }
+
+    /**
+     * {@inheritDoc } <br>
+     * <br>
+     * The returned column is a view backed by this data set, changes to it
+     * will change the data set.
+     */
+    @Override
+    public Vec getNumericColumn(int i)
+    {
+        if(i < 0 || i >= getNumNumericalVars())
+            throw new IndexOutOfBoundsException("There is no index for column " + i);
+        return new ColumnView(i);
+    }
+
+    /**
+     * {@inheritDoc } <br>
+     * <br>
+     * The returned columns are views backed by this data set, changes to them
+     * will change the data set.
+     */
+    @Override
+    public Vec[] getNumericColumns(Set<Integer> skipColumns)
+    {
+        Vec[] cols = new Vec[getNumNumericalVars()];
+        for(int i = 0; i < cols.length; i++)
+            if(!skipColumns.contains(i))
+                cols[i] = new ColumnView(i);
+        return cols;
+    }
+
+    /**
+     * {@inheritDoc } <br>
+     * <br>
+     * If this data set is not a view of another, the returned matrix is a
+     * {@link FlatDenseMatrix} that wraps the numeric storage directly.
+     */
+    @Override
+    public Matrix getDataMatrixView()
+    {
+        if(rows == null && size > 0 && numNumerVals > 0)
+            return new FlatDenseMatrix(size, numNumerVals, numeric);
+        return super.getDataMatrixView();
+    }
+
+    @Override
+    public OnLineStatistics getSparsityStats()
+    {
+        //every row is stored densely
+        OnLineStatistics stats = new OnLineStatistics();
+        if(size > 0)
+            stats.add(1.0, size);
+        return stats;
+    }
+
+    /**
+     * {@inheritDoc } <br>
+     * <br>
+     * Each fold is a view over the storage of this data set.
+     */
+    @Override
+    public List<ColumnarDataSet> cvSet(int folds, Random rand)
+    {
+        IntList rndOrder = new IntList(size);
+        ListUtils.addRange(rndOrder, 0, size, 1);
+        Collections.shuffle(rndOrder, rand);
+
+        List<ColumnarDataSet> cvSet = new ArrayList<ColumnarDataSet>(folds);
+        for(int f = 0; f < folds; f++)
+        {
+            int foldSize = size/folds + (f < size % folds ? 1 : 0);
+            int[] foldRows = new int[foldSize];
+            for(int i = 0; i < foldSize; i++)
+                foldRows[i] = storageIndex(rndOrder.getI(f + i*folds));
+            cvSet.add(new ColumnarDataSet(this, foldRows, foldSize));
+        }
+
+        return cvSet;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ColumnarDataSet> cvSet(int folds)
+    {
+        return (List<ColumnarDataSet>) super.cvSet(folds);
+    }
+
+    @Override
+    public ColumnarDataSet shallowClone()
+    {
+        return new ColumnarDataSet(this, rows == null ? null : Arrays.copyOf(rows, size), size);
+    }
+
+    @Override
+    public ColumnarDataSet getTwiceShallowClone()
+    {
+        ColumnarDataSet clone = shallowClone();
+        clone.weights = Arrays.copyOf(weights, weights.length);
+        return clone;
+    }
+
+    /**
+     * {@inheritDoc } <br>
+     * <br>
+     * When the transform is not applied in place, the transformed values are
+     * stored in new storage, sized for the dimension of the transformed data.
+     * A view will then stop sharing its storage with the data set it came
+     * from.
+     */
+    @Override
+    public void applyTransform(final DataTransform dt, boolean mutate, ExecutorService ex)
+    {
+        if(mutate && dt instanceof InPlaceTransform)
+        {
+            super.applyTransform(dt, mutate, ex);
+            return;
+        }
+        if(ex == null)
+            ex = new FakeExecutor();
+
+        final DataPoint[] transformed = new DataPoint[size];
+        final CountDownLatch latch = new CountDownLatch(SystemInfo.LogicalCores);
+        //the first exception thrown by a worker, rethrown once all are done
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for(int id = 0; id < SystemInfo.LogicalCores; id++)
+        {
+            final int ID = id;
+            ex.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for(int i = ID; i < size && failure.get() == null; i += SystemInfo.LogicalCores)
+                            transformed[i] = dt.transform(getDataPoint(i));
+                    }
+                    catch(Throwable t)
+                    {
+                        failure.compareAndSet(null, t);
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex1)
+        {
+            Logger.getLogger(ColumnarDataSet.class.getName()).log(Level.SEVERE, null, ex1);
+        }
+        Throwable t = failure.get();
+        if(t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        else if(t instanceof Error)
+            throw (Error) t;
+        else if(t != null)
+            throw new RuntimeException("Failed to transform the data set", t);
+
+        if(size == 0)
+            return;
+
+        //the targets and weights are not part of the transform, keep them
+        double[] newTargets = new double[size];
+        double[] newWeights = new double[size];
+        for(int i = 0; i < size; i++)
+        {
+            newTargets[i] = targets[storageIndex(i)];
+            newWeights[i] = weights[storageIndex(i)];
+        }
+
+        final int n = size;
+        final int newLength = numericLength(n, transformed[0].numNumericalValues());
+        numNumerVals = transformed[0].numNumericalValues();
+        categories = transformed[0].getCategoricalData();
+        capacity = n;
+        numeric = new double[newLength];
+        categorical = new int[categories.length][n];
+        targets = newTargets;
+        weights = newWeights;
+        rows = null;
+        size = 0;
+        for(int i = 0; i < n; i++)
+        {
+            DataPoint dp = transformed[i];
+            final int offset = i*numNumerVals;
+            for(IndexValue iv : dp.getNumericalValues())
+                numeric[offset+iv.getIndex()] = iv.getValue();
+            for(int j = 0; j < categories.length; j++)
+                categorical[j][i] = dp.getCategoricalValue(j);
+        }
+        size = n;
+
+        columnVecCache.clear();
+        numericalVariableNames.clear();
+        for (int i = 0; i < getNumNumericalVars(); i++)
+            numericalVariableNames.add("TN" + (i + 1));
+    }
+
+    /**
+     * Creates a new classification data set whose data points are views of the
+     * rows in this data set, so the numeric values are not copied.
+     *
+     * @return a classification data set of the same data
+     */
+    public ClassificationDataSet asClassificationDataSet()
+    {
+        if(predicting == null)
+            throw new UnsupportedOperationException("Data set does not have a target class");
+        ClassificationDataSet cds = new ClassificationDataSet(numNumerVals, categories, predicting.clone());
+        for(int i = 0; i < size; i++)
+            cds.addDataPoint(getDataPoint(i), getDataPointCategory(i));
+        for(int i = 0; i < numNumerVals; i++)
+            cds.setNumericName(getNumericName(i), i);
+        return cds;
+    }
+
+    /**
+     * Creates a new regression data set whose data points are views of the
+     * rows in this data set, so the numeric values are not copied.
+     *
+     * @return a regression data set of the same data
+     */
+    public RegressionDataSet asRegressionDataSet()
+    {
+        RegressionDataSet rds = new RegressionDataSet(numNumerVals, categories);
+        for(int i = 0; i < size; i++)
+            rds.addDataPoint(getDataPoint(i), getTargetValue(i));
+        for(int i = 0; i < numNumerVals; i++)
+            rds.setNumericName(getNumericName(i), i);
+        return rds;
+    }
+
+    /**
+     * A data point that reads its weight from, and writes it to, the storage
+     * of the data set. Its numeric values are a slice of the numeric storage.
+     */
+    private class RowView extends DataPoint
+    {
+        final int row;
+
+        public RowView(int row)
+        {
+            super(new DenseVector(numeric, row*numNumerVals, (row+1)*numNumerVals), copyCategorical(row), categories);
+            this.row = row;
+        }
+
+        ColumnarDataSet owner()
+        {
+            return ColumnarDataSet.this;
+        }
+
+        @Override
+        public double getWeight()
+        {
+            return weights[row];
+        }
+
+        @Override
+        public void setWeight(double weight)
+        {
+            if(Double.isNaN(weight) || Double.isInfinite(weight) || weight <= 0)
+                throw new ArithmeticException("Invalid weight assignment of  " + weight);
+            weights[row] = weight;
+        }
+
+        @Override
+        public DataPoint clone()
+        {
+            return new DataPoint(numericalValues.clone(),
+                Arrays.copyOf(categoricalValues, categoricalValues.length),
+                CategoricalData.copyOf(categoricalData),
+                getWeight());
+        }
+    }
+
+    private int[] copyCategorical(int row)
+    {
+        if(categorical.length == 0)
+            return emptyInt;
+        int[] vals = new int[categorical.length];
+        for(int j = 0; j < vals.length; j++)
+            vals[j] = categorical[j][row];
+        return vals;
+    }
+
+    /**
+     * A strided view of one numeric column
+     */
+    private class ColumnView extends Vec
+    {
+        final int col;
+
+        public ColumnView(int col)
+        {
+            this.col = col;
+        }
+
+        @Override
+        public int length()
+        {
+            return size;
+        }
+
+        @Override
+        public double get(int index)
+        {
+            return numeric[storageIndex(index)*numNumerVals + col];
+        }
+
+        @Override
+        public void set(int index, double val)
+        {
+            numeric[storageIndex(index)*numNumerVals + col] = val;
+        }
+
+        @Override
+        public boolean isSparse()
+        {
+            return false;
+        }
+
+        @Override
+        public Vec clone()
+        {
+            return new DenseVector(this);
+        }
+    }
+}
@@ -584,7 +584,24 @@ public abstract class DataSet
     {
         return new MatrixOfVecs(getDataVectors());
     }
-    
+
+    /**
+     * Creates a {@link CSRMatrix} from the data set, where each row is a data
+     * point and each column is one of the numeric features. Only the non zero
+     * values are stored, and each sparse row is moved over with a single array
+     * copy, so this is the cheapest way to get a matrix of a large sparse data
+     * set that can be used for fast (and multi-threaded) matrix-vector
+     * products. <br>
+     * This matrix can be altered and will not effect any of the values in the
+     * data set.
+     *
+     * @return a sparse matrix of the data points
+     */
+    public CSRMatrix getSparseDataMatrix()
+    {
+        return new CSRMatrix(getDataVectors());
+    }
+
     /**
      * Returns the number of features in this data set, which is the sum of {@link #getNumCategoricalVars() } and {@link #getNumNumericalVars() }
      * @return the total number of features in this data set
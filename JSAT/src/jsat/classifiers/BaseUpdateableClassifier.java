@@ -1,20 +1,37 @@
 
 package jsat.classifiers;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import jsat.DataSet;
+import jsat.exceptions.FailedToFitException;
+import jsat.io.DataPointIterator;
+import jsat.regression.RegressionDataSet;
+import jsat.regression.UpdateableRegressor;
+import jsat.utils.FakeExecutor;
 import jsat.utils.IntList;
 import jsat.utils.ListUtils;
+import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ParallelUtils;
 
 /**
  * A base implementation of the UpdateableClassifier. 
- * {@link #trainC(jsat.classifiers.ClassificationDataSet, 
- * java.util.concurrent.ExecutorService) } will simply call 
- * {@link #trainC(jsat.classifiers.ClassificationDataSet) }, which will call 
+ * {@link #trainC(jsat.classifiers.ClassificationDataSet) } will call 
  * {@link #setUp(jsat.classifiers.CategoricalData[], int, 
  * jsat.classifiers.CategoricalData) } and then call 
  * {@link #update(jsat.classifiers.DataPoint, int) } for each data point in a 
- * random order. 
+ * random order. <br>
+ * {@link #trainC(jsat.classifiers.ClassificationDataSet, 
+ * java.util.concurrent.ExecutorService) } does the same, unless the 
+ * classifier {@link #supportsModelAveraging() supports model averaging}. Then
+ * each epoch is split into one shard per thread, a copy of the classifier is 
+ * trained on each shard, and the copies are averaged once they are done. 
  * 
  * @author Edward Raff
  */
@@ -46,7 +63,122 @@ public abstract class BaseUpdateableClassifier implements UpdateableClassifier
     @Override
     public void trainC(ClassificationDataSet dataSet, ExecutorService threadPool)
     {
-        trainC(dataSet);
+        if(threadPool == null || threadPool instanceof FakeExecutor || !supportsModelAveraging())
+        {
+            trainC(dataSet);
+            return;
+        }
+        setUp(dataSet.getCategories(), dataSet.getNumNumericalVars(), dataSet.getPredicting());
+        trainAveraged(dataSet, threadPool);
+    }
+    
+    /**
+     * Indicates whether or not copies of this classifier trained on different
+     * parts of the data can be combined with 
+     * {@link #averageModels(java.util.List) }. When they can, training with a
+     * thread pool is done in parallel. The default is {@code false}, in which 
+     * case training with a thread pool is the same as training without one. 
+     * 
+     * @return {@code true} if the classifier can be trained in parallel by 
+     * averaging copies of it
+     */
+    protected boolean supportsModelAveraging()
+    {
+        return false;
+    }
+    
+    /**
+     * Returns a copy of this classifier that will be trained on one of 
+     * <tt>shards</tt> equal parts of each epoch before it is averaged. The 
+     * default is a {@link #clone() clone}. Classifiers that keep a count of 
+     * the updates seen may override this to count each update as 
+     * <tt>shards</tt> updates, so that the count matches the serial algorithm
+     * at the end of the epoch.
+     * 
+     * @param shards the number of parts each epoch is split into
+     * @return a copy of this classifier to train on one shard
+     */
+    protected BaseUpdateableClassifier copyForShard(int shards)
+    {
+        return (BaseUpdateableClassifier) clone();
+    }
+    
+    /**
+     * Sets this classifier to the average of the given copies of it, in the 
+     * order given, so that the result does not depend on the timing of the
+     * threads that trained them. Only called if 
+     * {@link #supportsModelAveraging() } returns {@code true}. 
+     * 
+     * @param models the copies of this classifier, each trained on one shard
+     * of the epoch
+     */
+    protected void averageModels(List<BaseUpdateableClassifier> models)
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support model averaging");
+    }
+    
+    /**
+     * Trains the already set up classifier with iterative parameter mixing. 
+     * Each epoch a random permutation of the data is split into one shard per
+     * thread, a copy of the classifier is trained serially on each shard, and
+     * the copies are averaged. Every copy of the next epoch starts from the 
+     * average. 
+     * 
+     * @param dataSet the data set to train on, either a 
+     * {@link ClassificationDataSet} or, if this is also an 
+     * {@link UpdateableRegressor}, a {@link RegressionDataSet}
+     * @param threadPool the source of threads
+     */
+    protected void trainAveraged(final DataSet dataSet, ExecutorService threadPool)
+    {
+        final int N = dataSet.getSampleSize();
+        final int P = Math.max(1, Math.min(SystemInfo.LogicalCores, N));
+        final IntList order = new IntList(N);
+        ListUtils.addRange(order, 0, N, 1);
+        
+        final List<BaseUpdateableClassifier> workers = new ArrayList<BaseUpdateableClassifier>(P);
+        for (int epoch = 0; epoch < epochs; epoch++)
+        {
+            Collections.shuffle(order);
+            workers.clear();
+            List<Future<BaseUpdateableClassifier>> futures = new ArrayList<Future<BaseUpdateableClassifier>>(P);
+            for (int id = 0; id < P; id++)
+            {
+                final BaseUpdateableClassifier worker = copyForShard(P);
+                final int start = ParallelUtils.getStartBlock(N, id, P);
+                final int end = ParallelUtils.getEndBlock(N, id, P);
+                futures.add(threadPool.submit(new Callable<BaseUpdateableClassifier>()
+                {
+                    @Override
+                    public BaseUpdateableClassifier call() throws Exception
+                    {
+                        for (int pos = start; pos < end; pos++)
+                        {
+                            int i = order.getI(pos);
+                            if (dataSet instanceof ClassificationDataSet)
+                                worker.update(dataSet.getDataPoint(i), ((ClassificationDataSet) dataSet).getDataPointCategory(i));
+                            else
+                                ((UpdateableRegressor) worker).update(dataSet.getDataPoint(i), ((RegressionDataSet) dataSet).getTargetValue(i));
+                        }
+                        return worker;
+                    }
+                }));
+            }
+            try
+            {
+                workers.addAll(ListUtils.collectFutures(futures));
+            }
+            catch (ExecutionException ex)
+            {
+                throw new FailedToFitException(ex);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new FailedToFitException(ex);
+            }
+            averageModels(workers);
+        }
     }
 
     @Override
@@ -79,6 +211,45 @@ public abstract class BaseUpdateableClassifier implements UpdateableClassifier
         }
     }
 
+    /**
+     * Performs training on an updateable classifier by streaming the data 
+     * from a file, one observation at a time, multiple times. Unlike 
+     * {@link #trainEpochs(jsat.classifiers.ClassificationDataSet, 
+     * jsat.classifiers.UpdateableClassifier, int) }, the data is never held 
+     * in memory, so the observations are visited in the order of the file. 
+     * 
+     * @param data the stream of data points to train from. The stream should 
+     * not have been read from yet, and is used for the first epoch. 
+     * @param toTrain the classifier to train
+     * @param epochs the number of passes through the data
+     * @throws IOException if an error occurred reading the data
+     */
+    public static void trainEpochs(DataPointIterator<Integer> data, UpdateableClassifier toTrain, int epochs) throws IOException
+    {
+        if(epochs < 1)
+            throw new IllegalArgumentException("epochs must be positive");
+        if(data.getPredicting() == null)
+            throw new IllegalArgumentException("data stream does not have a target class");
+        toTrain.setUp(data.getCategories(), data.getNumNumericalVars(), 
+                data.getPredicting());
+        for (int epoch = 0; epoch < epochs; epoch++)
+        {
+            DataPointIterator<Integer> iter = epoch == 0 ? data : data.reopen();
+            try
+            {
+                while(iter.hasNext())
+                {
+                    DataPointPair<Integer> dpp = iter.next();
+                    toTrain.update(dpp.getDataPoint(), dpp.getPair());
+                }
+            }
+            finally
+            {
+                iter.close();
+            }
+        }
+    }
+
     @Override
     abstract public UpdateableClassifier clone();
     
@@ -13,13 +13,20 @@ import jsat.linear.vectorcollection.*;
 import jsat.parameters.*;
 import jsat.regression.RegressionDataSet;
 import jsat.regression.Regressor;
+import jsat.regression.UpdateableRegressor;
 
 /**
  * An implementation of the Nearest Neighbor algorithm, but with a 
  * British spelling! How fancy. 
+ * <br><br>
+ * The model can be updated with new points after it is trained, or built 
+ * entirely from updates after calling {@link #setUp(jsat.classifiers.CategoricalData[], int, jsat.classifiers.CategoricalData) setUp}. 
+ * Updates are inserted into the {@link MutableVectorCollection} holding the
+ * points. If the collection from the factory can not be updated, it is 
+ * replaced with a {@link VPTreeMV} on the first update. 
  * @author Edward Raff
  */
-public class NearestNeighbour implements  Classifier, Regressor, Parameterized
+public class NearestNeighbour implements  UpdateableClassifier, UpdateableRegressor, Parameterized
 {
     private int k;
     private boolean weighted ;
@@ -28,6 +35,11 @@ public class NearestNeighbour implements  Classifier, Regressor, Parameterized
     
     private VectorCollectionFactory<VecPaired<Vec, Double>> vcf;
     private VectorCollection<VecPaired<Vec, Double>> vecCollection;
+    /**
+     * The points in {@link #vecCollection}, kept only while it can not be 
+     * updated so that it may be replaced by one that can
+     */
+    private List<VecPaired<Vec, Double>> dataPoints;
 
     /**
      * Returns the number of neighbors currently consulted to make decisions
@@ -200,10 +212,7 @@ public class NearestNeighbour implements  Classifier, Regressor, Parameterized
         
         TrainableDistanceMetric.trainIfNeeded(distanceMetric, dataSet, threadPool);
         
-        if(threadPool == null)
-            vecCollection = vcf.getVectorCollection(dataPoints, distanceMetric);
-        else
-            vecCollection = vcf.getVectorCollection(dataPoints, distanceMetric, threadPool);
+        setVectorCollection(dataPoints, threadPool);
     }
     
     @Override
@@ -268,10 +277,67 @@ public class NearestNeighbour implements  Classifier, Regressor, Parameterized
         
         TrainableDistanceMetric.trainIfNeeded(distanceMetric, dataSet, threadPool);
 
+        setVectorCollection(dataPoints, threadPool);
+    }
+    
+    private void setVectorCollection(List<VecPaired<Vec, Double>> dataPoints, ExecutorService threadPool)
+    {
         if(threadPool == null)
             vecCollection = vcf.getVectorCollection(dataPoints, distanceMetric);
         else
             vecCollection = vcf.getVectorCollection(dataPoints, distanceMetric, threadPool);
+        if(vecCollection instanceof MutableVectorCollection)
+            this.dataPoints = null;
+        else
+            this.dataPoints = dataPoints;
+    }
+
+    @Override
+    public void setUp(CategoricalData[] categoricalAttributes, int numericAttributes, CategoricalData predicting)
+    {
+        if(categoricalAttributes.length != 0)
+            throw new FailedToFitException("KNN requires vector data only");
+        mode = Mode.CLASSIFICATION;
+        this.predicting = predicting;
+        this.dataPoints = null;
+        vecCollection = new VPTreeMV<VecPaired<Vec, Double>>(new ArrayList<VecPaired<Vec, Double>>(), distanceMetric);
+    }
+
+    @Override
+    public void update(DataPoint dataPoint, int targetClass)
+    {
+        if(vecCollection == null || mode != Mode.CLASSIFICATION)
+            throw new UntrainedModelException("Classifier has not been set up for classification");
+        insert(new VecPaired<Vec, Double>(dataPoint.getNumericalValues(), (double) targetClass));
+    }
+
+    @Override
+    public void setUp(CategoricalData[] categoricalAttributes, int numericAttributes)
+    {
+        if(categoricalAttributes.length != 0)
+            throw new FailedToFitException("KNN requires vector data only");
+        mode = Mode.REGRESSION;
+        this.predicting = null;
+        this.dataPoints = null;
+        vecCollection = new VPTreeMV<VecPaired<Vec, Double>>(new ArrayList<VecPaired<Vec, Double>>(), distanceMetric);
+    }
+
+    @Override
+    public void update(DataPoint dataPoint, double targetValue)
+    {
+        if(vecCollection == null || mode != Mode.REGRESSION)
+            throw new UntrainedModelException("Regressor has not been set up for regression");
+        insert(new VecPaired<Vec, Double>(dataPoint.getNumericalValues(), targetValue));
+    }
+
+    private void insert(VecPaired<Vec, Double> x)
+    {
+        if(!(vecCollection instanceof MutableVectorCollection))
+        {
+            vecCollection = new VPTreeMV<VecPaired<Vec, Double>>(dataPoints, distanceMetric);
+            dataPoints = null;
+        }
+        ((MutableVectorCollection<VecPaired<Vec, Double>>) vecCollection).insert(x);
     }
     
     @Override
@@ -285,6 +351,8 @@ public class NearestNeighbour implements  Classifier, Regressor, Parameterized
         
         if(this.vecCollection != null)
             clone.vecCollection = this.vecCollection.clone();
+        if(this.dataPoints != null)
+            clone.dataPoints = new ArrayList<VecPaired<Vec, Double>>(this.dataPoints);
         
         return clone;
     }
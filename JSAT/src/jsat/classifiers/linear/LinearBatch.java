@@ -9,6 +9,7 @@ import java.util.logging.Logger;
 import jsat.DataSet;
 import jsat.classifiers.*;
 import jsat.exceptions.FailedToFitException;
+import jsat.linear.CSRMatrix;
 import jsat.linear.ConcatenatedVec;
 import jsat.linear.DenseVector;
 import jsat.linear.IndexValue;
@@ -19,6 +20,7 @@ import jsat.lossfunctions.LossFunc;
 import jsat.lossfunctions.LossMC;
 import jsat.lossfunctions.LossR;
 import jsat.lossfunctions.SoftmaxLoss;
+import jsat.math.FunctionAndGradient;
 import jsat.math.FunctionP;
 import jsat.math.FunctionVec;
 import jsat.math.optimization.*;
@@ -296,6 +298,109 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
         return y;
     }
 
+    /**
+     * Accumulates the weighted loss and gradient over a contiguous block of
+     * the data set in a single pass.
+     */
+    private interface LossGradBlock
+    {
+        /**
+         * @param start the first index (inclusive) of the block
+         * @param end the last index (exclusive) of the block
+         * @param grad the vector to add the weighted gradient to
+         * @param weightSum a length 1 array to store the sum of weights in
+         * @return the weighted sum of the losses in the block
+         */
+        public double accumulate(int start, int end, Vec grad, double[] weightSum);
+    }
+
+    /**
+     * Computes the regularized loss and gradient of the weight vector
+     * {@code w} with one pass over the data. Each block of the data set gets
+     * its own gradient accumulator, and the partial results are reduced in
+     * block order so that the result does not depend on thread scheduling.
+     *
+     * @param w the current weight vector
+     * @param grad the location to store the gradient in
+     * @param ex the source of threads, or {@code null} to run serially
+     * @param N the number of data points
+     * @param block the per-block loss and gradient accumulator
+     * @return the regularized loss
+     */
+    private double lossAndGrad(Vec w, Vec grad, ExecutorService ex, final int N, final LossGradBlock block)
+    {
+        grad.zeroOut();
+        double sum = 0;
+        double weightSum = 0;
+        if (ex == null)
+        {
+            double[] ws = new double[1];
+            sum = block.accumulate(0, N, grad, ws);
+            weightSum = ws[0];
+        }
+        else
+        {
+            final int P = SystemInfo.LogicalCores;
+            final Vec[] grads = new Vec[P];
+            final double[][] weightSums = new double[P][1];
+            List<Future<Double>> partialSums = new ArrayList<Future<Double>>(P);
+            for (int p = 0; p < P; p++)
+            {
+                final int ID = p;
+                grads[ID] = ID == 0 ? grad : new DenseVector(grad.length());
+                partialSums.add(ex.submit(new Callable<Double>()
+                {
+                    @Override
+                    public Double call() throws Exception
+                    {
+                        return block.accumulate(ParallelUtils.getStartBlock(N, ID, P), ParallelUtils.getEndBlock(N, ID, P), grads[ID], weightSums[ID]);
+                    }
+                }));
+            }
+            try
+            {
+                for (Double partial : ListUtils.collectFutures(partialSums))
+                    sum += partial;
+            }
+            catch (ExecutionException ex1)
+            {
+                throw new FailedToFitException(ex1);
+            }
+            catch (InterruptedException ex1)
+            {
+                throw new FailedToFitException(ex1);
+            }
+            for (int p = 0; p < P; p++)
+            {
+                if (p > 0)
+                    grad.mutableAdd(grads[p]);
+                weightSum += weightSums[p][0];
+            }
+        }
+
+        return regularize(w, grad, sum, weightSum);
+    }
+
+    /**
+     * Normalizes the summed loss and gradient by the total weight, and adds
+     * the L<sub>2</sub> penalty to both
+     * @param w the current weight vector
+     * @param grad the summed gradient, which will be altered
+     * @param sum the summed loss
+     * @param weightSum the sum of the data point weights
+     * @return the regularized loss
+     */
+    private double regularize(Vec w, Vec grad, double sum, double weightSum)
+    {
+        grad.mutableDivide(weightSum);
+        if (lambda0 > 0)
+        {
+            grad.mutableAdd(lambda0, w);
+            return sum/weightSum + 0.5*lambda0*w.dot(w);
+        }
+        return sum/weightSum;
+    }
+
     @Override
     public List<Parameter> getParameters()
     {
@@ -310,12 +415,27 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
     
     /**
      * Function for using the single weight vector loss functions related to 
-     * {@link LossC} and {@link LossR}. 
+     * {@link LossC} and {@link LossR}. The loss and gradient can be computed 
+     * together with a single pass over the data through 
+     * {@link #f(jsat.linear.Vec, jsat.linear.Vec, java.util.concurrent.ExecutorService) }.
+     * If every data point is sparse and the data as a whole is sparse enough, 
+     * that is done with the matrix-vector products of a {@link CSRMatrix} copy 
+     * of the data. The copy is only built the first time a gradient is 
+     * requested, so callers that only evaluate the loss do not pay for it.
      */
-    public class LossFunction implements FunctionP
+    public class LossFunction implements FunctionP, FunctionAndGradient
     {
         private final DataSet D;
         private final LossFunc loss;
+        /**
+         * The data as a CSR matrix, or {@code null} if it has not been built yet 
+         * or the data is too dense to benefit from it
+         */
+        private CSRMatrix X;
+        /**
+         * Whether or not the data has been checked for the use of {@link #X}
+         */
+        private boolean checkedSparse = false;
 
         public LossFunction(DataSet D, LossFunc loss)
         {
@@ -323,6 +443,36 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
             this.loss = loss;
         }
         
+        /**
+         * Returns the CSR copy of the data, building it on the first call if 
+         * every data point is sparse and at most a quarter of all the values in 
+         * the data set are non zero. 
+         * 
+         * @return the CSR copy of the data, or {@code null} if the data should 
+         * be used directly
+         */
+        private CSRMatrix getSparseMatrix()
+        {
+            if (checkedSparse)
+                return X;
+            checkedSparse = true;
+            final int N = D.getSampleSize();
+            if (N == 0)
+                return null;
+            long nnz = 0;
+            for (int i = 0; i < N; i++)
+            {
+                Vec x = D.getDataPoint(i).getNumericalValues();
+                if (!x.isSparse())
+                    return null;
+                nnz += x.nnz();
+            }
+            if (nnz*4 > (long) N*D.getNumNumericalVars())
+                return null;
+            X = D.getSparseDataMatrix();
+            return X;
+        }
+        
         @Override
         public double f(Vec w)
         {
@@ -337,7 +487,7 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
                 weightSum += dp.getWeight();
             }
             if(lambda0 > 0)
-                return sum/weightSum + lambda0*w.dot(w);
+                return sum/weightSum + 0.5*lambda0*w.dot(w);
             else
                 return sum/weightSum;
         }
@@ -391,7 +541,7 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
             for(double ws : weightSums)
                 weightSum += ws;
             if(lambda0 > 0)
-                return sum/weightSum + lambda0*w.dot(w);
+                return sum/weightSum + 0.5*lambda0*w.dot(w);
             else
                 return sum/weightSum;
         }
@@ -401,6 +551,60 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
         {
             return f(DenseVector.toDenseVec(x));
         }
+
+        @Override
+        public double f(final Vec w, Vec grad, ExecutorService ex)
+        {
+            if (grad == null)
+                return ex == null ? f(w) : f(w, ex);
+            if (getSparseMatrix() != null)
+                return sparseLossAndGrad(w, grad, ex);
+            return lossAndGrad(w, grad, ex, D.getSampleSize(), new LossGradBlock()
+            {
+                @Override
+                public double accumulate(int start, int end, Vec grad, double[] weightSum)
+                {
+                    double sum = 0;
+                    for (int i = start; i < end; i++)
+                    {
+                        DataPoint dp = D.getDataPoint(i);
+                        Vec x = dp.getNumericalValues();
+                        double y = getTargetY(D, i);
+                        double dot = w.dot(x);
+                        sum += loss.getLoss(dot, y)*dp.getWeight();
+                        grad.mutableAdd(loss.getDeriv(dot, y)*dp.getWeight(), x);
+                        weightSum[0] += dp.getWeight();
+                    }
+                    return sum;
+                }
+            });
+        }
+
+        /**
+         * Computes the loss and gradient with two products with the CSR matrix:
+         * <i>X w</i> for the predictions and <i>X<sup>T</sup> d</i> for the 
+         * gradient, where <i>d</i> is the weighted derivative of each loss.
+         */
+        private double sparseLossAndGrad(Vec w, Vec grad, ExecutorService ex)
+        {
+            final int N = X.rows();
+            Vec dots = new DenseVector(N);
+            X.multiply(w, 1.0, dots, ex);
+            Vec derivs = new DenseVector(N);
+            double sum = 0;
+            double weightSum = 0;
+            for (int i = 0; i < N; i++)
+            {
+                double weight = D.getDataPoint(i).getWeight();
+                double y = getTargetY(D, i);
+                sum += loss.getLoss(dots.get(i), y)*weight;
+                derivs.set(i, loss.getDeriv(dots.get(i), y)*weight);
+                weightSum += weight;
+            }
+            grad.zeroOut();
+            X.transposeMultiply(1.0, derivs, grad, ex);
+            return regularize(w, grad, sum, weightSum);
+        }
         
     }
 
@@ -451,7 +655,7 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
             }
             s.mutableDivide(weightSum);
             if(lambda0 > 0)
-                s.mutableSubtract(lambda0, w);
+                s.mutableAdd(lambda0, w);
             return s;
         }
 
@@ -518,12 +722,19 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
                 weightSum += ws;
             s.mutableDivide(weightSum);
             if(lambda0 > 0)
-                s.mutableSubtract(lambda0, w);
+                s.mutableAdd(lambda0, w);
             return s;
         }
     }
     
-    public class LossMCFunction implements FunctionP
+    /**
+     * Function for using the multi-class loss functions related to 
+     * {@link LossMC}, where the weight vectors for each class are concatenated
+     * together. The loss and gradient can be computed together with a single 
+     * pass over the data through 
+     * {@link #f(jsat.linear.Vec, jsat.linear.Vec, java.util.concurrent.ExecutorService) }.
+     */
+    public class LossMCFunction implements FunctionP, FunctionAndGradient
     {
         private final ClassificationDataSet D;
         private final LossMC loss;
@@ -553,8 +764,8 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
                 weightSum += dp.getWeight();
             }
             if(lambda0 > 0 )
-                return sum/weightSum + lambda0*w.dot(w);
-            return sum;
+                return sum/weightSum + 0.5*lambda0*w.dot(w);
+            return sum/weightSum;
         }
 
         @Override
@@ -613,7 +824,7 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
             for(double ws : weightSums)
                 weightSum += ws;
 
-            return sum/weightSum + lambda0*w.dot(w);
+            return sum/weightSum + 0.5*lambda0*w.dot(w);
         }
 
         @Override
@@ -621,6 +832,38 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
         {
             return f(DenseVector.toDenseVec(x));
         }
+
+        @Override
+        public double f(final Vec w, Vec grad, ExecutorService ex)
+        {
+            if (grad == null)
+                return ex == null ? f(w) : f(w, ex);
+            final int subWSize = w.length()/D.getClassSize();
+            return lossAndGrad(w, grad, ex, D.getSampleSize(), new LossGradBlock()
+            {
+                @Override
+                public double accumulate(int start, int end, Vec grad, double[] weightSum)
+                {
+                    double sum = 0;
+                    Vec pred = new DenseVector(D.getClassSize());//store the predictions in
+                    for (int i = start; i < end; i++)
+                    {
+                        DataPoint dp = D.getDataPoint(i);
+                        Vec x = dp.getNumericalValues();
+                        for (int k = 0; k < pred.length(); k++)
+                            pred.set(k, new SubVector(k * subWSize, subWSize, w).dot(x));
+                        loss.process(pred, pred);
+                        int y = D.getDataPointCategory(i);
+                        sum += loss.getLoss(pred, y)*dp.getWeight();
+                        loss.deriv(pred, pred, y);
+                        for (IndexValue iv : pred)
+                            new SubVector(iv.getIndex() * subWSize, subWSize, grad).mutableAdd(iv.getValue()*dp.getWeight(), x);
+                        weightSum[0] += dp.getWeight();
+                    }
+                    return sum;
+                }
+            });
+        }
         
     }
     
@@ -675,7 +918,7 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
             }
             s.mutableDivide(weightSum);
             if(lambda0 > 0)
-                s.mutableSubtract(lambda0, w);
+                s.mutableAdd(lambda0, w);
             return s;
         }
 
@@ -750,7 +993,7 @@ public class LinearBatch implements Classifier, Regressor, Parameterized
 
             s.mutableDivide(weightSum);
             if(lambda0 > 0)
-                s.mutableSubtract(lambda0, w);
+                s.mutableAdd(lambda0, w);
             return s;
         }
     }
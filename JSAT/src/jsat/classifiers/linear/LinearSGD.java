@@ -2,11 +2,16 @@ package jsat.classifiers.linear;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import jsat.DataSet;
 import jsat.SimpleWeightVectorModel;
 import jsat.classifiers.BaseUpdateableClassifier;
 import jsat.classifiers.CategoricalData;
 import jsat.classifiers.CategoricalResults;
+import jsat.classifiers.ClassificationDataSet;
 import jsat.classifiers.DataPoint;
 import jsat.exceptions.FailedToFitException;
 import jsat.linear.ConcatenatedVec;
@@ -29,6 +34,10 @@ import jsat.parameters.Parameterized;
 import jsat.regression.BaseUpdateableRegressor;
 import jsat.regression.RegressionDataSet;
 import jsat.regression.UpdateableRegressor;
+import jsat.utils.FakeExecutor;
+import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ParallelUtils;
+import jsat.utils.random.XORWOW;
 
 /**
  * LinearSGD learns either a classification or regression problem depending on 
@@ -46,6 +55,11 @@ import jsat.regression.UpdateableRegressor;
  * Setting {@link #setLambda1(double) &lambda<sub>1</sub>} to the desired value 
  * divided by the number of unique data points in the whole set will result in 
  * the correct regularization penalty being applied. 
+ * <br><br>
+ * When trained with a thread pool, each thread trains on its own shard of the
+ * data each epoch, either with lock free Hogwild! updates to the shared 
+ * weights or by averaging independent copies of the model, as set by 
+ * {@link #setParallelMode(jsat.classifiers.linear.LinearSGD.ParallelMode) }.
  * 
  * See:
  * <ul>
@@ -54,6 +68,13 @@ import jsat.regression.UpdateableRegressor;
  * penalty</i>. Proceedings of the Joint Conference of the 47th Annual Meeting 
  * of the ACL and the 4th International Joint Conference on Natural Language 
  * Processing of the AFNLP, 1, 477. doi:10.3115/1687878.1687946</li>
+ * <li>Niu, F., Recht, B., Ré, C., & Wright, S. J. (2011). <i>HOGWILD!: A 
+ * Lock-Free Approach to Parallelizing Stochastic Gradient Descent</i>. In 
+ * Advances in Neural Information Processing Systems 24 (pp. 693–701).</li>
+ * <li>McDonald, R., Hall, K., & Mann, G. (2010). <i>Distributed Training 
+ * Strategies for the Structured Perceptron</i>. In Human Language 
+ * Technologies: The 2010 Annual Conference of the North American Chapter of 
+ * the ACL (pp. 456–464).</li>
  * </ul>
  * @author Edward Raff
  */
@@ -78,6 +99,32 @@ public class LinearSGD extends BaseUpdateableClassifier implements UpdateableReg
     private double l1U;
     private double[][] l1Q;
     private boolean useBias = true;
+    private ParallelMode parallelMode = ParallelMode.HOGWILD;
+    /**
+     * The source of randomness for the order of the data in parallel training
+     */
+    private Random rand = new XORWOW();
+    
+    /**
+     * The ways that LinearSGD may be trained in parallel
+     */
+    public enum ParallelMode
+    {
+        /**
+         * All threads update the same weight vectors at once without locking.
+         * This is fastest when the inputs are sparse, but the result depends 
+         * on the timing of the threads. 
+         */
+        HOGWILD,
+        /**
+         * Each thread trains its own copy of the model on its shard of the 
+         * data, and the copies are averaged after every epoch. The result does
+         * not depend on the timing of the threads. As each copy only sees its
+         * own shard, more epochs are needed to converge as the number of 
+         * threads increases. 
+         */
+        AVERAGING
+    }
 
     /**
      * Creates a new LinearSGD learner for multi-class classification problems. 
@@ -131,6 +178,8 @@ public class LinearSGD extends BaseUpdateableClassifier implements UpdateableReg
         this.lambda1 = toClone.lambda1;
         this.l1U = toClone.l1U;
         this.useBias = toClone.useBias;
+        this.parallelMode = toClone.parallelMode;
+        this.rand = new XORWOW();
         this.gradientUpdater = toClone.gradientUpdater;
         if(toClone.l1Q != null)
         {
@@ -298,6 +347,49 @@ public class LinearSGD extends BaseUpdateableClassifier implements UpdateableReg
         return useBias;
     }
     
+    /**
+     * Sets how the model is trained when a thread pool is given
+     * @param parallelMode the method of parallel training to use
+     */
+    public void setParallelMode(ParallelMode parallelMode)
+    {
+        if(parallelMode == null)
+            throw new NullPointerException("parallel mode can not be null");
+        this.parallelMode = parallelMode;
+    }
+
+    /**
+     * Returns how the model is trained when a thread pool is given
+     * @return the method of parallel training used
+     */
+    public ParallelMode getParallelMode()
+    {
+        return parallelMode;
+    }
+
+    /**
+     * Sets the source of randomness used to shuffle the data into the shards
+     * of each thread when training in parallel. With a seeded source and the
+     * {@link ParallelMode#AVERAGING AVERAGING} mode, parallel training gives 
+     * the same model every time. 
+     * @param rand the source of randomness to use
+     */
+    public void setRandom(Random rand)
+    {
+        if(rand == null)
+            throw new NullPointerException("source of randomness can not be null");
+        this.rand = rand;
+    }
+
+    /**
+     * Returns the source of randomness used when training in parallel
+     * @return the source of randomness used when training in parallel
+     */
+    public Random getRandom()
+    {
+        return rand;
+    }
+
     @Override
     public LinearSGD clone()
     {
@@ -378,42 +470,74 @@ public class LinearSGD extends BaseUpdateableClassifier implements UpdateableReg
         applyL2Reg(eta_t);
         
         //apply gradient updates
-        if(ws.length == 1)
+        updateC(ws, wsWithBias, gus, eta_t, x, targetClass);
+        
+        applyL1Reg(eta_t, x);
+    }
+    
+    /**
+     * Performs the gradient step of a classification update
+     * @param w the weight vectors to update
+     * @param wWithBias the weight vectors concatenated with their bias terms
+     * @param us the gradient updater for each weight vector
+     * @param eta_t the learning rate to use
+     * @param x the input vector
+     * @param targetClass the class of the input
+     */
+    private void updateC(Vec[] w, Vec[] wWithBias, GradientUpdater[] us, final double eta_t, Vec x, int targetClass)
+    {
+        if(w.length == 1)
         {
             final double y = targetClass*2-1;
-            final double lossD = ((LossC)loss).getDeriv(ws[0].dot(x)+bs[0], y);
-            performGradientUpdate(0, eta_t, lossD, x);
+            final double lossD = ((LossC)loss).getDeriv(w[0].dot(x)+bs[0], y);
+            performGradientUpdate(w, wWithBias, us, 0, eta_t, lossD, x);
         }
         else
         {
-            Vec pred = new DenseVector(ws.length);
-            for(int i = 0; i < ws.length; i++)
-                pred.set(i, ws[i].dot(x)+bs[i]);
+            Vec pred = new DenseVector(w.length);
+            for(int i = 0; i < w.length; i++)
+                pred.set(i, w[i].dot(x)+bs[i]);
             ((LossMC)loss).process(pred, pred);
             ((LossMC)loss).deriv(pred, pred, targetClass);
             for(IndexValue iv : pred)
             {
                 final int i = iv.getIndex();
                 final double lossD = iv.getValue();
-                performGradientUpdate(i, eta_t, lossD, x);
+                performGradientUpdate(w, wWithBias, us, i, eta_t, lossD, x);
             }
         }
-        
-        applyL1Reg(eta_t, x);
+    }
+    
+    /**
+     * Performs the gradient step of a regression update
+     * @param w the weight vectors to update
+     * @param wWithBias the weight vectors concatenated with their bias terms
+     * @param us the gradient updater for each weight vector
+     * @param eta_t the learning rate to use
+     * @param x the input vector
+     * @param targetValue the target value of the input
+     */
+    private void updateR(Vec[] w, Vec[] wWithBias, GradientUpdater[] us, final double eta_t, Vec x, double targetValue)
+    {
+        final double lossD = ((LossR)loss).getDeriv(w[0].dot(x)+bs[0], targetValue);
+        performGradientUpdate(w, wWithBias, us, 0, eta_t, lossD, x);
     }
 
     /**
      * 
+     * @param w the weight vectors to update
+     * @param wWithBias the weight vectors concatenated with their bias terms
+     * @param us the gradient updater for each weight vector
      * @param i the index of the weight vector array to update
      * @param eta_t the learning rate to use
      * @param lossD the loss for the specified weight vector
      * @param x the input vector the loss was incurred on
      */
-    private void performGradientUpdate(final int i, final double eta_t, final double lossD, Vec x)
+    private void performGradientUpdate(Vec[] w, Vec[] wWithBias, GradientUpdater[] us, final int i, final double eta_t, final double lossD, Vec x)
     {
         if(gradientUpdater instanceof SimpleSGD)//special case, use orig code
         {
-            ws[i].mutableSubtract(eta_t*lossD, x);
+            w[i].mutableSubtract(eta_t*lossD, x);
             if(useBias)
                 bs[i] -= eta_t*lossD;
         }
@@ -421,9 +545,9 @@ public class LinearSGD extends BaseUpdateableClassifier implements UpdateableReg
         {
             final Vec grad = new ScaledVector(lossD, x);
             if (useBias)
-                gus[i].update(wsWithBias[i], new ConcatenatedVec(Arrays.asList(grad, new ConstantVector(lossD, 1))), eta);
+                us[i].update(wWithBias[i], new ConcatenatedVec(Arrays.asList(grad, new ConstantVector(lossD, 1))), eta);
             else
-                gus[i].update(ws[i], grad, eta);
+                us[i].update(w[i], grad, eta);
         }
     }
     
@@ -435,9 +559,7 @@ public class LinearSGD extends BaseUpdateableClassifier implements UpdateableReg
         
         applyL2Reg(eta_t);
         
-        final double lossD = ((LossR)loss).getDeriv(ws[0].dot(x)+bs[0], targetValue);
-        
-        performGradientUpdate(0, eta_t, lossD, x);
+        updateR(ws, wsWithBias, gus, eta_t, x, targetValue);
         
         applyL1Reg(eta_t, x);
     }
@@ -493,31 +615,61 @@ public class LinearSGD extends BaseUpdateableClassifier implements UpdateableReg
         if(lambda1 > 0)
         {
             l1U += eta_t*lambda1;//line 6: in Tsuruoka et al paper, figure 2
-            for(int k = 0; k < ws.length; k++)
+            applyL1Penalty(ws, l1U, x);
+        }
+    }
+    
+    /**
+     * Applies the cumulative L1 penalty to the coordinates of the weight 
+     * vectors that are non zero in the input
+     * @param w the weight vectors
+     * @param u the total L1 penalty that could have been applied so far
+     * @param x the input vector the update is from
+     */
+    private void applyL1Penalty(Vec[] w, final double u, Vec x)
+    {
+        for(int k = 0; k < w.length; k++)
+        {
+            final Vec w_k = w[k];
+            final double[] l1Q_k = l1Q[k];
+            for(IndexValue iv : x)
             {
-                final Vec w_k = ws[k];
-                final double[] l1Q_k = l1Q[k];
-                for(IndexValue iv : x)
-                {
-                    final int i = iv.getIndex();
-                    //see "APPLYPENALTY(i)" on line 15: from Figure 2 in Tsuruoka et al paper
-                    final double z = w_k.get(i);
-                    double newW_i;
-                    if (z > 0)
-                        newW_i = Math.max(0, z - (l1U + l1Q_k[i]));
-                    else
-                        newW_i = Math.min(0, z + (l1U - l1Q_k[i]));
-                    l1Q_k[i] += (newW_i - z);
-                    w_k.set(i, newW_i);
-                }
+                final int i = iv.getIndex();
+                //see "APPLYPENALTY(i)" on line 15: from Figure 2 in Tsuruoka et al paper
+                final double z = w_k.get(i);
+                double newW_i;
+                if (z > 0)
+                    newW_i = Math.max(0, z - (u + l1Q_k[i]));
+                else
+                    newW_i = Math.min(0, z + (u - l1Q_k[i]));
+                l1Q_k[i] += (newW_i - z);
+                w_k.set(i, newW_i);
             }
         }
     }
 
+    @Override
+    public void trainC(ClassificationDataSet dataSet, ExecutorService threadPool)
+    {
+        if(threadPool == null || threadPool instanceof FakeExecutor)
+        {
+            trainC(dataSet);
+            return;
+        }
+        setUp(dataSet.getCategories(), dataSet.getNumNumericalVars(), dataSet.getPredicting());
+        trainParallel(dataSet, true, threadPool);
+    }
+
     @Override
     public void train(RegressionDataSet dataSet, ExecutorService threadPool)
     {
-        train(dataSet);
+        if(threadPool == null || threadPool instanceof FakeExecutor)
+        {
+            train(dataSet);
+            return;
+        }
+        setUp(dataSet.getCategories(), dataSet.getNumNumericalVars());
+        trainParallel(dataSet, false, threadPool);
     }
 
     @Override
@@ -525,6 +677,361 @@ public class LinearSGD extends BaseUpdateableClassifier implements UpdateableReg
     {
         BaseUpdateableRegressor.trainEpochs(dataSet, this, getEpochs());
     }
+    
+    /**
+     * Trains the already set up model for the set number of epochs, splitting
+     * a random permutation of the data set into one shard per thread each 
+     * epoch. 
+     * 
+     * @param dataSet the data set to train on
+     * @param classification {@code true} if the data set is a 
+     * {@link ClassificationDataSet}, {@code false} if it is a 
+     * {@link RegressionDataSet}
+     * @param threadPool the source of threads
+     */
+    private void trainParallel(final DataSet dataSet, final boolean classification, ExecutorService threadPool)
+    {
+        final int N = dataSet.getSampleSize();
+        final int P = Math.max(1, Math.min(SystemInfo.LogicalCores, N));
+        final int[] order = new int[N];
+        for(int i = 0; i < N; i++)
+            order[i] = i;
+        
+        ParallelEpoch epochRunner;
+        if(parallelMode == ParallelMode.AVERAGING)
+            epochRunner = new AveragingEpoch(dataSet, classification, order, P);
+        else
+            epochRunner = new HogwildEpoch(dataSet, classification, order, P);
+        
+        for(int epoch = 0; epoch < getEpochs(); epoch++)
+        {
+            //Fisher–Yates shuffle, the shards are re-drawn every epoch
+            for(int i = N-1; i > 0; i--)
+            {
+                int j = rand.nextInt(i+1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+            
+            final CountDownLatch latch = new CountDownLatch(P);
+            for(int id = 0; id < P; id++)
+            {
+                final int ID = id;
+                final ParallelEpoch runner = epochRunner;
+                threadPool.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            runner.runShard(ID);
+                        }
+                        finally
+                        {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+            try
+            {
+                latch.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new FailedToFitException(ex);
+            }
+            epochRunner.endEpoch();
+        }
+        epochRunner.finish();
+    }
+    
+    /**
+     * The work done by each thread in one epoch of parallel training
+     */
+    private abstract class ParallelEpoch
+    {
+        protected final DataSet dataSet;
+        protected final boolean classification;
+        protected final int[] order;
+        protected final int P;
+
+        public ParallelEpoch(DataSet dataSet, boolean classification, int[] order, int P)
+        {
+            this.dataSet = dataSet;
+            this.classification = classification;
+            this.order = order;
+            this.P = P;
+        }
+        
+        /**
+         * Trains on the shard of the current order belonging to the given 
+         * thread
+         * @param id the id of the thread, in [0, P)
+         */
+        abstract public void runShard(int id);
+        
+        /**
+         * Called by the calling thread once all shards of an epoch are done
+         */
+        abstract public void endEpoch();
+        
+        /**
+         * Called by the calling thread once all epochs are done
+         */
+        abstract public void finish();
+    }
+    
+    /**
+     * Hogwild! training. All threads update the same weight vectors without 
+     * any locking. Writes to a double[] are never torn on a 64 bit JVM, so a 
+     * race can only lose an update, which SGD tolerates when the updates are
+     * sparse. <br>
+     * The weights are updated through the base vectors of the 
+     * {@link ScaledVector}s, as a shared scale could not be updated safely. 
+     * Instead, the L<sub>2</sub> penalty is applied just in time: the step at 
+     * which each coordinate was last touched is recorded, and the decay of 
+     * all the steps since is applied when an input next touches it. The 
+     * remaining decay is applied to every coordinate at the end of the epoch.
+     * Each thread keeps its own {@link GradientUpdater} state. 
+     */
+    private class HogwildEpoch extends ParallelEpoch
+    {
+        private final Vec[] bases;
+        private final GradientUpdater[][] workerGus;
+        private final Vec[][] workerWsWithBias;
+        /**
+         * The L<sub>1</sub> penalty added by each thread this epoch
+         */
+        private final double[] workerL1U;
+        /**
+         * The log of the total L<sub>2</sub> decay of the steps before each
+         * position in the epoch, or {@code null} if there is no L<sub>2</sub>
+         * penalty
+         */
+        private final double[] l2LogDecay;
+        /**
+         * The number of steps of the epoch whose L<sub>2</sub> decay has been
+         * applied to each coordinate. Updated by compare and set, so that only
+         * one thread applies the decay of any given steps. 
+         */
+        private final AtomicIntegerArray l2Applied;
+        private final int N;
+
+        public HogwildEpoch(DataSet dataSet, boolean classification, int[] order, int P)
+        {
+            super(dataSet, classification, order, P);
+            N = dataSet.getSampleSize();
+            bases = new Vec[ws.length];
+            for(int k = 0; k < ws.length; k++)
+            {
+                ((ScaledVector) ws[k]).embedScale();
+                bases[k] = ((ScaledVector) ws[k]).getBase();
+            }
+            workerGus = new GradientUpdater[P][ws.length];
+            workerWsWithBias = new Vec[P][ws.length];
+            for(int id = 0; id < P; id++)
+                for(int k = 0; k < ws.length; k++)
+                {
+                    workerGus[id][k] = gus[k].clone();
+                    if(useBias)
+                        workerWsWithBias[id][k] = new ConcatenatedVec(Arrays.asList(bases[k], new DenseVector(bs, k, k+1)));
+                    else
+                        workerWsWithBias[id][k] = bases[k];
+                }
+            workerL1U = new double[P];
+            
+            if(lambda0 > 0)
+            {
+                l2LogDecay = new double[N+1];
+                l2Applied = new AtomicIntegerArray(ws[0].length());
+                setL2LogDecay();
+            }
+            else
+            {
+                l2LogDecay = null;
+                l2Applied = null;
+            }
+        }
+        
+        /**
+         * Fills in {@link #l2LogDecay} for the epoch starting at the current 
+         * time
+         */
+        private void setL2LogDecay()
+        {
+            for(int p = 0; p < N; p++)
+            {
+                //clamped so that a full decay leaves a finite log
+                final double shrink = Math.max(Double.MIN_NORMAL, 1-decay.rate(time+p, eta)*lambda0);
+                l2LogDecay[p+1] = l2LogDecay[p] + Math.log(shrink);
+            }
+        }
+        
+        /**
+         * Applies the L<sub>2</sub> decay to coordinate {@code j} of every 
+         * weight vector for all the steps of the epoch before {@code p}
+         * @param j the coordinate to bring up to date
+         * @param p the number of steps of the epoch that should be applied
+         */
+        private void applyL2(final int j, final int p)
+        {
+            int applied;
+            do
+            {
+                applied = l2Applied.get(j);
+                if(applied >= p)//another thread is ahead of us
+                    return;
+            }
+            while(!l2Applied.compareAndSet(j, applied, p));
+            //only the thread that advanced the count applies these steps
+            final double shrink = Math.exp(l2LogDecay[p]-l2LogDecay[applied]);
+            for(Vec b : bases)
+                b.set(j, b.get(j)*shrink);
+        }
+
+        @Override
+        public void runShard(int id)
+        {
+            final int start = ParallelUtils.getStartBlock(N, id, P);
+            final int end = ParallelUtils.getEndBlock(N, id, P);
+            final GradientUpdater[] us = workerGus[id];
+            final Vec[] wWithBias = workerWsWithBias[id];
+            final double l1UStart = l1U;
+            double localL1U = 0;
+            for(int pos = start; pos < end; pos++)
+            {
+                final int i = order[pos];
+                //the interleaved position of this update among all threads
+                final int t = time + (pos-start)*P + id;
+                final double eta_t = decay.rate(t, eta);
+                final Vec x = dataSet.getDataPoint(i).getNumericalValues();
+                
+                if(l2LogDecay != null)
+                    for(IndexValue iv : x)
+                        applyL2(iv.getIndex(), t-time+1);
+                
+                if(classification)
+                    updateC(bases, wWithBias, us, eta_t, x, ((ClassificationDataSet) dataSet).getDataPointCategory(i));
+                else
+                    updateR(bases, wWithBias, us, eta_t, x, ((RegressionDataSet) dataSet).getTargetValue(i));
+                
+                if(lambda1 > 0)
+                {
+                    localL1U += eta_t*lambda1;
+                    //the other threads add their penalty at about the same rate
+                    applyL1Penalty(bases, l1UStart + localL1U*P, x);
+                }
+            }
+            workerL1U[id] = localL1U;
+        }
+
+        @Override
+        public void endEpoch()
+        {
+            if(l2LogDecay != null)
+            {
+                for(int j = 0; j < l2Applied.length(); j++)
+                {
+                    applyL2(j, N);
+                    l2Applied.set(j, 0);
+                }
+            }
+            time += N;
+            if(l2LogDecay != null)
+                setL2LogDecay();
+            for(int id = 0; id < P; id++)
+                l1U += workerL1U[id];
+        }
+
+        @Override
+        public void finish()
+        {
+            gus = workerGus[0];
+        }
+    }
+    
+    /**
+     * Iterative parameter mixing. Each thread trains its own copy of the model
+     * on its shard, exactly as the serial algorithm would, and the weights of
+     * the copies are averaged at the end of each epoch. The result does not 
+     * depend on the timing of the threads. 
+     */
+    private class AveragingEpoch extends ParallelEpoch
+    {
+        private final LinearSGD[] workers;
+
+        public AveragingEpoch(DataSet dataSet, boolean classification, int[] order, int P)
+        {
+            super(dataSet, classification, order, P);
+            workers = new LinearSGD[P];
+            for(int id = 0; id < P; id++)
+                workers[id] = LinearSGD.this.clone();
+        }
+
+        @Override
+        public void runShard(int id)
+        {
+            final int N = dataSet.getSampleSize();
+            final LinearSGD worker = workers[id];
+            for(int pos = ParallelUtils.getStartBlock(N, id, P); pos < ParallelUtils.getEndBlock(N, id, P); pos++)
+            {
+                final int i = order[pos];
+                if(classification)
+                    worker.update(dataSet.getDataPoint(i), ((ClassificationDataSet) dataSet).getDataPointCategory(i));
+                else
+                    worker.update(dataSet.getDataPoint(i), ((RegressionDataSet) dataSet).getTargetValue(i));
+            }
+        }
+
+        @Override
+        public void endEpoch()
+        {
+            time += dataSet.getSampleSize();
+            l1U = 0;
+            for(int k = 0; k < ws.length; k++)
+            {
+                ws[k].zeroOut();
+                bs[k] = 0;
+                if(l1Q != null)
+                    Arrays.fill(l1Q[k], 0.0);
+                for(LinearSGD worker : workers)
+                {
+                    ws[k].mutableAdd(1.0/P, worker.ws[k]);
+                    bs[k] += worker.bs[k]/P;
+                    if(l1Q != null)
+                        for(int j = 0; j < l1Q[k].length; j++)
+                            l1Q[k][j] += worker.l1Q[k][j]/P;
+                }
+            }
+            for(LinearSGD worker : workers)
+                l1U += worker.l1U/P;
+            
+            //every copy starts the next epoch from the average
+            for(LinearSGD worker : workers)
+            {
+                for(int k = 0; k < ws.length; k++)
+                {
+                    worker.ws[k].zeroOut();
+                    worker.ws[k].mutableAdd(ws[k]);
+                    worker.bs[k] = bs[k];
+                    if(l1Q != null)
+                        System.arraycopy(l1Q[k], 0, worker.l1Q[k], 0, l1Q[k].length);
+                }
+                worker.l1U = l1U;
+            }
+        }
+
+        @Override
+        public void finish()
+        {
+            for(int k = 0; k < gus.length; k++)
+                gus[k] = workers[0].gus[k];
+        }
+    }
 
     @Override
     public List<Parameter> getParameters()
@@ -1,12 +1,15 @@
 package jsat.classifiers.linear;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import jsat.classifiers.*;
+import jsat.exceptions.FailedToFitException;
 import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 import jsat.utils.IntList;
-import jsat.utils.ListUtils;
 import static java.lang.Math.*;
 import java.util.*;
 import jsat.SingleWeightVectorModel;
@@ -14,6 +17,9 @@ import jsat.linear.*;
 import jsat.lossfunctions.LogisticLoss;
 import jsat.parameters.Parameter;
 import jsat.parameters.Parameterized;
+import jsat.utils.FakeExecutor;
+import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ParallelUtils;
 
 /**
  * NewGLMNET is a batch method for solving Elastic Net regularized Logistic
@@ -31,6 +37,12 @@ import jsat.parameters.Parameterized;
  * sparsity for some problems. 
  * <br>
  * <br>
+ * A whole regularization path of models can be fit at once with 
+ * {@link #trainPath(ClassificationDataSet, int, ExecutorService) trainPath}, 
+ * which warm starts each model from the last and uses the strong rules of 
+ * Tibshirani et al. to screen out features that will likely remain zero. 
+ * <br>
+ * <br>
  * See:
  * <ul>
  * <li>Yuan, G., Ho, C.-H., & Lin, C. (2012). <i>An improved GLMNET for 
@@ -42,6 +54,10 @@ import jsat.parameters.Parameterized;
  * <li>Zou, H., & Hastie, T. (2005). <i>Regularization and variable selection 
  * via the elastic net</i>. Journal of the Royal Statistical Society, Series B, 
  * 67(2), 301–320. doi:10.1111/j.1467-9868.2005.00503.x</li>
+ * <li>Tibshirani, R., Bien, J., Friedman, J., Hastie, T., Simon, N., Taylor, 
+ * J., & Tibshirani, R. J. (2012). <i>Strong rules for discarding predictors in
+ * lasso-type problems</i>. Journal of the Royal Statistical Society, Series B,
+ * 74(2), 245–266. doi:10.1111/j.1467-9868.2011.01004.x</li>
  * </ul>
  * 
  * @author Edward Raff
@@ -62,6 +78,11 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
      * {@value #DEFAULT_MAX_OUTER_ITER} . 
      */
     public static final int DEFAULT_MAX_OUTER_ITER = 100;
+    /**
+     * When &alpha; = 0 every weight is non-zero for any C, so the 
+     * regularization path starts at C times this ratio. 
+     */
+    private static final double PATH_RATIO_RIDGE = 1e-4;
     
     /**
      * Weight vector
@@ -265,11 +286,172 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
     @Override
     public void trainC(ClassificationDataSet dataSet, ExecutorService threadPool)
     {
-        trainC(dataSet);
+        TrainingData td = new TrainingData(dataSet, useBias);
+        w = new DenseVector(td.n);
+        b = 0;
+        solve(td, null, -1, threadPool);
     }
     
     @Override
     public void trainC(ClassificationDataSet dataSet)
+    {
+        trainC(dataSet, null);
+    }
+    
+    /**
+     * Fits the regularization path of models for a geometric sequence of 
+     * values of C, ending with the value of C currently set. For &alpha; &gt; 0
+     * the path starts at the largest C for which every weight is zero, and for
+     * &alpha; = 0 it starts at C times {@value #PATH_RATIO_RIDGE}. If every 
+     * weight is zero at the current C, only one model is returned. <br>
+     * Each model is warm started from the solution of the one before it, and 
+     * features are screened out by the sequential strong rule. Any screened 
+     * out feature that violates the optimality conditions of the solution is 
+     * added back and the model is re-solved. <br>
+     * When done, this object holds the last model of the path. 
+     * 
+     * @param dataSet the data set to train on
+     * @param pathLength the maximum number of models in the path
+     * @param threadPool the source of threads for training, or {@code null} 
+     * to train on the calling thread
+     * @return the models of the path, in order of increasing C
+     */
+    public List<NewGLMNET> trainPath(ClassificationDataSet dataSet, int pathLength, ExecutorService threadPool)
+    {
+        if(pathLength < 1)
+            throw new IllegalArgumentException("Path length must be positive, not " + pathLength);
+        final double C_final = C;
+        TrainingData td = new TrainingData(dataSet, useBias);
+        final int n = td.n;
+        w = new DenseVector(n);
+        b = 0;
+        boolean[] excluded = new boolean[n];
+        Arrays.fill(excluded, true);
+        if(useBias)//fit the bias alone, which is the model for the smallest C
+            solve(td, excluded, -1, threadPool);
+        
+        double[] G = lossGradient(td, threadPool);
+        final double[] G_0 = Arrays.copyOf(G, n);
+        double G_max = 0;
+        for(double G_j : G)
+            G_max = max(G_max, abs(G_j));
+        //for C <= alpha/G_max, w = 0 is optimal
+        final boolean zeroAtStart = alpha > 0 && G_max > 0;
+        final double C_start = zeroAtStart ? alpha/G_max : C_final*PATH_RATIO_RIDGE;
+        final int steps = C_start >= C_final ? 1 : pathLength;
+        
+        List<NewGLMNET> path = new ArrayList<NewGLMNET>(steps);
+        double C_prev = C_start;
+        for(int k = 0; k < steps; k++)
+        {
+            final double C_k = k == steps-1 ? C_final : C_start*pow(C_final/C_start, k/(steps-1.0));
+            C = C_k;
+            if(k == 0 && steps > 1 && zeroAtStart)//we already know w = 0 is the solution
+            {
+                path.add(clone());
+                continue;
+            }
+            
+            //sequential strong rule, in terms of the L1 penalty alpha/C
+            final double threshold = alpha*(2/C_k - 1/C_prev);
+            for(int j = 0; j < n; j++)
+                excluded[j] = w.get(j) == 0 && abs(G[j]) < threshold;
+            
+            /*
+             * A warm start is already close to the solution, so measure the 
+             * tolerance against the starting point of a cold start like 
+             * trainC would, rather than the warm start. 
+             */
+            double M_bar_ref = 0;
+            for(int j = 0; j < n; j++)
+                M_bar_ref += max(C_k*abs(G_0[j])-alpha, 0);
+            if(M_bar_ref == 0)//w = 0 is optimal, let the solver confirm it
+                M_bar_ref = -1;
+            
+            boolean violations = true;
+            while(violations)
+            {
+                solve(td, excluded, M_bar_ref, threadPool);
+                G = lossGradient(td, threadPool);
+                //a zero weight is optimal only if |C ∇_j L| <= alpha
+                violations = false;
+                for(int j = 0; j < n; j++)
+                    if(excluded[j] && C_k*abs(G[j]) > alpha)
+                    {
+                        excluded[j] = false;
+                        violations = true;
+                    }
+            }
+            
+            path.add(clone());
+            C_prev = C_k;
+        }
+        
+        return path;
+    }
+    
+    /**
+     * Fits the regularization path of models on the calling thread
+     * @param dataSet the data set to train on
+     * @param pathLength the maximum number of models in the path
+     * @return the models of the path, in order of increasing C
+     * @see #trainPath(ClassificationDataSet, int, ExecutorService) 
+     */
+    public List<NewGLMNET> trainPath(ClassificationDataSet dataSet, int pathLength)
+    {
+        return trainPath(dataSet, pathLength, null);
+    }
+    
+    /**
+     * Computes the gradient of the un-regularized and un-weighted loss with 
+     * respect to each weight, at the current solution
+     * @param td the training data
+     * @param threadPool the source of threads, or {@code null}
+     * @return the gradient for each feature
+     */
+    private double[] lossGradient(final TrainingData td, ExecutorService threadPool)
+    {
+        final double[] D_part = new double[td.l];
+        runBlocks(td.l, threadPool, new BlockTask()
+        {
+            @Override
+            public double run(int start, int end)
+            {
+                for(int i = start; i < end; i++)
+                    D_part[i] = 1/(1+exp(w.dot(td.X.get(i))+b));
+                return 0;
+            }
+        });
+        final double[] G = new double[td.n];
+        runBlocks(td.n, threadPool, new BlockTask()
+        {
+            @Override
+            public double run(int start, int end)
+            {
+                for(int j = start; j < end; j++)
+                {
+                    double G_j = td.col_neg_class_sum[j];
+                    for(IndexValue iv : td.columnsOfX.get(j))
+                        G_j -= iv.getValue()*D_part[iv.getIndex()];
+                    G[j] = G_j;
+                }
+                return 0;
+            }
+        });
+        return G;
+    }
+    
+    /**
+     * Runs NewGLMNET starting from the current weights and bias
+     * @param td the training data
+     * @param excluded the features whose weights are fixed at zero, or 
+     * {@code null} to use every feature
+     * @param M_bar_ref the value the convergence tolerance is relative to, or
+     * a negative value to use the value of the first iteration
+     * @param threadPool the source of threads for the work done per feature 
+     * and per data point, or {@code null} to do it on the calling thread
+     */
+    private void solve(final TrainingData td, final boolean[] excluded, final double M_bar_ref, ExecutorService threadPool)
     {
         /*
          * The original NewGLMNET paper describes the algorithm as minimizing 
@@ -281,34 +463,32 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
          */
         
         //paper uses n= #features so we will follow their lead
-        final int n = dataSet.getNumNumericalVars();
+        final int n = td.n;
         //l = # data points
-        final int l = dataSet.getSampleSize();
+        final int l = td.l;
         
-        w = new DenseVector(n);
-        b = 0;
-        List<Vec> X = dataSet.getDataVectors();
+        final List<Vec> X = td.X;
         
         double first_M_bar = 0;
         double e_in = 1.0;//set later when first_M_bar is set
         
-        double[] w_dot_x = new double[l];
-        double[] exp_w_dot_x = new double[l];
-        double[] exp_w_dot_x_plus_dx = new double[l];
+        final double[] w_dot_x = new double[l];
+        final double[] exp_w_dot_x = new double[l];
+        final double[] exp_w_dot_x_plus_dx = new double[l];
         /**
          * Used in the linear search step at the end
          */
-        double[] d_dot_x = new double[l];
+        final double[] d_dot_x = new double[l];
         /**
          * Contains the value 1/(1+e^(w^T x)). This is used in computing D and the partial derivatives. 
          */
-        double[] D_part = new double[l];
-        double[] D = new double[l];
+        final double[] D_part = new double[l];
+        final double[] D = new double[l];
         
         /**
          * Stores the value H<sup>k</sup><sub>j,j</sub> computer at the start of each iteration
          */
-        double[] H = new double[n];
+        final double[] H = new double[n];
         /**
          * Stores the value H<sup>k</sup><sub>j,j</sub> computer at the start of
          * each iteration for the bias term
@@ -317,48 +497,45 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
         /**
          * Stores the value &nambla; L<sub>j</sub>
          */
-        double[] delta_L = new double[n];
+        final double[] delta_L = new double[n];
+        /**
+         * Stores the value &nambla;<sup>S</sup><sub>j</sub> f(w)
+         */
+        final double[] deltaS_fw = new double[n];
         /**
          * The gradient value for the bias term
          */
         double delta_L_bias = 0;
-        float[] y = new float[l];
-        for(int i = 0; i < l; i++)
+        final float[] y = td.y;
+        runBlocks(l, threadPool, new BlockTask()
         {
-            y[i] = dataSet.getDataPointCategory(i)*2-1;
-            w_dot_x[i] = w.dot(X.get(i))+b;
-            final double tmp = exp_w_dot_x_plus_dx[i] = exp_w_dot_x[i] = exp(w_dot_x[i]);
-            final double D_part_i = D_part[i]= 1/(1+tmp);
-            D[i] = tmp*D_part_i*D_part_i;
-        }
+            @Override
+            public double run(int start, int end)
+            {
+                for(int i = start; i < end; i++)
+                {
+                    w_dot_x[i] = w.dot(X.get(i))+b;
+                    final double tmp = exp_w_dot_x_plus_dx[i] = exp_w_dot_x[i] = exp(w_dot_x[i]);
+                    final double D_part_i = D_part[i]= 1/(1+tmp);
+                    D[i] = tmp*D_part_i*D_part_i;
+                }
+                return 0;
+            }
+        });
         double w_norm_1 = w.pNorm(1);
-        double w_norm_2 = w.pNorm(2);
+        double w_norm_2 = pow(w.pNorm(2), 2);
         
-        List<Vec> columnsOfX = new ArrayList<Vec>(n);
+        final List<Vec> columnsOfX = td.columnsOfX;
         /**
          * sum of all x_j values in the negative class. Used for ∇_j L in trick
          * from LIBLINEAR eq(44)
          */
-        double[] col_neg_class_sum = new double[n];
-        for(int j = 0; j < n; j++)
-        {
-            Vec vec = dataSet.getNumericColumn(j);
-            columnsOfX.add(vec);
-            for(IndexValue iv : vec)
-                if(y[iv.getIndex()] == -1)
-                    col_neg_class_sum[j] += iv.getValue();
-        }
+        final double[] col_neg_class_sum = td.col_neg_class_sum;
         
         /**
          * Sum of all x_j values in the negative class for the bias term. 
          */
-        double col_neg_class_sum_bias = 0;
-        if(useBias)
-        {
-            for(int i = 0; i < l; i++)
-                if(y[i] == -1)
-                    col_neg_class_sum_bias++;
-        }
+        final double col_neg_class_sum_bias = td.col_neg_class_sum_bias;
                 
         /**
          * weight for L_1 reg is alpha, so this will be the L_2 weight (1-alpha)
@@ -384,47 +561,65 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
         for(int k = 0; k < maxOuterIters; k++)//For k = 1, 2, 3, . . .
         {
             //algo 3, Step 1.
-            IntList J = new IntList(n);
-            ListUtils.addRange(J, 0, n, 1);
+            final IntList J = new IntList(n);
+            for(int j = 0; j < n; j++)
+                if(excluded == null || !excluded[j])
+                    J.add(j);
             double M = 0;
             double M_bar = 0;
             //algo 3, Step 2. 
-            Iterator<Integer> j_iter = J.iterator();
-            while(j_iter.hasNext())
+            //2.1. is independent for each feature, so it is done in parallel
+            runBlocks(J.size(), threadPool, new BlockTask()
             {
-                int j = j_iter.next();
-                double w_j = w.get(j);
-                
-                //2.1. Calculate H^k_{jj}, ∇_j L(w^k) and ∇^S_j f(w^k)
-                double delta_j_L = 0;
-                double deltaSqrd_L = 0;
-                
-                for(IndexValue x_i : columnsOfX.get(j))
+                @Override
+                public double run(int start, int end)
                 {
-                    int i = x_i.getIndex();
-                    double val = x_i.getValue();
-                    
-                    delta_j_L += -val*D_part[i];
-                    //eq(44) from LIBLINEAR paper , re-factored to avoid a division by using D_part
-                    deltaSqrd_L += val*val*D[i];
+                    for(int pos = start; pos < end; pos++)
+                    {
+                        final int j = J.getI(pos);
+                        final double w_j = w.get(j);
+                        
+                        //2.1. Calculate H^k_{jj}, ∇_j L(w^k) and ∇^S_j f(w^k)
+                        double delta_j_L = 0;
+                        double deltaSqrd_L = 0;
+
+                        for(IndexValue x_i : columnsOfX.get(j))
+                        {
+                            int i = x_i.getIndex();
+                            double val = x_i.getValue();
+
+                            delta_j_L += -val*D_part[i];
+                            //eq(44) from LIBLINEAR paper , re-factored to avoid a division by using D_part
+                            deltaSqrd_L += val*val*D[i];
+                        }
+                        delta_L[j] = delta_j_L = l2w*w_j + C*(delta_j_L + col_neg_class_sum[j]);
+                        //H^k from eq (19)
+                        /*
+                         * regular is C X^T D X, L2 just adds + I , but we are alreayd 
+                         * doing + eps * I to make sure the gradient is there. So just 
+                         * do the max of v and lambda_2
+                         */
+                        H[j] = C*deltaSqrd_L + max(v, l2w);
+
+                        if(w_j > 0)
+                            deltaS_fw[j] = delta_j_L+alpha;
+                        else if(w_j < 0)
+                            deltaS_fw[j] = delta_j_L-alpha;
+                        else//w_j = 0
+                            deltaS_fw[j] = signum(delta_j_L)*max(abs(delta_j_L)-alpha, 0);
+                    }
+                    return 0;
                 }
-                delta_L[j] = delta_j_L = l2w*w_j + C*(delta_j_L + col_neg_class_sum[j]);
-                //H^k from eq (19)
-                /*
-                 * regular is C X^T D X, L2 just adds + I , but we are alreayd 
-                 * doing + eps * I to make sure the gradient is there. So just 
-                 * do the max of v and lambda_2
-                 */
-                H[j] = C*deltaSqrd_L + max(v, l2w);
-
-                double deltaS_j_fw;
-                if(w_j > 0)
-                    deltaS_j_fw = delta_j_L+alpha;
-                else if(w_j < 0)
-                    deltaS_j_fw = delta_j_L-alpha;
-                else//w_j = 0
-                    deltaS_j_fw = signum(delta_j_L)*max(abs(delta_j_L)-alpha, 0);
-                //done with step 2, we have all the info
+            });
+            //done with step 2.1, we have all the info
+            
+            Iterator<Integer> j_iter = J.iterator();
+            while(j_iter.hasNext())
+            {
+                final int j = j_iter.next();
+                final double w_j = w.get(j);
+                final double delta_j_L = delta_L[j];
+                final double deltaS_j_fw = deltaS_fw[j];
                 
                 //2.2. If w^k_j = 0 and |∇_j L(w^k)| < 1−M^out/l   // outer-level shrinking
                 //then J ←J\{j}.
@@ -442,15 +637,10 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
             if(useBias)
             {
                 //2.1. Calculate H^k_{jj}, ∇_j L(w^k) and ∇^S_j f(w^k)
-                double delta_j_L = 0;
-                double deltaSqrd_L = 0;
-                
-                for(int i = 0; i < l ; i++)//all have an implicit bias term
-                {
-                    delta_j_L += -D_part[i];
-                    //eq(44) from LIBLINEAR paper , re-factored to avoid a division by using D_part
-                    deltaSqrd_L += D[i];
-                }
+                //all have an implicit bias term
+                double delta_j_L = -sum(D_part, threadPool);
+                //eq(44) from LIBLINEAR paper , re-factored to avoid a division by using D_part
+                double deltaSqrd_L = sum(D, threadPool);
                 delta_L_bias = delta_j_L = C*(delta_j_L + col_neg_class_sum_bias);
                 //H^k from eq (19) , but dont need v * I since its the bias term
                 H_bias = C*deltaSqrd_L + v;
@@ -461,7 +651,11 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
             }
             
             if (k == 0)//first run
+            {
                 e_in = first_M_bar = M_bar;
+                if(M_bar_ref >= 0)
+                    first_M_bar = M_bar_ref;
+            }
             //algo 3, Step 3. 3. If M_bar ≤ eps_out ,  return w^k 
             
             if(M_bar <= e_out*first_M_bar)
@@ -663,15 +857,24 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
             while(t < maxLineSearchSteps)//we may want to adjust this as beta changes
             {
                 //"For line search, we use the following form of the sufficient decrease condition" eq(45) from LIBLINEAR paper Aug 2014
-                double newTerm = 0;
-                for(int i = 0; i < l; i++)
+                final double lambda_t = lambda;
+                double newTerm = runBlocks(l, threadPool, new BlockTask()
                 {
-                    double exp_lamda_d_dot_x = exp(lambda*d_dot_x[i]);
-                    exp_w_dot_x_plus_dx[i] = exp_w_dot_x[i]*exp_lamda_d_dot_x;
-                    newTerm += log((exp_w_dot_x_plus_dx[i]+1)/(exp_w_dot_x_plus_dx[i]+exp_lamda_d_dot_x  ));
-                    if(y[i] == -1)
-                        newTerm += lambda*d_dot_x[i];
-                }
+                    @Override
+                    public double run(int start, int end)
+                    {
+                        double newTerm = 0;
+                        for(int i = start; i < end; i++)
+                        {
+                            double exp_lamda_d_dot_x = exp(lambda_t*d_dot_x[i]);
+                            exp_w_dot_x_plus_dx[i] = exp_w_dot_x[i]*exp_lamda_d_dot_x;
+                            newTerm += log((exp_w_dot_x_plus_dx[i]+1)/(exp_w_dot_x_plus_dx[i]+exp_lamda_d_dot_x  ));
+                            if(y[i] == -1)
+                                newTerm += lambda_t*d_dot_x[i];
+                        }
+                        return newTerm;
+                    }
+                });
                 
                 newTerm = l2w*(wPlambda_d_norm_2 - w_norm_2) +//l2 reg
                         alpha*(wPlambda_d_norm_1 - w_norm_1) + //l1 reg
@@ -712,12 +915,21 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
             //val from last line search is new w
             System.arraycopy(exp_w_dot_x_plus_dx, 0, exp_w_dot_x, 0, l);
             //(w+lambda d)^T  x = w^T x + d^T x
-            for(int i = 0; i < l; i++)
+            final double lambda_final = lambda;
+            runBlocks(l, threadPool, new BlockTask()
             {
-                w_dot_x[i] += lambda*d_dot_x[i];
-                final double D_part_i = D_part[i]= 1/(1+exp_w_dot_x[i]);
-                D[i] = exp_w_dot_x[i]*D_part_i*D_part_i;
-            }
+                @Override
+                public double run(int start, int end)
+                {
+                    for(int i = start; i < end; i++)
+                    {
+                        w_dot_x[i] += lambda_final*d_dot_x[i];
+                        final double D_part_i = D_part[i]= 1/(1+exp_w_dot_x[i]);
+                        D[i] = exp_w_dot_x[i]*D_part_i*D_part_i;
+                    }
+                    return 0;
+                }
+            });
             Arrays.fill(d_dot_x, 0.0);//new d = 0, always
             
 //            double objVal = 0;
@@ -729,6 +941,146 @@ public class NewGLMNET implements Classifier, Parameterized, SingleWeightVectorM
         }
     }
 
+    /**
+     * Work done over a contiguous range of indices
+     */
+    private static abstract class BlockTask
+    {
+        /**
+         * 
+         * @param start the first index to work on, inclusive
+         * @param end the last index to work on, exclusive
+         * @return a partial sum, or zero if nothing is being summed
+         */
+        abstract public double run(int start, int end);
+    }
+    
+    /**
+     * Splits the indices [0, N) into one contiguous block per core and runs 
+     * the task on each block. 
+     * @param N the number of indices
+     * @param threadPool the source of threads, or {@code null} to run on the 
+     * calling thread
+     * @param task the task to run
+     * @return the sum of the values returned for each block, added in block 
+     * order so that the result does not depend on the timing of the threads
+     */
+    private static double runBlocks(final int N, ExecutorService threadPool, final BlockTask task)
+    {
+        if(threadPool == null || threadPool instanceof FakeExecutor || SystemInfo.LogicalCores == 1 || N <= 1)
+            return task.run(0, N);
+        final int P = min(SystemInfo.LogicalCores, N);
+        List<Future<Double>> futures = new ArrayList<Future<Double>>(P);
+        for(int id = 0; id < P; id++)
+        {
+            final int start = ParallelUtils.getStartBlock(N, id, P);
+            final int end = ParallelUtils.getEndBlock(N, id, P);
+            futures.add(threadPool.submit(new Callable<Double>()
+            {
+                @Override
+                public Double call() throws Exception
+                {
+                    return task.run(start, end);
+                }
+            }));
+        }
+        double sum = 0;
+        try
+        {
+            for(Future<Double> future : futures)
+                sum += future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new FailedToFitException(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new FailedToFitException(ex);
+        }
+        return sum;
+    }
+    
+    /**
+     * 
+     * @param a the array to sum
+     * @param threadPool the source of threads, or {@code null}
+     * @return the sum of the values in the array
+     */
+    private static double sum(final double[] a, ExecutorService threadPool)
+    {
+        return runBlocks(a.length, threadPool, new BlockTask()
+        {
+            @Override
+            public double run(int start, int end)
+            {
+                double sum = 0;
+                for(int i = start; i < end; i++)
+                    sum += a[i];
+                return sum;
+            }
+        });
+    }
+    
+    /**
+     * The parts of the data set used by the solver, which are shared by every 
+     * model of a regularization path
+     */
+    private static class TrainingData
+    {
+        /**
+         * Number of features
+         */
+        final int n;
+        /**
+         * Number of data points
+         */
+        final int l;
+        final List<Vec> X;
+        final List<Vec> columnsOfX;
+        final float[] y;
+        /**
+         * sum of all x_j values in the negative class. Used for ∇_j L in trick
+         * from LIBLINEAR eq(44)
+         */
+        final double[] col_neg_class_sum;
+        /**
+         * Sum of all x_j values in the negative class for the bias term. 
+         */
+        final double col_neg_class_sum_bias;
+
+        public TrainingData(ClassificationDataSet dataSet, boolean useBias)
+        {
+            n = dataSet.getNumNumericalVars();
+            l = dataSet.getSampleSize();
+            X = dataSet.getDataVectors();
+            y = new float[l];
+            for(int i = 0; i < l; i++)
+                y[i] = dataSet.getDataPointCategory(i)*2-1;
+            
+            columnsOfX = new ArrayList<Vec>(n);
+            col_neg_class_sum = new double[n];
+            for(int j = 0; j < n; j++)
+            {
+                Vec vec = dataSet.getNumericColumn(j);
+                columnsOfX.add(vec);
+                for(IndexValue iv : vec)
+                    if(y[iv.getIndex()] == -1)
+                        col_neg_class_sum[j] += iv.getValue();
+            }
+            
+            double negCount = 0;
+            if(useBias)
+            {
+                for(int i = 0; i < l; i++)
+                    if(y[i] == -1)
+                        negCount++;
+            }
+            col_neg_class_sum_bias = negCount;
+        }
+    }
+
     @Override
     public boolean supportsWeightedData()
     {
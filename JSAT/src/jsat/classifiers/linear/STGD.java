@@ -14,6 +14,7 @@ import jsat.parameters.Parameterized;
 import jsat.regression.BaseUpdateableRegressor;
 import jsat.regression.RegressionDataSet;
 import jsat.regression.UpdateableRegressor;
+import jsat.utils.FakeExecutor;
 
 /**
  * This provides an implementation of Sparse Truncated Gradient Descent for 
@@ -28,6 +29,12 @@ import jsat.regression.UpdateableRegressor;
  * truncated gradient</i>. The Journal of Machine Learning Research, 10, 
  * 777–801. Retrieved from <a href="http://dl.acm.org/citation.cfm?id=1577097">
  * here</a>
+ * <br><br>
+ * When given a thread pool, training averages copies of the model that are 
+ * each trained on a part of every epoch. Each copy counts its updates as many
+ * times as there are parts, so the gravity applied to the average matches 
+ * that of a serial epoch. 
+ * 
  * @author Edward Raff
  */
 public class STGD extends BaseUpdateableClassifier implements UpdateableRegressor, BinaryScoreClassifier, Parameterized, SingleWeightVectorModel
@@ -41,6 +48,11 @@ public class STGD extends BaseUpdateableClassifier implements UpdateableRegresso
     
     private int time;
     private int[] t;
+    /**
+     * How far each update advances {@link #time}, which is the number of 
+     * shards for a copy trained on one shard of each epoch
+     */
+    private int timeStep = 1;
     
     /**
      * Creates a new STGD learner
@@ -70,6 +82,7 @@ public class STGD extends BaseUpdateableClassifier implements UpdateableRegresso
         this.threshold = toCopy.threshold;
         this.gravity = toCopy.gravity;
         this.time = toCopy.time;
+        this.timeStep = toCopy.timeStep;
         if(toCopy.t != null)
             this.t = Arrays.copyOf(toCopy.t, toCopy.t.length);
     }
@@ -225,7 +238,47 @@ public class STGD extends BaseUpdateableClassifier implements UpdateableRegresso
     @Override
     public void train(RegressionDataSet dataSet, ExecutorService threadPool)
     {
-        train(dataSet);
+        if(threadPool == null || threadPool instanceof FakeExecutor)
+        {
+            train(dataSet);
+            return;
+        }
+        setUp(dataSet.getCategories(), dataSet.getNumNumericalVars());
+        trainAveraged(dataSet, threadPool);
+    }
+
+    @Override
+    protected boolean supportsModelAveraging()
+    {
+        return true;
+    }
+
+    @Override
+    protected STGD copyForShard(int shards)
+    {
+        STGD copy = clone();
+        copy.timeStep = shards;
+        return copy;
+    }
+
+    @Override
+    protected void averageModels(List<BaseUpdateableClassifier> models)
+    {
+        final int P = models.size();
+        w.zeroOut();
+        long timeSum = 0;
+        long[] tSums = new long[t.length];
+        for(BaseUpdateableClassifier model : models)
+        {
+            STGD copy = (STGD) model;
+            w.mutableAdd(1.0/P, copy.w);
+            timeSum += copy.time;
+            for(int j = 0; j < t.length; j++)
+                tSums[j] += copy.t[j];
+        }
+        time = (int) (timeSum/P);
+        for(int j = 0; j < t.length; j++)
+            t[j] = (int) (tSums[j]/P);
     }
 
     @Override
@@ -247,7 +300,7 @@ public class STGD extends BaseUpdateableClassifier implements UpdateableRegresso
     @Override
     public void update(DataPoint dataPoint, int targetClass)
     {
-        time++;
+        time += timeStep;
         final Vec x = dataPoint.getNumericalValues();
         final int y = targetClass*2-1;
         final int yHat = (int) Math.signum(w.dot(x));
@@ -259,7 +312,7 @@ public class STGD extends BaseUpdateableClassifier implements UpdateableRegresso
     @Override
     public void update(DataPoint dataPoint, final double y)
     {
-        time++;
+        time += timeStep;
         final Vec x = dataPoint.getNumericalValues();
         final double yHat = w.dot(x);
         performUpdate(x, y, yHat);
@@ -0,0 +1,349 @@
+package jsat.classifiers.svm;
+
+import java.util.Arrays;
+
+/**
+ * A memory bounded cache of rows of a symmetric kernel matrix, used by
+ * {@link SupportVectorLearner} for {@link SupportVectorLearner.CacheMode#ROWS}.
+ * <br><br>
+ * The rows are split into stripes, and row <i>i</i> always belongs to stripe
+ * <i>i</i> mod <i>S</i>. Each stripe has its own lock and a fixed number of
+ * pooled row arrays, which are reused rather than reallocated when a row is
+ * evicted. Eviction within a stripe uses the CLOCK policy, which only needs to
+ * set a reference bit on a hit instead of re-ordering a list. Kernel values
+ * are computed lazily one element at a time and outside of any lock, so
+ * multiple threads may fill rows concurrently. The diagonal is stored on its
+ * own, so the many k(i, i) lookups made by SMO style solvers do not insert and
+ * evict whole rows.
+ * <br><br>
+ * Rows may be stored as {@code float}s to double the number of rows that fit
+ * in the same amount of memory, at the cost of precision. The diagonal is then
+ * rounded to {@code float} as well, so every value returned has the same
+ * precision.
+ *
+ * @author Edward Raff
+ */
+abstract class KernelRowCache
+{
+    /**
+     * Assumed per row overhead of an array object header and reference, in
+     * bytes
+     */
+    private static final int ROW_OVERHEAD = 32;
+
+    private final int N;
+    private final boolean useFloats;
+    private final Stripe[] stripes;
+    /**
+     * The slot within its stripe that each row is stored in, or -1 if not
+     * present. Entry <i>i</i> is only accessed while holding the lock of the
+     * stripe that row <i>i</i> belongs to.
+     */
+    private final int[] slotOf;
+    /**
+     * The diagonal of the kernel matrix, kept separately so that looking up a
+     * self similarity does not cost a whole row. Entry <i>i</i> is guarded like
+     * {@link #slotOf}.
+     */
+    private final double[] diag;
+
+    /**
+     * Creates a new kernel row cache
+     * @param N the number of rows and columns in the kernel matrix
+     * @param maxRows the maximum number of rows to hold at one time
+     * @param useFloats {@code true} to store values as floats, {@code false}
+     * to store them as doubles
+     * @param stripeCount the number of independently locked stripes to use.
+     * This will be reduced if there are fewer rows than stripes.
+     */
+    public KernelRowCache(int N, int maxRows, boolean useFloats, int stripeCount)
+    {
+        if(N <= 0)
+            throw new IllegalArgumentException("Kernel matrix must have at least one row, not " + N);
+        if(maxRows <= 0)
+            throw new IllegalArgumentException("Cache must hold at least one row, not " + maxRows);
+        if(stripeCount <= 0)
+            throw new IllegalArgumentException("Stripe count must be positive, not " + stripeCount);
+        this.N = N;
+        this.useFloats = useFloats;
+        maxRows = Math.min(maxRows, N);
+        stripeCount = Math.min(stripeCount, maxRows);
+        stripes = new Stripe[stripeCount];
+        for(int s = 0; s < stripeCount; s++)
+            stripes[s] = new Stripe(maxRows/stripeCount + (s < maxRows%stripeCount ? 1 : 0));
+        slotOf = new int[N];
+        Arrays.fill(slotOf, -1);
+        diag = new double[N];
+        Arrays.fill(diag, Double.NaN);
+    }
+
+    /**
+     * Returns the number of rows that can be stored in the given amount of
+     * memory
+     * @param N the length of each row
+     * @param bytes the number of bytes of memory to use
+     * @param useFloats whether or not rows will be stored as floats
+     * @return the number of rows that fit in the memory, at least one
+     */
+    public static int rowsForBytes(long N, long bytes, boolean useFloats)
+    {
+        long bytesPerRow = N*(useFloats ? Float.SIZE : Double.SIZE)/8 + ROW_OVERHEAD;
+        return (int) Math.min(Math.max(1, bytes/bytesPerRow), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes the kernel value for the given pair of rows. This may be called
+     * concurrently.
+     * @param a the first index
+     * @param b the second index
+     * @return the kernel value k(a, b)
+     */
+    abstract protected double compute(int a, int b);
+
+    /**
+     * Returns the kernel value k(a, b), computing it if it is not yet cached.
+     * If row <i>a</i> is not present but row <i>b</i> is, row <i>b</i> will be
+     * used instead. If neither is present, row <i>a</i> is inserted, evicting
+     * another row of its stripe if necessary.
+     *
+     * @param a the row index
+     * @param b the column index
+     * @return the kernel value k(a, b)
+     */
+    public double get(int a, int b)
+    {
+        Stripe sa = stripes[a % stripes.length];
+        if(a == b)
+        {
+            synchronized(sa)
+            {
+                if(!Double.isNaN(diag[a]))
+                {
+                    sa.hits++;
+                    return diag[a];
+                }
+            }
+            double val = compute(a, a);
+            if(useFloats)//same precision as the rest of the matrix
+                val = (float) val;
+            synchronized(sa)
+            {
+                sa.misses++;
+                diag[a] = val;
+            }
+            return val;
+        }
+        int slot;
+        synchronized(sa)
+        {
+            slot = slotOf[a];
+            if(slot >= 0)
+            {
+                double val = sa.lookup(slot, b);
+                if(!Double.isNaN(val))
+                    return val;
+            }
+        }
+
+        if(slot < 0)//try seeing if b has a row present
+        {
+            Stripe sb = stripes[b % stripes.length];
+            int bSlot;
+            synchronized(sb)
+            {
+                bSlot = slotOf[b];
+                if(bSlot >= 0)
+                {
+                    double val = sb.lookup(bSlot, a);
+                    if(!Double.isNaN(val))
+                        return val;
+                }
+            }
+            if(bSlot >= 0)
+                return fill(sb, b, bSlot, a);
+        }
+
+        if(slot < 0)//neither are in - lets go with a
+            synchronized(sa)
+            {
+                slot = slotOf[a];
+                if(slot < 0)
+                    slot = sa.insert(a);
+            }
+        return fill(sa, a, slot, b);
+    }
+
+    /**
+     * Computes the value of a cache miss outside of any lock, and stores it if
+     * the row was not evicted in the mean time
+     */
+    private double fill(Stripe stripe, int row, int slot, int col)
+    {
+        double val = compute(row, col);
+        synchronized(stripe)
+        {
+            stripe.misses++;
+            if(slotOf[row] == slot)
+                stripe.store(slot, col, val);
+        }
+        if(useFloats)//return what a later hit would see
+            return (float) val;
+        return val;
+    }
+
+    /**
+     * Returns the number of lookups that found their value in the cache
+     * @return the number of cache hits
+     */
+    public long getHits()
+    {
+        long hits = 0;
+        for(Stripe s : stripes)
+            synchronized(s)
+            {
+                hits += s.hits;
+            }
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to compute their value, which is
+     * the number of kernel evaluations performed by the cache
+     * @return the number of cache misses
+     */
+    public long getMisses()
+    {
+        long misses = 0;
+        for(Stripe s : stripes)
+            synchronized(s)
+            {
+                misses += s.misses;
+            }
+        return misses;
+    }
+
+    /**
+     * Returns the number of times a row has been evicted from the cache
+     * @return the number of row evictions
+     */
+    public long getEvictions()
+    {
+        long evictions = 0;
+        for(Stripe s : stripes)
+            synchronized(s)
+            {
+                evictions += s.evictions;
+            }
+        return evictions;
+    }
+
+    /**
+     * Returns the maximum number of rows this cache will hold
+     * @return the maximum number of rows
+     */
+    public int getMaxRows()
+    {
+        int rows = 0;
+        for(Stripe s : stripes)
+            rows += s.owner.length;
+        return rows;
+    }
+
+    /**
+     * A set of row slots guarded by one lock, with its own CLOCK hand
+     */
+    private class Stripe
+    {
+        /**
+         * The row stored in each slot
+         */
+        final int[] owner;
+        /**
+         * The CLOCK reference bit of each slot
+         */
+        final boolean[] referenced;
+        final double[][] doubleRows;
+        final float[][] floatRows;
+        /**
+         * The number of slots that have been given a row so far
+         */
+        int used = 0;
+        int hand = 0;
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+
+        public Stripe(int slots)
+        {
+            owner = new int[slots];
+            referenced = new boolean[slots];
+            doubleRows = useFloats ? null : new double[slots][];
+            floatRows = useFloats ? new float[slots][] : null;
+        }
+
+        /**
+         * Returns the cached value, or NaN if it has not been computed. Counts
+         * a hit if found.
+         */
+        double lookup(int slot, int col)
+        {
+            referenced[slot] = true;
+            double val = useFloats ? floatRows[slot][col] : doubleRows[slot][col];
+            if(!Double.isNaN(val))
+                hits++;
+            return val;
+        }
+
+        void store(int slot, int col, double val)
+        {
+            if(useFloats)
+                floatRows[slot][col] = (float) val;
+            else
+                doubleRows[slot][col] = val;
+        }
+
+        /**
+         * Places the row into a free slot, or evicts the first slot the CLOCK
+         * hand finds that has not been referenced since its last pass
+         * @return the slot the row was placed in
+         */
+        int insert(int row)
+        {
+            int slot;
+            if(used < owner.length)
+            {
+                slot = used++;
+                if(useFloats)
+                {
+                    floatRows[slot] = new float[N];
+                    Arrays.fill(floatRows[slot], Float.NaN);
+                }
+                else
+                {
+                    doubleRows[slot] = new double[N];
+                    Arrays.fill(doubleRows[slot], Double.NaN);
+                }
+            }
+            else
+            {
+                while(referenced[hand])
+                {
+                    referenced[hand] = false;
+                    hand = (hand+1) % owner.length;
+                }
+                slot = hand;
+                hand = (hand+1) % owner.length;
+                slotOf[owner[slot]] = -1;
+                evictions++;
+                if(useFloats)
+                    Arrays.fill(floatRows[slot], Float.NaN);
+                else
+                    Arrays.fill(doubleRows[slot], Double.NaN);
+            }
+            owner[slot] = row;
+            referenced[slot] = true;
+            slotOf[row] = slot;
+            return slot;
+        }
+    }
+}
@@ -3,7 +3,7 @@ package jsat.classifiers.svm;
 
 import static java.lang.Math.*;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.*;
 import jsat.classifiers.*;
 import jsat.classifiers.calibration.BinaryScoreClassifier;
 import jsat.distributions.kernels.KernelTrick;
@@ -15,7 +15,10 @@ import jsat.linear.Vec;
 import jsat.parameters.*;
 import jsat.regression.RegressionDataSet;
 import jsat.regression.Regressor;
+import jsat.utils.FakeExecutor;
 import jsat.utils.ListUtils;
+import jsat.utils.SystemInfo;
+import static jsat.utils.concurrent.ParallelUtils.*;
 
 /**
  * An implementation of SVMs using Platt's Sequential Minimum Optimization (SMO) 
@@ -41,6 +44,12 @@ import jsat.utils.ListUtils;
  * transactions on neural networks / a publication of the IEEE Neural Networks 
  * Council, 11(5), 1188–93. doi:10.1109/72.870050</li>
  * </ul>
+ * <br>
+ * By default the active set is shrunk in the manner of LIBSVM: points that sit
+ * at a bound and have satisfied the KKT conditions over several consecutive 
+ * passes are skipped, and all points are restored before convergence is 
+ * accepted. When given a thread pool, the error cache updates and decision 
+ * function sums are split among the threads once the sets involved are large.
  * 
  * @author Edward Raff
  */
@@ -57,7 +66,37 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
 
     private int maxIterations = 10000;
     private boolean modificationOne = true;
+    private boolean shrinking = true;
     
+    /**
+     * The number of consecutive passes over all the data that a point must be
+     * at a bound and optimal for before it is shrunk from the active set
+     */
+    private static final int SHRINK_PASSES = 2;
+    /**
+     * The number of passes over all the data between each unshrinking of the
+     * active set
+     */
+    private static final int UNSHRINK_PERIOD = 10;
+    /**
+     * The minimum amount of work in a loop before it is split among threads
+     */
+    private static final int PARALLEL_THRESHOLD = 2048;
+    
+    /**
+     * The number of consecutive passes over all the data that each point has 
+     * been at a bound and optimal, or {@code null} if not shrinking
+     */
+    private int[] optimalStreak;
+    /**
+     * The number of points currently in {@link #I0}
+     */
+    private int I0count;
+    /**
+     * The number of points with a non zero coefficient in the decision 
+     * function
+     */
+    private int activeCount;
     protected double[] fcache;
     
     private int i_up, i_low;
@@ -148,13 +187,13 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
     }
     
     @Override
-    public void trainC(ClassificationDataSet dataSet, ExecutorService threadPool)
+    public void trainC(ClassificationDataSet dataSet)
     {
-        trainC(dataSet);
+        trainC(dataSet, null);
     }
 
     @Override
-    public void trainC(ClassificationDataSet dataSet)
+    public void trainC(ClassificationDataSet dataSet, ExecutorService threadPool)
     {
         if(dataSet.getClassSize() != 2)
             throw new FailedToFitException("SVM does not support non binary decisions");
@@ -171,6 +210,8 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         I2 = new boolean[N];
         I3 = new boolean[N];
         I4 = new boolean[N];
+        I0count = activeCount = 0;
+        optimalStreak = shrinking ? new int[N] : null;
         
         boolean allWeightsAreOne = true;
         for(int i = 0; i < N; i++)
@@ -219,8 +260,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
             if (examinAll)
             {
                 //loop I over all training examples
-                for (int i = 0; i < N; i++)
-                    numChanged += examineExample(i);
+                numChanged += examineAll(false, examinAllCount, threadPool);
                 examinAllCount++;
             }
             else
@@ -231,7 +271,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
                     {
                         if(!I0[i])
                             continue;
-                        numChanged += examineExample(i);
+                        numChanged += examineExample(i, threadPool);
                         if (b_up > b_low - 2 * tolerance)
                         {
                             numChanged = 0;//causes examinAll to become true
@@ -244,7 +284,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
                     boolean inner_loop_success = true;
 
                     while (b_up < b_low - 2 * tolerance && inner_loop_success)
-                        if (inner_loop_success = takeStep(i_up, i_low))
+                        if (inner_loop_success = takeStep(i_up, i_low, threadPool))
                             numChanged++;
                     
                     numChanged = 0;
@@ -253,7 +293,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
             }
 
             if(examinAll)
-                examinAll = false;
+                examinAll = unshrink(numChanged);//repeat if points were skipped
             else if(numChanged == 0)
                 examinAll = true;
         }
@@ -261,7 +301,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         if (iter >= maxIterations)
         {//1 extra pass to get a better guess on bUp & bLow since we quit early
             for (int i = 0; i < N; i++)
-                numChanged += examineExample(i);
+                numChanged += examineExample(i, threadPool);
         }
         b = (b_up+b_low)/2;
 
@@ -274,6 +314,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         
         fcache = null;
         I0 = I1 = I2 = I3 = I4 = null;
+        optimalStreak = null;
         weights = null;
         
         setCacheMode(null);
@@ -288,7 +329,17 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
      */
     private void updateSet(int i1, double a1, double C )
     {
-        I0[i1] = a1 > 0 && a1 < C;
+        setI0(i1, a1 > 0 && a1 < C);
+    }
+    
+    /**
+     * Sets membership of {@link #I0} while keeping {@link #I0count} current
+     */
+    private void setI0(int i, boolean inI0)
+    {
+        if(I0[i] != inI0)
+            I0count += inI0 ? 1 : -1;
+        I0[i] = inI0;
     }
     
     private double fuzzyClamp(double val, double max)
@@ -315,7 +366,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         double as_i = alpha_s[i];
         I0_a[i] = 0 < a_i && a_i < C;
         I0_b[i] = 0 < as_i && as_i < C;
-        I0[i] = I0_a[i] || I0_b[i];
+        setI0(i, I0_a[i] || I0_b[i]);
         I1[i] = a_i == 0 && as_i == 0;
         I2[i] = a_i == 0 && as_i == C;
         I3[i] = a_i == C && as_i == 0;
@@ -336,7 +387,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         I4[i1] = a1 == 0 && y_i == -1;
     }
     
-    protected boolean takeStep(int i1, int i2)
+    protected boolean takeStep(int i1, int i2, ExecutorService threadPool)
     {
         if(i1 == i2)
             return false;
@@ -439,26 +490,11 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         i_up = -1;
         
         //"Update fcache[i] for i in I_0 using new Lagrange multipliers", done inside loop check for new bounds
-        for(int i = 0; i < I0.length; i++)
-        {
-            if(!I0[i])
-                continue;
-            if (i != i1 && i != i2)
-                fcache[i] += y1 * (a1 - alpha1) * kEval(i1, i) + y2 * (a2 - alpha2) * kEval(i2, i);
-            
-            double bCand = fcache[i];
-            if (bCand > b_low)
-            {
-                i_low = i;
-                b_low = bCand;
-            }
-
-            if (bCand < b_up)
-            {
-                i_up = i;
-                b_up = bCand;
-            }
-        }
+        double[] bounds = updateFcache(i1, i2, y1 * (a1 - alpha1), y2 * (a2 - alpha2), threadPool);
+        b_low = bounds[0];
+        i_low = (int) bounds[1];
+        b_up = bounds[2];
+        i_up = (int) bounds[3];
         
         //case where i1 & i2 are not in I0
         for(int i : new int[]{i1, i2})
@@ -483,6 +519,8 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
             }
         }
         
+        activeCount += (a1 != 0 ? 1 : 0) - (alpha1 != 0 ? 1 : 0);
+        activeCount += (a2 != 0 ? 1 : 0) - (alpha2 != 0 ? 1 : 0);
         //Store a1 in the alphas array
         alphas[i1] = a1;
         //Store a2 in the alphas arra
@@ -491,7 +529,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         return true;
     }
     
-    protected boolean takeStepR(int i1, int i2)
+    protected boolean takeStepR(int i1, int i2, ExecutorService threadPool)
     {
         if(i1 == i2)
             return false;
@@ -637,6 +675,8 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         {
             return false;
         }
+        activeCount += (alpha1 != alpha1_S ? 1 : 0) - (alpha1_old != alpha1_oldS ? 1 : 0);
+        activeCount += (alpha2 != alpha2_S ? 1 : 0) - (alpha2_old != alpha2_oldS ? 1 : 0);
         alphas[i1] = alpha1;
         alphas[i2] = alpha2;
         alpha_s[i1] = alpha1_S;
@@ -646,9 +686,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         double ceof1 = alpha1 - alpha1_old - (alpha1_S - alpha1_oldS);
         double ceof2 = alpha2 - alpha2_old - (alpha2_S - alpha2_oldS);
 
-        for(int i = 0; i < I0.length; i++)
-            if(I0[i] && i != i1 && i != i2)
-                fcache[i] -= ceof1 * kEval(i1, i) + ceof2 * kEval(i2, i);
+        updateFcache(i1, i2, -ceof1, -ceof2, threadPool);
         fcache[i1] -= ceof1 * k11 + ceof2 * k12;
         fcache[i2] -= ceof1 * k12 + ceof2 * k22;
         updateSetR(i1, C1);
@@ -711,7 +749,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         }
     }
     
-    private int examineExample(int i2)
+    private int examineExample(int i2, ExecutorService threadPool)
     {
         //y2 = target[i2]
         double y2 = label[i2];
@@ -721,7 +759,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
             F2 = fcache[i2];
         else
         {
-            fcache[i2] = F2 = decisionFunction(i2) - y2;
+            fcache[i2] = F2 = decisionFunction(i2, threadPool) - y2;
             //update (b_low, i_low) or (b_up, i_up) using (F2, i2)
             if( (I1[i2] || I2[i2] ) && (F2 < b_up)  )
             {
@@ -771,13 +809,13 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
                 i1 = i_up;
         }
 
-        if(takeStep(i1, i2))
+        if(takeStep(i1, i2, threadPool))
             return 1;
         else
             return 0;
     }
     
-    private int examineExampleR(int i2)
+    private int examineExampleR(int i2, ExecutorService threadPool)
     {
         //y2 = target[i2]
         double y2 = label[i2];
@@ -787,7 +825,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
             F2 = fcache[i2];
         else
         {
-            fcache[i2] = F2 = y2-decisionFunctionR(i2);
+            fcache[i2] = F2 = y2-decisionFunctionR(i2, threadPool);
             //update (b_low, i_low) or (b_up, i_up) using (F2, i2)
             if(I1[i2])
             {
@@ -893,7 +931,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
 
         if(optimal)
             return 0;
-        if(takeStepR(i1, i2))
+        if(takeStepR(i1, i2, threadPool))
             return 1;
         else
             return 0;
@@ -903,33 +941,260 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
      * Returns the local decision function for classification training purposes 
      * without the bias term
      * @param v the index of the point to select
+     * @param threadPool the source of threads, or {@code null} to run serially
      * @return the decision function output sans bias
      */
-    protected double decisionFunction(int v)
+    protected double decisionFunction(int v, ExecutorService threadPool)
     {
-        double sum = 0;
-        for(int i = 0; i < vecs.size(); i++)
-            if(alphas[i] > 0)
-                sum += alphas[i] * label[i] * kEval(v, i);
-
-        return sum;
+        return decisionFunction(v, false, threadPool);
     }
     
     /**
      * Returns the local decision function for regression training purposes 
      * without the bias term
      * @param v the index of the point to select
+     * @param threadPool the source of threads, or {@code null} to run serially
      * @return the decision function output sans bias
      */
-    protected double decisionFunctionR(int v)
+    protected double decisionFunctionR(int v, ExecutorService threadPool)
+    {
+        return decisionFunction(v, true, threadPool);
+    }
+    
+    private double decisionFunction(int v, boolean regression, ExecutorService threadPool)
     {
+        final int N = vecs.size();
+        if(!isParallel(threadPool) || activeCount < PARALLEL_THRESHOLD)
+            return new DecisionSum(0, N, v, regression).call();
+        
+        final int P = SystemInfo.LogicalCores;
+        List<DecisionSum> blocks = new ArrayList<DecisionSum>(P);
+        for(int id = 0; id < P; id++)
+            blocks.add(new DecisionSum(getStartBlock(N, id, P), getEndBlock(N, id, P), v, regression));
         double sum = 0;
-        for (int i = 0; i < vecs.size(); i++)
-            if (alphas[i] != alpha_s[i])//multipler would be zero
-                sum += (alphas[i] - alpha_s[i]) * kEval(v, i);
-
+        for(double part : runBlocks(blocks, threadPool))
+            sum += part;
         return sum;
     }
+    
+    /**
+     * Returns {@code true} if work should be split among the threads of the 
+     * given pool
+     */
+    private static boolean isParallel(ExecutorService threadPool)
+    {
+        return threadPool != null && !(threadPool instanceof FakeExecutor);
+    }
+    
+    /**
+     * Runs each block of work and returns their results in order. Every block
+     * but the first is given to the thread pool, and the calling thread then 
+     * runs any block that no other thread has started. So the caller never 
+     * waits on a task queued behind it, and a pool that is busy, or that the 
+     * caller is a part of, can not cause a dead lock. 
+     */
+    private static <T> List<T> runBlocks(List<? extends Callable<T>> blocks, ExecutorService threadPool)
+    {
+        List<FutureTask<T>> tasks = new ArrayList<FutureTask<T>>(blocks.size());
+        for(Callable<T> block : blocks)
+            tasks.add(new FutureTask<T>(block));
+        for(int i = 1; i < tasks.size(); i++)
+            threadPool.execute(tasks.get(i));
+        List<T> results = new ArrayList<T>(tasks.size());
+        try
+        {
+            for(FutureTask<T> task : tasks)
+                task.run();//does nothing if a pool thread already started it
+            for(FutureTask<T> task : tasks)
+                results.add(task.get());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new FailedToFitException(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            throw new FailedToFitException(ex);
+        }
+        return results;
+    }
+    
+    /**
+     * Computes part of the decision function for a training point over a 
+     * range of the other training points
+     */
+    private class DecisionSum implements Callable<Double>
+    {
+        final int from, to;
+        final int v;
+        final boolean regression;
+
+        public DecisionSum(int from, int to, int v, boolean regression)
+        {
+            this.from = from;
+            this.to = to;
+            this.v = v;
+            this.regression = regression;
+        }
+
+        @Override
+        public Double call()
+        {
+            double sum = 0;
+            if(regression)
+            {
+                for (int i = from; i < to; i++)
+                    if (alphas[i] != alpha_s[i])//multipler would be zero
+                        sum += (alphas[i] - alpha_s[i]) * kEval(v, i);
+            }
+            else
+            {
+                for(int i = from; i < to; i++)
+                    if(alphas[i] > 0)
+                        sum += alphas[i] * label[i] * kEval(v, i);
+            }
+            return sum;
+        }
+    }
+    
+    /**
+     * Adds {@code c1*k(i1, i) + c2*k(i2, i)} to the error cache of every 
+     * point in I0 other than i1 and i2, and finds the largest and smallest 
+     * error cache values over I0. 
+     * 
+     * @return an array of {b_low, i_low, b_up, i_up} over I0, where the 
+     * indices are -1 if I0 is empty
+     */
+    private double[] updateFcache(int i1, int i2, double c1, double c2, ExecutorService threadPool)
+    {
+        final int N = I0.length;
+        if(!isParallel(threadPool) || I0count < PARALLEL_THRESHOLD)
+            return new FcacheUpdate(0, N, i1, i2, c1, c2).call();
+        
+        final int P = SystemInfo.LogicalCores;
+        List<FcacheUpdate> blocks = new ArrayList<FcacheUpdate>(P);
+        for(int id = 0; id < P; id++)
+            blocks.add(new FcacheUpdate(getStartBlock(N, id, P), getEndBlock(N, id, P), i1, i2, c1, c2));
+        double[] bounds = new double[]{Double.NEGATIVE_INFINITY, -1, Double.POSITIVE_INFINITY, -1};
+        //merged in order, so ties are broken the same way as a serial pass
+        for(double[] part : runBlocks(blocks, threadPool))
+        {
+            if(part[0] > bounds[0])
+            {
+                bounds[0] = part[0];
+                bounds[1] = part[1];
+            }
+            if(part[2] < bounds[2])
+            {
+                bounds[2] = part[2];
+                bounds[3] = part[3];
+            }
+        }
+        return bounds;
+    }
+    
+    /**
+     * Performs the error cache update of {@link #updateFcache(int, int, double, double, ExecutorService) }
+     * over a range of indices
+     */
+    private class FcacheUpdate implements Callable<double[]>
+    {
+        final int from, to;
+        final int i1, i2;
+        final double c1, c2;
+
+        public FcacheUpdate(int from, int to, int i1, int i2, double c1, double c2)
+        {
+            this.from = from;
+            this.to = to;
+            this.i1 = i1;
+            this.i2 = i2;
+            this.c1 = c1;
+            this.c2 = c2;
+        }
+
+        @Override
+        public double[] call()
+        {
+            double bLow = Double.NEGATIVE_INFINITY, bUp = Double.POSITIVE_INFINITY;
+            int iLow = -1, iUp = -1;
+            for(int i = from; i < to; i++)
+            {
+                if(!I0[i])
+                    continue;
+                if (i != i1 && i != i2)
+                    fcache[i] += c1 * kEval(i1, i) + c2 * kEval(i2, i);
+
+                double bCand = fcache[i];
+                if (bCand > bLow)
+                {
+                    iLow = i;
+                    bLow = bCand;
+                }
+
+                if (bCand < bUp)
+                {
+                    iUp = i;
+                    bUp = bCand;
+                }
+            }
+            return new double[]{bLow, iLow, bUp, iUp};
+        }
+    }
+    
+    /**
+     * Calls {@link #examineExample(int, ExecutorService) } or 
+     * {@link #examineExampleR(int, ExecutorService) } on
+     * every point, skipping those that have been shrunk from the active set. 
+     * 
+     * @param regression whether or not this is a regression problem
+     * @param passCount the number of passes over all the data done so far
+     * @param threadPool the source of threads, or {@code null} to run serially
+     * @return the number of points that changed
+     */
+    private int examineAll(boolean regression, int passCount, ExecutorService threadPool)
+    {
+        if(optimalStreak != null && passCount > 0 && passCount % UNSHRINK_PERIOD == 0)
+            Arrays.fill(optimalStreak, 0);
+        int numChanged = 0;
+        for (int i = 0; i < I0.length; i++)
+        {
+            if(isShrunk(i))
+                continue;
+            int changed = regression ? examineExampleR(i, threadPool) : examineExample(i, threadPool);
+            numChanged += changed;
+            if(optimalStreak != null)
+                optimalStreak[i] = changed == 0 && !I0[i] ? optimalStreak[i]+1 : 0;
+        }
+        return numChanged;
+    }
+    
+    private boolean isShrunk(int i)
+    {
+        return optimalStreak != null && optimalStreak[i] >= SHRINK_PASSES && !I0[i];
+    }
+    
+    /**
+     * Restores all points to the active set if a shrunk pass over the data 
+     * found no changes, so that convergence is only accepted after every point
+     * has been checked. 
+     * 
+     * @param numChanged the number of changes made by the last pass over all 
+     * the data
+     * @return {@code true} if points were restored and another pass over all 
+     * the data is needed
+     */
+    private boolean unshrink(int numChanged)
+    {
+        if(numChanged > 0 || optimalStreak == null)
+            return false;
+        boolean anyShrunk = false;
+        for(int i = 0; i < optimalStreak.length && !anyShrunk; i++)
+            anyShrunk = isShrunk(i);
+        Arrays.fill(optimalStreak, 0);
+        return anyShrunk;
+    }
 
     @Override
     public PlatSMO clone()
@@ -954,6 +1219,11 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
             copy.vecs = new ArrayList<Vec>(this.vecs);
         copy.setCacheMode(this.getCacheMode());
         copy.setCacheValue(this.getCacheValue());
+        if(this.getCacheBytes() > 0)
+            copy.setCacheBytes(this.getCacheBytes());
+        copy.setCacheFloats(this.isCacheFloats());
+        copy.modificationOne = this.modificationOne;
+        copy.shrinking = this.shrinking;
         
         return copy;
     }
@@ -1028,6 +1298,29 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         return modificationOne;
     }
 
+    /**
+     * Sets whether or not the active set should be shrunk during training. 
+     * Shrinking skips points that have remained at a bound and satisfied the 
+     * optimality conditions over several passes, which reduces the number of 
+     * kernel evaluations on large problems. The solution found is the same, 
+     * as every point is checked again before training stops. 
+     * 
+     * @param shrinking {@code true} to shrink the active set
+     */
+    public void setShrinking(boolean shrinking)
+    {
+        this.shrinking = shrinking;
+    }
+
+    /**
+     * Returns {@code true} if the active set is shrunk during training
+     * @return {@code true} if the active set is shrunk during training
+     */
+    public boolean isShrinking()
+    {
+        return shrinking;
+    }
+
     /**
      * Sets the tolerance for the solution. Higher values converge to worse 
      * solutions, but do so faster
@@ -1066,9 +1359,9 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
     }
 
     @Override
-    public void train(RegressionDataSet dataSet, ExecutorService threadPool)
+    public void train(RegressionDataSet dataSet)
     {
-        train(dataSet);
+        train(dataSet, null);
     }
 
     /**
@@ -1099,7 +1392,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
     }
     
     @Override
-    public void train(RegressionDataSet dataSet)
+    public void train(RegressionDataSet dataSet, ExecutorService threadPool)
     {
         final int N = dataSet.getSampleSize();
         vecs = new ArrayList<Vec>(N);
@@ -1128,6 +1421,8 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         I1 = new boolean[N];
         I2 = new boolean[N];
         I3 = new boolean[N];
+        I0count = activeCount = 0;
+        optimalStreak = shrinking ? new int[N] : null;
         
         
         //initialize alphas array to all zero
@@ -1156,8 +1451,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
             if (examinAll)
             {
                 //loop I over all training examples
-                for (int i = 0; i < N; i++)
-                    numChanged += examineExampleR(i);
+                numChanged += examineAll(true, examinAllCount, threadPool);
                 examinAllCount++;
             }
             else
@@ -1168,7 +1462,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
                     {
                         if(!I0[i])
                             continue;
-                        numChanged += examineExampleR(i);
+                        numChanged += examineExampleR(i, threadPool);
 
                         if (b_up > b_low - 2*tolerance)
                         {
@@ -1182,7 +1476,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
                     boolean inner_loop_success = true;
                     do
                     {
-                        if(inner_loop_success == takeStepR(i_up, i_low))
+                        if(inner_loop_success == takeStepR(i_up, i_low, threadPool))
                             numChanged++;
                     }
                     while(inner_loop_success && b_up < b_low-2*tolerance);
@@ -1191,7 +1485,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
             }
 
             if (examinAll)
-                examinAll = false;
+                examinAll = unshrink(numChanged);//repeat if points were skipped
             else if (numChanged == 0)
                 examinAll = true;
         }
@@ -1213,6 +1507,7 @@ public class PlatSMO extends SupportVectorLearner implements BinaryScoreClassifi
         
         fcache = null;
         I0 = I0_a = I0_b = I1 = I2 = I3 = I4 = null;
+        optimalStreak = null;
         
         setCacheMode(null);
         setAlphas(alphas);
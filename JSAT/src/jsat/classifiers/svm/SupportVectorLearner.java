@@ -6,6 +6,7 @@ import jsat.distributions.kernels.KernelTrick;
 import jsat.linear.Vec;
 import jsat.parameters.Parameter.ParameterHolder;
 import jsat.utils.ListUtils;
+import jsat.utils.SystemInfo;
 
 /**
  * Base class for support vector style learners. This means that the learner 
@@ -49,13 +50,14 @@ public abstract class SupportVectorLearner
     /**
      * Stores rows of a cache matrix. 
      */
-    private LinkedHashMap<Integer, double[]> partialCache;
+    private KernelRowCache partialCache;
+    private int cacheConst = 500;
     /**
-     * Holds an available row for inserting into the cache, null if not 
-     * available. All values already set to Nan
+     * The memory budget of the row cache in bytes, or a non positive value if
+     * {@link #cacheConst} gives the number of rows instead
      */
-    private double[] availableRow;
-    private int cacheConst = 500;
+    private long cacheBytes = -1;
+    private boolean cacheFloats = false;
 
     /**
      * Sets the final set of alphas, and indicates that the final accelerating 
@@ -93,9 +95,9 @@ public abstract class SupportVectorLearner
          */
         FULL, 
         /**
-         * Only the most recently used rows of the kernel matrix will be cached 
-         * (LRU). When a call to {@link #k(int, int) } occurs, the first value 
-         * will be taken to be the row of the matrix. <br>
+         * Only recently used rows of the kernel matrix will be cached, using 
+         * the CLOCK approximation of LRU. When a call to {@link #k(int, int) }
+         * occurs, the first value will be taken to be the row of the matrix. <br>
          * Because the kernel matrix is symmetric, if a cache miss occurs - the 
          * column value will be checked for its existence. If the row is 
          * present, it will be used instead. If both rows are not present, then 
@@ -105,7 +107,10 @@ public abstract class SupportVectorLearner
          * The {@link #cacheEvictions} indicates how many times a row has been 
          * evicted from the cache. 
          * <br>
-         * Row values are computed lazily. 
+         * Row values are computed lazily, and the cache may be used by 
+         * multiple threads at once. The size of the cache can be given as a 
+         * number of rows with {@link #setCacheValue(int) } or as an amount of 
+         * memory with {@link #setCacheBytes(long) }. 
          */
         ROWS
     };
@@ -141,6 +146,55 @@ public abstract class SupportVectorLearner
     public void setCacheValue(int cacheValue)
     {
         this.cacheConst = cacheValue;
+        this.cacheBytes = -1;
+    }
+    
+    /**
+     * Sets the amount of memory the {@link CacheMode#ROWS} cache may use. The
+     * number of rows this allows is determined when the cache is created from 
+     * the number of training points, so the data set size does not need to be
+     * known ahead of time. This overrides any previous call to 
+     * {@link #setCacheValue(int) }. 
+     * 
+     * @param bytes the number of bytes of memory to use for cached rows
+     */
+    public void setCacheBytes(long bytes)
+    {
+        if(bytes <= 0)
+            throw new IllegalArgumentException("Cache size must be positive, not " + bytes);
+        this.cacheBytes = bytes;
+    }
+
+    /**
+     * Returns the amount of memory the row cache may use, or a non positive 
+     * value if the size is given by the {@link #getCacheValue() cache value}
+     * @return the row cache memory budget in bytes
+     */
+    public long getCacheBytes()
+    {
+        return cacheBytes;
+    }
+
+    /**
+     * Sets whether the {@link CacheMode#ROWS} cache stores kernel values as 
+     * {@code float}s instead of {@code double}s. This allows twice as many 
+     * rows to be cached in the same amount of memory, but the cached kernel 
+     * values will only have single precision. 
+     * 
+     * @param cacheFloats {@code true} to store cached rows as floats
+     */
+    public void setCacheFloats(boolean cacheFloats)
+    {
+        this.cacheFloats = cacheFloats;
+    }
+
+    /**
+     * Returns {@code true} if the row cache stores values as floats
+     * @return {@code true} if the row cache stores values as floats
+     */
+    public boolean isCacheFloats()
+    {
+        return cacheFloats;
     }
     
     /**
@@ -156,15 +210,10 @@ public abstract class SupportVectorLearner
     public void setCacheSize(long N, long bytes)
     {
         int DS = Double.SIZE/8;
-        bytes /= DS;//Gets the total number of doubles we can store
-        if(bytes > N*N/2)
+        if(bytes/DS > N*N/2)//Gets the total number of doubles we can store
             setCacheMode(CacheMode.FULL);
         else//How many rows can we handle?
-        {
-            //guessing 2 work overhead for object header + one pointer reference to the array, asusming 64 bit
-            long bytesPerRow = N*DS+3*Long.SIZE/8;
-            setCacheValue((int) Math.min(Math.max(1, bytes/bytesPerRow), Integer.MAX_VALUE));
-        }
+            setCacheValue(KernelRowCache.rowsForBytes(N, bytes, cacheFloats));
     }
 
     /**
@@ -200,8 +249,8 @@ public abstract class SupportVectorLearner
         if(cacheMode == null)
         {
             fullCache = null;
+            foldCacheCounts();
             partialCache = null;
-            availableRow = null;
             accelCache = null;
             return;
         }
@@ -209,8 +258,10 @@ public abstract class SupportVectorLearner
         
         if(vecs != null)
             accelCache = kernel.getAccelerationCache(vecs);
+        partialCache = null;
         evalCount = 0;
         cacheEvictions = 0;
+        cacheHits = 0;
         
         final int N = vecs == null ? 0 : vecs.size();
         
@@ -224,23 +275,15 @@ public abstract class SupportVectorLearner
                 for(int j = i; j < N; j++)
                     fullCache[i][j-i] = k(i, j);
         }
-        else if(cacheMode == CacheMode.ROWS && vecs != null)
+        else if(cacheMode == CacheMode.ROWS && vecs != null && N > 0)
         {
-            partialCache = new LinkedHashMap<Integer, double[]>(N, 0.75f, true)
+            int rows = cacheBytes > 0 ? KernelRowCache.rowsForBytes(N, cacheBytes, cacheFloats) : cacheConst;
+            partialCache = new KernelRowCache(N, Math.max(1, rows), cacheFloats, 4*SystemInfo.LogicalCores)
             {
                 @Override
-                protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest)
+                protected double compute(int a, int b)
                 {
-                    boolean removeEldest = size() > cacheConst;
-                    if(removeEldest)
-                    {
-                        availableRow = eldest.getValue();
-                        for(int i = 0; i < availableRow.length; i++)
-                            if(!Double.isNaN(availableRow[i]))
-                                availableRow[i] = Double.NaN;
-                        cacheEvictions++;
-                    }
-                    return removeEldest;
+                    return kernel.eval(a, b, vecs, accelCache);
                 }
             };
         }
@@ -248,8 +291,75 @@ public abstract class SupportVectorLearner
             fullCache = null;
     }
 
-    protected int evalCount = 0;
-    protected int cacheEvictions = 0;
+    /**
+     * The number of raw kernel evaluations performed. Evaluations done by the 
+     * {@link CacheMode#ROWS} cache are added when the cache is released, 
+     * {@link #getEvalCount() } includes them while training. Increments are 
+     * not synchronized, so this is approximate if kernel values are computed 
+     * by multiple threads without the row cache. 
+     */
+    protected long evalCount = 0;
+    /**
+     * The number of rows evicted from the {@link CacheMode#ROWS} cache
+     */
+    protected long cacheEvictions = 0;
+    /**
+     * The number of kernel values found in the {@link CacheMode#ROWS} cache
+     */
+    protected long cacheHits = 0;
+    
+    /**
+     * Adds the counts of the current row cache, if any, to the count fields
+     */
+    private void foldCacheCounts()
+    {
+        if(partialCache == null)
+            return;
+        evalCount += partialCache.getMisses();
+        cacheEvictions += partialCache.getEvictions();
+        cacheHits += partialCache.getHits();
+    }
+
+    /**
+     * Returns the number of raw kernel evaluations performed since the cache 
+     * was last initialized, see {@link #evalCount}
+     * @return the number of kernel evaluations
+     */
+    public long getEvalCount()
+    {
+        return evalCount + (partialCache == null ? 0 : partialCache.getMisses());
+    }
+
+    /**
+     * Returns the number of kernel values served by the {@link CacheMode#ROWS}
+     * cache since it was last initialized
+     * @return the number of row cache hits
+     */
+    public long getCacheHits()
+    {
+        return cacheHits + (partialCache == null ? 0 : partialCache.getHits());
+    }
+
+    /**
+     * Returns the number of kernel values the {@link CacheMode#ROWS} cache had
+     * to compute since it was last initialized
+     * @return the number of row cache misses
+     */
+    public long getCacheMisses()
+    {
+        //after the cache is released its misses are only in evalCount
+        return partialCache == null ? 0 : partialCache.getMisses();
+    }
+
+    /**
+     * Returns the number of rows evicted from the {@link CacheMode#ROWS} cache
+     * since it was last initialized
+     * @return the number of row evictions
+     */
+    public long getCacheEvictions()
+    {
+        return cacheEvictions + (partialCache == null ? 0 : partialCache.getEvictions());
+    }
     
     public KernelTrick getKernel()
     {
@@ -291,7 +401,8 @@ public abstract class SupportVectorLearner
     
     /**
      * Performs a kernel evaluation of the a'th and b'th vectors in the 
-     * {@link #vecs} array. 
+     * {@link #vecs} array. This may be called by multiple threads at once 
+     * during training. 
      * 
      * @param a the first vector index
      * @param b the second vector index
@@ -310,43 +421,8 @@ public abstract class SupportVectorLearner
             
             return fullCache[a][b-a];
         }
-        else if(cacheMode == CacheMode.ROWS)
-        {
-            double[] cache = partialCache.get(a);
-            if (cache == null)//try seeing if b has a row present
-            {
-                double[] b_cache = partialCache.get(b);
-                if (b_cache != null)
-                    if (Double.isNaN(b_cache[a]))
-                        return b_cache[a] = k(a, b);
-                    else
-                        return b_cache[a];
-            }
-            //else, neither are in - lets go with a
-
-            if (cache == null)//not present
-            {
-                //get a row
-                if (availableRow != null)
-                {
-                    cache = availableRow;
-                    availableRow = null;
-                }
-                else
-                {
-                    cache = new double[vecs.size()];
-                    Arrays.fill(cache, Double.NaN);
-                }
-                
-                partialCache.put(a, cache);
-                
-                if (Double.isNaN(cache[a]))
-                    return cache[a] = k(a, b);
-                else
-                    return cache[a];
-                
-            }
-        }
+        else if(cacheMode == CacheMode.ROWS && partialCache != null)
+            return partialCache.get(a, b);
         return k(a, b);
     }
     
@@ -4,11 +4,13 @@ package jsat.classifiers.trees;
 import static java.lang.Math.*;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import jsat.classifiers.*;
 import jsat.classifiers.trees.ImpurityScore.ImpurityMeasure;
 import jsat.distributions.Distribution;
 import jsat.distributions.empirical.KernelDensityEstimator;
 import jsat.distributions.empirical.kernelfunc.EpanechnikovKF;
+import jsat.exceptions.FailedToFitException;
 import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 import jsat.math.Function;
@@ -19,9 +21,11 @@ import jsat.parameters.Parameterized;
 import jsat.regression.RegressionDataSet;
 import jsat.regression.Regressor;
 import jsat.utils.DoubleList;
+import jsat.utils.FakeExecutor;
 import jsat.utils.IntList;
 import jsat.utils.PairedReturn;
 import jsat.utils.QuickSort;
+import jsat.utils.SystemInfo;
 
 /**
  * This class is a 1-rule. It creates one rule that is used to classify all inputs, 
@@ -537,12 +541,28 @@ public class DecisionStump implements Classifier, Regressor, Parameterized
      * @return the a list of lists, containing all the datapoints that would have followed each path. Useful for training a decision tree
      */
     public List<List<DataPointPair<Integer>>> trainC(List<DataPointPair<Integer>> dataPoints, Set<Integer> options)
+    {
+        return trainC(dataPoints, options, null);
+    }
+    
+    /**
+     * This is a helper function that does the work of training this stump. It may be 
+     * called directly by other classes that are creating decision trees to avoid 
+     * redundant repackaging of lists. 
+     * 
+     * @param dataPoints the lists of datapoint to train on, paired with the true category of each training point
+     * @param options the set of attributes that this classifier may choose from. The attribute it does choose will be removed from the set. 
+     * @param threadPool the source of threads to evaluate the attributes in 
+     * parallel, or {@code null} to evaluate them one at a time
+     * @return the a list of lists, containing all the datapoints that would have followed each path. Useful for training a decision tree
+     */
+    public List<List<DataPointPair<Integer>>> trainC(final List<DataPointPair<Integer>> dataPoints, Set<Integer> options, ExecutorService threadPool)
     {
         //TODO remove paths that have zero probability of occuring, so that stumps do not have an inflated branch value 
         if(predicting == null)
             throw new RuntimeException("Predicting value has not been set");
         catAttributes = dataPoints.get(0).getDataPoint().getCategoricalData();
-        ImpurityScore origScoreObj = getClassGainScore(dataPoints);
+        final ImpurityScore origScoreObj = getClassGainScore(dataPoints);
         double origScore =  origScoreObj.getScore();
         
         if(origScore == 0.0)//Then all data points belond to the same category!
@@ -555,70 +575,23 @@ public class DecisionStump implements Classifier, Regressor, Parameterized
             return toReturn;
         }
         
-        /**
-         * The splitting for the split on the attribute with the best gain
-         */
-        List<List<DataPointPair<Integer>>> bestSplit = null;
-        /**
-         * best gain in information we have seen so far 
-         */
-        double bestGain = -1;
-        /**
-         * The best attribute to split on
-         */
-        splittingAttribute = -1;
-        final double[] gainRet = new double[]{Double.NaN};
-        for(int attribute :  options)
+        final boolean parallel = threadPool != null && !(threadPool instanceof FakeExecutor);
+        SplitCandidate best = new AttributeSearch()
         {
-            gainRet[0] = Double.NaN;
-            List<List<DataPointPair<Integer>>> aSplit;
-            PairedReturn<List<Double>, List<Integer>> tmp = null;//Used on numerical attributes
-            
-            if(attribute < catAttributes.length)//Then we are doing a categorical split
+            @Override
+            SplitCandidate evaluate(int attribute)
             {
-                //Create a list of lists to hold the split variables
-                aSplit = listOfLists(catAttributes[attribute].getNumOfCategories());
-                
-                //Now seperate the values in our current list into their proper split bins 
-                for(DataPointPair<Integer> dpp :  dataPoints)
-                    aSplit.get(dpp.getDataPoint().getCategoricalValue(attribute)).add(dpp);
+                //numeric splits sort the list, so concurrent searches need their own
+                List<DataPointPair<Integer>> points = parallel && attribute >= catAttributes.length
+                        ? new ArrayList<DataPointPair<Integer>>(dataPoints) : dataPoints;
+                return evaluateC(attribute, points, origScoreObj);
             }
-            else//Spliting on a numerical value
-            {
-                attribute -= catAttributes.length;
-                int N = predicting.getNumOfCategories();
-                
-                //Create a list of lists to hold the split variables
-                aSplit = listOfLists(2);//Size at least 2
-                
-                tmp = createNumericCSplit(dataPoints, N, attribute, aSplit, 
-                        origScoreObj, gainRet);
-                if(tmp == null)
-                    continue;
-                
-                //Fix it back so it can be used below
-                attribute+= catAttributes.length;
-            }
-            
-            //Now everything is seperated!
-            double gain= Double.isNaN(gainRet[0]) ? getGain(origScoreObj, aSplit) : gainRet[0];
-            
-            if(gain > bestGain)
-            {
-                bestGain = gain;
-                splittingAttribute = attribute;
-                bestSplit = aSplit;
-                if(attribute >= catAttributes.length)
-                {
-                    boundries = tmp.getFirstItem();
-                    owners = tmp.getSecondItem();
-                }
-            }
-        }
+        }.search(options, -1, threadPool);
         
-        if(bestGain <= 1e-9 || splittingAttribute == -1)//We could not find a good split at all (as good as zero)
+        if(best == null || best.score <= 1e-9)//We could not find a good split at all (as good as zero)
         {
-            bestSplit = new ArrayList<List<DataPointPair<Integer>>>(1);
+            splittingAttribute = -1;
+            List<List<DataPointPair<Integer>>> bestSplit = new ArrayList<List<DataPointPair<Integer>>>(1);
             bestSplit.add(dataPoints);
             CategoricalResults badResult = new CategoricalResults(predicting.getNumOfCategories());
             for(DataPointPair<Integer> dpp : dataPoints)
@@ -627,6 +600,14 @@ public class DecisionStump implements Classifier, Regressor, Parameterized
             results = new CategoricalResults[] {badResult};
             return bestSplit;
         }
+        splittingAttribute = best.attribute;
+        @SuppressWarnings("unchecked")
+        List<List<DataPointPair<Integer>>> bestSplit = (List<List<DataPointPair<Integer>>>) best.split;
+        if(splittingAttribute >= catAttributes.length)
+        {
+            boundries = best.boundaries.getFirstItem();
+            owners = best.boundaries.getSecondItem();
+        }
         if(splittingAttribute < catAttributes.length || removeContinuousAttributes)
             options.remove(splittingAttribute);
         results = new CategoricalResults[bestSplit.size()];
@@ -641,6 +622,50 @@ public class DecisionStump implements Classifier, Regressor, Parameterized
         return bestSplit;
     }
     
+    /**
+     * Finds the best classification split on one attribute
+     * @param attribute the attribute to split on
+     * @param dataPoints the data points to split, which may be reordered
+     * @param origScoreObj the score of the unsplit data points
+     * @return the split, scored by its gain, or {@code null} if no split 
+     * could be made
+     */
+    private SplitCandidate evaluateC(int attribute, List<DataPointPair<Integer>> dataPoints, ImpurityScore origScoreObj)
+    {
+        final double[] gainRet = new double[]{Double.NaN};
+        List<List<DataPointPair<Integer>>> aSplit;
+        PairedReturn<List<Double>, List<Integer>> tmp = null;//Used on numerical attributes
+
+        if(attribute < catAttributes.length)//Then we are doing a categorical split
+        {
+            //Create a list of lists to hold the split variables
+            aSplit = listOfLists(catAttributes[attribute].getNumOfCategories());
+
+            //Now seperate the values in our current list into their proper split bins 
+            for(DataPointPair<Integer> dpp :  dataPoints)
+                aSplit.get(dpp.getDataPoint().getCategoricalValue(attribute)).add(dpp);
+        }
+        else//Spliting on a numerical value
+        {
+            int N = predicting.getNumOfCategories();
+
+            //Create a list of lists to hold the split variables
+            aSplit = listOfLists(2);//Size at least 2
+
+            tmp = createNumericCSplit(dataPoints, N, attribute - catAttributes.length, aSplit, 
+                    origScoreObj, gainRet);
+            if(tmp == null)
+                return null;
+        }
+
+        //Now everything is seperated!
+        SplitCandidate candidate = new SplitCandidate(attribute, 
+                Double.isNaN(gainRet[0]) ? getGain(origScoreObj, aSplit) : gainRet[0]);
+        candidate.split = aSplit;
+        candidate.boundaries = tmp;
+        return candidate;
+    }
+    
     /**
      * 
      * @param dataPoints the original list of data points 
@@ -785,136 +810,665 @@ public class DecisionStump implements Classifier, Regressor, Parameterized
     }
     
     public List<List<DataPointPair<Double>>> trainR(List<DataPointPair<Double>> dataPoints, Set<Integer> options)
+    {
+        return trainR(dataPoints, options, null);
+    }
+    
+    /**
+     * This is a helper function that does the work of training this stump for
+     * regression. It may be called directly by other classes that are creating
+     * decision trees to avoid redundant repackaging of lists. 
+     * 
+     * @param dataPoints the lists of datapoint to train on, paired with their target value
+     * @param options the set of attributes that this regressor may choose from. The attribute it does choose will be removed from the set. 
+     * @param threadPool the source of threads to evaluate the attributes in 
+     * parallel, or {@code null} to evaluate them one at a time
+     * @return the a list of lists, containing all the datapoints that would have followed each path. Useful for training a decision tree
+     */
+    public List<List<DataPointPair<Double>>> trainR(final List<DataPointPair<Double>> dataPoints, Set<Integer> options, ExecutorService threadPool)
     {
         catAttributes = dataPoints.get(0).getDataPoint().getCategoricalData();
         
         //Not enough points for a split to occur
         if(dataPoints.size() <= minResultSplitSize*2)
+            return meanOnlyR(dataPoints);
+        
+        final boolean parallel = threadPool != null && !(threadPool instanceof FakeExecutor);
+        SplitCandidate best = new AttributeSearch()
         {
-            splittingAttribute = catAttributes.length;
-            regressionResults = new double[1];
-            double avg = 0.0;
-            double sum = 0.0;
-            for(DataPointPair<Double> dpp : dataPoints )
+            @Override
+            SplitCandidate evaluate(int attribute)
             {
-                double weight = dpp.getDataPoint().getWeight();
-                avg += dpp.getPair()*weight;
-                sum += weight;
+                //numeric splits sort the list, so concurrent searches need their own
+                List<DataPointPair<Double>> points = parallel && attribute >= catAttributes.length
+                        ? new ArrayList<DataPointPair<Double>>(dataPoints) : dataPoints;
+                return evaluateR(attribute, points);
             }
-            regressionResults[0] = avg/sum;
-            
-            List<List<DataPointPair<Double>>> toRet = new ArrayList<List<DataPointPair<Double>>>(1);
-            toRet.add(dataPoints);
-            return toRet;
-        }
+        }.search(options, -Double.MAX_VALUE, threadPool);
         
-        List<List<DataPointPair<Double>>> bestSplit = null;
-        double lowestSplitSqrdError = Double.MAX_VALUE;
+        if(best == null)//No split was admissible
+            return meanOnlyR(dataPoints);
+        splittingAttribute = best.attribute;
+        regressionResults = best.means;
         
-        for(int attribute :  options)
+        //Removal of attribute from list if needed
+        if(splittingAttribute < catAttributes.length || removeContinuousAttributes)
+            options.remove(splittingAttribute);
+        
+        @SuppressWarnings("unchecked")
+        List<List<DataPointPair<Double>>> bestSplit = (List<List<DataPointPair<Double>>>) best.split;
+        return bestSplit;
+    }
+    
+    /**
+     * Sets this stump to predict the weighted mean of the data points
+     * @return a list containing the one path of all the data points
+     */
+    private List<List<DataPointPair<Double>>> meanOnlyR(List<DataPointPair<Double>> dataPoints)
+    {
+        splittingAttribute = catAttributes.length;
+        regressionResults = new double[1];
+        double avg = 0.0;
+        double sum = 0.0;
+        for(DataPointPair<Double> dpp : dataPoints )
         {
-            List<List<DataPointPair<Double>>> thisSplit = null;
-            //The squared error for this split 
-            double thisSplitSqrdErr = Double.MAX_VALUE;
-            //Contains the means of each split 
-            double[] thisMeans = null;
-            
-            if(attribute < catAttributes.length)
+            double weight = dpp.getDataPoint().getWeight();
+            avg += dpp.getPair()*weight;
+            sum += weight;
+        }
+        regressionResults[0] = avg/sum;
+
+        List<List<DataPointPair<Double>>> toRet = new ArrayList<List<DataPointPair<Double>>>(1);
+        toRet.add(dataPoints);
+        return toRet;
+    }
+    
+    /**
+     * Finds the best regression split on one attribute
+     * @param attribute the attribute to split on
+     * @param dataPoints the data points to split, which may be reordered
+     * @return the split, scored by its negative squared error, or 
+     * {@code null} if no split could be made
+     */
+    private SplitCandidate evaluateR(int attribute, List<DataPointPair<Double>> dataPoints)
+    {
+        List<List<DataPointPair<Double>>> thisSplit = null;
+        //The squared error for this split 
+        double thisSplitSqrdErr = Double.MAX_VALUE;
+        //Contains the means of each split 
+        double[] thisMeans = null;
+
+        if(attribute < catAttributes.length)
+        {
+            thisSplit = listOfListsD(catAttributes[attribute].getNumOfCategories());
+            OnLineStatistics[] stats = new OnLineStatistics[thisSplit.size()];
+            for(int i = 0; i < thisSplit.size(); i++)
+                stats[i] = new OnLineStatistics();
+            //Now seperate the values in our current list into their proper split bins 
+            for(DataPointPair<Double> dpp : dataPoints)
+            {
+                int category = dpp.getDataPoint().getCategoricalValue(attribute);
+                thisSplit.get(category).add(dpp);
+                stats[category].add(dpp.getPair(), dpp.getDataPoint().getWeight());
+            }
+            thisMeans = new double[stats.length];
+            thisSplitSqrdErr = 0.0;
+            for(int i = 0; i < stats.length; i++)
+            {
+                thisSplitSqrdErr += stats[i].getVarance()*stats[i].getSumOfWeights();
+                thisMeans[i] = stats[i].getMean();
+            }
+        }
+        else//Findy a binary split that reduces the variance!
+        {
+            final int numAttri = attribute - catAttributes.length;
+            //We need our list in sorted order by attribute!
+            Comparator<DataPointPair<Double>> dppDoubleSorter = new Comparator<DataPointPair<Double>>()
             {
-                thisSplit = listOfListsD(catAttributes[attribute].getNumOfCategories());
-                OnLineStatistics[] stats = new OnLineStatistics[thisSplit.size()];
-                for(int i = 0; i < thisSplit.size(); i++)
-                    stats[i] = new OnLineStatistics();
-                //Now seperate the values in our current list into their proper split bins 
-                for(DataPointPair<Double> dpp : dataPoints)
+                @Override
+                public int compare(DataPointPair<Double> o1, DataPointPair<Double> o2)
                 {
-                    int category = dpp.getDataPoint().getCategoricalValue(attribute);
-                    thisSplit.get(category).add(dpp);
-                    stats[category].add(dpp.getPair(), dpp.getDataPoint().getWeight());
+                    return Double.compare(o1.getVector().get(numAttri), o2.getVector().get(numAttri));
                 }
-                thisMeans = new double[stats.length];
-                thisSplitSqrdErr = 0.0;
-                for(int i = 0; i < stats.length; i++)
+            };
+            Collections.sort(dataPoints, dppDoubleSorter);
+
+            //2 passes, first to sum up the right side, 2nd to move down the grow the left side 
+            OnLineStatistics rightSide = new OnLineStatistics();
+            OnLineStatistics leftSide = new OnLineStatistics();
+
+            for(DataPointPair<Double> dpp : dataPoints)
+                rightSide.add(dpp.getPair(), dpp.getDataPoint().getWeight());
+            int bestS = 0;
+            thisSplitSqrdErr = Double.POSITIVE_INFINITY;
+
+            thisMeans = new double[3];
+
+            for(int i = 0; i < dataPoints.size(); i++)
+            {
+                DataPointPair<Double> dpp = dataPoints.get(i);
+                double weight = dpp.getDataPoint().getWeight();
+                double val = dpp.getPair();
+                rightSide.remove(val, weight);
+                leftSide.add(val, weight);
+
+
+                if(i < minResultSplitSize)
+                    continue;
+                else if(i > dataPoints.size()-minResultSplitSize)
+                    break;
+
+                double tmpSVariance = rightSide.getVarance()*rightSide.getSumOfWeights() 
+                        + leftSide.getVarance()*leftSide.getSumOfWeights();
+                if(tmpSVariance < thisSplitSqrdErr && !Double.isInfinite(tmpSVariance))//Infinity can occur once the weights get REALY small
                 {
-                    thisSplitSqrdErr += stats[i].getVarance()*stats[i].getSumOfWeights();
-                    thisMeans[i] = stats[i].getMean();
+                    thisSplitSqrdErr = tmpSVariance;
+                    bestS = i;
+                    thisMeans[0] = leftSide.getMean();
+                    thisMeans[1] = rightSide.getMean();
+                    //Third spot contains the split value!
+                    thisMeans[2] = (dataPoints.get(bestS).getVector().get(numAttri) 
+                            + dataPoints.get(bestS+1).getVector().get(numAttri))/2.0;
                 }
             }
-            else//Findy a binary split that reduces the variance!
+            //Now we have the binary split that minimizes the variances of the 2 sets, 
+            thisSplit = listOfListsD(2);
+            thisSplit.get(0).addAll(dataPoints.subList(0, bestS+1));
+            thisSplit.get(1).addAll(dataPoints.subList(bestS+1, dataPoints.size()));
+        }
+        
+        SplitCandidate candidate = new SplitCandidate(attribute, -thisSplitSqrdErr);
+        candidate.split = thisSplit;
+        candidate.means = thisMeans;
+        return candidate;
+    }
+
+    /**
+     * Trains this stump for classification from the histograms of quantized
+     * data, in the same manner as {@link #trainC(java.util.List, java.util.Set) }
+     * with {@link NumericHandlingC#BINARY_BEST_GAIN}. Numeric attributes may
+     * only be split between bins. The points of this stump are the range
+     * [<tt>from</tt>, <tt>to</tt>) of <tt>order</tt>, which is reordered so
+     * that the points following each path are contiguous.
+     *
+     * @param data the quantized data
+     * @param weights the weight of every data point
+     * @param order the permutation of data point indices
+     * @param scratch an array the same length as <tt>order</tt>, of which only
+     * the range [<tt>from</tt>, <tt>to</tt>) will be altered
+     * @param from the first position in <tt>order</tt> of the points to train on
+     * @param to the position after the last point to train on
+     * @param hist the histograms of the points to train on
+     * @param options the set of attributes that this classifier may choose
+     * from. The attribute it does choose will be removed from the set.
+     * @param threadPool the source of threads to evaluate the attributes in 
+     * parallel, or {@code null} to evaluate them one at a time
+     * @return the boundaries of the points that follow each path, path <i>i</i>
+     * gets the positions [ends[i], ends[i+1]) of <tt>order</tt>
+     */
+    int[] trainC(final QuantizedFeatures data, final double[] weights, final int[] order, int[] scratch, final int from, final int to, final NodeHistogram hist, Set<Integer> options, ExecutorService threadPool)
+    {
+        if(predicting == null)
+            throw new RuntimeException("Predicting value has not been set");
+        catAttributes = data.getCategories();
+        final int C = predicting.getNumOfCategories();
+        final ImpurityScore origScore = new ImpurityScore(C, gainMethod);
+        for(int k = from; k < to; k++)
+            origScore.addPoint(weights[order[k]], data.labels[order[k]]);
+
+        if(origScore.getScore() == 0.0)//Then all data points belond to the same category!
+        {
+            results = new CategoricalResults[1];
+            results[0] = new CategoricalResults(C);
+            results[0].setProb(data.labels[order[from]], 1.0);
+            return new int[]{from, to};
+        }
+
+        SplitCandidate best = new AttributeSearch()
+        {
+            @Override
+            SplitCandidate evaluate(int attribute)
             {
-                final int numAttri = attribute - catAttributes.length;
-                //We need our list in sorted order by attribute!
-                Comparator<DataPointPair<Double>> dppDoubleSorter = new Comparator<DataPointPair<Double>>()
+                return evaluateC(attribute, hist.get(attribute, weights, order, from, to), hist, to-from, origScore);
+            }
+        }.search(options, -1, threadPool);
+
+        if(best == null || best.score <= 1e-9)//We could not find a good split at all (as good as zero)
+        {
+            splittingAttribute = -1;
+            CategoricalResults badResult = new CategoricalResults(C);
+            for(int k = from; k < to; k++)
+                badResult.incProb(data.labels[order[k]], 1.0);
+            badResult.normalize();
+            results = new CategoricalResults[] {badResult};
+            return new int[]{from, to};
+        }
+        splittingAttribute = best.attribute;
+        if(splittingAttribute < catAttributes.length || removeContinuousAttributes)
+            options.remove(splittingAttribute);
+        if(splittingAttribute >= catAttributes.length)
+        {
+            boundries = Arrays.asList(data.splits[splittingAttribute-catAttributes.length][best.bin], Double.POSITIVE_INFINITY);
+            owners = Arrays.asList(0, 1);
+        }
+
+        int[] ends = partition(data, splittingAttribute, best.bin, hist.binCount(splittingAttribute), order, scratch, from, to);
+        results = new CategoricalResults[ends.length-1];
+        for(int i = 0; i < results.length; i++)
+        {
+            results[i] = new CategoricalResults(C);
+            for(int k = ends[i]; k < ends[i+1]; k++)
+                results[i].incProb(data.labels[order[k]], weights[order[k]]);
+            results[i].normalize();
+        }
+        return ends;
+    }
+
+    /**
+     * Finds the best classification split on one attribute from its histogram
+     * @param attribute the attribute to split on
+     * @param h the histogram of the attribute
+     * @param hist the histograms the attribute's came from
+     * @param size the number of data points
+     * @param origScore the score of the unsplit data points
+     * @return the split, scored by its gain, or {@code null} if no split 
+     * could be made
+     */
+    private SplitCandidate evaluateC(int attribute, double[] h, NodeHistogram hist, int size, ImpurityScore origScore)
+    {
+        final int C = predicting.getNumOfCategories();
+        final int stride = hist.stride;
+        int binCount = hist.binCount(attribute);
+        if(attribute < catAttributes.length)
+        {
+            ImpurityScore[] scores = new ImpurityScore[binCount];
+            for(int b = 0; b < binCount; b++)
+            {
+                scores[b] = new ImpurityScore(C, gainMethod);
+                for(int y = 0; y < C; y++)
+                    if(h[b*stride+y] > 0)
+                        scores[b].addPoint(h[b*stride+y], y);
+            }
+            return new SplitCandidate(attribute, ImpurityScore.gain(origScore, scores));
+        }
+
+        ImpurityScore rightSide = origScore.clone();
+        ImpurityScore leftSide = new ImpurityScore(C, gainMethod);
+        int leftCount = 0;
+        double bestGain = Double.NEGATIVE_INFINITY;
+        int bestBin = -1;
+        for(int b = 0; b < binCount-1; b++)
+        {
+            int count = (int) h[b*stride+C];
+            if(count == 0)
+                continue;
+            for(int y = 0; y < C; y++)
+            {
+                double w = h[b*stride+y];
+                if(w > 0)
+                {
+                    leftSide.addPoint(w, y);
+                    rightSide.removePoint(w, y);
+                }
+            }
+            leftCount += count;
+            if(leftCount <= minResultSplitSize)
+                continue;
+            else if(size-leftCount <= minResultSplitSize)
+                break;
+            double curGain = ImpurityScore.gain(origScore, leftSide, rightSide);
+            if(curGain >= bestGain)
+            {
+                bestGain = curGain;
+                bestBin = b;
+            }
+        }
+        if(bestBin == -1)
+            return null;
+        SplitCandidate candidate = new SplitCandidate(attribute, bestGain);
+        candidate.bin = bestBin;
+        return candidate;
+    }
+
+    /**
+     * Trains this stump for regression from the histograms of quantized data,
+     * in the same manner as {@link #trainR(java.util.List, java.util.Set) }.
+     * Numeric attributes may only be split between bins. The points of this
+     * stump are the range [<tt>from</tt>, <tt>to</tt>) of <tt>order</tt>,
+     * which is reordered so that the points following each path are contiguous.
+     *
+     * @param data the quantized data
+     * @param weights the weight of every data point
+     * @param order the permutation of data point indices
+     * @param scratch an array the same length as <tt>order</tt>, of which only
+     * the range [<tt>from</tt>, <tt>to</tt>) will be altered
+     * @param from the first position in <tt>order</tt> of the points to train on
+     * @param to the position after the last point to train on
+     * @param hist the histograms of the points to train on
+     * @param options the set of attributes that this regressor may choose
+     * from. The attribute it does choose will be removed from the set.
+     * @param threadPool the source of threads to evaluate the attributes in 
+     * parallel, or {@code null} to evaluate them one at a time
+     * @return the boundaries of the points that follow each path, path <i>i</i>
+     * gets the positions [ends[i], ends[i+1]) of <tt>order</tt>
+     */
+    int[] trainR(final QuantizedFeatures data, final double[] weights, final int[] order, int[] scratch, final int from, final int to, final NodeHistogram hist, Set<Integer> options, ExecutorService threadPool)
+    {
+        catAttributes = data.getCategories();
+        double sumW = 0, sumWY = 0, sumWYY = 0;
+        for(int k = from; k < to; k++)
+        {
+            double w = weights[order[k]];
+            double y = data.targets[order[k]];
+            sumW += w;
+            sumWY += w*y;
+            sumWYY += w*y*y;
+        }
+
+        //Not enough points for a split to occur
+        if(to-from <= minResultSplitSize*2)
+        {
+            splittingAttribute = catAttributes.length;
+            regressionResults = new double[]{sumWY/sumW};
+            return new int[]{from, to};
+        }
+
+        final double[] totals = new double[]{sumW, sumWY, sumWYY};
+        SplitCandidate best = new AttributeSearch()
+        {
+            @Override
+            SplitCandidate evaluate(int attribute)
+            {
+                return evaluateR(attribute, hist.get(attribute, weights, order, from, to), hist, to-from, totals, data);
+            }
+        }.search(options, -Double.MAX_VALUE, threadPool);
+
+        if(best == null)//No split was admissible
+        {
+            splittingAttribute = catAttributes.length;
+            regressionResults = new double[]{sumWY/sumW};
+            return new int[]{from, to};
+        }
+        splittingAttribute = best.attribute;
+        regressionResults = best.means;
+
+        //Removal of attribute from list if needed
+        if(splittingAttribute < catAttributes.length || removeContinuousAttributes)
+            options.remove(splittingAttribute);
+
+        return partition(data, splittingAttribute, best.bin, hist.binCount(splittingAttribute), order, scratch, from, to);
+    }
+
+    /**
+     * Finds the best regression split on one attribute from its histogram
+     * @param attribute the attribute to split on
+     * @param h the histogram of the attribute
+     * @param hist the histograms the attribute's came from
+     * @param size the number of data points
+     * @param totals the sum of weights, weighted targets, and weighted squared
+     * targets of the data points
+     * @param data the quantized data
+     * @return the split, scored by its negative squared error, or 
+     * {@code null} if no split could be made
+     */
+    private SplitCandidate evaluateR(int attribute, double[] h, NodeHistogram hist, int size, double[] totals, QuantizedFeatures data)
+    {
+        final int stride = hist.stride;
+        final double sumW = totals[0], sumWY = totals[1], sumWYY = totals[2];
+        int binCount = hist.binCount(attribute);
+        if(attribute < catAttributes.length)
+        {
+            double thisSplitSqrdErr = 0.0;
+            double[] thisMeans = new double[binCount];
+            for(int b = 0; b < binCount; b++)
+            {
+                double w = h[b*stride];
+                if(h[b*stride+3] == 0)
                 {
-                    @Override
-                    public int compare(DataPointPair<Double> o1, DataPointPair<Double> o2)
+                    thisMeans[b] = sumWY/sumW;
+                    continue;
+                }
+                thisSplitSqrdErr += h[b*stride+2] - h[b*stride+1]*h[b*stride+1]/w;
+                thisMeans[b] = h[b*stride+1]/w;
+            }
+            SplitCandidate candidate = new SplitCandidate(attribute, -thisSplitSqrdErr);
+            candidate.means = thisMeans;
+            return candidate;
+        }
+
+        double thisSplitSqrdErr = Double.POSITIVE_INFINITY;
+        double[] thisMeans = new double[3];
+        double leftW = 0, leftWY = 0, leftWYY = 0;
+        int leftCount = 0;
+        int bestBin = -1;
+        for(int b = 0; b < binCount-1; b++)
+        {
+            int count = (int) h[b*stride+3];
+            if(count == 0)
+                continue;
+            leftW += h[b*stride];
+            leftWY += h[b*stride+1];
+            leftWYY += h[b*stride+2];
+            leftCount += count;
+            if(leftCount < minResultSplitSize)
+                continue;
+            else if(size-leftCount < minResultSplitSize)
+                break;
+            double rightW = sumW-leftW, rightWY = sumWY-leftWY;
+            double tmpSVariance = leftWYY - leftWY*leftWY/leftW
+                    + (sumWYY-leftWYY) - rightWY*rightWY/rightW;
+            if(tmpSVariance < thisSplitSqrdErr && !Double.isInfinite(tmpSVariance) && !Double.isNaN(tmpSVariance))
+            {
+                thisSplitSqrdErr = tmpSVariance;
+                bestBin = b;
+                thisMeans[0] = leftWY/leftW;
+                thisMeans[1] = rightWY/rightW;
+                //Third spot contains the split value!
+                thisMeans[2] = data.splits[attribute-catAttributes.length][b];
+            }
+        }
+        if(bestBin == -1)
+            return null;
+        SplitCandidate candidate = new SplitCandidate(attribute, -thisSplitSqrdErr);
+        candidate.means = thisMeans;
+        candidate.bin = bestBin;
+        return candidate;
+    }
+
+    /**
+     * A possible split of the data on one attribute. Larger scores are better.
+     */
+    private static class SplitCandidate
+    {
+        final int attribute;
+        final double score;
+        /**
+         * The data points following each path, for splits of lists
+         */
+        List<?> split;
+        /**
+         * The boundaries and their paths, for numeric classification splits 
+         * of lists
+         */
+        PairedReturn<List<Double>, List<Integer>> boundaries;
+        /**
+         * The regression results of each path
+         */
+        double[] means;
+        /**
+         * The last bin of the left path, for numeric splits of histograms
+         */
+        int bin = -1;
+
+        public SplitCandidate(int attribute, double score)
+        {
+            this.attribute = attribute;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Evaluates every attribute that may be split on and keeps the best. When
+     * given a thread pool, the attributes are handed out one at a time to 
+     * helper tasks and to the calling thread, which evaluates attributes 
+     * itself rather than blocking. Helpers that start after every attribute 
+     * has been handed out do nothing, so the caller never waits on a task that
+     * is queued behind it. Ties go to the attribute that comes first in the 
+     * options, which matches a sequential search.
+     */
+    private static abstract class AttributeSearch
+    {
+        private int[] attributes;
+        private final AtomicInteger next = new AtomicInteger();
+        private int finished = 0;
+        private SplitCandidate best;
+        private int bestPos;
+        private double threshold;
+        /**
+         * The first exception thrown while evaluating an attribute, rethrown
+         * to the caller once every attribute is done
+         */
+        private Throwable failure;
+
+        /**
+         * Finds the best split on one attribute
+         * @param attribute the attribute
+         * @return the best split, or {@code null} if the attribute can not be
+         * split
+         */
+        abstract SplitCandidate evaluate(int attribute);
+
+        /**
+         * Searches for the best split
+         * @param options the attributes to search
+         * @param threshold the score that a split must exceed
+         * @param threadPool the source of threads, or {@code null} to search
+         * on the calling thread
+         * @return the split with the largest score, or {@code null} if no 
+         * split exceeds the threshold
+         * @throws FailedToFitException if evaluating an attribute threw a 
+         * checked exception. Runtime exceptions and errors are rethrown as is
+         */
+        public SplitCandidate search(Set<Integer> options, double threshold, ExecutorService threadPool)
+        {
+            this.threshold = threshold;
+            attributes = new int[options.size()];
+            int pos = 0;
+            for(int attribute : options)
+                attributes[pos++] = attribute;
+
+            if(threadPool != null && !(threadPool instanceof FakeExecutor) && attributes.length > 1)
+            {
+                int helpers = Math.min(SystemInfo.LogicalCores, attributes.length)-1;
+                for(int i = 0; i < helpers; i++)
+                    threadPool.submit(new Runnable()
                     {
-                        return Double.compare(o1.getVector().get(numAttri), o2.getVector().get(numAttri));
+                        @Override
+                        public void run()
+                        {
+                            work();
+                        }
+                    });
+            }
+            work();
+            synchronized(this)
+            {
+                while(finished < attributes.length)
+                    try
+                    {
+                        wait();
                     }
-                };
-                Collections.sort(dataPoints, dppDoubleSorter);
-                
-                //2 passes, first to sum up the right side, 2nd to move down the grow the left side 
-                OnLineStatistics rightSide = new OnLineStatistics();
-                OnLineStatistics leftSide = new OnLineStatistics();
-                
-                for(DataPointPair<Double> dpp : dataPoints)
-                    rightSide.add(dpp.getPair(), dpp.getDataPoint().getWeight());
-                int bestS = 0;
-                thisSplitSqrdErr = Double.POSITIVE_INFINITY;
-                
-                thisMeans = new double[3];
-                
-                for(int i = 0; i < dataPoints.size(); i++)
+                    catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new FailedToFitException(ex);
+                    }
+                if(failure instanceof RuntimeException)
+                    throw (RuntimeException) failure;
+                else if(failure instanceof Error)
+                    throw (Error) failure;
+                else if(failure != null)
+                    throw new FailedToFitException((Exception) failure);
+                return best;
+            }
+        }
+
+        private void work()
+        {
+            int pos;
+            while((pos = next.getAndIncrement()) < attributes.length)
+            {
+                SplitCandidate candidate = null;
+                Throwable error = null;
+                try
+                {
+                    candidate = evaluate(attributes[pos]);
+                }
+                catch(Throwable t)
                 {
-                    DataPointPair<Double> dpp = dataPoints.get(i);
-                    double weight = dpp.getDataPoint().getWeight();
-                    double val = dpp.getPair();
-                    rightSide.remove(val, weight);
-                    leftSide.add(val, weight);
-                    
-                    
-                    if(i < minResultSplitSize)
-                        continue;
-                    else if(i > dataPoints.size()-minResultSplitSize)
-                        break;
-                    
-                    double tmpSVariance = rightSide.getVarance()*rightSide.getSumOfWeights() 
-                            + leftSide.getVarance()*leftSide.getSumOfWeights();
-                    if(tmpSVariance < thisSplitSqrdErr && !Double.isInfinite(tmpSVariance))//Infinity can occur once the weights get REALY small
+                    error = t;
+                }
+                synchronized(this)
+                {
+                    if(error != null && failure == null)
+                        failure = error;
+                    if(candidate != null && candidate.score > threshold 
+                            && (best == null || candidate.score > best.score || (candidate.score == best.score && pos < bestPos)))
                     {
-                        thisSplitSqrdErr = tmpSVariance;
-                        bestS = i;
-                        thisMeans[0] = leftSide.getMean();
-                        thisMeans[1] = rightSide.getMean();
-                        //Third spot contains the split value!
-                        thisMeans[2] = (dataPoints.get(bestS).getVector().get(numAttri) 
-                                + dataPoints.get(bestS+1).getVector().get(numAttri))/2.0;
+                        best = candidate;
+                        bestPos = pos;
                     }
+                    finished++;
+                    notifyAll();
                 }
-                //Now we have the binary split that minimizes the variances of the 2 sets, 
-                thisSplit = listOfListsD(2);
-                thisSplit.get(0).addAll(dataPoints.subList(0, bestS+1));
-                thisSplit.get(1).addAll(dataPoints.subList(bestS+1, dataPoints.size()));
             }
-            //Now compare what weve done
-            if(thisSplitSqrdErr < lowestSplitSqrdError)
+        }
+    }
+
+    /**
+     * Reorders the range [<tt>from</tt>, <tt>to</tt>) of <tt>order</tt> so
+     * that the points following each path of a split are contiguous
+     *
+     * @param attribute the attribute split on
+     * @param bin the last bin of the left path for a numeric attribute
+     * @param binCount the number of bins of the attribute
+     * @return the boundaries of the points that follow each path
+     */
+    private static int[] partition(QuantizedFeatures data, int attribute, int bin, int binCount, int[] order, int[] scratch, int from, int to)
+    {
+        int catCount = data.cats.length;
+        if(attribute >= catCount)
+        {
+            byte[] bins = data.bins[attribute-catCount];
+            int left = from, right = to-1;
+            while(left <= right)
             {
-                lowestSplitSqrdError = thisSplitSqrdErr;
-                bestSplit = thisSplit;
-                splittingAttribute = attribute;
-                regressionResults = thisMeans;
+                if((bins[order[left]] & 0xFF) <= bin)
+                    left++;
+                else
+                {
+                    int tmp = order[left];
+                    order[left] = order[right];
+                    order[right--] = tmp;
+                }
             }
+            return new int[]{from, left, to};
         }
-        
-        //Removal of attribute from list if needed
-        if(splittingAttribute < catAttributes.length || removeContinuousAttributes)
-            options.remove(splittingAttribute);
-        
-        
-        return bestSplit;
+        //Counting sort on the category
+        int[] cats = data.cats[attribute];
+        int[] ends = new int[binCount+1];
+        for(int k = from; k < to; k++)
+            ends[cats[order[k]]+1]++;
+        ends[0] = from;
+        for(int b = 0; b < binCount; b++)
+            ends[b+1] += ends[b];
+        int[] pos = Arrays.copyOf(ends, binCount);
+        for(int k = from; k < to; k++)
+            scratch[pos[cats[order[k]]]++] = order[k];
+        System.arraycopy(scratch, from, order, from, to-from);
+        return ends;
     }
-    
+
     private static List<List<DataPointPair<Integer>>> listOfLists(int n )
     {
         List<List<DataPointPair<Integer>>> aSplit =
@@ -20,6 +20,8 @@ import jsat.parameters.Parameterized;
 import jsat.regression.RegressionDataSet;
 import jsat.regression.Regressor;
 import jsat.utils.FakeExecutor;
+import jsat.utils.IntList;
+import jsat.utils.ListUtils;
 import jsat.utils.ModifiableCountDownLatch;
 
 /**
@@ -30,6 +32,13 @@ import jsat.utils.ModifiableCountDownLatch;
  */
 public class DecisionTree implements Classifier, Regressor, Parameterized, TreeLearner
 {
+    /**
+     * Nodes with at least this many data points search their attributes in 
+     * parallel, and hand their children to the thread pool. Smaller nodes are
+     * expanded entirely on the thread that created them, as the overhead of 
+     * a task would outweigh the work. 
+     */
+    static final int PARALLEL_NODE_SIZE = 2048;
     private int maxDepth;
     private int minSamples;
     private Node root;
@@ -44,6 +53,11 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
      * inside the stump instead of duplicating them here. 
      */
     private DecisionStump baseStump = new DecisionStump();
+    /**
+     * The number of bins to quantize numeric features into, or zero to train
+     * on the exact values
+     */
+    private int histogramBins = 0;
 
     @Override
     public double regress(DataPoint data)
@@ -67,8 +81,18 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
 
     public void train(RegressionDataSet dataSet, Set<Integer> options, ExecutorService threadPool)
     {
+        if(histogramBins > 0)
+        {
+            QuantizedFeatures data = new QuantizedFeatures(dataSet, histogramBins, threadPool);
+            int[] order = new int[data.getSampleSize()];
+            for(int i = 0; i < order.length; i++)
+                order[i] = i;
+            trainHistogram(data, data.weights, order, options, threadPool);
+            return;
+        }
         ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
         root = makeNodeR(dataSet.getDPPList(), options, 0, threadPool, mcdl);
+        mcdl.countDown();
         try
         {
             mcdl.await();
@@ -126,6 +150,7 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
         this.pruningMethod = toCopy.pruningMethod;
         this.testProportion = toCopy.testProportion;
         this.baseStump = toCopy.baseStump.clone();
+        this.histogramBins = toCopy.histogramBins;
     }
 
     /**
@@ -210,6 +235,36 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
         return baseStump.getMinResultSplitSize();
     }
     
+    /**
+     * Sets the number of bins that numeric features are quantized into before
+     * training. When non zero, the data is quantized once and the splits of
+     * every node are found from per bin histograms of the node's data points,
+     * rather than by sorting the data points on every feature at every node. 
+     * This is much faster for large data sets, but numeric features may only be
+     * split between bins. Histograms are only used for classification when 
+     * the numeric handling is {@link DecisionStump.NumericHandlingC#BINARY_BEST_GAIN}.
+     * 
+     * @param histogramBins the number of bins in the range [2, 
+     * {@value QuantizedFeatures#MAX_BINS}], or zero to train on the exact 
+     * values
+     */
+    public void setHistogramBins(int histogramBins)
+    {
+        if(histogramBins != 0 && (histogramBins < 2 || histogramBins > QuantizedFeatures.MAX_BINS))
+            throw new IllegalArgumentException("Number of bins must be zero or in [2, " + QuantizedFeatures.MAX_BINS + "], not " + histogramBins);
+        this.histogramBins = histogramBins;
+    }
+
+    /**
+     * Returns the number of bins that numeric features are quantized into, or
+     * zero if the exact values are used
+     * @return the number of histogram bins
+     */
+    public int getHistogramBins()
+    {
+        return histogramBins;
+    }
+    
     /**
      * Sets the maximum depth that this classifier may build trees to. 
      * @param maxDepth the maximum depth of the trained tree
@@ -324,6 +379,12 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
                     " are needed to make a tree");
         this.predicting = dataSet.getPredicting();
         
+        if(histogramBins > 0 && getNumericHandling() == DecisionStump.NumericHandlingC.BINARY_BEST_GAIN)
+        {
+            trainCHistogram(dataSet, options, threadPool);
+            return;
+        }
+        
         ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
         
         List<DataPointPair<Integer>> dataPoints = dataSet.getAsDPPList();
@@ -343,6 +404,7 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
         }
         
         this.root = makeNodeC(dataPoints, options, 0, threadPool, mcdl);
+        mcdl.countDown();
         
         try
         {
@@ -357,26 +419,183 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
         prune(root, pruningMethod, testPoints);
     }
 
+    /**
+     * Histogram version of {@link #trainC(jsat.classifiers.ClassificationDataSet, java.util.Set, java.util.concurrent.ExecutorService) },
+     * which sets aside the same testing set for pruning
+     */
+    private void trainCHistogram(ClassificationDataSet dataSet, Set<Integer> options, ExecutorService threadPool)
+    {
+        QuantizedFeatures data = new QuantizedFeatures(dataSet, histogramBins, threadPool);
+        IntList trainIndices = new IntList(dataSet.getSampleSize());
+        ListUtils.addRange(trainIndices, 0, dataSet.getSampleSize(), 1);
+        List<DataPointPair<Integer>> testPoints = new ArrayList<DataPointPair<Integer>>();
+        
+        if(pruningMethod != PruningMethod.NONE && testProportion != 0.0)//Then we need to set aside a testing set
+        {
+            if(testProportion != 1)
+            {
+                int testSize = (int) (trainIndices.size()*testProportion);
+                Random rand = new Random(testSize);
+                for(int i = 0; i < testSize; i++)
+                {
+                    int index = trainIndices.remove(rand.nextInt(trainIndices.size()));
+                    testPoints.add(new DataPointPair<Integer>(dataSet.getDataPoint(index), dataSet.getDataPointCategory(index)));
+                }
+            }
+            else
+                testPoints.addAll(dataSet.getAsDPPList());
+        }
+        
+        int[] order = new int[trainIndices.size()];
+        for(int i = 0; i < order.length; i++)
+            order[i] = trainIndices.getI(i);
+        trainHistogram(data, data.weights, order, options, threadPool);
+        
+        prune(root, pruningMethod, testPoints);
+    }
+    
+    /**
+     * Grows the tree from quantized data without pruning. The data may be 
+     * shared with other trees, such as in {@link RandomForest}.
+     * 
+     * @param data the quantized data
+     * @param weights the weight of every data point, which may differ from
+     * the weights in the data
+     * @param order the indices of the data points to train on, which will be 
+     * reordered
+     * @param options the attributes that this tree may select from
+     * @param threadPool the source of threads
+     */
+    void trainHistogram(QuantizedFeatures data, double[] weights, int[] order, Set<Integer> options, ExecutorService threadPool)
+    {
+        this.predicting = data.getPredicting();
+        ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
+        root = makeNodeH(data, weights, order, new int[order.length], 0, order.length, null, options, 0, threadPool, mcdl);
+        mcdl.countDown();
+        try
+        {
+            mcdl.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Logger.getLogger(DecisionTree.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+    
+    /**
+     * Returns {@code true} if the histograms of a node may be used to derive
+     * the histograms of its children, which is only useful when the children 
+     * consider the same features as their parent
+     * @return {@code true} if child histograms should be derived from their 
+     * parent's
+     */
+    boolean deriveChildHistograms()
+    {
+        return true;
+    }
+    
+    /**
+     * Makes a new node for classification or regression from quantized data
+     * @param data the quantized data
+     * @param weights the weight of every data point
+     * @param order the permutation of data point indices
+     * @param scratch an array the same length as <tt>order</tt>
+     * @param from the first position in <tt>order</tt> of the node's points
+     * @param to the position after the last of the node's points
+     * @param hist the histograms of the node's points, or {@code null} if 
+     * none have been made
+     * @param options the attributes that this tree may select from
+     * @param depth the current depth of the tree
+     * @param threadPool the source of threads
+     * @param mcdl count down latch, counted up for each child task. A child
+     * task counts it down once the child node has been stored.
+     * @return the node created, or null if no node was created
+     */
+    Node makeNodeH(final QuantizedFeatures data, final double[] weights, final int[] order, final int[] scratch, 
+            int from, int to, NodeHistogram hist, final Set<Integer> options, final int depth,
+            final ExecutorService threadPool, final ModifiableCountDownLatch mcdl)
+    {
+        if(depth > maxDepth || options.isEmpty() || to-from < minSamples || to == from)
+            return null;
+        DecisionStump stump = baseStump.clone();
+        stump.setPredicting(this.predicting);
+        if(hist == null)
+            hist = new NodeHistogram(data);
+        final int[] ends;
+        ExecutorService searchPool = to-from >= PARALLEL_NODE_SIZE ? threadPool : null;
+        if(data.isClassification())
+            ends = stump.trainC(data, weights, order, scratch, from, to, hist, options, searchPool);
+        else
+            ends = stump.trainR(data, weights, order, scratch, from, to, hist, options, searchPool);
+        
+        final Node node = new Node(stump);
+        if(stump.getNumberOfPaths() > 1)//If there is 1 path, we are perfectly classifier - nothing more to do 
+        {
+            final NodeHistogram[] childHists;
+            if(depth < maxDepth && deriveChildHistograms())
+                childHists = hist.split(ends, weights, order);
+            else
+                childHists = new NodeHistogram[ends.length-1];
+            hist = null;//children may run on this thread, let it be collected
+            for(int i = 0; i < node.paths.length; i++)
+            {
+                final int ii = i;
+                mcdl.countUp();
+                expand(ends[i+1]-ends[i], threadPool, new Runnable() {
+
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            node.paths[ii] = makeNodeH(data, weights, order, scratch, ends[ii], ends[ii+1], childHists[ii],
+                                    new HashSet<Integer>(options), depth+1, threadPool, mcdl);
+                        }
+                        finally
+                        {
+                            mcdl.countDown();
+                        }
+                    }
+                });
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Expands a child node, as a new task if it is large enough to be worth 
+     * running in parallel, or on the current thread otherwise
+     * @param size the number of data points of the child
+     * @param threadPool the source of threads
+     * @param expansion the work of making the child node
+     */
+    private static void expand(int size, ExecutorService threadPool, Runnable expansion)
+    {
+        if(size >= PARALLEL_NODE_SIZE)
+            threadPool.submit(expansion);
+        else
+            expansion.run();
+    }
+
     /**
      * Makes a new node for classification 
      * @param dataPoints the list of data points paired with their class
      * @param options the attributes that this tree may select from
      * @param depth the current depth of the tree
      * @param threadPool the source of threads
-     * @param mcdl count down latch 
+     * @param mcdl count down latch, counted up for each child task. A child
+     * task counts it down once the child node has been stored.
      * @return the node created, or null if no node was created
      */
     protected Node makeNodeC(List<DataPointPair<Integer>> dataPoints, final Set<Integer> options, final int depth,
             final ExecutorService threadPool, final ModifiableCountDownLatch mcdl)
     {
         if(depth > maxDepth || options.isEmpty() || dataPoints.size() < minSamples || dataPoints.isEmpty())
-        {
-            mcdl.countDown();
             return null;
-        }
         DecisionStump stump = baseStump.clone();
         stump.setPredicting(this.predicting);
-        final List<List<DataPointPair<Integer>>> splits = stump.trainC(dataPoints, options);
+        final List<List<DataPointPair<Integer>>> splits = stump.trainC(dataPoints, options, 
+                dataPoints.size() >= PARALLEL_NODE_SIZE ? threadPool : null);
         
         final Node node = new Node(stump);
         if(stump.getNumberOfPaths() > 1)//If there is 1 path, we are perfectly classifier - nothing more to do 
@@ -385,16 +604,22 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
                 final int ii = i;
                 final List<DataPointPair<Integer>> splitI = splits.get(i);
                 mcdl.countUp();
-                threadPool.submit(new Runnable() {
+                expand(splitI.size(), threadPool, new Runnable() {
 
+                    @Override
                     public void run()
                     {
-                        node.paths[ii] = makeNodeC(splitI, new HashSet<Integer>(options), depth+1, threadPool, mcdl);
+                        try
+                        {
+                            node.paths[ii] = makeNodeC(splitI, new HashSet<Integer>(options), depth+1, threadPool, mcdl);
+                        }
+                        finally
+                        {
+                            mcdl.countDown();
+                        }
                     }
                 });
             }
-        
-        mcdl.countDown();
         return node;
     }
     
@@ -404,19 +629,18 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
      * @param options the attributes that this tree may select from 
      * @param depth the current depth of the tree
      * @param threadPool the source of threads
-     * @param mcdl count down latch 
+     * @param mcdl count down latch, counted up for each child task. A child
+     * task counts it down once the child node has been stored.
      * @return the node created, or null if no node was created
      */
     protected Node makeNodeR(List<DataPointPair<Double>> dataPoints, final Set<Integer> options, final int depth,
             final ExecutorService threadPool, final ModifiableCountDownLatch mcdl)
     {
         if(depth > maxDepth || options.isEmpty() || dataPoints.size() < minSamples || dataPoints.isEmpty())
-        {
-            mcdl.countDown();
             return null;
-        }
         DecisionStump stump = baseStump.clone();
-        final List<List<DataPointPair<Double>>> splits = stump.trainR(dataPoints, options);
+        final List<List<DataPointPair<Double>>> splits = stump.trainR(dataPoints, options, 
+                dataPoints.size() >= PARALLEL_NODE_SIZE ? threadPool : null);
         
         final Node node = new Node(stump);
         if(stump.getNumberOfPaths() > 1)//If there is 1 path, we are perfectly classifier - nothing more to do 
@@ -425,17 +649,22 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
                 final int ii = i;
                 final List<DataPointPair<Double>> splitI = splits.get(i);
                 mcdl.countUp();
-                threadPool.submit(new Runnable() {
+                expand(splitI.size(), threadPool, new Runnable() {
 
                     @Override
                     public void run()
                     {
-                        node.paths[ii] = makeNodeR(splitI, new HashSet<Integer>(options), depth+1, threadPool, mcdl);
+                        try
+                        {
+                            node.paths[ii] = makeNodeR(splitI, new HashSet<Integer>(options), depth+1, threadPool, mcdl);
+                        }
+                        finally
+                        {
+                            mcdl.countDown();
+                        }
                     }
                 });
             }
-        
-        mcdl.countDown();
         return node;
     }
 
@@ -465,6 +694,7 @@ public class DecisionTree implements Classifier, Regressor, Parameterized, TreeL
         if(this.root != null)
             copy.root = this.root.clone();
         copy.baseStump = this.baseStump.clone();
+        copy.histogramBins = this.histogramBins;
         return copy;
     }
 
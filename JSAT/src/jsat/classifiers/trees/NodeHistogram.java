@@ -0,0 +1,158 @@
+package jsat.classifiers.trees;
+
+/**
+ * The per bin sums of the data points that reach one node of a tree trained
+ * on {@link QuantizedFeatures}. Features are numbered as in
+ * {@link DecisionStump}, with the categorical features first, and the
+ * histogram of a categorical feature has one bin per category. The histogram
+ * of a feature is only built when it is first needed.
+ * <br><br>
+ * For classification each bin holds the weight of each class followed by the
+ * number of points in the bin. For regression each bin holds the sum of
+ * weights, the weighted sum of the targets, the weighted sum of the squared
+ * targets, and the number of points in the bin.
+ *
+ * @author Edward Raff
+ */
+class NodeHistogram
+{
+    private final QuantizedFeatures data;
+    /**
+     * The number of values stored for each bin
+     */
+    final int stride;
+    private final double[][] hist;
+
+    public NodeHistogram(QuantizedFeatures data)
+    {
+        this.data = data;
+        this.stride = data.isClassification() ? data.getPredicting().getNumOfCategories()+1 : 4;
+        this.hist = new double[data.getCategories().length+data.getNumNumericalVars()][];
+    }
+
+    /**
+     * Returns the number of bins of a feature
+     * @param attribute the feature
+     * @return the number of bins, or categories, of the feature
+     */
+    public int binCount(int attribute)
+    {
+        int catCount = data.getCategories().length;
+        if(attribute < catCount)
+            return data.getCategories()[attribute].getNumOfCategories();
+        return data.getNumBins(attribute-catCount);
+    }
+
+    /**
+     * Returns the bin a data point falls in for a feature
+     */
+    private int binOf(int attribute, int i)
+    {
+        int catCount = data.cats.length;
+        if(attribute < catCount)
+            return data.cats[attribute][i];
+        return data.bins[attribute-catCount][i] & 0xFF;
+    }
+
+    /**
+     * Returns the histogram of a feature, building it if it has not been
+     * @param attribute the feature
+     * @param weights the weight of every data point
+     * @param order the permutation of data point indices
+     * @param from the first position in <tt>order</tt> of this node's points
+     * @param to the position after the last of this node's points
+     * @return the histogram of the feature
+     */
+    public double[] get(int attribute, double[] weights, int[] order, int from, int to)
+    {
+        if(hist[attribute] == null)
+            hist[attribute] = build(attribute, weights, order, from, to);
+        return hist[attribute];
+    }
+
+    private double[] build(int attribute, double[] weights, int[] order, int from, int to)
+    {
+        double[] h = new double[binCount(attribute)*stride];
+        if(data.isClassification())
+        {
+            int[] labels = data.labels;
+            for(int k = from; k < to; k++)
+            {
+                int i = order[k];
+                int pos = binOf(attribute, i)*stride;
+                h[pos+labels[i]] += weights[i];
+                h[pos+stride-1]++;
+            }
+        }
+        else
+        {
+            double[] targets = data.targets;
+            for(int k = from; k < to; k++)
+            {
+                int i = order[k];
+                int pos = binOf(attribute, i)*stride;
+                double w = weights[i];
+                double wy = w*targets[i];
+                h[pos] += w;
+                h[pos+1] += wy;
+                h[pos+2] += wy*targets[i];
+                h[pos+3]++;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Creates the histograms of the children of this node for the features
+     * this node has histograms for. The histograms of all but the largest
+     * child are built from their data points, and the histogram of the
+     * largest child is this node's histogram minus those of its siblings. If
+     * that would cost more than building the largest child's histogram
+     * directly, no histograms are made.
+     *
+     * @param ends the boundaries of each child's points in <tt>order</tt>,
+     * child <i>i</i> has the positions [ends[i], ends[i+1])
+     * @param weights the weight of every data point
+     * @param order the permutation of data point indices
+     * @return the histograms for each child, which may be {@code null}
+     */
+    public NodeHistogram[] split(int[] ends, double[] weights, int[] order)
+    {
+        NodeHistogram[] children = new NodeHistogram[ends.length-1];
+        int largest = 0;
+        for(int c = 1; c < children.length; c++)
+            if(ends[c+1]-ends[c] > ends[largest+1]-ends[largest])
+                largest = c;
+
+        long cells = 0;
+        int present = 0;
+        for(double[] h : hist)
+            if(h != null)
+            {
+                cells += h.length;
+                present++;
+            }
+        if((long) (ends[largest+1]-ends[largest])*present <= cells)
+            return children;
+
+        for(int c = 0; c < children.length; c++)
+            children[c] = new NodeHistogram(data);
+        NodeHistogram big = children[largest];
+        for(int a = 0; a < hist.length; a++)
+        {
+            if(hist[a] == null)
+                continue;
+            double[] remaining = hist[a].clone();
+            for(int c = 0; c < children.length; c++)
+            {
+                if(c == largest)
+                    continue;
+                double[] h = children[c].get(a, weights, order, ends[c], ends[c+1]);
+                for(int j = 0; j < h.length; j++)
+                    remaining[j] -= h[j];
+            }
+            big.hist[a] = remaining;
+        }
+        return children;
+    }
+}
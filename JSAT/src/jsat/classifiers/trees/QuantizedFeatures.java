@@ -0,0 +1,287 @@
+package jsat.classifiers.trees;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jsat.DataSet;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.DoubleList;
+import jsat.utils.FakeExecutor;
+import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ParallelUtils;
+
+/**
+ * A read only copy of a data set where every numeric feature has been
+ * quantized into at most 256 bins, which is used by {@link DecisionTree} to
+ * find splits from per bin histograms instead of by sorting the data at every
+ * node. The bins are chosen from the quantiles of each feature, and a feature
+ * with fewer distinct values than the number of bins gets one bin per value,
+ * in which case no split is lost. <br>
+ * The quantization is done once, and may be shared by any number of trees
+ * trained on the same data, such as the trees of a {@link RandomForest}.
+ *
+ * @author Edward Raff
+ */
+public class QuantizedFeatures
+{
+    /**
+     * The largest number of bins a feature may be quantized into
+     */
+    public static final int MAX_BINS = 256;
+
+    private final int n;
+    private final CategoricalData[] catInfo;
+    private final CategoricalData predicting;
+    /**
+     * The bin of each data point, stored as an unsigned byte, indexed by
+     * [numeric feature][data point]
+     */
+    final byte[][] bins;
+    /**
+     * The split value between each bin and the next one, indexed by
+     * [numeric feature][bin]. A value less than or equal to the split belongs
+     * to a bin at or before it.
+     */
+    final double[][] splits;
+    /**
+     * The category of each data point, indexed by
+     * [categorical feature][data point]
+     */
+    final int[][] cats;
+    /**
+     * The weight of each data point
+     */
+    final double[] weights;
+    /**
+     * The class of each data point, or {@code null} for regression
+     */
+    final int[] labels;
+    /**
+     * The target value of each data point, or {@code null} for classification
+     */
+    final double[] targets;
+
+    /**
+     * Quantizes a data set
+     * @param dataSet the classification or regression data set to quantize
+     * @param maxBins the maximum number of bins to use for each numeric
+     * feature, in the range [2, {@value #MAX_BINS}]
+     */
+    public QuantizedFeatures(DataSet dataSet, int maxBins)
+    {
+        this(dataSet, maxBins, new FakeExecutor());
+    }
+
+    /**
+     * Quantizes a data set
+     * @param dataSet the classification or regression data set to quantize
+     * @param maxBins the maximum number of bins to use for each numeric
+     * feature, in the range [2, {@value #MAX_BINS}]
+     * @param threadPool the source of threads to quantize the features in
+     * parallel
+     */
+    public QuantizedFeatures(DataSet dataSet, final int maxBins, ExecutorService threadPool)
+    {
+        if(maxBins < 2 || maxBins > MAX_BINS)
+            throw new IllegalArgumentException("Number of bins must be in [2, " + MAX_BINS + "], not " + maxBins);
+        n = dataSet.getSampleSize();
+        catInfo = CategoricalData.copyOf(dataSet.getCategories());
+
+        weights = new double[n];
+        cats = new int[catInfo.length][n];
+        for(int i = 0; i < n; i++)
+        {
+            weights[i] = dataSet.getDataPoint(i).getWeight();
+            for(int j = 0; j < cats.length; j++)
+                cats[j][i] = dataSet.getDataPoint(i).getCategoricalValue(j);
+        }
+
+        if(dataSet instanceof ClassificationDataSet)
+        {
+            ClassificationDataSet cds = (ClassificationDataSet) dataSet;
+            predicting = cds.getPredicting();
+            labels = new int[n];
+            for(int i = 0; i < n; i++)
+                labels[i] = cds.getDataPointCategory(i);
+            targets = null;
+        }
+        else if(dataSet instanceof RegressionDataSet)
+        {
+            predicting = null;
+            labels = null;
+            targets = ((RegressionDataSet) dataSet).getTargetValues().arrayCopy();
+        }
+        else
+            throw new IllegalArgumentException("Data set must be for classification or regression");
+
+        final Vec[] columns = dataSet.getNumericColumns();
+        bins = new byte[columns.length][];
+        splits = new double[columns.length][];
+
+        final int P = threadPool instanceof FakeExecutor ? 1 : Math.min(SystemInfo.LogicalCores, Math.max(columns.length, 1));
+        final CountDownLatch latch = new CountDownLatch(P);
+        //the first exception thrown by a worker, rethrown once all are done
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for(int id = 0; id < P; id++)
+        {
+            final int start = ParallelUtils.getStartBlock(columns.length, id, P);
+            final int end = ParallelUtils.getEndBlock(columns.length, id, P);
+            threadPool.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        double[] vals = new double[n];
+                        for(int j = start; j < end && failure.get() == null; j++)
+                            quantize(j, columns[j], maxBins, vals);
+                    }
+                    catch(Throwable t)
+                    {
+                        failure.compareAndSet(null, t);
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Logger.getLogger(QuantizedFeatures.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        Throwable t = failure.get();
+        if(t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        else if(t instanceof Error)
+            throw (Error) t;
+        else if(t != null)
+            throw new RuntimeException("Failed to quantize the data set", t);
+    }
+
+    /**
+     * Computes the bin splits of one feature from its quantiles, and places
+     * every data point in its bin
+     * @param j the numeric feature
+     * @param column the values of the feature
+     * @param maxBins the maximum number of bins
+     * @param vals a scratch array of length <i>n</i>
+     */
+    private void quantize(int j, Vec column, int maxBins, double[] vals)
+    {
+        for(int i = 0; i < n; i++)
+            vals[i] = column.get(i);
+        double[] sorted = Arrays.copyOf(vals, n);
+        Arrays.sort(sorted);
+
+        DoubleList featSplits = new DoubleList(maxBins-1);
+        int lastPos = 0;
+        for(int b = 1; b < maxBins; b++)
+        {
+            int pos = Math.max((int) ((long) b*n/maxBins), lastPos+1);
+            //a split can only go between two different values
+            while(pos < n && sorted[pos] == sorted[pos-1])
+                pos++;
+            if(pos >= n)
+                break;
+            double split = (sorted[pos-1]+sorted[pos])/2;
+            if(split == sorted[pos])//rounding when the values are adjacent doubles
+                split = sorted[pos-1];
+            featSplits.add(split);
+            lastPos = pos;
+        }
+
+        double[] featureSplits = new double[featSplits.size()];
+        for(int b = 0; b < featureSplits.length; b++)
+            featureSplits[b] = featSplits.get(b);
+
+        byte[] featureBins = new byte[n];
+        for(int i = 0; i < n; i++)
+        {
+            int b = Arrays.binarySearch(featureSplits, vals[i]);
+            featureBins[i] = (byte) (b < 0 ? -b-1 : b);
+        }
+        splits[j] = featureSplits;
+        bins[j] = featureBins;
+    }
+
+    /**
+     * Returns the number of data points
+     * @return the number of data points
+     */
+    public int getSampleSize()
+    {
+        return n;
+    }
+
+    /**
+     * Returns the number of bins a numeric feature was quantized into
+     * @param j the numeric feature
+     * @return the number of bins used for the feature
+     */
+    public int getNumBins(int j)
+    {
+        return splits[j].length+1;
+    }
+
+    /**
+     * Returns the bin that a data point belongs to for a numeric feature
+     * @param j the numeric feature
+     * @param i the data point
+     * @return the bin of the data point
+     */
+    public int getBin(int j, int i)
+    {
+        return bins[j][i] & 0xFF;
+    }
+
+    /**
+     * Returns the number of numeric features
+     * @return the number of numeric features
+     */
+    public int getNumNumericalVars()
+    {
+        return bins.length;
+    }
+
+    /**
+     * Returns the categorical features of the data
+     * @return the categorical features
+     */
+    public CategoricalData[] getCategories()
+    {
+        return catInfo;
+    }
+
+    /**
+     * Returns the categories of the target class, or {@code null} if this is
+     * regression data
+     * @return the categories of the target class
+     */
+    public CategoricalData getPredicting()
+    {
+        return predicting;
+    }
+
+    /**
+     * Returns {@code true} if this is classification data, or {@code false}
+     * if it is regression data
+     * @return {@code true} if this is classification data
+     */
+    public boolean isClassification()
+    {
+        return labels != null;
+    }
+}
@@ -17,6 +17,11 @@ import jsat.utils.ModifiableCountDownLatch;
 public class RandomDecisionTree extends DecisionTree
 {
     private int numFeatures;
+    /**
+     * Picks the features of each node. {@link Random} is thread safe, so it may
+     * be shared by nodes built in parallel.
+     */
+    private Random rand = new Random();
 
     /**
      * Creates a new Random Decision Tree 
@@ -51,6 +56,26 @@ public class RandomDecisionTree extends DecisionTree
         this.numFeatures = toCopy.numFeatures;
     }
     
+    /**
+     * Sets the source of randomness used to select the features of each node
+     * @param rand the source of randomness to use
+     */
+    public void setRandom(Random rand)
+    {
+        if(rand == null)
+            throw new NullPointerException("source of randomness can not be null");
+        this.rand = rand;
+    }
+
+    /**
+     * Returns the source of randomness used to select the features of each node
+     * @return the source of randomness used to select the features of each node
+     */
+    public Random getRandom()
+    {
+        return rand;
+    }
+    
     /**
      * Sets the number of random features to and use at each node of
      * the decision tree
@@ -92,11 +117,26 @@ public class RandomDecisionTree extends DecisionTree
         return super.makeNodeR(dataPoints, options, depth, threadPool, mcdl); //To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    Node makeNodeH(QuantizedFeatures data, double[] weights, int[] order, int[] scratch, int from, int to, NodeHistogram hist, Set<Integer> options, int depth, ExecutorService threadPool, ModifiableCountDownLatch mcdl)
+    {
+        fillWithRandomFeatures(options, data.getCategories().length+data.getNumNumericalVars());
+        return super.makeNodeH(data, weights, order, scratch, from, to, hist, options, depth, threadPool, mcdl);
+    }
+
+    /**
+     * Each node picks new random features, so the parent's histograms are 
+     * rarely of use to its children
+     */
+    @Override
+    boolean deriveChildHistograms()
+    {
+        return false;
+    }
+
     private void fillWithRandomFeatures(Set<Integer> options, final int featureCount)
     {
         options.clear();
-        Random rand = new Random();
-        
         while(options.size() < numFeatures)
         {
             options.add(rand.nextInt(featureCount));
@@ -57,7 +57,16 @@ public class RandomForest implements Classifier, Regressor, Parameterized
     private boolean useOutOfBagError = false;
     private double outOfBagError;
     private RandomDecisionTree baseLearner;
+    /**
+     * The number of bins to quantize numeric features into, or zero to train
+     * on the exact values
+     */
+    private int histogramBins = 0;
     private List<DecisionTree> forest;
+    /**
+     * The source of the bootstrap samples and feature subsets of each tree
+     */
+    private Random random = new Random();
 
     public RandomForest(int maxForestSize)
     {
@@ -123,6 +132,55 @@ public class RandomForest implements Classifier, Regressor, Parameterized
         return featureSamples == -1;
     }
     
+    /**
+     * Sets the number of bins that numeric features are quantized into before
+     * training. When non zero, the data set is quantized once and shared by
+     * all of the trees, which find their splits from per bin histograms. See
+     * {@link DecisionTree#setHistogramBins(int) }. 
+     * 
+     * @param histogramBins the number of bins in the range [2, 
+     * {@value QuantizedFeatures#MAX_BINS}], or zero to train on the exact 
+     * values
+     */
+    public void setHistogramBins(int histogramBins)
+    {
+        if(histogramBins != 0 && (histogramBins < 2 || histogramBins > QuantizedFeatures.MAX_BINS))
+            throw new IllegalArgumentException("Number of bins must be zero or in [2, " + QuantizedFeatures.MAX_BINS + "], not " + histogramBins);
+        this.histogramBins = histogramBins;
+    }
+
+    /**
+     * Returns the number of bins that numeric features are quantized into, or
+     * zero if the exact values are used
+     * @return the number of histogram bins
+     */
+    public int getHistogramBins()
+    {
+        return histogramBins;
+    }
+    
+    /**
+     * Sets the source of randomness used to draw the bootstrap sample and the
+     * features of each tree. With a seeded source, training with the same
+     * number of threads gives the same forest every time. 
+     * @param random the source of randomness to use
+     */
+    public void setRandom(Random random)
+    {
+        if(random == null)
+            throw new NullPointerException("source of randomness can not be null");
+        this.random = random;
+    }
+
+    /**
+     * Returns the source of randomness used to build the forest
+     * @return the source of randomness used to build the forest
+     */
+    public Random getRandom()
+    {
+        return random;
+    }
+    
     /**
      * Sets the maximum number of trees to create for the forest. 
      * @param maxForestSize the number of base learners to train
@@ -259,7 +317,7 @@ public class RandomForest implements Classifier, Regressor, Parameterized
             roundShare = roundsToDistribut;//All the rounds get shoved onto one thread
         
         //Random used for creating more random objects, faster to duplicate such a small recourse then share and lock
-        Random rand = new Random();
+        Random rand = random;
         List<Future<LearningWorker>> futures = new ArrayList<Future<LearningWorker>>(SystemInfo.LogicalCores);
         
         int[][] counts = null;
@@ -274,10 +332,14 @@ public class RandomForest implements Classifier, Regressor, Parameterized
             counts = new int[dataSet.getSampleSize()][((ClassificationDataSet)dataSet).getClassSize()];
         }
 
+        QuantizedFeatures quantized = null;
+        if(histogramBins > 0)
+            quantized = new QuantizedFeatures(dataSet, histogramBins, threadPool);
+
         while (roundsToDistribut > 0)
         {
             int extra = (extraRounds-- > 0) ? 1 : 0;
-            Future<LearningWorker> future = threadPool.submit(new LearningWorker(dataSet, roundShare + extra, new Random(rand.nextInt()), counts, pred));
+            Future<LearningWorker> future = threadPool.submit(new LearningWorker(dataSet, quantized, roundShare + extra, new Random(rand.nextInt()), counts, pred));
             roundsToDistribut -= (roundShare + extra);
             futures.add(future);
         }
@@ -328,6 +390,7 @@ public class RandomForest implements Classifier, Regressor, Parameterized
         RandomForest clone = new RandomForest(maxForestSize);
         clone.extraSamples = this.extraSamples;
         clone.featureSamples = this.featureSamples;
+        clone.histogramBins = this.histogramBins;
         if(this.predicting != null)
             clone.predicting = this.predicting.clone();
         if(this.forest != null)
@@ -358,6 +421,10 @@ public class RandomForest implements Classifier, Regressor, Parameterized
         int toLearn;
         List<DecisionTree> learned;
         DataSet dataSet;
+        /**
+         * The quantized data set, or {@code null} if the exact values are used
+         */
+        QuantizedFeatures quantized;
         Random random;
         /**
          * For regression: sum of predictions
@@ -366,9 +433,10 @@ public class RandomForest implements Classifier, Regressor, Parameterized
   
         private int[][] counts;
 
-        public LearningWorker(DataSet dataSet, int toLearn, Random random, int[][] counts, AtomicDoubleArray pred)
+        public LearningWorker(DataSet dataSet, QuantizedFeatures quantized, int toLearn, Random random, int[][] counts, AtomicDoubleArray pred)
         {
             this.dataSet = dataSet;
+            this.quantized = quantized;
             this.toLearn = toLearn;
             this.random = random;
             this.learned = new ArrayList<DecisionTree>(toLearn);
@@ -384,6 +452,7 @@ public class RandomForest implements Classifier, Regressor, Parameterized
         {
             Set<Integer> features = new HashSet<Integer>(baseLearner.getRandomFeatureCount());
             int[] sampleCounts = new int[dataSet.getSampleSize()];
+            double[] weights = quantized == null ? null : new double[sampleCounts.length];
             for(int i = 0; i < toLearn; i++)
             {
                 //Sample to get the training points
@@ -393,9 +462,25 @@ public class RandomForest implements Classifier, Regressor, Parameterized
                 while(features.size() < Math.min(baseLearner.getRandomFeatureCount(), dataSet.getNumFeatures()))//The user could have specified too many
                     features.add(random.nextInt(dataSet.getNumFeatures()));
                                 
-                DecisionTree learner = baseLearner.clone();
+                RandomDecisionTree learner = baseLearner.clone();
+                learner.setRandom(new Random(random.nextLong()));
                 
-                if(dataSet instanceof ClassificationDataSet)
+                if(quantized != null)
+                {
+                    int inBag = 0;
+                    for(int j = 0; j < sampleCounts.length; j++)
+                    {
+                        weights[j] = quantized.weights[j]*sampleCounts[j];
+                        if(sampleCounts[j] > 0)
+                            inBag++;
+                    }
+                    int[] order = new int[inBag];
+                    for(int j = 0, pos = 0; j < sampleCounts.length; j++)
+                        if(sampleCounts[j] > 0)
+                            order[pos++] = j;
+                    learner.trainHistogram(quantized, weights, order, features, new FakeExecutor());
+                }
+                else if(dataSet instanceof ClassificationDataSet)
                     learner.trainC(Bagging.getWeightSampledDataSet((ClassificationDataSet)dataSet, sampleCounts), features);
                 else //It must be regression!
                     learner.train(Bagging.getWeightSampledDataSet((RegressionDataSet)dataSet, sampleCounts), features);
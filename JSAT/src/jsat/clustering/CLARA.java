@@ -2,6 +2,10 @@
 package jsat.clustering;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import jsat.DataSet;
 import jsat.SimpleDataSet;
 import jsat.classifiers.DataPoint;
@@ -10,10 +14,14 @@ import jsat.linear.Vec;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.linear.distancemetrics.TrainableDistanceMetric;
+import jsat.utils.ListUtils;
 import jsat.utils.random.XORWOW;
 
 /**
- *
+ * CLARA applies {@link PAM} to several random samples of the data set, and 
+ * keeps the medoids of the sample that best fit the full data set. When a 
+ * thread pool is given, the samples are clustered in parallel. 
+ * 
  * @author Edward Raff
  */
 public class CLARA extends PAM
@@ -123,107 +131,131 @@ public class CLARA extends PAM
     }
     
     @Override
-    protected double cluster(DataSet data, boolean doInit, int[] medioids, int[] assignments, List<Double> cacheAccel)
+    protected double cluster(final DataSet data, boolean doInit, int[] medioids, int[] assignments, List<Double> cacheAccel, ExecutorService threadpool)
     {
-        int k = medioids.length;
-        int[] bestMedoids = new int[medioids.length];
-        int[] bestAssignments = new int[assignments.length];
-        double bestMedoidsDist = Double.MAX_VALUE;
-        List<Vec> X = data.getDataVectors();
+        final int k = medioids.length;
+        final int N = data.getSampleSize();
+        final int sampSize = autoSampleSize ? 40+2*k : sampleSize;
         
-        
-        if(sampleSize >= data.getSampleSize())//Then we might as well just do one round of PAM
+        if(sampSize >= N)//Then we might as well just do one round of PAM
         {
-            return super.cluster(data, true, medioids, assignments, cacheAccel);
+            return super.cluster(data, true, medioids, assignments, cacheAccel, threadpool);
         }
-        else if(doInit)
+        
+        final List<Vec> X = data.getDataVectors();
+        if(doInit)
         {
             TrainableDistanceMetric.trainIfNeeded(dm, data);
-            cacheAccel = dm.getAccelerationCache(X);
+            cacheAccel = getAccelerationCache(X, threadpool);
         }
+        final List<Double> accel = cacheAccel;
         
-        int sampSize = autoSampleSize ? 40+2*k : sampleSize;
-        int[] sampleAssignments = new int[sampSize];
-        
-        List<DataPoint> sample = new ArrayList<DataPoint>(sampSize);
-        /**
-         * We need the mapping to be able to go from the sample indicies back to their position in the full data set
-         * Key is the sample index [1, 2, 3, ..., sampSize]
-         * Value is the coresponding index in the full data set
+        /*
+         * The samples and the seeds for each sample's PAM are drawn up front, 
+         * so that the result does not depend on the order the samples are 
+         * run in
          */
-        Map<Integer, Integer> samplePoints = new Hashtable<Integer, Integer>();
-        
-        for(int i = 0; i < sampleCount; i++)
+        final int[][] samples = new int[sampleCount][];
+        final long[] seeds = new long[sampleCount];
+        int[] perm = new int[N];
+        for(int i = 0; i < N; i++)
+            perm[i] = i;
+        for(int s = 0; s < sampleCount; s++)
         {
-            //Take a sample and use PAM on it to get medoids
-            samplePoints.clear();
-            sample.clear();
-            
-            while (samplePoints.size() < sampSize)
+            //partial Fisher–Yates shuffle to take the sample without replacement
+            for(int i = 0; i < sampSize; i++)
             {
-                int indx = rand.nextInt(data.getSampleSize());
-                if (!samplePoints.containsValue(indx))
-                    samplePoints.put(samplePoints.size(), indx);
+                int j = i + rand.nextInt(N-i);
+                int tmp = perm[i];
+                perm[i] = perm[j];
+                perm[j] = tmp;
             }
-            for (Integer j : samplePoints.values())
-                sample.add(data.getDataPoint(j));
-
-            DataSet sampleSet = new SimpleDataSet(sample);
-            
-            //Sampling done, now apply PAM
-            SeedSelectionMethods.selectIntialPoints(sampleSet, medioids, dm, cacheAccel, rand, getSeedSelection());
-            super.cluster(sampleSet, false, medioids, sampleAssignments, cacheAccel);
-            
-            //Map the sample medoids back to the full data set
-            for(int j = 0; j < medioids.length; j++)
-                medioids[j] = samplePoints.get(j);
-            
-            //Now apply the sample medoids to the full data set
-            double sqrdDist = 0.0;
-            for(int j = 0; j < data.getSampleSize(); j++)
+            samples[s] = Arrays.copyOf(perm, sampSize);
+            seeds[s] = rand.nextLong();
+        }
+        
+        final int[][] sampleMedoids = new int[sampleCount][k];
+        final double[] sampleDist = new double[sampleCount];
+        if(threadpool == null || sampleCount == 1)
+        {
+            for(int s = 0; s < sampleCount; s++)
+                sampleDist[s] = clusterSample(data, X, accel, samples[s], new XORWOW(seeds[s]), sampleMedoids[s], threadpool);
+        }
+        else
+        {
+            //Each sample is run in its own thread, and does its work serially
+            List<Future<Double>> futures = new ArrayList<Future<Double>>(sampleCount);
+            for(int s = 0; s < sampleCount; s++)
             {
-                double smallestDist = Double.MAX_VALUE;
-                int assignment = -1;
-                
-                for(int z = 0; z < k; z++)
+                final int S = s;
+                futures.add(threadpool.submit(new Callable<Double>()
                 {
-                    double tmp = dm.dist(medioids[z], j, X, cacheAccel);
-                    if(tmp < smallestDist)
+                    @Override
+                    public Double call() throws Exception
                     {
-                        assignment = z;
-                        smallestDist = tmp;
+                        return clusterSample(data, X, accel, samples[S], new XORWOW(seeds[S]), sampleMedoids[S], null);
                     }
-                }
-                assignments[j] = assignment;
-                sqrdDist += smallestDist*smallestDist;
+                }));
             }
-            
-            if(sqrdDist < bestMedoidsDist)
+            try
             {
-                bestMedoidsDist = sqrdDist;
-                System.arraycopy(medioids, 0, bestMedoids, 0, k);
-                System.arraycopy(assignments, 0, bestAssignments, 0, assignments.length);
+                int s = 0;
+                for(double dist : ListUtils.collectFutures(futures))
+                    sampleDist[s++] = dist;
+            }
+            catch (ExecutionException ex)
+            {
+                throw new RuntimeException(ex.getCause());
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
             }
         }
         
-        System.arraycopy(bestMedoids, 0, medioids, 0, k);
-        System.arraycopy(bestAssignments, 0, assignments, 0, assignments.length);
+        int best = 0;
+        for(int s = 1; s < sampleCount; s++)
+            if(sampleDist[s] < sampleDist[best])
+                best = s;
         
-        return bestMedoidsDist;
+        System.arraycopy(sampleMedoids[best], 0, medioids, 0, k);
+        return assign(X, medioids, assignments, null, null, accel, threadpool);
     }
-
-    @Override
-    public int[] cluster(DataSet dataSet, int clusters, int[] designations)
+    
+    /**
+     * Applies PAM to one sample of the data set, and measures how well the 
+     * medoids found fit the full data set. 
+     * 
+     * @param data the full data set
+     * @param X the vectors of the full data set
+     * @param cacheAccel the acceleration cache for the full data set
+     * @param sample the indices of the points in the sample
+     * @param sampleRand the source of randomness for the seed selection
+     * @param medioids the array to store the medoids found in, as indices into 
+     * the full data set
+     * @param threadpool the source of threads, or {@code null} to do the work
+     * in the calling thread
+     * @return the sum of the squared distance from each point in the full data
+     * set to its closest medoid
+     */
+    private double clusterSample(DataSet data, List<Vec> X, List<Double> cacheAccel, int[] sample, Random sampleRand, int[] medioids, ExecutorService threadpool)
     {
-        if(designations == null)
-            designations = new int[dataSet.getSampleSize()];
-        medoids = new int[clusters];
+        List<DataPoint> samplePoints = new ArrayList<DataPoint>(sample.length);
+        for(int i : sample)
+            samplePoints.add(data.getDataPoint(i));
+        DataSet sampleSet = new SimpleDataSet(samplePoints);
+        //the acceleration cache is by index, so the sample needs its own
+        List<Double> sampleAccel = getAccelerationCache(sampleSet.getDataVectors(), null);
+        
+        SeedSelectionMethods.selectIntialPoints(sampleSet, medioids, dm, sampleAccel, sampleRand, getSeedSelection());
+        super.cluster(sampleSet, false, medioids, new int[sample.length], sampleAccel, null);
         
-        this.cluster(dataSet, true, medoids, designations, null);
-        if(!storeMedoids)
-            medoids = null;
+        //Map the sample medoids back to the full data set
+        for(int j = 0; j < medioids.length; j++)
+            medioids[j] = sample[medioids[j]];
         
-        return designations;
+        return assign(X, medioids, new int[X.size()], null, null, cacheAccel, threadpool);
     }
 
     @Override
@@ -2,26 +2,38 @@ package jsat.clustering;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jsat.DataSet;
-import jsat.classifiers.CategoricalData;
 import jsat.classifiers.DataPoint;
-import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 import jsat.linear.VecPaired;
 import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.linear.distancemetrics.TrainableDistanceMetric;
 import jsat.linear.vectorcollection.KDTree;
+import jsat.linear.vectorcollection.NeighborResults;
 import jsat.linear.vectorcollection.VectorCollection;
 import jsat.linear.vectorcollection.VectorCollectionFactory;
+import jsat.linear.vectorcollection.VectorCollectionUtils;
 import jsat.math.OnLineStatistics;
+import jsat.utils.IndexTable;
 import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ConcurrentUnionFind;
+import jsat.utils.concurrent.ParallelUtils;
 
 /**
  * A density-based algorithm for discovering clusters in large spatial databases 
  * with noise (1996) by Martin Ester , Hans-peter Kriegel , Jörg S , Xiaowei Xu
+ * <br><br>
+ * When given an {@link ExecutorService}, the range queries of all points are 
+ * run as batched searches in parallel, and the core points within range of 
+ * each other are merged with a {@link ConcurrentUnionFind} instead of growing 
+ * one cluster at a time. The queries are sorted so that nearby points are 
+ * searched together, which keeps the locality of the sequential expansion. 
+ * Each border point goes to the first cluster that the sequential algorithm 
+ * would have found, so both give the same result. 
  * 
  * @author Edward Raff
  */
@@ -46,6 +58,11 @@ public class DBSCAN extends ClustererBase
     private VectorCollectionFactory<VecPaired<Vec, Integer> > vecFactory;
     private DistanceMetric dm;
     private double stndDevs = 2.0;
+    /**
+     * The number of points whose neighbors are searched for in one batch. This
+     * bounds the memory used to hold the neighbors of points. 
+     */
+    private static final int BATCH_SIZE = 1 << 14;
 
     public DBSCAN(DistanceMetric dm, VectorCollectionFactory<VecPaired<Vec, Integer>> vecFactory)
     {
@@ -78,17 +95,11 @@ public class DBSCAN extends ClustererBase
     
     public int[] cluster(DataSet dataSet, int minPts, int[] designations)
     {
-        OnLineStatistics stats = new OnLineStatistics();
         TrainableDistanceMetric.trainIfNeeded(dm, dataSet);
-        VectorCollection<VecPaired<Vec, Integer>> vc = vecFactory.getVectorCollection(getVecIndexPairs(dataSet), dm);
-        
-        List<DataPoint> dps = dataSet.getDataPoints();
-        for(DataPoint dp :  dps)
-            stats.add(vc.search(dp.getNumericalValues(), minPts+1).get(minPts).getPair());
-        
-        
+        List<VecPaired<Vec, Integer>> source = getVecIndexPairs(dataSet);
+        VectorCollection<VecPaired<Vec, Integer>> vc = vecFactory.getVectorCollection(source, dm);
         
-        double eps = stats.getMean() + stats.getStandardDeviation()*stndDevs;
+        double eps = estimateEps(dataSet, minPts, vc, source, null);
         
         return cluster(dataSet, eps, minPts, vc, designations);
     }
@@ -109,33 +120,32 @@ public class DBSCAN extends ClustererBase
         return new DBSCAN(this);
     }
     
-    private class StatsWorker implements Callable<OnLineStatistics>
+    /**
+     * Estimates the search radius as {@link #stndDevs} standard deviations 
+     * above the mean distance from each point to its <tt>minPts</tt>'th 
+     * nearest neighbor
+     * @param dataSet the data set
+     * @param minPts the minimum number of points to create a new cluster
+     * @param vc the collection of the points in the data set
+     * @param source the list the collection was built from
+     * @param threadpool the source of threads to search in parallel, or 
+     * {@code null} to search in the calling thread
+     * @return the search radius
+     */
+    private double estimateEps(DataSet dataSet, int minPts, VectorCollection<VecPaired<Vec, Integer>> vc, List<VecPaired<Vec, Integer>> source, ExecutorService threadpool)
     {
-        final BlockingQueue<DataPoint> queue;
-        final VectorCollection<VecPaired<Vec, Integer>> vc;
-        final int minPts;
-
-        public StatsWorker(BlockingQueue<DataPoint> queue, VectorCollection<VecPaired<Vec, Integer>> vc, int minPts)
-        {
-            this.queue = queue;
-            this.vc = vc;
-            this.minPts = minPts;
-        }
-
-        public OnLineStatistics call() throws Exception
+        OnLineStatistics stats = new OnLineStatistics();
+        List<Vec> queries = getVecs(dataSet);
+        NeighborResults results = null;
+        for(int start = 0; start < queries.size(); start += BATCH_SIZE)
         {
-            OnLineStatistics stats = new OnLineStatistics();
-            while(true)
-            {
-                DataPoint dp = queue.take();
-                
-                if(dp.numNumericalValues() == 0 && dp.numCategoricalValues() == 0)
-                    break;//Posion value, nonsense data point used to signal end
-                stats.add(vc.search(dp.getNumericalValues(), minPts+1).get(minPts).getPair());
-            }
-            return stats;
+            int end = Math.min(start+BATCH_SIZE, queries.size());
+            results = VectorCollectionUtils.searchKNN(vc, source, queries.subList(start, end), minPts+1, results, threadpool);
+            for(int i = 0; i < end-start; i++)
+                stats.add(results.getDistance(i, minPts));
         }
         
+        return stats.getMean() + stats.getStandardDeviation()*stndDevs;
     }
     
     public List<List<DataPoint>> cluster(DataSet dataSet, int minPts, ExecutorService threadpool)
@@ -145,45 +155,13 @@ public class DBSCAN extends ClustererBase
     
     public int[] cluster(DataSet dataSet, int minPts, ExecutorService threadpool, int[] designations)
     {
-        OnLineStatistics stats = null;
         TrainableDistanceMetric.trainIfNeeded(dm, dataSet, threadpool);
-        VectorCollection<VecPaired<Vec, Integer>> vc = vecFactory.getVectorCollection(getVecIndexPairs(dataSet), dm);
-        
-        BlockingQueue<DataPoint> queue = new ArrayBlockingQueue<DataPoint>(SystemInfo.L2CacheSize*2);
-        List<Future<OnLineStatistics>> futures = new ArrayList<Future<OnLineStatistics>>(SystemInfo.LogicalCores);
-        
-        //Setup
-        for(int i = 0; i < SystemInfo.LogicalCores; i++)
-            futures.add(threadpool.submit(new StatsWorker(queue, vc, minPts)));
-        //Feed data
-        for(int i = 0; i < dataSet.getSampleSize(); i++)
-            queue.add(dataSet.getDataPoint(i));
-        //Posion stop
-        for(int i = 0; i < SystemInfo.LogicalCores; i++)
-            queue.add(new DataPoint(new DenseVector(0), new int[0], new CategoricalData[0]));
-        
-        for( Future<OnLineStatistics> future : futures)
-        {
-            try
-            {
-                if(stats == null)
-                    stats = future.get();
-                else 
-                    stats = OnLineStatistics.add(stats, future.get());
-            }
-            catch (InterruptedException ex)
-            {
-                Logger.getLogger(DBSCAN.class.getName()).log(Level.SEVERE, null, ex);
-            }
-            catch (ExecutionException ex)
-            {
-                Logger.getLogger(DBSCAN.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
+        List<VecPaired<Vec, Integer>> source = getVecIndexPairs(dataSet);
+        VectorCollection<VecPaired<Vec, Integer>> vc = vecFactory.getVectorCollection(source, dm, threadpool);
         
-        double eps = stats.getMean() + stats.getStandardDeviation()*stndDevs;
+        double eps = estimateEps(dataSet, minPts, vc, source, threadpool);
         
-        return cluster(dataSet, eps, minPts, vc, threadpool, designations);
+        return cluster(dataSet, eps, minPts, vc, source, threadpool, designations);
     }
 
     private List<VecPaired<Vec, Integer>> getVecIndexPairs(DataSet dataSet)
@@ -194,6 +172,65 @@ public class DBSCAN extends ClustererBase
         return vecs;
     }
     
+    private List<Vec> getVecs(DataSet dataSet)
+    {
+        List<Vec> vecs = new ArrayList<Vec>(dataSet.getSampleSize());
+        for(int i = 0; i < dataSet.getSampleSize(); i++)
+            vecs.add(dataSet.getDataPoint(i).getNumericalValues());
+        return vecs;
+    }
+    
+    /**
+     * Orders the points so that points near each other are searched one after
+     * another. Consecutive searches then visit the same parts of the 
+     * collection while they are still in cache, which is what makes the 
+     * sequential cluster expansion fast. The points are sorted by the strip of
+     * width 4 <tt>eps</tt> they fall in along the first feature, and then by 
+     * the second feature. 
+     * 
+     * @param vecs the points to order
+     * @param eps the search radius
+     * @return the indices of the points in the order to search them
+     */
+    private static int[] spatialOrder(List<Vec> vecs, double eps)
+    {
+        final int n = vecs.size();
+        int[] order = new int[n];
+        double width = 4*eps;
+        if(n == 0 || vecs.get(0).length() == 0 || !(width > 0) || Double.isInfinite(width))
+        {
+            for(int i = 0; i < n; i++)
+                order[i] = i;
+            return order;
+        }
+        boolean twoD = vecs.get(0).length() > 1;
+        double min0 = Double.POSITIVE_INFINITY, min1 = Double.POSITIVE_INFINITY, max1 = Double.NEGATIVE_INFINITY;
+        for(Vec v : vecs)
+        {
+            min0 = Math.min(min0, v.get(0));
+            if(twoD)
+            {
+                min1 = Math.min(min1, v.get(1));
+                max1 = Math.max(max1, v.get(1));
+            }
+        }
+        //the offset within a strip is always less than the span
+        double span = twoD ? max1-min1+width : 0;
+        double[] keys = new double[n];
+        for(int i = 0; i < n; i++)
+        {
+            Vec v = vecs.get(i);
+            if(twoD)
+                keys[i] = Math.floor((v.get(0)-min0)/width)*span + (v.get(1)-min1);
+            else
+                keys[i] = v.get(0);
+        }
+        IndexTable it = new IndexTable(keys);
+        for(int i = 0; i < n; i++)
+            order[i] = it.index(i);
+        return order;
+    }
+    
     public List<List<DataPoint>> cluster(DataSet dataSet, double eps, int minPts)
     {
         return createClusterListFromAssignmentArray(cluster(dataSet, eps, minPts, (int[]) null), dataSet);
@@ -213,7 +250,8 @@ public class DBSCAN extends ClustererBase
     public int[] cluster(DataSet dataSet, double eps, int minPts, ExecutorService threadpool, int[] designations)
     {
         TrainableDistanceMetric.trainIfNeeded(dm, dataSet, threadpool);
-        return cluster(dataSet, eps, minPts, vecFactory.getVectorCollection(getVecIndexPairs(dataSet), dm), threadpool, designations);
+        List<VecPaired<Vec, Integer>> source = getVecIndexPairs(dataSet);
+        return cluster(dataSet, eps, minPts, vecFactory.getVectorCollection(source, dm, threadpool), source, threadpool, designations);
     }
     
     private int[] cluster(DataSet dataSet, double eps, int minPts, VectorCollection<VecPaired<Vec, Integer>> vc, int[] pointCats )
@@ -236,40 +274,154 @@ public class DBSCAN extends ClustererBase
         return pointCats;
     }
     
-    private int[] cluster(DataSet dataSet, double eps, int minPts, VectorCollection<VecPaired<Vec, Integer>> vc, ExecutorService threadpool, int[] pointCats)
+    /**
+     * Clusters the data set by finding the neighbors of every point with 
+     * batched parallel searches, and merging core points with a concurrent
+     * union-find. <br>
+     * The sequential algorithm finds each cluster from its lowest indexed core
+     * point, and a border point goes to the first cluster found that has a
+     * core point in range of it. The union-find always keeps the lowest index 
+     * of a set as its root, so numbering the roots in order and giving each 
+     * border point the cluster of its smallest root reproduces the sequential
+     * result exactly. 
+     * 
+     * @param dataSet the data set
+     * @param eps the search radius
+     * @param minPts the minimum number of points to create a new cluster
+     * @param vc the collection to use to search with 
+     * @param source the list the collection was built from
+     * @param threadpool source of threads for computation
+     * @param pointCats the array to store the cluster assignments in
+     * @return the cluster assignments
+     */
+    private int[] cluster(DataSet dataSet, double eps, final int minPts, VectorCollection<VecPaired<Vec, Integer>> vc, List<VecPaired<Vec, Integer>> source, ExecutorService threadpool, int[] pointCats)
     {
+        final int n = dataSet.getSampleSize();
         if(pointCats == null)
-            pointCats = new int[dataSet.getSampleSize()];
-        Arrays.fill(pointCats, UNCLASSIFIED);
-        
+            pointCats = new int[n];
         
-        BlockingQueue<List<? extends VecPaired<VecPaired<Vec, Integer>,Double>>> resultQ = new SynchronousQueue<List<? extends VecPaired<VecPaired<Vec, Integer>,Double>>>();
-        BlockingQueue<Vec> sourceQ = new LinkedBlockingQueue<Vec>();
-
-        //Set up workers
-        for(int i = 0; i < SystemInfo.LogicalCores; i++)
-            threadpool.submit(new ClusterWorker(vc, eps, resultQ, sourceQ));
+        List<Vec> vecs = getVecs(dataSet);
+        //order[pos] is the point searched for at position pos
+        final int[] order = spatialOrder(vecs, eps);
+        final int[] position = new int[n];
+        List<Vec> queries = new ArrayList<Vec>(n);
+        for(int pos = 0; pos < n; pos++)
+        {
+            position[order[pos]] = pos;
+            queries.add(vecs.get(order[pos]));
+        }
+        final boolean[] core = new boolean[n];
+        /*
+         * The neighbors of each non core point, which number fewer than minPts.
+         * Only those that are core points are needed, but that is not known 
+         * until the batch they are in has been searched. 
+         */
+        final int[][] borderNeighbors = new int[n][];
+        final ConcurrentUnionFind uf = new ConcurrentUnionFind(n);
+        final int P = SystemInfo.LogicalCores;
         
-        int curClusterID = 0;
-        for(int i = 0; i < pointCats.length; i++)
+        //the first exception thrown by a worker, rethrown once all are done
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        NeighborResults results = null;
+        for(int start = 0; start < n; start += BATCH_SIZE)
         {
-            if(pointCats[i] == UNCLASSIFIED)
+            final int batchStart = start;
+            final int batchEnd = Math.min(start+BATCH_SIZE, n);
+            results = VectorCollectionUtils.searchRange(vc, source, queries.subList(batchStart, batchEnd), eps, results, threadpool);
+            for(int pos = batchStart; pos < batchEnd; pos++)
+                core[order[pos]] = results.getNeighborCount(pos-batchStart) >= minPts;
+            
+            /*
+             * Every pair of neighbors is seen from both sides, so a pair is 
+             * merged when the later of the two batches is searched, once it 
+             * is known if both points are core points
+             */
+            final NeighborResults batch = results;
+            final CountDownLatch latch = new CountDownLatch(P);
+            for(int id = 0; id < P; id++)
             {
-                //All assignments are done by expandCluster
-                if(exapndCluster(pointCats, dataSet, i, curClusterID, eps, minPts, vc, threadpool, resultQ, sourceQ))
-                    curClusterID++;
+                final int from = batchStart+ParallelUtils.getStartBlock(batchEnd-batchStart, id, P);
+                final int to = batchStart+ParallelUtils.getEndBlock(batchEnd-batchStart, id, P);
+                threadpool.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            for(int pos = from; pos < to; pos++)
+                            {
+                                int i = order[pos];
+                                int q = pos-batchStart;
+                                int count = batch.getNeighborCount(q);
+                                if(core[i])
+                                {
+                                    for(int j = 0; j < count; j++)
+                                    {
+                                        int neighbor = batch.getNeighbor(q, j);
+                                        if(position[neighbor] < batchEnd && core[neighbor])
+                                            uf.union(i, neighbor);
+                                    }
+                                }
+                                else
+                                {
+                                    int[] neighbors = new int[count];
+                                    for(int j = 0; j < count; j++)
+                                        neighbors[j] = batch.getNeighbor(q, j);
+                                    borderNeighbors[i] = neighbors;
+                                }
+                            }
+                        }
+                        catch(Throwable t)
+                        {
+                            failure.compareAndSet(null, t);
+                        }
+                        finally
+                        {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+            
+            try
+            {
+                latch.await();
             }
+            catch (InterruptedException ex)
+            {
+                Logger.getLogger(DBSCAN.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            Throwable t = failure.get();
+            if(t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            else if(t instanceof Error)
+                throw (Error) t;
+            else if(t != null)
+                throw new ClusterFailureException("Failed to merge the neighbors of a batch", t);
         }
         
-        //Kill workers
-        try
-        {
-            for (int i = 0; i < SystemInfo.LogicalCores; i++)
-                sourceQ.put(new DenseVector(0));
-        }
-        catch (InterruptedException interruptedException)
-        {
-        }
+        //Roots are numbered in the order the sequential algorithm finds them
+        int[] rootCluster = new int[n];
+        int curClusterID = 0;
+        for(int i = 0; i < n; i++)
+            if(core[i])
+            {
+                int root = uf.find(i);
+                if(root == i)
+                    rootCluster[i] = curClusterID++;
+                pointCats[i] = rootCluster[root];
+            }
+        
+        for(int i = 0; i < n; i++)
+            if(!core[i])
+            {
+                int firstRoot = Integer.MAX_VALUE;
+                for(int neighbor : borderNeighbors[i])
+                    if(core[neighbor])
+                        firstRoot = Math.min(firstRoot, uf.find(neighbor));
+                pointCats[i] = firstRoot == Integer.MAX_VALUE ? NOISE : rootCluster[firstRoot];
+            }
         
         return pointCats;
     }
@@ -321,118 +473,5 @@ public class DBSCAN extends ClustererBase
         
         return true;
     }
-    
-    private class ClusterWorker implements Runnable
-    {
-        private VectorCollection<VecPaired<Vec, Integer>> vc;
-        private volatile List<? extends VecPaired<VecPaired<Vec, Integer>,Double>> results;
-        private final double range;
-        private final BlockingQueue<List<? extends VecPaired<VecPaired<Vec, Integer>,Double>>> resultQ;
-        private final BlockingQueue<Vec> sourceQ;
-
-        /**
-         * 
-         * @param vc the accelerate structure to search for data points. Must support concurent method calls
-         * @param range the range to search <tt>tt</tt> with
-         * @param resultQ The que to place this worker object into on completion
-         */
-        public ClusterWorker(VectorCollection<VecPaired<Vec, Integer>> vc, double range, BlockingQueue<List<? extends VecPaired<VecPaired<Vec, Integer>,Double>>> resultQ, BlockingQueue<Vec> sourceQ)
-        {
-            this.vc = vc;
-            this.range = range;
-            this.resultQ = resultQ;
-            this.sourceQ = sourceQ;
-        }
-
-        public List<? extends VecPaired<VecPaired<Vec, Integer>,Double>> getResults()
-        {
-            return results;
-        }
-        
-        public void run()
-        {
-            Vec searchPoint;
-            try
-            {
-                while(true)
-                {
-                    searchPoint = sourceQ.take();
-                    if(searchPoint.length() == 0)
-                        break;
-                    results = vc.search(searchPoint, range);
-                    resultQ.put(results);
-                }
-            }
-            catch (InterruptedException ex)
-            {
-                Logger.getLogger(DBSCAN.class.getName()).log(Level.SEVERE, null, ex);
-            }
-            
-        }
-        
-    }
-    
-    /**
-     * 
-     * @param pointCats the array to store the cluster assignments in
-     * @param dataSet the data set 
-     * @param point the current data point we are working on
-     * @param clId the current cluster we are working on
-     * @param eps the search radius
-     * @param minPts the minimum number of points to create a new cluster
-     * @param vc the collection to use to search with 
-     * @param threadpool source of threads for computation
-     * @param resultQ blocking queue used to get results from 
-     * @param sourceQ blocking queue used to store points that need to be processed
-     * @return true if a cluster was expanded, false if the point was marked as noise
-     */
-    private boolean exapndCluster(int[] pointCats, DataSet dataSet, int point, int clId, double eps, int minPts, VectorCollection<VecPaired<Vec, Integer>> vc, ExecutorService threadpool, BlockingQueue<List<? extends VecPaired<VecPaired<Vec, Integer>,Double>>> resultQ, BlockingQueue<Vec> sourceQ )
-    {
-        Vec queryPoint = dataSet.getDataPoint(point).getNumericalValues();
-        List<? extends VecPaired<VecPaired<Vec, Integer>, Double>> seeds = vc.search(queryPoint, eps);
-        
-        if(seeds.size() < minPts)// no core point
-        {
-            pointCats[point] = NOISE;
-            return false;
-        }
-        //Else, all points in seeds are density-reachable from Point
-        
-        List<? extends VecPaired<VecPaired<Vec, Integer>, Double>> results;
-        
-        try
-        {
-            pointCats[point] = clId;
-            int out = seeds.size();
-            for (VecPaired<VecPaired<Vec, Integer>,Double> v : seeds)
-                sourceQ.put(v.getVector().getVector());
-            
-            while (out > 0)
-            {
-                results = resultQ.take();
-                out--;
-                
-                if (results.size() >= minPts)
-                    for (VecPaired<VecPaired<Vec, Integer>,Double> resultP : results)
-                    {
-                        int resultPIndx = resultP.getVector().getPair();
-                        if (pointCats[resultPIndx] < 0)// is UNCLASSIFIED or NOISE
-                        {
-                            if (pointCats[resultPIndx] == UNCLASSIFIED)
-                            {
-                                sourceQ.put(resultP.getVector().getVector());
-                                out++;
-                            }
-                            pointCats[resultPIndx] = clId;
-                        }
-                    }                
-            }
-        }
-        catch (InterruptedException interruptedException)
-        {
-        }
-        
-        return true;
-    }
 
 }
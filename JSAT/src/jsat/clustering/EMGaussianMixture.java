@@ -15,11 +15,20 @@ import jsat.distributions.multivariate.MultivariateDistribution;
 import jsat.distributions.multivariate.NormalM;
 import jsat.linear.*;
 import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.math.decayrates.DecayRate;
+import jsat.math.decayrates.PowerDecay;
 import jsat.utils.ListUtils;
+import jsat.utils.concurrent.ParallelUtils;
 import static jsat.utils.SystemInfo.LogicalCores;
 
 /**
  * An implementation of Gaussian Mixture models that learns the specified number of Gaussians using Expectation Maximization algorithm. 
+ * <br><br>
+ * By default the standard batch EM algorithm is used, which stores the 
+ * probability of every point belonging to every Gaussian. For large data sets 
+ * the {@link Mode#STREAMING} and {@link Mode#MINI_BATCH} modes may be used 
+ * instead, which only keep the sufficient statistics of each Gaussian in 
+ * memory. 
  * 
  * @author Edward Raff
  */
@@ -31,6 +40,45 @@ public class EMGaussianMixture extends ElkanKMeans implements MultivariateDistri
      */
     private double[] a_k;
     private double tolerance = 1e-3;
+    private Mode mode = Mode.BATCH;
+    private int miniBatchSize = DEFAULT_MINI_BATCH_SIZE;
+    private DecayRate stepSize = new PowerDecay(2, 0.6);
+    
+    /**
+     * The default number of points in each mini batch
+     */
+    public static final int DEFAULT_MINI_BATCH_SIZE = 1000;
+    /**
+     * The number of points whose statistics are added to the covariance in 
+     * one rank-k update
+     */
+    private static final int STAT_BLOCK_SIZE = 64;
+    
+    /**
+     * The ways the EM algorithm may be run
+     */
+    public enum Mode
+    {
+        /**
+         * The standard EM algorithm, which stores the N by K matrix of 
+         * probabilities of each point belonging to each Gaussian
+         */
+        BATCH,
+        /**
+         * Equivalent to {@link #BATCH}, but the probabilities are never 
+         * stored. Each iteration makes one pass over the data, accumulating 
+         * the sufficient statistics of the Gaussians in a block at a time. 
+         * Memory use is O(K D<sup>2</sup>) per thread rather than O(N K). 
+         */
+        STREAMING,
+        /**
+         * Stepwise online EM. The Gaussians are updated after each random
+         * mini batch of the data by moving the running sufficient statistics 
+         * towards those of the mini batch, using a decaying step size. This 
+         * often converges in a few passes over large data sets. 
+         */
+        MINI_BATCH
+    }
 
     public EMGaussianMixture(DistanceMetric dm, Random rand, SeedSelection seedSelection)
     {
@@ -68,6 +116,76 @@ public class EMGaussianMixture extends ElkanKMeans implements MultivariateDistri
             this.a_k = Arrays.copyOf(gm.a_k, gm.a_k.length);
         this.MaxIterLimit = gm.MaxIterLimit;
         this.tolerance = gm.tolerance;
+        this.mode = gm.mode;
+        this.miniBatchSize = gm.miniBatchSize;
+        this.stepSize = gm.stepSize.clone();
+    }
+    
+    /**
+     * Sets the way the EM algorithm is run
+     * @param mode the EM mode to use
+     */
+    public void setMode(Mode mode)
+    {
+        if(mode == null)
+            throw new NullPointerException("Mode can not be null");
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the way the EM algorithm is run
+     * @return the EM mode used
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Sets the number of points in each mini batch when using 
+     * {@link Mode#MINI_BATCH}
+     * @param miniBatchSize the number of points in each mini batch
+     */
+    public void setMiniBatchSize(int miniBatchSize)
+    {
+        if(miniBatchSize < 1)
+            throw new IllegalArgumentException("Mini batch size must be positive, not " + miniBatchSize);
+        this.miniBatchSize = miniBatchSize;
+    }
+
+    /**
+     * Returns the number of points in each mini batch
+     * @return the number of points in each mini batch
+     */
+    public int getMiniBatchSize()
+    {
+        return miniBatchSize;
+    }
+
+    /**
+     * Sets the decay rate that gives the step size for each mini batch when
+     * using {@link Mode#MINI_BATCH}. The rate is called with an initial value
+     * of 1 and the number of mini batches seen so far as the time. For the 
+     * online EM to converge, the step sizes should sum to infinity while the
+     * sum of their squares does not, such as {@link PowerDecay} with an alpha 
+     * in (0.5, 1]. 
+     * 
+     * @param stepSize the decay rate for the step size
+     */
+    public void setStepSize(DecayRate stepSize)
+    {
+        if(stepSize == null)
+            throw new NullPointerException("Step size can not be null");
+        this.stepSize = stepSize;
+    }
+
+    /**
+     * Returns the decay rate used for the step size
+     * @return the decay rate used for the step size
+     */
+    public DecayRate getStepSize()
+    {
+        return stepSize;
     }
     
     /**
@@ -137,6 +255,11 @@ public class EMGaussianMixture extends ElkanKMeans implements MultivariateDistri
         for(int k = 0; k < means.size(); k++)
             gaussians.add(new NormalM(means.get(k), covs.get(k)));
         
+        if(mode == Mode.STREAMING)
+            return streamingEM(K, dataPoints, assignment, execServ);
+        else if(mode == Mode.MINI_BATCH)
+            return miniBatchEM(K, dataPoints, assignment, means, covs, execServ);
+        
         double[][] p_ik = new double[dataPoints.size()][K];
         
         while(true)
@@ -176,6 +299,343 @@ public class EMGaussianMixture extends ElkanKMeans implements MultivariateDistri
         return -currentLogLike;
     }
 
+    /**
+     * Runs EM without storing the N by K responsibility matrix. Each iteration
+     * is a single pass over the data that computes the responsibilities of
+     * each block of points as it goes, and folds them into per thread 
+     * sufficient statistics. The result is the same as the batch EM. 
+     */
+    private double streamingEM(int K, List<DataPoint> dataPoints, int[] assignment, ExecutorService execServ)
+    {
+        final int N = dataPoints.size();
+        final int D = dataPoints.get(0).getNumericalValues().length();
+        GaussianStats[] stats = GaussianStats.create(K, D);
+        double currentLogLike = -Double.MAX_VALUE;
+        int iter = 0;
+        while(true)
+        {
+            double logLike = accumulate(dataPoints, null, 0, N, stats, assignment, execServ);
+            if(Math.abs(currentLogLike - logLike) < tolerance || ++iter >= MaxIterLimit)
+            {
+                currentLogLike = logLike;
+                break;
+            }
+            currentLogLike = logLike;
+            
+            double totalWeight = 0;
+            for(GaussianStats s : stats)
+                totalWeight += s.weight;
+            setFromStats(stats, totalWeight);
+        }
+        return -currentLogLike;
+    }
+    
+    /**
+     * Runs stepwise (online) EM over mini batches of the data. After each 
+     * mini batch the running sufficient statistics are moved towards those of
+     * the batch by the step size, and the Gaussians are re-estimated from the
+     * running statistics. The data is visited in a new random order each 
+     * epoch, until the average log likelihood of the points changes by less 
+     * than the tolerance between epochs. 
+     */
+    private double miniBatchEM(int K, List<DataPoint> dataPoints, int[] assignment, List<Vec> means, List<Matrix> covs, ExecutorService execServ)
+    {
+        final int N = dataPoints.size();
+        final int D = dataPoints.get(0).getNumericalValues().length();
+        //running statistics, normalized to a total weight of 1, start from the initial estimate
+        GaussianStats[] running = GaussianStats.create(K, D);
+        for(int k = 0; k < K; k++)
+        {
+            running[k].weight = a_k[k];
+            means.get(k).copyTo(running[k].mean);
+            running[k].scatter.mutableAdd(a_k[k], covs.get(k));
+        }
+        GaussianStats[] batchStats = GaussianStats.create(K, D);
+        
+        int[] order = new int[N];
+        for(int i = 0; i < N; i++)
+            order[i] = i;
+        
+        double prevAvgLogLike = -Double.MAX_VALUE;
+        long t = 0;
+        for(int epoch = 0; epoch < MaxIterLimit; epoch++)
+        {
+            //Fisher–Yates shuffle
+            for(int i = N-1; i > 0; i--)
+            {
+                int j = rand.nextInt(i+1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+            
+            double logLike = 0;
+            for(int start = 0; start < N; start += miniBatchSize)
+            {
+                int end = Math.min(start+miniBatchSize, N);
+                logLike += accumulate(dataPoints, order, start, end, batchStats, assignment, execServ);
+                double eta = stepSize.rate(t++, 1.0);
+                for(int k = 0; k < K; k++)
+                    running[k].merge(batchStats[k], 1-eta, eta/(end-start));
+                setFromStats(running, 1.0);
+            }
+            
+            double avgLogLike = logLike/N;
+            if(Math.abs(avgLogLike - prevAvgLogLike) < tolerance)
+                break;
+            prevAvgLogLike = avgLogLike;
+        }
+        
+        //One last pass for the assignments and likelihood of the final model
+        return -accumulate(dataPoints, null, 0, N, null, assignment, execServ);
+    }
+    
+    /**
+     * Sets the mixture weights and Gaussians from sufficient statistics
+     * @param stats the statistics of each Gaussian
+     * @param totalWeight the sum of the weights of all the statistics
+     */
+    private void setFromStats(GaussianStats[] stats, double totalWeight)
+    {
+        for(int k = 0; k < stats.length; k++)
+        {
+            a_k[k] = stats[k].weight/totalWeight;
+            if(stats[k].weight <= 0)
+                continue;//no points belong to this Gaussian, leave it be
+            Matrix cov = stats[k].scatter.clone();
+            cov.mutableMultiply(1.0/stats[k].weight);
+            gaussians.get(k).setMeanCovariance(stats[k].mean.clone(), cov);
+        }
+    }
+    
+    /**
+     * Computes the responsibilities of the points order[start], ..., 
+     * order[end-1] (or start, ..., end-1 when order is {@code null}), sets 
+     * their hard assignment, and accumulates their sufficient statistics. 
+     * 
+     * @param dataPoints the data points
+     * @param order the order to visit the points in, or {@code null} for the 
+     * natural order
+     * @param start the first position to visit
+     * @param end the position after the last one to visit
+     * @param stats the array to store the statistics of each Gaussian in, or 
+     * {@code null} if only the assignments and likelihood are needed
+     * @param assignment the array to store the most likely Gaussian of each 
+     * point in
+     * @param execServ the source of threads, or {@code null} to work in the 
+     * calling thread
+     * @return the log likelihood of the points visited
+     */
+    private double accumulate(final List<DataPoint> dataPoints, final int[] order, final int start, final int end, GaussianStats[] stats, final int[] assignment, ExecutorService execServ)
+    {
+        final int K = a_k.length;
+        final int D = dataPoints.get(0).getNumericalValues().length();
+        if(stats != null)
+            for(GaussianStats s : stats)
+                s.zeroOut();
+        if(execServ == null || end-start < LogicalCores*STAT_BLOCK_SIZE)
+            return accumulate(dataPoints, order, start, end, stats, assignment);
+        
+        //Each thread gets its own statistics, which are then reduced in order
+        final GaussianStats[][] partialStats = new GaussianStats[LogicalCores][];
+        List<Future<Double>> partialLogLikes = new ArrayList<Future<Double>>(LogicalCores);
+        for(int id = 0; id < LogicalCores; id++)
+        {
+            final int ID = id;
+            final int from = start + ParallelUtils.getStartBlock(end-start, ID, LogicalCores);
+            final int to = start + ParallelUtils.getEndBlock(end-start, ID, LogicalCores);
+            final boolean needStats = stats != null;
+            partialLogLikes.add(execServ.submit(new Callable<Double>() 
+            {
+                @Override
+                public Double call() throws Exception
+                {
+                    if(needStats)
+                        partialStats[ID] = GaussianStats.create(K, D);
+                    return accumulate(dataPoints, order, from, to, partialStats[ID], assignment);
+                }
+            }));
+        }
+        
+        double logLike = 0;
+        try
+        {
+            for(double partialLogLike : ListUtils.collectFutures(partialLogLikes))
+                logLike += partialLogLike;
+        }
+        catch (ExecutionException ex)
+        {
+            throw new RuntimeException(ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+        if(stats != null)
+            for(GaussianStats[] partial : partialStats)
+                for(int k = 0; k < K; k++)
+                    stats[k].merge(partial[k], 1.0, 1.0);
+        return logLike;
+    }
+    
+    /**
+     * The single threaded worker for 
+     * {@link #accumulate(java.util.List, int[], int, int, jsat.clustering.EMGaussianMixture.GaussianStats[], int[], java.util.concurrent.ExecutorService) }.
+     * The responsibilities are computed for blocks of {@link #STAT_BLOCK_SIZE}
+     * points at a time, so that the covariance of each block is added as one
+     * rank-k update. 
+     */
+    private double accumulate(List<DataPoint> dataPoints, int[] order, int start, int end, GaussianStats[] stats, int[] assignment)
+    {
+        final int K = a_k.length;
+        double logLike = 0;
+        Vec[] block = new Vec[STAT_BLOCK_SIZE];
+        double[][] r = new double[K][STAT_BLOCK_SIZE];
+        Matrix scratch = null;
+        for(int blockStart = start; blockStart < end; blockStart += STAT_BLOCK_SIZE)
+        {
+            int b = Math.min(STAT_BLOCK_SIZE, end-blockStart);
+            for(int j = 0; j < b; j++)
+            {
+                int i = order == null ? blockStart+j : order[blockStart+j];
+                Vec x_i = dataPoints.get(i).getNumericalValues();
+                block[j] = x_i;
+                double p_ikNormalizer = 0.0;
+                int best = 0;
+                for(int k = 0; k < K; k++)
+                {
+                    double tmp = a_k[k] * gaussians.get(k).pdf(x_i);
+                    r[k][j] = tmp;
+                    p_ikNormalizer += tmp;
+                    if(tmp > r[best][j])
+                        best = k;
+                }
+                for(int k = 0; k < K; k++)
+                    r[k][j] /= p_ikNormalizer;
+                assignment[i] = best;
+                logLike += Math.log(p_ikNormalizer);
+            }
+            
+            if(stats == null)
+                continue;
+            if(scratch == null || scratch.rows() != b)
+                scratch = new DenseMatrix(b, block[0].length());
+            for(int k = 0; k < K; k++)
+                stats[k].addBlock(block, r[k], b, scratch);
+        }
+        return logLike;
+    }
+    
+    /**
+     * The weighted sufficient statistics of one Gaussian: the total weight of
+     * the points, their weighted mean, and the weighted sum of the outer 
+     * products of the points about that mean. Keeping the statistics centered 
+     * avoids the loss of precision from subtracting the outer product of the
+     * mean from the raw second moment. 
+     */
+    private static class GaussianStats
+    {
+        double weight;
+        final Vec mean;
+        final Matrix scatter;
+        /**
+         * Scratch space for the difference in means
+         */
+        private final Vec delta;
+
+        public GaussianStats(int D)
+        {
+            mean = new DenseVector(D);
+            scatter = new DenseMatrix(D, D);
+            delta = new DenseVector(D);
+        }
+        
+        public static GaussianStats[] create(int K, int D)
+        {
+            GaussianStats[] stats = new GaussianStats[K];
+            for(int k = 0; k < K; k++)
+                stats[k] = new GaussianStats(D);
+            return stats;
+        }
+        
+        public void zeroOut()
+        {
+            weight = 0;
+            mean.zeroOut();
+            scatter.zeroOut();
+        }
+        
+        /**
+         * Adds a block of weighted points. The scatter of the block about its
+         * own mean is computed as X'X, where the rows of X are the centered 
+         * points scaled by the square root of their weight, and is then merged
+         * in. 
+         * 
+         * @param block the points
+         * @param r the weight of each point
+         * @param b the number of points in the block
+         * @param X scratch space of <tt>b</tt> rows and as many columns as the 
+         * dimension
+         */
+        public void addBlock(Vec[] block, double[] r, int b, Matrix X)
+        {
+            double blockWeight = 0;
+            delta.zeroOut();
+            for(int j = 0; j < b; j++)
+            {
+                blockWeight += r[j];
+                delta.mutableAdd(r[j], block[j]);
+            }
+            if(blockWeight <= 0)
+                return;
+            delta.mutableDivide(blockWeight);//the block mean
+            
+            X.zeroOut();
+            for(int j = 0; j < b; j++)
+            {
+                double sqrtR = Math.sqrt(r[j]);
+                for(int d = 0; d < delta.length(); d++)
+                    X.set(j, d, sqrtR*(block[j].get(d) - delta.get(d)));
+            }
+            
+            double newWeight = weight + blockWeight;
+            X.transposeMultiply(X, scatter);
+            //delta becomes the difference from the old mean to the block mean
+            delta.mutableSubtract(mean);
+            Matrix.OuterProductUpdate(scatter, delta, delta, weight*blockWeight/newWeight);
+            mean.mutableAdd(blockWeight/newWeight, delta);
+            weight = newWeight;
+        }
+        
+        /**
+         * Replaces these statistics with <tt>a</tt> times these statistics 
+         * plus <tt>c</tt> times the other statistics
+         * @param other the other statistics
+         * @param a the multiple of these statistics
+         * @param c the multiple of the other statistics
+         */
+        public void merge(GaussianStats other, double a, double c)
+        {
+            double w1 = a*weight;
+            double w2 = c*other.weight;
+            double newWeight = w1 + w2;
+            if(a != 1)
+                scatter.mutableMultiply(a);
+            if(w2 <= 0)
+            {
+                weight = w1;
+                return;
+            }
+            scatter.mutableAdd(c, other.scatter);
+            other.mean.copyTo(delta);
+            delta.mutableSubtract(mean);
+            Matrix.OuterProductUpdate(scatter, delta, delta, w1*w2/newWeight);
+            mean.mutableAdd(w2/newWeight, delta);
+            weight = newWeight;
+        }
+    }
+
     private void mStep(final List<Vec> means,final int N,final List<DataPoint> dataPoints, final int K, final double[][] p_ik, final List<Matrix> covs, final ExecutorService execServ) throws InterruptedException
     {
         /**
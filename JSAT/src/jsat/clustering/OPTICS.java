@@ -3,6 +3,7 @@ package jsat.clustering;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import jsat.DataSet;
+import jsat.exceptions.UntrainedModelException;
 import jsat.linear.Vec;
 import jsat.linear.VecPaired;
 import jsat.linear.distancemetrics.DistanceMetric;
@@ -10,6 +11,7 @@ import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.linear.vectorcollection.*;
 import jsat.math.OnLineStatistics;
 import jsat.parameters.*;
+import jsat.utils.IndexedMinHeap;
 import jsat.utils.IntList;
 
 /**
@@ -49,6 +51,19 @@ public class OPTICS extends ClustererBase implements Parameterized
      */
     public static final ExtractionMethod DEFAULT_EXTRACTION_METHOD = ExtractionMethod.THRESHHOLD_FIXUP;
     
+    /**
+     * The default maximum number of neighbors to store when clustering in 
+     * parallel is {@value #DEFAULT_MAX_STORED_NEIGHBORS}, which takes about 
+     * 200 MB. 
+     */
+    public static final int DEFAULT_MAX_STORED_NEIGHBORS = 1 << 24;
+    
+    /**
+     * The number of points to search for in each batch when clustering in 
+     * parallel
+     */
+    private static final int BATCH_SIZE = 1 << 14;
+    
     private DistanceMetric dm;
     
     private VectorCollectionFactory<VecPaired<Vec, Integer>> vcf = new DefaultVectorCollectionFactory<VecPaired<Vec, Integer>>();
@@ -67,10 +82,15 @@ public class OPTICS extends ClustererBase implements Parameterized
      */
     private boolean[] processed;
     private Vec[] allVecs;
+    /**
+     * The index of each data point in reachability order
+     */
+    private int[] ordering;
     
     private double xi;
     private double one_min_xi = 1.0-xi;
     private ExtractionMethod extractionMethod = DEFAULT_EXTRACTION_METHOD;
+    private int maxStoredNeighbors = DEFAULT_MAX_STORED_NEIGHBORS;
         
     /**
      * The objects contained in OrderSeeds are sorted by their 
@@ -82,7 +102,15 @@ public class OPTICS extends ClustererBase implements Parameterized
      * 
      * This is only used during building. We should probably refactor this out
      */
-    private PriorityQueue<Integer> orderdSeeds;
+    private IndexedMinHeap orderdSeeds;
+    /**
+     * The radius neighborhoods of the points that were computed ahead of 
+     * time, in batches of {@link #BATCH_SIZE} points in data set order. Points
+     * past the last stored batch must be searched for. 
+     * 
+     * This is only used during building. 
+     */
+    private List<NeighborResults> storedNeighbors;
 
     @Override
     public List<Parameter> getParameters()
@@ -182,7 +210,9 @@ public class OPTICS extends ClustererBase implements Parameterized
     public OPTICS(OPTICS toCopy)
     {
         this.dm = toCopy.dm.clone();
-        this.vc = toCopy.vc.clone();
+        this.vcf = toCopy.vcf;
+        if(toCopy.vc != null)
+            this.vc = toCopy.vc.clone();
         this.minPts = toCopy.minPts;
         if(toCopy.core_distance != null )
             this.core_distance = Arrays.copyOf(toCopy.core_distance, toCopy.core_distance.length);
@@ -199,8 +229,12 @@ public class OPTICS extends ClustererBase implements Parameterized
             for(int i = 0; i < toCopy.allVecs.length; i++)
                 this.allVecs[i] = toCopy.allVecs[i].clone();
         }
+        if(toCopy.ordering != null)
+            this.ordering = Arrays.copyOf(toCopy.ordering, toCopy.ordering.length);
         this.xi = toCopy.xi;
-        this.orderdSeeds = toCopy.orderdSeeds;
+        this.one_min_xi = toCopy.one_min_xi;
+        this.extractionMethod = toCopy.extractionMethod;
+        this.maxStoredNeighbors = toCopy.maxStoredNeighbors;
         this.radius = toCopy.radius;
     }
     
@@ -302,6 +336,37 @@ public class OPTICS extends ClustererBase implements Parameterized
     {
         this.vcf = vcf;
     }
+
+    /**
+     * Sets the maximum number of neighbors, summed over all points, whose 
+     * radius neighborhoods will be computed ahead of time and stored when 
+     * clustering in parallel. Each stored neighbor takes 12 bytes. The 
+     * neighborhoods are searched in batches, and no more are searched once 
+     * the size of the next batch, estimated from the batches before it, would
+     * exceed this limit. The neighborhoods of points that do not fit are 
+     * searched for when they are needed, as is done when clustering in a 
+     * single thread. 
+     * 
+     * @param maxStoredNeighbors the maximum number of neighbors to store, 
+     * where 0 stores none
+     */
+    public void setMaxStoredNeighbors(int maxStoredNeighbors)
+    {
+        if(maxStoredNeighbors < 0)
+            throw new IllegalArgumentException("The maximum number of stored neighbors must be non negative, not " + maxStoredNeighbors);
+        this.maxStoredNeighbors = maxStoredNeighbors;
+    }
+
+    /**
+     * Returns the maximum number of neighbors that will be computed ahead of
+     * time and stored when clustering in parallel. 
+     * 
+     * @return the maximum number of neighbors to store
+     */
+    public int getMaxStoredNeighbors()
+    {
+        return maxStoredNeighbors;
+    }
     
     
     private int threshHoldFixExtractCluster(List<Integer> orderedFile, int[] designations)
@@ -520,20 +585,30 @@ public class OPTICS extends ClustererBase implements Parameterized
 
     @Override
     public int[] cluster(DataSet dataSet, int[] designations)
+    {
+        return cluster(dataSet, null, designations);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br><br>
+     * The core distance of every point and the search radius are computed in 
+     * parallel batches of nearest neighbor searches. The radius neighborhoods
+     * are then found in parallel batches and kept until 
+     * {@link #getMaxStoredNeighbors() } neighbors have been stored. The 
+     * neighborhoods of any remaining points are searched for while the 
+     * ordering is built, as is done for all points when no thread pool is 
+     * given. The ordering produced is the same either way. 
+     */
+    @Override
+    public int[] cluster(DataSet dataSet, ExecutorService threadpool, int[] designations)
     {
         final int n = dataSet.getSampleSize();
         if(designations == null)
             designations = new int[n];
         
         Arrays.fill(designations, NOISE);
-        orderdSeeds = new PriorityQueue<Integer>(n, new Comparator<Integer>() {
-
-            @Override
-            public int compare(Integer o1, Integer o2)
-            {
-                return Double.compare(reach_d[o1], reach_d[o2]);
-            }
-        });
+        orderdSeeds = new IndexedMinHeap(n);
         core_distance = new double[n];
         reach_d = new double[n];
         Arrays.fill(reach_d, UNDEFINED);
@@ -545,25 +620,28 @@ public class OPTICS extends ClustererBase implements Parameterized
             allVecs[i] = dataSet.getDataPoint(i).getNumericalValues();
             pairedVecs.add(new VecPaired<Vec, Integer>(allVecs[i], i));
         }
-        vc = vcf.getVectorCollection(pairedVecs, dm);
-
-        //Estimate radius value
-
-        OnLineStatistics stats = VectorCollectionUtils.getKthNeighborStats(vc, allVecs, minPts+1);
-
-        radius = stats.getMean() + stats.getStandardDeviation() * 3;
-
+        
+        if(threadpool == null)
+            vc = vcf.getVectorCollection(pairedVecs, dm);
+        else
+            vc = vcf.getVectorCollection(pairedVecs, dm, threadpool);
+        
+        computeCoreDistances(pairedVecs, threadpool);
+        storedNeighbors = new ArrayList<NeighborResults>();
+        if(threadpool != null)
+            storeNeighbors(pairedVecs, threadpool);
 
         List<Integer> orderedFile = new IntList(n);
         
         //Main clustering loop
-        for(int i = 0; i < dataSet.getSampleSize(); i++)
+        for(int i = 0; i < n; i++)
         {
             if(processed[i])
                 continue;
-            Vec vec = dataSet.getDataPoint(i).getNumericalValues();
-            expandClusterOrder(i, vec, orderedFile);
+            expandClusterOrder(i, orderedFile);
         }
+        storedNeighbors = null;
+        orderdSeeds = null;
         
         int clustersFound;
         if(extractionMethod == ExtractionMethod.THRESHHOLD)
@@ -578,13 +656,86 @@ public class OPTICS extends ClustererBase implements Parameterized
         
         double[] newReach = new double[reach_d.length];
         Arrays.fill(newReach, Double.POSITIVE_INFINITY);
+        ordering = new int[orderedFile.size()];
         for(int i = 0; i < orderedFile.size(); i++)
-            newReach[i] = reach_d[orderedFile.get(i)];
+        {
+            ordering[i] = orderedFile.get(i);
+            newReach[i] = reach_d[ordering[i]];
+        }
         reach_d = newReach;
         
         return designations;
     }
 
+    /**
+     * Computes the search radius and the core distance of every point with
+     * batches of nearest neighbor searches. 
+     * 
+     * @param source the list {@link #vc} was built from
+     * @param threadpool the source of threads to search in parallel, or 
+     * {@code null} to search in the calling thread
+     */
+    private void computeCoreDistances(List<VecPaired<Vec, Integer>> source, ExecutorService threadpool)
+    {
+        final int n = allVecs.length;
+        List<Vec> queries = Arrays.asList(allVecs);
+        /*
+         * The minPts+1 nearest neighbor (counting the point itself) is both
+         * the value the radius is estimated from, and the core distance of the
+         * point if it is within the radius
+         */
+        OnLineStatistics stats = new OnLineStatistics();
+        NeighborResults results = null;
+        for(int start = 0; start < n; start += BATCH_SIZE)
+        {
+            int end = Math.min(start+BATCH_SIZE, n);
+            results = VectorCollectionUtils.searchKNN(vc, source, queries.subList(start, end), minPts+1, results, threadpool);
+            for(int i = 0; i < end-start; i++)
+                if(results.getNeighborCount(i) < minPts+1)
+                    core_distance[start+i] = UNDEFINED;
+                else
+                {
+                    core_distance[start+i] = results.getDistance(i, minPts);
+                    stats.add(core_distance[start+i]);
+                }
+        }
+        radius = stats.getMean() + stats.getStandardDeviation() * 3;
+        for(int i = 0; i < n; i++)
+            if(core_distance[i] > radius)
+                core_distance[i] = UNDEFINED;
+    }
+    
+    /**
+     * Searches for the radius neighborhoods of the points in parallel batches,
+     * and stores them until the memory bound is reached. 
+     * 
+     * @param source the list {@link #vc} was built from
+     * @param threadpool the source of threads to search in parallel
+     */
+    private void storeNeighbors(List<VecPaired<Vec, Integer>> source, ExecutorService threadpool)
+    {
+        final int n = allVecs.length;
+        List<Vec> queries = Arrays.asList(allVecs);
+        long stored = 0;
+        for(int start = 0; start < n; start += BATCH_SIZE)
+        {
+            int end = Math.min(start+BATCH_SIZE, n);
+            /*
+             * Estimate the size of this batch from the average of the batches
+             * before it, where every point is at least its own neighbor, so a 
+             * batch that will not fit is not searched for
+             */
+            long expected = start == 0 ? end-start : stored*(end-start)/start;
+            if(stored+expected > maxStoredNeighbors)//spill, the rest will be searched for as needed
+                break;
+            NeighborResults results = VectorCollectionUtils.searchRange(vc, source, queries.subList(start, end), radius, null, threadpool);
+            stored += results.getOffsets()[results.size()];
+            if(stored > maxStoredNeighbors)//larger than estimated
+                break;
+            storedNeighbors.add(results);
+        }
+    }
+
     private void filterSDASet(Set<Integer> sdaSet, double mib, double[] mibVals, List<Integer> orderedFile)
     {
         for(Iterator<Integer> iter = sdaSet.iterator(); iter.hasNext(); )
@@ -607,82 +758,100 @@ public class OPTICS extends ClustererBase implements Parameterized
         return reach_d[index1]*one_min_xi <= reach_d[index2];
     }
 
-    @Override
-    public int[] cluster(DataSet dataSet, ExecutorService threadpool, int[] designations)
-    {
-        return cluster(dataSet, designations);
-    }
-
-    private void expandClusterOrder(int curIndex, Vec vec, List<Integer> orderedFile)
+    private void expandClusterOrder(int curIndex, List<Integer> orderedFile)
     {
-        List<? extends VecPaired<VecPaired<Vec, Integer>, Double>> neighbors = vc.search(vec, radius);
-        VecPaired<Vec, Integer> object = new VecPaired<Vec, Integer>(vec, curIndex);
-        
-        reach_d[curIndex] = UNDEFINED;//NaN used for undefined
-        processed[curIndex] = true;
-        setCoreDistance(neighbors, curIndex);
-        orderedFile.add(curIndex);
-        
-        if(!Double.isInfinite(core_distance[curIndex]))
+        reach_d[curIndex] = UNDEFINED;
+        while(true)
         {
-            orderedSeedsUpdate(neighbors, curIndex);
-            while(!orderdSeeds.isEmpty())
-            {
-                int curObjectIndex = orderdSeeds.poll();
-                neighbors = vc.search(allVecs[curObjectIndex], radius);
-                processed[curObjectIndex] = true;
-                setCoreDistance(neighbors, curObjectIndex);
-                orderedFile.add(curObjectIndex);
-                if(!Double.isInfinite(core_distance[curObjectIndex]))
-                    orderedSeedsUpdate(neighbors, curObjectIndex);
-            }
+            processed[curIndex] = true;
+            orderedFile.add(curIndex);
+            expandObject(curIndex);
+            if(orderdSeeds.isEmpty())
+                break;
+            curIndex = orderdSeeds.poll();
         }
-        
     }
 
-    private void setCoreDistance(List<? extends VecPaired<VecPaired<Vec, Integer>, Double>> neighbors, int curIndex)
+    /**
+     * Updates the ordered seeds with the neighbors of the given object if it 
+     * is a core object
+     * 
+     * @param curIndex the index of the object being processed
+     */
+    private void expandObject(int curIndex)
     {
-        if(neighbors.size() < minPts+1)//+1 b/c we dont count oursleves, which will get returned
-            core_distance[curIndex] = UNDEFINED;
-        else//0 is us, 1 is the nearest neighbor
-            core_distance[curIndex] = neighbors.get(minPts).getPair();
+        if(Double.isInfinite(core_distance[curIndex]))
+            return;
+        int batch = curIndex / BATCH_SIZE;
+        if(batch < storedNeighbors.size())
+            orderedSeedsUpdate(storedNeighbors.get(batch), curIndex-batch*BATCH_SIZE, curIndex);
+        else
+            orderedSeedsUpdate(vc.search(allVecs[curIndex], radius), curIndex);
     }
 
     private void orderedSeedsUpdate(List<? extends VecPaired<VecPaired<Vec, Integer>, Double>> neighbors, int centerObjectIndex)
     {
         double c_dist = core_distance[centerObjectIndex];
-        for(int i = 1; i < neighbors.size(); i++)//'0' index is a self reference, skip it
+        for(VecPaired<VecPaired<Vec, Integer>, Double> neighbor : neighbors)
+            orderedSeedUpdate(neighbor.getVector().getPair(), Math.max(c_dist, neighbor.getPair()));
+    }
+    
+    private void orderedSeedsUpdate(NeighborResults neighbors, int q, int centerObjectIndex)
+    {
+        double c_dist = core_distance[centerObjectIndex];
+        int[] offsets = neighbors.getOffsets();
+        int[] indices = neighbors.getNeighbors();
+        double[] dists = neighbors.getDistances();
+        for(int j = offsets[q]; j < offsets[q+1]; j++)
+            orderedSeedUpdate(indices[j], Math.max(c_dist, dists[j]));
+    }
+
+    private void orderedSeedUpdate(int objIndex, double new_r_dist)
+    {
+        if(processed[objIndex])//includes the center object itself
+            return;
+        if(!orderdSeeds.contains(objIndex))
         {
-            VecPaired<VecPaired<Vec, Integer>, Double> neighbor = neighbors.get(i);
-            int objIndex = neighbor.getVector().getPair();
-            if(processed[objIndex])
-               continue;
-            double new_r_dist = Math.max(c_dist, neighbor.getPair());
-            if(Double.isInfinite(reach_d[objIndex]))
-            {
-                reach_d[objIndex] = new_r_dist;
-//                r_dists[objIndex] = new_r_dist;
-                orderdSeeds.add(objIndex);
-            }
-            else if(new_r_dist < reach_d[objIndex])// Object already in OrderSeeds, but we can do better
-            {
-                reach_d[objIndex] = new_r_dist;
-//                r_dists[objIndex] = new_r_dist;
-                orderdSeeds.remove(objIndex);
-                orderdSeeds.add(objIndex);
-            }
-            
+            reach_d[objIndex] = new_r_dist;
+            orderdSeeds.add(objIndex, new_r_dist);
+        }
+        else if(new_r_dist < reach_d[objIndex])// Object already in OrderSeeds, but we can do better
+        {
+            reach_d[objIndex] = new_r_dist;
+            orderdSeeds.decreaseKey(objIndex, new_r_dist);
         }
-        
     }
 
-    private void extractClusteringDBSCAN(List<Integer> orderedFile, double e, int[] designations)
+    /**
+     * Extracts the clustering {@link DBSCAN} would produce for the given 
+     * radius from the ordering found by the last call to cluster. Core points 
+     * are assigned to the same clusters as DBSCAN, while a border point that 
+     * could belong to more than one cluster may be assigned to a different one
+     * of them. 
+     * 
+     * @param e the DBSCAN radius, which may not be larger than the radius the 
+     * ordering was generated with
+     * @param designations the array to store the cluster assignment of each 
+     * data point in, or {@code null} to create a new one
+     * @return the cluster assignment of each data point, where noise is 
+     * assigned -1
+     * @throws UntrainedModelException if no ordering has been computed 
+     * @throws IllegalArgumentException if <tt>e</tt> is larger than the 
+     * radius the ordering was generated with
+     */
+    public int[] extractClusteringDBSCAN(double e, int[] designations)
     {
+        if(ordering == null)
+            throw new UntrainedModelException("No ordering has been computed yet");
+        if(e > radius || Double.isNaN(e))
+            throw new IllegalArgumentException("radius " + e + " is larger than the generating radius " + radius);
+        if(designations == null)
+            designations = new int[ordering.length];
         int clusterID = NOISE;
-        for(int i = 0; i < orderedFile.size(); i++)
+        for(int i = 0; i < ordering.length; i++)
         {
-            int trueObjIndex = orderedFile.get(i);
-            if( Double.isInfinite(reach_d[trueObjIndex]) || reach_d[trueObjIndex] > e)
+            int trueObjIndex = ordering[i];
+            if(reach_d[i] > e)
             {
                 if(core_distance[trueObjIndex] <= e)
                 {
@@ -695,7 +864,7 @@ public class OPTICS extends ClustererBase implements Parameterized
             else
                 designations[trueObjIndex] = clusterID;
         }
-        throw new UnsupportedOperationException("Not yet implemented");
+        return designations;
     }
     
     /**
@@ -2,12 +2,16 @@
 package jsat.clustering;
 
 import jsat.linear.distancemetrics.TrainableDistanceMetric;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jsat.DataSet;
@@ -17,7 +21,9 @@ import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.math.OnLineStatistics;
 import jsat.utils.FakeExecutor;
+import jsat.utils.ListUtils;
 import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ParallelUtils;
 import static jsat.clustering.SeedSelectionMethods.*;
 import jsat.utils.random.XORWOW;
 
@@ -126,79 +132,272 @@ public class PAM extends KClustererBase
      */
     protected double cluster(DataSet data, boolean doInit, int[] medioids, int[] assignments, List<Double> cacheAccel)
     {
-        double totalDistance = 0;
-        int changes = -1;
-        Arrays.fill(assignments, -1);//-1, invalid category!
-        
-        int[] bestMedCand = new int[medioids.length];
-        double[] bestMedCandDist = new double[medioids.length];
+        return cluster(data, doInit, medioids, assignments, cacheAccel, null);
+    }
+    
+    /**
+     * Performs the actual work of PAM, using the swap search of FastPAM. The 
+     * distance from every point to its nearest and second nearest medoid is 
+     * cached, which allows the change in cost of swapping a candidate point 
+     * with each of the <i>k</i> medoids to be computed in a single pass over 
+     * the data. Each iteration performs the single best swap, until no swap 
+     * would reduce the cost. <br>
+     * See: Schubert, E., & Rousseeuw, P. J. (2019). <i>Faster k-Medoids 
+     * Clustering: Improving the PAM, CLARA, and CLARANS Algorithms</i>. In 
+     * SISAP 2019 (pp. 171–187).
+     * 
+     * @param data the data set to apply PAM to
+     * @param doInit {@code true} if the initialization procedure of training the distance metric, initiating its cache, and selecting he seeds, should be done. 
+     * @param medioids the array to store the indices that get chosen as the medoids. The length of the array indicates how many medoids should be obtained. 
+     * @param assignments an array of the same length as <tt>data</tt>, each value indicating what cluster that point belongs to. 
+     * @param cacheAccel the pre-computed distance acceleration cache. May be {@code null}. 
+     * @param threadpool the source of threads to evaluate the swaps in 
+     * parallel, or {@code null} to do all the work in the calling thread
+     * @return the sum of the squared distance from each point to its closest medoids 
+     */
+    protected double cluster(DataSet data, boolean doInit, int[] medioids, int[] assignments, List<Double> cacheAccel, ExecutorService threadpool)
+    {
         List<Vec> X = data.getDataVectors();
         
         if(doInit)
         {
             TrainableDistanceMetric.trainIfNeeded(dm, data);
-            cacheAccel = dm.getAccelerationCache(X);
-            selectIntialPoints(data, medoids, dm, cacheAccel, rand, seedSelection);
+            cacheAccel = getAccelerationCache(X, threadpool);
+            if(threadpool == null)
+                selectIntialPoints(data, medioids, dm, cacheAccel, rand, seedSelection);
+            else
+                selectIntialPoints(data, medioids, dm, cacheAccel, rand, seedSelection, threadpool);
         }
+        
+        final int N = X.size();
+        //the squared distance to the nearest and second nearest medoid
+        double[] nearestDist = new double[N];
+        double[] secondDist = new double[N];
+        double totalDistance = assign(X, medioids, assignments, nearestDist, secondDist, cacheAccel, threadpool);
+        
+        boolean[] isMedoid = new boolean[N];
+        for(int m : medioids)
+            isMedoid[m] = true;
 
-        int iter = 0;
-        do
+        for(int iter = 0; iter < iterLimit; iter++)
         {
-            changes = 0;
-            totalDistance = 0.0;
-            
-            for(int i = 0; i < data.getSampleSize(); i++)
-            {
-                Vec dpVec = data.getDataPoint(i).getNumericalValues();
-                int assignment = 0;
-                double minDist = dm.dist(medioids[0], i, X, cacheAccel);
-
-                for (int k = 1; k < medioids.length; k++)
-                {
-                    double dist = dm.dist(medioids[k], i, X, cacheAccel);
-                    if (dist < minDist)
-                    {
-                        minDist = dist;
-                        assignment = k;
-                    }
-                }
+            Swap best = findBestSwap(X, medioids, isMedoid, assignments, nearestDist, secondDist, cacheAccel, threadpool);
+            //a relative tolerance keeps ties in floating point from swapping back and forth
+            if(best == null || best.delta >= -1e-12*totalDistance)
+                break;
+            isMedoid[medioids[best.medoid]] = false;
+            isMedoid[best.candidate] = true;
+            medioids[best.medoid] = best.candidate;
+            totalDistance = assign(X, medioids, assignments, nearestDist, secondDist, cacheAccel, threadpool);
+        }
+        
+        return totalDistance;
+    }
+    
+    /**
+     * Returns the acceleration cache for the given vectors, or {@code null} if
+     * the distance metric does not support acceleration
+     */
+    protected List<Double> getAccelerationCache(List<Vec> X, ExecutorService threadpool)
+    {
+        if(!dm.supportsAcceleration())
+            return null;
+        if(threadpool == null)
+            return dm.getAccelerationCache(X);
+        return dm.getAccelerationCache(X, threadpool);
+    }
+    
+    /**
+     * A swap of a medoid with a non-medoid candidate point, and the change in
+     * cost it causes
+     */
+    private static class Swap
+    {
+        double delta;
+        int candidate;
+        int medoid;
 
-                //Update which cluster it is in
-                if (assignments[i] != assignment)
+        public Swap(double delta, int candidate, int medoid)
+        {
+            this.delta = delta;
+            this.candidate = candidate;
+            this.medoid = medoid;
+        }
+    }
+    
+    /**
+     * Finds the swap that reduces the cost the most. The candidates are split
+     * between threads, and ties go to the smallest candidate index, so the 
+     * result does not depend on the number of threads. 
+     * 
+     * @return the best swap, or {@code null} if there are no candidates
+     */
+    private Swap findBestSwap(final List<Vec> X, final int[] medioids, final boolean[] isMedoid, final int[] assignments, final double[] nearestDist, final double[] secondDist, final List<Double> cacheAccel, ExecutorService threadpool)
+    {
+        final int N = X.size();
+        if(threadpool == null)
+            return findBestSwap(0, N, X, medioids.length, isMedoid, assignments, nearestDist, secondDist, cacheAccel);
+        
+        final int P = Math.min(SystemInfo.LogicalCores, N);
+        List<Future<Swap>> futures = new ArrayList<Future<Swap>>(P);
+        for(int id = 0; id < P; id++)
+        {
+            final int start = ParallelUtils.getStartBlock(N, id, P);
+            final int end = ParallelUtils.getEndBlock(N, id, P);
+            futures.add(threadpool.submit(new Callable<Swap>()
+            {
+                @Override
+                public Swap call() throws Exception
                 {
-                    changes++;
-                    assignments[i] = assignment;
+                    return findBestSwap(start, end, X, medioids.length, isMedoid, assignments, nearestDist, secondDist, cacheAccel);
                 }
-                totalDistance += minDist * minDist;
-      
+            }));
+        }
+        
+        try
+        {
+            Swap best = null;
+            for(Swap swap : ListUtils.collectFutures(futures))
+                if(swap != null && (best == null || swap.delta < best.delta))
+                    best = swap;
+            return best;
+        }
+        catch (ExecutionException ex)
+        {
+            throw new RuntimeException(ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    /**
+     * Finds the best swap for the candidates in [start, end). <br>
+     * Swapping medoid <i>m</i> for candidate <i>c</i> changes the cost of a 
+     * point <i>o</i> by min(d(o,c) - d<sub>1</sub>(o), 0) when <i>o</i> is not
+     * assigned to <i>m</i>, and by min(d(o,c), d<sub>2</sub>(o)) - 
+     * d<sub>1</sub>(o) when it is. So the first term is shared by every 
+     * medoid, and each point adds the difference between the two terms to 
+     * only the medoid it is assigned to. 
+     */
+    private Swap findBestSwap(int start, int end, List<Vec> X, int k, boolean[] isMedoid, int[] assignments, double[] nearestDist, double[] secondDist, List<Double> cacheAccel)
+    {
+        final int N = X.size();
+        double[] delta = new double[k];
+        Swap best = null;
+        for(int c = start; c < end; c++)
+        {
+            if(isMedoid[c])
+                continue;
+            Arrays.fill(delta, 0.0);
+            double shared = 0;
+            for(int o = 0; o < N; o++)
+            {
+                double d_oc = Math.pow(dm.dist(c, o, X, cacheAccel), 2);
+                double d_1 = nearestDist[o];
+                if(d_oc < d_1)
+                    shared += d_oc - d_1;
+                else
+                    delta[assignments[o]] += Math.min(d_oc, secondDist[o]) - d_1;
             }
             
-            
-            //TODO this update may be faster by using more memory, and actually moiving people about in the assignment loop above
-            //Update the medoids
-            Arrays.fill(bestMedCandDist, Double.MAX_VALUE);
-            for(int i = 0; i < data.getSampleSize(); i++)
+            for(int m = 0; m < k; m++)
+                if(best == null || delta[m] + shared < best.delta)
+                    best = new Swap(delta[m] + shared, c, m);
+        }
+        return best;
+    }
+    
+    /**
+     * Assigns every point to its nearest medoid, with ties going to the first 
+     * medoid
+     * 
+     * @param X the data points
+     * @param medioids the indices of the medoids in <tt>X</tt>
+     * @param assignments the array to store the index of the nearest medoid 
+     * in
+     * @param nearestDist the array to store the squared distance to the 
+     * nearest medoid in, may be {@code null}
+     * @param secondDist the array to store the squared distance to the second 
+     * nearest medoid in, may be {@code null}. Will be 
+     * {@link Double#POSITIVE_INFINITY} if there is only one medoid. 
+     * @param cacheAccel the distance acceleration cache for <tt>X</tt>, may be
+     * {@code null}
+     * @param threadpool the source of threads, or {@code null} to do the work
+     * in the calling thread
+     * @return the sum of the squared distance from each point to its closest 
+     * medoid
+     */
+    protected double assign(final List<Vec> X, final int[] medioids, final int[] assignments, final double[] nearestDist, final double[] secondDist, final List<Double> cacheAccel, ExecutorService threadpool)
+    {
+        final int N = X.size();
+        if(threadpool == null)
+            return assign(0, N, X, medioids, assignments, nearestDist, secondDist, cacheAccel);
+        
+        final int P = Math.min(SystemInfo.LogicalCores, N);
+        List<Future<Double>> futures = new ArrayList<Future<Double>>(P);
+        for(int id = 0; id < P; id++)
+        {
+            final int start = ParallelUtils.getStartBlock(N, id, P);
+            final int end = ParallelUtils.getEndBlock(N, id, P);
+            futures.add(threadpool.submit(new Callable<Double>()
             {
-                double thisCandidateDistance = 0.0;
-                int clusterID = assignments[i];
-                final int medCandadate = i;
-                for(int j = 0; j < data.getSampleSize(); j++)
+                @Override
+                public Double call() throws Exception
                 {
-                    if(j == i || assignments[j] != clusterID)
-                        continue;
-                    thisCandidateDistance += Math.pow(dm.dist(medCandadate, j, X, cacheAccel), 2);
+                    return assign(start, end, X, medioids, assignments, nearestDist, secondDist, cacheAccel);
                 }
-                
-                if(thisCandidateDistance < bestMedCandDist[clusterID])
+            }));
+        }
+        
+        try
+        {
+            double totalDistance = 0;
+            for(double partial : ListUtils.collectFutures(futures))
+                totalDistance += partial;
+            return totalDistance;
+        }
+        catch (ExecutionException ex)
+        {
+            throw new RuntimeException(ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    private double assign(int start, int end, List<Vec> X, int[] medioids, int[] assignments, double[] nearestDist, double[] secondDist, List<Double> cacheAccel)
+    {
+        double totalDistance = 0;
+        for(int i = start; i < end; i++)
+        {
+            int assignment = 0;
+            double minDist = Double.POSITIVE_INFINITY;
+            double secondMinDist = Double.POSITIVE_INFINITY;
+            for(int k = 0; k < medioids.length; k++)
+            {
+                double dist = Math.pow(dm.dist(medioids[k], i, X, cacheAccel), 2);
+                if(dist < minDist)
                 {
-                    bestMedCand[clusterID] = i;
-                    bestMedCandDist[clusterID] = thisCandidateDistance;
+                    secondMinDist = minDist;
+                    minDist = dist;
+                    assignment = k;
                 }
+                else if(dist < secondMinDist)
+                    secondMinDist = dist;
             }
-            System.arraycopy(bestMedCand, 0, medioids, 0, medioids.length);
+            
+            assignments[i] = assignment;
+            if(nearestDist != null)
+                nearestDist[i] = minDist;
+            if(secondDist != null)
+                secondDist[i] = secondMinDist;
+            totalDistance += minDist;
         }
-        while( changes > 0 && iter++ < iterLimit);
-        
         return totalDistance;
     }
 
@@ -216,18 +415,12 @@ public class PAM extends KClustererBase
 
     @Override
     public int[] cluster(DataSet dataSet, int clusters, ExecutorService threadpool, int[] designations)
-    {
-         return cluster(dataSet, clusters, designations);
-    }
-
-    @Override
-    public int[] cluster(DataSet dataSet, int clusters, int[] designations)
     {
         if(designations == null)
             designations = new int[dataSet.getSampleSize()];
         medoids = new int[clusters];
         
-        cluster(dataSet, true, medoids, designations, null);
+        cluster(dataSet, true, medoids, designations, null, threadpool);
         
         if(!storeMedoids)
             medoids = null;
@@ -235,6 +428,12 @@ public class PAM extends KClustererBase
         return designations;
     }
 
+    @Override
+    public int[] cluster(DataSet dataSet, int clusters, int[] designations)
+    {
+        return cluster(dataSet, clusters, (ExecutorService) null, designations);
+    }
+
     @Override
     public int[] cluster(DataSet dataSet, int lowK, int highK, int[] designations)
     {
@@ -13,6 +13,7 @@ import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.utils.*;
 import static jsat.utils.SystemInfo.LogicalCores;
 import jsat.utils.concurrent.ParallelUtils;
+import jsat.utils.random.XORWOW;
 
 /**
  * This class provides methods for sampling a data set for a set of initial points to act as the seeds for a clustering algorithm. 
@@ -59,7 +60,24 @@ public class SeedSelectionMethods
          * See: J. A. Hartigan and M. A. Wong, "A k-means clustering algorithm", 
          * Applied Statistics, vol. 28, pp. 100–108, 1979.
          */
-        MEAN_QUANTILES
+        MEAN_QUANTILES,
+        
+        /**
+         * The k-means|| seeding algo: <br>
+         * A scalable version of {@link #KPP} that takes only a few passes 
+         * over the data, rather than <i>k</i>. In each round, every point is
+         * sampled independently with probability proportional to its squared 
+         * distance from the candidates so far, adding about 2<i>k</i> 
+         * candidates per round. The candidates are then weighted by the number
+         * of points closest to them, and reduced to <i>k</i> seeds with 
+         * weighted k-means++. The sampling and distance updates of each round
+         * are done in parallel. 
+         * <br><br>
+         * See: Bahmani, B., Moseley, B., Vattani, A., Kumar, R., &amp; 
+         * Vassilvitskii, S. (2012). <i>Scalable k-means++</i>. Proceedings of
+         * the VLDB Endowment, 5(7), 622–633.
+         */
+        KMEANS_PARALLEL
     };
     
     /**
@@ -228,6 +246,13 @@ public class SeedSelectionMethods
                 else
                     mqSelection(indices, d, k, dm, accelCache, threadpool);
             }
+            else if(selectionMethod == SeedSelection.KMEANS_PARALLEL)
+            {
+                if (threadpool == null || threadpool instanceof FakeExecutor)
+                    kmeansParallelSelection(indices, rand, d, k, dm, accelCache, null);
+                else
+                    kmeansParallelSelection(indices, rand, d, k, dm, accelCache, threadpool);
+            }
         }
         catch (InterruptedException ex)
         {
@@ -377,6 +402,279 @@ public class SeedSelectionMethods
         }
     }
     
+    /**
+     * The number of sampling rounds used by 
+     * {@link SeedSelection#KMEANS_PARALLEL}
+     */
+    private static final int KMEANS_PARALLEL_ROUNDS = 5;
+    
+    private static void kmeansParallelSelection(int[] indices, Random rand, DataSet d, final int k, final DistanceMetric dm, final List<Double> accelCache, ExecutorService threadpool) throws InterruptedException, ExecutionException
+    {
+        /*
+         * Bahmani, B., Moseley, B., Vattani, A., Kumar, R., & Vassilvitskii, S.
+         * (2012). Scalable k-means++. Proceedings of the VLDB Endowment, 5(7),
+         * 622–633.
+         */
+        final int N = d.getSampleSize();
+        final List<Vec> X = d.getDataVectors();
+        //the oversampling factor, the expected number of candidates added each round
+        final double l = 2.0*k;
+        
+        final IntList candidates = new IntList();
+        candidates.add(rand.nextInt(N));
+        
+        final double[] closestDist = new double[N];
+        Arrays.fill(closestDist, Double.POSITIVE_INFINITY);
+        final int[] closest = new int[N];
+        
+        double psi = kmeansParallelUpdate(X, dm, accelCache, candidates, 0, closestDist, closest, threadpool);
+        
+        for(int round = 0; round < KMEANS_PARALLEL_ROUNDS && psi > 1e-6; round++)
+        {
+            //Every point is sampled independently with probability l d^2(x, C) / psi
+            final double Psi = psi;
+            List<Callable<IntList>> samplers = new ArrayList<Callable<IntList>>(LogicalCores);
+            for(int id = 0; id < LogicalCores; id++)
+            {
+                final int from = ParallelUtils.getStartBlock(N, id, LogicalCores);
+                final int to = ParallelUtils.getEndBlock(N, id, LogicalCores);
+                final Random blockRand = new XORWOW(rand.nextLong());
+                samplers.add(new Callable<IntList>()
+                {
+                    @Override
+                    public IntList call() throws Exception
+                    {
+                        IntList sampled = new IntList();
+                        for(int i = from; i < to; i++)
+                            if(blockRand.nextDouble()*Psi < l*closestDist[i])
+                                sampled.add(i);
+                        return sampled;
+                    }
+                });
+            }
+            
+            int prevCandidates = candidates.size();
+            for(IntList sampled : invokeAll(samplers, threadpool))
+                candidates.addAll(sampled);
+            if(candidates.size() == prevCandidates)
+                continue;
+            
+            psi = kmeansParallelUpdate(X, dm, accelCache, candidates, prevCandidates, closestDist, closest, threadpool);
+        }
+        
+        //Weight each candidate by the number of points closest to it
+        final int C = candidates.size();
+        double[] weights = new double[C];
+        for(int i = 0; i < N; i++)
+            weights[closest[i]]++;
+        
+        if(C <= k)//too few candidates, fill in the rest randomly
+        {
+            Set<Integer> ind = new LinkedHashSet<Integer>(candidates);
+            while(ind.size() < k)
+                ind.add(rand.nextInt(N));
+            int pos = 0;
+            for(int i : ind)
+                indices[pos++] = i;
+            return;
+        }
+        
+        //Recluster the weighted candidates down to k with k-means++
+        double[] candDist = new double[C];
+        Arrays.fill(candDist, Double.POSITIVE_INFINITY);
+        boolean[] chosen = new boolean[C];
+        int newest = sampleWeighted(weights, rand);
+        for(int j = 0; j < k; j++)
+        {
+            chosen[newest] = true;
+            indices[j] = candidates.getI(newest);
+            if(j == k-1)
+                break;
+            
+            double weightedSum = 0;
+            for(int c = 0; c < C; c++)
+            {
+                if(!chosen[c])
+                {
+                    double dist = dm.dist(indices[j], candidates.getI(c), X, accelCache);
+                    candDist[c] = Math.min(candDist[c], dist*dist*weights[c]);
+                }
+                else
+                    candDist[c] = 0;
+                weightedSum += candDist[c];
+            }
+            
+            if(weightedSum <= 1e-6)//the remaining candidates are all duplicates, take them in order
+            {
+                for(int c = 0; c < C && j < k-1; c++)
+                    if(!chosen[c])
+                    {
+                        chosen[c] = true;
+                        indices[++j] = candidates.getI(c);
+                    }
+                return;
+            }
+            newest = sampleWeighted(candDist, rand);
+        }
+    }
+    
+    /**
+     * Samples an index with probability proportional to its value
+     * @param values the non-negative values to sample by, at least one of 
+     * which must be positive
+     * @param rand the source of randomness
+     * @return the sampled index
+     */
+    private static int sampleWeighted(double[] values, Random rand)
+    {
+        double sum = 0;
+        for(double v : values)
+            sum += v;
+        double rndX = rand.nextDouble()*sum;
+        double searchSum = 0;
+        int last = 0;
+        for(int i = 0; i < values.length; i++)
+            if(values[i] > 0)
+            {
+                last = i;
+                searchSum += values[i];
+                if(searchSum >= rndX)
+                    return i;
+            }
+        return last;//only reached from rounding error
+    }
+    
+    /**
+     * Updates the distance from each point to its closest candidate with the 
+     * candidates in [newStart, candidates.size()). <br>
+     * When the distance is a metric, the points are grouped by their closest
+     * candidate <i>a</i>, and the new candidates <i>c</i> are visited in order
+     * of d(a, c). By the triangle inequality, once d(a, c) - d(x, a) is at 
+     * least the distance to the closest candidate found so far, no remaining
+     * candidate can be closer to <i>x</i>. 
+     * 
+     * @return the sum of the squared distances from each point to its closest
+     * candidate
+     */
+    private static double kmeansParallelUpdate(final List<Vec> X, final DistanceMetric dm, final List<Double> accelCache, final IntList candidates, final int newStart, final double[] closestDist, final int[] closest, ExecutorService threadpool) throws InterruptedException, ExecutionException
+    {
+        final int N = X.size();
+        final int newCount = candidates.size()-newStart;
+        final boolean prune = newStart > 0 && dm.isSymmetric() && dm.isSubadditive();
+        
+        //the points in order of their closest candidate
+        final int[] order = new int[N];
+        if(prune)
+        {
+            int[] groupStart = new int[newStart+1];
+            for(int i = 0; i < N; i++)
+                groupStart[closest[i]+1]++;
+            for(int a = 0; a < newStart; a++)
+                groupStart[a+1] += groupStart[a];
+            for(int i = 0; i < N; i++)
+                order[groupStart[closest[i]]++] = i;
+        }
+        else
+            for(int i = 0; i < N; i++)
+                order[i] = i;
+        
+        List<Callable<Double>> updaters = new ArrayList<Callable<Double>>(LogicalCores);
+        for(int id = 0; id < LogicalCores; id++)
+        {
+            final int from = ParallelUtils.getStartBlock(N, id, LogicalCores);
+            final int to = ParallelUtils.getEndBlock(N, id, LogicalCores);
+            updaters.add(new Callable<Double>()
+            {
+                @Override
+                public Double call() throws Exception
+                {
+                    double sqrdDistSum = 0;
+                    //distance from the current group's candidate to each new candidate
+                    double[] candDist = new double[newCount];
+                    IndexTable candOrder = new IndexTable(newCount);
+                    int group = -1;
+                    for(int pos = from; pos < to; pos++)
+                    {
+                        int i = order[pos];
+                        if(!prune)
+                        {
+                            for(int c = newStart; c < candidates.size(); c++)
+                            {
+                                double newDist = dm.dist(candidates.getI(c), i, X, accelCache);
+                                newDist *= newDist;
+                                if(newDist < closestDist[i])
+                                {
+                                    closestDist[i] = newDist;
+                                    closest[i] = c;
+                                }
+                            }
+                            sqrdDistSum += closestDist[i];
+                            continue;
+                        }
+                        
+                        if(closest[i] != group)
+                        {
+                            group = closest[i];
+                            for(int c = 0; c < newCount; c++)
+                                candDist[c] = dm.dist(candidates.getI(group), candidates.getI(newStart+c), X, accelCache);
+                            candOrder.sort(candDist);
+                        }
+                        
+                        //d(x, c) >= d(a, c) - d(x, a), so stop once that reaches the best distance so far
+                        double d_a = Math.sqrt(closestDist[i]);
+                        double d_1 = d_a;
+                        for(int z = 0; z < newCount; z++)
+                        {
+                            int c = candOrder.index(z);
+                            if(candDist[c] - d_a >= d_1)
+                                break;
+                            double newDist = dm.dist(candidates.getI(newStart+c), i, X, accelCache);
+                            if(newDist*newDist < closestDist[i])
+                            {
+                                d_1 = newDist;
+                                closestDist[i] = newDist*newDist;
+                                closest[i] = newStart+c;
+                            }
+                        }
+                        sqrdDistSum += closestDist[i];
+                    }
+                    return sqrdDistSum;
+                }
+            });
+        }
+        
+        double sqrdDistSum = 0;
+        for(double partial : invokeAll(updaters, threadpool))
+            sqrdDistSum += partial;
+        return sqrdDistSum;
+    }
+    
+    /**
+     * Runs the given tasks in the thread pool, or in the calling thread if it
+     * is {@code null}, and returns their results in order
+     */
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks, ExecutorService threadpool) throws InterruptedException, ExecutionException
+    {
+        if(threadpool == null)
+        {
+            List<T> results = new ArrayList<T>(tasks.size());
+            for(Callable<T> task : tasks)
+                try
+                {
+                    results.add(task.call());
+                }
+                catch (Exception ex)
+                {
+                    throw new ExecutionException(ex);
+                }
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        for(Callable<T> task : tasks)
+            futures.add(threadpool.submit(task));
+        return ListUtils.collectFutures(futures);
+    }
+    
     private static void ffSelection(final int[] indices, Random rand, final DataSet d, final int k, final DistanceMetric dm, final List<Double> accelCache, ExecutorService threadpool) throws InterruptedException, ExecutionException
     {
         //Initial random point
@@ -12,7 +12,7 @@ import jsat.linear.distancemetrics.EuclideanDistance;
  * 
  * @author Edward Raff
  */
-public class AverageLinkDissimilarity extends DistanceMetricDissimilarity implements UpdatableClusterDissimilarity
+public class AverageLinkDissimilarity extends DistanceMetricDissimilarity implements DirectUpdatableClusterDissimilarity
 {
     /**
      * Creates a new AverageLinkDissimilarity using the {@link EuclideanDistance}
@@ -84,10 +84,16 @@ public class AverageLinkDissimilarity extends DistanceMetricDissimilarity implem
 
     @Override
     public double dissimilarity(int i, int ni, int j, int nj, int k, int nk, double[][] distanceMatrix)
+    {
+        return dissimilarity(ni, nj, nk, getDistance(distanceMatrix, i, j), getDistance(distanceMatrix, i, k), getDistance(distanceMatrix, j, k));
+    }
+
+    @Override
+    public double dissimilarity(int ni, int nj, int nk, double d_ij, double d_ik, double d_jk)
     {
         double ai = ni/(double)(ni+nj);
         double aj = nj/(double)(ni+nj);
-        return ai * getDistance(distanceMatrix, i, k) + aj * getDistance(distanceMatrix, j, k);
+        return ai * d_ik + aj * d_jk;
     }
     
 }
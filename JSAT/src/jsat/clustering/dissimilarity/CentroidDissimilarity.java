@@ -13,7 +13,7 @@ import jsat.linear.distancemetrics.EuclideanDistance;
  * 
  * @author Edward Raff
  */
-public class CentroidDissimilarity extends DistanceMetricDissimilarity implements UpdatableClusterDissimilarity
+public class CentroidDissimilarity extends DistanceMetricDissimilarity implements DirectUpdatableClusterDissimilarity
 {
     /**
      * Creates a new CentroidDissimilarity that used the {@link EuclideanDistance}
@@ -70,13 +70,19 @@ public class CentroidDissimilarity extends DistanceMetricDissimilarity implement
 
     @Override
     public double dissimilarity(int i, int ni, int j, int nj, int k, int nk, double[][] distanceMatrix)
+    {
+        return dissimilarity(ni, nj, nk, getDistance(distanceMatrix, i, j), getDistance(distanceMatrix, i, k), getDistance(distanceMatrix, j, k));
+    }
+
+    @Override
+    public double dissimilarity(int ni, int nj, int nk, double d_ij, double d_ik, double d_jk)
     {
         double iPj = ni+nj;
         double ai = ni/iPj;
         double aj = nj/iPj;
         double b = - ni * nj / iPj*iPj;
         
-        return ai* getDistance(distanceMatrix, i, k) + aj * getDistance(distanceMatrix, j, k) + b * getDistance(distanceMatrix, i, j);
+        return ai* d_ik + aj * d_jk + b * d_ij;
     }
 
     
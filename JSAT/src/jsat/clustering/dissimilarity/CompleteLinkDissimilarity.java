@@ -14,7 +14,7 @@ import jsat.linear.distancemetrics.EuclideanDistance;
  * 
  * @author Edward Raff
  */
-public class CompleteLinkDissimilarity extends DistanceMetricDissimilarity implements UpdatableClusterDissimilarity
+public class CompleteLinkDissimilarity extends DistanceMetricDissimilarity implements DirectUpdatableClusterDissimilarity
 {
     /**
      * Creates a new CompleteLinkDissimilarity using the {@link EuclideanDistance}
@@ -84,7 +84,13 @@ public class CompleteLinkDissimilarity extends DistanceMetricDissimilarity imple
     @Override
     public double dissimilarity(int i, int ni, int j, int nj, int k, int nk, double[][] distanceMatrix)
     {
-        return Math.max(getDistance(distanceMatrix, i, k), getDistance(distanceMatrix, j, k));
+        return dissimilarity(ni, nj, nk, getDistance(distanceMatrix, i, j), getDistance(distanceMatrix, i, k), getDistance(distanceMatrix, j, k));
+    }
+
+    @Override
+    public double dissimilarity(int ni, int nj, int nk, double d_ij, double d_ik, double d_jk)
+    {
+        return Math.max(d_ik, d_jk);
     }
 
 }
@@ -0,0 +1,32 @@
+package jsat.clustering.dissimilarity;
+
+/**
+ * This interface extends the contract of an 
+ * {@link UpdatableClusterDissimilarity} for algorithms that do not store the
+ * dissimilarities in the staggered distance matrix, such as 
+ * {@link jsat.clustering.hierarchical.NNChainHAC}. The update of the 
+ * dissimilarity for a new merged cluster can be computed directly from the 
+ * current dissimilarities between the three clusters involved. 
+ * 
+ * @author Edward Raff
+ */
+public interface DirectUpdatableClusterDissimilarity extends UpdatableClusterDissimilarity
+{
+    /**
+     * Computes the dissimilarity of the union of clusters i and j, 
+     * (C<sub>i</sub> &cup; C<sub>j</sub>), with the cluster k from the 
+     * current dissimilarities between the three clusters. This is the same 
+     * update as 
+     * {@link #dissimilarity(int, int, int, int, int, int, double[][]) }. 
+     * 
+     * @param ni the number of items in the cluster represented by <t>i</t>
+     * @param nj the number of items in the cluster represented by <t>j</t>
+     * @param nk the number of items in the cluster represented by <t>k</t>
+     * @param d_ij the dissimilarity between clusters <t>i</t> and <t>j</t>
+     * @param d_ik the dissimilarity between clusters <t>i</t> and <t>k</t>
+     * @param d_jk the dissimilarity between clusters <t>j</t> and <t>k</t>
+     * @return a value &gt;= 0 that describes the dissimilarity of the union of 
+     * two clusters with a third cluster. 
+     */
+    public double dissimilarity(int ni, int nj, int nk, double d_ij, double d_ik, double d_jk);
+}
@@ -30,7 +30,7 @@ import jsat.utils.IntSet;
  * less than desired had they be computed directly. 
  * @author Edward Raff
  */
-public abstract class LanceWilliamsDissimilarity extends DistanceMetricDissimilarity implements UpdatableClusterDissimilarity
+public abstract class LanceWilliamsDissimilarity extends DistanceMetricDissimilarity implements DirectUpdatableClusterDissimilarity
 {
     /**
      * Creates a new LW dissimilarity measure using the given metric as the base distance between individual points. 
@@ -170,9 +170,12 @@ public abstract class LanceWilliamsDissimilarity extends DistanceMetricDissimila
     @Override
     public double dissimilarity(int i, int ni, int j, int nj, int k, int nk, double[][] distanceMatrix)
     {
-        double d_ik = getDistance(distanceMatrix, i, k);
-        double d_jk = getDistance(distanceMatrix, j, k);
-        double d_ij = getDistance(distanceMatrix, i, j);
+        return dissimilarity(ni, nj, nk, getDistance(distanceMatrix, i, j), getDistance(distanceMatrix, i, k), getDistance(distanceMatrix, j, k));
+    }
+
+    @Override
+    public double dissimilarity(int ni, int nj, int nk, double d_ij, double d_ik, double d_jk)
+    {
         return  aConst(true, ni, nj, nk)  * d_ik  +
                 aConst(false, ni, nj, nk) * d_jk  + 
                 bConst(ni, nj, nk)        * d_ij  + 
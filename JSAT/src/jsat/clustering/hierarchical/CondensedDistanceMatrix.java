@@ -0,0 +1,302 @@
+package jsat.clustering.hierarchical;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import jsat.classifiers.DataPoint;
+import jsat.clustering.dissimilarity.ClusterDissimilarity;
+import jsat.utils.SystemInfo;
+
+/**
+ * Stores the distances between all pairs of <i>n</i> points in condensed upper
+ * triangular form, which takes n(n-1)/2 values rather than the n<sup>2</sup>
+ * of a full matrix. The distances of row <i>i</i> are stored one after the
+ * other, so pair (i, j) with i &lt; j is at position
+ * n i - i(i+1)/2 + j - i - 1. <br>
+ * The values may be kept as doubles, as floats to halve the memory, or as
+ * floats in a temporary file that is memory mapped, so that the operating
+ * system may page the values to disk when the matrix is larger than the heap.
+ *
+ * @author Edward Raff
+ */
+abstract class CondensedDistanceMatrix
+{
+    protected final int n;
+
+    protected CondensedDistanceMatrix(int n)
+    {
+        this.n = n;
+    }
+
+    /**
+     * Creates a new matrix of all zeros
+     * @param n the number of points
+     * @param storage how to store the values
+     * @return a new matrix
+     */
+    public static CondensedDistanceMatrix create(int n, NNChainHAC.DistanceStorage storage)
+    {
+        long size = (long)n*(n-1)/2;
+        if(storage == NNChainHAC.DistanceStorage.MEMORY_MAPPED)
+            return new MappedMatrix(n, size);
+        if(size > Integer.MAX_VALUE-8)
+            throw new IllegalArgumentException(n + " points need " + size + " distances, which is too many to store in an array. Use memory mapped storage instead");
+        if(storage == NNChainHAC.DistanceStorage.FLOAT)
+            return new FloatMatrix(n, (int)size);
+        return new DoubleMatrix(n, (int)size);
+    }
+
+    /**
+     * Creates a new matrix holding the dissimilarity between every pair of
+     * data points
+     * @param data the data points
+     * @param cd the dissimilarity to measure between points
+     * @param storage how to store the values
+     * @param threadpool the source of threads to compute the distances in
+     * parallel, or {@code null} to compute them in the calling thread
+     * @return a new matrix
+     */
+    public static CondensedDistanceMatrix create(final List<DataPoint> data, final ClusterDissimilarity cd, NNChainHAC.DistanceStorage storage, ExecutorService threadpool)
+    {
+        final int N = data.size();
+        final CondensedDistanceMatrix matrix = create(N, storage);
+        if(threadpool == null)
+        {
+            for(int i = 0; i < N; i++)
+                matrix.fillRow(i, data, cd);
+            return matrix;
+        }
+
+        /*
+         * Rows get shorter as i increases, so each thread takes every P'th
+         * row to balance the work
+         */
+        final int P = SystemInfo.LogicalCores;
+        final CountDownLatch latch = new CountDownLatch(P);
+        for(int id = 0; id < P; id++)
+        {
+            final int ID = id;
+            threadpool.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for(int i = ID; i < N; i += P)
+                            matrix.fillRow(i, data, cd);
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while computing the distance matrix");
+        }
+        return matrix;
+    }
+
+    private void fillRow(int i, List<DataPoint> data, ClusterDissimilarity cd)
+    {
+        DataPoint x = data.get(i);
+        long pos = index(i, i+1);
+        for(int j = i+1; j < n; j++)
+            set(pos++, cd.distance(x, data.get(j)));
+    }
+
+    /**
+     * Returns the number of points the matrix stores the distances between
+     * @return the number of points
+     */
+    public int size()
+    {
+        return n;
+    }
+
+    /**
+     * Returns the position of a pair in the condensed storage
+     * @param i the first index
+     * @param j the second index, which must not be equal to <tt>i</tt>
+     * @return the position of the pair
+     */
+    public long index(int i, int j)
+    {
+        if(i > j)
+        {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        return (long)n*i - (long)i*(i+1)/2 + j - i - 1;
+    }
+
+    /**
+     * Returns the distance between two points
+     * @param i the first index
+     * @param j the second index, which must not be equal to <tt>i</tt>
+     * @return the distance between the points
+     */
+    public double get(int i, int j)
+    {
+        return get(index(i, j));
+    }
+
+    /**
+     * Sets the distance between two points
+     * @param i the first index
+     * @param j the second index, which must not be equal to <tt>i</tt>
+     * @param dist the distance between the points
+     */
+    public void set(int i, int j, double dist)
+    {
+        set(index(i, j), dist);
+    }
+
+    /**
+     * Returns the value at the given position
+     * @param pos the position from {@link #index(int, int) }
+     * @return the value at the position
+     */
+    abstract public double get(long pos);
+
+    /**
+     * Sets the value at the given position
+     * @param pos the position from {@link #index(int, int) }
+     * @param dist the value to store
+     */
+    abstract public void set(long pos, double dist);
+
+    /**
+     * Releases any resources held by the matrix. The matrix may not be used
+     * afterwards.
+     */
+    public void close()
+    {
+    }
+
+    private static class DoubleMatrix extends CondensedDistanceMatrix
+    {
+        private final double[] values;
+
+        public DoubleMatrix(int n, int size)
+        {
+            super(n);
+            values = new double[size];
+        }
+
+        @Override
+        public double get(long pos)
+        {
+            return values[(int)pos];
+        }
+
+        @Override
+        public void set(long pos, double dist)
+        {
+            values[(int)pos] = dist;
+        }
+    }
+
+    private static class FloatMatrix extends CondensedDistanceMatrix
+    {
+        private final float[] values;
+
+        public FloatMatrix(int n, int size)
+        {
+            super(n);
+            values = new float[size];
+        }
+
+        @Override
+        public double get(long pos)
+        {
+            return values[(int)pos];
+        }
+
+        @Override
+        public void set(long pos, double dist)
+        {
+            values[(int)pos] = (float) dist;
+        }
+    }
+
+    private static class MappedMatrix extends CondensedDistanceMatrix
+    {
+        /**
+         * log<sub>2</sub> of the number of floats in each mapped chunk, so
+         * each chunk is 1 GB
+         */
+        private static final int CHUNK_BITS = 28;
+        private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer[] chunks;
+
+        public MappedMatrix(int n, long size)
+        {
+            super(n);
+            try
+            {
+                file = File.createTempFile("jsat_distances", ".bin");
+                file.deleteOnExit();
+                raf = new RandomAccessFile(file, "rw");
+                raf.setLength(size*4);
+                FileChannel channel = raf.getChannel();
+                chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+                for(int c = 0; c < chunks.length; c++)
+                {
+                    long start = ((long) c << CHUNK_BITS)*4;
+                    long length = Math.min(size*4-start, (CHUNK_MASK+1)*4);
+                    chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+                    chunks[c].order(ByteOrder.nativeOrder());
+                }
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException("Could not create the memory mapped distance matrix", ex);
+            }
+        }
+
+        @Override
+        public double get(long pos)
+        {
+            return chunks[(int) (pos >>> CHUNK_BITS)].getFloat((int) (pos & CHUNK_MASK) << 2);
+        }
+
+        @Override
+        public void set(long pos, double dist)
+        {
+            chunks[(int) (pos >>> CHUNK_BITS)].putFloat((int) (pos & CHUNK_MASK) << 2, (float) dist);
+        }
+
+        @Override
+        public void close()
+        {
+            try
+            {
+                raf.close();
+            }
+            catch (IOException ex)
+            {
+                //the file is still deleted on exit
+            }
+            file.delete();
+        }
+    }
+}
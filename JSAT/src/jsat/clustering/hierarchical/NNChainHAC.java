@@ -0,0 +1,564 @@
+package jsat.clustering.hierarchical;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import jsat.DataSet;
+import jsat.classifiers.DataPoint;
+import jsat.clustering.KClustererBase;
+import jsat.clustering.dissimilarity.CentroidDissimilarity;
+import jsat.clustering.dissimilarity.DirectUpdatableClusterDissimilarity;
+import jsat.clustering.dissimilarity.SingleLinkDissimilarity;
+import jsat.clustering.dissimilarity.UpdatableClusterDissimilarity;
+import jsat.math.OnLineStatistics;
+import jsat.utils.IndexTable;
+import jsat.utils.SystemInfo;
+import jsat.utils.concurrent.ConcurrentUnionFind;
+import jsat.utils.concurrent.ParallelUtils;
+
+/**
+ * Performs hierarchical agglomerative clustering (HAC) with the
+ * nearest-neighbor chain algorithm, which takes O(n<sup>2</sup>) time. The
+ * pairwise distances are kept in a condensed upper triangular array of
+ * n(n-1)/2 values, with no per point priority queues, which allows many more
+ * points to be clustered than {@link PriorityHAC}. The distances may be
+ * stored as floats, or in a memory mapped file, to go further still. See
+ * {@link DistanceStorage}. <br>
+ * The nearest-neighbor chain is only correct for reducible linkages, such as
+ * {@link jsat.clustering.dissimilarity.WardsDissimilarity Ward's},
+ * {@link SingleLinkDissimilarity single},
+ * {@link jsat.clustering.dissimilarity.CompleteLinkDissimilarity complete},
+ * and {@link jsat.clustering.dissimilarity.AverageLinkDissimilarity average}
+ * link, so {@link CentroidDissimilarity} is not supported. <br>
+ * When using single link, the distances are not stored at all. Instead the
+ * minimum spanning tree of the data is found with Prim's algorithm in
+ * O(n<sup>2</sup>) time and O(n) memory, from which the single link
+ * clustering follows directly. <br>
+ * The pairwise distances, or the distance updates of the spanning tree, are
+ * computed in parallel when a thread pool is given. The merges are stored, so
+ * that clusterings of other sizes can be obtained without clustering again.
+ * <br><br>
+ * See:<br>
+ * Müllner, D. (2011). <i>Modern hierarchical, agglomerative clustering
+ * algorithms</i>. arXiv:1109.2378.
+ *
+ * @author Edward Raff
+ */
+public class NNChainHAC extends KClustererBase
+{
+    /**
+     * The ways the pairwise distances may be stored
+     */
+    public enum DistanceStorage
+    {
+        /**
+         * The distances are stored in a double array, which limits the number
+         * of points to about 65,000
+         */
+        DOUBLE,
+        /**
+         * The distances are stored in a float array, which uses half the
+         * memory of {@link #DOUBLE}. This can change the result when there are
+         * merges with nearly equal distances.
+         */
+        FLOAT,
+        /**
+         * The distances are stored as floats in a temporary file that is
+         * memory mapped. The file is deleted once clustering is done. This
+         * has no limit on the number of points other than disk space, but
+         * will be slow once the file is larger than the available memory.
+         */
+        MEMORY_MAPPED
+    }
+
+    private UpdatableClusterDissimilarity distMeasure;
+    private DistanceStorage storage;
+    /**
+     * Stores the merge list, each merge is in a pair of 2 values, in the order
+     * the merges were made. The left value in each pair is the index of the
+     * data point that was merged in and is no longer its own cluster, while
+     * the right value is the smallest index in the merged cluster, which the
+     * cluster is kept under.
+     */
+    private int[] merges;
+    /**
+     * The dissimilarity of each merge
+     */
+    private double[] mergeDistances;
+    private DataSet curDataSet;
+
+    /**
+     * Creates a new NN chain HAC that stores distances as doubles
+     * @param distMeasure the dissimilarity measure to use
+     */
+    public NNChainHAC(UpdatableClusterDissimilarity distMeasure)
+    {
+        this(distMeasure, DistanceStorage.DOUBLE);
+    }
+
+    /**
+     * Creates a new NN chain HAC
+     * @param distMeasure the dissimilarity measure to use
+     * @param storage how the pairwise distances should be stored
+     */
+    public NNChainHAC(UpdatableClusterDissimilarity distMeasure, DistanceStorage storage)
+    {
+        setDissimilarityMeasure(distMeasure);
+        setDistanceStorage(storage);
+    }
+
+    /**
+     * Copy constructor
+     * @param toCopy the object to copy
+     */
+    public NNChainHAC(NNChainHAC toCopy)
+    {
+        this.distMeasure = toCopy.distMeasure.clone();
+        this.storage = toCopy.storage;
+        if(toCopy.merges != null)
+            this.merges = Arrays.copyOf(toCopy.merges, toCopy.merges.length);
+        if(toCopy.mergeDistances != null)
+            this.mergeDistances = Arrays.copyOf(toCopy.mergeDistances, toCopy.mergeDistances.length);
+        if(toCopy.curDataSet != null)
+            this.curDataSet = toCopy.curDataSet.shallowClone();
+    }
+
+    /**
+     * Sets the dissimilarity measure used to merge clusters
+     * @param distMeasure the dissimilarity measure, which must be reducible
+     * @throws IllegalArgumentException if the measure is a
+     * {@link CentroidDissimilarity}, which is not reducible
+     */
+    public void setDissimilarityMeasure(UpdatableClusterDissimilarity distMeasure)
+    {
+        if(distMeasure instanceof CentroidDissimilarity)
+            throw new IllegalArgumentException("Centroid linkage is not reducible, and can not be used with the nearest-neighbor chain");
+        this.distMeasure = distMeasure;
+    }
+
+    /**
+     * Computes the dissimilarity of the union of clusters i and j with the 
+     * cluster k. Measures that are not a 
+     * {@link DirectUpdatableClusterDissimilarity} are given the three 
+     * dissimilarities as the staggered distance matrix of three clusters. 
+     * 
+     * @param scratch the staggered distance matrix of three clusters to reuse
+     */
+    private double mergedDissimilarity(int ni, int nj, int nk, double d_ij, double d_ik, double d_jk, double[][] scratch)
+    {
+        if(distMeasure instanceof DirectUpdatableClusterDissimilarity)
+            return ((DirectUpdatableClusterDissimilarity) distMeasure).dissimilarity(ni, nj, nk, d_ij, d_ik, d_jk);
+        scratch[0][0] = d_ij;
+        scratch[0][1] = d_ik;
+        scratch[1][0] = d_jk;
+        return distMeasure.dissimilarity(0, ni, 1, nj, 2, nk, scratch);
+    }
+
+    /**
+     * Returns the dissimilarity measure used to merge clusters
+     * @return the dissimilarity measure used
+     */
+    public UpdatableClusterDissimilarity getDissimilarityMeasure()
+    {
+        return distMeasure;
+    }
+
+    /**
+     * Sets how the pairwise distances are stored. This is not used for
+     * single link, which does not store the distances.
+     * @param storage how the distances are stored
+     */
+    public void setDistanceStorage(DistanceStorage storage)
+    {
+        if(storage == null)
+            throw new NullPointerException("storage may not be null");
+        this.storage = storage;
+    }
+
+    /**
+     * Returns how the pairwise distances are stored
+     * @return how the distances are stored
+     */
+    public DistanceStorage getDistanceStorage()
+    {
+        return storage;
+    }
+
+    @Override
+    public int[] cluster(DataSet dataSet, int[] designations)
+    {
+        return cluster(dataSet, 2, (int)Math.sqrt(dataSet.getSampleSize()), designations);
+    }
+
+    @Override
+    public int[] cluster(DataSet dataSet, ExecutorService threadpool, int[] designations)
+    {
+        return cluster(dataSet, 2, (int)Math.sqrt(dataSet.getSampleSize()), threadpool, designations);
+    }
+
+    @Override
+    public int[] cluster(DataSet dataSet, int clusters, ExecutorService threadpool, int[] designations)
+    {
+        return cluster(dataSet, clusters, clusters, threadpool, designations);
+    }
+
+    @Override
+    public int[] cluster(DataSet dataSet, int clusters, int[] designations)
+    {
+        return cluster(dataSet, clusters, clusters, designations);
+    }
+
+    @Override
+    public int[] cluster(DataSet dataSet, int lowK, int highK, int[] designations)
+    {
+        return cluster(dataSet, lowK, highK, null, designations);
+    }
+
+    @Override
+    public int[] cluster(DataSet dataSet, int lowK, int highK, ExecutorService threadpool, int[] designations)
+    {
+        final int n = dataSet.getSampleSize();
+        if(designations == null)
+            designations = new int[n];
+        this.curDataSet = dataSet;
+        merges = new int[Math.max(n-1, 0)*2];
+        mergeDistances = new double[Math.max(n-1, 0)];
+
+        if(distMeasure instanceof SingleLinkDissimilarity)
+            minimumSpanningTree(dataSet.getDataPoints(), threadpool);
+        else
+            nearestNeighborChain(dataSet.getDataPoints(), threadpool);
+        sortMerges();
+
+        /*
+         * Keep track of the average dist when merging, and choose the cluster
+         * size as the most abnormal jump in dissimilarity from a merge
+         */
+        OnLineStatistics distChange = new OnLineStatistics();
+        int clusterSize = lowK;
+        double maxStndDevs = Double.MIN_VALUE;
+        for(int k = 0; k < mergeDistances.length; k++)
+        {
+            distChange.add(mergeDistances[k]);
+            if( (n - k) >= lowK && (n - k) <= highK)//IN the cluster window?
+            {
+                double stndDevs = (mergeDistances[k]-distChange.getMean())/distChange.getStandardDeviation();
+                if(stndDevs > maxStndDevs)
+                {
+                    maxStndDevs = stndDevs;
+                    clusterSize = n-k;
+                }
+            }
+        }
+
+        return assignClusterDesignations(designations, clusterSize);
+    }
+
+    /**
+     * Finds the merges with the nearest-neighbor chain, in the order the chain
+     * finds them, which is not the order of increasing dissimilarity.
+     */
+    private void nearestNeighborChain(List<DataPoint> data, ExecutorService threadpool)
+    {
+        final int n = data.size();
+        CondensedDistanceMatrix D = CondensedDistanceMatrix.create(data, distMeasure, storage, threadpool);
+        try
+        {
+            //number of points in each cluster, kept under its surviving index
+            int[] size = new int[n];
+            Arrays.fill(size, 1);
+            //the indices of the clusters that have not been merged away, and their position in that list
+            int[] active = new int[n];
+            int[] activePos = new int[n];
+            for(int i = 0; i < n; i++)
+                active[i] = activePos[i] = i;
+            int activeCount = n;
+            int[] chain = new int[n];
+            int chainLen = 0;
+            double[][] scratch = new double[][]{new double[2], new double[1], new double[0]};
+
+            for(int m = 0; m < n-1; m++)
+            {
+                if(chainLen == 0)
+                    chain[chainLen++] = active[0];
+
+                int a, b;
+                double d_ab;
+                while(true)
+                {
+                    a = chain[chainLen-1];
+                    /*
+                     * Start from the previous link in the chain, and only
+                     * replace it with something strictly closer. That way
+                     * ties can not cause the chain to cycle
+                     */
+                    int prev = chainLen >= 2 ? chain[chainLen-2] : -1;
+                    b = prev;
+                    double best = prev >= 0 ? D.get(a, prev) : Double.POSITIVE_INFINITY;
+                    for(int t = 0; t < activeCount; t++)
+                    {
+                        int c = active[t];
+                        if(c == a)
+                            continue;
+                        double d = D.get(a, c);
+                        if(d < best || b < 0)
+                        {
+                            best = d;
+                            b = c;
+                        }
+                    }
+                    if(b == prev)//reciprocal nearest neighbors
+                    {
+                        d_ab = best;
+                        break;
+                    }
+                    chain[chainLen++] = b;
+                }
+                chainLen -= 2;
+
+                //the merged cluster is kept under the smaller index
+                int keep = Math.min(a, b);
+                int gone = Math.max(a, b);
+                int nKeep = size[keep], nGone = size[gone];
+                for(int t = 0; t < activeCount; t++)
+                {
+                    int k = active[t];
+                    if(k == keep || k == gone)
+                        continue;
+                    D.set(keep, k, mergedDissimilarity(nKeep, nGone, size[k], d_ab, D.get(keep, k), D.get(gone, k), scratch));
+                }
+                size[keep] += nGone;
+                size[gone] = 0;
+
+                //remove gone from the active list
+                int last = active[--activeCount];
+                active[activePos[gone]] = last;
+                activePos[last] = activePos[gone];
+
+                merges[m*2] = gone;
+                merges[m*2+1] = keep;
+                mergeDistances[m] = d_ab;
+            }
+        }
+        finally
+        {
+            D.close();
+        }
+    }
+
+    /**
+     * Finds the edges of the minimum spanning tree with Prim's algorithm,
+     * computing the distances as needed. Each edge is stored as a merge, in
+     * the order they are added to the tree.
+     */
+    private void minimumSpanningTree(final List<DataPoint> data, ExecutorService threadpool)
+    {
+        final int n = data.size();
+        if(n == 0)
+            return;
+        //the distance from each point to the tree, and the point in the tree it is closest to
+        final double[] minDist = new double[n];
+        final int[] nearest = new int[n];
+        Arrays.fill(minDist, Double.POSITIVE_INFINITY);
+        //the points not yet in the tree
+        final int[] remaining = new int[n-1];
+        for(int i = 0; i < n-1; i++)
+            remaining[i] = i+1;
+        int remainingCount = n-1;
+
+        final int P = threadpool == null ? 1 : Math.min(SystemInfo.LogicalCores, n);
+        final int[] localBest = new int[P];
+        int cur = 0;
+        for(int m = 0; m < n-1; m++)
+        {
+            final int added = cur;
+            final int count = remainingCount;
+            if(P == 1)
+                localBest[0] = updateTreeDistances(data, added, remaining, 0, count, minDist, nearest);
+            else
+            {
+                final CountDownLatch latch = new CountDownLatch(P);
+                for(int id = 0; id < P; id++)
+                {
+                    final int ID = id;
+                    threadpool.submit(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            try
+                            {
+                                int start = ParallelUtils.getStartBlock(count, ID, P);
+                                int end = ParallelUtils.getEndBlock(count, ID, P);
+                                localBest[ID] = updateTreeDistances(data, added, remaining, start, end, minDist, nearest);
+                            }
+                            finally
+                            {
+                                latch.countDown();
+                            }
+                        }
+                    });
+                }
+                try
+                {
+                    latch.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while building the spanning tree");
+                }
+            }
+
+            int bestPos = -1;
+            for(int id = 0; id < P; id++)
+                if(localBest[id] >= 0 && (bestPos < 0 || closer(remaining[localBest[id]], remaining[bestPos], minDist)))
+                    bestPos = localBest[id];
+
+            int next = remaining[bestPos];
+            remaining[bestPos] = remaining[--remainingCount];
+            merges[m*2] = next;
+            merges[m*2+1] = nearest[next];
+            mergeDistances[m] = minDist[next];
+            cur = next;
+        }
+    }
+
+    /**
+     * Updates the distance to the tree of the points in
+     * remaining[start, end) now that a point has been added to the tree
+     * @return the position in <tt>remaining</tt> of the point now closest to
+     * the tree, or -1 if the range was empty
+     */
+    private int updateTreeDistances(List<DataPoint> data, int added, int[] remaining, int start, int end, double[] minDist, int[] nearest)
+    {
+        DataPoint x = data.get(added);
+        int bestPos = -1;
+        for(int t = start; t < end; t++)
+        {
+            int r = remaining[t];
+            double d = distMeasure.distance(x, data.get(r));
+            if(d < minDist[r])
+            {
+                minDist[r] = d;
+                nearest[r] = added;
+            }
+            if(bestPos < 0 || closer(r, remaining[bestPos], minDist))
+                bestPos = t;
+        }
+        return bestPos;
+    }
+
+    /**
+     * Returns {@code true} if point <tt>a</tt> is closer to the tree than
+     * <tt>b</tt>, with ties going to the smaller index so the result does
+     * not depend on how the work was split up
+     */
+    private static boolean closer(int a, int b, double[] minDist)
+    {
+        return minDist[a] < minDist[b] || (minDist[a] == minDist[b] && a < b);
+    }
+
+    /**
+     * Sorts the merges by their dissimilarity, and rewrites each merge in
+     * terms of the smallest index of each of the two clusters merged.
+     */
+    private void sortMerges()
+    {
+        final int merged = mergeDistances.length;
+        IndexTable it = new IndexTable(mergeDistances);
+        int[] sortedMerges = new int[merges.length];
+        double[] sortedDists = new double[merged];
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(merged+1);
+        for(int m = 0; m < merged; m++)
+        {
+            int orig = it.index(m);
+            int a = uf.find(merges[orig*2]);
+            int b = uf.find(merges[orig*2+1]);
+            uf.union(a, b);
+            sortedMerges[m*2] = Math.max(a, b);
+            sortedMerges[m*2+1] = Math.min(a, b);
+            sortedDists[m] = mergeDistances[orig];
+        }
+        merges = sortedMerges;
+        mergeDistances = sortedDists;
+    }
+
+    /**
+     * Returns {@code true} if there is currently a data set and its merge
+     * order stored, so that clusterings of other sizes may be obtained with
+     * {@link #getClusterDesignations(int[], int) }.
+     *
+     * @return <tt>true</tt> if you can call for more clusterings,
+     * <tt>false</tt> if no data set has been clustered.
+     */
+    public boolean hasStoredClustering()
+    {
+        return curDataSet != null;
+    }
+
+    /**
+     * Returns the assignment array for that would have been computed for the
+     * previous data set with the desired number of clusters.
+     *
+     * @param designations the array to store the assignments in, or
+     * {@code null} to create a new one
+     * @param clusters the number of clusters desired
+     * @return the assignment array, or <tt>null</tt> if no data set has been
+     * clustered.
+     * @see #hasStoredClustering()
+     */
+    public int[] getClusterDesignations(int[] designations, int clusters)
+    {
+        if(!hasStoredClustering())
+            return null;
+        if(designations == null)
+            designations = new int[curDataSet.getSampleSize()];
+        return assignClusterDesignations(designations, clusters);
+    }
+
+    /**
+     * Returns the clustering that would have been computed for the previous
+     * data set with the desired number of clusters.
+     *
+     * @param clusters the number of clusters desired
+     * @return the list of data points in each cluster, or <tt>null</tt> if no
+     * data set has been clustered.
+     * @see #hasStoredClustering()
+     */
+    public List<List<DataPoint>> getClusterDesignations(int clusters)
+    {
+        if(!hasStoredClustering())
+            return null;
+        int[] assignments = getClusterDesignations(null, clusters);
+        return createClusterListFromAssignmentArray(assignments, curDataSet);
+    }
+
+    /**
+     * Performs the first n-<tt>clusters</tt> merges, and numbers the
+     * resulting clusters in order of their smallest index
+     */
+    private int[] assignClusterDesignations(int[] designations, int clusters)
+    {
+        final int n = designations.length;
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(n);
+        for(int m = 0; m < Math.min(n - clusters, mergeDistances.length); m++)
+            uf.union(merges[m*2], merges[m*2+1]);
+        int curCluster = 0;
+        for(int i = 0; i < n; i++)
+        {
+            int root = uf.find(i);
+            if(root == i)//smallest index of its cluster, so seen first
+                designations[i] = curCluster++;
+            else
+                designations[i] = designations[root];
+        }
+        return designations;
+    }
+
+    @Override
+    public NNChainHAC clone()
+    {
+        return new NNChainHAC(this);
+    }
+}
@@ -0,0 +1,302 @@
+package jsat.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import jsat.ColumnarDataSet;
+import jsat.DataSet;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.linear.IndexValue;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+
+/**
+ * Reads and writes data sets in a compact binary format. Unlike
+ * {@link LIBSVMLoader} or {@link jsat.ARFFLoader}, nothing needs to be parsed
+ * when the file is opened. {@link #map(java.io.File) } memory maps the file
+ * and returns a {@link MappedDataSet} in time independent of the file size,
+ * and the data is paged in by the operating system as it is used. <br>
+ * <br>
+ * The file starts with a magic number, a version, and the length of a header
+ * that stores the number of rows, the number of features, the numeric
+ * feature names (if the data set has them), the {@link CategoricalData} of every categorical feature
+ * and of the target class. Then the data is stored column wise:
+ * <ol>
+ * <li>The target value of every row, if the data set had one</li>
+ * <li>The weight of every row</li>
+ * <li>One column of values for every categorical feature</li>
+ * <li>The numeric features, either as a row major dense block, or in
+ * Compressed Sparse Row form if any of the data points were sparse</li>
+ * </ol>
+ * All values are stored in big endian order.
+ *
+ * @author Edward Raff
+ */
+public class BinaryDataLoader
+{
+    /**
+     * "JSAT" in ASCII
+     */
+    static final int MAGIC = 0x4A534154;
+    static final int VERSION = 1;
+
+    static final byte TYPE_NONE = 0;
+    static final byte TYPE_CLASSIFICATION = 1;
+    static final byte TYPE_REGRESSION = 2;
+
+    private BinaryDataLoader()
+    {
+    }
+
+    /**
+     * Writes the given data set to a file. The target values of a
+     * {@link ClassificationDataSet}, {@link RegressionDataSet},
+     * {@link ColumnarDataSet} or {@link MappedDataSet} are stored as well.
+     *
+     * @param data the data set to write
+     * @param file the file to write to
+     * @throws IOException if an error occurred writing the file
+     */
+    public static void write(DataSet data, File file) throws IOException
+    {
+        OutputStream os = new FileOutputStream(file);
+        try
+        {
+            write(data, os);
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    /**
+     * Writes the given data set to a stream. The target values of a
+     * {@link ClassificationDataSet}, {@link RegressionDataSet},
+     * {@link ColumnarDataSet} or {@link MappedDataSet} are stored as well.
+     *
+     * @param data the data set to write
+     * @param os the output stream to write to. The stream will not be closed by
+     * this method
+     * @throws IOException if an error occurred writing to the stream
+     */
+    public static void write(DataSet data, OutputStream os) throws IOException
+    {
+        final int n = data.getSampleSize();
+        final int d = data.getNumNumericalVars();
+        final CategoricalData[] cats = data.getCategories();
+
+        byte type = TYPE_NONE;
+        CategoricalData predicting = null;
+        if(data instanceof ClassificationDataSet)
+        {
+            type = TYPE_CLASSIFICATION;
+            predicting = ((ClassificationDataSet) data).getPredicting();
+        }
+        else if(data instanceof RegressionDataSet)
+            type = TYPE_REGRESSION;
+        else if(data instanceof ColumnarDataSet)
+        {
+            predicting = ((ColumnarDataSet) data).getPredicting();
+            type = predicting != null ? TYPE_CLASSIFICATION : TYPE_REGRESSION;
+        }
+        else if(data instanceof MappedDataSet)
+        {
+            MappedDataSet mds = (MappedDataSet) data;
+            predicting = mds.getPredicting();
+            type = mds.isClassification() ? TYPE_CLASSIFICATION : (mds.isRegression() ? TYPE_REGRESSION : TYPE_NONE);
+        }
+
+        //first pass to decide how to store the numeric values
+        boolean sparse = false;
+        long nnz = 0;
+        for(int i = 0; i < n; i++)
+        {
+            Vec x = data.getDataPoint(i).getNumericalValues();
+            sparse |= x.isSparse();
+            nnz += x.nnz();
+        }
+
+        List<String> numericNames = new ArrayList<String>(d);
+        try
+        {
+            for(int j = 0; j < d; j++)
+            {
+                String name = data.getNumericName(j);
+                if(name == null)
+                {
+                    numericNames.clear();
+                    break;
+                }
+                numericNames.add(name);
+            }
+        }
+        catch(IndexOutOfBoundsException ex)
+        {
+            //some data sets do not name high dimensional features
+            numericNames.clear();
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeByte(type);
+        header.writeBoolean(sparse);
+        header.writeInt(n);
+        header.writeInt(d);
+        header.writeInt(cats.length);
+        header.writeLong(nnz);
+        header.writeInt(numericNames.size());
+        for(String name : numericNames)
+            header.writeUTF(name);
+        for(CategoricalData cd : cats)
+            writeCategoricalData(cd, header);
+        if(type == TYPE_CLASSIFICATION)
+            writeCategoricalData(predicting, header);
+        header.close();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(headerBytes.size());
+        headerBytes.writeTo(out);
+
+        if(type != TYPE_NONE)
+            for(int i = 0; i < n; i++)
+                out.writeDouble(getTarget(data, i));
+        for(int i = 0; i < n; i++)
+            out.writeDouble(data.getDataPoint(i).getWeight());
+        for(int j = 0; j < cats.length; j++)
+            for(int i = 0; i < n; i++)
+                out.writeInt(data.getDataPoint(i).getCategoricalValue(j));
+
+        if(sparse)
+        {
+            long rowStart = 0;
+            out.writeLong(rowStart);
+            for(int i = 0; i < n; i++)
+            {
+                rowStart += data.getDataPoint(i).getNumericalValues().nnz();
+                out.writeLong(rowStart);
+            }
+            for(int i = 0; i < n; i++)
+                for(IndexValue iv : data.getDataPoint(i).getNumericalValues())
+                    out.writeInt(iv.getIndex());
+            for(int i = 0; i < n; i++)
+                for(IndexValue iv : data.getDataPoint(i).getNumericalValues())
+                    out.writeDouble(iv.getValue());
+        }
+        else
+        {
+            for(int i = 0; i < n; i++)
+            {
+                Vec x = data.getDataPoint(i).getNumericalValues();
+                for(int j = 0; j < d; j++)
+                    out.writeDouble(x.get(j));
+            }
+        }
+
+        out.flush();
+    }
+
+    private static double getTarget(DataSet data, int i)
+    {
+        if(data instanceof ClassificationDataSet)
+            return ((ClassificationDataSet) data).getDataPointCategory(i);
+        else if(data instanceof RegressionDataSet)
+            return ((RegressionDataSet) data).getTargetValue(i);
+        else if(data instanceof ColumnarDataSet)
+            return ((ColumnarDataSet) data).getTargetValue(i);
+        MappedDataSet mds = (MappedDataSet) data;
+        return mds.isClassification() ? mds.getDataPointCategory(i) : mds.getTargetValue(i);
+    }
+
+    private static void writeCategoricalData(CategoricalData cd, DataOutputStream out) throws IOException
+    {
+        out.writeUTF(cd.getCategoryName());
+        out.writeInt(cd.getNumOfCategories());
+        for(int i = 0; i < cd.getNumOfCategories(); i++)
+            out.writeUTF(cd.getOptionName(i));
+    }
+
+    private static CategoricalData readCategoricalData(DataInputStream in) throws IOException
+    {
+        String name = in.readUTF();
+        CategoricalData cd = new CategoricalData(in.readInt());
+        cd.setCategoryName(name);
+        for(int i = 0; i < cd.getNumOfCategories(); i++)
+            cd.setOptionName(in.readUTF(), i);
+        return cd;
+    }
+
+    /**
+     * Memory maps a file written by {@link #write(jsat.DataSet, java.io.File) }.
+     * Only the header is read, the rest of the file is paged in by the
+     * operating system as the data is accessed.
+     *
+     * @param file the file to open
+     * @return a read only data set backed by the file
+     * @throws IOException if an error occurred reading the file, or it is not
+     * in the expected format
+     */
+    public static MappedDataSet map(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            if(raf.readInt() != MAGIC)
+                throw new IOException("File is not in the JSAT binary format");
+            int version = raf.readInt();
+            if(version != VERSION)
+                throw new IOException("Unsupported format version " + version);
+            byte[] headerBytes = new byte[raf.readInt()];
+            raf.readFully(headerBytes);
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes));
+
+            byte type = header.readByte();
+            boolean sparse = header.readBoolean();
+            int n = header.readInt();
+            int d = header.readInt();
+            int numCat = header.readInt();
+            long nnz = header.readLong();
+            int numNames = header.readInt();
+            List<String> numericNames = new ArrayList<String>(numNames);
+            for(int j = 0; j < numNames; j++)
+                numericNames.add(header.readUTF());
+            CategoricalData[] cats = new CategoricalData[numCat];
+            for(int j = 0; j < numCat; j++)
+                cats[j] = readCategoricalData(header);
+            CategoricalData predicting = null;
+            if(type == TYPE_CLASSIFICATION)
+                predicting = readCategoricalData(header);
+
+            long dataOffset = 12 + headerBytes.length;
+            long expected = dataOffset + (type == TYPE_NONE ? 0 : 8L*n) + 8L*n + 4L*n*numCat;
+            if(sparse)
+                expected += 8L*(n+1) + 12L*nnz;
+            else
+                expected += 8L*n*d;
+            long length = raf.length();
+            if(length != expected)
+                throw new IOException("File should be " + expected + " bytes, but was " + length);
+
+            FileChannel channel = raf.getChannel();
+            int numChunks = (int) ((length + MappedDataSet.CHUNK_MASK) >>> MappedDataSet.CHUNK_BITS);
+            ByteBuffer[] chunks = new ByteBuffer[Math.max(numChunks, 1)];
+            for(int c = 0; c < chunks.length; c++)
+            {
+                long start = (long) c << MappedDataSet.CHUNK_BITS;
+                long end = Math.min(length, start + MappedDataSet.CHUNK_MASK + 1 + MappedDataSet.CHUNK_OVERLAP);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(end - start, 0));
+            }
+
+            return new MappedDataSet(chunks, type, sparse, n, d, cats, numericNames, predicting, nnz, dataOffset);
+        }
+        finally
+        {
+            raf.close();//mappings remain valid after the channel is closed
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package jsat.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPointPair;
+
+/**
+ * An iterator that streams the data points of a file one at a time, so that
+ * online learners can be trained on data sets that do not fit in memory. The
+ * file is read and parsed ahead of the consumer on a background thread, and
+ * at most a bounded number of data points are held in memory at any time.
+ * <br><br>
+ * Each data point is paired with its target, which is the class index for
+ * classification problems or the target value for regression problems.
+ * <br><br>
+ * The background thread is started on the first call to {@link #hasNext() }
+ * or {@link #next() }, and stops once the end of the file is reached or the
+ * iterator is {@link #close() closed}. Iterators that are not read to the end
+ * should be closed.
+ *
+ * @param <P> the type of the target paired with each data point
+ * @author Edward Raff
+ */
+public abstract class DataPointIterator<P> implements Iterator<DataPointPair<P>>, Closeable
+{
+    /**
+     * The number of data points read in one batch by the background thread
+     */
+    private static final int BATCH_SIZE = 256;
+    /**
+     * Marks the end of the stream in the queue
+     */
+    private static final List<Object> END = Collections.emptyList();
+
+    private final BlockingQueue<List<DataPointPair<P>>> queue;
+    private List<DataPointPair<P>> batch = Collections.emptyList();
+    private int batchPos = 0;
+    private boolean finished = false;
+    private volatile boolean closed = false;
+    private volatile Throwable error = null;
+    private Thread reader;
+
+    /**
+     * Creates a new iterator that buffers the default of 8 batches ahead
+     */
+    protected DataPointIterator()
+    {
+        this(8);
+    }
+
+    /**
+     * Creates a new iterator
+     * @param prefetchBatches the maximum number of batches of data points to
+     * read ahead of the consumer
+     */
+    protected DataPointIterator(int prefetchBatches)
+    {
+        if(prefetchBatches < 1)
+            throw new IllegalArgumentException("At least one batch must be prefetched, not " + prefetchBatches);
+        queue = new ArrayBlockingQueue<List<DataPointPair<P>>>(prefetchBatches);
+    }
+
+    /**
+     * Reads the next data point from the file. This is only called from the
+     * background thread.
+     *
+     * @return the next data point and its target, or {@code null} if the end
+     * of the file has been reached
+     * @throws IOException if an error occurred reading the file
+     */
+    abstract protected DataPointPair<P> readNext() throws IOException;
+
+    /**
+     * Closes the underlying file. This is called once, from the background
+     * thread when it finishes, or from {@link #close() } if the background
+     * thread was never started.
+     *
+     * @throws IOException if an error occurred closing the file
+     */
+    abstract protected void closeSource() throws IOException;
+
+    /**
+     * Returns a new iterator that will read the same file again from the
+     * beginning. This is used to make multiple passes over the data.
+     *
+     * @return a new iterator over the same data
+     * @throws IOException if an error occurred opening the file
+     */
+    abstract public DataPointIterator<P> reopen() throws IOException;
+
+    /**
+     * Returns the number of numeric features in each data point
+     * @return the number of numeric features
+     */
+    abstract public int getNumNumericalVars();
+
+    /**
+     * Returns the categorical features of each data point
+     * @return the categorical features
+     */
+    abstract public CategoricalData[] getCategories();
+
+    /**
+     * Returns the categories of the target class, or {@code null} if this is
+     * not a classification data set
+     * @return the categories of the target class
+     */
+    abstract public CategoricalData getPredicting();
+
+    private void startReader()
+    {
+        reader = new Thread(new Runnable()
+        {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void run()
+            {
+                try
+                {
+                    while(!closed)
+                    {
+                        List<DataPointPair<P>> next = new ArrayList<DataPointPair<P>>(BATCH_SIZE);
+                        DataPointPair<P> dpp = null;
+                        while(next.size() < BATCH_SIZE && (dpp = readNext()) != null)
+                            next.add(dpp);
+                        if(!next.isEmpty())
+                            queue.put(next);
+                        if(dpp == null)
+                            break;
+                    }
+                }
+                catch(InterruptedException ex)
+                {
+                    //closed while waiting on the consumer
+                }
+                catch(Throwable ex)
+                {
+                    error = ex;
+                }
+                finally
+                {
+                    try
+                    {
+                        closeSource();
+                    }
+                    catch (IOException ex)
+                    {
+                        if(error == null)
+                            error = ex;
+                    }
+                    try
+                    {
+                        if(closed)//no one will read what is left
+                            queue.clear();
+                        queue.put((List<DataPointPair<P>>) (List<?>) END);
+                    }
+                    catch (InterruptedException ex)
+                    {
+                        //closed, no one is waiting on the end marker
+                    }
+                }
+            }
+        }, getClass().getSimpleName() + " prefetch");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if(batchPos < batch.size())
+            return true;
+        if(finished)
+            return false;
+        if(reader == null)
+            startReader();
+        try
+        {
+            batch = queue.take();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+        batchPos = 0;
+        if((List<?>) batch == END)
+        {
+            finished = true;
+            if(error != null)
+                throw new RuntimeException("Error reading data point", error);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public DataPointPair<P> next()
+    {
+        if(!hasNext())
+            throw new NoSuchElementException();
+        return batch.get(batchPos++);
+    }
+
+    /**
+     * Removal is not supported by a stream
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException("Can not remove data points from a stream");
+    }
+
+    /**
+     * Stops the background thread and closes the underlying file.
+     * @throws IOException if an error occurred closing the file
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(closed)
+            return;
+        closed = true;
+        finished = true;
+        batch = Collections.emptyList();
+        batchPos = 0;
+        if(reader == null)
+            closeSource();
+        else
+            reader.interrupt();
+    }
+}
@@ -0,0 +1,135 @@
+package jsat.io;
+
+import java.io.*;
+import java.util.Arrays;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.DataPoint;
+import jsat.classifiers.DataPointPair;
+import jsat.linear.SparseVector;
+
+/**
+ * Streams the data points of a LIBSVM file, see {@link DataPointIterator}.
+ * Unlike {@link LIBSVMLoader}, the length of the vectors and the set of class
+ * labels can not be inferred from the whole file, and must be given up front.
+ *
+ * @param <P> the type of the target, an {@link Integer} class index for
+ * classification or a {@link Double} target value for regression
+ * @author Edward Raff
+ */
+public class LIBSVMIterator<P> extends DataPointIterator<P>
+{
+    private static final CategoricalData[] noCategories = new CategoricalData[0];
+    private static final int[] noCategoricalValues = new int[0];
+
+    private final File file;
+    private final int vectorLength;
+    /**
+     * The sorted class labels, or {@code null} for regression
+     */
+    private final double[] classLabels;
+    private final CategoricalData predicting;
+    private final BufferedReader reader;
+    private final LIBSVMLoader.LineParser parser = new LIBSVMLoader.LineParser();
+
+    private LIBSVMIterator(File file, int vectorLength, double[] classLabels) throws IOException
+    {
+        if(vectorLength <= 0)
+            throw new IllegalArgumentException("Vector length must be positive, not " + vectorLength);
+        this.file = file;
+        this.vectorLength = vectorLength;
+        this.classLabels = classLabels;
+        this.predicting = classLabels == null ? null : new CategoricalData(classLabels.length);
+        this.reader = new BufferedReader(new FileReader(file), 1 << 16);
+    }
+
+    /**
+     * Creates a new iterator over a LIBSVM file for a classification problem.
+     * The class labels are sorted, and each label is mapped to its position in
+     * the sorted order. This matches the class indices produced by
+     * {@link LIBSVMLoader#loadC(java.io.File) } when every label occurs in the
+     * file.
+     *
+     * @param file the file to read
+     * @param vectorLength the length of the vector of each data point
+     * @param classLabels the distinct class label values used in the file
+     * @return an iterator over the data points and their class index
+     * @throws IOException if an error occurred opening the file
+     */
+    public static LIBSVMIterator<Integer> classification(File file, int vectorLength, double... classLabels) throws IOException
+    {
+        double[] labels = Arrays.copyOf(classLabels, classLabels.length);
+        Arrays.sort(labels);
+        for(int i = 1; i < labels.length; i++)
+            if(labels[i] == labels[i-1])
+                throw new IllegalArgumentException("Class label " + labels[i] + " occurs more than once");
+        return new LIBSVMIterator<Integer>(file, vectorLength, labels);
+    }
+
+    /**
+     * Creates a new iterator over a LIBSVM file for a regression problem.
+     *
+     * @param file the file to read
+     * @param vectorLength the length of the vector of each data point
+     * @return an iterator over the data points and their target value
+     * @throws IOException if an error occurred opening the file
+     */
+    public static LIBSVMIterator<Double> regression(File file, int vectorLength) throws IOException
+    {
+        return new LIBSVMIterator<Double>(file, vectorLength, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected DataPointPair<P> readNext() throws IOException
+    {
+        String line;
+        SparseVector sv = null;
+        while(sv == null)//skip empty lines
+        {
+            if((line = reader.readLine()) == null)
+                return null;
+            sv = parser.parse(line, 0, line.length());
+        }
+        if(sv.length() > vectorLength)
+            throw new IOException("Data point has a non zero value at index " + sv.getLastNonZeroIndex() + " past the vector length " + vectorLength);
+        sv.setLength(vectorLength);
+        DataPoint dp = new DataPoint(sv, noCategoricalValues, noCategories);
+
+        if(classLabels == null)
+            return new DataPointPair<P>(dp, (P) Double.valueOf(parser.target));
+        int classIndex = Arrays.binarySearch(classLabels, parser.target);
+        if(classIndex < 0)
+            throw new IOException("Class label " + parser.target + " was not one of the given labels");
+        return new DataPointPair<P>(dp, (P) Integer.valueOf(classIndex));
+    }
+
+    @Override
+    protected void closeSource() throws IOException
+    {
+        reader.close();
+    }
+
+    @Override
+    public LIBSVMIterator<P> reopen() throws IOException
+    {
+        return new LIBSVMIterator<P>(file, vectorLength, classLabels);
+    }
+
+    @Override
+    public int getNumNumericalVars()
+    {
+        return vectorLength;
+    }
+
+    @Override
+    public CategoricalData[] getCategories()
+    {
+        return noCategories;
+    }
+
+    @Override
+    public CategoricalData getPredicting()
+    {
+        return predicting;
+    }
+}
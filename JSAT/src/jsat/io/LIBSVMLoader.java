@@ -1,7 +1,11 @@
 package jsat.io;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.*;
 import jsat.DataSet;
 import jsat.classifiers.CategoricalData;
 import jsat.classifiers.ClassificationDataSet;
@@ -9,7 +13,9 @@ import jsat.datatransform.DenseSparceTransform;
 import jsat.linear.*;
 import jsat.regression.RegressionDataSet;
 import jsat.utils.DoubleList;
+import jsat.utils.FakeExecutor;
 import jsat.utils.StringUtils;
+import jsat.utils.SystemInfo;
 
 /**
  * Loads a LIBSVM data file into a {@link DataSet}. LIVSM files do not indicate 
@@ -30,6 +36,9 @@ import jsat.utils.StringUtils;
  * have incompatible vector lengths. To resolve this issue, use the loading 
  * methods that include the optional {@code vectorLength} parameter to specify 
  * the length before hand. 
+ * <br><br>
+ * For large files, the loading methods that take an {@link ExecutorService} 
+ * split the file into byte ranges that are parsed in parallel. 
  * 
  * @author Edward Raff
  */
@@ -168,7 +177,7 @@ public class LIBSVMLoader
             if(builder.charAt(pos) == '\n' || builder.charAt(pos) == '\r')//new line, we had a line that was empty
             {
                 //add the zero vector 
-                sparseVecs.add(new SparseVector(0, 0));
+                sparseVecs.add(new SparseVector(1, 0));
                 pos++;//now on the new line
                 builder.delete(0, pos);
                 pos = 0;
@@ -356,7 +365,7 @@ public class LIBSVMLoader
             if(builder.charAt(pos) == '\n' || builder.charAt(pos) == '\r')//new line, we had a line that was empty
             {
                 //add the zero vector 
-                sparceVecs.add(new SparseVector(0, 0));
+                sparceVecs.add(new SparseVector(1, 0));
                 pos++;//now on the new line
                 builder.delete(0, pos);
                 pos = 0;
@@ -441,6 +450,192 @@ public class LIBSVMLoader
         
         return cds;
     }
+    
+    /**
+     * Loads a new classification data set from a LIBSVM file, assuming the 
+     * label is a nominal target value. The file is split into byte ranges that
+     * are parsed concurrently.
+     * 
+     * @param file the file to load
+     * @param threadPool the source of threads to parse the file with
+     * @return a classification data set
+     * @throws FileNotFoundException if the file was not found
+     * @throws IOException if an error occurred reading the file
+     * @see #loadC(java.io.File, double, int, java.util.concurrent.ExecutorService) 
+     */
+    public static ClassificationDataSet loadC(File file, ExecutorService threadPool) throws FileNotFoundException, IOException
+    {
+        return loadC(file, 0.5, -1, threadPool);
+    }
+    
+    /**
+     * Loads a new classification data set from a LIBSVM file, assuming the 
+     * label is a nominal target value. <br>
+     * The file is split into byte ranges aligned to the start of lines, which 
+     * are read through a {@link FileChannel} and parsed concurrently directly 
+     * from the bytes, without decoding them through a {@link Reader}. Each 
+     * data point is created with its final storage, so no extra copies or 
+     * transform passes over the data are needed. 
+     * 
+     * @param file the file to load
+     * @param sparseRatio the fraction of non zero values to qualify a data 
+     * point as sparse
+     * @param vectorLength the pre-determined length of each vector. If given a 
+     * negative value, the largest non-zero index observed in the data will be 
+     * used as the length. 
+     * @param threadPool the source of threads to parse the file with
+     * @return a classification data set
+     * @throws FileNotFoundException if the file was not found
+     * @throws IOException if an error occurred reading the file
+     */
+    public static ClassificationDataSet loadC(File file, double sparseRatio, int vectorLength, ExecutorService threadPool) throws FileNotFoundException, IOException
+    {
+        List<ParsedRange> ranges = parseRanges(file, threadPool);
+        
+        //merge the class labels and dimension of every range
+        int maxLen = 1;
+        Map<Double, Integer> possibleCats = new HashMap<Double, Integer>();
+        for(ParsedRange range : ranges)
+        {
+            maxLen = Math.max(maxLen, range.maxLen);
+            for(int i = 0; i < range.targets.size(); i++)
+                if(!possibleCats.containsKey(range.targets.getD(i)))
+                    possibleCats.put(range.targets.getD(i), possibleCats.size());
+        }
+        if(vectorLength > 0)
+            maxLen = vectorLength;
+        
+        //Give categories a unique ordering to avoid loading issues based on the order categories are presented
+        List<Double> allCatKeys = new DoubleList(possibleCats.keySet());
+        Collections.sort(allCatKeys);
+        for(int i = 0; i < allCatKeys.size(); i++)
+            possibleCats.put(allCatKeys.get(i), i);
+        
+        CategoricalData predicting = new CategoricalData(possibleCats.size());
+        ClassificationDataSet cds = new ClassificationDataSet(maxLen, new CategoricalData[0], predicting);
+        for(ParsedRange range : ranges)
+            for(int i = 0; i < range.targets.size(); i++)
+                cds.addDataPoint(finalizeVec(range.vecs.get(i), maxLen, sparseRatio), new int[0], possibleCats.get(range.targets.getD(i)));
+        
+        return cds;
+    }
+    
+    /**
+     * Loads a new regression data set from a LIBSVM file, assuming the label is
+     * a numeric target value to predict. The file is split into byte ranges 
+     * that are parsed concurrently.
+     * 
+     * @param file the file to load
+     * @param threadPool the source of threads to parse the file with
+     * @return a regression data set
+     * @throws FileNotFoundException if the file was not found
+     * @throws IOException if an error occurred reading the file
+     * @see #loadR(java.io.File, double, int, java.util.concurrent.ExecutorService) 
+     */
+    public static RegressionDataSet loadR(File file, ExecutorService threadPool) throws FileNotFoundException, IOException
+    {
+        return loadR(file, 0.5, -1, threadPool);
+    }
+    
+    /**
+     * Loads a new regression data set from a LIBSVM file, assuming the label is
+     * a numeric target value to predict. <br>
+     * The file is split into byte ranges aligned to the start of lines, which 
+     * are read through a {@link FileChannel} and parsed concurrently directly 
+     * from the bytes, without decoding them through a {@link Reader}. Each 
+     * data point is created with its final storage, so no extra copies or 
+     * transform passes over the data are needed. 
+     * 
+     * @param file the file to load
+     * @param sparseRatio the fraction of non zero values to qualify a data 
+     * point as sparse
+     * @param vectorLength the pre-determined length of each vector. If given a 
+     * negative value, the largest non-zero index observed in the data will be 
+     * used as the length. 
+     * @param threadPool the source of threads to parse the file with
+     * @return a regression data set
+     * @throws FileNotFoundException if the file was not found
+     * @throws IOException if an error occurred reading the file
+     */
+    public static RegressionDataSet loadR(File file, double sparseRatio, int vectorLength, ExecutorService threadPool) throws FileNotFoundException, IOException
+    {
+        List<ParsedRange> ranges = parseRanges(file, threadPool);
+        
+        int maxLen = 1;
+        for(ParsedRange range : ranges)
+            maxLen = Math.max(maxLen, range.maxLen);
+        if(vectorLength > 0)
+            maxLen = vectorLength;
+        
+        RegressionDataSet rds = new RegressionDataSet(maxLen, new CategoricalData[0]);
+        for(ParsedRange range : ranges)
+            for(int i = 0; i < range.targets.size(); i++)
+                rds.addDataPoint(finalizeVec(range.vecs.get(i), maxLen, sparseRatio), new int[0], range.targets.getD(i));
+        
+        return rds;
+    }
+    
+    /**
+     * Sets the final length of a parsed vector, and converts it to a dense 
+     * vector if it has too many non zero values for the given ratio. This is 
+     * the same rule as {@link DenseSparceTransform}. 
+     */
+    private static Vec finalizeVec(SparseVector sv, int length, double sparseRatio)
+    {
+        if(sv.nnz() > 0 && sv.getLastNonZeroIndex() >= length)
+            throw new RuntimeException("Data point has a non zero value at index " + sv.getLastNonZeroIndex() + " past the given vector length " + length);
+        sv.setLength(length);
+        if(sv.nnz() / (double) length < sparseRatio)
+            return sv;
+        DenseVector dv = new DenseVector(length);
+        for(IndexValue iv : sv)
+            dv.set(iv.getIndex(), iv.getValue());
+        return dv;
+    }
+    
+    /**
+     * Splits the file into byte ranges and parses them with the given thread 
+     * pool
+     * @return the parsed ranges, in the order they occur in the file
+     */
+    private static List<ParsedRange> parseRanges(File file, ExecutorService threadPool) throws FileNotFoundException, IOException
+    {
+        if(threadPool == null)
+            threadPool = new FakeExecutor();
+        FileInputStream fis = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = fis.getChannel();
+            final long size = channel.size();
+            //several ranges per core to balance the load, but not so small that they are all overhead
+            long rangeSize = Math.max(MIN_RANGE_SIZE, Math.min(MAX_RANGE_SIZE, size/(SystemInfo.LogicalCores*4)+1));
+            
+            List<Future<ParsedRange>> futures = new ArrayList<Future<ParsedRange>>();
+            for(long start = 0; start < size; start += rangeSize)
+                futures.add(threadPool.submit(new RangeParser(channel, start, Math.min(size, start+rangeSize), size)));
+            
+            List<ParsedRange> ranges = new ArrayList<ParsedRange>(futures.size());
+            for(Future<ParsedRange> future : futures)
+                ranges.add(future.get());
+            return ranges;
+        }
+        catch (InterruptedException ex)
+        {
+            throw new IOException(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            if(ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            else if(ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+        finally
+        {
+            fis.close();
+        }
+    }
 
     /**
      * Loads more characters into the builder if needed
@@ -502,8 +697,8 @@ public class LIBSVMLoader
     /**
      * Writes out the given classification data set as a LIBSVM data file
      * @param data the data set to write to a file
-     * @param os the output stream to write to. The stream will not be closed or
-     * flushed by this method
+     * @param os the output stream to write to. The stream will not be closed by
+     * this method
      */
     public static void write(ClassificationDataSet data, OutputStream os)
     {
@@ -517,13 +712,14 @@ public class LIBSVMLoader
                 writer.write((iv.getIndex()+1) + ":" + iv.getValue() + " ");//+1 b/c 1 based indexing
             writer.write("\n");
         }
+        writer.flush();
     }
     
     /**
      * Writes out the given regression data set as a LIBSVM data file
      * @param data the data set to write to a file
-     * @param os the output stream to write to. The stream will not be closed or
-     * flushed by this method
+     * @param os the output stream to write to. The stream will not be closed by
+     * this method
      */
     public static void write(RegressionDataSet data, OutputStream os)
     {
@@ -537,6 +733,263 @@ public class LIBSVMLoader
                 writer.write((iv.getIndex()+1) + ":" + iv.getValue() + " ");//+1 b/c 1 based indexing
             writer.write("\n");
         }
+        writer.flush();
+    }
+    
+    private static final long MIN_RANGE_SIZE = 1 << 16;
+    private static final long MAX_RANGE_SIZE = 1 << 26;
+    
+    /**
+     * The data points parsed from one byte range of a file 
+     */
+    private static class ParsedRange
+    {
+        final List<SparseVector> vecs = new ArrayList<SparseVector>();
+        final DoubleList targets = new DoubleList();
+        int maxLen = 1;
+    }
+    
+    /**
+     * Parses every line that starts in the byte range {@code [start, end)} of
+     * a file. The last line may continue past the end of the range. 
+     */
+    private static class RangeParser implements Callable<ParsedRange>
+    {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final long fileSize;
+        
+        private byte[] buffer = new byte[1 << 16];
+        /**
+         * The file position of the first byte in the buffer
+         */
+        private long bufferPos = 0;
+        /**
+         * The number of valid bytes in the buffer
+         */
+        private int filled = 0;
+        private final ByteCharSequence chars = new ByteCharSequence();
+        private final LineParser lineParser = new LineParser();
+
+        public RangeParser(FileChannel channel, long start, long end, long fileSize)
+        {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.fileSize = fileSize;
+        }
+
+        @Override
+        public ParsedRange call() throws IOException
+        {
+            ParsedRange result = new ParsedRange();
+            long pos = start;
+            if(start > 0)//the line containing start-1 belongs to the previous range 
+                pos = findLineEnd(start-1)+1;
+            
+            while(pos < end && pos < fileSize)
+            {
+                long lineEnd = findLineEnd(pos);//buffer now holds [pos, lineEnd)
+                parseLine((int) (pos-bufferPos), (int) (lineEnd-bufferPos), result);
+                pos = lineEnd+1;
+            }
+            
+            return result;
+        }
+
+        /**
+         * Finds the position of the new line, or end of file, that terminates 
+         * the line starting at {@code lineStart}, making sure the buffer holds 
+         * every byte in between. 
+         */
+        private long findLineEnd(long lineStart) throws IOException
+        {
+            if(lineStart < bufferPos || lineStart >= bufferPos + filled)
+            {
+                bufferPos = lineStart;
+                filled = 0;
+                read();
+            }
+            int i = (int) (lineStart - bufferPos);
+            while(true)
+            {
+                for(; i < filled; i++)
+                    if(buffer[i] == '\n')
+                        return bufferPos + i;
+                if(bufferPos + filled >= fileSize)
+                    return fileSize;
+                //the line continues past the buffer, move it to the front and read more
+                long searched = bufferPos + filled;
+                int keep = (int) (searched - lineStart);
+                if(keep == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length*2);
+                System.arraycopy(buffer, (int) (lineStart - bufferPos), buffer, 0, keep);
+                bufferPos = lineStart;
+                filled = keep;
+                read();
+                i = (int) (searched - bufferPos);
+            }
+        }
+        
+        /**
+         * Reads bytes from the file to fill up the rest of the buffer 
+         */
+        private void read() throws IOException
+        {
+            ByteBuffer bb = ByteBuffer.wrap(buffer, filled, buffer.length-filled);
+            while(bb.hasRemaining())
+            {
+                int read = channel.read(bb, bufferPos + bb.position());
+                if(read < 0)
+                    break;
+            }
+            filled = bb.position();
+        }
+        
+        /**
+         * Parses the line stored in the buffer from {@code from} to {@code to}
+         */
+        private void parseLine(int from, int to, ParsedRange result)
+        {
+            chars.bytes = buffer;
+            SparseVector sv = lineParser.parse(chars, from, to);
+            if(sv == null)//empty line
+                return;
+            result.vecs.add(sv);
+            result.targets.add(lineParser.target);
+            result.maxLen = Math.max(result.maxLen, sv.length());
+        }
+    }
+    
+    /**
+     * Parses single lines of a LIBSVM file. This is not thread safe, as the 
+     * parser reuses its scratch space from line to line. 
+     */
+    static class LineParser
+    {
+        /**
+         * The label of the last line parsed
+         */
+        double target;
+        private int[] indices = new int[16];
+        private double[] values = new double[16];
+        
+        private static boolean isSpace(char c)
+        {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+        
+        /**
+         * Parses one line of a LIBSVM file. The label is stored in 
+         * {@link #target}. 
+         * 
+         * @param chars the characters containing the line
+         * @param from the index of the first character of the line
+         * @param to the index after the last character of the line
+         * @return a sparse vector with the values of the line, with a length 
+         * just large enough for its largest index, or {@code null} if the line 
+         * was empty
+         */
+        SparseVector parse(CharSequence chars, int from, final int to)
+        {
+            int pos = from;
+            while(pos < to && isSpace(chars.charAt(pos)))
+                pos++;
+            if(pos == to)//empty line
+                return null;
+            
+            int labelEnd = pos;
+            while(labelEnd < to && !isSpace(chars.charAt(labelEnd)))
+                labelEnd++;
+            target = Double.parseDouble(chars.subSequence(pos, labelEnd).toString());
+            pos = labelEnd;
+            
+            int nnz = 0;
+            int maxIndex = -1;
+            boolean sorted = true;
+            while(true)
+            {
+                while(pos < to && isSpace(chars.charAt(pos)))
+                    pos++;
+                if(pos >= to)
+                    break;
+                int colonPos = pos;
+                while(colonPos < to && chars.charAt(colonPos) != ':')
+                    colonPos++;
+                if(colonPos == to)
+                    throw new RuntimeException("Expected index:value pair, not '" + chars.subSequence(pos, to) + "'");
+                int endPos = colonPos+1;
+                while(endPos < to && !isSpace(chars.charAt(endPos)))
+                    endPos++;
+                
+                int index = StringUtils.parseInt(chars, pos, colonPos)-1;
+                double value;
+                if(fastLoad)
+                    value = StringUtils.parseDouble(chars, colonPos+1, endPos);
+                else
+                    value = Double.parseDouble(chars.subSequence(colonPos+1, endPos).toString());
+                pos = endPos;
+                
+                if(index < 0)
+                    throw new RuntimeException("LIBSVM indices start at 1, not " + (index+1));
+                if(value == 0)
+                    continue;
+                if(index <= maxIndex)
+                    sorted = false;
+                maxIndex = Math.max(maxIndex, index);
+                if(nnz == indices.length)
+                {
+                    indices = Arrays.copyOf(indices, nnz*2);
+                    values = Arrays.copyOf(values, nnz*2);
+                }
+                indices[nnz] = index;
+                values[nnz] = value;
+                nnz++;
+            }
+            
+            int length = Math.max(maxIndex+1, 1);
+            if(sorted)//common case, the arrays are used as is
+                return new SparseVector(Arrays.copyOf(indices, nnz), Arrays.copyOf(values, nnz), length, nnz);
+            SparseVector sv = new SparseVector(length, nnz);
+            for(int i = 0; i < nnz; i++)
+                sv.set(indices[i], values[i]);
+            return sv;
+        }
+    }
+    
+    /**
+     * Presents a range of ASCII bytes as characters, so that the parsing 
+     * methods of {@link StringUtils} can be used without decoding the bytes
+     */
+    private static class ByteCharSequence implements CharSequence
+    {
+        private static final Charset ASCII = Charset.forName("US-ASCII");
+        byte[] bytes;
+
+        @Override
+        public int length()
+        {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end)
+        {
+            return new String(bytes, start, end-start, ASCII);
+        }
+
+        @Override
+        public String toString()
+        {
+            return new String(bytes, ASCII);
+        }
     }
     
     /**
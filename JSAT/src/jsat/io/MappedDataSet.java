@@ -0,0 +1,341 @@
+package jsat.io;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import jsat.DataSet;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.IntList;
+import jsat.utils.ListUtils;
+
+/**
+ * A read only data set backed by a file in the format written by
+ * {@link BinaryDataLoader}. The file is memory mapped, so opening it only
+ * reads the header, and the operating system pages in the data as it is
+ * accessed. This allows working with data sets larger than the heap. <br>
+ * <br>
+ * Every call to {@link #getDataPoint(int) } decodes a new data point from
+ * the mapped file, so changes made to a returned data point, including its
+ * weight, are not seen by the data set. The data set itself can not be
+ * altered, so {@link #setDataPoint(int, jsat.classifiers.DataPoint) } and
+ * transforms will throw an exception. To work with a modifiable copy, use
+ * {@link #toClassificationDataSet() } or {@link #toRegressionDataSet() }.
+ *
+ * @author Edward Raff
+ */
+public class MappedDataSet extends DataSet
+{
+    /**
+     * The number of bits for the size of each mapped region
+     */
+    static final int CHUNK_BITS = 30;
+    static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+    /**
+     * Each region is mapped with this many extra bytes, so that a value that
+     * starts in a region can always be read from it.
+     */
+    static final int CHUNK_OVERLAP = 8;
+
+    private final ByteBuffer[] chunks;
+    private final byte type;
+    private final boolean sparse;
+    private final CategoricalData predicting;
+    /**
+     * The number of rows stored in the file
+     */
+    private final int storedRows;
+    private final long targetsOffset;
+    private final long weightsOffset;
+    private final long categoricalOffset;
+    private final long numericOffset;
+    private final long indicesOffset;
+    private final long valuesOffset;
+    /**
+     * Maps the rows of this data set to the rows of the file, or {@code null}
+     * if they are the same
+     */
+    private final int[] rows;
+    private final int size;
+
+    MappedDataSet(ByteBuffer[] chunks, byte type, boolean sparse, int n, int numerical,
+            CategoricalData[] categories, List<String> numericNames, CategoricalData predicting,
+            long nnz, long dataOffset)
+    {
+        this.chunks = chunks;
+        this.type = type;
+        this.sparse = sparse;
+        this.storedRows = n;
+        this.size = n;
+        this.rows = null;
+        this.numNumerVals = numerical;
+        this.categories = categories;
+        this.numericalVariableNames = new ArrayList<String>(numericNames);
+        this.predicting = predicting;
+
+        this.targetsOffset = dataOffset;
+        this.weightsOffset = targetsOffset + (type == BinaryDataLoader.TYPE_NONE ? 0 : 8L*n);
+        this.categoricalOffset = weightsOffset + 8L*n;
+        this.numericOffset = categoricalOffset + 4L*n*categories.length;
+        if(sparse)
+        {
+            this.indicesOffset = numericOffset + 8L*(n+1);
+            this.valuesOffset = indicesOffset + 4L*nnz;
+        }
+        else
+        {
+            this.indicesOffset = this.valuesOffset = numericOffset;
+        }
+    }
+
+    /**
+     * Creates a view of the given data set, sharing its mapped file
+     */
+    private MappedDataSet(MappedDataSet toView, int[] rows, int size)
+    {
+        this.chunks = toView.chunks;
+        this.type = toView.type;
+        this.sparse = toView.sparse;
+        this.storedRows = toView.storedRows;
+        this.numNumerVals = toView.numNumerVals;
+        this.categories = toView.categories;
+        this.numericalVariableNames = new ArrayList<String>(toView.numericalVariableNames);
+        this.predicting = toView.predicting;
+        this.targetsOffset = toView.targetsOffset;
+        this.weightsOffset = toView.weightsOffset;
+        this.categoricalOffset = toView.categoricalOffset;
+        this.numericOffset = toView.numericOffset;
+        this.indicesOffset = toView.indicesOffset;
+        this.valuesOffset = toView.valuesOffset;
+        this.rows = rows;
+        this.size = size;
+    }
+
+    private ByteBuffer chunk(long pos)
+    {
+        return chunks[(int) (pos >>> CHUNK_BITS)];
+    }
+
+    private double getDouble(long pos)
+    {
+        return chunk(pos).getDouble((int) (pos & CHUNK_MASK));
+    }
+
+    private long getLong(long pos)
+    {
+        return chunk(pos).getLong((int) (pos & CHUNK_MASK));
+    }
+
+    private int getInt(long pos)
+    {
+        return chunk(pos).getInt((int) (pos & CHUNK_MASK));
+    }
+
+    /**
+     * Reads {@code len} doubles starting at {@code pos} into {@code dst}
+     */
+    private void getDoubles(long pos, double[] dst, int len)
+    {
+        ByteBuffer c = chunk(pos);
+        int off = (int) (pos & CHUNK_MASK);
+        if(off + 8L*len <= c.limit())//bulk read from a single region
+        {
+            ByteBuffer dup = c.duplicate();
+            dup.position(off);
+            dup.order(c.order());
+            dup.asDoubleBuffer().get(dst, 0, len);
+        }
+        else
+            for(int i = 0; i < len; i++)
+                dst[i] = getDouble(pos + 8L*i);
+    }
+
+    private int fileRow(int i)
+    {
+        if(i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("There are not that many samples in the data set: " + i);
+        return rows == null ? i : rows[i];
+    }
+
+    @Override
+    public DataPoint getDataPoint(int i)
+    {
+        final int r = fileRow(i);
+
+        Vec x;
+        if(sparse)
+        {
+            long start = getLong(numericOffset + 8L*r);
+            int nnz = (int) (getLong(numericOffset + 8L*(r+1)) - start);
+            int[] indices = new int[nnz];
+            double[] values = new double[nnz];
+            for(int z = 0; z < nnz; z++)
+                indices[z] = getInt(indicesOffset + 4L*(start+z));
+            getDoubles(valuesOffset + 8L*start, values, nnz);
+            x = new SparseVector(indices, values, numNumerVals, nnz);
+        }
+        else
+        {
+            double[] values = new double[numNumerVals];
+            getDoubles(numericOffset + 8L*r*numNumerVals, values, numNumerVals);
+            x = new DenseVector(values);
+        }
+
+        int[] cats = new int[categories.length];
+        for(int j = 0; j < cats.length; j++)
+            cats[j] = getInt(categoricalOffset + 4L*((long)j*storedRows + r));
+
+        return new DataPoint(x, cats, categories, getDouble(weightsOffset + 8L*r));
+    }
+
+    /**
+     * The mapped file is read only, so this always throws an exception
+     * @throws UnsupportedOperationException
+     */
+    @Override
+    public void setDataPoint(int i, DataPoint dp)
+    {
+        throw new UnsupportedOperationException("MappedDataSet is read only");
+    }
+
+    @Override
+    public int getSampleSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if the file was written from a classification data
+     * set
+     * @return {@code true} if this is a classification data set
+     */
+    public boolean isClassification()
+    {
+        return type == BinaryDataLoader.TYPE_CLASSIFICATION;
+    }
+
+    /**
+     * Returns {@code true} if the file was written from a regression data set
+     * @return {@code true} if this is a regression data set
+     */
+    public boolean isRegression()
+    {
+        return type == BinaryDataLoader.TYPE_REGRESSION;
+    }
+
+    /**
+     * Returns the categories of the target class, or {@code null} if this is
+     * not a classification data set
+     * @return the categories of the target class
+     */
+    public CategoricalData getPredicting()
+    {
+        return predicting;
+    }
+
+    /**
+     * Returns the class of the <tt>i</tt>'th data point
+     * @param i the <tt>i</tt>'th data point
+     * @return the class index of the <tt>i</tt>'th data point
+     */
+    public int getDataPointCategory(int i)
+    {
+        if(!isClassification())
+            throw new UnsupportedOperationException("Data set does not have a target class");
+        return (int) getDouble(targetsOffset + 8L*fileRow(i));
+    }
+
+    /**
+     * Returns the regression target value of the <tt>i</tt>'th data point
+     * @param i the <tt>i</tt>'th data point
+     * @return the target value of the <tt>i</tt>'th data point
+     */
+    public double getTargetValue(int i)
+    {
+        if(!isRegression())
+            throw new UnsupportedOperationException("Data set does not have a regression target");
+        return getDouble(targetsOffset + 8L*fileRow(i));
+    }
+
+    /**
+     * Reads all of the data into a new in memory classification data set
+     * @return a classification data set with the data of this one
+     */
+    public ClassificationDataSet toClassificationDataSet()
+    {
+        ClassificationDataSet cds = new ClassificationDataSet(numNumerVals, CategoricalData.copyOf(categories), getPredicting().clone());
+        for(int i = 0; i < size; i++)
+            cds.addDataPoint(getDataPoint(i), getDataPointCategory(i));
+        for(int i = 0; i < numericalVariableNames.size(); i++)
+            cds.setNumericName(numericalVariableNames.get(i), i);
+        return cds;
+    }
+
+    /**
+     * Reads all of the data into a new in memory regression data set
+     * @return a regression data set with the data of this one
+     */
+    public RegressionDataSet toRegressionDataSet()
+    {
+        RegressionDataSet rds = new RegressionDataSet(numNumerVals, CategoricalData.copyOf(categories));
+        for(int i = 0; i < size; i++)
+            rds.addDataPoint(getDataPoint(i), getTargetValue(i));
+        for(int i = 0; i < numericalVariableNames.size(); i++)
+            rds.setNumericName(numericalVariableNames.get(i), i);
+        return rds;
+    }
+
+    /**
+     * {@inheritDoc } <br>
+     * <br>
+     * Each fold is a view over the same mapped file.
+     */
+    @Override
+    public List<MappedDataSet> cvSet(int folds, Random rand)
+    {
+        IntList rndOrder = new IntList(size);
+        ListUtils.addRange(rndOrder, 0, size, 1);
+        Collections.shuffle(rndOrder, rand);
+
+        List<MappedDataSet> cvSet = new ArrayList<MappedDataSet>(folds);
+        for(int f = 0; f < folds; f++)
+        {
+            int foldSize = size/folds + (f < size % folds ? 1 : 0);
+            int[] foldRows = new int[foldSize];
+            for(int i = 0; i < foldSize; i++)
+                foldRows[i] = fileRow(rndOrder.getI(f + i*folds));
+            cvSet.add(new MappedDataSet(this, foldRows, foldSize));
+        }
+
+        return cvSet;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<MappedDataSet> cvSet(int folds)
+    {
+        return (List<MappedDataSet>) super.cvSet(folds);
+    }
+
+    @Override
+    public MappedDataSet shallowClone()
+    {
+        return new MappedDataSet(this, rows, size);
+    }
+
+    /**
+     * {@inheritDoc } <br>
+     * <br>
+     * Data points are decoded fresh on every access, so this is the same as
+     * {@link #shallowClone() }.
+     */
+    @Override
+    public MappedDataSet getTwiceShallowClone()
+    {
+        return shallowClone();
+    }
+}
@@ -0,0 +1,346 @@
+package jsat.linear;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A sparse matrix stored in the Compressed Sparse Column (CSC) format. The
+ * non zero values are kept in three primitive arrays: the row index and value
+ * of every non zero in column major order, and the offset at which each
+ * column starts. <br>
+ * <br>
+ * The CSC storage of a matrix is exactly the {@link CSRMatrix CSR} storage of
+ * its transpose, and this class is implemented as a view of that CSR matrix.
+ * Products with this matrix swap which operation is used, so
+ * <i>A*<b>b</b></i> is done as a transposed CSR product and
+ * <i>A'*<b>b</b></i> as a regular one. This makes CSC the better format when
+ * most of the work is done with the transpose of the matrix, or when columns
+ * need to be accessed quickly.
+ *
+ * @author Edward Raff
+ * @see CSRMatrix
+ */
+public class CSCMatrix extends GenericMatrix
+{
+    /**
+     * The transpose of this matrix, in CSR form
+     */
+    private CSRMatrix t;
+
+    /**
+     * Creates a new matrix of all zeros
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    public CSCMatrix(int rows, int cols)
+    {
+        this(new CSRMatrix(cols, rows));
+    }
+
+    /**
+     * Creates a new matrix backed by the given arrays. The arrays are not
+     * copied, so changes to the values of the matrix will be visible in the
+     * arrays.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param colPtr an array of length {@code cols+1}, where column
+     * <tt>j</tt> is stored in the positions [colPtr[j], colPtr[j+1]) of the
+     * other two arrays
+     * @param rowIdx the row of each non zero value, in increasing order
+     * within each column
+     * @param values the non zero values
+     */
+    public CSCMatrix(int rows, int cols, int[] colPtr, int[] rowIdx, double[] values)
+    {
+        this(new CSRMatrix(cols, rows, colPtr, rowIdx, values));
+    }
+
+    /**
+     * Creates a new matrix where each <i>column</i> is a copy of the non zero
+     * values of the given vectors.
+     *
+     * @param columns the list of columns of the matrix, all of the same length
+     */
+    public CSCMatrix(List<? extends Vec> columns)
+    {
+        this(new CSRMatrix(columns));
+    }
+
+    /**
+     * Creates a new CSC matrix that has a copy of all the non zero values of
+     * the given matrix
+     * @param toCopy the matrix to copy
+     */
+    public CSCMatrix(Matrix toCopy)
+    {
+        this(toCopy instanceof CSRMatrix ? ((CSRMatrix) toCopy).transposeStorage() : new CSRMatrix(new TransposeView(toCopy)));
+    }
+
+    /**
+     * Creates a new CSC matrix that is a view of the transpose of the given
+     * CSR matrix
+     * @param t the transpose of the matrix to create
+     */
+    CSCMatrix(CSRMatrix t)
+    {
+        this.t = t;
+    }
+
+    @Override
+    protected Matrix getMatrixOfSameType(int rows, int cols)
+    {
+        return new DenseMatrix(rows, cols);
+    }
+
+    /**
+     * Returns the array of column offsets, of length {@code cols()+1}. Column
+     * <tt>j</tt> is stored in the positions [colPtr[j], colPtr[j+1]) of
+     * {@link #getRowIndexes() } and {@link #getValues() }.
+     * @return the backing array of column offsets
+     */
+    public int[] getColumnPointers()
+    {
+        return t.getRowPointers();
+    }
+
+    /**
+     * Returns the backing array of row indexes. Only the first
+     * {@link #nnz() } values are used.
+     * @return the backing array of row indexes
+     */
+    public int[] getRowIndexes()
+    {
+        return t.getColumnIndexes();
+    }
+
+    /**
+     * Returns the backing array of non zero values. Only the first
+     * {@link #nnz() } values are used.
+     * @return the backing array of non zero values
+     */
+    public double[] getValues()
+    {
+        return t.getValues();
+    }
+
+    /**
+     * Creates a new {@link CSRMatrix} with the same values as this matrix
+     * @return a copy of this matrix in the CSR format
+     */
+    public CSRMatrix toCSR()
+    {
+        return t.transposeStorage();
+    }
+
+    @Override
+    public void multiply(Vec b, double z, Vec c)
+    {
+        if(this.cols() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + rows() +"," + cols() + "] x [" + b.length() + ",1]" );
+        if(this.rows() != c.length())
+            throw new ArithmeticException("Target vector dimension does not agree with matrix dimensions. Matrix has " + rows() + " rows but tagert has " + c.length());
+        t.transposeMultiply(z, b, c);
+    }
+
+    @Override
+    public void multiply(Vec b, double z, Vec c, ExecutorService threadPool)
+    {
+        if(this.cols() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + rows() +"," + cols() + "] x [" + b.length() + ",1]" );
+        if(this.rows() != c.length())
+            throw new ArithmeticException("Target vector dimension does not agree with matrix dimensions. Matrix has " + rows() + " rows but tagert has " + c.length());
+        t.transposeMultiply(z, b, c, threadPool);
+    }
+
+    @Override
+    public void transposeMultiply(double c, Vec b, Vec x)
+    {
+        t.multiply(b, c, x);
+    }
+
+    @Override
+    public void transposeMultiply(double c, Vec b, Vec x, ExecutorService threadPool)
+    {
+        t.multiply(b, c, x, threadPool);
+    }
+
+    @Override
+    public void multiply(Matrix B, Matrix C)
+    {
+        t.transposeMultiply(B, C);
+    }
+
+    @Override
+    public void multiply(Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        t.transposeMultiply(B, C, threadPool);
+    }
+
+    @Override
+    public void transposeMultiply(Matrix B, Matrix C)
+    {
+        t.multiply(B, C);
+    }
+
+    @Override
+    public void transposeMultiply(Matrix B, Matrix C, ExecutorService threadPool)
+    {
+        t.multiply(B, C, threadPool);
+    }
+
+    @Override
+    public void mutableAdd(double c, Matrix B)
+    {
+        if(!sameDimensions(this, B))
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        t.mutableAdd(c, new TransposeView(B));
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This implementation does not use multiple threads, as the non zero
+     * structure of the matrix may change.
+     */
+    @Override
+    public void mutableAdd(double c, Matrix B, ExecutorService threadPool)
+    {
+        mutableAdd(c, B);
+    }
+
+    @Override
+    public void mutableAdd(double c)
+    {
+        t.mutableAdd(c);
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This implementation does not use multiple threads, as the non zero
+     * structure of the matrix changes.
+     */
+    @Override
+    public void mutableAdd(double c, ExecutorService threadPool)
+    {
+        t.mutableAdd(c);
+    }
+
+    @Override
+    public void mutableMultiply(double c)
+    {
+        t.mutableMultiply(c);
+    }
+
+    @Override
+    public void mutableMultiply(double c, ExecutorService threadPool)
+    {
+        t.mutableMultiply(c);
+    }
+
+    @Override
+    public Matrix[] lup()
+    {
+        return new DenseMatrix(this).lup();
+    }
+
+    @Override
+    public Matrix[] lup(ExecutorService threadPool)
+    {
+        return new DenseMatrix(this).lup(threadPool);
+    }
+
+    @Override
+    public Matrix[] qr()
+    {
+        return new DenseMatrix(this).qr();
+    }
+
+    @Override
+    public Matrix[] qr(ExecutorService threadPool)
+    {
+        return new DenseMatrix(this).qr(threadPool);
+    }
+
+    @Override
+    public void mutableTranspose()
+    {
+        t.mutableTranspose();
+    }
+
+    @Override
+    public void transpose(Matrix C)
+    {
+        if(this.rows() != C.cols() || this.cols() != C.rows())
+            throw new ArithmeticException("Target matrix does not have the correct dimensions");
+        C.zeroOut();
+        for(int i = 0; i < t.rows(); i++)
+            for(int p = t.rowPtr[i]; p < t.rowPtr[i+1]; p++)
+                C.set(i, t.colIdx[p], t.values[p]);
+    }
+
+    @Override
+    public double get(int i, int j)
+    {
+        return t.get(j, i);
+    }
+
+    @Override
+    public void set(int i, int j, double value)
+    {
+        t.set(j, i, value);
+    }
+
+    @Override
+    public void increment(int i, int j, double value)
+    {
+        t.increment(j, i, value);
+    }
+
+    @Override
+    public Vec getColumnView(int j)
+    {
+        return t.getRowView(j);
+    }
+
+    @Override
+    public int rows()
+    {
+        return t.cols();
+    }
+
+    @Override
+    public int cols()
+    {
+        return t.rows();
+    }
+
+    @Override
+    public boolean isSparce()
+    {
+        return true;
+    }
+
+    @Override
+    public long nnz()
+    {
+        return t.nnz();
+    }
+
+    @Override
+    public void zeroOut()
+    {
+        t.zeroOut();
+    }
+
+    @Override
+    public void changeSize(int newRows, int newCols)
+    {
+        t.changeSize(newCols, newRows);
+    }
+
+    @Override
+    public CSCMatrix clone()
+    {
+        return new CSCMatrix(t.clone());
+    }
+}
@@ -0,0 +1,1099 @@
+package jsat.linear;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import jsat.utils.SystemInfo;
+
+/**
+ * A sparse matrix stored in the Compressed Sparse Row (CSR) format. All of the
+ * non zero values are kept in three primitive arrays: the column index and
+ * value of every non zero in row major order, and the offset at which each
+ * row starts. Compared to {@link SparseMatrix}, which keeps a separate
+ * {@link SparseVector} object per row, products walk one contiguous block of
+ * memory and do not need any per row objects. <br>
+ * <br>
+ * The multi-threaded versions of
+ * {@link #multiply(jsat.linear.Vec, double, jsat.linear.Vec, java.util.concurrent.ExecutorService) }
+ * and the matrix-matrix products split the rows into blocks with about the
+ * same number of non zeros each, so skewed rows do not leave cores idle. The
+ * transposed products instead give each thread its own block of columns of
+ * the result, so no per thread copies of the result are needed and every
+ * value is summed in the same order as the single threaded version. <br>
+ * <br>
+ * Changing the value of an existing non zero is cheap, but inserting a new
+ * non zero with {@link #set(int, int, double) } has to shift all of the
+ * values after it, and should not be used to build a matrix one value at a
+ * time. Use {@link #CSRMatrix(java.util.List) } or
+ * {@link jsat.DataSet#getSparseDataMatrix() } instead. The
+ * {@link #lup() LUP} and {@link #qr() QR} decompositions are computed on a
+ * dense copy.
+ *
+ * @author Edward Raff
+ * @see CSCMatrix
+ */
+public class CSRMatrix extends GenericMatrix
+{
+    private int rows;
+    private int cols;
+    /**
+     * The index in {@link #colIdx} and {@link #values} that each row starts
+     * at, of length {@code rows+1}. The last value is the number of non zeros
+     */
+    int[] rowPtr;
+    /**
+     * The column of each non zero value, sorted within each row
+     */
+    int[] colIdx;
+    /**
+     * The non zero values
+     */
+    double[] values;
+
+    /**
+     * Creates a new matrix of all zeros
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    public CSRMatrix(int rows, int cols)
+    {
+        this(rows, cols, new int[rows+1], new int[0], new double[0]);
+    }
+
+    /**
+     * Creates a new matrix backed by the given arrays. The arrays are not
+     * copied, so changes to the values of the matrix will be visible in the
+     * arrays.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param rowPtr an array of length {@code rows+1}, where row <tt>i</tt>
+     * is stored in the positions [rowPtr[i], rowPtr[i+1]) of the other two
+     * arrays
+     * @param colIdx the column of each non zero value, in increasing order
+     * within each row
+     * @param values the non zero values
+     */
+    public CSRMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, double[] values)
+    {
+        if(rows <= 0 || cols <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of rows and columns");
+        if(rowPtr.length != rows+1)
+            throw new IllegalArgumentException("rowPtr must have length " + (rows+1) + ", not " + rowPtr.length);
+        if(colIdx.length < rowPtr[rows] || values.length < rowPtr[rows])
+            throw new IllegalArgumentException("colIdx and values must have at least " + rowPtr[rows] + " values");
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    /**
+     * Creates a new matrix where each row is a copy of the non zero values of
+     * the given vectors. Each {@link SparseVector} row is copied with one bulk
+     * array copy, and dense rows only have their non zero values stored.
+     *
+     * @param rows the list of rows of the matrix, all of the same length
+     */
+    public CSRMatrix(List<? extends Vec> rows)
+    {
+        if(rows.isEmpty())
+            throw new ArithmeticException("Matrix must have a positive number of rows");
+        this.rows = rows.size();
+        this.cols = rows.get(0).length();
+        this.rowPtr = new int[this.rows+1];
+        for(int i = 0; i < this.rows; i++)
+        {
+            Vec row = rows.get(i);
+            if(row.length() != cols)
+                throw new IllegalArgumentException("Row " + i + " has " + row.length() + " columns instead of " + cols);
+            int nnz = 0;
+            if(row instanceof SparseVector)
+                nnz = ((SparseVector) row).used;
+            else
+                for(IndexValue iv : row)
+                    nnz++;
+            rowPtr[i+1] = rowPtr[i] + nnz;
+        }
+        this.colIdx = new int[rowPtr[this.rows]];
+        this.values = new double[rowPtr[this.rows]];
+        for(int i = 0; i < this.rows; i++)
+        {
+            Vec row = rows.get(i);
+            int pos = rowPtr[i];
+            if(row instanceof SparseVector)
+            {
+                SparseVector sv = (SparseVector) row;
+                System.arraycopy(sv.indexes, 0, colIdx, pos, sv.used);
+                System.arraycopy(sv.values, 0, values, pos, sv.used);
+            }
+            else
+                for(IndexValue iv : row)
+                {
+                    colIdx[pos] = iv.getIndex();
+                    values[pos++] = iv.getValue();
+                }
+        }
+    }
+
+    /**
+     * Creates a new CSR matrix that has a copy of all the non zero values of
+     * the given matrix
+     * @param toCopy the matrix to copy
+     */
+    public CSRMatrix(Matrix toCopy)
+    {
+        this.rows = toCopy.rows();
+        this.cols = toCopy.cols();
+        this.rowPtr = new int[rows+1];
+        int nnz = 0;
+        int[] idx = new int[16];
+        double[] vals = new double[16];
+        for(int i = 0; i < rows; i++)
+        {
+            Iterator<IndexValue> iter = toCopy.getRowView(i).getNonZeroIterator();
+            while(iter.hasNext())
+            {
+                IndexValue iv = iter.next();
+                if(nnz == idx.length)
+                {
+                    idx = Arrays.copyOf(idx, nnz*2);
+                    vals = Arrays.copyOf(vals, nnz*2);
+                }
+                idx[nnz] = iv.getIndex();
+                vals[nnz++] = iv.getValue();
+            }
+            rowPtr[i+1] = nnz;
+        }
+        this.colIdx = Arrays.copyOf(idx, nnz);
+        this.values = Arrays.copyOf(vals, nnz);
+    }
+
+    /**
+     * Copy constructor
+     * @param toCopy the object to copy
+     */
+    protected CSRMatrix(CSRMatrix toCopy)
+    {
+        this.rows = toCopy.rows;
+        this.cols = toCopy.cols;
+        this.rowPtr = Arrays.copyOf(toCopy.rowPtr, toCopy.rowPtr.length);
+        this.colIdx = Arrays.copyOf(toCopy.colIdx, toCopy.rowPtr[rows]);
+        this.values = Arrays.copyOf(toCopy.values, toCopy.rowPtr[rows]);
+    }
+
+    @Override
+    protected Matrix getMatrixOfSameType(int rows, int cols)
+    {
+        return new DenseMatrix(rows, cols);
+    }
+
+    /**
+     * Returns the array of row offsets, of length {@code rows()+1}. Row
+     * <tt>i</tt> is stored in the positions [rowPtr[i], rowPtr[i+1]) of
+     * {@link #getColumnIndexes() } and {@link #getValues() }.
+     * @return the backing array of row offsets
+     */
+    public int[] getRowPointers()
+    {
+        return rowPtr;
+    }
+
+    /**
+     * Returns the backing array of column indexes. Only the first
+     * {@link #nnz() } values are used.
+     * @return the backing array of column indexes
+     */
+    public int[] getColumnIndexes()
+    {
+        return colIdx;
+    }
+
+    /**
+     * Returns the backing array of non zero values. Only the first
+     * {@link #nnz() } values are used.
+     * @return the backing array of non zero values
+     */
+    public double[] getValues()
+    {
+        return values;
+    }
+
+    /**
+     * Creates a new {@link CSCMatrix} with the same values as this matrix
+     * @return a copy of this matrix in the CSC format
+     */
+    public CSCMatrix toCSC()
+    {
+        return new CSCMatrix(transposeStorage());
+    }
+
+    /**
+     * Computes the CSR storage of the transpose of this matrix with a counting
+     * sort over the columns, which keeps the indexes of each new row sorted.
+     * @return a new matrix equal to the transpose of this matrix
+     */
+    CSRMatrix transposeStorage()
+    {
+        final int nnz = rowPtr[rows];
+        int[] tPtr = new int[cols+1];
+        for(int p = 0; p < nnz; p++)
+            tPtr[colIdx[p]+1]++;
+        for(int j = 0; j < cols; j++)
+            tPtr[j+1] += tPtr[j];
+        int[] next = Arrays.copyOf(tPtr, cols);
+        int[] tIdx = new int[nnz];
+        double[] tVals = new double[nnz];
+        for(int i = 0; i < rows; i++)
+            for(int p = rowPtr[i]; p < rowPtr[i+1]; p++)
+            {
+                int q = next[colIdx[p]]++;
+                tIdx[q] = i;
+                tVals[q] = values[p];
+            }
+        return new CSRMatrix(cols, rows, tPtr, tIdx, tVals);
+    }
+
+    /**
+     * Splits the rows into {@code P} contiguous blocks that each hold about
+     * the same number of non zero values.
+     * @param P the number of blocks
+     * @return an array of length {@code P+1}, where block <tt>p</tt> covers
+     * the rows [bounds[p], bounds[p+1])
+     */
+    private int[] rowBlocks(int P)
+    {
+        int[] bounds = new int[P+1];
+        bounds[P] = rows;
+        final long nnz = rowPtr[rows];
+        for(int p = 1; p < P; p++)
+        {
+            int target = (int) (nnz*p/P);
+            int r = Arrays.binarySearch(rowPtr, 0, rows+1, target);
+            if(r < 0)
+                r = -(r+1);
+            else
+                while(r > 0 && rowPtr[r-1] == target)//first row starting at the target
+                    r--;
+            bounds[p] = Math.max(bounds[p-1], Math.min(r, rows));
+        }
+        return bounds;
+    }
+
+    /**
+     * Work done on one block of rows or columns
+     */
+    private interface RowBlockTask
+    {
+        public void run(int ID, int start, int end);
+    }
+
+    /**
+     * Runs the task over every block, and waits for all of them to finish. If
+     * any block throws an exception, the first one is rethrown once all of
+     * the blocks are done, so the caller never continues with a partial
+     * result.
+     * @param threadPool the source of threads
+     * @param bounds the block boundaries, such as from {@link #rowBlocks(int) }
+     * @param task the work to do for each block
+     * @throws RuntimeException if a block failed or the calling thread was
+     * interrupted while waiting
+     */
+    private static void runBlocks(ExecutorService threadPool, final int[] bounds, final RowBlockTask task)
+    {
+        final int P = bounds.length-1;
+        final CountDownLatch latch = new CountDownLatch(P);
+        //the first exception thrown by a block, rethrown once all are done
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for(int p = 0; p < P; p++)
+        {
+            final int ID = p;
+            threadPool.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        task.run(ID, bounds[ID], bounds[ID+1]);
+                    }
+                    catch(Throwable t)
+                    {
+                        failure.compareAndSet(null, t);
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the matrix product", ex);
+        }
+        Throwable t = failure.get();
+        if(t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        else if(t instanceof Error)
+            throw (Error) t;
+        else if(t != null)
+            throw new RuntimeException("Failed to compute the matrix product", t);
+    }
+
+    /**
+     * Splits the columns into at most {@code P} contiguous blocks of the same
+     * width.
+     * @param cols the number of columns to split
+     * @param P the number of blocks
+     * @return an array where block <tt>p</tt> covers the columns
+     * [bounds[p], bounds[p+1])
+     */
+    private static int[] colBlocks(int cols, int P)
+    {
+        P = Math.max(1, Math.min(P, cols));
+        final int[] bounds = new int[P+1];
+        for(int p = 0; p <= P; p++)
+            bounds[p] = (int) ((long)cols*p/P);
+        return bounds;
+    }
+
+    @Override
+    public void multiply(Vec b, double z, Vec c)
+    {
+        if(this.cols() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + rows() +"," + cols() + "] x [" + b.length() + ",1]" );
+        if(this.rows() != c.length())
+            throw new ArithmeticException("Target vector dimension does not agree with matrix dimensions. Matrix has " + rows() + " rows but tagert has " + c.length());
+        multiplyRows(b.arrayCopy(), z, c, 0, rows);
+    }
+
+    @Override
+    public void multiply(Vec b, final double z, final Vec c, ExecutorService threadPool)
+    {
+        if(this.cols() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + rows() +"," + cols() + "] x [" + b.length() + ",1]" );
+        if(this.rows() != c.length())
+            throw new ArithmeticException("Target vector dimension does not agree with matrix dimensions. Matrix has " + rows() + " rows but tagert has " + c.length());
+        final double[] bArray = b.arrayCopy();
+        if(threadPool == null || c.isSparse())//sparse targets can not be written to concurrently
+        {
+            multiplyRows(bArray, z, c, 0, rows);
+            return;
+        }
+        runBlocks(threadPool, rowBlocks(SystemInfo.LogicalCores), new RowBlockTask()
+        {
+            @Override
+            public void run(int ID, int start, int end)
+            {
+                multiplyRows(bArray, z, c, start, end);
+            }
+        });
+    }
+
+    /**
+     * Computes <i><b>c</b> = <b>c</b> + A*<b>b</b>*z</i> for the rows
+     * [start, end)
+     */
+    private void multiplyRows(double[] b, double z, Vec c, int start, int end)
+    {
+        for(int i = start; i < end; i++)
+        {
+            double dot = 0;
+            for(int p = rowPtr[i]; p < rowPtr[i+1]; p++)
+                dot += values[p]*b[colIdx[p]];
+            if(dot != 0)
+                c.increment(i, dot*z);
+        }
+    }
+
+    @Override
+    public void transposeMultiply(double c, Vec b, Vec x)
+    {
+        if(this.rows() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + cols() +"," + rows() + "] x [" + b.length() + ",1]" );
+        else if(this.cols() != x.length())
+            throw new ArithmeticException("Matrix dimensions do not agree with target vector");
+        double[] result = new double[cols];
+        for(IndexValue b_iv : b)
+            transposeMultiplyRow(c*b_iv.getValue(), b_iv.getIndex(), result);
+        addTo(result, x);
+    }
+
+    @Override
+    public void transposeMultiply(final double c, Vec b, Vec x, ExecutorService threadPool)
+    {
+        if(threadPool == null)
+        {
+            transposeMultiply(c, b, x);
+            return;
+        }
+        if(this.rows() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + cols() +"," + rows() + "] x [" + b.length() + ",1]" );
+        else if(this.cols() != x.length())
+            throw new ArithmeticException("Matrix dimensions do not agree with target vector");
+
+        final double[] bArray = b.arrayCopy();
+        //every thread writes only its own columns, so one result is shared
+        final double[] result = new double[cols];
+        runBlocks(threadPool, colBlocks(cols, SystemInfo.LogicalCores), new RowBlockTask()
+        {
+            @Override
+            public void run(int ID, int start, int end)
+            {
+                for(int i = 0; i < rows; i++)
+                    if(bArray[i] != 0)
+                        transposeMultiplyRow(c*bArray[i], i, result, start, end);
+            }
+        });
+        addTo(result, x);
+    }
+
+    /**
+     * Adds row {@code i} of this matrix times {@code a} to {@code result}
+     */
+    private void transposeMultiplyRow(double a, int i, double[] result)
+    {
+        for(int p = rowPtr[i]; p < rowPtr[i+1]; p++)
+            result[colIdx[p]] += a*values[p];
+    }
+
+    /**
+     * Adds the columns [start, end) of row {@code i} of this matrix times
+     * {@code a} to {@code result}
+     */
+    private void transposeMultiplyRow(double a, int i, double[] result, int start, int end)
+    {
+        final int rowEnd = rowPtr[i+1];
+        int p = rowPtr[i];
+        if(p == rowEnd || colIdx[p] >= end || colIdx[rowEnd-1] < start)
+            return;
+        if(colIdx[p] < start)
+        {
+            p = Arrays.binarySearch(colIdx, p, rowEnd, start);
+            if(p < 0)
+                p = -(p+1);
+        }
+        for(; p < rowEnd && colIdx[p] < end; p++)
+            result[colIdx[p]] += a*values[p];
+    }
+
+    private static void addTo(double[] result, Vec x)
+    {
+        for(int j = 0; j < result.length; j++)
+            if(result[j] != 0)
+                x.increment(j, result[j]);
+    }
+
+    @Override
+    public void multiply(Matrix B, Matrix C)
+    {
+        checkMultiply(B, C);
+        multiplyRows(B, C, 0, rows);
+    }
+
+    @Override
+    public void multiply(final Matrix B, final Matrix C, ExecutorService threadPool)
+    {
+        checkMultiply(B, C);
+        if(threadPool == null || C.isSparce())
+        {
+            multiplyRows(B, C, 0, rows);
+            return;
+        }
+        runBlocks(threadPool, rowBlocks(SystemInfo.LogicalCores), new RowBlockTask()
+        {
+            @Override
+            public void run(int ID, int start, int end)
+            {
+                multiplyRows(B, C, start, end);
+            }
+        });
+    }
+
+    private void checkMultiply(Matrix B, Matrix C)
+    {
+        if(!canMultiply(this, B))
+            throw new ArithmeticException("Matrix dimensions do not agree: [" + this.rows() + ", " + this.cols() + "] * [" + B.rows() + ", " + B.cols() + "]");
+        else if(this.rows() != C.rows() || B.cols() != C.cols())
+            throw new ArithmeticException("Target Matrix is no the correct size");
+    }
+
+    /**
+     * Computes <i>C = C + A*B</i> for the rows [start, end) of <i>C</i>
+     */
+    private void multiplyRows(Matrix B, Matrix C, int start, int end)
+    {
+        for(int i = start; i < end; i++)
+        {
+            if(rowPtr[i] == rowPtr[i+1])
+                continue;
+            Vec C_i = C.getRowView(i);
+            for(int p = rowPtr[i]; p < rowPtr[i+1]; p++)
+                C_i.mutableAdd(values[p], B.getRowView(colIdx[p]));
+        }
+    }
+
+    @Override
+    public void multiplyTranspose(Matrix B, Matrix C)
+    {
+        checkMultiplyTranspose(B, C);
+        multiplyTransposeRows(B, C, 0, rows);
+    }
+
+    @Override
+    public void multiplyTranspose(final Matrix B, final Matrix C, ExecutorService threadPool)
+    {
+        checkMultiplyTranspose(B, C);
+        if(threadPool == null || C.isSparce())
+        {
+            multiplyTransposeRows(B, C, 0, rows);
+            return;
+        }
+        runBlocks(threadPool, rowBlocks(SystemInfo.LogicalCores), new RowBlockTask()
+        {
+            @Override
+            public void run(int ID, int start, int end)
+            {
+                multiplyTransposeRows(B, C, start, end);
+            }
+        });
+    }
+
+    private void checkMultiplyTranspose(Matrix B, Matrix C)
+    {
+        if(this.cols() != B.cols())
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        else if (this.rows() != C.rows() || B.rows() != C.cols())
+            throw new ArithmeticException("Target Matrix is no the correct size");
+    }
+
+    /**
+     * Computes <i>C = C + A*B<sup>T</sup></i> for the rows [start, end) of
+     * <i>C</i>
+     */
+    private void multiplyTransposeRows(Matrix B, Matrix C, int start, int end)
+    {
+        for(int i = start; i < end; i++)
+        {
+            if(rowPtr[i] == rowPtr[i+1])
+                continue;
+            for(int j = 0; j < B.rows(); j++)
+            {
+                Vec B_j = B.getRowView(j);
+                double C_ij = 0;
+                for(int p = rowPtr[i]; p < rowPtr[i+1]; p++)
+                    C_ij += values[p]*B_j.get(colIdx[p]);
+                if(C_ij != 0)
+                    C.increment(i, j, C_ij);
+            }
+        }
+    }
+
+    @Override
+    public void transposeMultiply(Matrix B, Matrix C)
+    {
+        checkTransposeMultiply(B, C);
+        transposeMultiplyCols(B, C, 0, B.cols());
+    }
+
+    @Override
+    public void transposeMultiply(final Matrix B, final Matrix C, ExecutorService threadPool)
+    {
+        checkTransposeMultiply(B, C);
+        if(threadPool == null || C.isSparce())
+        {
+            transposeMultiplyCols(B, C, 0, B.cols());
+            return;
+        }
+        //rows of A' scatter into every row of C, so split the columns instead
+        runBlocks(threadPool, colBlocks(B.cols(), SystemInfo.LogicalCores), new RowBlockTask()
+        {
+            @Override
+            public void run(int ID, int start, int end)
+            {
+                transposeMultiplyCols(B, C, start, end);
+            }
+        });
+    }
+
+    private void checkTransposeMultiply(Matrix B, Matrix C)
+    {
+        if(this.rows() != B.rows())//Normaly it is A_cols == B_rows, but we are doint A'*B, not A*B
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        else if(this.cols() != C.rows() || B.cols() != C.cols())
+            throw new ArithmeticException("Destination matrix does not have matching dimensions");
+    }
+
+    /**
+     * Computes <i>C = C + A'*B</i> for the columns [start, end) of <i>C</i>
+     */
+    private void transposeMultiplyCols(Matrix B, Matrix C, int start, int end)
+    {
+        for(int k = 0; k < rows; k++)
+        {
+            if(rowPtr[k] == rowPtr[k+1])
+                continue;
+            Vec B_k = B.getRowView(k);
+            for(int p = rowPtr[k]; p < rowPtr[k+1]; p++)
+            {
+                final double a = values[p];
+                Vec C_i = C.getRowView(colIdx[p]);
+                for(int j = start; j < end; j++)
+                {
+                    double b = B_k.get(j);
+                    if(b != 0)
+                        C_i.increment(j, a*b);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void mutableAdd(double c, Matrix B)
+    {
+        if(!sameDimensions(this, B))
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        if(c == 0)
+            return;
+        //merge each row with the non zeros of B
+        int[] newPtr = new int[rows+1];
+        int[] newIdx = new int[rowPtr[rows]];
+        double[] newVals = new double[rowPtr[rows]];
+        int nnz = 0;
+        for(int i = 0; i < rows; i++)
+        {
+            int p = rowPtr[i];
+            Iterator<IndexValue> iter = B.getRowView(i).getNonZeroIterator();
+            IndexValue iv = iter.hasNext() ? iter.next() : null;
+            while(p < rowPtr[i+1] || iv != null)
+            {
+                int j;
+                double val;
+                if(iv == null || (p < rowPtr[i+1] && colIdx[p] < iv.getIndex()))
+                {
+                    j = colIdx[p];
+                    val = values[p++];
+                }
+                else
+                {
+                    j = iv.getIndex();
+                    val = c*iv.getValue();
+                    if(p < rowPtr[i+1] && colIdx[p] == j)
+                        val += values[p++];
+                    iv = iter.hasNext() ? iter.next() : null;
+                }
+                if(val == 0)
+                    continue;
+                if(nnz == newIdx.length)
+                {
+                    newIdx = Arrays.copyOf(newIdx, Math.max(16, nnz*2));
+                    newVals = Arrays.copyOf(newVals, newIdx.length);
+                }
+                newIdx[nnz] = j;
+                newVals[nnz++] = val;
+            }
+            newPtr[i+1] = nnz;
+        }
+        rowPtr = newPtr;
+        colIdx = newIdx;
+        values = newVals;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This implementation does not use multiple threads, as the non zero
+     * structure of the matrix may change.
+     */
+    @Override
+    public void mutableAdd(double c, Matrix B, ExecutorService threadPool)
+    {
+        mutableAdd(c, B);
+    }
+
+    @Override
+    public void mutableAdd(double c)
+    {
+        if(c == 0)
+            return;
+        //almost every value becomes non zero
+        int[] newIdx = new int[rows*cols];
+        double[] newVals = new double[rows*cols];
+        double[] row = new double[cols];
+        int nnz = 0;
+        for(int i = 0; i < rows; i++)
+        {
+            Arrays.fill(row, c);
+            for(int p = rowPtr[i]; p < rowPtr[i+1]; p++)
+                row[colIdx[p]] += values[p];
+            rowPtr[i] = nnz;
+            for(int j = 0; j < cols; j++)
+                if(row[j] != 0)
+                {
+                    newIdx[nnz] = j;
+                    newVals[nnz++] = row[j];
+                }
+        }
+        rowPtr[rows] = nnz;
+        colIdx = newIdx;
+        values = newVals;
+    }
+
+    /**
+     * {@inheritDoc}<br>
+     * This implementation does not use multiple threads, as the non zero
+     * structure of the matrix changes.
+     */
+    @Override
+    public void mutableAdd(double c, ExecutorService threadPool)
+    {
+        mutableAdd(c);
+    }
+
+    @Override
+    public void mutableMultiply(double c)
+    {
+        for(int p = 0; p < rowPtr[rows]; p++)
+            values[p] *= c;
+    }
+
+    @Override
+    public void mutableMultiply(double c, ExecutorService threadPool)
+    {
+        mutableMultiply(c);
+    }
+
+    @Override
+    public Matrix[] lup()
+    {
+        return new DenseMatrix(this).lup();
+    }
+
+    @Override
+    public Matrix[] lup(ExecutorService threadPool)
+    {
+        return new DenseMatrix(this).lup(threadPool);
+    }
+
+    @Override
+    public Matrix[] qr()
+    {
+        return new DenseMatrix(this).qr();
+    }
+
+    @Override
+    public Matrix[] qr(ExecutorService threadPool)
+    {
+        return new DenseMatrix(this).qr(threadPool);
+    }
+
+    @Override
+    public void mutableTranspose()
+    {
+        if(!isSquare())
+            throw new ArithmeticException("Can only mutable transpose square matrices");
+        CSRMatrix t = transposeStorage();
+        this.rowPtr = t.rowPtr;
+        this.colIdx = t.colIdx;
+        this.values = t.values;
+    }
+
+    @Override
+    public void transpose(Matrix C)
+    {
+        if(this.rows() != C.cols() || this.cols() != C.rows())
+            throw new ArithmeticException("Target matrix does not have the correct dimensions");
+        C.zeroOut();
+        for(int i = 0; i < rows; i++)
+            for(int p = rowPtr[i]; p < rowPtr[i+1]; p++)
+                C.set(colIdx[p], i, values[p]);
+    }
+
+    /**
+     * Returns the location of the value <i>A<sub>i,j</sub></i> in the backing
+     * arrays, or a negative value encoding the insertion point in the same
+     * manner as {@link Arrays#binarySearch(int[], int, int, int) }
+     */
+    private int find(int i, int j)
+    {
+        if(i < 0 || i >= rows || j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("Index (" + i + ", " + j + ") is out of bounds for a " + rows + "x" + cols + " matrix");
+        return Arrays.binarySearch(colIdx, rowPtr[i], rowPtr[i+1], j);
+    }
+
+    @Override
+    public double get(int i, int j)
+    {
+        int p = find(i, j);
+        return p < 0 ? 0.0 : values[p];
+    }
+
+    @Override
+    public void set(int i, int j, double value)
+    {
+        int p = find(i, j);
+        if(p >= 0)
+        {
+            if(value != 0)
+                values[p] = value;
+            else//remove the non zero
+            {
+                final int nnz = rowPtr[rows];
+                System.arraycopy(colIdx, p+1, colIdx, p, nnz-p-1);
+                System.arraycopy(values, p+1, values, p, nnz-p-1);
+                for(int r = i+1; r <= rows; r++)
+                    rowPtr[r]--;
+            }
+        }
+        else if(value != 0)
+        {
+            p = -(p+1);
+            final int nnz = rowPtr[rows];
+            if(nnz == colIdx.length)
+            {
+                int newSize = Math.max(16, nnz*3/2);
+                colIdx = Arrays.copyOf(colIdx, newSize);
+                values = Arrays.copyOf(values, newSize);
+            }
+            System.arraycopy(colIdx, p, colIdx, p+1, nnz-p);
+            System.arraycopy(values, p, values, p+1, nnz-p);
+            colIdx[p] = j;
+            values[p] = value;
+            for(int r = i+1; r <= rows; r++)
+                rowPtr[r]++;
+        }
+    }
+
+    @Override
+    public void increment(int i, int j, double value)
+    {
+        if(Double.isNaN(value) || Double.isInfinite(value))
+            throw new ArithmeticException("Can not add a value " + value);
+        int p = find(i, j);
+        if(p >= 0)
+            values[p] += value;
+        else
+            set(i, j, value);
+    }
+
+    @Override
+    public Vec getRowView(int r)
+    {
+        if(r < 0 || r >= rows)
+            throw new IndexOutOfBoundsException("Row " + r + " is out of bounds for a matrix with " + rows + " rows");
+        return new RowView(r);
+    }
+
+    @Override
+    public int rows()
+    {
+        return rows;
+    }
+
+    @Override
+    public int cols()
+    {
+        return cols;
+    }
+
+    @Override
+    public boolean isSparce()
+    {
+        return true;
+    }
+
+    @Override
+    public long nnz()
+    {
+        return rowPtr[rows];
+    }
+
+    @Override
+    public void swapRows(int r1, int r2)
+    {
+        if(r1 == r2)
+            return;
+        if(r1 > r2)
+        {
+            int tmp = r1;
+            r1 = r2;
+            r2 = tmp;
+        }
+        //rotate the values between the two rows in place
+        final int s1 = rowPtr[r1], e1 = rowPtr[r1+1];
+        final int s2 = rowPtr[r2], e2 = rowPtr[r2+1];
+        int[] idx = Arrays.copyOfRange(colIdx, s1, e2);
+        double[] vals = Arrays.copyOfRange(values, s1, e2);
+        int pos = s1;
+        System.arraycopy(idx, s2-s1, colIdx, pos, e2-s2);
+        System.arraycopy(vals, s2-s1, values, pos, e2-s2);
+        pos += e2-s2;
+        System.arraycopy(idx, e1-s1, colIdx, pos, s2-e1);
+        System.arraycopy(vals, e1-s1, values, pos, s2-e1);
+        pos += s2-e1;
+        System.arraycopy(idx, 0, colIdx, pos, e1-s1);
+        System.arraycopy(vals, 0, values, pos, e1-s1);
+        final int shift = (e2-s2)-(e1-s1);
+        for(int r = r1+1; r <= r2; r++)
+            rowPtr[r] += shift;
+    }
+
+    @Override
+    public void zeroOut()
+    {
+        Arrays.fill(rowPtr, 0);
+    }
+
+    @Override
+    public void changeSize(int newRows, int newCols)
+    {
+        if(newRows <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of rows");
+        if(newCols <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of columns");
+        if(newCols < cols)//drop the values past the new last column
+        {
+            int nnz = 0;
+            int start = rowPtr[0];
+            for(int i = 0; i < rows; i++)
+            {
+                int end = rowPtr[i+1];
+                for(int p = start; p < end; p++)
+                    if(colIdx[p] < newCols)
+                    {
+                        colIdx[nnz] = colIdx[p];
+                        values[nnz++] = values[p];
+                    }
+                start = end;
+                rowPtr[i+1] = nnz;
+            }
+        }
+        int oldRows = rows;
+        rowPtr = Arrays.copyOf(rowPtr, newRows+1);
+        for(int i = oldRows+1; i <= newRows; i++)
+            rowPtr[i] = rowPtr[oldRows];
+        rows = newRows;
+        cols = newCols;
+    }
+
+    @Override
+    public CSRMatrix clone()
+    {
+        return new CSRMatrix(this);
+    }
+
+    /**
+     * A view of one row of the matrix, that iterates over the backing arrays
+     * directly
+     */
+    private class RowView extends Vec
+    {
+        private final int r;
+
+        public RowView(int r)
+        {
+            this.r = r;
+        }
+
+        @Override
+        public int length()
+        {
+            return cols;
+        }
+
+        @Override
+        public int nnz()
+        {
+            return rowPtr[r+1]-rowPtr[r];
+        }
+
+        @Override
+        public double get(int index)
+        {
+            return CSRMatrix.this.get(r, index);
+        }
+
+        @Override
+        public void set(int index, double val)
+        {
+            CSRMatrix.this.set(r, index, val);
+        }
+
+        @Override
+        public void increment(int index, double val)
+        {
+            CSRMatrix.this.increment(r, index, val);
+        }
+
+        @Override
+        public boolean isSparse()
+        {
+            return true;
+        }
+
+        @Override
+        public double dot(Vec v)
+        {
+            if(v.isSparse())
+                return super.dot(v);
+            double dot = 0;
+            for(int p = rowPtr[r]; p < rowPtr[r+1]; p++)
+                dot += values[p]*v.get(colIdx[p]);
+            return dot;
+        }
+
+        @Override
+        public Vec clone()
+        {
+            final int s = rowPtr[r];
+            final int used = rowPtr[r+1]-s;
+            int[] idx = Arrays.copyOfRange(colIdx, s, s+Math.max(used, 1));
+            double[] vals = Arrays.copyOfRange(values, s, s+Math.max(used, 1));
+            return new SparseVector(idx, vals, cols, used);
+        }
+
+        @Override
+        public Iterator<IndexValue> getNonZeroIterator(int start)
+        {
+            int p = Arrays.binarySearch(colIdx, rowPtr[r], rowPtr[r+1], start);
+            final int first = p < 0 ? -(p+1) : p;
+            return new Iterator<IndexValue>()
+            {
+                int pos = first;
+                final IndexValue indexValue = new IndexValue(-1, Double.NaN);
+
+                @Override
+                public boolean hasNext()
+                {
+                    return pos < rowPtr[r+1];
+                }
+
+                @Override
+                public IndexValue next()
+                {
+                    if(!hasNext())
+                        throw new NoSuchElementException();
+                    indexValue.setIndex(colIdx[pos]);
+                    indexValue.setValue(values[pos++]);
+                    return indexValue;
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException("Not supported yet.");
+                }
+            };
+        }
+    }
+}
@@ -196,10 +196,10 @@ public class DenseVector extends Vec
         for(int i = startIndex; i < endIndex; i++)
             tmp += pow(array[i]-mean, 3);
         
-        double s1 = tmp / (pow(standardDeviation(), 3) * (array.length-1) );
+        double s1 = tmp / (pow(standardDeviation(), 3) * (length()-1) );
         
-        if(array.length >= 3)//We can use the bias corrected formula
-            return sqrt(array.length*(array.length-1))/(array.length-2)*s1;
+        if(length() >= 3)//We can use the bias corrected formula
+            return sqrt(length()*(length()-1))/(length()-2)*s1;
         
         return s1;
     }
@@ -300,10 +300,10 @@ public class DenseVector extends Vec
         clearCaches();
         if (b.isSparse())
             for (IndexValue iv : b)
-                array[iv.getIndex()] += c * iv.getValue();
+                array[iv.getIndex()+startIndex] += c * iv.getValue();
         else
             for (int i = startIndex; i < endIndex; i++)
-                array[i] += c * b.get(i);
+                array[i] += c * b.get(i-startIndex);
     }
 
     @Override
@@ -343,20 +343,20 @@ public class DenseVector extends Vec
             for(IndexValue iv : y)   
             {
                 for(int i = lastIndx+1; i < iv.getIndex(); i++)//add all the indecies we skipped
-                    norm += Math.pow(Math.abs(array[i]), p);
+                    norm += Math.pow(Math.abs(array[i+startIndex]), p);
                 lastIndx = iv.getIndex();
                 //add current
-                norm += Math.pow(Math.abs(array[iv.getIndex()]-iv.getValue()), p);
+                norm += Math.pow(Math.abs(array[iv.getIndex()+startIndex]-iv.getValue()), p);
             }
             
             //Tailing zeros
             for(int i = lastIndx+1; i < y.length(); i++)
-                norm += Math.pow(Math.abs(array[i]), p);
+                norm += Math.pow(Math.abs(array[i+startIndex]), p);
         }
         else
         {
             for(int i = startIndex; i < endIndex; i++)
-                norm += Math.pow(Math.abs(array[i]-y.get(i)), p);
+                norm += Math.pow(Math.abs(array[i]-y.get(i-startIndex)), p);
         }
         return Math.pow(norm, 1.0/p);
     }
@@ -401,7 +401,7 @@ public class DenseVector extends Vec
         if(this.length() != b.length())
             throw new ArithmeticException("Vectors must have the same length");
         for(int i = startIndex; i < endIndex; i++)
-            this.array[i] *= b.get(i);
+            this.array[i] *= b.get(i-startIndex);
     }
 
     @Override
@@ -410,7 +410,7 @@ public class DenseVector extends Vec
         if(this.length() != b.length())
             throw new ArithmeticException("Vectors must have the same length");
         for(int i = startIndex; i < endIndex; i++)
-            this.array[i] /= b.get(i);
+            this.array[i] /= b.get(i-startIndex);
     }
 
     @Override
@@ -423,7 +423,7 @@ public class DenseVector extends Vec
         if(this.length() != otherVec.length())
             return false;
         for(int i = startIndex; i < endIndex; i++)
-            if(this.get(i) != otherVec.get(i))
+            if(this.array[i] != otherVec.get(i-startIndex))
                 return false;
         
         return true;
@@ -440,7 +440,7 @@ public class DenseVector extends Vec
         if(this.length() != otherVec.length())
             return false;
         for(int i = startIndex; i < endIndex; i++)
-            if(Math.abs(this.get(i)-otherVec.get(i)) > range)
+            if(Math.abs(this.array[i]-otherVec.get(i-startIndex)) > range)
                 return false;
         
         return true;
@@ -0,0 +1,677 @@
+package jsat.linear;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jsat.utils.FakeExecutor;
+import static java.lang.Math.*;
+import static jsat.utils.SystemInfo.*;
+
+/**
+ * A dense matrix stored as a single flat array in row major order. Compared to
+ * {@link DenseMatrix}, which stores an array of row arrays, the flat layout
+ * removes the row pointer indirection and lets the matrix-matrix products use
+ * a packed, register blocked GEMM kernel. <br>
+ * <br>
+ * The products {@link #multiply(jsat.linear.Matrix, jsat.linear.Matrix) },
+ * {@link #multiplyTranspose(jsat.linear.Matrix, jsat.linear.Matrix) } and
+ * {@link #transposeMultiply(jsat.linear.Matrix, jsat.linear.Matrix) } follow
+ * the layered approach of Goto & van de Geijn: the inner dimension is cut into
+ * panels of {@link #KC} values, and the matching blocks of both operands are
+ * packed into contiguous buffers sized to stay in the L2 cache. The kernel
+ * then holds several values of the left hand side in registers while it
+ * streams rows of the packed right hand side, in a form the JIT can vectorize.
+ * Because the packing step reads the operands through their access pattern,
+ * transposed operands cost nothing extra, and any dense {@link Matrix} can be
+ * used as the right hand side. <br>
+ * The multi-threaded versions split the result into 2D tiles rather than row
+ * stripes, so that even short and wide results keep every core busy.
+ * <br><br>
+ * See: Goto, K., & van de Geijn, R. A. (2008). <i>Anatomy of high-performance
+ * matrix multiplication</i>. ACM Transactions on Mathematical Software, 34(3)
+ *
+ * @author Edward Raff
+ */
+public class FlatDenseMatrix extends GenericMatrix
+{
+    /**
+     * Length of the inner dimension panels
+     */
+    private static final int KC = 256;
+    /**
+     * Number of columns of the right hand side packed at once, chosen so that
+     * the packed {@code KC x NC} block occupies about half of the L2 cache
+     */
+    private static final int NC;
+    /**
+     * Number of rows of the result computed by one tile
+     */
+    private static final int MC = 256;
+
+    static
+    {
+        int nc = (L2CacheSize/2) / (8*KC);
+        NC = max(64, min(nc, 1024));
+    }
+
+    private double[] matrix;
+    private int rows;
+    private int cols;
+
+    /**
+     * Creates a new matrix of zeros
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    public FlatDenseMatrix(int rows, int cols)
+    {
+        if(rows <= 0 || cols <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of rows and columns");
+        this.rows = rows;
+        this.cols = cols;
+        this.matrix = new double[rows*cols];
+    }
+
+    /**
+     * Creates a new matrix that uses the given array as its backing storage,
+     * in row major order. The array is not copied, so changes to the matrix
+     * will be visible in the array, and vice versa.
+     *
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param matrix the row major array of values, of length at least
+     * <tt>rows*cols</tt>
+     */
+    public FlatDenseMatrix(int rows, int cols, double[] matrix)
+    {
+        if(rows <= 0 || cols <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of rows and columns");
+        if(matrix.length < rows*cols)
+            throw new ArithmeticException("Array of length " + matrix.length + " can not back a " + rows + "x" + cols + " matrix");
+        this.rows = rows;
+        this.cols = cols;
+        this.matrix = matrix;
+    }
+
+    /**
+     * Creates a new matrix that is a copy of the given matrix.
+     * An error will be throw if the rows of the given matrix
+     * are not all the same size
+     *
+     * @param matrix the matrix to copy the values of
+     */
+    public FlatDenseMatrix(double[][] matrix)
+    {
+        this(matrix.length, matrix[0].length);
+        for(int i = 0; i < rows; i++)
+            if(matrix[i].length != cols)//The matrix we were given better have rows of the same length!
+                throw new RuntimeException("Given matrix was not of consistent size (rows have diffrent lengths)");
+            else
+                System.arraycopy(matrix[i], 0, this.matrix, i*cols, cols);
+    }
+
+    /**
+     * Creates a new flat dense matrix that has a copy of all the same values as
+     * the given one
+     * @param toCopy the matrix to copy
+     */
+    public FlatDenseMatrix(Matrix toCopy)
+    {
+        this(toCopy.rows(), toCopy.cols());
+        toCopy.copyTo(this);
+    }
+
+    @Override
+    protected Matrix getMatrixOfSameType(int rows, int cols)
+    {
+        return new FlatDenseMatrix(rows, cols);
+    }
+
+    /**
+     * Returns the backing array of this matrix, in row major order. Changes to
+     * the array will be reflected in this matrix.
+     * @return the backing array of this matrix
+     */
+    public double[] getBackingArray()
+    {
+        return matrix;
+    }
+
+    @Override
+    public void mutableAdd(double c, Matrix b)
+    {
+        if(!sameDimensions(this, b))
+            throw new ArithmeticException("Matrix dimensions do not agree");
+
+        if(b instanceof FlatDenseMatrix)
+        {
+            double[] B = ((FlatDenseMatrix)b).matrix;
+            for(int i = 0; i < rows*cols; i++)
+                matrix[i] += c*B[i];
+        }
+        else
+            for(int i = 0; i < rows; i++)
+                for(int j = 0; j < cols; j++)
+                    matrix[i*cols+j] += c*b.get(i, j);
+    }
+
+    @Override
+    public void mutableAdd(double c)
+    {
+        for(int i = 0; i < rows*cols; i++)
+            matrix[i] += c;
+    }
+
+    @Override
+    public void mutableMultiply(double c)
+    {
+        for(int i = 0; i < rows*cols; i++)
+            matrix[i] *= c;
+    }
+
+    @Override
+    public void multiply(Vec b, double z, Vec c)
+    {
+        if(this.cols() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + rows() +"," + cols() + "] x [" + b.length() + ",1]" );
+        if(this.rows() != c.length())
+            throw new ArithmeticException("Target vector dimension does not agree with matrix dimensions. Matrix has " + rows() + " rows but tagert has " + c.length());
+
+        if(b.isSparse())
+        {
+            for(int i = 0; i < rows; i++)
+            {
+                final int offset = i*cols;
+                double dot = 0;
+                for(IndexValue iv : b)
+                    dot += matrix[offset+iv.getIndex()]*iv.getValue();
+                c.increment(i, dot*z);
+            }
+            return;
+        }
+
+        for(int i = 0; i < rows; i++)
+        {
+            final int offset = i*cols;
+            double dot = 0;
+            for(int j = 0; j < cols; j++)
+                dot += matrix[offset+j]*b.get(j);
+            c.increment(i, dot*z);
+        }
+    }
+
+    @Override
+    public void transposeMultiply(double c, Vec b, Vec x)
+    {
+        if(this.rows() != b.length())
+            throw new ArithmeticException("Matrix dimensions do not agree, [" + cols() +"," + rows() + "] x [" + b.length() + ",1]" );
+        else if(this.cols() != x.length())
+            throw new ArithmeticException("Matrix dimensions do not agree with target vector");
+
+        for(IndexValue iv : b)
+        {
+            final double cb_i = c*iv.getValue();
+            if(cb_i == 0)
+                continue;
+            final int offset = iv.getIndex()*cols;
+            for(int j = 0; j < cols; j++)
+                x.increment(j, cb_i*matrix[offset+j]);
+        }
+    }
+
+    /**
+     * Returns true if the given matrix can be read by the packing routines of
+     * the GEMM kernel. Sparse matrices are left to the generic implementations
+     * that can exploit their structure.
+     */
+    private static boolean packable(Matrix b)
+    {
+        return !b.isSparce();
+    }
+
+    @Override
+    public void multiply(Matrix b, Matrix C)
+    {
+        multiply(b, C, new FakeExecutor());
+    }
+
+    @Override
+    public void multiply(Matrix b, Matrix C, ExecutorService threadPool)
+    {
+        if(!canMultiply(this, b))
+            throw new ArithmeticException("Matrix dimensions do not agree: [" + this.rows() + ", " + this.cols() + "] * [" + b.rows() + ", " + b.cols() + "]");
+        else if (this.rows() != C.rows() || b.cols() != C.cols())
+            throw new ArithmeticException("Target Matrix is no the correct size");
+
+        if(!(C instanceof FlatDenseMatrix && packable(b)))
+        {
+            if(threadPool instanceof FakeExecutor)
+                super.multiply(b, C);
+            else
+                super.multiply(b, C, threadPool);
+            return;
+        }
+
+        gemm(this, false, b, false, (FlatDenseMatrix) C, threadPool);
+    }
+
+    @Override
+    public void multiplyTranspose(Matrix b, Matrix C)
+    {
+        multiplyTranspose(b, C, new FakeExecutor());
+    }
+
+    @Override
+    public void multiplyTranspose(Matrix b, Matrix C, ExecutorService threadPool)
+    {
+        if(this.cols() != b.cols())
+            throw new ArithmeticException("Matrix dimensions do not agree");
+        else if (this.rows() != C.rows() || b.rows() != C.cols())
+            throw new ArithmeticException("Target Matrix is no the correct size");
+
+        if(!(C instanceof FlatDenseMatrix && packable(b)))
+        {
+            if(threadPool instanceof FakeExecutor)
+                super.multiplyTranspose(b, C);
+            else
+                super.multiplyTranspose(b, C, threadPool);
+            return;
+        }
+
+        gemm(this, false, b, true, (FlatDenseMatrix) C, threadPool);
+    }
+
+    @Override
+    public void transposeMultiply(Matrix b, Matrix C)
+    {
+        transposeMultiply(b, C, new FakeExecutor());
+    }
+
+    @Override
+    public void transposeMultiply(Matrix b, Matrix C, ExecutorService threadPool)
+    {
+        if(this.rows() != b.rows())//Normaly it is A_cols == B_rows, but we are doint A'*B, not A*B
+            throw new ArithmeticException("Matrix dimensions do not agree [" + this.cols() + ", " + this.rows()+ "] * [" + b.rows() + ", " + b.cols() + "]");
+        else if(this.cols() != C.rows() || b.cols() != C.cols())
+            throw new ArithmeticException("Destination matrix does not have matching dimensions");
+
+        if(!(C instanceof FlatDenseMatrix && packable(b)))
+        {
+            super.transposeMultiply(b, C, threadPool);
+            return;
+        }
+
+        gemm(this, true, b, false, (FlatDenseMatrix) C, threadPool);
+    }
+
+    /**
+     * Computes C = C + op(A) * op(B), where op() optionally transposes the
+     * operand.
+     *
+     * @param A the left hand side
+     * @param transA whether or not to use the transpose of A
+     * @param B the right hand side, which must be dense
+     * @param transB whether or not to use the transpose of B
+     * @param C the target to accumulate into
+     * @param threadPool the source of threads, the result is split into 2D
+     * tiles which are computed in parallel
+     */
+    private static void gemm(final FlatDenseMatrix A, final boolean transA, final Matrix B, final boolean transB, final FlatDenseMatrix C, ExecutorService threadPool)
+    {
+        final int M = C.rows;
+        final int N = C.cols;
+        final int K = transA ? A.rows : A.cols;
+
+        int tileM = MC;
+        int tileN = NC;
+        final int workers = (threadPool instanceof FakeExecutor) ? 1 : LogicalCores;
+        //shrink the tiles until there is enough work to keep every core busy
+        while(workers > 1 && ceilDiv(M, tileM)*ceilDiv(N, tileN) < 2*workers)
+        {
+            if(tileN >= tileM && tileN > 64)
+                tileN /= 2;
+            else if(tileM > 16)
+                tileM /= 2;
+            else
+                break;
+        }
+
+        final int tileRows = ceilDiv(M, tileM);
+        final int tileCols = ceilDiv(N, tileN);
+        final int tiles = tileRows*tileCols;
+        final int TM = tileM, TN = tileN;
+
+        if(workers == 1 || tiles == 1)
+        {
+            new GemmWorker(A, transA, B, transB, C, K, TM, TN, tileCols, tiles, 0, 1).run();
+            return;
+        }
+
+        final int threads = min(workers, tiles);
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for(int threadID = 0; threadID < threads; threadID++)
+        {
+            final GemmWorker worker = new GemmWorker(A, transA, B, transB, C, K, TM, TN, tileCols, tiles, threadID, threads);
+            threadPool.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        worker.run();
+                    }
+                    finally
+                    {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Logger.getLogger(FlatDenseMatrix.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private static int ceilDiv(int a, int b)
+    {
+        return (a + b - 1) / b;
+    }
+
+    /**
+     * Computes every {@code threads}th tile of the result, starting from tile
+     * {@code threadID}. Each worker owns its packing buffers.
+     */
+    private static class GemmWorker implements Runnable
+    {
+        final FlatDenseMatrix A;
+        final boolean transA;
+        final Matrix B;
+        final boolean transB;
+        final FlatDenseMatrix C;
+        final int K, tileM, tileN, tileCols, tiles, threadID, threads;
+        final double[] packedA;
+        /**
+         * The packed block of op(B), one array per row so that the kernel's
+         * inner loop indexes every array from zero
+         */
+        final double[][] packedB;
+        /**
+         * Accumulator for one row of the result tile
+         */
+        final double[] acc;
+
+        public GemmWorker(FlatDenseMatrix A, boolean transA, Matrix B, boolean transB, FlatDenseMatrix C, int K, int tileM, int tileN, int tileCols, int tiles, int threadID, int threads)
+        {
+            this.A = A;
+            this.transA = transA;
+            this.B = B;
+            this.transB = transB;
+            this.C = C;
+            this.K = K;
+            this.tileM = tileM;
+            this.tileN = tileN;
+            this.tileCols = tileCols;
+            this.tiles = tiles;
+            this.threadID = threadID;
+            this.threads = threads;
+            int kc = min(KC, K);
+            this.packedA = new double[min(tileM, C.rows)*kc];
+            this.packedB = new double[kc][min(tileN, C.cols)];
+            this.acc = new double[min(tileN, C.cols)];
+        }
+
+        @Override
+        public void run()
+        {
+            for(int tile = threadID; tile < tiles; tile += threads)
+            {
+                final int i0 = (tile / tileCols)*tileM;
+                final int j0 = (tile % tileCols)*tileN;
+                final int mc = min(tileM, C.rows-i0);
+                final int nc = min(tileN, C.cols-j0);
+
+                for(int k0 = 0; k0 < K; k0 += KC)
+                {
+                    final int kc = min(KC, K-k0);
+                    packB(k0, kc, j0, nc);
+                    packA(i0, mc, k0, kc);
+                    macroKernel(i0, mc, j0, nc, kc);
+                }
+            }
+        }
+
+        /**
+         * Packs the {@code mc x kc} block of op(A) starting at (i0, k0) into
+         * a contiguous row major block
+         */
+        private void packA(final int i0, final int mc, final int k0, final int kc)
+        {
+            final double[] a = A.matrix;
+            if(!transA)
+            {
+                for(int i = 0; i < mc; i++)
+                    System.arraycopy(a, (i0+i)*A.cols+k0, packedA, i*kc, kc);
+                return;
+            }
+            //op(A)[i][k] = A[k][i], walk the source in row order
+            for(int k = 0; k < kc; k++)
+            {
+                final int base = (k0+k)*A.cols + i0;
+                for(int i = 0; i < mc; i++)
+                    packedA[i*kc+k] = a[base+i];
+            }
+        }
+
+        /**
+         * Packs the {@code kc x nc} block of op(B) starting at (k0, j0) into
+         * one row array per value of k
+         */
+        private void packB(final int k0, final int kc, final int j0, final int nc)
+        {
+            if(B instanceof FlatDenseMatrix)
+            {
+                final FlatDenseMatrix BB = (FlatDenseMatrix) B;
+                final double[] b = BB.matrix;
+                if(!transB)
+                    for(int k = 0; k < kc; k++)
+                        System.arraycopy(b, (k0+k)*BB.cols+j0, packedB[k], 0, nc);
+                else//op(B)[k][j] = B[j][k], walk the source in row order
+                    for(int j = 0; j < nc; j++)
+                    {
+                        final int base = (j0+j)*BB.cols + k0;
+                        for(int k = 0; k < kc; k++)
+                            packedB[k][j] = b[base+k];
+                    }
+            }
+            else
+            {
+                for(int k = 0; k < kc; k++)
+                    for(int j = 0; j < nc; j++)
+                        packedB[k][j] = transB ? B.get(j0+j, k0+k) : B.get(k0+k, j0+j);
+            }
+        }
+
+        /**
+         * Accumulates the product of the packed blocks into the result. Four
+         * values of a row of op(A) are held in registers while the matching
+         * four rows of the packed op(B) block are streamed, so each load and
+         * store of the accumulator feeds four multiply-adds. Every array in
+         * the inner loop is indexed from zero, the JIT will not vectorize a
+         * loop that reads and writes possibly aliased arrays at different
+         * offsets.
+         */
+        private void macroKernel(final int i0, final int mc, final int j0, final int nc, final int kc)
+        {
+            final double[] a = packedA;
+            final double[][] b = packedB;
+            final double[] c = C.matrix;
+            final double[] cRow = acc;
+            for(int i = 0; i < mc; i++)
+            {
+                final int aPos = i*kc;
+                Arrays.fill(cRow, 0, nc, 0.0);
+                int k = 0;
+                for(; k+3 < kc; k += 4)
+                {
+                    final double a0 = a[aPos+k], a1 = a[aPos+k+1], a2 = a[aPos+k+2], a3 = a[aPos+k+3];
+                    final double[] b0 = b[k], b1 = b[k+1], b2 = b[k+2], b3 = b[k+3];
+                    for(int j = 0; j < nc; j++)
+                        cRow[j] += a0*b0[j] + a1*b1[j] + a2*b2[j] + a3*b3[j];
+                }
+                for(; k < kc; k++)
+                {
+                    final double a0 = a[aPos+k];
+                    final double[] b0 = b[k];
+                    for(int j = 0; j < nc; j++)
+                        cRow[j] += a0*b0[j];
+                }
+
+                final int cPos = (i0+i)*C.cols + j0;
+                for(int j = 0; j < nc; j++)
+                    c[cPos+j] += cRow[j];
+            }
+        }
+    }
+
+    @Override
+    public void mutableTranspose()
+    {
+        if (!this.isSquare())
+            throw new ArithmeticException("Can only mutable transpose square matrices");
+        for(int i = 0; i < rows-1; i++)
+            for(int j = i+1; j < cols; j++)
+            {
+                double tmp = matrix[j*cols+i];
+                matrix[j*cols+i] = matrix[i*cols+j];
+                matrix[i*cols+j] = tmp;
+            }
+    }
+
+    @Override
+    public FlatDenseMatrix transpose()
+    {
+        FlatDenseMatrix toReturn = new FlatDenseMatrix(cols, rows);
+        this.transpose(toReturn);
+        return toReturn;
+    }
+
+    @Override
+    public void transpose(Matrix C)
+    {
+        if(this.rows() != C.cols() || this.cols() != C.rows())
+            throw new ArithmeticException("Target matrix does not have the correct dimensions");
+        if(!(C instanceof FlatDenseMatrix))
+        {
+            super.transpose(C);
+            return;
+        }
+
+        final double[] c = ((FlatDenseMatrix)C).matrix;
+        for (int i0 = 0; i0 < rows; i0 += NB2)
+            for (int j0 = 0; j0 < cols; j0 += NB2)
+                for (int i = i0; i < min(i0+NB2, rows); i++)
+                    for (int j = j0; j < min(j0+NB2, cols); j++)
+                        c[j*rows+i] = matrix[i*cols+j];
+    }
+
+    @Override
+    public double get(int i, int j)
+    {
+        if(i < 0 || i >= rows || j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("Can not access (" + i + ", " + j + ") of a " + rows + "x" + cols + " matrix");
+        return matrix[i*cols+j];
+    }
+
+    @Override
+    public void set(int i, int j, double value)
+    {
+        if(i < 0 || i >= rows || j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("Can not access (" + i + ", " + j + ") of a " + rows + "x" + cols + " matrix");
+        matrix[i*cols+j] = value;
+    }
+
+    @Override
+    public void increment(int i, int j, double value)
+    {
+        if(i < 0 || i >= rows || j < 0 || j >= cols)
+            throw new IndexOutOfBoundsException("Can not access (" + i + ", " + j + ") of a " + rows + "x" + cols + " matrix");
+        matrix[i*cols+j] += value;
+    }
+
+    @Override
+    public int rows()
+    {
+        return rows;
+    }
+
+    @Override
+    public int cols()
+    {
+        return cols;
+    }
+
+    @Override
+    public boolean isSparce()
+    {
+        return false;
+    }
+
+    @Override
+    public void changeSize(int newRows, int newCols)
+    {
+        if(newRows <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of rows");
+        if(newCols <= 0)
+            throw new ArithmeticException("Matrix must have a positive number of columns");
+        double[] newMatrix = new double[newRows*newCols];
+        for(int i = 0; i < min(rows, newRows); i++)
+            System.arraycopy(matrix, i*cols, newMatrix, i*newCols, min(cols, newCols));
+        matrix = newMatrix;
+        rows = newRows;
+        cols = newCols;
+    }
+
+    @Override
+    public void swapRows(int r1, int r2)
+    {
+        if(r1 >= rows() || r2 >= rows())
+            throw new ArithmeticException("Can not swap row, matrix is smaller then requested");
+        else if(r1 < 0 || r2 < 0)
+            throw new ArithmeticException("Can not swap row, there are no negative row indices");
+        for(int j = 0; j < cols; j++)
+        {
+            double tmp = matrix[r1*cols+j];
+            matrix[r1*cols+j] = matrix[r2*cols+j];
+            matrix[r2*cols+j] = tmp;
+        }
+    }
+
+    @Override
+    public void zeroOut()
+    {
+        Arrays.fill(matrix, 0, rows*cols, 0.0);
+    }
+
+    @Override
+    public Vec getRowView(int r)
+    {
+        if(r < 0 || r >= rows)
+            throw new IndexOutOfBoundsException("Can not access row " + r + " of a matrix with " + rows + " rows");
+        return new DenseVector(matrix, r*cols, (r+1)*cols);
+    }
+
+    @Override
+    public FlatDenseMatrix clone()
+    {
+        return new FlatDenseMatrix(rows, cols, Arrays.copyOf(matrix, rows*cols));
+    }
+}
@@ -275,6 +275,23 @@ public abstract class Matrix implements Cloneable, Serializable
      */
     abstract public void multiply(Vec b, double z, Vec c);
     
+    /**
+     * If this matrix is <i>A<sub>m x n</sub></i>, and <i><b>b</b></i> has a length of n, and <i><b>c</b></i> has a length of m,
+     * then this will mutate c to store <i><b>c</b> = <b>c</b> + A*<b>b</b>*z</i> 
+     * <br>
+     * The default implementation does not use the threads, and calls 
+     * {@link #multiply(jsat.linear.Vec, double, jsat.linear.Vec) }. 
+     * @param b the vector to be treated as a colum vector
+     * @param z the constant to multiply the <i>A*<b>b</b></i> value by. 
+     * @param c where to place the result by addition
+     * @param threadPool the source of threads to do computation in parallel
+     * @throws ArithmeticException if the dimensions of A, <b>b</b>, or <b>c</b> do not all agree
+     */
+    public void multiply(Vec b, double z, Vec c, ExecutorService threadPool)
+    {
+        multiply(b, z, c);
+    }
+    
     /**
      * Creates a new vector that is equal to <i>A*<b>b</b> </i>
      * @param b the vector to multiply by
@@ -507,6 +524,22 @@ public abstract class Matrix implements Cloneable, Serializable
      */
     abstract public void transposeMultiply(double c, Vec b, Vec x);
     
+    /**
+     * Alters the vector <i><b>x</b></i> to be equal to <i><b>x</b> = <b>x</b> + A'*<b>b</b>*c</i>
+     * <br>
+     * The default implementation does not use the threads, and calls 
+     * {@link #transposeMultiply(double, jsat.linear.Vec, jsat.linear.Vec) }. 
+     * 
+     * @param c the scalar constant to multiply by
+     * @param b the vector to multiply by
+     * @param x the vector the add the result to 
+     * @param threadPool the source of threads to do computation in parallel
+     */
+    public void transposeMultiply(double c, Vec b, Vec x, ExecutorService threadPool)
+    {
+        transposeMultiply(c, b, x);
+    }
+    
     /**
      * Creates a new vector equal to <i><b>x</b> = A'*<b>b</b>*c</i>
      * @param c the scalar constant to multiply by
@@ -4,6 +4,8 @@ package jsat.linear.distancemetrics;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import jsat.linear.Vec;
 import jsat.utils.DoubleList;
 import jsat.utils.FakeExecutor;
@@ -98,7 +100,7 @@ public class CosineDistance implements DistanceMetric
             return getAccelerationCache(vecs);
         final double[] cache = new double[vecs.size()];
    
-        final CountDownLatch latch = new CountDownLatch(SystemInfo.LogicalCores);
+        final CountDownLatch latch = new CountDownLatch(Math.min(SystemInfo.LogicalCores, cache.length));
         final int blockSize = cache.length / SystemInfo.LogicalCores;
         int extra = cache.length % SystemInfo.LogicalCores;
         int start = 0;
@@ -124,6 +126,15 @@ public class CosineDistance implements DistanceMetric
             start = end;
         }
 
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Logger.getLogger(CosineDistance.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
         return DoubleList.unmodifiableView(cache, cache.length);
     }
 
@@ -4,6 +4,8 @@ package jsat.linear.distancemetrics;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import jsat.linear.IndexValue;
 import jsat.linear.Vec;
 import jsat.utils.DoubleList;
@@ -113,7 +115,7 @@ public class EuclideanDistance implements DenseSparseMetric
             return getAccelerationCache(vecs);
         final double[] cache = new double[vecs.size()];
    
-        final CountDownLatch latch = new CountDownLatch(SystemInfo.LogicalCores);
+        final CountDownLatch latch = new CountDownLatch(Math.min(SystemInfo.LogicalCores, cache.length));
         final int blockSize = cache.length / SystemInfo.LogicalCores;
         int extra = cache.length % SystemInfo.LogicalCores;
         int start = 0;
@@ -139,6 +141,15 @@ public class EuclideanDistance implements DenseSparseMetric
             start = end;
         }
 
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Logger.getLogger(EuclideanDistance.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
         return DoubleList.unmodifiableView(cache, cache.length);
     }
 
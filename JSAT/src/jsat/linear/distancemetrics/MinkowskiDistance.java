@@ -25,6 +25,15 @@ public class MinkowskiDistance implements DenseSparseMetric
         this.p = p;
     }
     
+    /**
+     * Returns the value of <i>p</i> of the norm this distance uses
+     * @return the value of <i>p</i>
+     */
+    public double getP()
+    {
+        return p;
+    }
+    
     @Override
     public double dist(Vec a, Vec b)
     {
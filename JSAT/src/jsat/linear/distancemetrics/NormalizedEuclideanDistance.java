@@ -3,6 +3,8 @@ package jsat.linear.distancemetrics;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import jsat.DataSet;
 import jsat.classifiers.ClassificationDataSet;
 import jsat.datatransform.UnitVarianceTransform;
@@ -187,7 +189,7 @@ public class NormalizedEuclideanDistance extends TrainableDistanceMetric
             return getAccelerationCache(vecs);
         final double[] cache = new double[vecs.size()];
    
-        final CountDownLatch latch = new CountDownLatch(SystemInfo.LogicalCores);
+        final CountDownLatch latch = new CountDownLatch(Math.min(SystemInfo.LogicalCores, cache.length));
         final int blockSize = cache.length / SystemInfo.LogicalCores;
         int extra = cache.length % SystemInfo.LogicalCores;
         int start = 0;
@@ -213,6 +215,15 @@ public class NormalizedEuclideanDistance extends TrainableDistanceMetric
             start = end;
         }
 
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Logger.getLogger(NormalizedEuclideanDistance.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
         return DoubleList.unmodifiableView(cache, cache.length);
     }
 
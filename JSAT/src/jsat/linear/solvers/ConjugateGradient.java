@@ -1,6 +1,7 @@
 
 package jsat.linear.solvers;
 
+import java.util.concurrent.ExecutorService;
 import jsat.linear.DenseVector;
 import jsat.linear.Matrix;
 import jsat.linear.Vec;
@@ -37,20 +38,43 @@ public class ConjugateGradient
      * @return the approximate solution to the equation <i>A x = b</i>
      */
     public static Vec solve(double eps, Matrix A, Vec x, Vec b)
+    {
+        return solve(eps, A, x, b, (ExecutorService) null);
+    }
+    
+    /**
+     * Uses the Conjugate Gradient method to solve a linear system of 
+     * equations involving a symmetric positive definite matrix.<br><br>
+     * The matrix is only used through the threaded 
+     * {@link Matrix#multiply(jsat.linear.Vec, double, jsat.linear.Vec, java.util.concurrent.ExecutorService) 
+     * matrix-vector product}, so sparse matrices such as 
+     * {@link jsat.linear.CSRMatrix} can be used directly. 
+     * 
+     * @param eps the precision of the desired result.
+     * @param A the symmetric positive definite matrix
+     * @param x an initial guess for x, can be all zeros. This vector will be altered
+     * @param b the target values
+     * @param threadPool the source of threads to do computation in parallel, 
+     * or {@code null} to use only the calling thread
+     * @return the approximate solution to the equation <i>A x = b</i>
+     */
+    public static Vec solve(double eps, Matrix A, Vec x, Vec b, ExecutorService threadPool)
     {
         if(!A.isSquare())
             throw new ArithmeticException("A must be a square (symmetric & positive definite) matrix");
         else if(A.rows() != b.length() || A.rows() != x.length())
             throw new ArithmeticException("Matrix A dimensions do not agree with x and b");
         int k = 0;
-        Vec r_k = b.subtract(A.multiply(x));
+        Vec r_k = b.clone();
+        multiply(A, x, -1.0, r_k, threadPool);
         Vec p_k = r_k.clone();
-        Vec Apk;
+        Vec Apk = new DenseVector(A.rows());
         
         double RdR = r_k.dot(r_k);
         do
         {
-            Apk = A.multiply(p_k);
+            Apk.zeroOut();
+            multiply(A, p_k, 1.0, Apk, threadPool);
             double alpha_k = RdR /  p_k.dot(Apk) ;
             
             x.mutableAdd(alpha_k, p_k);
@@ -165,23 +189,115 @@ public class ConjugateGradient
      * @return the least squares solution to A x = b
      */
     public static Vec solveCGNR(double eps, Matrix A, Vec x, Vec b)
+    {
+        return solveCGNR(eps, A, x, b, 0.0, null);
+    }
+    
+    public static Vec solveCGNR(Matrix A, Vec b)
+    {
+        DenseVector x = new DenseVector(A.cols());
+        return solveCGNR(1e-10, A, x, b);
+    }
+    
+    /**
+     * Uses the Conjugate Gradient method to compute the regularized least 
+     * squares solution to a system of linear equations. <br>
+     * Computes the <i>x</i> that minimizes ||A x - b||<sup>2</sup> + &lambda; 
+     * ||x||<sup>2</sup>, where A is an m x n matrix, b is a vector of length m
+     * and x is a vector of length n. This is the solution of 
+     * (A<sup>T</sup> A + &lambda; I) x = A<sup>T</sup> b. <br>
+     * <br>
+     * The product A<sup>T</sup> A is never formed. Each iteration does one 
+     * {@link Matrix#multiply(jsat.linear.Vec, double, jsat.linear.Vec, java.util.concurrent.ExecutorService) product} 
+     * with A and one 
+     * {@link Matrix#transposeMultiply(double, jsat.linear.Vec, jsat.linear.Vec, java.util.concurrent.ExecutorService) product} 
+     * with A<sup>T</sup>, so large sparse matrices such as 
+     * {@link jsat.linear.CSRMatrix} can be solved without becoming dense. 
+     * 
+     * @param eps the desired precision for the result
+     * @param A any m x n matrix
+     * @param x the initial guess for x, can be all zeros. This vector will be altered
+     * @param b the target values
+     * @param lambda the non negative regularization penalty
+     * @param threadPool the source of threads to do computation in parallel, 
+     * or {@code null} to use only the calling thread
+     * @return the regularized least squares solution to A x = b
+     */
+    public static Vec solveCGNR(double eps, Matrix A, Vec x, Vec b, double lambda, ExecutorService threadPool)
     {
         if(A.rows() != b.length())
             throw new ArithmeticException("Dimensions do not agree for Matrix A and Vector b");
         else if(A.cols() != x.length())
             throw new ArithmeticException("Dimensions do not agree for Matrix A and Vector x");
+        else if(lambda < 0 || Double.isNaN(lambda) || Double.isInfinite(lambda))
+            throw new IllegalArgumentException("lambda must be non negative, not " + lambda);
+        
+        //r = A' (b - A x) - lambda x
+        Vec resid = b.clone();
+        multiply(A, x, -1.0, resid, threadPool);
+        Vec r_k = new DenseVector(A.cols());
+        transposeMultiply(A, resid, r_k, threadPool);
+        if(lambda > 0)
+            r_k.mutableSubtract(lambda, x);
+        
+        Vec p_k = r_k.clone();
+        Vec Apk = new DenseVector(A.rows());
+        Vec AtApk = new DenseVector(A.cols());
         
-        //TODO write a version that does not explicityly form the transpose matrix
-        Matrix At = A.transpose();
-        Matrix AtA = At.multiply(A);
-        Vec AtB = At.multiply(b);
+        double RdR = r_k.dot(r_k);
+        int k = 0;
+        do
+        {
+            Apk.zeroOut();
+            multiply(A, p_k, 1.0, Apk, threadPool);
+            AtApk.zeroOut();
+            transposeMultiply(A, Apk, AtApk, threadPool);
+            if(lambda > 0)
+                AtApk.mutableAdd(lambda, p_k);
+            
+            double alpha_k = RdR / p_k.dot(AtApk);
+            
+            x.mutableAdd(alpha_k, p_k);
+            
+            r_k.mutableSubtract(alpha_k, AtApk);
+            
+            double newRdR = r_k.dot(r_k);
+            
+            //Stop when we are close enough
+            if(newRdR < eps*eps)
+                return x;
+            
+            double beta_k = newRdR/RdR;
+            
+            p_k.mutableMultiply(beta_k);
+            p_k.mutableAdd(r_k);
+            
+            RdR = newRdR;
+        }
+        while(k++ < A.cols());
         
-        return solve(eps, AtA, x, AtB);
+        return x;
     }
     
-    public static Vec solveCGNR(Matrix A, Vec b)
+    /**
+     * Computes <i>c = c + A b z</i>, using the threads if given
+     */
+    private static void multiply(Matrix A, Vec b, double z, Vec c, ExecutorService threadPool)
     {
-        DenseVector x = new DenseVector(A.cols());
-        return solveCGNR(1e-10, A, x, b);
+        if(threadPool == null)
+            A.multiply(b, z, c);
+        else
+            A.multiply(b, z, c, threadPool);
+    }
+    
+    /**
+     * Computes <i>x = x + A' b</i>, using the threads if given
+     */
+    private static void transposeMultiply(Matrix A, Vec b, Vec x, ExecutorService threadPool)
+    {
+        if(threadPool == null)
+            A.transposeMultiply(1.0, b, x);
+        else
+            A.transposeMultiply(1.0, b, x, threadPool);
     }
 }
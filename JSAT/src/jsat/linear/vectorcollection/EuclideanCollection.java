@@ -28,7 +28,7 @@ import jsat.utils.*;
  * 
  * @author Edward Raff
  */
-public class EuclideanCollection<V extends Vec> implements VectorCollection<V>
+public class EuclideanCollection<V extends Vec> implements IndexedVectorCollection<V>
 {
     private List<V> source;
     /**
@@ -123,6 +123,47 @@ public class EuclideanCollection<V extends Vec> implements VectorCollection<V>
         return list;
     }
 
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                final double xx = query.dot(query);
+                for(int i = 0; i < dotCache.length; i++)
+                {
+                    //skip the square root unless the point may be kept
+                    double d2 = Math.max(xx+dotCache[i]-2*query.dot(source.get(i)), 0);
+                    double bound = heap.bound();
+                    if(bound == Double.POSITIVE_INFINITY || d2 < bound*bound)
+                        heap.add(i, Math.sqrt(d2));
+                }
+            }
+        }, queries, k, size(), results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, double range, NeighborResults results, ExecutorService threadpool)
+    {
+        final double range2 = range*range;
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                final double xx = query.dot(query);
+                for(int i = 0; i < dotCache.length; i++)
+                {
+                    double d2 = Math.max(xx+dotCache[i]-2*query.dot(source.get(i)), 0);
+                    if(d2 <= range2)
+                        heap.add(i, Math.sqrt(d2));
+                }
+            }
+        }, queries, range, results, threadpool);
+    }
+
     @Override
     public int size()
     {
@@ -0,0 +1,590 @@
+package jsat.linear.vectorcollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jsat.linear.IndexValue;
+import jsat.linear.Vec;
+import jsat.linear.VecPaired;
+import jsat.linear.distancemetrics.*;
+import jsat.utils.FakeExecutor;
+import jsat.utils.ModifiableCountDownLatch;
+import jsat.utils.QuickSort;
+
+/**
+ * A KDTree that is stored in flat primitive arrays rather than a graph of node
+ * objects. The coordinates of every point are copied into one array in the
+ * order the points appear in the leaves of the tree, so the points of a leaf
+ * are contiguous in memory. Each node splits its points at the median of the
+ * dimension with the largest spread, and points are only stored in leaves of
+ * up to {@link #getLeafSize() leaf size} points. <br>
+ * The nodes are stored in pre-order, so the left child of a node is always the
+ * next node, and only the position of the right child is stored. Searches walk
+ * the tree with an explicit stack, and the scratch space of each thread is
+ * reused between queries.
+ * <br><br>
+ * Like {@link KDTree}, this is only usable with distance metrics based on the
+ * pNorm of two vectors, which are {@link EuclideanDistance},
+ * {@link ChebyshevDistance}, {@link ManhattanDistance} and
+ * {@link MinkowskiDistance}. The distances are computed directly on the copied
+ * coordinates. Since the coordinates are a single array, the number of points
+ * times their dimension can not exceed {@link Integer#MAX_VALUE}.
+ *
+ * @author Edward Raff
+ */
+public class FlatKDTree<V extends Vec> implements IndexedVectorCollection<V>
+{
+    /**
+     * The default maximum number of points stored in a leaf
+     */
+    public static final int DEFAULT_LEAF_SIZE = 16;
+    /**
+     * The smallest number of points for which the build of a subtree will be
+     * given to another thread
+     */
+    private static final int PARALLEL_BUILD_SIZE = 4096;
+
+    private DistanceMetric distanceMetric;
+    /**
+     * The p of the pNorm used by the distance metric, where Chebyshev is
+     * infinity
+     */
+    private double p;
+    private int leafSize;
+    private int dim;
+    private List<V> allVecs;
+    /**
+     * The coordinates of every point in tree order, <i>dim</i> values each
+     */
+    private double[] coords;
+    /**
+     * The index in {@link #allVecs} of each point in tree order
+     */
+    private int[] pointIndex;
+    /**
+     * The dimension each node splits on, or -1 if it is a leaf
+     */
+    private int[] splitDim;
+    private double[] splitVal;
+    /**
+     * The node index of the right child of each node. The left child of node
+     * <i>i</i> is always <i>i+1</i>.
+     */
+    private int[] rightChild;
+    /**
+     * The range of points in tree order that each node holds
+     */
+    private int[] nodeStart, nodeEnd;
+    private int depth;
+    private transient ThreadLocal<Scratch> scratch;
+
+    /**
+     * Creates a new flat KDTree
+     *
+     * @param vecs the list of vectors to place in this structure
+     * @param distanceMetric the metric to use for the space
+     * @param leafSize the maximum number of points to store in a leaf
+     * @param threadpool the source of threads to use when constructing. Null
+     * is permitted, in which case a serial construction will occur.
+     */
+    public FlatKDTree(List<V> vecs, DistanceMetric distanceMetric, int leafSize, ExecutorService threadpool)
+    {
+        if(distanceMetric instanceof EuclideanDistance)
+            p = 2;
+        else if(distanceMetric instanceof ManhattanDistance)
+            p = 1;
+        else if(distanceMetric instanceof ChebyshevDistance)
+            p = Double.POSITIVE_INFINITY;
+        else if(distanceMetric instanceof MinkowskiDistance)
+            p = ((MinkowskiDistance) distanceMetric).getP();
+        else
+            throw new ArithmeticException("KD Trees are not compatible with the given distance metric.");
+        if(leafSize < 1)
+            throw new IllegalArgumentException("Leaf size must be positive, not " + leafSize);
+        this.distanceMetric = distanceMetric;
+        this.leafSize = leafSize;
+        this.allVecs = new ArrayList<V>(vecs);
+        final int n = allVecs.size();
+        this.dim = n == 0 ? 0 : allVecs.get(0).length();
+        final long length = (long) n*dim;
+        if(length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(n + " points of dimension " + dim 
+                    + " need " + length + " coordinates, more than the " 
+                    + Integer.MAX_VALUE + " that can be stored");
+
+        final double[] origCoords = new double[(int) length];
+        for(int i = 0; i < n; i++)
+            copy(allVecs.get(i), origCoords, i*dim);
+
+        int nodes = nodeCount(n);
+        splitDim = new int[nodes];
+        splitVal = new double[nodes];
+        rightChild = new int[nodes];
+        nodeStart = new int[nodes];
+        nodeEnd = new int[nodes];
+        depth = treeDepth(n);
+        pointIndex = new int[n];
+        for(int i = 0; i < n; i++)
+            pointIndex[i] = i;
+
+        double[] keys = new double[n];
+        if(threadpool == null || threadpool instanceof FakeExecutor)
+            build(0, 0, n, origCoords, keys, null, null);
+        else
+        {
+            ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
+            build(0, 0, n, origCoords, keys, threadpool, mcdl);
+            mcdl.countDown();
+            try
+            {
+                mcdl.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Logger.getLogger(FlatKDTree.class.getName()).log(Level.SEVERE, null, ex);
+                for(int i = 0; i < n; i++)
+                    pointIndex[i] = i;
+                build(0, 0, n, origCoords, keys, null, null);
+            }
+        }
+
+        coords = new double[(int) length];
+        for(int pos = 0; pos < n; pos++)
+            System.arraycopy(origCoords, pointIndex[pos]*dim, coords, pos*dim, dim);
+    }
+
+    /**
+     * Creates a new flat KDTree
+     *
+     * @param vecs the list of vectors to place in this structure
+     * @param distanceMetric the metric to use for the space
+     * @param threadpool the source of threads to use when constructing. Null
+     * is permitted, in which case a serial construction will occur.
+     */
+    public FlatKDTree(List<V> vecs, DistanceMetric distanceMetric, ExecutorService threadpool)
+    {
+        this(vecs, distanceMetric, DEFAULT_LEAF_SIZE, threadpool);
+    }
+
+    /**
+     * Creates a new flat KDTree
+     *
+     * @param vecs the list of vectors to place in this structure
+     * @param distanceMetric the metric to use for the space
+     */
+    public FlatKDTree(List<V> vecs, DistanceMetric distanceMetric)
+    {
+        this(vecs, distanceMetric, null);
+    }
+
+    /**
+     * Copy constructor
+     * @param toCopy the object to copy
+     */
+    protected FlatKDTree(FlatKDTree<V> toCopy)
+    {
+        this.distanceMetric = toCopy.distanceMetric.clone();
+        this.p = toCopy.p;
+        this.leafSize = toCopy.leafSize;
+        this.dim = toCopy.dim;
+        this.allVecs = new ArrayList<V>(toCopy.allVecs);
+        this.coords = Arrays.copyOf(toCopy.coords, toCopy.coords.length);
+        this.pointIndex = Arrays.copyOf(toCopy.pointIndex, toCopy.pointIndex.length);
+        this.splitDim = Arrays.copyOf(toCopy.splitDim, toCopy.splitDim.length);
+        this.splitVal = Arrays.copyOf(toCopy.splitVal, toCopy.splitVal.length);
+        this.rightChild = Arrays.copyOf(toCopy.rightChild, toCopy.rightChild.length);
+        this.nodeStart = Arrays.copyOf(toCopy.nodeStart, toCopy.nodeStart.length);
+        this.nodeEnd = Arrays.copyOf(toCopy.nodeEnd, toCopy.nodeEnd.length);
+        this.depth = toCopy.depth;
+    }
+
+    /**
+     * Returns the maximum number of points stored in a leaf
+     * @return the maximum number of points stored in a leaf
+     */
+    public int getLeafSize()
+    {
+        return leafSize;
+    }
+
+    /**
+     * Returns the number of nodes in a tree over <tt>n</tt> points. The median
+     * split makes this depend only on the number of points.
+     */
+    private int nodeCount(int n)
+    {
+        if(n <= leafSize)
+            return 1;
+        return 1 + nodeCount(n/2) + nodeCount(n-n/2);
+    }
+
+    private int treeDepth(int n)
+    {
+        if(n <= leafSize)
+            return 1;
+        return 1 + treeDepth(n-n/2);
+    }
+
+    private static void copy(Vec v, double[] to, int offset)
+    {
+        if(v.isSparse())
+            for(IndexValue iv : v)
+                to[offset+iv.getIndex()] = iv.getValue();
+        else
+            for(int j = 0; j < v.length(); j++)
+                to[offset+j] = v.get(j);
+    }
+
+    /**
+     * Builds the subtree rooted at <tt>node</tt> over the positions
+     * [lo, hi) of {@link #pointIndex}, which is permuted into tree order
+     *
+     * @param origCoords the coordinates of the points in their original order
+     * @param keys scratch space for the coordinate being split on
+     * @param threadpool the source of threads, or {@code null}
+     * @param mcdl the latch counting the subtrees given to other threads
+     */
+    private void build(int node, final int lo, final int hi, final double[] origCoords, final double[] keys, final ExecutorService threadpool, final ModifiableCountDownLatch mcdl)
+    {
+        nodeStart[node] = lo;
+        nodeEnd[node] = hi;
+        if(hi-lo <= leafSize)
+        {
+            splitDim[node] = -1;
+            return;
+        }
+
+        //split on the dimension with the largest spread
+        double[] min = new double[dim];
+        double[] max = new double[dim];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for(int pos = lo; pos < hi; pos++)
+        {
+            int base = pointIndex[pos]*dim;
+            for(int j = 0; j < dim; j++)
+            {
+                double v = origCoords[base+j];
+                min[j] = Math.min(min[j], v);
+                max[j] = Math.max(max[j], v);
+            }
+        }
+        int axis = 0;
+        for(int j = 1; j < dim; j++)
+            if(max[j]-min[j] > max[axis]-min[axis])
+                axis = j;
+
+        for(int pos = lo; pos < hi; pos++)
+            keys[pos] = origCoords[pointIndex[pos]*dim+axis];
+        final int mid = lo + (hi-lo)/2;
+        QuickSort.select(keys, pointIndex, lo, hi, mid);
+        splitDim[node] = axis;
+        splitVal[node] = keys[mid];
+        final int right = node + 1 + nodeCount(mid-lo);
+        rightChild[node] = right;
+
+        if(threadpool != null && hi-lo >= PARALLEL_BUILD_SIZE)
+        {
+            mcdl.countUp();
+            threadpool.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        build(right, mid, hi, origCoords, keys, threadpool, mcdl);
+                    }
+                    finally
+                    {
+                        mcdl.countDown();
+                    }
+                }
+            });
+        }
+        else
+            build(right, mid, hi, origCoords, keys, threadpool, mcdl);
+        build(node+1, lo, mid, origCoords, keys, threadpool, mcdl);
+    }
+
+    /**
+     * The per thread space used by searches
+     */
+    private class Scratch
+    {
+        final double[] query = new double[dim];
+        final int[] stackNode = new int[depth+2];
+        final double[] stackBound = new double[depth+2];
+        final NeighborHeap heap = new NeighborHeap(DEFAULT_LEAF_SIZE);
+    }
+
+    private Scratch getScratch()
+    {
+        if(scratch == null)
+            scratch = new ThreadLocal<Scratch>()
+            {
+                @Override
+                protected Scratch initialValue()
+                {
+                    return new Scratch();
+                }
+            };
+        return scratch.get();
+    }
+
+    private Scratch prepare(Vec query)
+    {
+        if(query.length() != dim)
+            throw new ArithmeticException("Query has " + query.length() + " dimensions, the tree has " + dim);
+        Scratch s = getScratch();
+        if(query.isSparse())
+            Arrays.fill(s.query, 0.0);
+        copy(query, s.query, 0);
+        return s;
+    }
+
+    /**
+     * Computes the distance from the query to the point at the given position
+     * in tree order. The computation stops early if the distance is known to
+     * be greater than the given bound, in which case infinity is returned.
+     */
+    private double dist(double[] q, int pos, double bound)
+    {
+        int base = pos*dim;
+        if(p == 2)
+        {
+            double lim = bound*bound, sum = 0;
+            for(int j = 0; j < dim; j++)
+            {
+                double d = q[j]-coords[base+j];
+                sum += d*d;
+                if(sum > lim)
+                    return Double.POSITIVE_INFINITY;
+            }
+            return Math.sqrt(sum);
+        }
+        else if(p == 1)
+        {
+            double sum = 0;
+            for(int j = 0; j < dim; j++)
+            {
+                sum += Math.abs(q[j]-coords[base+j]);
+                if(sum > bound)
+                    return Double.POSITIVE_INFINITY;
+            }
+            return sum;
+        }
+        else if(Double.isInfinite(p))
+        {
+            double max = 0;
+            for(int j = 0; j < dim; j++)
+            {
+                max = Math.max(max, Math.abs(q[j]-coords[base+j]));
+                if(max > bound)
+                    return Double.POSITIVE_INFINITY;
+            }
+            return max;
+        }
+        double lim = Math.pow(bound, p), sum = 0;
+        for(int j = 0; j < dim; j++)
+        {
+            sum += Math.pow(Math.abs(q[j]-coords[base+j]), p);
+            if(sum > lim)
+                return Double.POSITIVE_INFINITY;
+        }
+        return Math.pow(sum, 1/p);
+    }
+
+    /**
+     * Searches for neighbors of the query, using the heap's bound as the
+     * search radius. Each stacked node carries a lower bound on the distance
+     * to anything under it, so that it is skipped if the radius has since
+     * shrunk below it.
+     *
+     * @param s the scratch space holding the query
+     * @param heap the heap to place neighbors into
+     * @param range the fixed search radius, or infinity to use the heap's
+     * bound for a k-NN search
+     */
+    private void search(Scratch s, NeighborHeap heap, double range)
+    {
+        if(pointIndex.length == 0)
+            return;
+        final double[] q = s.query;
+        final int[] stackNode = s.stackNode;
+        final double[] stackBound = s.stackBound;
+        int top = 0;
+        stackNode[top] = 0;
+        stackBound[top++] = 0;
+        while(top > 0)
+        {
+            top--;
+            int node = stackNode[top];
+            double lowerBound = stackBound[top];
+            double tau = Math.min(range, heap.bound());
+            if(lowerBound > tau)
+                continue;
+            int axis = splitDim[node];
+            if(axis < 0)
+            {
+                for(int pos = nodeStart[node]; pos < nodeEnd[node]; pos++)
+                {
+                    double d = dist(q, pos, tau);
+                    if(d <= tau)
+                    {
+                        heap.add(pointIndex[pos], d);
+                        tau = Math.min(range, heap.bound());
+                    }
+                }
+                continue;
+            }
+            double diff = q[axis]-splitVal[node];
+            int near = node+1, far = rightChild[node];
+            if(diff >= 0)
+            {
+                near = far;
+                far = node+1;
+            }
+            double farBound = Math.max(lowerBound, Math.abs(diff));
+            //far goes on first so that the near side is searched first
+            if(farBound <= tau)
+            {
+                stackNode[top] = far;
+                stackBound[top++] = farBound;
+            }
+            stackNode[top] = near;
+            stackBound[top++] = lowerBound;
+        }
+    }
+
+    @Override
+    public List<? extends VecPaired<V, Double>> search(Vec query, double range)
+    {
+        if(range < 0)
+            throw new IllegalArgumentException("Range must be non negative, not " + range);
+        Scratch s = prepare(query);
+        s.heap.reset(Integer.MAX_VALUE);
+        search(s, s.heap, range);
+        return toList(s.heap);
+    }
+
+    @Override
+    public List<? extends VecPaired<V, Double>> search(Vec query, int neighbors)
+    {
+        if(neighbors < 1)
+            throw new IllegalArgumentException("Invalid number of neighbors to search for: " + neighbors);
+        Scratch s = prepare(query);
+        s.heap.reset(Math.min(neighbors, size()));
+        search(s, s.heap, Double.POSITIVE_INFINITY);
+        return toList(s.heap);
+    }
+
+    private List<VecPaired<V, Double>> toList(NeighborHeap heap)
+    {
+        int[] indices = new int[heap.size()];
+        double[] dists = new double[heap.size()];
+        heap.drainSorted(indices, dists, 0);
+        List<VecPaired<V, Double>> list = new ArrayList<VecPaired<V, Double>>(indices.length);
+        for(int i = 0; i < indices.length; i++)
+            list.add(new VecPaired<V, Double>(allVecs.get(indices[i]), dists[i]));
+        return list;
+    }
+
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                FlatKDTree.this.search(prepare(query), heap, Double.POSITIVE_INFINITY);
+            }
+        }, queries, k, size(), results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                FlatKDTree.this.search(prepare(query), heap, range);
+            }
+        }, queries, range, results, threadpool);
+    }
+
+    @Override
+    public int size()
+    {
+        return pointIndex.length;
+    }
+
+    @Override
+    public FlatKDTree<V> clone()
+    {
+        return new FlatKDTree<V>(this);
+    }
+
+    public static class FlatKDTreeFactory<V extends Vec> implements VectorCollectionFactory<V>
+    {
+        private int leafSize;
+
+        /**
+         * Creates a new factory
+         * @param leafSize the maximum number of points to store in a leaf
+         */
+        public FlatKDTreeFactory(int leafSize)
+        {
+            setLeafSize(leafSize);
+        }
+
+        public FlatKDTreeFactory()
+        {
+            this(DEFAULT_LEAF_SIZE);
+        }
+
+        /**
+         * Sets the maximum number of points to store in a leaf
+         * @param leafSize the maximum number of points to store in a leaf
+         */
+        public void setLeafSize(int leafSize)
+        {
+            if(leafSize < 1)
+                throw new IllegalArgumentException("Leaf size must be positive, not " + leafSize);
+            this.leafSize = leafSize;
+        }
+
+        /**
+         * Returns the maximum number of points to store in a leaf
+         * @return the maximum number of points to store in a leaf
+         */
+        public int getLeafSize()
+        {
+            return leafSize;
+        }
+
+        @Override
+        public VectorCollection<V> getVectorCollection(List<V> source, DistanceMetric distanceMetric)
+        {
+            return getVectorCollection(source, distanceMetric, null);
+        }
+
+        @Override
+        public VectorCollection<V> getVectorCollection(List<V> source, DistanceMetric distanceMetric, ExecutorService threadpool)
+        {
+            return new FlatKDTree<V>(source, distanceMetric, leafSize, threadpool);
+        }
+
+        @Override
+        public FlatKDTreeFactory<V> clone()
+        {
+            return new FlatKDTreeFactory<V>(leafSize);
+        }
+    }
+}
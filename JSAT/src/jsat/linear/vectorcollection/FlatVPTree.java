@@ -0,0 +1,557 @@
+package jsat.linear.vectorcollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jsat.linear.Vec;
+import jsat.linear.VecPaired;
+import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.utils.DoubleList;
+import jsat.utils.FakeExecutor;
+import jsat.utils.ModifiableCountDownLatch;
+import jsat.utils.QuickSort;
+
+/**
+ * A Vantage Point tree that is stored in flat primitive arrays rather than a
+ * graph of node objects. The vectors are kept in the order they appear in the
+ * tree, so the points of a leaf are contiguous, and each leaf point stores its
+ * distance to the vantage point above it for pruning. Each internal node holds
+ * a randomly chosen vantage point, and splits the rest of its points at the
+ * median distance from it. <br>
+ * The nodes are stored in pre-order, so the left child of a node is always the
+ * next node, and only the position of the right child is stored. Searches walk
+ * the tree with an explicit stack, and the scratch space of each thread is
+ * reused between queries.
+ * <br><br>
+ * Like {@link VPTree}, the distance metric must obey the triangle inequality.
+ *
+ * @author Edward Raff
+ */
+public class FlatVPTree<V extends Vec> implements IndexedVectorCollection<V>
+{
+    /**
+     * The default maximum number of points stored in a leaf
+     */
+    public static final int DEFAULT_LEAF_SIZE = 16;
+    /**
+     * The smallest number of points for which the build of a subtree will be
+     * given to another thread
+     */
+    private static final int PARALLEL_BUILD_SIZE = 4096;
+
+    private DistanceMetric dm;
+    private int leafSize;
+    /**
+     * The vectors in tree order
+     */
+    private List<V> vecs;
+    private List<Double> distCache;
+    /**
+     * The index in the original list of each point in tree order
+     */
+    private int[] pointIndex;
+    /**
+     * The inverse of {@link #pointIndex}
+     */
+    private int[] treePosition;
+    /**
+     * The distance of each point in a leaf to the vantage point of the leaf's
+     * parent. Undefined for other points.
+     */
+    private double[] parentDist;
+    /**
+     * The node index of the right child of each node, or -1 if it is a leaf.
+     * The left child of node <i>i</i> is always <i>i+1</i>.
+     */
+    private int[] rightChild;
+    /**
+     * The range of points in tree order that each node holds. The vantage
+     * point of an internal node is its first point.
+     */
+    private int[] nodeStart, nodeEnd;
+    /**
+     * The smallest and largest distance from the vantage point of each node's
+     * parent to the points of the node
+     */
+    private double[] low, high;
+    private int depth;
+    private transient ThreadLocal<Scratch> scratch;
+
+    /**
+     * Creates a new flat VP tree
+     *
+     * @param list the vectors to place in the tree
+     * @param dm the distance metric to use
+     * @param leafSize the maximum number of points to store in a leaf, at
+     * least 2
+     * @param rand the source of randomness for choosing vantage points
+     * @param threadpool the source of threads to use when constructing. Null
+     * is permitted, in which case a serial construction will occur.
+     */
+    public FlatVPTree(List<V> list, DistanceMetric dm, int leafSize, Random rand, ExecutorService threadpool)
+    {
+        if(!dm.isSubadditive())
+            throw new RuntimeException("VPTree only supports metrics that support the triangle inequality");
+        if(leafSize < 2)
+            throw new IllegalArgumentException("Leaf size must be at least 2, not " + leafSize);
+        this.dm = dm;
+        this.leafSize = leafSize;
+        final List<V> origVecs = new ArrayList<V>(list);
+        final int n = origVecs.size();
+        final boolean parallel = threadpool != null && !(threadpool instanceof FakeExecutor);
+        final List<Double> origCache = parallel ? dm.getAccelerationCache(origVecs, threadpool) : dm.getAccelerationCache(origVecs);
+
+        int nodes = nodeCount(n);
+        rightChild = new int[nodes];
+        nodeStart = new int[nodes];
+        nodeEnd = new int[nodes];
+        low = new double[nodes];
+        high = new double[nodes];
+        depth = treeDepth(n);
+        pointIndex = new int[n];
+        for(int i = 0; i < n; i++)
+            pointIndex[i] = i;
+        parentDist = new double[n];
+        low[0] = 0;
+        high[0] = Double.POSITIVE_INFINITY;
+
+        final long seed = rand.nextLong();
+        if(!parallel)
+            build(0, 0, n, seed, origVecs, origCache, null, null);
+        else
+        {
+            ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
+            build(0, 0, n, seed, origVecs, origCache, threadpool, mcdl);
+            mcdl.countDown();
+            try
+            {
+                mcdl.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Logger.getLogger(FlatVPTree.class.getName()).log(Level.SEVERE, null, ex);
+                for(int i = 0; i < n; i++)
+                    pointIndex[i] = i;
+                build(0, 0, n, seed, origVecs, origCache, null, null);
+            }
+        }
+
+        vecs = new ArrayList<V>(n);
+        treePosition = new int[n];
+        for(int pos = 0; pos < n; pos++)
+        {
+            vecs.add(origVecs.get(pointIndex[pos]));
+            treePosition[pointIndex[pos]] = pos;
+        }
+        if(origCache != null)
+        {
+            int perVec = origCache.size()/Math.max(n, 1);
+            DoubleList cache = new DoubleList(origCache.size());
+            for(int pos = 0; pos < n; pos++)
+                for(int c = 0; c < perVec; c++)
+                    cache.add(origCache.get(pointIndex[pos]*perVec+c));
+            distCache = cache;
+        }
+    }
+
+    /**
+     * Creates a new flat VP tree
+     *
+     * @param list the vectors to place in the tree
+     * @param dm the distance metric to use
+     * @param threadpool the source of threads to use when constructing. Null
+     * is permitted, in which case a serial construction will occur.
+     */
+    public FlatVPTree(List<V> list, DistanceMetric dm, ExecutorService threadpool)
+    {
+        this(list, dm, DEFAULT_LEAF_SIZE, new Random(), threadpool);
+    }
+
+    /**
+     * Creates a new flat VP tree
+     *
+     * @param list the vectors to place in the tree
+     * @param dm the distance metric to use
+     */
+    public FlatVPTree(List<V> list, DistanceMetric dm)
+    {
+        this(list, dm, null);
+    }
+
+    /**
+     * Copy constructor
+     * @param toCopy the object to copy
+     */
+    protected FlatVPTree(FlatVPTree<V> toCopy)
+    {
+        this.dm = toCopy.dm.clone();
+        this.leafSize = toCopy.leafSize;
+        this.vecs = new ArrayList<V>(toCopy.vecs);
+        if(toCopy.distCache != null)
+            this.distCache = new DoubleList(toCopy.distCache);
+        this.pointIndex = Arrays.copyOf(toCopy.pointIndex, toCopy.pointIndex.length);
+        this.treePosition = Arrays.copyOf(toCopy.treePosition, toCopy.treePosition.length);
+        this.parentDist = Arrays.copyOf(toCopy.parentDist, toCopy.parentDist.length);
+        this.rightChild = Arrays.copyOf(toCopy.rightChild, toCopy.rightChild.length);
+        this.nodeStart = Arrays.copyOf(toCopy.nodeStart, toCopy.nodeStart.length);
+        this.nodeEnd = Arrays.copyOf(toCopy.nodeEnd, toCopy.nodeEnd.length);
+        this.low = Arrays.copyOf(toCopy.low, toCopy.low.length);
+        this.high = Arrays.copyOf(toCopy.high, toCopy.high.length);
+        this.depth = toCopy.depth;
+    }
+
+    /**
+     * Returns the maximum number of points stored in a leaf
+     * @return the maximum number of points stored in a leaf
+     */
+    public int getLeafSize()
+    {
+        return leafSize;
+    }
+
+    /**
+     * Returns the number of nodes in a tree over <tt>n</tt> points. The median
+     * split makes this depend only on the number of points.
+     */
+    private int nodeCount(int n)
+    {
+        if(n <= leafSize)
+            return 1;
+        return 1 + nodeCount((n-1)/2) + nodeCount(n-1-(n-1)/2);
+    }
+
+    private int treeDepth(int n)
+    {
+        if(n <= leafSize)
+            return 1;
+        return 1 + treeDepth(n-1-(n-1)/2);
+    }
+
+    /**
+     * Builds the subtree rooted at <tt>node</tt> over the positions [lo, hi)
+     * of {@link #pointIndex}, which is permuted into tree order. The distance
+     * of each point to the parent's vantage point is left in
+     * {@link #parentDist}, where it is kept for points that end up in leaves.
+     *
+     * @param seed the seed for the choice of vantage point, which depends only
+     * on the node so the tree is the same with or without threads
+     * @param origVecs the vectors in their original order
+     * @param origCache the acceleration cache of the original order
+     * @param threadpool the source of threads, or {@code null}
+     * @param mcdl the latch counting the subtrees given to other threads
+     */
+    private void build(int node, final int lo, final int hi, final long seed, final List<V> origVecs, final List<Double> origCache, final ExecutorService threadpool, final ModifiableCountDownLatch mcdl)
+    {
+        nodeStart[node] = lo;
+        nodeEnd[node] = hi;
+        if(hi-lo <= leafSize)
+        {
+            rightChild[node] = -1;
+            return;
+        }
+
+        Random rand = new Random(seed + node);
+        int vpPos = lo + rand.nextInt(hi-lo);
+        int vp = pointIndex[vpPos];
+        pointIndex[vpPos] = pointIndex[lo];
+        pointIndex[lo] = vp;
+
+        for(int pos = lo+1; pos < hi; pos++)
+            parentDist[pos] = dm.dist(vp, pointIndex[pos], origVecs, origCache);
+        final int mid = lo + 1 + (hi-lo-1)/2;
+        QuickSort.select(parentDist, pointIndex, lo+1, hi, mid);
+
+        final int left = node+1;
+        final int right = node + 1 + nodeCount(mid-lo-1);
+        rightChild[node] = right;
+        setBounds(left, lo+1, mid);
+        setBounds(right, mid, hi);
+
+        if(threadpool != null && hi-lo >= PARALLEL_BUILD_SIZE)
+        {
+            mcdl.countUp();
+            threadpool.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        build(right, mid, hi, seed, origVecs, origCache, threadpool, mcdl);
+                    }
+                    finally
+                    {
+                        mcdl.countDown();
+                    }
+                }
+            });
+        }
+        else
+            build(right, mid, hi, seed, origVecs, origCache, threadpool, mcdl);
+        build(left, lo+1, mid, seed, origVecs, origCache, threadpool, mcdl);
+    }
+
+    private void setBounds(int node, int from, int to)
+    {
+        double min = Double.POSITIVE_INFINITY, max = 0;
+        for(int pos = from; pos < to; pos++)
+        {
+            min = Math.min(min, parentDist[pos]);
+            max = Math.max(max, parentDist[pos]);
+        }
+        low[node] = min;
+        high[node] = max;
+    }
+
+    /**
+     * The per thread space used by searches
+     */
+    private class Scratch
+    {
+        final int[] stackNode = new int[depth+2];
+        final double[] stackBound = new double[depth+2];
+        /**
+         * The distance from the query to the vantage point of each stacked
+         * node's parent
+         */
+        final double[] stackParent = new double[depth+2];
+        final NeighborHeap heap = new NeighborHeap(DEFAULT_LEAF_SIZE);
+    }
+
+    private Scratch getScratch()
+    {
+        if(scratch == null)
+            scratch = new ThreadLocal<Scratch>()
+            {
+                @Override
+                protected Scratch initialValue()
+                {
+                    return new Scratch();
+                }
+            };
+        return scratch.get();
+    }
+
+    /**
+     * Searches for neighbors of the query, using the heap's bound as the
+     * search radius. Each stacked node carries a lower bound on the distance
+     * to anything under it, so that it is skipped if the radius has since
+     * shrunk below it.
+     *
+     * @param query the query
+     * @param s the scratch space to use
+     * @param heap the heap to place neighbors into
+     * @param range the fixed search radius, or infinity to use the heap's
+     * bound for a k-NN search
+     */
+    private void search(Vec query, Scratch s, NeighborHeap heap, double range)
+    {
+        if(pointIndex.length == 0)
+            return;
+        List<Double> qi = dm.getQueryInfo(query);
+        final int[] stackNode = s.stackNode;
+        final double[] stackBound = s.stackBound;
+        final double[] stackParent = s.stackParent;
+        int top = 0;
+        stackNode[top] = 0;
+        stackBound[top] = 0;
+        stackParent[top++] = -1;//the root has no parent
+        while(top > 0)
+        {
+            top--;
+            int node = stackNode[top];
+            double lowerBound = stackBound[top];
+            double x = stackParent[top];
+            double tau = Math.min(range, heap.bound());
+            if(lowerBound > tau)
+                continue;
+            int start = nodeStart[node];
+            if(rightChild[node] < 0)
+            {
+                for(int pos = start; pos < nodeEnd[node]; pos++)
+                {
+                    //triangle inequality through the parent vantage point
+                    if(x >= 0 && Math.abs(parentDist[pos]-x) > tau)
+                        continue;
+                    double d = dm.dist(pos, query, qi, vecs, distCache);
+                    if(d <= tau)
+                    {
+                        heap.add(pointIndex[pos], d);
+                        tau = Math.min(range, heap.bound());
+                    }
+                }
+                continue;
+            }
+
+            double d = dm.dist(start, query, qi, vecs, distCache);
+            if(d <= tau)
+            {
+                heap.add(pointIndex[start], d);
+                tau = Math.min(range, heap.bound());
+            }
+            int near = node+1, far = rightChild[node];
+            if(d >= (high[near]+low[far])*0.5)
+            {
+                near = far;
+                far = node+1;
+            }
+            double farBound = Math.max(lowerBound, Math.max(low[far]-d, d-high[far]));
+            double nearBound = Math.max(lowerBound, Math.max(low[near]-d, d-high[near]));
+            //far goes on first so that the near side is searched first
+            if(farBound <= tau)
+            {
+                stackNode[top] = far;
+                stackBound[top] = farBound;
+                stackParent[top++] = d;
+            }
+            if(nearBound <= tau)
+            {
+                stackNode[top] = near;
+                stackBound[top] = nearBound;
+                stackParent[top++] = d;
+            }
+        }
+    }
+
+    @Override
+    public List<? extends VecPaired<V, Double>> search(Vec query, double range)
+    {
+        if(range < 0)
+            throw new IllegalArgumentException("Range must be non negative, not " + range);
+        Scratch s = getScratch();
+        s.heap.reset(Integer.MAX_VALUE);
+        search(query, s, s.heap, range);
+        return toList(s.heap);
+    }
+
+    @Override
+    public List<? extends VecPaired<V, Double>> search(Vec query, int neighbors)
+    {
+        if(neighbors < 1)
+            throw new IllegalArgumentException("Invalid number of neighbors to search for: " + neighbors);
+        Scratch s = getScratch();
+        s.heap.reset(Math.min(neighbors, size()));
+        search(query, s, s.heap, Double.POSITIVE_INFINITY);
+        return toList(s.heap);
+    }
+
+    private List<VecPaired<V, Double>> toList(NeighborHeap heap)
+    {
+        int[] indices = new int[heap.size()];
+        double[] dists = new double[heap.size()];
+        heap.drainSorted(indices, dists, 0);
+        List<VecPaired<V, Double>> list = new ArrayList<VecPaired<V, Double>>(indices.length);
+        for(int i = 0; i < indices.length; i++)
+            list.add(new VecPaired<V, Double>(vecs.get(positionOf(indices[i])), dists[i]));
+        return list;
+    }
+
+    /**
+     * Returns the position in tree order of the vector with the given index
+     * in the original list
+     */
+    private int positionOf(int index)
+    {
+        return treePosition[index];
+    }
+
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                FlatVPTree.this.search(query, getScratch(), heap, Double.POSITIVE_INFINITY);
+            }
+        }, queries, k, size(), results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                FlatVPTree.this.search(query, getScratch(), heap, range);
+            }
+        }, queries, range, results, threadpool);
+    }
+
+    @Override
+    public int size()
+    {
+        return pointIndex.length;
+    }
+
+    @Override
+    public FlatVPTree<V> clone()
+    {
+        return new FlatVPTree<V>(this);
+    }
+
+    public static class FlatVPTreeFactory<V extends Vec> implements VectorCollectionFactory<V>
+    {
+        private int leafSize;
+
+        /**
+         * Creates a new factory
+         * @param leafSize the maximum number of points to store in a leaf
+         */
+        public FlatVPTreeFactory(int leafSize)
+        {
+            setLeafSize(leafSize);
+        }
+
+        public FlatVPTreeFactory()
+        {
+            this(DEFAULT_LEAF_SIZE);
+        }
+
+        /**
+         * Sets the maximum number of points to store in a leaf
+         * @param leafSize the maximum number of points to store in a leaf, at
+         * least 2
+         */
+        public void setLeafSize(int leafSize)
+        {
+            if(leafSize < 2)
+                throw new IllegalArgumentException("Leaf size must be at least 2, not " + leafSize);
+            this.leafSize = leafSize;
+        }
+
+        /**
+         * Returns the maximum number of points to store in a leaf
+         * @return the maximum number of points to store in a leaf
+         */
+        public int getLeafSize()
+        {
+            return leafSize;
+        }
+
+        @Override
+        public VectorCollection<V> getVectorCollection(List<V> source, DistanceMetric distanceMetric)
+        {
+            return getVectorCollection(source, distanceMetric, null);
+        }
+
+        @Override
+        public VectorCollection<V> getVectorCollection(List<V> source, DistanceMetric distanceMetric, ExecutorService threadpool)
+        {
+            return new FlatVPTree<V>(source, distanceMetric, leafSize, new Random(), threadpool);
+        }
+
+        @Override
+        public FlatVPTreeFactory<V> clone()
+        {
+            return new FlatVPTreeFactory<V>(leafSize);
+        }
+    }
+}
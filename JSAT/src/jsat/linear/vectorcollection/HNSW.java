@@ -0,0 +1,810 @@
+package jsat.linear.vectorcollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jsat.linear.Vec;
+import jsat.linear.VecPaired;
+import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.utils.DoubleList;
+import jsat.utils.FakeExecutor;
+import jsat.utils.SystemInfo;
+
+/**
+ * An implementation of the Hierarchical Navigable Small World graph, an index
+ * for <i>approximate</i> nearest neighbor search. Every point is a node in a
+ * graph where it is linked to a few of its near neighbors, and searches walk
+ * the graph greedily towards the query. Each node is also placed in a random
+ * number of higher layers, which hold exponentially fewer nodes and longer
+ * links, so that a search can quickly get near the query before descending to
+ * the full graph. <br>
+ * Unlike the tree based collections, the graph does not depend on the
+ * triangle inequality and works with any distance metric, and does not
+ * degrade towards a linear scan in high dimensions. In exchange, the returned
+ * neighbors are not guaranteed to be the true nearest neighbors. The
+ * {@link #setEfSearch(int) efSearch} parameter trades query speed for recall,
+ * and may be changed after the graph is built. <br>
+ * When a thread pool is given, points are inserted concurrently. The result
+ * is then not deterministic, but of the same quality as a serial build.
+ * <br><br>
+ * See: Malkov, Y. A., &amp; Yashunin, D. A. (2016). <i>Efficient and robust
+ * approximate nearest neighbor search using Hierarchical Navigable Small World
+ * graphs</i>. arXiv:1603.09320.
+ *
+ * @author Edward Raff
+ */
+public class HNSW<V extends Vec> implements IndexedVectorCollection<V>
+{
+    /**
+     * The default number of links each node makes per layer
+     */
+    public static final int DEFAULT_M = 16;
+    /**
+     * The default number of candidates considered when inserting a node
+     */
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+    /**
+     * The default number of candidates considered when searching
+     */
+    public static final int DEFAULT_EF_SEARCH = 50;
+    /**
+     * The number of locks guarding the link lists during a concurrent build
+     */
+    private static final int LOCK_STRIPES = 1024;
+
+    private DistanceMetric dm;
+    private List<V> vecs;
+    private List<Double> distCache;
+    private int M;
+    private int efConstruction;
+    private int efSearch;
+    /**
+     * The highest layer each node is in
+     */
+    private int[] levels;
+    /**
+     * The neighbors of each node on every layer it is in. Layer 0 takes the
+     * first 1+2M values and every higher layer the next 1+M. The first value
+     * of each block is the number of neighbors stored in it.
+     */
+    private int[][] links;
+    private int entryPoint;
+    private int maxLevel;
+    /**
+     * Striped locks on the link lists, only present while building
+     */
+    private transient Object[] locks;
+    private transient Object entryLock;
+    private transient ThreadLocal<Scratch> scratch;
+
+    /**
+     * Creates a new HNSW graph over the given vectors
+     *
+     * @param list the vectors to place in the graph
+     * @param dm the distance metric to use
+     * @param M the number of links each node makes on each layer, at least 2.
+     * The bottom layer allows twice as many.
+     * @param efConstruction the number of candidate neighbors considered when
+     * inserting each node
+     * @param efSearch the number of candidates considered when searching
+     * @param rand the source of randomness for choosing the layers of each
+     * node
+     * @param threadpool the source of threads to insert points with. Null is
+     * permitted, in which case a serial construction will occur.
+     */
+    public HNSW(List<V> list, DistanceMetric dm, int M, int efConstruction, int efSearch, Random rand, ExecutorService threadpool)
+    {
+        setM(M);
+        setEfConstruction(efConstruction);
+        setEfSearch(efSearch);
+        this.dm = dm;
+        this.vecs = new ArrayList<V>(list);
+        final int n = vecs.size();
+        final boolean parallel = threadpool != null && !(threadpool instanceof FakeExecutor);
+        distCache = parallel ? dm.getAccelerationCache(vecs, threadpool) : dm.getAccelerationCache(vecs);
+
+        double levelMult = 1/Math.log(M);
+        levels = new int[n];
+        links = new int[n][];
+        for(int i = 0; i < n; i++)
+        {
+            levels[i] = (int) Math.floor(-Math.log(1-rand.nextDouble())*levelMult);
+            links[i] = new int[offset(levels[i]+1)];
+        }
+        entryPoint = -1;
+        maxLevel = -1;
+        if(n == 0)
+            return;
+        entryPoint = 0;
+        maxLevel = levels[0];
+
+        locks = new Object[LOCK_STRIPES];
+        for(int i = 0; i < locks.length; i++)
+            locks[i] = new Object();
+        entryLock = new Object();
+
+        if(!parallel)
+        {
+            for(int i = 1; i < n; i++)
+                insert(i);
+        }
+        else
+        {
+            final AtomicInteger next = new AtomicInteger(1);
+            final CountDownLatch latch = new CountDownLatch(SystemInfo.LogicalCores);
+            for(int id = 0; id < SystemInfo.LogicalCores; id++)
+            {
+                threadpool.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            //take points in order so the graph grows as it would serially
+                            int i;
+                            while((i = next.getAndIncrement()) < n)
+                                insert(i);
+                        }
+                        finally
+                        {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+            try
+            {
+                latch.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Logger.getLogger(HNSW.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        locks = null;
+        entryLock = null;
+    }
+
+    /**
+     * Creates a new HNSW graph using the default parameters
+     *
+     * @param list the vectors to place in the graph
+     * @param dm the distance metric to use
+     * @param threadpool the source of threads to insert points with. Null is
+     * permitted, in which case a serial construction will occur.
+     */
+    public HNSW(List<V> list, DistanceMetric dm, ExecutorService threadpool)
+    {
+        this(list, dm, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH, new Random(), threadpool);
+    }
+
+    /**
+     * Creates a new HNSW graph using the default parameters
+     *
+     * @param list the vectors to place in the graph
+     * @param dm the distance metric to use
+     */
+    public HNSW(List<V> list, DistanceMetric dm)
+    {
+        this(list, dm, null);
+    }
+
+    /**
+     * Copy constructor
+     * @param toCopy the object to copy
+     */
+    protected HNSW(HNSW<V> toCopy)
+    {
+        this.dm = toCopy.dm.clone();
+        this.vecs = new ArrayList<V>(toCopy.vecs);
+        if(toCopy.distCache != null)
+            this.distCache = new DoubleList(toCopy.distCache);
+        this.M = toCopy.M;
+        this.efConstruction = toCopy.efConstruction;
+        this.efSearch = toCopy.efSearch;
+        this.levels = Arrays.copyOf(toCopy.levels, toCopy.levels.length);
+        this.links = new int[toCopy.links.length][];
+        for(int i = 0; i < links.length; i++)
+            this.links[i] = Arrays.copyOf(toCopy.links[i], toCopy.links[i].length);
+        this.entryPoint = toCopy.entryPoint;
+        this.maxLevel = toCopy.maxLevel;
+    }
+
+    private void setM(int M)
+    {
+        if(M < 2)
+            throw new IllegalArgumentException("M must be at least 2, not " + M);
+        this.M = M;
+    }
+
+    /**
+     * Returns the number of links each node makes per layer
+     * @return the number of links each node makes per layer
+     */
+    public int getM()
+    {
+        return M;
+    }
+
+    private void setEfConstruction(int efConstruction)
+    {
+        if(efConstruction < 1)
+            throw new IllegalArgumentException("efConstruction must be positive, not " + efConstruction);
+        this.efConstruction = efConstruction;
+    }
+
+    /**
+     * Returns the number of candidates that were considered when inserting
+     * each node
+     * @return the number of candidates used when building
+     */
+    public int getEfConstruction()
+    {
+        return efConstruction;
+    }
+
+    /**
+     * Sets the number of candidates considered when searching. Larger values
+     * find the true nearest neighbors more often at the cost of slower
+     * searches. At least <i>k</i> candidates are always considered when
+     * searching for <i>k</i> neighbors.
+     *
+     * @param efSearch the number of candidates considered when searching
+     */
+    public void setEfSearch(int efSearch)
+    {
+        if(efSearch < 1)
+            throw new IllegalArgumentException("efSearch must be positive, not " + efSearch);
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Returns the number of candidates considered when searching
+     * @return the number of candidates considered when searching
+     */
+    public int getEfSearch()
+    {
+        return efSearch;
+    }
+
+    /**
+     * Returns the position in a node's link array where the given layer
+     * starts
+     */
+    private int offset(int level)
+    {
+        if(level == 0)
+            return 0;
+        return 1 + 2*M + (level-1)*(1+M);
+    }
+
+    /**
+     * Returns the maximum number of links a node may have on a layer
+     */
+    private int maxLinks(int level)
+    {
+        return level == 0 ? 2*M : M;
+    }
+
+    private Object lock(int node)
+    {
+        return locks[node & (LOCK_STRIPES-1)];
+    }
+
+    /**
+     * Copies the neighbors of a node on one layer into the buffer
+     * @return the number of neighbors copied
+     */
+    private int readLinks(int node, int level, int[] buffer)
+    {
+        int[] l = links[node];
+        int off = offset(level);
+        Object[] curLocks = locks;
+        if(curLocks == null)
+        {
+            int count = l[off];
+            System.arraycopy(l, off+1, buffer, 0, count);
+            return count;
+        }
+        synchronized(curLocks[node & (LOCK_STRIPES-1)])
+        {
+            int count = l[off];
+            System.arraycopy(l, off+1, buffer, 0, count);
+            return count;
+        }
+    }
+
+    /**
+     * The per thread space used by searches and insertions
+     */
+    private class Scratch
+    {
+        /**
+         * Marks the nodes visited by the current search with its epoch, so
+         * the marks need not be cleared between searches
+         */
+        int[] visited = new int[vecs.size()];
+        int epoch = 0;
+        /**
+         * Candidates to expand, keyed on negated distance
+         */
+        final NeighborHeap candidates = new NeighborHeap(64);
+        /**
+         * The closest nodes found so far
+         */
+        final NeighborHeap results = new NeighborHeap(64);
+        final int[] neighbors = new int[2*M+1];
+        int[] foundIdx = new int[64];
+        double[] foundDist = new double[64];
+        final int[] pruneIdx = new int[2*M+1];
+        final double[] pruneDist = new double[2*M+1];
+
+        void nextEpoch()
+        {
+            if(++epoch == 0)
+            {
+                Arrays.fill(visited, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * Moves the results into {@link #foundIdx} and {@link #foundDist},
+         * closest first
+         * @return the number of results
+         */
+        int drainResults()
+        {
+            int count = results.size();
+            if(foundIdx.length < count)
+            {
+                foundIdx = new int[count];
+                foundDist = new double[count];
+            }
+            results.drainSorted(foundIdx, foundDist, 0);
+            return count;
+        }
+    }
+
+    private Scratch getScratch()
+    {
+        if(scratch == null)
+            scratch = new ThreadLocal<Scratch>()
+            {
+                @Override
+                protected Scratch initialValue()
+                {
+                    return new Scratch();
+                }
+            };
+        return scratch.get();
+    }
+
+    /**
+     * Returns the distance from a node to the query, which is either the node
+     * <tt>qNode</tt> or, if it is negative, the vector <tt>q</tt>
+     */
+    private double dist(int node, int qNode, Vec q, List<Double> qi)
+    {
+        if(qNode >= 0)
+            return dm.dist(qNode, node, vecs, distCache);
+        return dm.dist(node, q, qi, vecs, distCache);
+    }
+
+    /**
+     * Walks greedily from the entry point towards the query on one layer,
+     * moving to the closest neighbor until no neighbor is closer.
+     * @return the closest node found, whose distance is left in
+     * <tt>epDist[0]</tt>
+     */
+    private int greedy(int ep, double[] epDist, int level, int qNode, Vec q, List<Double> qi, Scratch s)
+    {
+        boolean changed = true;
+        while(changed)
+        {
+            changed = false;
+            int count = readLinks(ep, level, s.neighbors);
+            for(int i = 0; i < count; i++)
+            {
+                int e = s.neighbors[i];
+                double d = dist(e, qNode, q, qi);
+                if(d < epDist[0])
+                {
+                    epDist[0] = d;
+                    ep = e;
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * Performs a best first search on one layer, keeping the <tt>ef</tt>
+     * closest nodes found in {@link Scratch#results}. The search stops once
+     * the closest unexpanded candidate is farther than all of them.
+     */
+    private void searchLayer(int ep, double epDist, int ef, int level, int qNode, Vec q, List<Double> qi, Scratch s)
+    {
+        s.nextEpoch();
+        final int[] visited = s.visited;
+        final int epoch = s.epoch;
+        final NeighborHeap candidates = s.candidates;
+        final NeighborHeap results = s.results;
+        candidates.reset(Integer.MAX_VALUE);
+        results.reset(ef);
+        if(qNode >= 0)
+            visited[qNode] = epoch;
+        visited[ep] = epoch;
+        candidates.add(ep, -epDist);
+        results.add(ep, epDist);
+        while(candidates.size() > 0)
+        {
+            int c = candidates.peekIndex();
+            double cDist = -candidates.peekDistance();
+            candidates.poll();
+            if(cDist > results.bound())
+                break;
+            int count = readLinks(c, level, s.neighbors);
+            for(int i = 0; i < count; i++)
+            {
+                int e = s.neighbors[i];
+                if(visited[e] == epoch)
+                    continue;
+                visited[e] = epoch;
+                double d = dist(e, qNode, q, qi);
+                if(d < results.bound())
+                {
+                    candidates.add(e, -d);
+                    results.add(e, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks the neighbors to link to from candidates sorted by distance. A
+     * candidate is kept only if it is closer to the new node than to every
+     * neighbor already kept, which spreads the links out in different
+     * directions rather than into one tight cluster.
+     *
+     * @param idx the candidates, closest first. The kept ones are moved to
+     * the front.
+     * @param dists the distances of the candidates to the node
+     * @param count the number of candidates
+     * @param maxOut the maximum number of neighbors to keep
+     * @return the number of neighbors kept
+     */
+    private int selectNeighbors(int[] idx, double[] dists, int count, int maxOut)
+    {
+        int kept = 0;
+        for(int i = 0; i < count && kept < maxOut; i++)
+        {
+            int c = idx[i];
+            boolean good = true;
+            for(int j = 0; j < kept && good; j++)
+                if(dm.dist(c, idx[j], vecs, distCache) < dists[i])
+                    good = false;
+            if(good)
+            {
+                idx[kept] = c;
+                dists[kept++] = dists[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Adds the node <tt>q</tt> to the links of node <tt>e</tt>. If <tt>e</tt>
+     * has no room left, its links are chosen again from its current ones and
+     * <tt>q</tt>.
+     */
+    private void addLink(int e, int q, double dist, int level, Scratch s)
+    {
+        synchronized(lock(e))
+        {
+            int[] l = links[e];
+            int off = offset(level);
+            int count = l[off];
+            int max = maxLinks(level);
+            if(count < max)
+            {
+                l[off+1+count] = q;
+                l[off] = count+1;
+                return;
+            }
+            final int[] idx = s.pruneIdx;
+            final double[] d = s.pruneDist;
+            //insertion sort the old links and the new one by distance to e
+            for(int i = 0; i <= count; i++)
+            {
+                int c = i < count ? l[off+1+i] : q;
+                double cd = i < count ? dm.dist(e, c, vecs, distCache) : dist;
+                int j = i;
+                while(j > 0 && d[j-1] > cd)
+                {
+                    idx[j] = idx[j-1];
+                    d[j] = d[j-1];
+                    j--;
+                }
+                idx[j] = c;
+                d[j] = cd;
+            }
+            int kept = selectNeighbors(idx, d, count+1, max);
+            System.arraycopy(idx, 0, l, off+1, kept);
+            l[off] = kept;
+        }
+    }
+
+    /**
+     * Inserts a node into the graph
+     * @param q the index of the node
+     */
+    private void insert(int q)
+    {
+        Scratch s = getScratch();
+        int level = levels[q];
+        int ep, top;
+        synchronized(entryLock)
+        {
+            ep = entryPoint;
+            top = maxLevel;
+        }
+        double[] epDist = new double[]{dist(ep, q, null, null)};
+        for(int lc = top; lc > level; lc--)
+            ep = greedy(ep, epDist, lc, q, null, null, s);
+        for(int lc = Math.min(top, level); lc >= 0; lc--)
+        {
+            searchLayer(ep, epDist[0], efConstruction, lc, q, null, null, s);
+            int found = s.drainResults();
+            ep = s.foundIdx[0];
+            epDist[0] = s.foundDist[0];
+            int kept = selectNeighbors(s.foundIdx, s.foundDist, found, M);
+            synchronized(lock(q))
+            {
+                int off = offset(lc);
+                System.arraycopy(s.foundIdx, 0, links[q], off+1, kept);
+                links[q][off] = kept;
+            }
+            for(int i = 0; i < kept; i++)
+                addLink(s.foundIdx[i], q, s.foundDist[i], lc, s);
+        }
+        if(level > top)
+            synchronized(entryLock)
+            {
+                if(level > maxLevel)
+                {
+                    maxLevel = level;
+                    entryPoint = q;
+                }
+            }
+    }
+
+    /**
+     * Finds the approximate nearest neighbors of a query, leaving them in the
+     * scratch space's found arrays
+     * @return the number of neighbors found
+     */
+    private int searchBase(Vec query, List<Double> qi, int ef, Scratch s)
+    {
+        if(entryPoint < 0)
+            return 0;
+        int ep = entryPoint;
+        double[] epDist = new double[]{dist(ep, -1, query, qi)};
+        for(int lc = maxLevel; lc > 0; lc--)
+            ep = greedy(ep, epDist, lc, -1, query, qi, s);
+        searchLayer(ep, epDist[0], ef, 0, -1, query, qi, s);
+        return s.drainResults();
+    }
+
+    private void searchKNN(Vec query, int k, NeighborHeap heap)
+    {
+        Scratch s = getScratch();
+        int found = searchBase(query, dm.getQueryInfo(query), Math.max(efSearch, k), s);
+        for(int i = 0; i < found; i++)
+            heap.add(s.foundIdx[i], s.foundDist[i]);
+    }
+
+    /**
+     * Searches for the points within the range, doubling the number of
+     * candidates considered while all of them are still within range
+     */
+    private void searchRange(Vec query, double range, NeighborHeap heap)
+    {
+        Scratch s = getScratch();
+        List<Double> qi = dm.getQueryInfo(query);
+        int ef = efSearch;
+        int found = searchBase(query, qi, ef, s);
+        while(found == ef && s.foundDist[found-1] <= range && ef < size())
+        {
+            ef = (int) Math.min(size(), ef*2L);
+            found = searchBase(query, qi, ef, s);
+        }
+        for(int i = 0; i < found && s.foundDist[i] <= range; i++)
+            heap.add(s.foundIdx[i], s.foundDist[i]);
+    }
+
+    @Override
+    public List<? extends VecPaired<V, Double>> search(Vec query, double range)
+    {
+        if(range < 0)
+            throw new IllegalArgumentException("Range must be non negative, not " + range);
+        NeighborHeap heap = new NeighborHeap(efSearch);
+        searchRange(query, range, heap);
+        return toList(heap);
+    }
+
+    @Override
+    public List<? extends VecPaired<V, Double>> search(Vec query, int neighbors)
+    {
+        if(neighbors < 1)
+            throw new IllegalArgumentException("Invalid number of neighbors to search for: " + neighbors);
+        NeighborHeap heap = new NeighborHeap(Math.min(neighbors, size()));
+        heap.reset(Math.min(neighbors, size()));
+        searchKNN(query, neighbors, heap);
+        return toList(heap);
+    }
+
+    private List<VecPaired<V, Double>> toList(NeighborHeap heap)
+    {
+        int[] indices = new int[heap.size()];
+        double[] dists = new double[heap.size()];
+        heap.drainSorted(indices, dists, 0);
+        List<VecPaired<V, Double>> list = new ArrayList<VecPaired<V, Double>>(indices.length);
+        for(int i = 0; i < indices.length; i++)
+            list.add(new VecPaired<V, Double>(vecs.get(indices[i]), dists[i]));
+        return list;
+    }
+
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, final int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                searchKNN(query, k, heap);
+            }
+        }, queries, k, size(), results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                searchRange(query, range, heap);
+            }
+        }, queries, range, results, threadpool);
+    }
+
+    @Override
+    public int size()
+    {
+        return vecs.size();
+    }
+
+    @Override
+    public HNSW<V> clone()
+    {
+        return new HNSW<V>(this);
+    }
+
+    public static class HNSWFactory<V extends Vec> implements VectorCollectionFactory<V>
+    {
+        private int M;
+        private int efConstruction;
+        private int efSearch;
+
+        /**
+         * Creates a new factory
+         * @param M the number of links each node makes per layer
+         * @param efConstruction the number of candidates considered when
+         * inserting each node
+         * @param efSearch the number of candidates considered when searching
+         */
+        public HNSWFactory(int M, int efConstruction, int efSearch)
+        {
+            setM(M);
+            setEfConstruction(efConstruction);
+            setEfSearch(efSearch);
+        }
+
+        public HNSWFactory()
+        {
+            this(DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+        }
+
+        /**
+         * Sets the number of links each node makes per layer. Larger values
+         * give better recall in high dimensions, but use more memory and take
+         * longer to build.
+         * @param M the number of links each node makes per layer, at least 2
+         */
+        public void setM(int M)
+        {
+            if(M < 2)
+                throw new IllegalArgumentException("M must be at least 2, not " + M);
+            this.M = M;
+        }
+
+        /**
+         * Returns the number of links each node makes per layer
+         * @return the number of links each node makes per layer
+         */
+        public int getM()
+        {
+            return M;
+        }
+
+        /**
+         * Sets the number of candidates considered when inserting each node.
+         * Larger values build a better graph more slowly.
+         * @param efConstruction the number of candidates used when building
+         */
+        public void setEfConstruction(int efConstruction)
+        {
+            if(efConstruction < 1)
+                throw new IllegalArgumentException("efConstruction must be positive, not " + efConstruction);
+            this.efConstruction = efConstruction;
+        }
+
+        /**
+         * Returns the number of candidates considered when inserting each node
+         * @return the number of candidates used when building
+         */
+        public int getEfConstruction()
+        {
+            return efConstruction;
+        }
+
+        /**
+         * Sets the number of candidates considered when searching
+         * @param efSearch the number of candidates considered when searching
+         */
+        public void setEfSearch(int efSearch)
+        {
+            if(efSearch < 1)
+                throw new IllegalArgumentException("efSearch must be positive, not " + efSearch);
+            this.efSearch = efSearch;
+        }
+
+        /**
+         * Returns the number of candidates considered when searching
+         * @return the number of candidates considered when searching
+         */
+        public int getEfSearch()
+        {
+            return efSearch;
+        }
+
+        @Override
+        public VectorCollection<V> getVectorCollection(List<V> source, DistanceMetric distanceMetric)
+        {
+            return getVectorCollection(source, distanceMetric, null);
+        }
+
+        @Override
+        public VectorCollection<V> getVectorCollection(List<V> source, DistanceMetric distanceMetric, ExecutorService threadpool)
+        {
+            return new HNSW<V>(source, distanceMetric, M, efConstruction, efSearch, new Random(), threadpool);
+        }
+
+        @Override
+        public HNSWFactory<V> clone()
+        {
+            return new HNSWFactory<V>(M, efConstruction, efSearch);
+        }
+    }
+}
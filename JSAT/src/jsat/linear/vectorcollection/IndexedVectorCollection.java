@@ -0,0 +1,55 @@
+package jsat.linear.vectorcollection;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import jsat.linear.Vec;
+
+/**
+ * A Vector Collection that knows the index of each of its vectors in the list
+ * it was created from, and so can perform batch searches that return the
+ * neighbors of many queries by index, without creating any per neighbor
+ * objects. <br>
+ * Code that may be given any collection should use
+ * {@link VectorCollectionUtils#searchKNN(jsat.linear.vectorcollection.VectorCollection, java.util.List, java.util.List, int, jsat.linear.vectorcollection.NeighborResults, java.util.concurrent.ExecutorService) VectorCollectionUtils.searchKNN}
+ * and
+ * {@link VectorCollectionUtils#searchRange(jsat.linear.vectorcollection.VectorCollection, java.util.List, java.util.List, double, jsat.linear.vectorcollection.NeighborResults, java.util.concurrent.ExecutorService) VectorCollectionUtils.searchRange},
+ * which use these methods when they are available.
+ *
+ * @author Edward Raff
+ */
+public interface IndexedVectorCollection<V extends Vec> extends VectorCollection<V>
+{
+    /**
+     * Searches the space for the k neighbors that are closest to each of the 
+     * given query vectors. The neighbors are returned by their index in the 
+     * list of vectors this collection was created from, and no per neighbor 
+     * objects are created. 
+     * 
+     * @param queries the vectors we want to find the neighbors of
+     * @param k the maximum number of neighbors to return for each query
+     * @param results the results object to store the neighbors in, reusing 
+     * its memory, or {@code null} to create a new one
+     * @param threadpool the source of threads to search in parallel, or 
+     * {@code null} to search in the calling thread
+     * @return the k nearest neighbors of each query, in sorted order from 
+     * closest to farthest
+     */
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool);
+    
+    /**
+     * Searches the space for all vectors that are within a given range of 
+     * each of the given query vectors. The neighbors are returned by their 
+     * index in the list of vectors this collection was created from, and no 
+     * per neighbor objects are created. 
+     * 
+     * @param queries the vectors we want to find others near
+     * @param range the search range around each query
+     * @param results the results object to store the neighbors in, reusing 
+     * its memory, or {@code null} to create a new one
+     * @param threadpool the source of threads to search in parallel, or 
+     * {@code null} to search in the calling thread
+     * @return all vectors within the range of each query, in sorted order 
+     * from closest to farthest
+     */
+    public NeighborResults searchRange(List<? extends Vec> queries, double range, NeighborResults results, ExecutorService threadpool);
+}
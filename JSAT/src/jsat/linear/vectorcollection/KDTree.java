@@ -23,7 +23,7 @@ import jsat.utils.*;
  * 
  * @author Edward Raff
  */
-public class KDTree<V extends Vec> implements VectorCollection<V>
+public class KDTree<V extends Vec> implements IndexedVectorCollection<V>
 {
     private DistanceMetric distanceMetric;
     private KDNode root;
@@ -80,8 +80,10 @@ public class KDTree<V extends Vec> implements VectorCollection<V>
             this.root = buildTree(vecIndices, 0, null, null);
         else
         {
+            //counts the calling thread and every task building a subtree
             ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
             this.root = buildTree(vecIndices, 0, threadpool, mcdl);
+            mcdl.countDown();
             try
             {
                 mcdl.await();
@@ -220,19 +222,11 @@ public class KDTree<V extends Vec> implements VectorCollection<V>
     private KDNode buildTree(final List<Integer> data, final int depth, final ExecutorService threadpool, final ModifiableCountDownLatch mcdl)
     {
         if(data == null || data.isEmpty())
-        {
-            if(threadpool != null)//Threadpool null checks since no thread pool means do single threaded
-                mcdl.countDown();
             return null;
-        }
         int mod = allVecs.get(0).length();
         
         if(data.size() == 1)
-        {
-            if(threadpool != null)
-                mcdl.countDown();
             return new KDNode(data.get(0), depth % mod);
-        }
         
         int pivot = -1;
         if(pvSelection == PivotSelection.Incremental)
@@ -286,6 +280,8 @@ public class KDTree<V extends Vec> implements VectorCollection<V>
                 public void run()
                 {
                     node.setRight(buildTree(data.subList(medianIndex+1, data.size()), depth+1, threadpool, mcdl));
+                    //only done once the subtree is attached, so it is seen by the constructor
+                    mcdl.countDown();
                 }
             });
             
@@ -375,10 +371,78 @@ public class KDTree<V extends Vec> implements VectorCollection<V>
         }
         
         distanceSearch(query, qi, close, knns, range);
-        if(diff*diff <= range)
+        if(Math.abs(diff) <= range)
             distanceSearch(query, qi, far, knns, range);
     }
     
+    /**
+     * Performs a k-NN search placing the neighbors by index into the heap. 
+     * Each node is pushed with a lower bound on the distance of anything below 
+     * it, so that nodes are skipped if the bound has since shrunk past it. 
+     */
+    private void knnKDSearch(Vec query, List<Double> qi, NeighborHeap heap)
+    {
+        List<KDNode> stack = new ArrayList<KDNode>();
+        DoubleList lowerBounds = new DoubleList();
+        if(root != null)
+        {
+            stack.add(root);
+            lowerBounds.add(0.0);
+        }
+        
+        while(!stack.isEmpty())
+        {
+            KDNode node = stack.remove(stack.size()-1);
+            double lowerBound = lowerBounds.removeD(lowerBounds.size()-1);
+            if(lowerBound > heap.bound())
+                continue;
+            V curData = allVecs.get(node.locatin);
+            heap.add(node.locatin, distanceMetric.dist(node.locatin, query, qi, allVecs, distCache));
+            
+            double diff = query.get(node.axis) - curData.get(node.axis);
+            KDNode close = node.left, far = node.right;
+            if(diff > 0)
+            {
+                close = node.right;
+                far = node.left;
+            }
+            //far goes on first so that the close side is searched first
+            if(far != null && Math.abs(diff) <= heap.bound())
+            {
+                stack.add(far);
+                lowerBounds.add(Math.max(lowerBound, Math.abs(diff)));
+            }
+            if(close != null)
+            {
+                stack.add(close);
+                lowerBounds.add(lowerBound);
+            }
+        }
+    }
+    
+    private void distanceSearch(Vec query, List<Double> qi, KDNode node, NeighborHeap heap, double range)
+    {
+        if(node == null)
+            return;
+        double distance = distanceMetric.dist(node.locatin, query, qi, allVecs, distCache);
+        
+        if(distance <= range)
+            heap.add(node.locatin, distance);
+        
+        double diff = query.get(node.axis) - allVecs.get(node.locatin).get(node.axis);
+        
+        KDNode close = node.left, far = node.right;
+        if(diff > 0)
+        {
+            close = node.right;
+            far = node.left;
+        }
+        
+        distanceSearch(query, qi, close, heap, range);
+        if(Math.abs(diff) <= range)
+            distanceSearch(query, qi, far, heap, range);
+    }
+    
     @Override
     public int size()
     {
@@ -402,6 +466,34 @@ public class KDTree<V extends Vec> implements VectorCollection<V>
         
     }
 
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                List<Double> qi = distanceMetric.supportsAcceleration() ? distanceMetric.getQueryInfo(query) : null;
+                knnKDSearch(query, qi, heap);
+            }
+        }, queries, k, size, results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                List<Double> qi = distanceMetric.supportsAcceleration() ? distanceMetric.getQueryInfo(query) : null;
+                distanceSearch(query, qi, root, heap, range);
+            }
+        }, queries, range, results, threadpool);
+    }
+
     @Override
     public KDTree<V> clone()
     {
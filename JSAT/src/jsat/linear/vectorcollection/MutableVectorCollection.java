@@ -0,0 +1,42 @@
+package jsat.linear.vectorcollection;
+
+import jsat.linear.Vec;
+
+/**
+ * A Vector Collection that can be changed after it is built, by inserting new
+ * vectors and removing old ones, without building the whole collection again.
+ * <br>
+ * Every vector has a fixed index, which is the index reported by
+ * {@link #searchKNN(java.util.List, int, jsat.linear.vectorcollection.NeighborResults, java.util.concurrent.ExecutorService) batch searches}.
+ * The vectors the collection was built from keep their position in the
+ * source list as their index, and each inserted vector gets the next unused
+ * index. Removing a vector does not change the index of any other vector, and
+ * the index of a removed vector is never reused. {@link #size() } is the
+ * number of vectors currently in the collection.
+ * <br><br>
+ * Searches may be performed concurrently with each other, but not with
+ * inserts or removals.
+ *
+ * @author Edward Raff
+ */
+public interface MutableVectorCollection<V extends Vec> extends IndexedVectorCollection<V>
+{
+    /**
+     * Adds a new vector to the collection
+     * @param x the vector to add
+     * @return the index of the new vector
+     */
+    public int insert(V x);
+
+    /**
+     * Removes a vector from the collection
+     * @param index the index of the vector to remove
+     * @return {@code true} if the vector was removed, or {@code false} if it
+     * had already been removed
+     * @throws IndexOutOfBoundsException if no vector was ever given the index
+     */
+    public boolean remove(int index);
+
+    @Override
+    public MutableVectorCollection<V> clone();
+}
@@ -0,0 +1,172 @@
+package jsat.linear.vectorcollection;
+
+import java.util.Arrays;
+
+/**
+ * A max heap of (index, distance) pairs stored in primitive arrays, used to
+ * collect the neighbors of one query during a batch search without creating
+ * an object per candidate. The heap may be bounded, in which case it keeps
+ * only the closest candidates, or unbounded for range queries. It is meant to
+ * be reset and reused for every query a thread performs. Storing negated
+ * distances turns it into a min heap, which is used as a queue of candidates
+ * to expand.
+ *
+ * @author Edward Raff
+ */
+class NeighborHeap
+{
+    private int[] indices;
+    private double[] dists;
+    private int size;
+    private int maxSize;
+
+    public NeighborHeap(int initialCapacity)
+    {
+        initialCapacity = Math.max(initialCapacity, 1);
+        indices = new int[initialCapacity];
+        dists = new double[initialCapacity];
+        maxSize = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Empties the heap
+     * @param maxSize the maximum number of neighbors to keep, or
+     * {@link Integer#MAX_VALUE} to keep everything that is added
+     */
+    public void reset(int maxSize)
+    {
+        this.size = 0;
+        this.maxSize = maxSize;
+        if(maxSize != Integer.MAX_VALUE && indices.length < maxSize)
+        {
+            indices = new int[maxSize];
+            dists = new double[maxSize];
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if the heap holds its maximum number of neighbors
+     * @return {@code true} if the heap is full
+     */
+    public boolean isFull()
+    {
+        return size >= maxSize;
+    }
+
+    /**
+     * Returns the distance a candidate must be under to enter the heap, which
+     * is infinite until the heap is full
+     * @return the current search bound
+     */
+    public double bound()
+    {
+        if(size < maxSize)
+            return Double.POSITIVE_INFINITY;
+        return dists[0];
+    }
+
+    /**
+     * Offers a candidate neighbor to the heap. If the heap is full, the
+     * candidate replaces the farthest neighbor only if it is closer.
+     * @param index the index of the neighbor in its collection
+     * @param dist the distance of the neighbor to the query
+     */
+    public void add(int index, double dist)
+    {
+        if(size < maxSize)
+        {
+            if(size == indices.length)
+            {
+                int newLen = (int) Math.min(Integer.MAX_VALUE-8, Math.max(4L, size*2L));
+                indices = Arrays.copyOf(indices, newLen);
+                dists = Arrays.copyOf(dists, newLen);
+            }
+            int pos = size++;
+            while(pos > 0)//sift up
+            {
+                int parent = (pos-1)/2;
+                if(dists[parent] >= dist)
+                    break;
+                indices[pos] = indices[parent];
+                dists[pos] = dists[parent];
+                pos = parent;
+            }
+            indices[pos] = index;
+            dists[pos] = dist;
+        }
+        else if(dist < dists[0])
+            siftDown(0, index, dist, size);
+    }
+
+    /**
+     * Returns the index of the farthest neighbor in the heap
+     * @return the index of the farthest neighbor
+     */
+    public int peekIndex()
+    {
+        return indices[0];
+    }
+
+    /**
+     * Returns the distance of the farthest neighbor in the heap
+     * @return the distance of the farthest neighbor
+     */
+    public double peekDistance()
+    {
+        return dists[0];
+    }
+
+    /**
+     * Removes the farthest neighbor from the heap
+     */
+    public void poll()
+    {
+        size--;
+        if(size > 0)
+            siftDown(0, indices[size], dists[size], size);
+    }
+
+    /**
+     * Places the value at <tt>pos</tt> and moves it down into heap order
+     * within the first <tt>end</tt> positions
+     */
+    private void siftDown(int pos, int index, double dist, int end)
+    {
+        int child;
+        while((child = 2*pos+1) < end)
+        {
+            if(child+1 < end && dists[child+1] > dists[child])
+                child++;
+            if(dists[child] <= dist)
+                break;
+            indices[pos] = indices[child];
+            dists[pos] = dists[child];
+            pos = child;
+        }
+        indices[pos] = index;
+        dists[pos] = dist;
+    }
+
+    /**
+     * Writes the contents of the heap in order from closest to farthest, and
+     * empties the heap
+     * @param indexOut the array to store the neighbor indices in
+     * @param distOut the array to store the neighbor distances in
+     * @param offset the position in the output arrays to start writing at
+     */
+    public void drainSorted(int[] indexOut, double[] distOut, int offset)
+    {
+        for(int end = size-1; end >= 0; end--)
+        {
+            indexOut[offset+end] = indices[0];
+            distOut[offset+end] = dists[0];
+            siftDown(0, indices[end], dists[end], end);
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,192 @@
+package jsat.linear.vectorcollection;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Holds the results of a batch of nearest neighbor or range queries made
+ * against a {@link VectorCollection}. Rather than a list of
+ * {@link jsat.linear.VecPaired VecPaired} objects per query, the neighbors of
+ * all queries are stored back to back in one array of indices and one array
+ * of distances. The neighbors of query <i>q</i> occupy the positions
+ * [{@link #getOffsets() offsets}[q], offsets[q+1]) of both arrays, in order
+ * from closest to farthest. <br>
+ * The index of a neighbor is its position in the list of vectors the
+ * collection was built from. <br><br>
+ * A results object may be passed back into the next batch search, in which
+ * case its arrays are reused and only grown when they are too small.
+ *
+ * @author Edward Raff
+ */
+public class NeighborResults implements Serializable
+{
+    private int queries;
+    /**
+     * The start of each query's neighbors, with one extra value at the end
+     */
+    int[] offsets;
+    int[] neighbors;
+    double[] distances;
+
+    /**
+     * Creates a new empty set of results
+     */
+    public NeighborResults()
+    {
+        this(16);
+    }
+
+    /**
+     * Creates a new empty set of results
+     * @param capacity the number of neighbors, over all queries, to allocate
+     * space for
+     */
+    public NeighborResults(int capacity)
+    {
+        offsets = new int[17];
+        neighbors = new int[capacity];
+        distances = new double[capacity];
+    }
+
+    /**
+     * Removes all queries from the results, keeping the allocated space
+     */
+    public void clear()
+    {
+        queries = 0;
+    }
+
+    /**
+     * Returns the number of queries stored
+     * @return the number of queries
+     */
+    public int size()
+    {
+        return queries;
+    }
+
+    /**
+     * Returns the number of neighbors found for a query
+     * @param q the query
+     * @return the number of neighbors of the query
+     */
+    public int getNeighborCount(int q)
+    {
+        checkQuery(q);
+        return offsets[q+1]-offsets[q];
+    }
+
+    /**
+     * Returns the index of a neighbor of a query
+     * @param q the query
+     * @param j the rank of the neighbor, where 0 is the closest
+     * @return the index in the collection of the <tt>j</tt>'th neighbor
+     */
+    public int getNeighbor(int q, int j)
+    {
+        return neighbors[position(q, j)];
+    }
+
+    /**
+     * Returns the distance to a neighbor of a query
+     * @param q the query
+     * @param j the rank of the neighbor, where 0 is the closest
+     * @return the distance from the query to its <tt>j</tt>'th neighbor
+     */
+    public double getDistance(int q, int j)
+    {
+        return distances[position(q, j)];
+    }
+
+    /**
+     * Returns the backing array of neighbor offsets. Only the first
+     * {@link #size()}+1 values are valid.
+     * @return the offset of each query's neighbors
+     */
+    public int[] getOffsets()
+    {
+        return offsets;
+    }
+
+    /**
+     * Returns the backing array of neighbor indices. Only the first
+     * offsets[{@link #size()}] values are valid.
+     * @return the neighbor indices of all queries
+     */
+    public int[] getNeighbors()
+    {
+        return neighbors;
+    }
+
+    /**
+     * Returns the backing array of neighbor distances. Only the first
+     * offsets[{@link #size()}] values are valid.
+     * @return the neighbor distances of all queries
+     */
+    public double[] getDistances()
+    {
+        return distances;
+    }
+
+    private void checkQuery(int q)
+    {
+        if(q < 0 || q >= queries)
+            throw new IndexOutOfBoundsException("Query " + q + " is out of range [0, " + queries + ")");
+    }
+
+    private int position(int q, int j)
+    {
+        checkQuery(q);
+        if(j < 0 || j >= offsets[q+1]-offsets[q])
+            throw new IndexOutOfBoundsException("Query " + q + " has " + (offsets[q+1]-offsets[q]) + " neighbors, not " + j);
+        return offsets[q]+j;
+    }
+
+    /**
+     * Makes sure there is space for the given number of neighbors in total
+     */
+    void ensureCapacity(int capacity)
+    {
+        if(neighbors.length < capacity)
+        {
+            int newLen = (int) Math.min(Integer.MAX_VALUE-8, Math.max(capacity, neighbors.length*2L));
+            neighbors = Arrays.copyOf(neighbors, newLen);
+            distances = Arrays.copyOf(distances, newLen);
+        }
+    }
+
+    /**
+     * Adds the contents of the heap as the neighbors of the next query, and
+     * empties the heap
+     * @param heap the neighbors of the query
+     */
+    void append(NeighborHeap heap)
+    {
+        if(offsets.length < queries+2)
+            offsets = Arrays.copyOf(offsets, Math.max(queries+2, offsets.length*2));
+        int start = offsets[queries];
+        ensureCapacity(start+heap.size());
+        offsets[queries+1] = start+heap.size();
+        heap.drainSorted(neighbors, distances, start);
+        queries++;
+    }
+
+    /**
+     * Adds all the queries of another set of results after the queries of
+     * this one
+     * @param other the results to copy
+     */
+    void appendAll(NeighborResults other)
+    {
+        if(offsets.length < queries+other.queries+1)
+            offsets = Arrays.copyOf(offsets, queries+other.queries+1);
+        int start = offsets[queries];
+        int count = other.offsets[other.queries];
+        ensureCapacity(start+count);
+        System.arraycopy(other.neighbors, 0, neighbors, start, count);
+        System.arraycopy(other.distances, 0, distances, start, count);
+        for(int q = 1; q <= other.queries; q++)
+            offsets[queries+q] = start+other.offsets[q];
+        queries += other.queries;
+    }
+}
@@ -16,10 +16,20 @@ import jsat.utils.BoundedSortedList;
 import jsat.utils.ProbailityMatch;
 import static jsat.linear.VecPaired.*;
 /**
- *
+ * An implementation of the R-Tree of Guttman, using the quadratic split. 
+ * <br><br>
+ * The tree is a {@link MutableVectorCollection}. Removing a point condenses
+ * the tree, reinserting the points of any node left with too few entries, so
+ * the tree stays balanced through both inserts and removals and never needs to
+ * be rebuilt. 
+ * <br><br>
+ * See: Guttman, A. (1984). <i>R-Trees: A Dynamic Index Structure for Spatial 
+ * Searching</i>. Proceedings of the 1984 ACM SIGMOD international conference 
+ * on Management of data, 47–57.
+ * 
  * @author Edward Raff
  */
-public class RTree<V extends Vec> implements VectorCollection<V>
+public class RTree<V extends Vec> implements MutableVectorCollection<V>
 {
 
     @Override
@@ -41,6 +51,8 @@ public class RTree<V extends Vec> implements VectorCollection<V>
     @Override
     public List<? extends VecPaired<V, Double>> search(Vec query, int neighbors)
     {
+        if(size == 0)
+            return new ArrayList<VecPaired<V, Double>>(0);
         /**
          * Match up nodes with the minDist from the query to that node
          */
@@ -92,6 +104,8 @@ public class RTree<V extends Vec> implements VectorCollection<V>
         for(int i = 0; i < curBest.size(); i++)
         {
             ProbailityMatch<V> pm = curBest.get(i);
+            if(pm.getMatch() == null)//the fake, when there are fewer points than neighbors
+                continue;
             knnsList.add(new VecPaired<V, Double>(pm.getMatch(), pm.getProbability()));
         }
         
@@ -124,10 +138,36 @@ public class RTree<V extends Vec> implements VectorCollection<V>
         return size;
     }
 
+    /**
+     * {@inheritDoc}
+     * <br>
+     * The index of a vector is the order it was {@link #add(jsat.linear.Vec) 
+     * added} in. The queries are always run in the calling thread, as the 
+     * search of an RTree uses shared scratch space. 
+     */
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNNByIdentity(this, allVecs, queries, k, results, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br>
+     * The index of a vector is the order it was {@link #add(jsat.linear.Vec) 
+     * added} in. The queries are always run in the calling thread, as the 
+     * search of an RTree uses shared scratch space. 
+     */
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRangeByIdentity(this, allVecs, queries, range, results, null);
+    }
+
     @Override
-    public VectorCollection<V> clone()
+    public RTree<V> clone()
     {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return new RTree<V>(this);
     }
     
     private class RNode<V extends Vec> implements Comparable<RNode<V>>, Cloneable
@@ -305,7 +345,7 @@ public class RTree<V extends Vec> implements VectorCollection<V>
             
             for(int i = 0; i < uB.length(); i++)
             {
-                double max = Double.MIN_VALUE, min = Double.MAX_VALUE;
+                double max = -Double.MAX_VALUE, min = Double.MAX_VALUE;
                 for(int j = 0; j < points.size(); j++)
                 {
                     max = Math.max(max, points.get(j).get(i));
@@ -328,7 +368,7 @@ public class RTree<V extends Vec> implements VectorCollection<V>
             
             for(int i = 0; i < uB.length(); i++)
             {
-                double max = Double.MIN_VALUE, min = Double.MAX_VALUE;
+                double max = -Double.MAX_VALUE, min = Double.MAX_VALUE;
                 for(int j = 0; j < recs.length; j++)
                 {
                     max = Math.max(max, recs[j].uB.get(i));
@@ -447,7 +487,7 @@ public class RTree<V extends Vec> implements VectorCollection<V>
             
             for(int i = 0; i < uB.length(); i++)
             {
-                double max = Double.MIN_VALUE, min = Double.MAX_VALUE;
+                double max = -Double.MAX_VALUE, min = Double.MAX_VALUE;
                 for(int j = 0; j < points.size(); j++)
                 {
                     max = Math.max(max, points.get(j).get(i));
@@ -462,7 +502,12 @@ public class RTree<V extends Vec> implements VectorCollection<V>
     }
     
     private int size;
-    private RNode root;
+    private RNode<V> root;
+    /**
+     * All vectors in the order they were added, which gives the index of each
+     * vector for batch searches
+     */
+    private List<V> allVecs = new ArrayList<V>();
     
     /**
      * Maximum number of entries per node
@@ -501,7 +546,7 @@ public class RTree<V extends Vec> implements VectorCollection<V>
 
     public RTree(int dimensions, DistanceMetric dm, int max, int min)
     {
-        this.root = new RNode();
+        this.root = new RNode<V>();
         if(max < 2)
             throw new RuntimeException("The maximum number of elements per node must be at least 2");
         else if(min > max/2 || min < 1)
@@ -513,6 +558,37 @@ public class RTree<V extends Vec> implements VectorCollection<V>
         this.dm = dm;
     }
     
+    /**
+     * Copy constructor
+     * @param toClone the tree to copy
+     */
+    protected RTree(RTree<V> toClone)
+    {
+        this.M = toClone.M;
+        this.m = toClone.m;
+        this.dim = toClone.dim;
+        this.dcScratch = new DenseVector(dim);
+        this.dm = toClone.dm.clone();
+        this.size = toClone.size;
+        this.allVecs = new ArrayList<V>(toClone.allVecs);
+        this.root = copyNode(toClone.root);
+    }
+    
+    /**
+     * Copies the given node and all nodes below it into this tree
+     * @param node the node to copy
+     * @return the copy of the node
+     */
+    private RNode<V> copyNode(RNode<V> node)
+    {
+        RNode<V> copy = new RNode<V>();
+        for(RNode<V> child : node.children)
+            copy.add(copyNode(child));
+        copy.points.addAll(node.points);
+        copy.bound = node.bound == null ? null : node.bound.clone();
+        return copy;
+    }
+    
     private RNode<V> chooseLeaf(Vec v)
     {
         /*
@@ -807,7 +883,165 @@ public class RTree<V extends Vec> implements VectorCollection<V>
         
     }
     
+    /**
+     * Adds a vector to the tree
+     * @param v the vector to add
+     */
     public void add(V v)
+    {
+        insert(v);
+    }
+
+    @Override
+    public int insert(V v)
+    {
+        insertPoint(v);
+        allVecs.add(v);
+        size++;
+        return allVecs.size()-1;
+    }
+
+    @Override
+    public boolean remove(int index)
+    {
+        if(index < 0 || index >= allVecs.size())
+            throw new IndexOutOfBoundsException("No vector has index " + index);
+        V v = allVecs.get(index);
+        if(v == null)
+            return false;
+        /*
+         * D1 [Find node contammg record ] Invoke FindLeaf to locate the leaf
+         * node L contaming E Stop If the record was not found
+         */
+        RNode<V> L = findLeaf(root, v);
+        /*
+         * D2 [Delete record.] Remove E from L
+         */
+        for(int i = 0; i < L.points.size(); i++)
+            if(L.points.get(i) == v)
+            {
+                L.points.remove(i);
+                break;
+            }
+        allVecs.set(index, null);
+        size--;
+        /*
+         * D3 [Propagate changes ] Invoke CondenseTree, passing L
+         */
+        condenseTree(L);
+        /*
+         * D4 [Shorten tree.] If the root node has only one child after the 
+         * tree has been adjusted, make the child the new root
+         */
+        while(!root.isLeaf() && root.children.size() == 1)
+        {
+            root = root.getChild(0);
+            root.parent = null;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the leaf that contains the given vector
+     * @param node the node to search under
+     * @param v the vector to find, matched by identity
+     * @return the leaf containing the vector, or {@code null} if it is not
+     * under the given node
+     */
+    private RNode<V> findLeaf(RNode<V> node, V v)
+    {
+        if(node.isLeaf())
+        {
+            for(V p : node.points)
+                if(p == v)
+                    return node;
+            return null;
+        }
+        for(int i = 0; i < node.size(); i++)
+            if(node.getChild(i).bound.contains(v))
+            {
+                RNode<V> L = findLeaf(node.getChild(i), v);
+                if(L != null)
+                    return L;
+            }
+        return null;
+    }
+
+    /**
+     * Removes the nodes that have too few entries after a deletion from the
+     * given leaf, shrinks the bounds of the nodes along the path to the root,
+     * and reinserts the points of the removed nodes
+     * @param L the leaf a point was removed from
+     */
+    private void condenseTree(RNode<V> L)
+    {
+        /*
+         * CT1 [Initialize.] Set N=L Set Q, the set of eliminated nodes, 
+         * to be empty
+         */
+        RNode<V> N = L;
+        List<RNode<V>> Q = new ArrayList<RNode<V>>();
+        while(N != root)//CT2 [Find parent entry ] If N is the root, go to CT6
+        {
+            RNode<V> P = N.parent;
+            /*
+             * CT3 [Eliminate under-full node ] If N has fewer than m entries, 
+             * delete EN from P and add N to set Q
+             */
+            if(N.size() < m)
+            {
+                for(int i = 0; i < P.children.size(); i++)
+                    if(P.children.get(i) == N)
+                    {
+                        P.children.remove(i);
+                        break;
+                    }
+                Q.add(N);
+            }
+            else//CT4 [Adjust covering rectangle ]
+                N.bound = tightBound(N);
+            N = P;//CT5 [Move up one level in tree ]
+        }
+        root.bound = tightBound(root);
+        /*
+         * CT6 [Re-insert orphaned entries ] Re-insert all entries of nodes 
+         * in set Q. Instead of reinserting the entries of non-leaf nodes at 
+         * their own level, all of the points under them are reinserted. 
+         */
+        List<V> orphans = new ArrayList<V>();
+        for(RNode<V> node : Q)
+            collectPoints(node, orphans);
+        for(V v : orphans)
+            insertPoint(v);
+    }
+
+    /**
+     * Computes the smallest rectangle that covers all entries of the node
+     * @param N the node to get the bound of
+     * @return the bound of the node, or {@code null} if it has no entries
+     */
+    private Rectangle tightBound(RNode<V> N)
+    {
+        if(N.isLeaf())
+            return N.points.isEmpty() ? null : Rectangle.contains(N.points);
+        Rectangle[] recs = new Rectangle[N.children.size()];
+        for(int i = 0; i < recs.length; i++)
+            recs[i] = N.getChild(i).bound;
+        return new Rectangle(recs);
+    }
+
+    private void collectPoints(RNode<V> node, List<V> points)
+    {
+        points.addAll(node.points);
+        for(RNode<V> child : node.children)
+            collectPoints(child, points);
+    }
+
+    /**
+     * Places the vector in the tree, without tracking it in {@link #allVecs}
+     * @param v the vector to place
+     */
+    private void insertPoint(V v)
     {
         /*
          * I1 [Find position for new record ]
@@ -832,8 +1066,6 @@ public class RTree<V extends Vec> implements VectorCollection<V>
          */
         AdjustTree(L, LL);
         //step I4 handeled in AdjustTree
-        
-        size++;
     }
     
     /**
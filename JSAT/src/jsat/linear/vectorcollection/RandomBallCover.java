@@ -13,6 +13,7 @@ import jsat.linear.distancemetrics.DistanceMetric;
 import jsat.utils.BoundedSortedList;
 import jsat.utils.DoubleList;
 import jsat.utils.FakeExecutor;
+import jsat.utils.IndexTable;
 import jsat.utils.IntList;
 import jsat.utils.ListUtils;
 import static jsat.utils.SystemInfo.LogicalCores;
@@ -32,7 +33,7 @@ import static jsat.utils.SystemInfo.LogicalCores;
  *
  * @author Edward Raff
  */
-public class RandomBallCover<V extends Vec> implements VectorCollection<V>
+public class RandomBallCover<V extends Vec> implements IndexedVectorCollection<V>
 {
     private DistanceMetric dm;
     /**
@@ -118,6 +119,11 @@ public class RandomBallCover<V extends Vec> implements VectorCollection<V>
         }
         this.R = new IntList(other.R);
         this.repRadius = Arrays.copyOf(other.repRadius, other.repRadius.length);
+        this.size = other.size;
+        if(other.distCache != null)
+            this.distCache = new DoubleList(other.distCache);
+        if(other.allVecs != null)
+            this.allVecs = new ArrayList<V>(other.allVecs);
     }
 
     private void setUp(List<Integer> vecIndices, ExecutorService execServ) throws InterruptedException
@@ -261,6 +267,90 @@ public class RandomBallCover<V extends Vec> implements VectorCollection<V>
         return knn;
     }
 
+    /**
+     * Performs an exact k-NN search placing the neighbors by index into the 
+     * heap. The representatives are visited from closest to farthest, and 
+     * the triangle inequality is used to skip whole balls and single points 
+     * that can not beat the current k'th neighbor. 
+     */
+    private void searchKNN(Vec query, NeighborHeap heap)
+    {
+        List<Double> qi = dm.getQueryInfo(query);
+        double[] queryRDists = new double[R.size()];
+        for (int i = 0; i < R.size(); i++)
+            heap.add(R.get(i), queryRDists[i] = dm.dist(R.get(i), query, qi, allVecs, distCache));
+
+        IndexTable order = new IndexTable(queryRDists);
+        for (int o = 0; o < order.length(); o++)
+        {
+            int i = order.index(o);
+            if (queryRDists[i] - repRadius[i] > heap.bound())
+                continue;
+            List<Integer> owned = ownedVecs.get(i);
+            DoubleList rDists = ownedRDists.get(i);
+            for (int j = 0; j < owned.size(); j++)
+            {
+                if (Math.abs(queryRDists[i] - rDists.getD(j)) > heap.bound())
+                    continue;
+                int indx = owned.get(j);
+                heap.add(indx, dm.dist(indx, query, qi, allVecs, distCache));
+            }
+        }
+    }
+
+    /**
+     * Performs a range search placing the neighbors by index into the heap
+     */
+    private void searchRange(Vec query, double range, NeighborHeap heap)
+    {
+        List<Double> qi = dm.getQueryInfo(query);
+        double dist;
+        for (int i = 0; i < R.size(); i++)
+        {
+            double queryRDist = dm.dist(R.get(i), query, qi, allVecs, distCache);
+            if (queryRDist <= range)
+                heap.add(R.get(i), queryRDist);
+            if (queryRDist > range + repRadius[i])
+                continue;
+            List<Integer> owned = ownedVecs.get(i);
+            DoubleList rDists = ownedRDists.get(i);
+            for (int j = 0; j < owned.size(); j++)
+            {
+                if (Math.abs(queryRDist - rDists.getD(j)) > range)
+                    continue;
+                int indx = owned.get(j);
+                if ((dist = dm.dist(indx, query, qi, allVecs, distCache)) <= range)
+                    heap.add(indx, dist);
+            }
+        }
+    }
+
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                searchKNN(query, heap);
+            }
+        }, queries, k, size, results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                searchRange(query, range, heap);
+            }
+        }, queries, range, results, threadpool);
+    }
+
     @Override
     public int size()
     {
@@ -37,7 +37,7 @@ import jsat.utils.ProbailityMatch;
  * 
  * @author Edward Raff
  */
-public class RandomBallCoverOneShot<V extends Vec> implements VectorCollection<V>
+public class RandomBallCoverOneShot<V extends Vec> implements IndexedVectorCollection<V>
 {
     private DistanceMetric dm;
     private List<List<Integer>> ownedVecs;
@@ -240,6 +240,63 @@ public class RandomBallCoverOneShot<V extends Vec> implements VectorCollection<V
         return knn;
     }
 
+    /**
+     * Finds the closest representative to the query, and places its 
+     * distance in <tt>bestDist[0]</tt>
+     */
+    private int closestRep(Vec query, List<Double> qi, double[] bestDist)
+    {
+        double tmp;
+        bestDist[0] = Double.POSITIVE_INFINITY;
+        int bestRep = 0;
+        for (int i = 0; i < R.size(); i++)
+            if ((tmp = dm.dist(R.get(i), query, qi, allVecs, distCache)) < bestDist[0])
+            {
+                bestRep = i;
+                bestDist[0] = tmp;
+            }
+        return bestRep;
+    }
+
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                List<Double> qi = dm.getQueryInfo(query);
+                double[] bestDist = new double[1];
+                int bestRep = closestRep(query, qi, bestDist);
+                heap.add(R.get(bestRep), bestDist[0]);
+                for (int v : ownedVecs.get(bestRep))
+                    heap.add(v, dm.dist(v, query, qi, allVecs, distCache));
+            }
+        }, queries, k, size(), results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                List<Double> qi = dm.getQueryInfo(query);
+                double[] bestDist = new double[1];
+                int bestRep = closestRep(query, qi, bestDist);
+                if (bestDist[0] <= range)
+                    heap.add(R.get(bestRep), bestDist[0]);
+                double tmp;
+                for (int v : ownedVecs.get(bestRep))
+                    if ((tmp = dm.dist(v, query, qi, allVecs, distCache)) <= range)
+                        heap.add(v, tmp);
+            }
+        }, queries, range, results, threadpool);
+    }
+
     @Override
     public int size()
     {
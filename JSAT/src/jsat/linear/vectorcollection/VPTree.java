@@ -2,11 +2,15 @@ package jsat.linear.vectorcollection;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jsat.linear.Vec;
@@ -35,11 +39,26 @@ import jsat.utils.SimpleList;
  * Note: In the original paper, the VP-tree is detailed, and then enhanced to the VPs-tree, 
  * and the VPsb-tree, which each add additional optimizations. This implementation is equivalent
  * to the VPsb-tree presented in the original paper. 
+ * <br><br>
+ * The tree is a {@link MutableVectorCollection}. Inserted points are placed in
+ * the leaf they fall into, and a leaf that grows too large is split into a new
+ * subtree. Removed points are only marked as removed, as they may still be
+ * needed as vantage points. Once the tree has seen as many changes as it had 
+ * points when it was built, it is rebuilt from the points that remain. If a 
+ * {@link #setRebalancePool(java.util.concurrent.ExecutorService) rebalance pool}
+ * is set the rebuild happens in the background, and the old tree keeps 
+ * serving searches until the new one is swapped in by a later insert or 
+ * remove. 
  * 
  * @author Edward Raff
  */
-public class VPTree<V extends Vec> implements VectorCollection<V>
+public class VPTree<V extends Vec> implements MutableVectorCollection<V>
 {
+    /**
+     * The fewest changes that will cause the tree to be rebuilt
+     */
+    private static final int MIN_REBUILD_CHANGES = 64;
+
     private DistanceMetric dm;
     private List<Double> distCache;
     private List<V> allVecs;
@@ -50,6 +69,30 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
     private VPSelection vpSelection;
     private int size;
     private int maxLeafSize = 5;
+    /**
+     * The indices of removed vectors, which are never returned by a search
+     */
+    private BitSet removed = new BitSet();
+    /**
+     * The number of points in the tree when it was last built
+     */
+    private int builtSize;
+    /**
+     * The number of inserts and removes since the tree was last built
+     */
+    private int changes;
+    private transient ExecutorService rebalancePool;
+    /**
+     * The root of the tree being rebuilt in the background, if any
+     */
+    private transient Future<TreeNode> rebuild;
+    /**
+     * The number of vectors, changes, and the removed vectors, when the 
+     * background rebuild started
+     */
+    private transient int rebuildVecCount;
+    private transient int rebuildChanges;
+    private transient BitSet rebuildRemoved;
 
     public enum VPSelection
     {
@@ -72,8 +115,9 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
         this.sampleSize = sampleSize;
         this.searchIterations = searchIterations;
         this.size = list.size();
+        this.builtSize = size;
         this.vpSelection = vpSelection;
-        this.allVecs = list;
+        this.allVecs = new ArrayList<V>(list);
         if(threadpool == null || threadpool instanceof FakeExecutor)
             distCache = dm.getAccelerationCache(allVecs);
         else
@@ -83,11 +127,13 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
         for(int i = 0; i < allVecs.size(); i++)
             tmpList.add(new Pair<Double, Integer>(-1.0, i));
         if(threadpool == null)
-            this.root = makeVPTree(tmpList);
+            this.root = makeVPTree(tmpList, allVecs, distCache);
         else
         {
+            //counts the calling thread and every task building a subtree
             ModifiableCountDownLatch mcdl = new ModifiableCountDownLatch(1);
             this.root = makeVPTree(tmpList, threadpool, mcdl);
+            mcdl.countDown();
             try
             {
                 mcdl.await();
@@ -99,7 +145,7 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
                 tmpList.clear();
                 for(int i = 0; i < list.size(); i++)
                     tmpList.add(new Pair<Double, Integer>(-1.0, i));
-                this.root = makeVPTree(tmpList);
+                this.root = makeVPTree(tmpList, allVecs, distCache);
             }
         }
     }
@@ -126,12 +172,17 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
     protected VPTree(VPTree<V> toClone)
     {
         this.dm = toClone.dm.clone();
-        this.rand = new Random(rand.nextInt());
+        this.rand = new Random(toClone.rand.nextInt());
         this.sampleSize = toClone.sampleSize;
         this.searchIterations = toClone.searchIterations;
         this.root = toClone.root == null ? null : toClone.root.clone();
         this.vpSelection = toClone.vpSelection;
         this.size = toClone.size;
+        this.maxLeafSize = toClone.maxLeafSize;
+        this.removed = (BitSet) toClone.removed.clone();
+        this.builtSize = toClone.builtSize;
+        this.changes = toClone.changes;
+        this.rebalancePool = toClone.rebalancePool;
         if(toClone.allVecs != null)
             this.allVecs = new ArrayList<V>(toClone.allVecs);
         if(toClone.distCache != null)
@@ -152,8 +203,10 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
             throw new RuntimeException("Range must be a positive number");
         List<VecPairedComparable<V, Double>> returnList = new ArrayList<VecPairedComparable<V, Double>>();
         
+        if(root == null)
+            return returnList;
         List<Double> qi = dm.getQueryInfo(query);
-        root.searchRange(VecPaired.extractTrueVec(query), range, (List)returnList, 0.0, qi);
+        root.searchRange(VecPaired.extractTrueVec(query), range, (List)returnList, -1, qi);
         
         Collections.sort(returnList);
         
@@ -165,8 +218,10 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
     {
         BoundedSortedList<ProbailityMatch<V>> boundedList= new BoundedSortedList<ProbailityMatch<V>>(neighbors, neighbors);
 
+        if(root == null)
+            return new ArrayList<VecPaired<V, Double>>(0);
         List<Double> qi = dm.getQueryInfo(query);
-        root.searchKNN(VecPaired.extractTrueVec(query), neighbors, boundedList, 0.0, qi);
+        root.searchKNN(VecPaired.extractTrueVec(query), neighbors, boundedList, -1, qi);
         
         List<VecPaired<V, Double>> list = new ArrayList<VecPaired<V, Double>>(boundedList.size());
         for(ProbailityMatch<V> pm : boundedList)
@@ -180,13 +235,15 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
      * finds the splitting index, and sets up the parent node. 
      * @param S the list
      * @param node the parent node
+     * @param vecs the vectors to build from
+     * @param cache the acceleration cache of the vectors
      * @return the index that was used to split on. 
      */
-    private int sortSplitSet(final List<Pair<Double, Integer>> S, final VPNode node)
+    private int sortSplitSet(final List<Pair<Double, Integer>> S, final VPNode node, List<V> vecs, List<Double> cache)
     {
         //Compute distance to each point
         for(int i = 0; i < S.size(); i++)
-            S.get(i).setFirstItem(dm.dist(node.p, S.get(i).getSecondItem(), allVecs, distCache));//Each point gets its distance to the vantage point
+            S.get(i).setFirstItem(dm.dist(node.p, S.get(i).getSecondItem(), vecs, cache));//Each point gets its distance to the vantage point
         Collections.sort(S, new Comparator<Pair<Double, Integer>>() 
         {
             @Override
@@ -240,8 +297,16 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
     }
     
     
-    //The probability match is used to store and sort by median distances. 
-    private TreeNode makeVPTree(List<Pair<Double, Integer>> S)
+    /**
+     * Builds a tree over the given points. The vectors are passed in so that
+     * a background rebuild may work from a snapshot while new vectors are
+     * being added to {@link #allVecs}. 
+     * @param S the points to build from, which will be altered
+     * @param vecs the vectors to build from
+     * @param cache the acceleration cache of the vectors
+     * @return the root of the new tree
+     */
+    private TreeNode makeVPTree(List<Pair<Double, Integer>> S, List<V> vecs, List<Double> cache)
     {
         if(S.isEmpty())
             return null;
@@ -252,17 +317,17 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
             return leaf;
         }
         
-        VPNode node = new VPNode(selectVantagePoint(S));
+        VPNode node = new VPNode(selectVantagePoint(S, vecs, cache));
         
-        int splitIndex = sortSplitSet(S, node);
+        int splitIndex = sortSplitSet(S, node, vecs, cache);
         
         /*
          * Re use the list and let it get altered. We must compute the right side first. 
          * If we altered the left side, the median would move left, and the right side 
          * would get thrown off or require aditonal book keeping. 
          */
-        node.right = makeVPTree(S.subList(splitIndex+1, S.size()));
-        node.left  = makeVPTree(S.subList(0, splitIndex+1));
+        node.right = makeVPTree(S.subList(splitIndex+1, S.size()), vecs, cache);
+        node.left  = makeVPTree(S.subList(0, splitIndex+1), vecs, cache);
         
         return node;
     }
@@ -270,31 +335,23 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
     private TreeNode makeVPTree(final List<Pair<Double, Integer>> S, final ExecutorService threadpool, final ModifiableCountDownLatch mcdl)
     {
         if(S.isEmpty())
-        {
-            mcdl.countDown();
             return null;
-        }
         else if(S.size() <= maxLeafSize)
-        {
-            VPLeaf leaf = new VPLeaf(S);
-            mcdl.countDown();
-            return leaf;
-        }
+            return new VPLeaf(S);
         
         //Place the vantage point at the front of the array
-        ListUtils.swap(S, 0, selectVantagePointIndex(S));
+        ListUtils.swap(S, 0, selectVantagePointIndex(S, allVecs, distCache));
         final VPNode node = new VPNode(S.get(0).getSecondItem());
         
-        //Will get sorted, but distance from itself will be zero, so it will 
-        //still be the first element
-        int splitIndex = sortSplitSet(S.subList(1, S.size()), node);
+        //The split index is relative to the list without the vantage point
+        int splitIndex = sortSplitSet(S.subList(1, S.size()), node, allVecs, distCache);
         
         
         //Start 2 threads, but only 1 of them is "new" 
         mcdl.countUp();
 
-        final List<Pair<Double, Integer>> rightS = S.subList(splitIndex+1, S.size());
-        final List<Pair<Double, Integer>> leftS = S.subList(1, splitIndex);
+        final List<Pair<Double, Integer>> rightS = S.subList(splitIndex+2, S.size());
+        final List<Pair<Double, Integer>> leftS = S.subList(1, splitIndex+2);
         
         threadpool.submit(new Runnable() 
         {
@@ -302,6 +359,8 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
             public void run()
             {
                 node.right = makeVPTree(rightS, threadpool, mcdl);
+                //only done once the subtree is attached, so it is seen by the constructor
+                mcdl.countDown();
             }
         });
         node.left  = makeVPTree(leftS, threadpool, mcdl);
@@ -310,7 +369,7 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
     }
     
     
-    private int selectVantagePointIndex(List<Pair<Double, Integer>> S)
+    private int selectVantagePointIndex(List<Pair<Double, Integer>> S, List<V> vecs, List<Double> cache)
     {
         int vpIndex;
         if (vpSelection == VPSelection.Random)
@@ -337,7 +396,7 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
                 int candV = S.get(candIndx).getSecondItem();
 
                 for (int j = 0; j < samples.size(); j++)
-                    distances[j] = dm.dist(candV, samples.get(j), allVecs, distCache);
+                    distances[j] = dm.dist(candV, samples.get(j), vecs, cache);
 
                 Arrays.sort(distances);
                 double median = distances[distances.length / 2];
@@ -359,15 +418,187 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
     /**
      * Determines what point from the data set will become a vantage point, and removes it from the list
      * @param S the set to select a vantage point from
+     * @param vecs the vectors to build from
+     * @param cache the acceleration cache of the vectors
      * @return the index of thevantage point removed from the set
      */
-    private int selectVantagePoint(List<Pair<Double, Integer>> S)
+    private int selectVantagePoint(List<Pair<Double, Integer>> S, List<V> vecs, List<Double> cache)
     {
-        int vpIndex = selectVantagePointIndex(S);
+        int vpIndex = selectVantagePointIndex(S, vecs, cache);
         
         return S.remove(vpIndex).getSecondItem();
     }
 
+    /**
+     * Sets the thread pool that rebuilds of the tree are done in. If 
+     * {@code null}, the tree is rebuilt by the insert or remove that made it 
+     * necessary. 
+     * @param rebalancePool the source of threads for rebuilding the tree, or 
+     * {@code null} to rebuild in the calling thread
+     */
+    public void setRebalancePool(ExecutorService rebalancePool)
+    {
+        this.rebalancePool = rebalancePool;
+    }
+
+    /**
+     * Returns the thread pool that rebuilds of the tree are done in
+     * @return the thread pool that rebuilds of the tree are done in, or
+     * {@code null} if they are done in the calling thread
+     */
+    public ExecutorService getRebalancePool()
+    {
+        return rebalancePool;
+    }
+
+    @Override
+    public int insert(V x)
+    {
+        finishRebuild(false);
+        int index = allVecs.size();
+        allVecs.add(x);
+        if(distCache != null)
+        {
+            //the parallel cache may be an unmodifiable view
+            if(!(distCache instanceof DoubleList))
+                distCache = new DoubleList(distCache);
+            distCache.addAll(dm.getAccelerationCache(Collections.singletonList(x)));
+        }
+        insertIntoTree(index);
+        size++;
+        changes++;
+        rebuildIfNeeded();
+        return index;
+    }
+
+    private void insertIntoTree(int index)
+    {
+        if(root == null)
+            root = new VPLeaf(index, -1);
+        else
+            root = root.insert(index, -1);
+    }
+
+    @Override
+    public boolean remove(int index)
+    {
+        if(index < 0 || index >= allVecs.size())
+            throw new IndexOutOfBoundsException("No vector has index " + index);
+        if(removed.get(index))
+            return false;
+        finishRebuild(false);
+        removed.set(index);
+        size--;
+        changes++;
+        rebuildIfNeeded();
+        return true;
+    }
+
+    /**
+     * Starts a rebuild of the tree from the points that have not been 
+     * removed, once it has seen as many changes as it had points when it was
+     * last built
+     */
+    private void rebuildIfNeeded()
+    {
+        if(rebuild != null || changes < Math.max(builtSize, MIN_REBUILD_CHANGES))
+            return;
+        final List<Pair<Double, Integer>> S = new SimpleList<Pair<Double, Integer>>(size);
+        for(int i = 0; i < allVecs.size(); i++)
+            if(!removed.get(i))
+                S.add(new Pair<Double, Integer>(-1.0, i));
+        rebuildVecCount = allVecs.size();
+        rebuildChanges = changes;
+        rebuildRemoved = (BitSet) removed.clone();
+        if(rebalancePool == null)
+        {
+            root = makeVPTree(S, allVecs, distCache);
+            finishRebuild(true);
+            return;
+        }
+        //work from copies, as new vectors may be appended while building
+        final List<V> vecs = new ArrayList<V>(allVecs);
+        final List<Double> cache = distCache == null ? null : new DoubleList(distCache);
+        rebuild = rebalancePool.submit(new Callable<TreeNode>()
+        {
+            @Override
+            public TreeNode call() throws Exception
+            {
+                return makeVPTree(S, vecs, cache);
+            }
+        });
+    }
+
+    /**
+     * Swaps in the tree from a background rebuild if it is done, and adds the
+     * points that were inserted since it started. 
+     * @param rebuilt {@code true} if {@link #root} was just rebuilt in the 
+     * calling thread
+     */
+    private void finishRebuild(boolean rebuilt)
+    {
+        if(!rebuilt)
+        {
+            if(rebuild == null || !rebuild.isDone())
+                return;
+            try
+            {
+                root = rebuild.get();
+            }
+            catch (InterruptedException ex)
+            {
+                Logger.getLogger(VPTree.class.getName()).log(Level.SEVERE, null, ex);
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException ex)
+            {
+                throw new RuntimeException(ex.getCause());
+            }
+            finally
+            {
+                rebuild = null;
+            }
+            for(int i = rebuildVecCount; i < allVecs.size(); i++)
+                if(!removed.get(i))
+                    insertIntoTree(i);
+        }
+        //points removed before the rebuild are no longer in the tree
+        for(int i = rebuildRemoved.nextSetBit(0); i >= 0; i = rebuildRemoved.nextSetBit(i+1))
+            allVecs.set(i, null);
+        rebuildRemoved = null;
+        builtSize = size;
+        changes -= rebuildChanges;
+    }
+
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                if(root != null)
+                    root.searchKNN(query, heap, -1, dm.getQueryInfo(query));
+            }
+        }, queries, k, size, results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                if(root != null)
+                    root.searchRange(query, range, heap, -1, dm.getQueryInfo(query));
+            }
+        }, queries, range, results, threadpool);
+    }
+
     @Override
     public VPTree<V> clone()
     {
@@ -404,6 +635,41 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
         
         public abstract void searchRange(Vec query, double range, List<VecPaired<V, Double>> list, double x, List<Double> qi);
         
+        /**
+         * Performs a KNN query on this node, placing the neighbors by index 
+         * into the heap
+         * 
+         * @param query the query vector
+         * @param heap the storage location of the nearest neighbors
+         * @param x the distance between this node's parent vantage point to the
+         * query vector, or a negative value if this node has no parent
+         * @param qi the value of qi
+         */
+        public abstract void searchKNN(Vec query, NeighborHeap heap, double x, List<Double> qi);
+        
+        /**
+         * Performs a range query on this node, placing the neighbors by index 
+         * into the heap
+         * 
+         * @param query the query vector
+         * @param range the maximal distance a point can be from the query point
+         * @param heap the storage location of the data points within the range
+         * @param x the distance between this node's parent vantage point to the
+         * query vector, or a negative value if this node has no parent
+         * @param qi the value of qi
+         */
+        public abstract void searchRange(Vec query, double range, NeighborHeap heap, double x, List<Double> qi);
+        
+        /**
+         * Inserts a point under this node
+         * 
+         * @param index the index of the point
+         * @param x the distance between this node's parent vantage point and 
+         * the point, or a negative value if this node has no parent
+         * @return the node that should replace this one
+         */
+        public abstract TreeNode insert(int index, double x);
+        
         @Override
         public abstract TreeNode clone();
     }
@@ -437,34 +703,46 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
         public void searchKNN(Vec query, int k, BoundedSortedList<ProbailityMatch<V>> list, double x, List<Double> qi)
         {
             x = dm.dist(p, query, qi, allVecs, distCache);
-            if(list.size() < k || x < list.get(k-1).getProbability())
+            if(!removed.get(p) && (list.size() < k || x < list.get(k-1).getProbability()))
                 list.add(new ProbailityMatch<V>(x, allVecs.get(this.p)));
-            double tau = list.get(list.size()-1).getProbability();
+            double tau = kthDistance(list, k);
             double middle = (this.left_high+this.right_low)*0.5;
 
             if( x < middle)
             {
-                if(searchInLeft(x, tau) || list.size() < k)
+                if(searchInLeft(x, tau))
                     this.left.searchKNN(query, k, list, x, qi);
-                tau = list.get(list.size()-1).getProbability();
-                if(searchInRight(x, tau) || list.size() < k)
+                tau = kthDistance(list, k);
+                if(searchInRight(x, tau))
                     this.right.searchKNN(query, k, list, x, qi);
             }
             else
             {
-                if(searchInRight(x, tau) || list.size() < k)
+                if(searchInRight(x, tau))
                     this.right.searchKNN(query, k, list, x, qi);
-                tau = list.get(list.size()-1).getProbability();
-                if(searchInLeft(x, tau) || list.size() < k)
+                tau = kthDistance(list, k);
+                if(searchInLeft(x, tau))
                     this.left.searchKNN(query, k, list, x, qi);
             }
         }
-
+        
+        /**
+         * Returns the distance a point must be within to be one of the 
+         * <tt>k</tt> nearest, which is infinite until <tt>k</tt> points have
+         * been found
+         */
+        private double kthDistance(BoundedSortedList<ProbailityMatch<V>> list, int k)
+        {
+            if(list.size() < k)
+                return Double.POSITIVE_INFINITY;
+            return list.get(list.size()-1).getProbability();
+        }
+        
         @Override
         public void searchRange(Vec query, double range, List<VecPaired<V, Double>> list, double x, List<Double> qi)
         {
             x = dm.dist(this.p, query, qi, allVecs, distCache);
-            if(x <= range)
+            if(x <= range && !removed.get(p))
                 list.add(new VecPairedComparable<V, Double>(allVecs.get(this.p), x));
 
             if (searchInLeft(x, range))
@@ -473,18 +751,88 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
                 this.right.searchRange(query, range, list, x, qi);
         }
 
+        @Override
+        public void searchKNN(Vec query, NeighborHeap heap, double x, List<Double> qi)
+        {
+            x = dm.dist(p, query, qi, allVecs, distCache);
+            if(!removed.get(p))
+                heap.add(p, x);
+            double middle = (this.left_high+this.right_low)*0.5;
+
+            if( x < middle)
+            {
+                if(searchInLeft(x, heap.bound()))
+                    this.left.searchKNN(query, heap, x, qi);
+                if(searchInRight(x, heap.bound()))
+                    this.right.searchKNN(query, heap, x, qi);
+            }
+            else
+            {
+                if(searchInRight(x, heap.bound()))
+                    this.right.searchKNN(query, heap, x, qi);
+                if(searchInLeft(x, heap.bound()))
+                    this.left.searchKNN(query, heap, x, qi);
+            }
+        }
+
+        @Override
+        public void searchRange(Vec query, double range, NeighborHeap heap, double x, List<Double> qi)
+        {
+            x = dm.dist(this.p, query, qi, allVecs, distCache);
+            if(x <= range && !removed.get(p))
+                heap.add(this.p, x);
+
+            if (searchInLeft(x, range))
+                this.left.searchRange(query, range, heap, x, qi);
+            if (searchInRight(x, range))
+                this.right.searchRange(query, range, heap, x, qi);
+        }
+
+        @Override
+        public TreeNode insert(int index, double x)
+        {
+            double d = dm.dist(p, index, allVecs, distCache);
+            boolean toLeft;
+            if(left == null || right == null)
+                toLeft = right == null;
+            else
+                toLeft = d < (this.left_high+this.right_low)*0.5;
+            //widen the bounds of the side so searches still reach the point
+            if(toLeft)
+            {
+                if(left == null)
+                {
+                    left = new VPLeaf(index, d);
+                    left_low = left_high = d;
+                }
+                else
+                {
+                    left_low = Math.min(left_low, d);
+                    left_high = Math.max(left_high, d);
+                    left = left.insert(index, d);
+                }
+            }
+            else
+            {
+                right_low = Math.min(right_low, d);
+                right_high = Math.max(right_high, d);
+                right = right.insert(index, d);
+            }
+            return this;
+        }
+
         @Override
         public TreeNode clone()
         {
             VPNode clone = new VPNode(p);
             clone.left_low  = this.left_low;
-            clone.left_high = this.right_high;
+            clone.left_high = this.left_high;
             clone.right_low = this.right_low;
             clone.right_high = this.right_high;
             if(this.left != null)
                 clone.left = this.left.clone();
             if(this.right != null)
-                clone.left = this.right.clone();
+                clone.right = this.right.clone();
             return clone;
         }
     }
@@ -505,6 +853,12 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
             }
         }
         
+        public VPLeaf(int point, double bound)
+        {
+            this.points = new int[]{point};
+            this.bounds = new double[]{bound};
+        }
+        
         public VPLeaf(int[] points, double[] bounds)
         {
             this.bounds = Arrays.copyOf(bounds, bounds.length);
@@ -521,12 +875,14 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
             //The zero check, for the case that the leaf is the ONLY node, x will be passed as 0.0 <= Max value will be true 
             double tau = list.size() == 0 ? Double.MAX_VALUE : list.get(list.size()-1).getProbability();
             for (int i = 0; i < points.length; i++)
-                if (list.size() < k)
+                if (removed.get(points[i]))
+                    continue;
+                else if (list.size() < k)
                 {
                     list.add(new ProbailityMatch<V>(dm.dist(points[i], query, qi, allVecs, distCache), allVecs.get(points[i])));
                     tau = list.get(list.size() - 1).getProbability();
                 }
-                else if (bounds[i] - tau <= x && x <= bounds[i] + tau)//Bound check agains the distance to our parrent node, provided by x
+                else if (x < 0 || (bounds[i] - tau <= x && x <= bounds[i] + tau))//Bound check agains the distance to our parrent node, provided by x
                     if ((dist = dm.dist(points[i], query, qi, allVecs, distCache)) < tau)
                     {
                         list.add(new ProbailityMatch<V>(dist, allVecs.get(points[i])));
@@ -540,11 +896,51 @@ public class VPTree<V extends Vec> implements VectorCollection<V>
             double dist = Double.MAX_VALUE;
             
             for (int i = 0; i < points.length; i++)
-                if (bounds[i] - range <= x && x <= bounds[i] + range)//Bound check agains the distance to our parrent node, provided by x
-                    if ((dist = dm.dist(points[i], query, qi, allVecs, distCache)) < range)
+                if (x < 0 || (bounds[i] - range <= x && x <= bounds[i] + range))//Bound check agains the distance to our parrent node, provided by x
+                    if (!removed.get(points[i]) && (dist = dm.dist(points[i], query, qi, allVecs, distCache)) <= range)
                         list.add(new VecPairedComparable<V, Double>(allVecs.get(points[i]), dist));
         }
 
+        @Override
+        public void searchKNN(Vec query, NeighborHeap heap, double x, List<Double> qi)
+        {
+            for (int i = 0; i < points.length; i++)
+            {
+                double tau = heap.bound();
+                //Bound check against the distance to our parent node, provided by x
+                if (removed.get(points[i]))
+                    continue;
+                if (x < 0 || (bounds[i] - tau <= x && x <= bounds[i] + tau))
+                    heap.add(points[i], dm.dist(points[i], query, qi, allVecs, distCache));
+            }
+        }
+
+        @Override
+        public void searchRange(Vec query, double range, NeighborHeap heap, double x, List<Double> qi)
+        {
+            double dist;
+            for (int i = 0; i < points.length; i++)
+                if (x < 0 || (bounds[i] - range <= x && x <= bounds[i] + range))
+                    if (!removed.get(points[i]) && (dist = dm.dist(points[i], query, qi, allVecs, distCache)) <= range)
+                        heap.add(points[i], dist);
+        }
+
+        @Override
+        public TreeNode insert(int index, double x)
+        {
+            points = Arrays.copyOf(points, points.length+1);
+            bounds = Arrays.copyOf(bounds, bounds.length+1);
+            points[points.length-1] = index;
+            bounds[bounds.length-1] = x;
+            if(points.length <= maxLeafSize)
+                return this;
+            //too big, so replace with a subtree over the same points
+            List<Pair<Double, Integer>> S = new SimpleList<Pair<Double, Integer>>(points.length);
+            for(int i = 0; i < points.length; i++)
+                S.add(new Pair<Double, Integer>(bounds[i], points[i]));
+            return makeVPTree(S, allVecs, distCache);
+        }
+
         @Override
         public TreeNode clone()
         {
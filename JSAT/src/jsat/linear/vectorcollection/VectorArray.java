@@ -23,7 +23,7 @@ import jsat.utils.ProbailityMatch;
  * 
  * @author Edward Raff
  */
-public class VectorArray<V extends Vec> extends ArrayList<V> implements VectorCollection<V>
+public class VectorArray<V extends Vec> extends ArrayList<V> implements IndexedVectorCollection<V>
 {
     private DistanceMetric distanceMetric;
     private List<Double> distCache;
@@ -134,6 +134,40 @@ public class VectorArray<V extends Vec> extends ArrayList<V> implements VectorCo
         
     }
 
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNN(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                List<Double> qi = distanceMetric.getQueryInfo(query);
+                for(int i = 0; i < size(); i++)
+                    heap.add(i, distanceMetric.dist(i, query, qi, VectorArray.this, distCache));
+            }
+        }, queries, k, size(), results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRange(new VectorCollectionUtils.IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                List<Double> qi = distanceMetric.getQueryInfo(query);
+                for(int i = 0; i < size(); i++)
+                {
+                    double distance = distanceMetric.dist(i, query, qi, VectorArray.this, distCache);
+                    if(distance <= range)
+                        heap.add(i, distance);
+                }
+            }
+        }, queries, range, results, threadpool);
+    }
+
     @Override
     public VectorArray<V> clone()
     {
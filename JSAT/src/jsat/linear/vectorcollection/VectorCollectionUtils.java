@@ -6,7 +6,9 @@ import java.util.concurrent.*;
 import jsat.linear.Vec;
 import jsat.linear.VecPaired;
 import jsat.math.OnLineStatistics;
+import jsat.utils.FakeExecutor;
 import jsat.utils.ListUtils;
+import jsat.utils.concurrent.ParallelUtils;
 import static jsat.utils.SystemInfo.LogicalCores;
 
 /**
@@ -191,4 +193,273 @@ public class VectorCollectionUtils
     {
         return getKthNeighborStats(collection, Arrays.asList(search), k, threadpool);
     }
+
+    /**
+     * The smallest number of queries a thread is given at once by a batch
+     * search
+     */
+    private static final int MIN_QUERY_BLOCK = 16;
+
+    /**
+     * Performs the search of one query of a batch search, offering every
+     * neighbor it finds to the heap by its index in the collection. It must be
+     * safe to call concurrently from multiple threads.
+     */
+    static interface IndexedSearch
+    {
+        public void search(Vec query, NeighborHeap heap);
+    }
+
+    /**
+     * Performs a batch of k-NN queries with the given search. This is the
+     * common implementation of
+     * {@link IndexedVectorCollection#searchKNN(java.util.List, int, jsat.linear.vectorcollection.NeighborResults, java.util.concurrent.ExecutorService) searchKNN}
+     * for collections that can find neighbors by index.
+     *
+     * @param search the search to perform for each query
+     * @param queries the vectors to find the neighbors of
+     * @param k the number of neighbors to find
+     * @param size the number of vectors in the collection
+     * @param results the results object to reuse, or {@code null}
+     * @param threadpool the source of threads, or {@code null}
+     * @return the results of the search
+     */
+    static NeighborResults searchKNN(IndexedSearch search, List<? extends Vec> queries, int k, int size, NeighborResults results, ExecutorService threadpool)
+    {
+        if(k < 1)
+            throw new IllegalArgumentException("Invalid number of neighbors to search for: " + k);
+        return batchSearch(search, queries, Math.min(k, size), results, threadpool);
+    }
+
+    /**
+     * Performs a batch of range queries with the given search. This is the
+     * common implementation of
+     * {@link IndexedVectorCollection#searchRange(java.util.List, double, jsat.linear.vectorcollection.NeighborResults, java.util.concurrent.ExecutorService) searchRange}
+     * for collections that can find neighbors by index.
+     *
+     * @param search the search to perform for each query
+     * @param queries the vectors to find the neighbors of
+     * @param range the search range
+     * @param results the results object to reuse, or {@code null}
+     * @param threadpool the source of threads, or {@code null}
+     * @return the results of the search
+     */
+    static NeighborResults searchRange(IndexedSearch search, List<? extends Vec> queries, double range, NeighborResults results, ExecutorService threadpool)
+    {
+        if(range < 0 || Double.isNaN(range))
+            throw new IllegalArgumentException("Range must be a non negative number, not " + range);
+        return batchSearch(search, queries, Integer.MAX_VALUE, results, threadpool);
+    }
+
+    /**
+     * Splits the queries into contiguous blocks that are searched by the
+     * threads of the pool, each into its own results which are then joined in
+     * order. The calling thread also searches any block no other thread has
+     * started, so a pool that is busy, or that the caller is a part of, can
+     * not cause a dead lock.
+     */
+    private static NeighborResults batchSearch(final IndexedSearch search, final List<? extends Vec> queries, final int maxNeighbors, NeighborResults results, ExecutorService threadpool)
+    {
+        final int m = queries.size();
+        if(results == null)
+            results = new NeighborResults((int) Math.min(Integer.MAX_VALUE-8, maxNeighbors == Integer.MAX_VALUE ? m : (long) m*maxNeighbors));
+        results.clear();
+
+        int blocks = 1;
+        if(threadpool != null && !(threadpool instanceof FakeExecutor))
+            blocks = Math.max(1, Math.min(LogicalCores*4, m/MIN_QUERY_BLOCK));
+        if(blocks == 1)
+        {
+            searchBlock(search, queries, 0, m, maxNeighbors, results);
+            return results;
+        }
+
+        List<FutureTask<NeighborResults>> tasks = new ArrayList<FutureTask<NeighborResults>>(blocks);
+        for(int id = 0; id < blocks; id++)
+        {
+            final int start = ParallelUtils.getStartBlock(m, id, blocks);
+            final int end = ParallelUtils.getEndBlock(m, id, blocks);
+            FutureTask<NeighborResults> task = new FutureTask<NeighborResults>(new Callable<NeighborResults>()
+            {
+                @Override
+                public NeighborResults call() throws Exception
+                {
+                    NeighborResults blockResults = new NeighborResults(maxNeighbors == Integer.MAX_VALUE ? end-start : (end-start)*maxNeighbors);
+                    searchBlock(search, queries, start, end, maxNeighbors, blockResults);
+                    return blockResults;
+                }
+            });
+            tasks.add(task);
+            threadpool.execute(task);
+        }
+
+        try
+        {
+            for(FutureTask<NeighborResults> task : tasks)
+                task.run();//does nothing if a pool thread already started it
+            for(FutureTask<NeighborResults> task : tasks)
+                results.appendAll(task.get());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            if(ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+        return results;
+    }
+
+    private static void searchBlock(IndexedSearch search, List<? extends Vec> queries, int start, int end, int maxNeighbors, NeighborResults results)
+    {
+        NeighborHeap heap = new NeighborHeap(maxNeighbors == Integer.MAX_VALUE ? 16 : maxNeighbors);
+        for(int i = start; i < end; i++)
+        {
+            heap.reset(maxNeighbors);
+            search.search(queries.get(i), heap);
+            results.append(heap);
+        }
+    }
+
+    /**
+     * Searches the collection for the k neighbors that are closest to each of
+     * the given query vectors, returning the neighbors by their index in the
+     * list the collection was created from. A collection that is an
+     * {@link IndexedVectorCollection} performs the search itself, any other
+     * collection is searched with
+     * {@link #searchKNNByIdentity(jsat.linear.vectorcollection.VectorCollection, java.util.List, java.util.List, int, jsat.linear.vectorcollection.NeighborResults, java.util.concurrent.ExecutorService) searchKNNByIdentity}.
+     *
+     * @param <V> the vector type in the collection
+     * @param collection the collection to search
+     * @param source the vectors the collection was built from, in order
+     * @param queries the vectors to find the neighbors of
+     * @param k the number of neighbors to find
+     * @param results the results object to reuse, or {@code null}
+     * @param threadpool the source of threads to search in parallel, or
+     * {@code null} to search in the calling thread
+     * @return the nearest neighbors of every query, in sorted order from
+     * closest to farthest
+     */
+    public static <V extends Vec> NeighborResults searchKNN(VectorCollection<V> collection, List<? extends Vec> source, List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        if(collection instanceof IndexedVectorCollection)
+            return ((IndexedVectorCollection<V>) collection).searchKNN(queries, k, results, threadpool);
+        return searchKNNByIdentity(collection, source, queries, k, results, threadpool);
+    }
+
+    /**
+     * Searches the collection for all vectors that are within a given range
+     * of each of the given query vectors, returning the neighbors by their
+     * index in the list the collection was created from. A collection that is
+     * an {@link IndexedVectorCollection} performs the search itself, any
+     * other collection is searched with
+     * {@link #searchRangeByIdentity(jsat.linear.vectorcollection.VectorCollection, java.util.List, java.util.List, double, jsat.linear.vectorcollection.NeighborResults, java.util.concurrent.ExecutorService) searchRangeByIdentity}.
+     *
+     * @param <V> the vector type in the collection
+     * @param collection the collection to search
+     * @param source the vectors the collection was built from, in order
+     * @param queries the vectors to find the neighbors of
+     * @param range the search range around each query
+     * @param results the results object to reuse, or {@code null}
+     * @param threadpool the source of threads to search in parallel, or
+     * {@code null} to search in the calling thread
+     * @return all neighbors within the range of every query, in sorted order
+     * from closest to farthest
+     */
+    public static <V extends Vec> NeighborResults searchRange(VectorCollection<V> collection, List<? extends Vec> source, List<? extends Vec> queries, double range, NeighborResults results, ExecutorService threadpool)
+    {
+        if(collection instanceof IndexedVectorCollection)
+            return ((IndexedVectorCollection<V>) collection).searchRange(queries, range, results, threadpool);
+        return searchRangeByIdentity(collection, source, queries, range, results, threadpool);
+    }
+
+    /**
+     * Performs a batch of k-NN queries on any collection by calling
+     * {@link VectorCollection#search(jsat.linear.Vec, int) } for each query,
+     * and finding the index of every returned vector in the list the
+     * collection was built from. The vectors are matched by identity, so the
+     * collection must return the same vector objects it was given. This
+     * costs <i>O(n)</i> extra work per batch to index the source list, and is
+     * meant for collections that do not keep track of the index of their
+     * vectors.
+     *
+     * @param <V> the vector type in the collection
+     * @param collection the collection to search
+     * @param source the vectors the collection was built from, in order. A
+     * {@link MutableVectorCollection} may leave {@code null} in the place of 
+     * removed vectors. 
+     * @param queries the vectors to find the neighbors of
+     * @param k the number of neighbors to find
+     * @param results the results object to reuse, or {@code null}
+     * @param threadpool the source of threads to search in parallel, or
+     * {@code null} to search in the calling thread
+     * @return the nearest neighbors of every query
+     */
+    public static <V extends Vec> NeighborResults searchKNNByIdentity(final VectorCollection<V> collection, List<? extends Vec> source, List<? extends Vec> queries, final int k, NeighborResults results, ExecutorService threadpool)
+    {
+        final Map<Vec, Integer> indexOf = indexByIdentity(source);
+        final int kAvailable = Math.min(k, collection.size());
+        return searchKNN(new IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                for(VecPaired<V, Double> neighbor : collection.search(query, kAvailable))
+                    heap.add(lookUp(indexOf, neighbor.getVector()), neighbor.getPair());
+            }
+        }, queries, k, collection.size(), results, threadpool);
+    }
+
+    /**
+     * Performs a batch of range queries on any collection by calling
+     * {@link VectorCollection#search(jsat.linear.Vec, double) } for each
+     * query, and finding the index of every returned vector in the list the
+     * collection was built from. The same restrictions as
+     * {@link #searchKNNByIdentity(jsat.linear.vectorcollection.VectorCollection, java.util.List, java.util.List, int, jsat.linear.vectorcollection.NeighborResults, java.util.concurrent.ExecutorService) }
+     * apply.
+     *
+     * @param <V> the vector type in the collection
+     * @param collection the collection to search
+     * @param source the vectors the collection was built from, in order
+     * @param queries the vectors to find the neighbors of
+     * @param range the search range around each query
+     * @param results the results object to reuse, or {@code null}
+     * @param threadpool the source of threads to search in parallel, or
+     * {@code null} to search in the calling thread
+     * @return all neighbors within the range of every query
+     */
+    public static <V extends Vec> NeighborResults searchRangeByIdentity(final VectorCollection<V> collection, List<? extends Vec> source, List<? extends Vec> queries, final double range, NeighborResults results, ExecutorService threadpool)
+    {
+        final Map<Vec, Integer> indexOf = indexByIdentity(source);
+        return searchRange(new IndexedSearch()
+        {
+            @Override
+            public void search(Vec query, NeighborHeap heap)
+            {
+                for(VecPaired<V, Double> neighbor : collection.search(query, range))
+                    heap.add(lookUp(indexOf, neighbor.getVector()), neighbor.getPair());
+            }
+        }, queries, range, results, threadpool);
+    }
+
+    private static Map<Vec, Integer> indexByIdentity(List<? extends Vec> source)
+    {
+        Map<Vec, Integer> indexOf = new IdentityHashMap<Vec, Integer>(source.size());
+        for(int i = 0; i < source.size(); i++)
+            if(source.get(i) != null)
+                indexOf.put(source.get(i), i);
+        return indexOf;
+    }
+
+    private static int lookUp(Map<Vec, Integer> indexOf, Vec v)
+    {
+        Integer index = indexOf.get(v);
+        if(index == null)
+            throw new IllegalArgumentException("Collection returned a vector that is not in the source list");
+        return index;
+    }
 }
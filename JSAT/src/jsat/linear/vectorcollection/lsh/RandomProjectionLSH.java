@@ -9,8 +9,11 @@ import jsat.linear.*;
 import jsat.linear.distancemetrics.CosineDistance;
 import jsat.linear.distancemetrics.CosineDistanceNormalized;
 import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.linear.vectorcollection.IndexedVectorCollection;
+import jsat.linear.vectorcollection.NeighborResults;
 import jsat.linear.vectorcollection.VectorCollection;
 import jsat.linear.vectorcollection.VectorCollectionFactory;
+import jsat.linear.vectorcollection.VectorCollectionUtils;
 import jsat.utils.BoundedSortedList;
 import jsat.utils.random.XOR96;
 
@@ -35,7 +38,7 @@ import jsat.utils.random.XOR96;
  * 
  * @author Edward Raff
  */
-public class RandomProjectionLSH<V extends Vec> implements VectorCollection<V>
+public class RandomProjectionLSH<V extends Vec> implements IndexedVectorCollection<V>
 {
     private static final int NO_POOL = -1;
     private Matrix randProjMatrix;
@@ -242,6 +245,18 @@ public class RandomProjectionLSH<V extends Vec> implements VectorCollection<V>
         return vecs.size();
     }
 
+    @Override
+    public NeighborResults searchKNN(List<? extends Vec> queries, int k, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchKNNByIdentity(this, vecs, queries, k, results, threadpool);
+    }
+
+    @Override
+    public NeighborResults searchRange(List<? extends Vec> queries, double range, NeighborResults results, ExecutorService threadpool)
+    {
+        return VectorCollectionUtils.searchRangeByIdentity(this, vecs, queries, range, results, threadpool);
+    }
+
     @Override
     public VectorCollection<V> clone()
     {
@@ -0,0 +1,28 @@
+package jsat.math;
+
+import java.util.concurrent.ExecutorService;
+import jsat.linear.Vec;
+
+/**
+ * FunctionAndGradient is a {@link Function} that can also compute its gradient
+ * at the same time as its value. For functions that are sums over a data set,
+ * this can be done with a single pass over the data rather than one pass for
+ * the value and another for the gradient. Optimizers that see a function
+ * implementing this interface may use it in place of separate calls to the
+ * function and its derivative.
+ *
+ * @author Edward Raff
+ */
+public interface FunctionAndGradient extends Function
+{
+    /**
+     * Computes the value of the function and its gradient at {@code x}
+     * @param x the multivariate input
+     * @param grad the location to store the gradient at {@code x} in, or
+     * {@code null} if only the value is needed
+     * @param ex the source of threads to compute the result from, or
+     * {@code null} to compute it on the calling thread
+     * @return the output of the function
+     */
+    public double f(Vec x, Vec grad, ExecutorService ex);
+}
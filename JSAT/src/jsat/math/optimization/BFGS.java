@@ -65,8 +65,15 @@ public class BFGS implements Optimizer2
         Vec s_k = x_grad.clone();
         Vec y_k = x_grad.clone();
         
-        f_xVal[0] = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_cur, ex) : f.f(x_cur);
-        x_grad = (ex != null) ? fp.f(x_cur, x_grad, ex) : fp.f(x_cur, x_grad);
+        //the value and gradient can be computed in one pass
+        final boolean fused = f instanceof FunctionAndGradient;
+        if(fused)
+            f_xVal[0] = ((FunctionAndGradient)f).f(x_cur, x_grad, ex);
+        else
+        {
+            f_xVal[0] = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_cur, ex) : f.f(x_cur);
+            x_grad = (ex != null) ? fp.f(x_cur, x_grad, ex) : fp.f(x_cur, x_grad);
+        }
        
         int iter = 0;
         while(gradConvgHelper(x_grad) > tolerance && iter < maxIterations)
@@ -83,7 +90,7 @@ public class BFGS implements Optimizer2
             if(alpha_k < 1e-12 && iter > 5)//if we are making near epsilon steps consider it done
                 break;
 
-            if(!search.updatesGrad())
+            if(!search.updatesGrad() && !fused)//fused functions update the gradient during the search
                 if (ex != null)
                     fp.f(x_cur, x_grad, ex);
                 else
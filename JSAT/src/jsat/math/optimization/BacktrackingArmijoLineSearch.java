@@ -3,6 +3,7 @@ package jsat.math.optimization;
 import java.util.concurrent.ExecutorService;
 import jsat.linear.Vec;
 import jsat.math.Function;
+import jsat.math.FunctionAndGradient;
 import jsat.math.FunctionP;
 import jsat.math.FunctionVec;
 
@@ -84,7 +85,7 @@ public class BacktrackingArmijoLineSearch implements LineSearch
         else
             x_k.copyTo(x_alpha_pk);
         x_alpha_pk.mutableAdd(alpha, p_k);
-        double f_xap = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_alpha_pk, ex): f.f(x_alpha_pk);
+        double f_xap = evaluate(f, x_alpha_pk, grad_x_alpha_pk, ex);
         if(fxApRet != null)
             fxApRet[0] = f_xap;
         double oldAlpha = 0;
@@ -140,7 +141,7 @@ public class BacktrackingArmijoLineSearch implements LineSearch
                 return oldAlpha;
             x_alpha_pk.mutableSubtract(oldAlpha - alpha, p_k);
             oldF_xap = f_xap;
-            f_xap = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_alpha_pk, ex): f.f(x_alpha_pk);
+            f_xap = evaluate(f, x_alpha_pk, grad_x_alpha_pk, ex);
             if(fxApRet != null)
                 fxApRet[0] = f_xap;
         }
@@ -148,6 +149,22 @@ public class BacktrackingArmijoLineSearch implements LineSearch
         return alpha;
     }
 
+    /**
+     * Computes the value of the function, and its gradient as well if it can 
+     * be done in the same pass
+     * @param f the function to evaluate
+     * @param x the point to evaluate at
+     * @param grad the location to store the gradient, may be {@code null}
+     * @param ex the source of threads, or {@code null}
+     * @return f(x)
+     */
+    private static double evaluate(Function f, Vec x, Vec grad, ExecutorService ex)
+    {
+        if(f instanceof FunctionAndGradient && grad != null)
+            return ((FunctionAndGradient)f).f(x, grad, ex);
+        return (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x, ex): f.f(x);
+    }
+
     @Override
     public boolean updatesGrad()
     {
@@ -108,7 +108,6 @@ public class LBFGS implements Optimizer2
         
         Vec x_prev = x0.clone();
         Vec x_cur = x0.clone();
-        f_xVal[0] = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_prev, ex) : f.f(x_prev);
         //graidnet
         Vec x_grad = x0.clone();
         x_grad.zeroOut();
@@ -118,7 +117,15 @@ public class LBFGS implements Optimizer2
         Vec s_k = x_grad.clone();
         Vec y_k = x_grad.clone();
         
-        x_grad = (ex != null) ? fp.f(x_cur, x_grad, ex) : fp.f(x_cur, x_grad);
+        //the value and gradient can be computed in one pass
+        final boolean fused = f instanceof FunctionAndGradient;
+        if(fused)
+            f_xVal[0] = ((FunctionAndGradient)f).f(x_cur, x_grad, ex);
+        else
+        {
+            f_xVal[0] = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_prev, ex) : f.f(x_prev);
+            x_grad = (ex != null) ? fp.f(x_cur, x_grad, ex) : fp.f(x_cur, x_grad);
+        }
        
         double[] alphas = new double[m];
         int iter = 0;
@@ -137,7 +144,7 @@ public class LBFGS implements Optimizer2
             if(alpha_k < 1e-12 && iter > 25)//if we are making near epsilon steps consider it done
                 break;
             
-            if(!search.updatesGrad())
+            if(!search.updatesGrad() && !fused)//fused functions update the gradient during the search
                 if (ex != null)
                     fp.f(x_cur, x_grad, ex);
                 else
@@ -3,6 +3,7 @@ package jsat.math.optimization;
 import java.util.concurrent.ExecutorService;
 import jsat.linear.Vec;
 import jsat.math.Function;
+import jsat.math.FunctionAndGradient;
 import jsat.math.FunctionVec;
 
 /**
@@ -14,7 +15,12 @@ import jsat.math.FunctionVec;
  * <br>
  * The LineSearch is allowed to maintain a history of update values to use on 
  * future calls. For this reason, a {@link #clone() clone} of the line search 
- * should be used for each new optimization problem. 
+ * should be used for each new optimization problem. <br>
+ * <br>
+ * If the function is a {@link FunctionAndGradient} and a location for the 
+ * gradient is given, the value and gradient should be computed together at 
+ * each point tried, and the gradient at the returned point will be up-to-date 
+ * after the call regardless of {@link #updatesGrad() }. 
  * 
  * @author Edward Raff
  */
@@ -119,6 +119,8 @@ public class WolfeNWLineSearch implements LineSearch
             f_x = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_k, ex): f.f(x_k);
         if(Double.isNaN(gradP))
             gradP = x_grad.dot(p_k);
+        if(grad_x_alpha_pk == null)
+            grad_x_alpha_pk = x_k.clone();
         final double phi0 = f_x, phi0P = gradP;
         
         double alpha_cur = 1;
@@ -145,10 +147,10 @@ public class WolfeNWLineSearch implements LineSearch
         {
             //Evaluate φ(αi );
             x_alpha_pk.mutableAdd(alpha_cur-alpha_prev, p_k);
-            double phi_cur = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_alpha_pk, ex): f.f(x_alpha_pk);
+            double phi_cur = evaluate(f, fp, x_alpha_pk, grad_x_alpha_pk, ex);
             if(fxApRet != null)
                 fxApRet[0] = phi_cur;
-            double phi_curP = (ex != null) ? fp.f(x_alpha_pk, grad_x_alpha_pk, ex).dot(p_k) : fp.f(x_alpha_pk, grad_x_alpha_pk).dot(p_k);//computed early b/c used in interpolation in zoom
+            double phi_curP = grad_x_alpha_pk.dot(p_k);//computed early b/c used in interpolation in zoom
             //if φ(αi)>φ(0)+c1 αi φ'(0) or[φ(αi)≥φ(αi−1) and i >1]
             if(phi_cur > phi0 + c1*alpha_cur*phi0P || (phi_cur >= phi_prev && iter > 1) )
             {
@@ -233,10 +235,10 @@ public class WolfeNWLineSearch implements LineSearch
             x_alpha_p.mutableAdd(alpha_j, p);
             
             //Evaluate φ(αj );
-            double phi_j = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x_alpha_p, ex): f.f(x_alpha_p);
+            double phi_j = evaluate(f, fp, x_alpha_p, grad_x_alpha_pk, ex);
             if(fxApRet != null)
                 fxApRet[0] = phi_j;
-            double phi_jP = (ex != null) ? fp.f(x_alpha_p, grad_x_alpha_pk, ex).dot(p) : fp.f(x_alpha_p, grad_x_alpha_pk).dot(p);//computed early
+            double phi_jP = grad_x_alpha_pk.dot(p);//computed early
             //if φ(αj ) > φ(0) + c1αj φ'(0) or φ(αj ) ≥ φ(αlo)
             if(phi_j > phi0 + c1*alpha_j*phi0 || phi_j >= phi_alphaLow)
             {
@@ -270,6 +272,28 @@ public class WolfeNWLineSearch implements LineSearch
         return alpha_j;
     }
 
+    /**
+     * Computes the value of the function and its gradient, in one pass if the
+     * function supports it
+     * @param f the function to evaluate
+     * @param fp the gradient of the function
+     * @param x the point to evaluate at
+     * @param grad the location to store the gradient in
+     * @param ex the source of threads, or {@code null}
+     * @return f(x)
+     */
+    private static double evaluate(Function f, FunctionVec fp, Vec x, Vec grad, ExecutorService ex)
+    {
+        if(f instanceof FunctionAndGradient)
+            return ((FunctionAndGradient)f).f(x, grad, ex);
+        double f_x = (ex != null && f instanceof FunctionP) ? ((FunctionP)f).f(x, ex): f.f(x);
+        if(ex != null)
+            fp.f(x, grad, ex);
+        else
+            fp.f(x, grad);
+        return f_x;
+    }
+
     @Override
     public boolean updatesGrad()
     {
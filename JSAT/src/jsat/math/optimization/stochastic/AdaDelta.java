@@ -1,8 +1,7 @@
 package jsat.math.optimization.stochastic;
 
-import jsat.linear.DenseVector;
+import java.util.Arrays;
 import jsat.linear.IndexValue;
-import jsat.linear.ScaledVector;
 import jsat.linear.Vec;
 
 /**
@@ -11,6 +10,10 @@ import jsat.linear.Vec;
  * unlike AdaGrad the learning rates may increase over time and are highly 
  * robust to any individual learning rate. <br>
  * <br>
+ * The decay of the running averages is applied lazily, only when a feature 
+ * has a non-zero gradient, so each update takes time proportional to the 
+ * number of non-zeros in the gradient. <br>
+ * <br>
  * See: Zeiler, M. D. (2012). <i>ADADELTA: An Adaptive Learning Rate Method</i>.
  * CoRR, abs/1212.5.
  * 
@@ -19,8 +22,13 @@ import jsat.linear.Vec;
 public class AdaDelta implements GradientUpdater
 {
     private double rho;
-    private Vec gSqrd;
-    private Vec deltaXSqrt;
+    private double[] gSqrd;
+    private double[] deltaXSqrt;
+    /**
+     * The time step at which each feature was last brought up to date
+     */
+    private long[] lastUpdate;
+    private long time;
     private double eps = 0.0001;
     
 
@@ -50,9 +58,11 @@ public class AdaDelta implements GradientUpdater
         this.rho = toCopy.rho;
         if(toCopy.gSqrd != null)
         {
-            this.gSqrd = toCopy.gSqrd.clone();
-            this.deltaXSqrt = toCopy.deltaXSqrt.clone();
+            this.gSqrd = Arrays.copyOf(toCopy.gSqrd, toCopy.gSqrd.length);
+            this.deltaXSqrt = Arrays.copyOf(toCopy.deltaXSqrt, toCopy.deltaXSqrt.length);
+            this.lastUpdate = Arrays.copyOf(toCopy.lastUpdate, toCopy.lastUpdate.length);
         }
+        this.time = toCopy.time;
     }
     
     /**
@@ -80,21 +90,23 @@ public class AdaDelta implements GradientUpdater
     @Override
     public void update(Vec x, Vec grad, double eta)
     {
-        gSqrd.mutableMultiply(rho);
+        time++;
         for(IndexValue iv : grad)
         {
             final int indx = iv.getIndex();
             final double grad_i = iv.getValue();
-            gSqrd.increment(indx, grad_i*grad_i*(1-rho));//step 4
-            final double gSqrd_i = gSqrd.get(indx);
-            final double deltaX_i = deltaXSqrt.get(indx);
+            //apply the decay of every step since this feature was last seen
+            final long missed = time - lastUpdate[indx];
+            final double decay = missed == 1 ? rho : Math.pow(rho, missed);
+            lastUpdate[indx] = time;
+            final double gSqrd_i = gSqrd[indx] = gSqrd[indx]*decay + grad_i*grad_i*(1-rho);//step 4
+            //the last step's decay of deltaXSqrt happens below
+            final double deltaX_i = deltaXSqrt[indx]*decay/rho;
             
             final double newDeltaX_i = -Math.sqrt((deltaX_i+eps)/(gSqrd_i+eps))*grad_i;//step 5
             x.increment(indx, eta*newDeltaX_i);//step 7
-            deltaXSqrt.increment(indx, (1-rho)/rho*newDeltaX_i*newDeltaX_i);//step 6, using (1-rho)/rho so we can multiply by rho at the end to get the correct result  
+            deltaXSqrt[indx] = deltaXSqrt[indx]*decay + (1-rho)*newDeltaX_i*newDeltaX_i;//step 6
         }
-        //step 6 correction, apply rho to the left hand side
-        deltaXSqrt.mutableMultiply(rho);
     }
 
     @Override
@@ -106,8 +118,10 @@ public class AdaDelta implements GradientUpdater
     @Override
     public void setup(int d)
     {
-        gSqrd = new ScaledVector(new DenseVector(d));
-        deltaXSqrt = new ScaledVector(new DenseVector(d));
+        gSqrd = new double[d];
+        deltaXSqrt = new double[d];
+        lastUpdate = new long[d];
+        time = 0;
     }
     
 }
@@ -1,8 +1,7 @@
 package jsat.math.optimization.stochastic;
 
-import jsat.linear.DenseVector;
+import java.util.Arrays;
 import jsat.linear.IndexValue;
-import jsat.linear.ScaledVector;
 import jsat.linear.Vec;
 import static java.lang.Math.*;
 
@@ -10,8 +9,11 @@ import static java.lang.Math.*;
  * Adam is inspired by {@link RMSProp} and {@link AdaGrad}, where the former can
  * be seen as a special case of Adam. Adam has been shown to work well in 
  * training neural networks, and still converges well with sparse gradients.<br>
- * NOTE: that while it will converge, Adam dose not support sparse updates. So
- * runtime when in highly sparse environments will be hampered. <br>
+ * NOTE: that while it will converge, Adam moves every feature on every update,
+ * so runtime when in highly sparse environments will be hampered. The moment 
+ * estimates are decayed lazily, so enabling 
+ * {@link #setSparseUpdates(boolean) sparse updates} makes each update take 
+ * time proportional to the number of non-zeros in the gradient. <br>
  * <br>
  * See: Kingma, D. P., & Ba, J. L. (2015). <i>Adam: A Method for Stochastic 
  * Optimization</i>. In ICLR.
@@ -24,16 +26,22 @@ public class Adam implements GradientUpdater
     /**
      * 1st moment vector
      */
-    private Vec m;
+    private double[] m;
     /**
      * 2nd moment vector
      */
-    private Vec v;
+    private double[] v;
+    /**
+     * The time step at which each value of {@link #m} and {@link #v} was last
+     * brought up to date
+     */
+    private long[] lastUpdate;
     
     /**
      * time step
      */
     private long t;
+    private boolean sparseUpdates = false;
     
     //parameters of the algo
     private double alpha;
@@ -84,15 +92,45 @@ public class Adam implements GradientUpdater
         this.eps = toCopy.eps;
         this.lambda = toCopy.lambda;
         this.t = toCopy.t;
+        this.sparseUpdates = toCopy.sparseUpdates;
         
         if(toCopy.m != null)
         {
-            this.m = toCopy.m.clone();
-            this.v = toCopy.v.clone();
+            this.m = Arrays.copyOf(toCopy.m, toCopy.m.length);
+            this.v = Arrays.copyOf(toCopy.v, toCopy.v.length);
+            this.lastUpdate = Arrays.copyOf(toCopy.lastUpdate, toCopy.lastUpdate.length);
         }
         
     }
 
+    /**
+     * Sets whether or not only the features with a non-zero gradient should 
+     * be updated. The first moment of a feature decays by a factor of 
+     * (1-&beta;<sub>1</sub>)&lambda;<sup>t-1</sup> on every step it is not 
+     * seen, so with the default &lambda; the movement of unseen features 
+     * becomes negligible after the first few updates. Skipping them makes 
+     * each update take time proportional to the number of non-zeros in the 
+     * gradient, rather than the number of features. 
+     * 
+     * @param sparseUpdates {@code true} to only update the features with a 
+     * non-zero gradient, {@code false} to update every feature as in the 
+     * original algorithm. 
+     */
+    public void setSparseUpdates(boolean sparseUpdates)
+    {
+        this.sparseUpdates = sparseUpdates;
+    }
+
+    /**
+     * 
+     * @return {@code true} if only the features with a non-zero gradient are 
+     * updated
+     */
+    public boolean isSparseUpdates()
+    {
+        return sparseUpdates;
+    }
+
     @Override
     public void update(Vec x, Vec grad, double eta)
     {
@@ -101,16 +139,6 @@ public class Adam implements GradientUpdater
         double beta_1t = 1 - (1-beta_1)*pow(lambda, t-1);
         //(Get gradients w.r.t. stochastic objective at timestep t) 
         //grad is already that value
-        //(Update biased first moment estimate)
-        m.mutableMultiply(1-beta_1t);
-        m.mutableAdd(beta_1t, grad);
-        //(Update biased second raw moment estimate)
-        v.mutableMultiply(1-beta_2);
-        for(final IndexValue iv : grad)
-        {
-            final double g_i = iv.getValue();
-            v.increment(iv.getIndex(), beta_2*(g_i*g_i));
-        }
         /*
          * "Note that the efficiency of algorithm 1 can, at the expense of 
          * clarity, be improved upon by changing the order of computation, e.g. 
@@ -120,9 +148,56 @@ public class Adam implements GradientUpdater
          */
         double cnst = eta*alpha*sqrt(1-pow((1-beta_2), t))/(1-pow((1-beta_1), t));
         
+        for(final IndexValue iv : grad)
+        {
+            final int i = iv.getIndex();
+            final double g_i = iv.getValue();
+            catchUp(i, t-1, beta_1t);
+            //(Update biased first moment estimate)
+            m[i] = (1-beta_1t)*m[i] + beta_1t*g_i;
+            //(Update biased second raw moment estimate)
+            v[i] = (1-beta_2)*v[i] + beta_2*(g_i*g_i);
+            lastUpdate[i] = t;
+            if(sparseUpdates)
+                x.increment(i, -cnst * m[i]/(sqrt(v[i])+eps));
+        }
+        
+        if(sparseUpdates)
+            return;
         //while the algorithm may converge well with sparse data, m and v are likely to all be non-zero after observing lots of data. 
-        for(int i = 0; i < m.length(); i++)
-            x.increment(i, -cnst * m.get(i)/(sqrt(v.get(i))+eps));
+        for(int i = 0; i < m.length; i++)
+        {
+            catchUp(i, t, beta_1t);
+            x.increment(i, -cnst * m[i]/(sqrt(v[i])+eps));
+        }
+    }
+    
+    /**
+     * Applies the decay of the moment estimates for every step a feature was
+     * not seen, up to and including the given step
+     * @param i the index of the feature
+     * @param to the time step to bring the feature up to date with
+     * @param beta_1t the first moment coefficient of the current time step
+     */
+    private void catchUp(final int i, final long to, final double beta_1t)
+    {
+        final long from = lastUpdate[i];
+        final long missed = to - from;
+        if(missed <= 0)
+            return;
+        if(missed == 1 && to == t)
+        {
+            m[i] *= 1-beta_1t;
+            v[i] *= 1-beta_2;
+        }
+        else
+        {
+            //product of (1-beta_1)*lambda^(s-1) for s in (from, to]
+            final double sumPowers = missed*(double)(from+to-1)/2;
+            m[i] *= exp(missed*log(1-beta_1) + sumPowers*log(lambda));
+            v[i] *= pow(1-beta_2, missed);
+        }
+        lastUpdate[i] = to;
     }
 
     @Override
@@ -135,8 +210,9 @@ public class Adam implements GradientUpdater
     public void setup(int d)
     {
         t = 0;
-        m = new ScaledVector(new DenseVector(d));
-        v = new ScaledVector(new DenseVector(d));
+        m = new double[d];
+        v = new double[d];
+        lastUpdate = new long[d];
     }
     
 }
@@ -7,7 +7,13 @@ import jsat.linear.Vec;
  * This interface defines the method of updating some weight vector using a 
  * gradient and a learning rate. The method may then apply its own set of 
  * learning rates on top of the given learning rate in order to accelerate 
- * convergence in general or for specific conditions / methods. 
+ * convergence in general or for specific conditions / methods. <br>
+ * <br>
+ * When possible, an updater should only touch the features that are non-zero 
+ * in the gradient, deferring any per feature state (such as the decay of a 
+ * running average) until the feature is next seen. This way learners that 
+ * receive sparse gradients get updates that take time proportional to the 
+ * number of non-zeros, rather than the dimension of the weight vector. 
  * 
  * @author Edward Raff
  */
@@ -1,20 +1,29 @@
 package jsat.math.optimization.stochastic;
 
-import jsat.linear.DenseVector;
+import java.util.Arrays;
 import jsat.linear.IndexValue;
-import jsat.linear.ScaledVector;
 import jsat.linear.Vec;
 
 /**
  * rmsprop is an adpative learning weight scheme proposed by Geoffrey Hinton. 
- * Provides an adaptive learning rate for each individual feature
+ * Provides an adaptive learning rate for each individual feature<br>
+ * <br>
+ * The decay of the squared gradients is applied lazily, only when a feature 
+ * has a non-zero gradient, so each update takes time proportional to the 
+ * number of non-zeros in the gradient. 
  * 
  * @author Edward Raff
  */
 public class RMSProp implements GradientUpdater
 {
     private double rho;
-    private Vec daigG;
+    private double[] daigG;
+    /**
+     * The time step at which each value of {@link #daigG} was last brought up
+     * to date
+     */
+    private long[] lastUpdate;
+    private long time;
     
     /**
      * Creates a new RMSProp updater that uses a decay rate of 0.9
@@ -62,7 +71,11 @@ public class RMSProp implements GradientUpdater
     public RMSProp(RMSProp toCopy)
     {
         if(toCopy.daigG != null)
-            this.daigG = toCopy.daigG.clone();
+        {
+            this.daigG = Arrays.copyOf(toCopy.daigG, toCopy.daigG.length);
+            this.lastUpdate = Arrays.copyOf(toCopy.lastUpdate, toCopy.lastUpdate.length);
+        }
+        this.time = toCopy.time;
         this.rho = toCopy.rho;
     }
     
@@ -70,13 +83,16 @@ public class RMSProp implements GradientUpdater
     @Override
     public void update(Vec x, Vec grad, double eta)
     {
-        daigG.mutableMultiply(rho);
+        time++;
         for(IndexValue iv : grad)
         {
             final int indx = iv.getIndex();
             final double grad_i = iv.getValue();
-            daigG.increment(indx, (1-rho)*grad_i*grad_i);
-            double g_iiRoot = Math.max(Math.sqrt(daigG.get(indx)), Math.abs(grad_i));//tiny grad sqrd could result in zero
+            //apply the decay of every step since this feature was last seen
+            final long missed = time - lastUpdate[indx];
+            daigG[indx] = daigG[indx]*(missed == 1 ? rho : Math.pow(rho, missed)) + (1-rho)*grad_i*grad_i;
+            lastUpdate[indx] = time;
+            double g_iiRoot = Math.max(Math.sqrt(daigG[indx]), Math.abs(grad_i));//tiny grad sqrd could result in zero
             x.increment(indx, -eta*grad_i/g_iiRoot);
         }
     }
@@ -90,7 +106,9 @@ public class RMSProp implements GradientUpdater
     @Override
     public void setup(int d)
     {
-        daigG = new ScaledVector(new DenseVector(d));
+        daigG = new double[d];
+        lastUpdate = new long[d];
+        time = 0;
     }
     
 }
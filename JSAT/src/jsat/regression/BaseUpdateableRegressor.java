@@ -1,9 +1,12 @@
 package jsat.regression;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.concurrent.ExecutorService;
 import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPointPair;
 import jsat.classifiers.UpdateableClassifier;
+import jsat.io.DataPointIterator;
 import jsat.utils.IntList;
 import jsat.utils.ListUtils;
 
@@ -78,6 +81,42 @@ public abstract class BaseUpdateableRegressor implements UpdateableRegressor
         }
     }
 
+    /**
+     * Performs training on an updateable regressor by streaming the data 
+     * from a file, one observation at a time, multiple times. Unlike 
+     * {@link #trainEpochs(jsat.regression.RegressionDataSet, 
+     * jsat.regression.UpdateableRegressor, int) }, the data is never held in 
+     * memory, so the observations are visited in the order of the file. 
+     * 
+     * @param data the stream of data points to train from. The stream should 
+     * not have been read from yet, and is used for the first epoch. 
+     * @param toTrain the regressor to train
+     * @param epochs the number of passes through the data
+     * @throws IOException if an error occurred reading the data
+     */
+    public static void trainEpochs(DataPointIterator<Double> data, UpdateableRegressor toTrain, int epochs) throws IOException
+    {
+        if(epochs < 1)
+            throw new IllegalArgumentException("epochs must be positive");
+        toTrain.setUp(data.getCategories(), data.getNumNumericalVars());
+        for (int epoch = 0; epoch < epochs; epoch++)
+        {
+            DataPointIterator<Double> iter = epoch == 0 ? data : data.reopen();
+            try
+            {
+                while(iter.hasNext())
+                {
+                    DataPointPair<Double> dpp = iter.next();
+                    toTrain.update(dpp.getDataPoint(), dpp.getPair());
+                }
+            }
+            finally
+            {
+                iter.close();
+            }
+        }
+    }
+
     @Override
     abstract public UpdateableRegressor clone();
   
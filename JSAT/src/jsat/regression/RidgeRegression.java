@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import jsat.classifiers.DataPoint;
 import jsat.linear.*;
+import jsat.linear.solvers.ConjugateGradient;
 import jsat.parameters.Parameter;
 import jsat.parameters.Parameterized;
 import jsat.utils.FakeExecutor;
@@ -43,6 +44,15 @@ public class RidgeRegression implements Regressor, Parameterized
          * Solves by {@link SingularValueDecomposition}
          */
         EXACT_SVD,
+        /**
+         * Solves iteratively with the 
+         * {@link ConjugateGradient#solveCGNR(double, jsat.linear.Matrix, jsat.linear.Vec, jsat.linear.Vec, double, java.util.concurrent.ExecutorService) CGNR} 
+         * method on a {@link CSRMatrix} of the data. The 
+         * <i>X<sup>T</sup>X</i> matrix is never formed, so this mode can be
+         * used for large sparse problems where the exact solvers would need
+         * too much memory.
+         */
+        CONJUGATE_GRADIENT,
     }
 
     public RidgeRegression()
@@ -111,6 +121,11 @@ public class RidgeRegression implements Regressor, Parameterized
     public void train(RegressionDataSet dataSet, ExecutorService threadPool)
     {
         final int dim = dataSet.getNumNumericalVars()+1;
+        if(mode == SolverMode.CONJUGATE_GRADIENT)
+        {
+            trainCG(dataSet, threadPool instanceof FakeExecutor ? null : threadPool);
+            return;
+        }
         DenseMatrix X = new DenseMatrix(dataSet.getSampleSize(), dim);
 
         for(int i = 0; i < dataSet.getSampleSize(); i++)
@@ -152,11 +167,55 @@ public class RidgeRegression implements Regressor, Parameterized
             w = cd.solve(Matrix.eye(H.rows())).multiply(X.transpose()).multiply(Y);
         }
         
-        //reformat w and seperate out bias term
-        bias = w.get(0);
-        Vec newW = new DenseVector(w.length()-1);
+        setWeightsAndBias(w);
+    }
+
+    /**
+     * Solves the problem with the conjugate gradient method, using a sparse
+     * matrix of the data with an extra first column of ones for the bias term.
+     * @param dataSet the data set to train on
+     * @param threadPool the source of threads, or {@code null} to run serially
+     */
+    private void trainCG(RegressionDataSet dataSet, ExecutorService threadPool)
+    {
+        final int N = dataSet.getSampleSize();
+        final int dim = dataSet.getNumNumericalVars()+1;
+        int[] rowPtr = new int[N+1];
+        for(int i = 0; i < N; i++)
+            rowPtr[i+1] = rowPtr[i] + 1 + dataSet.getDataPoint(i).getNumericalValues().nnz();
+        int[] colIdx = new int[rowPtr[N]];
+        double[] values = new double[rowPtr[N]];
+        for(int i = 0; i < N; i++)
+        {
+            int pos = rowPtr[i];
+            colIdx[pos] = 0;
+            values[pos++] = 1.0;
+            for(IndexValue iv : dataSet.getDataPoint(i).getNumericalValues())
+            {
+                colIdx[pos] = iv.getIndex()+1;
+                values[pos++] = iv.getValue();
+            }
+        }
+        CSRMatrix X = new CSRMatrix(N, dim, rowPtr, colIdx, values);
+        Vec Y = dataSet.getTargetValues();
+        
+        //stop relative to the size of the right hand side X' y
+        double eps = 1e-10*Math.max(1, X.transposeMultiply(1.0, Y).pNorm(2));
+        Vec x = new DenseVector(dim);
+        ConjugateGradient.solveCGNR(eps, X, x, Y, lambda, threadPool);
+        setWeightsAndBias(x);
+    }
+
+    /**
+     * Seperates out the bias term from the solution
+     * @param wAll the solution, with the bias term as the first value
+     */
+    private void setWeightsAndBias(Vec wAll)
+    {
+        bias = wAll.get(0);
+        Vec newW = new DenseVector(wAll.length()-1);
         for(int i = 0; i < newW.length(); i++)
-            newW.set(i, w.get(i+1));
+            newW.set(i, wAll.get(i+1));
         w = newW;
     }
 
@@ -175,7 +234,7 @@ public class RidgeRegression implements Regressor, Parameterized
     @Override
     public RidgeRegression clone()
     {
-        RidgeRegression clone = new RidgeRegression(lambda);
+        RidgeRegression clone = new RidgeRegression(lambda, mode);
         if(this.w != null)
             clone.w = this.w.clone();
         clone.bias = this.bias;
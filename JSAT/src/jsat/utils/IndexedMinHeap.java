@@ -0,0 +1,222 @@
+package jsat.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A binary min-heap over the integer ids [0, <i>n</i>), where each id in the
+ * heap has a primitive double key. The position of every id in the heap is
+ * tracked, so {@link #contains(int) } and {@link #getKey(int) } take constant
+ * time and {@link #decreaseKey(int, double) } takes O(log n) time, without
+ * boxing the ids or searching the heap for them. <br>
+ * Ids with equal keys are removed in order of increasing id, so the order
+ * that ids are removed in does not depend on the order they were added.
+ *
+ * @author Edward Raff
+ */
+public class IndexedMinHeap implements Serializable
+{
+    /**
+     * The ids in heap order
+     */
+    private int[] heap;
+    /**
+     * The position of each id in {@link #heap}, or -1 if it is not in the heap
+     */
+    private int[] position;
+    /**
+     * The key of each id
+     */
+    private double[] keys;
+    private int size;
+
+    /**
+     * Creates a new empty heap
+     * @param n the number of ids the heap may contain, which will be in the
+     * range [0, n)
+     */
+    public IndexedMinHeap(int n)
+    {
+        if(n < 0)
+            throw new IllegalArgumentException("Number of ids must be non negative, not " + n);
+        heap = new int[n];
+        position = new int[n];
+        keys = new double[n];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+    /**
+     * Copy constructor
+     * @param toCopy the object to copy
+     */
+    public IndexedMinHeap(IndexedMinHeap toCopy)
+    {
+        this.heap = Arrays.copyOf(toCopy.heap, toCopy.heap.length);
+        this.position = Arrays.copyOf(toCopy.position, toCopy.position.length);
+        this.keys = Arrays.copyOf(toCopy.keys, toCopy.keys.length);
+        this.size = toCopy.size;
+    }
+
+    /**
+     * Returns the number of ids currently in the heap
+     * @return the number of ids in the heap
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if the heap contains no ids
+     * @return {@code true} if the heap contains no ids
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if the given id is currently in the heap
+     * @param id the id to check for
+     * @return {@code true} if the id is in the heap
+     */
+    public boolean contains(int id)
+    {
+        return position[id] >= 0;
+    }
+
+    /**
+     * Returns the key of an id in the heap
+     * @param id the id in the heap
+     * @return the key of the id
+     * @throws IllegalArgumentException if the id is not in the heap
+     */
+    public double getKey(int id)
+    {
+        if(position[id] < 0)
+            throw new IllegalArgumentException("Id " + id + " is not in the heap");
+        return keys[id];
+    }
+
+    /**
+     * Adds an id to the heap
+     * @param id the id to add
+     * @param key the key of the id
+     * @throws IllegalArgumentException if the id is already in the heap, or
+     * the key is NaN
+     */
+    public void add(int id, double key)
+    {
+        if(position[id] >= 0)
+            throw new IllegalArgumentException("Id " + id + " is already in the heap");
+        else if(Double.isNaN(key))
+            throw new IllegalArgumentException("Key can not be NaN");
+        keys[id] = key;
+        heap[size] = id;
+        position[id] = size;
+        heapifyUp(size++);
+    }
+
+    /**
+     * Lowers the key of an id already in the heap
+     * @param id the id in the heap
+     * @param key the new key, which may not be larger than the current key
+     * @throws IllegalArgumentException if the id is not in the heap, or the
+     * key is larger than the current key
+     */
+    public void decreaseKey(int id, double key)
+    {
+        if(position[id] < 0)
+            throw new IllegalArgumentException("Id " + id + " is not in the heap");
+        else if(!(key <= keys[id]))
+            throw new IllegalArgumentException("Key " + key + " is larger than the current key " + keys[id]);
+        keys[id] = key;
+        heapifyUp(position[id]);
+    }
+
+    /**
+     * Returns the id with the smallest key without removing it
+     * @return the id with the smallest key
+     * @throws java.util.NoSuchElementException if the heap is empty
+     */
+    public int peek()
+    {
+        if(size == 0)
+            throw new java.util.NoSuchElementException("Heap is empty");
+        return heap[0];
+    }
+
+    /**
+     * Removes and returns the id with the smallest key
+     * @return the id with the smallest key
+     * @throws java.util.NoSuchElementException if the heap is empty
+     */
+    public int poll()
+    {
+        if(size == 0)
+            throw new java.util.NoSuchElementException("Heap is empty");
+        int top = heap[0];
+        position[top] = -1;
+        if(--size > 0)
+        {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            heapDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes all ids from the heap
+     */
+    public void clear()
+    {
+        for(int i = 0; i < size; i++)
+            position[heap[i]] = -1;
+        size = 0;
+    }
+
+    /**
+     * Returns {@code true} if id {@code a} should be removed before id
+     * {@code b}
+     */
+    private boolean less(int a, int b)
+    {
+        return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+    }
+
+    private void heapifyUp(int i)
+    {
+        int id = heap[i];
+        while(i > 0)
+        {
+            int parent = (i-1)/2;
+            if(!less(id, heap[parent]))
+                break;
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    private void heapDown(int i)
+    {
+        int id = heap[i];
+        int child;
+        while((child = 2*i+1) < size)
+        {
+            if(child+1 < size && less(heap[child+1], heap[child]))
+                child++;
+            if(!less(heap[child], id))
+                break;
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+}
@@ -133,6 +133,62 @@ public class QuickSort
             Collections.swap(l, i, j);
     }
 
+    /**
+     * Partially sorts the given range so that the value at <tt>kth</tt> is the
+     * one that would be there if the range were sorted, every value before it
+     * is less than or equal to it, and every value after it is greater than or
+     * equal to it. This takes linear time on average. {@link Double#NaN} 
+     * values will not be handled appropriately. 
+     * 
+     * @param x the array to select in
+     * @param paired an array whose values are swapped along with <tt>x</tt>
+     * @param start the starting index (inclusive) of the range
+     * @param end the ending index (exclusive) of the range
+     * @param kth the index whose value should be selected
+     */
+    public static void select(double[] x, int[] paired, int start, int end, int kth)
+    {
+        int lo = start, hi = end-1;
+        while(hi > lo)
+        {
+            if(hi-lo < 7)
+            {
+                for (int i = lo+1; i <= hi; i++)
+                    for (int j = i; j > lo && x[j-1] > x[j]; j--)
+                        swap(x, paired, j, j-1);
+                return;
+            }
+            double pivot = x[med3(x, lo, lo+(hi-lo)/2, hi)];
+            int i = lo, j = hi;
+            while(i <= j)
+            {
+                while(x[i] < pivot)
+                    i++;
+                while(x[j] > pivot)
+                    j--;
+                if(i <= j)
+                    swap(x, paired, i++, j--);
+            }
+            //[lo, j] <= pivot, (j, i) == pivot, [i, hi] >= pivot
+            if(kth <= j)
+                hi = j;
+            else if(kth >= i)
+                lo = i;
+            else
+                return;
+        }
+    }
+    
+    private static void swap(double[] x, int[] paired, int i, int j)
+    {
+        double t = x[i];
+        x[i] = x[j];
+        x[j] = t;
+        int tp = paired[i];
+        paired[i] = paired[j];
+        paired[j] = tp;
+    }
+
     /**
      * Performs sorting based on the double values natural comparator. 
      * {@link Double#NaN} values will  not be handled appropriately. 
@@ -0,0 +1,91 @@
+package jsat.utils.concurrent;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A lock-free union-find (disjoint set) structure over the integers
+ * [0, <i>n</i>), which may be used by many threads at once. <br>
+ * Sets are always linked by placing the larger root under the smaller one, so
+ * the representative returned by {@link #find(int) } is the smallest member
+ * of the set once all unions have finished. Parent pointers only ever move to
+ * smaller indices, which lets {@link #find(int) } halve the path with a
+ * compare-and-set without any locks.
+ * <br><br>
+ * See: Anderson, R. J., & Woll, H. (1991). <i>Wait-free parallel algorithms
+ * for the union-find problem</i>. In Proceedings of the twenty-third annual
+ * ACM symposium on Theory of computing (pp. 370–380).
+ *
+ * @author Edward Raff
+ */
+public class ConcurrentUnionFind implements Serializable
+{
+    private final AtomicIntegerArray parent;
+
+    /**
+     * Creates a new union-find where every value is in its own set
+     * @param n the number of values
+     */
+    public ConcurrentUnionFind(int n)
+    {
+        parent = new AtomicIntegerArray(n);
+        for(int i = 0; i < n; i++)
+            parent.lazySet(i, i);
+    }
+
+    /**
+     * Returns the number of values in the union-find
+     * @return the number of values
+     */
+    public int size()
+    {
+        return parent.length();
+    }
+
+    /**
+     * Finds the representative of the set containing {@code x}. While other
+     * threads are performing unions, the result may already be out of date
+     * when it is returned.
+     * @param x the value to find the set of
+     * @return the representative of the set containing {@code x}
+     */
+    public int find(int x)
+    {
+        int p;
+        while((p = parent.get(x)) != x)
+        {
+            int gp = parent.get(p);
+            if(gp != p)//path halving
+                parent.compareAndSet(x, p, gp);
+            x = gp;
+        }
+        return x;
+    }
+
+    /**
+     * Merges the sets containing {@code a} and {@code b}
+     * @param a the first value
+     * @param b the second value
+     * @return {@code true} if the sets were merged by this call, or
+     * {@code false} if they were already the same set
+     */
+    public boolean union(int a, int b)
+    {
+        while(true)
+        {
+            a = find(a);
+            b = find(b);
+            if(a == b)
+                return false;
+            if(a < b)
+            {
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            //a is the larger root, and may only be linked while still a root
+            if(parent.compareAndSet(a, a, b))
+                return true;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package jsat;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.datatransform.DataTransform;
+import jsat.datatransform.LinearTransform;
+import jsat.datatransform.PCA;
+import jsat.linear.*;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.SystemInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class ColumnarDataSetTest
+{
+    private static ExecutorService ex;
+
+    public ColumnarDataSetTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        ex.shutdown();
+    }
+
+    private static ColumnarDataSet getData(int n, Random rand)
+    {
+        CategoricalData[] cats = new CategoricalData[]{new CategoricalData(3)};
+        ColumnarDataSet data = new ColumnarDataSet(4, cats, new CategoricalData(2), 2);
+        for(int i = 0; i < n; i++)
+        {
+            Vec x = DenseVector.random(4, rand);
+            data.addDataPoint(x, new int[]{i % 3}, i % 2, 1.0 + i);
+        }
+        return data;
+    }
+
+    @Test
+    public void testAddAndGet()
+    {
+        System.out.println("addDataPoint");
+        Random rand = new Random(13);
+        ClassificationDataSet expected = new ClassificationDataSet(4, new CategoricalData[]{new CategoricalData(3)}, new CategoricalData(2));
+        ColumnarDataSet data = new ColumnarDataSet(4, new CategoricalData[]{new CategoricalData(3)}, new CategoricalData(2), 1);
+        for(int i = 0; i < 100; i++)
+        {
+            Vec x = i % 2 == 0 ? DenseVector.random(4, rand) : new SparseVector(4);
+            x.set(i % 4, i);
+            DataPoint dp = new DataPoint(x, new int[]{i % 3}, expected.getCategories(), 1.0 + i);
+            expected.addDataPoint(dp, i % 2);
+            data.addDataPoint(x, new int[]{i % 3}, i % 2, 1.0 + i);
+        }
+
+        assertEquals(expected.getSampleSize(), data.getSampleSize());
+        for(int i = 0; i < data.getSampleSize(); i++)
+        {
+            DataPoint e = expected.getDataPoint(i);
+            DataPoint d = data.getDataPoint(i);
+            assertTrue(e.getNumericalValues().equals(d.getNumericalValues()));
+            assertEquals(e.getCategoricalValue(0), d.getCategoricalValue(0));
+            assertEquals(e.getWeight(), d.getWeight(), 0.0);
+            assertEquals(expected.getDataPointCategory(i), data.getDataPointCategory(i));
+        }
+
+        try
+        {
+            data.addDataPoint(new DenseVector(4), new int[]{0}, 5);
+            fail("Expected error about the target class");
+        }
+        catch(RuntimeException ex)
+        {
+            //Good! We expected failure
+        }
+    }
+
+    @Test
+    public void testViews()
+    {
+        System.out.println("views");
+        ColumnarDataSet data = getData(50, new Random(13));
+
+        DataPoint dp = data.getDataPoint(7);
+        dp.getNumericalValues().set(2, -5.0);
+        dp.setWeight(3.5);
+        assertEquals(-5.0, data.getDataPoint(7).getNumericalValues().get(2), 0.0);
+        assertEquals(3.5, data.getDataPoint(7).getWeight(), 0.0);
+        assertEquals(-5.0, data.getNumericColumn(2).get(7), 0.0);
+
+        Vec col = data.getNumericColumn(1);
+        col.set(9, 42.0);
+        assertEquals(42.0, data.getDataPoint(9).getNumericalValues().get(1), 0.0);
+
+        Matrix X = data.getDataMatrixView();
+        assertTrue(X instanceof FlatDenseMatrix);
+        assertTrue(data.getDataMatrix().equals(X));
+        X.set(3, 0, 11.0);
+        assertEquals(11.0, data.getDataPoint(3).getNumericalValues().get(0), 0.0);
+
+        DataPoint clone = data.getDataPoint(3).clone();
+        clone.getNumericalValues().set(0, 0.0);
+        assertEquals(11.0, data.getDataPoint(3).getNumericalValues().get(0), 0.0);
+    }
+
+    @Test
+    public void testCvSet()
+    {
+        System.out.println("cvSet");
+        ColumnarDataSet data = getData(53, new Random(13));
+        List<ColumnarDataSet> folds = data.cvSet(5, new Random(3));
+        assertEquals(5, folds.size());
+        int total = 0;
+        double weightSum = 0;
+        for(ColumnarDataSet fold : folds)
+        {
+            total += fold.getSampleSize();
+            for(int i = 0; i < fold.getSampleSize(); i++)
+            {
+                weightSum += fold.getDataPoint(i).getWeight();
+                //weights were set to 1+index, and class to index % 2
+                int orig = (int) fold.getDataPoint(i).getWeight() - 1;
+                assertEquals(orig % 2, fold.getDataPointCategory(i));
+                assertTrue(data.getDataPoint(orig).getNumericalValues().equals(fold.getDataPoint(i).getNumericalValues()));
+                assertEquals(data.getNumericColumn(3).get(orig), fold.getNumericColumn(3).get(i), 0.0);
+            }
+        }
+        assertEquals(53, total);
+        assertEquals(53*54/2, weightSum, 1e-10);
+
+        //folds share storage
+        ColumnarDataSet fold = folds.get(0);
+        int orig = (int) fold.getDataPoint(0).getWeight() - 1;
+        fold.getDataPoint(0).getNumericalValues().set(0, 100.0);
+        assertEquals(100.0, data.getDataPoint(orig).getNumericalValues().get(0), 0.0);
+    }
+
+    @Test
+    public void testClones()
+    {
+        System.out.println("getTwiceShallowClone");
+        ColumnarDataSet data = getData(20, new Random(13));
+        ColumnarDataSet shallow = data.shallowClone();
+        shallow.getDataPoint(2).setWeight(10);
+        assertEquals(10, data.getDataPoint(2).getWeight(), 0.0);
+
+        ColumnarDataSet twice = data.getTwiceShallowClone();
+        twice.getDataPoint(2).setWeight(20);
+        assertEquals(10, data.getDataPoint(2).getWeight(), 0.0);
+        twice.getDataPoint(2).getNumericalValues().set(0, 7.0);
+        assertEquals(7.0, data.getDataPoint(2).getNumericalValues().get(0), 0.0);
+    }
+
+    @Test
+    public void testApplyTransform()
+    {
+        System.out.println("applyTransform");
+        ColumnarDataSet data = getData(40, new Random(13));
+        ClassificationDataSet expected = data.asClassificationDataSet().shallowClone();
+        for(int i = 0; i < expected.getSampleSize(); i++)
+            expected.setDataPoint(i, expected.getDataPoint(i).clone());
+
+        //in place
+        LinearTransform lt = new LinearTransform(expected);
+        expected.applyTransform(lt);
+        data.applyTransform(lt, true);
+        for(int i = 0; i < data.getSampleSize(); i++)
+            assertTrue(expected.getDataPoint(i).getNumericalValues().equals(data.getDataPoint(i).getNumericalValues(), 1e-10));
+
+        //changes the dimension
+        ColumnarDataSet fold = data.cvSet(2, new Random(1)).get(0);
+        PCA pca = new PCA(fold, 2, 1e-5);
+        fold.applyTransform(pca, ex);
+        assertEquals(2, fold.getNumNumericalVars());
+        assertEquals(4, data.getNumNumericalVars());
+        for(int i = 0; i < fold.getSampleSize(); i++)
+        {
+            assertEquals(2, fold.getDataPoint(i).getNumericalValues().length());
+            assertEquals((int) fold.getDataPoint(i).getWeight() % 2 == 0 ? 1 : 0, fold.getDataPointCategory(i));
+        }
+        assertTrue(fold.getDataMatrixView() instanceof FlatDenseMatrix);
+    }
+
+    @Test
+    public void testApplyTransformFailure()
+    {
+        System.out.println("applyTransform failure");
+        ColumnarDataSet data = getData(40, new Random(13));
+        final Vec before = data.getDataPoint(7).getNumericalValues().clone();
+        DataTransform failing = new DataTransform()
+        {
+            @Override
+            public DataPoint transform(DataPoint dp)
+            {
+                if(dp.getWeight() == 8.0)
+                    throw new IllegalStateException("bad point");
+                return dp;
+            }
+
+            @Override
+            public DataTransform clone()
+            {
+                return this;
+            }
+        };
+        try
+        {
+            data.applyTransform(failing, ex);
+            fail("the exception of the worker should have been thrown");
+        }
+        catch(IllegalStateException e)
+        {
+            assertEquals("bad point", e.getMessage());
+        }
+        //the data set was left as it was
+        assertEquals(40, data.getSampleSize());
+        assertTrue(before.equals(data.getDataPoint(7).getNumericalValues()));
+    }
+
+    @Test
+    public void testStorageTooLarge()
+    {
+        System.out.println("storage too large");
+        try
+        {
+            //3 billion numeric values would wrap around to a negative int
+            new ColumnarDataSet(1000, new CategoricalData[0], null, 3000000);
+            fail("the size of the numeric storage should have been rejected");
+        }
+        catch(IllegalArgumentException e)
+        {
+            //Good! We expected failure
+        }
+    }
+
+    @Test
+    public void testConversions()
+    {
+        System.out.println("asRegressionDataSet");
+        Random rand = new Random(13);
+        RegressionDataSet rds = new RegressionDataSet(3, new CategoricalData[0]);
+        for(int i = 0; i < 30; i++)
+            rds.addDataPoint(DenseVector.random(3, rand), rand.nextGaussian());
+
+        ColumnarDataSet data = new ColumnarDataSet(rds);
+        assertEquals(rds.getSampleSize(), data.getSampleSize());
+        assertNull(data.getPredicting());
+        RegressionDataSet back = data.asRegressionDataSet();
+        for(int i = 0; i < rds.getSampleSize(); i++)
+        {
+            assertEquals(rds.getTargetValue(i), data.getTargetValue(i), 0.0);
+            assertEquals(rds.getTargetValue(i), back.getTargetValue(i), 0.0);
+            assertTrue(rds.getDataPoint(i).getNumericalValues().equals(back.getDataPoint(i).getNumericalValues()));
+        }
+    }
+}
@@ -91,4 +91,25 @@ public class NearestNeighbourTest
         for(int i = 0; i < easyTest.getSampleSize(); i++)
             assertEquals(easyTest.getDataPointCategory(i), nn.classify(easyTest.getDataPoint(i)).mostLikely());
     }
+
+    @Test
+    public void testUpdate()
+    {
+        System.out.println("update");
+        nn.setUp(easyTrain.getCategories(), easyTrain.getNumNumericalVars(), easyTrain.getPredicting());
+        for(int i = 0; i < easyTrain.getSampleSize(); i++)
+            nn.update(easyTrain.getDataPoint(i), easyTrain.getDataPointCategory(i));
+        for(int i = 0; i < easyTest.getSampleSize(); i++)
+            assertEquals(easyTest.getDataPointCategory(i), nn.classify(easyTest.getDataPoint(i)).mostLikely());
+        
+        //updating after training replaces a collection that can't be updated
+        nn = new NearestNeighbour(1);
+        nn.trainC(easyTest);
+        for(int i = 0; i < easyTrain.getSampleSize(); i++)
+            nn.update(easyTrain.getDataPoint(i), easyTrain.getDataPointCategory(i));
+        for(int i = 0; i < easyTest.getSampleSize(); i++)
+            assertEquals(easyTest.getDataPointCategory(i), nn.classify(easyTest.getDataPoint(i)).mostLikely());
+        for(int i = 0; i < easyTrain.getSampleSize(); i++)
+            assertEquals(easyTrain.getDataPointCategory(i), nn.classify(easyTrain.getDataPoint(i)).mostLikely());
+    }
 }
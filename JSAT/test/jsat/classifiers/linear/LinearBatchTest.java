@@ -5,8 +5,13 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import jsat.FixedProblems;
 import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
 import jsat.classifiers.DataPointPair;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
 import jsat.lossfunctions.HingeLoss;
+import jsat.lossfunctions.LogisticLoss;
+import jsat.lossfunctions.SoftmaxLoss;
 import jsat.lossfunctions.SquaredLoss;
 import jsat.regression.RegressionDataSet;
 import jsat.utils.SystemInfo;
@@ -161,4 +166,93 @@ public class LinearBatchTest
         }
     }
 
+    @Test
+    public void testLossAndGradient()
+    {
+        System.out.println("loss and gradient");
+        Random rand = new Random(42);
+        
+        LinearBatch linearBatch = new LinearBatch(new LogisticLoss(), 1e-2);
+        ClassificationDataSet train = FixedProblems.get2ClassLinear(500, rand);
+        LinearBatch.LossFunction f = linearBatch.new LossFunction(train, new LogisticLoss());
+        LinearBatch.GradFunction fp = linearBatch.new GradFunction(train, new LogisticLoss());
+        
+        Vec w = Vec.random(train.getNumNumericalVars(), rand);
+        w.mutableMultiply(0.1);
+        Vec expectedGrad = fp.f(w);
+        Vec grad = w.clone();
+        Vec gradMT = w.clone();
+        assertEquals(f.f(w), f.f(w, grad, null), 1e-10);
+        assertEquals(f.f(w), f.f(w, gradMT, ex), 1e-10);
+        assertTrue(expectedGrad.equals(grad, 1e-10));
+        assertTrue(expectedGrad.equals(gradMT, 1e-10));
+        //the gradient should agree with the loss it is paired with
+        for(int i = 0; i < w.length(); i++)
+        {
+            double h = 1e-5;
+            Vec wp = w.clone();
+            wp.increment(i, h);
+            Vec wm = w.clone();
+            wm.increment(i, -h);
+            assertEquals((f.f(wp)-f.f(wm))/(2*h), grad.get(i), 1e-5);
+        }
+        
+        ClassificationDataSet trainMC = FixedProblems.getSimpleKClassLinear(500, 4, rand);
+        LinearBatch.LossMCFunction fMC = linearBatch.new LossMCFunction(trainMC, new SoftmaxLoss());
+        Vec wMC = Vec.random(trainMC.getNumNumericalVars()*4, rand);
+        wMC.mutableMultiply(0.1);
+        Vec gradMC = wMC.clone();
+        Vec gradMCMT = wMC.clone();
+        assertEquals(fMC.f(wMC), fMC.f(wMC, gradMC, null), 1e-10);
+        assertEquals(fMC.f(wMC, ex), fMC.f(wMC, gradMCMT, ex), 1e-10);
+        assertTrue(gradMC.equals(gradMCMT, 1e-10));
+        for(int i = 0; i < wMC.length(); i++)
+        {
+            double h = 1e-5;
+            Vec wp = wMC.clone();
+            wp.increment(i, h);
+            Vec wm = wMC.clone();
+            wm.increment(i, -h);
+            assertEquals((fMC.f(wp)-fMC.f(wm))/(2*h), gradMC.get(i), 1e-5);
+        }
+    }
+
+    @Test
+    public void testLossAndGradientSparse()
+    {
+        System.out.println("loss and gradient sparse");
+        Random rand = new Random(43);
+        
+        //same data stored sparse and dense, so one uses the CSR products
+        ClassificationDataSet dense = FixedProblems.get2ClassLinear(500, rand);
+        ClassificationDataSet sparse = dense.shallowClone();
+        for(int i = 0; i < sparse.getSampleSize(); i++)
+        {
+            Vec x = sparse.getDataPoint(i).getNumericalValues();
+            //keep only one value so the data is sparse enough for the CSR copy
+            int keep = rand.nextInt(x.length());
+            for(int j = 0; j < x.length(); j++)
+                if(j != keep)
+                    x.set(j, 0.0);
+            double weight = rand.nextDouble()+0.5;
+            sparse.setDataPoint(i, new DataPoint(new SparseVector(x), weight));
+            dense.setDataPoint(i, new DataPoint(x, weight));
+        }
+        
+        LinearBatch linearBatch = new LinearBatch(new LogisticLoss(), 1e-2);
+        LinearBatch.LossFunction fDense = linearBatch.new LossFunction(dense, new LogisticLoss());
+        LinearBatch.LossFunction fSparse = linearBatch.new LossFunction(sparse, new LogisticLoss());
+        
+        Vec w = Vec.random(dense.getNumNumericalVars(), rand);
+        w.mutableMultiply(0.1);
+        Vec expectedGrad = w.clone();
+        double expected = fDense.f(w, expectedGrad, null);
+        Vec grad = w.clone();
+        Vec gradMT = w.clone();
+        assertEquals(expected, fSparse.f(w, grad, null), 1e-10);
+        assertEquals(expected, fSparse.f(w, gradMT, ex), 1e-10);
+        assertTrue(expectedGrad.equals(grad, 1e-10));
+        assertTrue(expectedGrad.equals(gradMT, 1e-10));
+    }
+
 }
\ No newline at end of file
@@ -5,6 +5,8 @@
 package jsat.classifiers.linear;
 
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import jsat.FixedProblems;
 import jsat.classifiers.ClassificationDataSet;
 import jsat.classifiers.DataPointPair;
@@ -15,6 +17,7 @@ import jsat.math.optimization.stochastic.GradientUpdater;
 import jsat.math.optimization.stochastic.RMSProp;
 import jsat.math.optimization.stochastic.SimpleSGD;
 import jsat.regression.RegressionDataSet;
+import jsat.utils.SystemInfo;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -33,14 +36,18 @@ public class LinearSGDTest
     {
     }
     
+    static private ExecutorService ex;
+    
     @BeforeClass
     public static void setUpClass()
     {
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
     }
     
     @AfterClass
     public static void tearDownClass()
     {
+        ex.shutdown();
     }
     
     @Before
@@ -141,4 +148,82 @@ public class LinearSGDTest
             }
         }
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testClassifyMulti_Parallel()
+    {
+        System.out.println("multi class classification parallel");
+        for(LinearSGD.ParallelMode mode : LinearSGD.ParallelMode.values())
+        {
+            for(GradientUpdater gu : updaters)
+            {
+                LinearSGD linearsgd = new LinearSGD(new HingeLoss(), 1e-4, 1e-5);
+                linearsgd.setGradientUpdater(gu);
+                linearsgd.setParallelMode(mode);
+
+                ClassificationDataSet train = FixedProblems.getSimpleKClassLinear(500, 6, new Random());
+
+                linearsgd.trainC(train, ex);
+
+                ClassificationDataSet test = FixedProblems.getSimpleKClassLinear(200, 6, new Random());
+
+                for(DataPointPair<Integer> dpp : test.getAsDPPList())
+                    assertEquals(dpp.getPair().longValue(), linearsgd.classify(dpp.getDataPoint()).mostLikely());
+            }
+        }
+    }
+    
+    @Test
+    public void testClassifyMulti_AveragingSeeded()
+    {
+        System.out.println("multi class classification averaging seeded");
+        ClassificationDataSet train = FixedProblems.getSimpleKClassLinear(500, 6, new Random(2));
+        ClassificationDataSet test = FixedProblems.getSimpleKClassLinear(200, 6, new Random(3));
+        
+        LinearSGD[] models = new LinearSGD[2];
+        for(int run = 0; run < models.length; run++)
+        {
+            models[run] = new LinearSGD(new HingeLoss(), 1e-4, 1e-5);
+            models[run].setParallelMode(LinearSGD.ParallelMode.AVERAGING);
+            models[run].setRandom(new Random(42));
+            models[run].trainC(train, ex);
+            
+            for(DataPointPair<Integer> dpp : test.getAsDPPList())
+                assertEquals(dpp.getPair().longValue(), models[run].classify(dpp.getDataPoint()).mostLikely());
+        }
+        
+        //averaging does not depend on the timing of the threads
+        for(int k = 0; k < 6; k++)
+        {
+            assertTrue(models[0].getRawWeight(k).equals(models[1].getRawWeight(k)));
+            assertEquals(models[0].getBias(k), models[1].getBias(k), 0.0);
+        }
+    }
+    
+    @Test
+    public void testRegression_Parallel()
+    {
+        System.out.println("regression parallel");
+        //averaging makes less progress per epoch as the number of threads grows, so only Hogwild is held to the serial accuracy
+        for(LinearSGD.ParallelMode mode : new LinearSGD.ParallelMode[]{LinearSGD.ParallelMode.HOGWILD})
+        {
+            LinearSGD linearsgd = new LinearSGD(new SquaredLoss(), 0.0, 0.0);
+            linearsgd.setParallelMode(mode);
+            linearsgd.setEpochs(50);
+
+            RegressionDataSet train = FixedProblems.getLinearRegression(10000, new Random());
+
+            linearsgd.train(train, ex);
+
+            RegressionDataSet test = FixedProblems.getLinearRegression(200, new Random());
+
+            for(DataPointPair<Double> dpp : test.getAsDPPList())
+            {
+                double truth = dpp.getPair();
+                double pred = linearsgd.regress(dpp.getDataPoint());
+                double relErr = (truth-pred)/truth;
+                assertEquals(0, relErr, 0.1);
+            }
+        }
+    }
+}
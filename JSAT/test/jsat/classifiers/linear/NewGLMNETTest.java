@@ -1,10 +1,14 @@
 package jsat.classifiers.linear;
 
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import jsat.classifiers.CategoricalData;
 import jsat.classifiers.ClassificationDataSet;
 import jsat.linear.DenseVector;
 import jsat.linear.Vec;
+import jsat.utils.SystemInfo;
 import jsat.utils.random.XORWOW;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -124,4 +128,83 @@ public class NewGLMNETTest
     }
 
     
+    /**
+     * Test of trainPath method, of class NewGLMNET.
+     */
+    @Test
+    public void testTrainPath()
+    {
+        System.out.println("trainPath");
+        
+        Random rand  = new XORWOW(13);
+        ClassificationDataSet data = new ClassificationDataSet(20, new CategoricalData[0], new CategoricalData(2));
+        
+        for(int i = 0; i < 500; i++)
+        {
+            double Z1 = rand.nextDouble()*20-10;
+            double Z2 = rand.nextDouble()*20-10;
+            Vec v = new DenseVector(20);
+            v.set(0, Z1);
+            v.set(1, -Z1);
+            v.set(2, Z2);
+            for(int j = 3; j < v.length(); j++)//noise features
+                v.set(j, rand.nextGaussian());
+            data.addDataPoint(v, (int) (Math.signum(Z1+0.5*Z2+rand.nextGaussian())+1)/2);
+        }
+        
+        ExecutorService ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+        for(double alpha : new double[]{1, 0.5})
+        {
+            NewGLMNET glmnet = new NewGLMNET(1, alpha);
+            List<NewGLMNET> path = glmnet.trainPath(data, 20);
+            List<NewGLMNET> parallelPath = glmnet.clone().trainPath(data, 20, ex);
+            
+            assertEquals(20, path.size());
+            assertEquals(20, parallelPath.size());
+            assertEquals(0, path.get(0).getRawWeight().nnz());
+            assertEquals(1.0, path.get(19).getC(), 0.0);
+            for(int k = 1; k < path.size(); k++)
+            {
+                assertTrue(path.get(k).getC() > path.get(k-1).getC());
+                assertEquals(path.get(k).getC(), parallelPath.get(k).getC(), 0.0);
+                //the solver shuffles its coordinates, so runs are not identical
+                assertEquals(objective(data, path.get(k)), objective(data, parallelPath.get(k)), 1e-2*objective(data, path.get(k)));
+            }
+            //the informative features should come in first
+            for(NewGLMNET model : path)
+                if(model.getRawWeight().nnz() > 0)
+                {
+                    assertTrue(model.getRawWeight().get(0) != 0 || model.getRawWeight().get(1) != 0);
+                    break;
+                }
+            
+            //should be at least as good a solution as training from scratch
+            NewGLMNET cold = new NewGLMNET(1, alpha);
+            cold.trainC(data);
+            assertTrue(objective(data, path.get(19)) <= objective(data, cold)*1.01);
+            assertTrue(glmnet.getRawWeight().equals(path.get(19).getRawWeight()));
+        }
+        
+        //with no L1 penalty every weight is non-zero
+        List<NewGLMNET> ridgePath = new NewGLMNET(1, 0).trainPath(data, 5, ex);
+        assertEquals(5, ridgePath.size());
+        assertEquals(1e-4, ridgePath.get(0).getC(), 1e-10);
+        for(NewGLMNET model : ridgePath)
+            assertEquals(20, model.getRawWeight().nnz());
+        ex.shutdown();
+    }
+    
+    private static double objective(ClassificationDataSet data, NewGLMNET model)
+    {
+        Vec w = model.getRawWeight();
+        double obj = model.getAlpha()*w.pNorm(1) + (1-model.getAlpha())*Math.pow(w.pNorm(2), 2);
+        for(int i = 0; i < data.getSampleSize(); i++)
+        {
+            double y = data.getDataPointCategory(i)*2-1;
+            double z = w.dot(data.getDataPoint(i).getNumericalValues())+model.getBias();
+            obj += model.getC()*Math.log(1+Math.exp(-y*z));
+        }
+        return obj;
+    }
+    
 }
@@ -2,9 +2,12 @@ package jsat.classifiers.linear;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import jsat.FixedProblems;
 import jsat.classifiers.*;
 import jsat.parameters.Parameter;
+import jsat.utils.SystemInfo;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -83,4 +86,43 @@ public class STGDTest
         for(DataPointPair<Integer> dpp : test.getAsDPPList())
             assertEquals(dpp.getPair().longValue(), scd.classify(dpp.getDataPoint()).mostLikely());
     }
+    
+    @Test
+    public void testTrain_RegressionDataSet_ExecutorService()
+    {
+        System.out.println("train parallel");
+        Random rand = new Random(123);
+        ExecutorService ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+        
+        STGD scd = new STGD(5, 0.1, Double.POSITIVE_INFINITY, 0.1);
+        scd.setEpochs(5);
+        scd.train(FixedProblems.getLinearRegression(400, rand), ex);
+        ex.shutdownNow();
+        
+        for(DataPointPair<Double> dpp : FixedProblems.getLinearRegression(400, rand).getAsDPPList())
+        {
+            double truth = dpp.getPair();
+            double pred = scd.regress(dpp.getDataPoint());
+            
+            double relErr = (truth-pred)/truth;
+            assertEquals(0.0, relErr, 0.1);//Give it a decent wiggle room b/c of regularization
+        }
+    }
+    
+    @Test
+    public void testTrainC_ClassificationDataSet_ExecutorService()
+    {
+        System.out.println("trainC parallel");
+        ClassificationDataSet train = FixedProblems.get2ClassLinear(400, new Random(13));
+        ExecutorService ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+        
+        STGD scd = new STGD(5, 0.5, Double.POSITIVE_INFINITY, 0.1);
+        scd.trainC(train, ex);
+        ex.shutdownNow();
+        
+        ClassificationDataSet test = FixedProblems.get2ClassLinear(400, new Random(14));
+        
+        for(DataPointPair<Integer> dpp : test.getAsDPPList())
+            assertEquals(dpp.getPair().longValue(), scd.classify(dpp.getDataPoint()).mostLikely());
+    }
 }
\ No newline at end of file
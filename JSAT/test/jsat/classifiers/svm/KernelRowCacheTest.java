@@ -0,0 +1,122 @@
+package jsat.classifiers.svm;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import jsat.utils.SystemInfo;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class KernelRowCacheTest
+{
+    public KernelRowCacheTest()
+    {
+    }
+
+    /**
+     * A symmetric stand in for a kernel that counts its evaluations
+     */
+    private static class CountingCache extends KernelRowCache
+    {
+        final AtomicInteger evals = new AtomicInteger();
+
+        public CountingCache(int N, int maxRows, boolean useFloats, int stripeCount)
+        {
+            super(N, maxRows, useFloats, stripeCount);
+        }
+
+        @Override
+        protected double compute(int a, int b)
+        {
+            evals.incrementAndGet();
+            return Math.sin(a+b) + 1.0/(1+a*b);
+        }
+    }
+
+    @Test
+    public void testGet()
+    {
+        System.out.println("get");
+        Random rand = new Random(13);
+        for(boolean useFloats : new boolean[]{false, true})
+        {
+            CountingCache cache = new CountingCache(200, 20, useFloats, 4);
+            assertEquals(20, cache.getMaxRows());
+            for(int iter = 0; iter < 20000; iter++)
+            {
+                int a = rand.nextInt(200), b = rand.nextInt(200);
+                double expected = cache.compute(a, b);
+                cache.evals.decrementAndGet();
+                if(useFloats)
+                    assertEquals((float) expected, cache.get(a, b), 0.0);
+                else
+                    assertEquals(expected, cache.get(a, b), 0.0);
+            }
+            assertEquals(20000, cache.getHits()+cache.getMisses());
+            assertEquals(cache.evals.get(), cache.getMisses());
+            assertTrue(cache.getEvictions() > 0);
+        }
+
+        //a working set that fits never misses twice, and the symmetric row is used
+        CountingCache cache = new CountingCache(100, 10, false, 2);
+        for(int iter = 0; iter < 5; iter++)
+            for(int a = 0; a < 10; a++)
+                for(int b = 0; b < 100; b++)
+                    cache.get(a, b);
+        assertEquals(1000, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+        cache.get(50, 3);
+        assertEquals(1000, cache.getMisses());
+    }
+
+    @Test
+    public void testConcurrentFill() throws InterruptedException
+    {
+        System.out.println("concurrentFill");
+        final CountingCache cache = new CountingCache(500, 40, false, 8);
+        final int P = Math.max(4, SystemInfo.LogicalCores);
+        ExecutorService ex = Executors.newFixedThreadPool(P);
+        final CountDownLatch latch = new CountDownLatch(P);
+        final AtomicInteger wrong = new AtomicInteger();
+        for(int id = 0; id < P; id++)
+        {
+            final int ID = id;
+            ex.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    Random rand = new Random(ID);
+                    for(int iter = 0; iter < 20000; iter++)
+                    {
+                        int a = rand.nextInt(60), b = rand.nextInt(500);
+                        if(cache.get(a, b) != Math.sin(a+b) + 1.0/(1+a*b))
+                            wrong.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        ex.shutdown();
+        assertEquals(0, wrong.get());
+        assertEquals(P*20000, cache.getHits()+cache.getMisses());
+        assertEquals(cache.evals.get(), cache.getMisses());
+    }
+
+    @Test
+    public void testRowsForBytes()
+    {
+        System.out.println("rowsForBytes");
+        int rows = KernelRowCache.rowsForBytes(1000, 1000*8*50, false);
+        assertTrue(rows >= 49 && rows <= 50);
+        assertEquals(2*rows, KernelRowCache.rowsForBytes(1000, 1000*8*50, true), 2);
+        assertEquals(1, KernelRowCache.rowsForBytes(1000, 10, false));
+    }
+}
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import jsat.FixedProblems;
 import jsat.classifiers.CategoricalResults;
 import jsat.classifiers.ClassificationDataSet;
@@ -151,4 +152,111 @@ public class PlatSMOTest
                 assertTrue(errors/testSet.getSampleSize() < 1);
             }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testShrinking()
+    {
+        System.out.println("shrinking");
+        //close circles, so that many points end up as support vectors
+        ClassificationDataSet trainSet = FixedProblems.getInnerOuterCircle(1300, new Random(2), 1.0, 1.5);
+        ClassificationDataSet testSet = FixedProblems.getInnerOuterCircle(100, new Random(3), 1.0, 1.5);
+
+        PlatSMO expected = new PlatSMO(new RBFKernel(0.5));
+        expected.setShrinking(false);
+        expected.trainC(trainSet);
+        for (boolean shrinking : new boolean[] {true, false})
+        {
+            PlatSMO smo = new PlatSMO(new RBFKernel(0.5));
+            smo.setShrinking(shrinking);
+            smo.trainC(trainSet, ex);
+            int agree = 0;
+            for (int i = 0; i < testSet.getSampleSize(); i++)
+                if(expected.classify(testSet.getDataPoint(i)).mostLikely() == smo.classify(testSet.getDataPoint(i)).mostLikely())
+                    agree++;
+            assertTrue(agree >= testSet.getSampleSize()*0.95);
+        }
+    }
+
+    @Test
+    public void testTrainC_Parallel()
+    {
+        System.out.println("trainC parallel");
+        //overlapping circles, so more than PARALLEL_THRESHOLD points have a non zero alpha
+        ClassificationDataSet trainSet = FixedProblems.getInnerOuterCircle(3000, new Random(2), 1.0, 1.05);
+        ClassificationDataSet testSet = FixedProblems.getInnerOuterCircle(200, new Random(3), 1.0, 1.05);
+
+        PlatSMO expected = new PlatSMO(new RBFKernel(0.5));
+        expected.trainC(trainSet);
+        
+        final PlatSMO smo = new PlatSMO(new RBFKernel(0.5));
+        smo.trainC(trainSet, ex);
+        assertAgree(expected, smo, testSet);
+        
+        //training from inside a saturated pool must not wait on queued work
+        final ClassificationDataSet trainCopy = trainSet;
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        final PlatSMO nested = new PlatSMO(new RBFKernel(0.5));
+        try
+        {
+            single.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    nested.trainC(trainCopy, single);
+                }
+            }).get(5, TimeUnit.MINUTES);
+        }
+        catch (Exception e)
+        {
+            fail("nested training failed: " + e);
+        }
+        finally
+        {
+            single.shutdownNow();
+        }
+        assertAgree(expected, nested, testSet);
+    }
+
+    @Test
+    public void testShrinkingRegression()
+    {
+        System.out.println("shrinking regression");
+        //noisy targets, so more than PARALLEL_THRESHOLD points have a non zero alpha
+        RegressionDataSet trainSet = FixedProblems.getSimpleRegression1(3000, new Random(2));
+        Random noise = new Random(5);
+        for(int i = 0; i < trainSet.getSampleSize(); i++)
+            trainSet.setTargetValue(i, trainSet.getTargetValue(i)+noise.nextGaussian());
+        RegressionDataSet testSet = FixedProblems.getSimpleRegression1(100, new Random(3));
+
+        PlatSMO expected = new PlatSMO(new RBFKernel(0.5));
+        expected.setEpsilon(0.1);
+        expected.setShrinking(false);
+        expected.train(trainSet);
+        for (boolean shrinking : new boolean[] {true, false})
+        {
+            PlatSMO smo = new PlatSMO(new RBFKernel(0.5));
+            smo.setEpsilon(0.1);
+            smo.setShrinking(shrinking);
+            smo.train(trainSet, ex);
+            double errors = 0, diff = 0;
+            for (int i = 0; i < testSet.getSampleSize(); i++)
+            {
+                DataPoint dp = testSet.getDataPoint(i);
+                errors += Math.pow(testSet.getTargetValue(i) - smo.regress(dp), 2);
+                diff += Math.pow(expected.regress(dp) - smo.regress(dp), 2);
+            }
+            assertTrue(errors/testSet.getSampleSize() < 1);
+            assertTrue(diff/testSet.getSampleSize() < 0.01);
+        }
+    }
+
+    private static void assertAgree(Classifier expected, Classifier actual, ClassificationDataSet testSet)
+    {
+        int agree = 0;
+        for (int i = 0; i < testSet.getSampleSize(); i++)
+            if(expected.classify(testSet.getDataPoint(i)).mostLikely() == actual.classify(testSet.getDataPoint(i)).mostLikely())
+                agree++;
+        assertTrue(agree >= testSet.getSampleSize()*0.95);
+    }
+}
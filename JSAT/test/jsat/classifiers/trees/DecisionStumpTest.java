@@ -24,6 +24,7 @@ import jsat.classifiers.DataPointPair;
 import jsat.datatransform.NumericalToHistogram;
 import jsat.distributions.Distribution;
 import jsat.distributions.Uniform;
+import jsat.linear.DenseVector;
 import jsat.regression.RegressionDataSet;
 import jsat.utils.PairedReturn;
 import org.junit.*;
@@ -294,5 +295,43 @@ public class DecisionStumpTest
             assertEquals(dpp.getPair().longValue(),
                     instance.classify(dpp.getDataPoint()).mostLikely());
     }
-   
+
+    @Test
+    public void testNoSplit()
+    {
+        System.out.println("no split");
+        DecisionStump instance = new DecisionStump();
+        instance.trainC(easyNumAtTrain);
+        assertEquals(0, instance.getSplittingAttribute());
+        
+        //every point is the same, so no split can separate the labels
+        ClassificationDataSet same = new ClassificationDataSet(1, new CategoricalData[0], new CategoricalData(2));
+        for(int i = 0; i < 20; i++)
+            same.addDataPoint(DenseVector.toDenseVec(1.0), new int[0], i % 2);
+        instance.trainC(same, ex);
+        assertEquals(-1, instance.getSplittingAttribute());
+    }
+    
+    @Test
+    public void testTrainC_FailedAttribute()
+    {
+        System.out.println("trainC failed attribute");
+        CategoricalData[] cats = new CategoricalData[]{new CategoricalData(2)};
+        CategoricalData predicting = new CategoricalData(2);
+        List<DataPointPair<Integer>> points = new ArrayList<DataPointPair<Integer>>();
+        for(int i = 0; i < 20; i++)//category 5 is out of range, so the categorical attribute fails
+            points.add(new DataPointPair<Integer>(new DataPoint(DenseVector.toDenseVec(i), new int[]{5}, cats), i % 2));
+        
+        DecisionStump instance = new DecisionStump();
+        instance.setPredicting(predicting);
+        try
+        {
+            instance.trainC(points, new HashSet<Integer>(Arrays.asList(0, 1)), ex);
+            fail("the failure of the categorical attribute should have been thrown");
+        }
+        catch(IndexOutOfBoundsException e)
+        {
+            //Good! We expected failure
+        }
+    }
 }
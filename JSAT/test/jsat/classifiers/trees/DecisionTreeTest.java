@@ -0,0 +1,221 @@
+package jsat.classifiers.trees;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.FixedProblems;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.Classifier;
+import jsat.classifiers.DataPoint;
+import jsat.datatransform.NumericalToHistogram;
+import jsat.linear.DenseVector;
+import jsat.regression.RegressionDataSet;
+import jsat.regression.Regressor;
+import jsat.utils.SystemInfo;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class DecisionTreeTest
+{
+    public DecisionTreeTest()
+    {
+    }
+
+    private static double errorRate(Classifier model, ClassificationDataSet test)
+    {
+        int errors = 0;
+        for(int i = 0; i < test.getSampleSize(); i++)
+            if(model.classify(test.getDataPoint(i)).mostLikely() != test.getDataPointCategory(i))
+                errors++;
+        return errors/(double) test.getSampleSize();
+    }
+
+    private static double meanSquaredError(Regressor model, RegressionDataSet test)
+    {
+        double err = 0;
+        for(int i = 0; i < test.getSampleSize(); i++)
+            err += Math.pow(model.regress(test.getDataPoint(i))-test.getTargetValue(i), 2);
+        return err/test.getSampleSize();
+    }
+
+    @Test
+    public void testQuantizedFeatures()
+    {
+        System.out.println("QuantizedFeatures");
+        Random rand = new Random(13);
+        RegressionDataSet data = new RegressionDataSet(2, new CategoricalData[0]);
+        for(int i = 0; i < 5000; i++)
+            data.addDataPoint(DenseVector.toDenseVec(rand.nextInt(7), rand.nextGaussian()), rand.nextDouble());
+
+        QuantizedFeatures qf = new QuantizedFeatures(data, 64);
+        assertFalse(qf.isClassification());
+        //few distinct values each get their own bin
+        assertEquals(7, qf.getNumBins(0));
+        for(int i = 0; i < data.getSampleSize(); i++)
+            assertEquals((int) data.getDataPoint(i).getNumericalValues().get(0), qf.getBin(0, i));
+
+        //bins follow the order of the values and are about evenly filled
+        assertEquals(64, qf.getNumBins(1));
+        int[] binSizes = new int[64];
+        for(int i = 0; i < data.getSampleSize(); i++)
+        {
+            binSizes[qf.getBin(1, i)]++;
+            for(int j = 0; j < 20; j++)
+            {
+                int other = rand.nextInt(data.getSampleSize());
+                if(data.getDataPoint(i).getNumericalValues().get(1) < data.getDataPoint(other).getNumericalValues().get(1))
+                    assertTrue(qf.getBin(1, i) <= qf.getBin(1, other));
+            }
+        }
+        for(int size : binSizes)
+            assertEquals(5000/64.0, size, 2);
+
+        try
+        {
+            new QuantizedFeatures(data, 257);
+            fail("Bins must fit in a byte");
+        }
+        catch(IllegalArgumentException ex)
+        {
+            //Good! We expected failure
+        }
+    }
+
+    @Test
+    public void testTrainC_Histogram()
+    {
+        System.out.println("trainC histogram");
+        Random rand = new Random(13);
+        ClassificationDataSet train = FixedProblems.getInnerOuterCircle(3000, rand);
+        ClassificationDataSet test = FixedProblems.getInnerOuterCircle(1000, rand);
+
+        DecisionTree exact = new DecisionTree();
+        exact.trainC(train);
+        for(int bins : new int[]{32, 256})
+        {
+            DecisionTree hist = new DecisionTree();
+            hist.setHistogramBins(bins);
+            hist.trainC(train);
+            assertEquals(errorRate(exact, test), errorRate(hist, test), 0.03);
+
+            ExecutorService ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+            DecisionTree histParallel = new DecisionTree();
+            histParallel.setHistogramBins(bins);
+            histParallel.trainC(train, ex);
+            ex.shutdownNow();
+            assertEquals(errorRate(hist, test), errorRate(histParallel, test), 0.0);
+
+            assertEquals(bins, hist.clone().getHistogramBins());
+        }
+
+        //categorical features are split by category
+        NumericalToHistogram nth = new NumericalToHistogram(train, 8);
+        ClassificationDataSet catTrain = train.shallowClone();
+        catTrain.applyTransform(nth);
+        ClassificationDataSet catTest = test.shallowClone();
+        catTest.applyTransform(nth);
+        DecisionTree catExact = new DecisionTree();
+        catExact.trainC(catTrain);
+        DecisionTree catHist = new DecisionTree();
+        catHist.setHistogramBins(256);
+        catHist.trainC(catTrain);
+        assertEquals(errorRate(catExact, catTest), errorRate(catHist, catTest), 0.0);
+    }
+
+    @Test
+    public void testTrain_Histogram()
+    {
+        System.out.println("train histogram");
+        Random rand = new Random(13);
+        RegressionDataSet train = FixedProblems.getSimpleRegression1(3000, rand);
+        RegressionDataSet test = FixedProblems.getSimpleRegression1(500, rand);
+
+        DecisionTree exact = new DecisionTree();
+        exact.train(train);
+        DecisionTree hist = new DecisionTree();
+        hist.setHistogramBins(256);
+        hist.train(train);
+
+        double exactErr = meanSquaredError(exact, test);
+        double histErr = meanSquaredError(hist, test);
+        assertTrue(histErr < exactErr*1.25);
+
+        //a single split, easy to check by hand
+        RegressionDataSet step = new RegressionDataSet(1, new CategoricalData[0]);
+        for(int i = 0; i < 1000; i++)
+        {
+            double x = rand.nextDouble();
+            step.addDataPoint(DenseVector.toDenseVec(x), x < 0.3 ? -1.0 : 2.0);
+        }
+        DecisionTree stepTree = new DecisionTree();
+        stepTree.setHistogramBins(64);
+        stepTree.train(step);
+        assertEquals(-1.0, stepTree.regress(new DataPoint(DenseVector.toDenseVec(0.25))), 1e-10);
+        assertEquals(2.0, stepTree.regress(new DataPoint(DenseVector.toDenseVec(0.35))), 1e-10);
+    }
+
+    @Test
+    public void testTrain_Parallel()
+    {
+        System.out.println("train parallel");
+        Random rand = new Random(13);
+        ClassificationDataSet train = FixedProblems.getInnerOuterCircle(6000, rand);
+        RegressionDataSet rTrain = FixedProblems.getSimpleRegression1(6000, rand);
+        ExecutorService ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+        for(int bins : new int[]{0, 64})
+        {
+            DecisionTree serial = new DecisionTree();
+            serial.setPruningMethod(TreePruner.PruningMethod.NONE);
+            serial.setHistogramBins(bins);
+            serial.trainC(train);
+            DecisionTree parallel = serial.clone();
+            parallel.trainC(train, ex);
+            for(int i = 0; i < train.getSampleSize(); i++)
+                assertEquals(serial.classify(train.getDataPoint(i)).mostLikely(), parallel.classify(train.getDataPoint(i)).mostLikely());
+
+            DecisionTree serialR = new DecisionTree();
+            serialR.setHistogramBins(bins);
+            serialR.train(rTrain);
+            DecisionTree parallelR = serialR.clone();
+            parallelR.train(rTrain, ex);
+            for(int i = 0; i < rTrain.getSampleSize(); i++)
+                assertEquals(serialR.regress(rTrain.getDataPoint(i)), parallelR.regress(rTrain.getDataPoint(i)), 0.0);
+        }
+        ex.shutdownNow();
+    }
+
+    @Test
+    public void testRandomForest_Histogram()
+    {
+        System.out.println("RandomForest histogram");
+        Random rand = new Random(13);
+        ClassificationDataSet train = FixedProblems.getInnerOuterCircle(2000, rand);
+        ClassificationDataSet test = FixedProblems.getInnerOuterCircle(1000, rand);
+
+        RandomForest forest = new RandomForest(20);
+        forest.setHistogramBins(64);
+        forest.setUseOutOfBagError(true);
+        ExecutorService ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+        forest.trainC(train, ex);
+        ex.shutdownNow();
+        assertTrue(errorRate(forest, test) < 0.1);
+        assertTrue(forest.getOutOfBagError() < 0.1);
+
+        RegressionDataSet rTrain = FixedProblems.getSimpleRegression1(2000, rand);
+        RegressionDataSet rTest = FixedProblems.getSimpleRegression1(500, rand);
+        //seeded so the comparison is the same on every run
+        RandomForest exactR = new RandomForest(20);
+        exactR.setRandom(new Random(7));
+        exactR.train(rTrain);
+        RandomForest histR = new RandomForest(20);
+        histR.setHistogramBins(64);
+        histR.setRandom(new Random(7));
+        histR.train(rTrain);
+        assertTrue(meanSquaredError(histR, rTest) < meanSquaredError(exactR, rTest)*1.5);
+    }
+}
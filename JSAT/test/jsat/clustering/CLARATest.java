@@ -0,0 +1,98 @@
+package jsat.clustering;
+
+import java.util.HashSet;
+import java.util.Set;
+import jsat.classifiers.DataPoint;
+import java.util.concurrent.Executors;
+import jsat.distributions.Uniform;
+import jsat.utils.GridDataGenerator;
+import jsat.utils.SystemInfo;
+import jsat.SimpleDataSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import jsat.DataSet;
+import jsat.clustering.SeedSelectionMethods.SeedSelection;
+import jsat.distributions.Normal;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class CLARATest
+{
+    //CLARA falls back to plain PAM when the sample is as large as the data set, so the data must be larger than 40+2k
+    static private CLARA clara;
+    static private SimpleDataSet easyData10;
+    static private ExecutorService ex;
+    
+    public CLARATest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception
+    {
+        clara = new CLARA(new EuclideanDistance(), new Random(), SeedSelection.KPP);
+        GridDataGenerator gdg = new GridDataGenerator(new Uniform(-0.05, 0.05), new Random(), 2, 5);
+        easyData10 = gdg.generateData(40);
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception
+    {
+        ex.shutdown();
+    }
+    
+    @Before
+    public void setUp()
+    {
+    }
+
+    /**
+     * Test of cluster method, of class CLARA.
+     */
+    @Test
+    public void testCluster_3args_1()
+    {
+        System.out.println("cluster(dataSet, int, ExecutorService)");
+        List<List<DataPoint>> clusters = clara.cluster(easyData10, 10, ex);
+        assertEquals(10, clusters.size());
+        Set<Integer> seenBefore = new HashSet<Integer>();
+        for(List<DataPoint> cluster :  clusters)
+        {
+            int thisClass = cluster.get(0).getCategoricalValue(0);
+            assertFalse(seenBefore.contains(thisClass));
+            for(DataPoint dp : cluster)
+                assertEquals(thisClass, dp.getCategoricalValue(0));
+        }
+    }
+
+    /**
+     * Test of cluster method, of class CLARA.
+     */
+    @Test
+    public void testCluster_DataSet_int()
+    {
+        System.out.println("cluster(dataset, int)");
+        List<List<DataPoint>> clusters = clara.cluster(easyData10, 10);
+        assertEquals(10, clusters.size());
+        Set<Integer> seenBefore = new HashSet<Integer>();
+        for(List<DataPoint> cluster :  clusters)
+        {
+            int thisClass = cluster.get(0).getCategoricalValue(0);
+            assertFalse(seenBefore.contains(thisClass));
+            for(DataPoint dp : cluster)
+                assertEquals(thisClass, dp.getCategoricalValue(0));
+        }
+    }
+
+    
+}
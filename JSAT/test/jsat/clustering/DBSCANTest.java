@@ -4,6 +4,7 @@
  */
 package jsat.clustering;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
 import jsat.classifiers.DataPoint;
@@ -15,6 +16,7 @@ import jsat.SimpleDataSet;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import jsat.DataSet;
+import jsat.linear.DenseVector;
 import jsat.linear.Vec;
 import jsat.linear.VecPaired;
 import jsat.linear.distancemetrics.EuclideanDistance;
@@ -177,4 +179,33 @@ public class DBSCANTest
                 assertEquals(thisClass, dp.getCategoricalValue(0));
         }
     }
+
+    @Test
+    public void testParallelMatchesSequential()
+    {
+        System.out.println("parallel matches sequential");
+        //Overlapping blobs and uniform noise, so there are border points in range of more than one cluster
+        GridDataGenerator gdg = new GridDataGenerator(new Uniform(-0.35, 0.35), new Random(7), 3, 3);
+        SimpleDataSet data = gdg.generateData(60);
+        Random rand = new Random(3);
+        for(int i = 0; i < 100; i++)
+            data.add(new DataPoint(DenseVector.toDenseVec(rand.nextDouble()*3-0.5, rand.nextDouble()*3-0.5), new int[]{0}, data.getCategories()));
+        
+        List<DBSCAN> dbscans = new ArrayList<DBSCAN>();
+        dbscans.add(new DBSCAN(new EuclideanDistance(), new VectorArrayFactory<VecPaired<Vec, Integer>>()));
+        dbscans.add(new DBSCAN(new EuclideanDistance(), new KDTreeFactory<VecPaired<Vec, Integer>>()));
+        dbscans.add(new DBSCAN(new EuclideanDistance(), new VPTreeFactory<VecPaired<Vec, Integer>>()));
+        for(DBSCAN db : dbscans)
+            for(double eps : new double[]{0.05, 0.1, 0.2})
+                for(int minPts : new int[]{3, 6})
+                {
+                    int[] serial = db.cluster(data, eps, minPts, (int[]) null);
+                    int[] parallel = db.cluster(data, eps, minPts, ex, null);
+                    assertArrayEquals(serial, parallel);
+                }
+        
+        int[] serial = dbscans.get(0).cluster(data, 4, (int[]) null);
+        int[] parallel = dbscans.get(0).cluster(data, 4, ex, null);
+        assertArrayEquals(serial, parallel);
+    }
 }
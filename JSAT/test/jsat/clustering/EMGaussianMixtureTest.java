@@ -16,6 +16,7 @@ import jsat.linear.Vec;
 import jsat.linear.distancemetrics.EuclideanDistance;
 import jsat.utils.GridDataGenerator;
 import jsat.utils.SystemInfo;
+import jsat.utils.random.XORWOW;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -100,4 +101,47 @@ public class EMGaussianMixtureTest
         }
     }
 
+    @Test
+    public void testCluster_Streaming()
+    {
+        System.out.println("cluster(dataset, int) streaming");
+        for(boolean parallel : new boolean[]{false, true})
+        {
+            //seeded, so the KPP seeds are the same on every run
+            EMGaussianMixture em = new EMGaussianMixture(new EuclideanDistance(), new XORWOW(13), SeedSelectionMethods.SeedSelection.KPP);
+            em.setMode(EMGaussianMixture.Mode.STREAMING);
+            List<List<DataPoint>> clusters = parallel ? em.cluster(easyData, 4, ex) : em.cluster(easyData, 4);
+            checkPure(clusters);
+        }
+    }
+    
+    @Test
+    public void testCluster_MiniBatch()
+    {
+        System.out.println("cluster(dataset, int) mini batch");
+        for(boolean parallel : new boolean[]{false, true})
+        {
+            //seeded, so the KPP seeds and the mini batches are the same on every run
+            EMGaussianMixture em = new EMGaussianMixture(new EuclideanDistance(), new XORWOW(13), SeedSelectionMethods.SeedSelection.KPP);
+            em.setMode(EMGaussianMixture.Mode.MINI_BATCH);
+            em.setMiniBatchSize(50);
+            List<List<DataPoint>> clusters = parallel ? em.cluster(easyData, 4, ex) : em.cluster(easyData, 4);
+            checkPure(clusters);
+        }
+    }
+    
+    private static void checkPure(List<List<DataPoint>> clusters)
+    {
+        assertEquals(4, clusters.size());
+        Set<Integer> seenBefore = new HashSet<Integer>();
+        for(List<DataPoint> cluster :  clusters)
+        {
+            int thisClass = cluster.get(0).getCategoricalValue(0);
+            assertFalse(seenBefore.contains(thisClass));
+            seenBefore.add(thisClass);
+            for(DataPoint dp : cluster)
+                assertEquals(thisClass, dp.getCategoricalValue(0));
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+package jsat.clustering;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.SimpleDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.distributions.Uniform;
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+import jsat.linear.VecPaired;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.linear.vectorcollection.KDTree.KDTreeFactory;
+import jsat.linear.vectorcollection.VPTree.VPTreeFactory;
+import jsat.linear.vectorcollection.VectorArray.VectorArrayFactory;
+import jsat.linear.vectorcollection.VectorCollectionFactory;
+import jsat.utils.GridDataGenerator;
+import jsat.utils.SystemInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class OPTICSTest
+{
+    static private SimpleDataSet easyData10;
+    static private ExecutorService ex;
+    
+    public OPTICSTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception
+    {
+        GridDataGenerator gdg = new GridDataGenerator(new Uniform(-0.15, 0.15), new Random(12), 2, 5);
+        easyData10 = gdg.generateData(40);
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception
+    {
+        ex.shutdown();
+    }
+
+    @Test
+    public void testCluster_DataSet()
+    {
+        System.out.println("cluster(dataset)");
+        for(OPTICS.ExtractionMethod method : new OPTICS.ExtractionMethod[]{OPTICS.ExtractionMethod.THRESHHOLD, OPTICS.ExtractionMethod.THRESHHOLD_FIXUP})
+        {
+            OPTICS optics = new OPTICS();
+            optics.setExtractionMethod(method);
+            checkPure(optics.cluster(easyData10, (int[]) null));
+        }
+    }
+    
+    @Test
+    public void testCluster_DataSet_ExecutorService()
+    {
+        System.out.println("cluster(dataset, executorService)");
+        OPTICS optics = new OPTICS();
+        checkPure(optics.cluster(easyData10, ex, (int[]) null));
+    }
+
+    @Test
+    public void testParallelMatchesSequential()
+    {
+        System.out.println("parallel matches sequential");
+        GridDataGenerator gdg = new GridDataGenerator(new Uniform(-0.35, 0.35), new Random(7), 3, 3);
+        SimpleDataSet data = gdg.generateData(60);
+        Random rand = new Random(3);
+        for(int i = 0; i < 100; i++)
+            data.add(new DataPoint(DenseVector.toDenseVec(rand.nextDouble()*3-0.5, rand.nextDouble()*3-0.5), new int[]{0}, data.getCategories()));
+        
+        List<VectorCollectionFactory<VecPaired<Vec, Integer>>> factories = new ArrayList<VectorCollectionFactory<VecPaired<Vec, Integer>>>();
+        factories.add(new VectorArrayFactory<VecPaired<Vec, Integer>>());
+        factories.add(new KDTreeFactory<VecPaired<Vec, Integer>>());
+        factories.add(new VPTreeFactory<VecPaired<Vec, Integer>>());
+        for(VectorCollectionFactory<VecPaired<Vec, Integer>> vcf : factories)
+            for(OPTICS.ExtractionMethod method : OPTICS.ExtractionMethod.values())
+                for(int minPts : new int[]{3, 10})
+                {
+                    OPTICS optics = new OPTICS(new EuclideanDistance(), minPts);
+                    optics.setVCF(vcf);
+                    optics.setExtractionMethod(method);
+                    int[] serial = optics.cluster(data, (int[]) null);
+                    double[] serialReach = optics.getReachabilityArray();
+                    int[] serialDBSCAN = optics.extractClusteringDBSCAN(0.1, null);
+                    //all stored, some spilled, none stored
+                    for(int maxStored : new int[]{OPTICS.DEFAULT_MAX_STORED_NEIGHBORS, 1000, 0})
+                    {
+                        optics.setMaxStoredNeighbors(maxStored);
+                        int[] parallel = optics.cluster(data, ex, (int[]) null);
+                        assertArrayEquals(serial, parallel);
+                        assertArrayEquals(serialReach, optics.getReachabilityArray(), 0.0);
+                        assertArrayEquals(serialDBSCAN, optics.extractClusteringDBSCAN(0.1, null));
+                    }
+                }
+    }
+    
+    @Test
+    public void testExtractClusteringDBSCAN()
+    {
+        System.out.println("extractClusteringDBSCAN");
+        int minPts = 5;
+        double eps = 0.1;
+        OPTICS optics = new OPTICS(new EuclideanDistance(), minPts);
+        optics.cluster(easyData10, ex, (int[]) null);
+        int[] fromOPTICS = optics.extractClusteringDBSCAN(eps, null);
+        checkPure(fromOPTICS);
+        //OPTICS does not count the point itself in minPts, DBSCAN does
+        DBSCAN dbscan = new DBSCAN(new EuclideanDistance(), new VectorArrayFactory<VecPaired<Vec, Integer>>());
+        int[] fromDBSCAN = dbscan.cluster(easyData10, eps, minPts+1, (int[]) null);
+        
+        //same partition, up to the cluster labels
+        Map<Integer, Integer> labelMap = new HashMap<Integer, Integer>();
+        labelMap.put(-1, -1);
+        for(int i = 0; i < fromOPTICS.length; i++)
+        {
+            if(fromDBSCAN[i] < 0)//DBSCAN uses a different negative value for noise
+                fromDBSCAN[i] = -1;
+            if(!labelMap.containsKey(fromOPTICS[i]))
+                labelMap.put(fromOPTICS[i], fromDBSCAN[i]);
+            assertEquals(labelMap.get(fromOPTICS[i]).intValue(), fromDBSCAN[i]);
+        }
+        assertEquals(new HashSet<Integer>(labelMap.values()).size(), labelMap.size());
+    }
+    
+    @Test
+    public void testClone()
+    {
+        System.out.println("clone");
+        OPTICS optics = new OPTICS();
+        optics.setExtractionMethod(OPTICS.ExtractionMethod.THRESHHOLD);
+        OPTICS clone = optics.clone();
+        assertEquals(OPTICS.ExtractionMethod.THRESHHOLD, clone.getExtractionMethod());
+        
+        int[] expected = optics.cluster(easyData10, (int[]) null);
+        clone = optics.clone();
+        assertArrayEquals(optics.getReachabilityArray(), clone.getReachabilityArray(), 0.0);
+        assertArrayEquals(optics.extractClusteringDBSCAN(0.1, null), clone.extractClusteringDBSCAN(0.1, null));
+        assertArrayEquals(expected, clone.cluster(easyData10, (int[]) null));
+    }
+
+    /**
+     * Checks that there are 10 clusters and that each contains only one class
+     */
+    private void checkPure(int[] designations)
+    {
+        Map<Integer, Integer> clusterClass = new HashMap<Integer, Integer>();
+        Set<Integer> classesSeen = new HashSet<Integer>();
+        for(int i = 0; i < designations.length; i++)
+        {
+            if(designations[i] < 0)
+                continue;
+            int thisClass = easyData10.getDataPoint(i).getCategoricalValue(0);
+            classesSeen.add(thisClass);
+            if(!clusterClass.containsKey(designations[i]))
+                clusterClass.put(designations[i], thisClass);
+            assertEquals(clusterClass.get(designations[i]).intValue(), thisClass);
+        }
+        assertEquals(10, classesSeen.size());
+    }
+}
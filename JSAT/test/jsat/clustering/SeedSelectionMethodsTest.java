@@ -0,0 +1,81 @@
+package jsat.clustering;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.SimpleDataSet;
+import jsat.distributions.Uniform;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.utils.GridDataGenerator;
+import jsat.utils.SystemInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class SeedSelectionMethodsTest
+{
+    static private SimpleDataSet easyData10;
+    static private ExecutorService ex;
+
+    public SeedSelectionMethodsTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        GridDataGenerator gdg = new GridDataGenerator(new Uniform(-0.05, 0.05), new Random(12), 2, 5);
+        easyData10 = gdg.generateData(100);
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        ex.shutdown();
+    }
+
+    @Test
+    public void testKMeansParallel()
+    {
+        System.out.println("selectIntialPoints KMEANS_PARALLEL");
+        EuclideanDistance dm = new EuclideanDistance();
+        for(int trial = 0; trial < 10; trial++)
+        {
+            int[] serial = new int[10];
+            int[] parallel = new int[10];
+            SeedSelectionMethods.selectIntialPoints(easyData10, serial, dm, new Random(trial), SeedSelectionMethods.SeedSelection.KMEANS_PARALLEL);
+            SeedSelectionMethods.selectIntialPoints(easyData10, parallel, dm, new Random(trial), SeedSelectionMethods.SeedSelection.KMEANS_PARALLEL, ex);
+            assertArrayEquals(serial, parallel);
+
+            Set<Integer> seeds = new HashSet<Integer>();
+            Set<Integer> classes = new HashSet<Integer>();
+            for(int i : serial)
+            {
+                seeds.add(i);
+                classes.add(easyData10.getDataPoint(i).getCategoricalValue(0));
+            }
+            assertEquals(10, seeds.size());
+            //the clusters are far apart, so at most one should be missed
+            assertTrue(classes.size() >= 9);
+        }
+    }
+
+    @Test
+    public void testKMeansParallel_fewPoints()
+    {
+        System.out.println("selectIntialPoints KMEANS_PARALLEL few points");
+        SimpleDataSet small = new GridDataGenerator(new Uniform(-0.05, 0.05), new Random(3), 2, 2).generateData(2);
+        int[] seeds = new int[small.getSampleSize()];
+        SeedSelectionMethods.selectIntialPoints(small, seeds, new EuclideanDistance(), new Random(5), SeedSelectionMethods.SeedSelection.KMEANS_PARALLEL, ex);
+        Set<Integer> unique = new HashSet<Integer>();
+        for(int i : seeds)
+            unique.add(i);
+        assertEquals(seeds.length, unique.size());
+    }
+}
@@ -0,0 +1,244 @@
+package jsat.clustering.hierarchical;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.SimpleDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.clustering.dissimilarity.*;
+import jsat.distributions.Uniform;
+import jsat.linear.DenseVector;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.utils.GridDataGenerator;
+import jsat.utils.SystemInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class NNChainHACTest
+{
+    static private SimpleDataSet easyData10;
+    static private ExecutorService ex;
+
+    public NNChainHACTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception
+    {
+        GridDataGenerator gdg = new GridDataGenerator(new Uniform(-0.15, 0.15), new Random(12), 2, 5);
+        easyData10 = gdg.generateData(50);
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception
+    {
+        ex.shutdown();
+    }
+
+    /**
+     * The linkages whose choice of the number of clusters finds the 10 
+     * clusters. Like {@link PriorityHAC}, complete link picks 2. 
+     */
+    private static List<UpdatableClusterDissimilarity> getAutoLinkages()
+    {
+        List<UpdatableClusterDissimilarity> linkages = getLinkages();
+        linkages.remove(1);
+        return linkages;
+    }
+
+    private static List<UpdatableClusterDissimilarity> getLinkages()
+    {
+        List<UpdatableClusterDissimilarity> linkages = new ArrayList<UpdatableClusterDissimilarity>();
+        linkages.add(new SingleLinkDissimilarity(new EuclideanDistance()));
+        linkages.add(new CompleteLinkDissimilarity(new EuclideanDistance()));
+        linkages.add(new AverageLinkDissimilarity(new EuclideanDistance()));
+        linkages.add(new WardsDissimilarity());
+        return linkages;
+    }
+
+    @Test
+    public void testCluster_DataSet_int()
+    {
+        System.out.println("cluster(dataset, int)");
+        for(UpdatableClusterDissimilarity linkage : getLinkages())
+            for(NNChainHAC.DistanceStorage storage : NNChainHAC.DistanceStorage.values())
+                checkClusters(new NNChainHAC(linkage, storage).cluster(easyData10, 10));
+    }
+
+    @Test
+    public void testCluster_DataSet()
+    {
+        System.out.println("cluster(dataset)");
+        for(UpdatableClusterDissimilarity linkage : getAutoLinkages())
+            checkClusters(new NNChainHAC(linkage).cluster(easyData10));
+    }
+
+    @Test
+    public void testCluster_DataSet_int_int_ExecutorService()
+    {
+        System.out.println("cluster(dataset, int, int, ExecutorService)");
+        for(UpdatableClusterDissimilarity linkage : getAutoLinkages())
+            checkClusters(new NNChainHAC(linkage).cluster(easyData10, 2, 20, ex));
+    }
+
+    @Test
+    public void testMatchesPriorityHAC()
+    {
+        System.out.println("matches PriorityHAC");
+        //random points, so there are no ties in the merge order
+        Random rand = new Random(5);
+        SimpleDataSet data = new GridDataGenerator(new Uniform(-0.5, 0.5), rand, 2, 2).generateData(30);
+        for(int i = 0; i < 40; i++)
+            data.add(new DataPoint(DenseVector.toDenseVec(rand.nextDouble()*2, rand.nextDouble()*2), new int[]{0}, data.getCategories()));
+
+        for(UpdatableClusterDissimilarity linkage : getLinkages())
+        {
+            PriorityHAC priorityHAC = new PriorityHAC(linkage.clone());
+            NNChainHAC nnChain = new NNChainHAC(linkage.clone());
+            for(int k : new int[]{2, 5, 17})
+            {
+                int[] expected = priorityHAC.cluster(data, k, (int[]) null);
+                assertSamePartition(expected, nnChain.cluster(data, k, (int[]) null));
+                assertSamePartition(expected, nnChain.cluster(data, k, ex, (int[]) null));
+            }
+            //merges are stored, so other sizes don't need to recluster
+            int[] expected = priorityHAC.cluster(data, 8, (int[]) null);
+            assertTrue(nnChain.hasStoredClustering());
+            assertSamePartition(expected, nnChain.getClusterDesignations(null, 8));
+            assertEquals(8, nnChain.getClusterDesignations(8).size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCentroidNotReducible()
+    {
+        System.out.println("centroid not reducible");
+        new NNChainHAC(new CentroidDissimilarity(new EuclideanDistance()));
+    }
+
+    @Test
+    public void testClone()
+    {
+        System.out.println("clone");
+        NNChainHAC nnChain = new NNChainHAC(new WardsDissimilarity(), NNChainHAC.DistanceStorage.FLOAT);
+        NNChainHAC clone = nnChain.clone();
+        assertEquals(NNChainHAC.DistanceStorage.FLOAT, clone.getDistanceStorage());
+        assertFalse(clone.hasStoredClustering());
+
+        int[] expected = nnChain.cluster(easyData10, 10, (int[]) null);
+        clone = nnChain.clone();
+        assertArrayEquals(expected, clone.getClusterDesignations(null, 10));
+    }
+
+    @Test
+    public void testMatrixOnlyDissimilarity()
+    {
+        System.out.println("matrix only dissimilarity");
+        Random rand = new Random(5);
+        SimpleDataSet data = new SimpleDataSet(easyData10.getCategories(), 2);
+        for(int i = 0; i < 60; i++)
+            data.add(new DataPoint(DenseVector.toDenseVec(rand.nextDouble()*2, rand.nextDouble()*2), new int[]{0}, data.getCategories()));
+        
+        int[] expected = new NNChainHAC(new WardsDissimilarity()).cluster(data, 6, (int[]) null);
+        int[] found = new NNChainHAC(new MatrixOnlyDissimilarity(new WardsDissimilarity())).cluster(data, 6, (int[]) null);
+        assertSamePartition(expected, found);
+    }
+
+    /**
+     * A measure that only has the matrix based updates of 
+     * {@link UpdatableClusterDissimilarity}, as one written outside of JSAT
+     * might
+     */
+    private static class MatrixOnlyDissimilarity implements UpdatableClusterDissimilarity
+    {
+        private final UpdatableClusterDissimilarity base;
+
+        public MatrixOnlyDissimilarity(UpdatableClusterDissimilarity base)
+        {
+            this.base = base;
+        }
+
+        @Override
+        public double dissimilarity(int i, int ni, int j, int nj, double[][] distanceMatrix)
+        {
+            return base.dissimilarity(i, ni, j, nj, distanceMatrix);
+        }
+
+        @Override
+        public double dissimilarity(int i, int ni, int j, int nj, int k, int nk, double[][] distanceMatrix)
+        {
+            return base.dissimilarity(i, ni, j, nj, k, nk, distanceMatrix);
+        }
+
+        @Override
+        public double distance(DataPoint a, DataPoint b)
+        {
+            return base.distance(a, b);
+        }
+
+        @Override
+        public double dissimilarity(List<DataPoint> a, List<DataPoint> b)
+        {
+            return base.dissimilarity(a, b);
+        }
+
+        @Override
+        public double dissimilarity(Set<Integer> a, Set<Integer> b, double[][] distanceMatrix)
+        {
+            return base.dissimilarity(a, b, distanceMatrix);
+        }
+
+        @Override
+        public MatrixOnlyDissimilarity clone()
+        {
+            return new MatrixOnlyDissimilarity(base.clone());
+        }
+    }
+
+    private static void assertSamePartition(int[] expected, int[] actual)
+    {
+        assertEquals(expected.length, actual.length);
+        Map<Integer, Integer> map = new HashMap<Integer, Integer>();
+        for(int i = 0; i < expected.length; i++)
+        {
+            if(!map.containsKey(expected[i]))
+                map.put(expected[i], actual[i]);
+            assertEquals(map.get(expected[i]).intValue(), actual[i]);
+        }
+        assertEquals(map.size(), new HashSet<Integer>(map.values()).size());
+    }
+
+    private static void checkClusters(List<List<DataPoint>> clusters)
+    {
+        assertEquals(10, clusters.size());
+        Set<Integer> seenBefore = new HashSet<Integer>();
+        for (List<DataPoint> cluster : clusters)
+        {
+            int thisClass = cluster.get(0).getCategoricalValue(0);
+            assertFalse(seenBefore.contains(thisClass));
+            seenBefore.add(thisClass);
+            for (DataPoint dp : cluster)
+                assertEquals(thisClass, dp.getCategoricalValue(0));
+        }
+    }
+
+    private static void checkClusters(int[] designations)
+    {
+        List<List<DataPoint>> clusters = new ArrayList<List<DataPoint>>();
+        for(int i = 0; i < designations.length; i++)
+        {
+            while(clusters.size() <= designations[i])
+                clusters.add(new ArrayList<DataPoint>());
+            clusters.get(designations[i]).add(easyData10.getDataPoint(i));
+        }
+        checkClusters(clusters);
+    }
+}
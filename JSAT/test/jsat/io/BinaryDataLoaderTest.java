@@ -0,0 +1,128 @@
+package jsat.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.regression.RegressionDataSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class BinaryDataLoaderTest
+{
+    public BinaryDataLoaderTest()
+    {
+    }
+
+    @Test
+    public void testClassificationDense() throws IOException
+    {
+        System.out.println("write/map classification");
+        Random rand = new Random(13);
+        CategoricalData[] cats = new CategoricalData[]{new CategoricalData(3), new CategoricalData(5)};
+        cats[0].setCategoryName("color");
+        cats[0].setOptionName("red", 0);
+        ClassificationDataSet data = new ClassificationDataSet(6, cats, new CategoricalData(4));
+        data.setNumericName("height", 1);
+        for(int i = 0; i < 200; i++)
+        {
+            DataPoint dp = new DataPoint(DenseVector.random(6, rand), new int[]{i % 3, i % 5}, cats, 1.0 + i % 7);
+            data.addDataPoint(dp, i % 4);
+        }
+
+        File file = File.createTempFile("jsat", ".bin");
+        file.deleteOnExit();
+        BinaryDataLoader.write(data, file);
+        MappedDataSet mapped = BinaryDataLoader.map(file);
+
+        assertTrue(mapped.isClassification());
+        assertEquals(200, mapped.getSampleSize());
+        assertEquals(6, mapped.getNumNumericalVars());
+        assertEquals(2, mapped.getNumCategoricalVars());
+        assertEquals(4, mapped.getPredicting().getNumOfCategories());
+        assertEquals("height", mapped.getNumericName(1));
+        assertEquals("color", mapped.getCategories()[0].getCategoryName());
+        assertEquals("red", mapped.getCategories()[0].getOptionName(0));
+        for(int i = 0; i < data.getSampleSize(); i++)
+            assertDataPointEquals(data.getDataPoint(i), data.getDataPointCategory(i), mapped.getDataPoint(i), mapped.getDataPointCategory(i));
+
+        ClassificationDataSet back = mapped.toClassificationDataSet();
+        for(int i = 0; i < data.getSampleSize(); i++)
+            assertDataPointEquals(data.getDataPoint(i), data.getDataPointCategory(i), back.getDataPoint(i), back.getDataPointCategory(i));
+
+        List<MappedDataSet> folds = mapped.cvSet(3, new Random(1));
+        int total = 0;
+        double sum = 0, foldSum = 0;
+        for(int i = 0; i < data.getSampleSize(); i++)
+            sum += data.getDataPoint(i).getNumericalValues().sum();
+        for(MappedDataSet fold : folds)
+        {
+            total += fold.getSampleSize();
+            for(int i = 0; i < fold.getSampleSize(); i++)
+                foldSum += fold.getDataPoint(i).getNumericalValues().sum();
+        }
+        assertEquals(200, total);
+        assertEquals(sum, foldSum, 1e-8);
+        file.delete();
+    }
+
+    @Test
+    public void testRegressionSparse() throws IOException
+    {
+        System.out.println("write/map regression");
+        Random rand = new Random(13);
+        RegressionDataSet data = new RegressionDataSet(1000, new CategoricalData[0]);
+        for(int i = 0; i < 300; i++)
+        {
+            SparseVector x = new SparseVector(1000);
+            for(int j = 0; j < i % 20; j++)
+                x.set(rand.nextInt(1000), rand.nextGaussian());
+            data.addDataPoint(x, rand.nextGaussian());
+        }
+
+        File file = File.createTempFile("jsat", ".bin");
+        file.deleteOnExit();
+        BinaryDataLoader.write(data, file);
+        MappedDataSet mapped = BinaryDataLoader.map(file);
+
+        assertTrue(mapped.isRegression());
+        assertEquals(300, mapped.getSampleSize());
+        for(int i = 0; i < data.getSampleSize(); i++)
+        {
+            Vec x = mapped.getDataPoint(i).getNumericalValues();
+            assertTrue(x.isSparse());
+            assertEquals(data.getDataPoint(i).getNumericalValues().nnz(), x.nnz());
+            assertTrue(data.getDataPoint(i).getNumericalValues().equals(x));
+            assertEquals(data.getTargetValue(i), mapped.getTargetValue(i), 0.0);
+        }
+
+        try
+        {
+            mapped.setDataPoint(0, data.getDataPoint(0));
+            fail("Mapped data sets are read only");
+        }
+        catch(UnsupportedOperationException ex)
+        {
+            //Good! We expected failure
+        }
+        file.delete();
+    }
+
+    private static void assertDataPointEquals(DataPoint expected, int expectedClass, DataPoint actual, int actualClass)
+    {
+        assertEquals(expectedClass, actualClass);
+        assertTrue(expected.getNumericalValues().equals(actual.getNumericalValues()));
+        assertArrayEquals(expected.getCategoricalValues(), actual.getCategoricalValues());
+        assertEquals(expected.getWeight(), actual.getWeight(), 0.0);
+    }
+}
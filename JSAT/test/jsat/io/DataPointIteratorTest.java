@@ -0,0 +1,174 @@
+package jsat.io;
+
+import java.io.*;
+import java.util.Random;
+import jsat.ARFFIterator;
+import jsat.ARFFLoader;
+import jsat.SimpleDataSet;
+import jsat.classifiers.BaseUpdateableClassifier;
+import jsat.classifiers.CategoricalData;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.classifiers.DataPoint;
+import jsat.classifiers.DataPointPair;
+import jsat.classifiers.linear.LinearSGD;
+import jsat.classifiers.linear.PassiveAggressive;
+import jsat.linear.DenseVector;
+import jsat.linear.Vec;
+import jsat.lossfunctions.SquaredLoss;
+import jsat.regression.BaseUpdateableRegressor;
+import jsat.regression.RegressionDataSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class DataPointIteratorTest
+{
+    public DataPointIteratorTest()
+    {
+    }
+
+    /**
+     * Writes a linearly separable problem, labeled -1 and 1 by the sign of
+     * the first feature
+     */
+    private static File writeSeparable(int n, Random rand) throws IOException
+    {
+        File file = File.createTempFile("jsat", ".libsvm");
+        file.deleteOnExit();
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        for(int i = 0; i < n; i++)
+        {
+            double x0 = rand.nextGaussian();
+            writer.print((x0 > 0 ? 1 : -1) + " 1:" + x0 + " 3:" + rand.nextGaussian() + " \n");
+        }
+        writer.close();
+        return file;
+    }
+
+    @Test
+    public void testLIBSVMIterator() throws IOException
+    {
+        System.out.println("LIBSVMIterator");
+        File file = writeSeparable(3000, new Random(13));
+        ClassificationDataSet expected = LIBSVMLoader.loadC(file);
+
+        LIBSVMIterator<Integer> iter = LIBSVMIterator.classification(file, 3, 1, -1);
+        assertEquals(3, iter.getNumNumericalVars());
+        assertEquals(2, iter.getPredicting().getNumOfCategories());
+        int i = 0;
+        while(iter.hasNext())
+        {
+            DataPointPair<Integer> dpp = iter.next();
+            assertEquals(expected.getDataPointCategory(i), dpp.getPair().intValue());
+            assertTrue(expected.getDataPoint(i).getNumericalValues().equals(dpp.getVector()));
+            i++;
+        }
+        assertEquals(expected.getSampleSize(), i);
+        assertFalse(iter.hasNext());
+
+        //closing part way should not hang
+        LIBSVMIterator<Integer> partial = iter.reopen();
+        assertTrue(partial.hasNext());
+        partial.next();
+        partial.close();
+        assertFalse(partial.hasNext());
+        file.delete();
+    }
+
+    @Test
+    public void testTrainEpochs() throws IOException
+    {
+        System.out.println("trainEpochs stream");
+        Random rand = new Random(13);
+        File file = writeSeparable(2000, rand);
+        ClassificationDataSet test = LIBSVMLoader.loadC(writeSeparable(200, rand), 0.5, 3);
+
+        PassiveAggressive pa = new PassiveAggressive();
+        BaseUpdateableClassifier.trainEpochs(LIBSVMIterator.classification(file, 3, -1, 1), pa, 3);
+        int errors = 0;
+        for(int i = 0; i < test.getSampleSize(); i++)
+            if(pa.classify(test.getDataPoint(i)).mostLikely() != test.getDataPointCategory(i))
+                errors++;
+        assertTrue(errors < 10);
+
+        //regression on y = 2 x_0
+        File rfile = File.createTempFile("jsat", ".libsvm");
+        rfile.deleteOnExit();
+        PrintWriter writer = new PrintWriter(new FileWriter(rfile));
+        for(int i = 0; i < 2000; i++)
+        {
+            double x = rand.nextDouble();
+            writer.print(2*x + " 1:" + x + "\n");
+        }
+        writer.close();
+
+        LinearSGD sgd = new LinearSGD(new SquaredLoss(), 0.0, 0.0);
+        BaseUpdateableRegressor.trainEpochs(LIBSVMIterator.regression(rfile, 1), sgd, 5);
+        assertEquals(1.0, sgd.regress(new DataPoint(DenseVector.toDenseVec(0.5))), 0.1);
+
+        try
+        {
+            BaseUpdateableClassifier.trainEpochs(LIBSVMIterator.classification(file, 3, 1), new PassiveAggressive(), 1);
+            fail("Label -1 was not given, so the stream should fail");
+        }
+        catch(RuntimeException ex)
+        {
+            //Good! We expected failure
+        }
+        file.delete();
+        rfile.delete();
+    }
+
+    @Test
+    public void testARFFIterator() throws IOException
+    {
+        System.out.println("ARFFIterator");
+        Random rand = new Random(13);
+        CategoricalData[] cats = new CategoricalData[]{new CategoricalData(3)};
+        cats[0].setCategoryName("shape");
+        ClassificationDataSet cds = new ClassificationDataSet(2, cats, new CategoricalData(2));
+        for(int i = 0; i < 500; i++)
+            cds.addDataPoint(DenseVector.random(2, rand), new int[]{i % 3}, i % 2);
+        File file = File.createTempFile("jsat", ".arff");
+        file.deleteOnExit();
+        OutputStream os = new FileOutputStream(file);
+        ARFFLoader.writeArffFile(cds, os);
+        os.close();
+
+        //classification on the last categorical attribute, the class
+        ARFFIterator<Integer> iter = ARFFIterator.classification(file, 1);
+        assertEquals(2, iter.getNumNumericalVars());
+        assertEquals(1, iter.getCategories().length);
+        int i = 0;
+        while(iter.hasNext())
+        {
+            DataPointPair<Integer> dpp = iter.next();
+            assertEquals(cds.getDataPointCategory(i), dpp.getPair().intValue());
+            assertEquals(cds.getDataPoint(i).getCategoricalValue(0), dpp.getDataPoint().getCategoricalValue(0));
+            assertTrue(cds.getDataPoint(i).getNumericalValues().equals(dpp.getVector(), 1e-12));
+            i++;
+        }
+        assertEquals(500, i);
+
+        //regression on the second numeric attribute, matching the loader
+        SimpleDataSet loaded = ARFFLoader.loadArffFile(file);
+        RegressionDataSet rds = new RegressionDataSet(loaded.getDataPoints(), 1);
+        ARFFIterator<Double> riter = ARFFIterator.regression(file, 1);
+        assertEquals(1, riter.getNumNumericalVars());
+        i = 0;
+        while(riter.hasNext())
+        {
+            DataPointPair<Double> dpp = riter.next();
+            assertEquals(rds.getTargetValue(i), dpp.getPair(), 0.0);
+            Vec x = dpp.getVector();
+            assertTrue(rds.getDataPoint(i).getNumericalValues().equals(x));
+            assertArrayEquals(rds.getDataPoint(i).getCategoricalValues(), dpp.getDataPoint().getCategoricalValues());
+            i++;
+        }
+        assertEquals(500, i);
+        file.delete();
+    }
+}
@@ -0,0 +1,121 @@
+package jsat.io;
+
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.classifiers.ClassificationDataSet;
+import jsat.regression.RegressionDataSet;
+import jsat.utils.SystemInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class LIBSVMLoaderTest
+{
+    private static ExecutorService ex;
+    private static File file;
+
+    public LIBSVMLoaderTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws IOException
+    {
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+        //large enough to be split into several ranges
+        file = File.createTempFile("jsat", ".libsvm");
+        file.deleteOnExit();
+        Random rand = new Random(13);
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        for(int i = 0; i < 20000; i++)
+        {
+            writer.print(rand.nextInt(3) + " ");
+            int index = 0;
+            int nnz = rand.nextInt(15);
+            for(int j = 0; j < nnz; j++)
+            {
+                index += 1 + rand.nextInt(20);
+                writer.print(index + ":" + rand.nextGaussian() + " ");
+            }
+            writer.print("\n");
+        }
+        writer.close();
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        ex.shutdown();
+        file.delete();
+    }
+
+    @Test
+    public void testLoadC_Parallel() throws IOException
+    {
+        System.out.println("loadC parallel");
+        ClassificationDataSet expected = LIBSVMLoader.loadC(file);
+        for(ExecutorService threadPool : new ExecutorService[]{null, ex})
+        {
+            ClassificationDataSet result = LIBSVMLoader.loadC(file, threadPool);
+            assertEquals(expected.getSampleSize(), result.getSampleSize());
+            assertEquals(expected.getNumNumericalVars(), result.getNumNumericalVars());
+            assertEquals(expected.getClassSize(), result.getClassSize());
+            for(int i = 0; i < expected.getSampleSize(); i++)
+            {
+                assertEquals(expected.getDataPointCategory(i), result.getDataPointCategory(i));
+                assertEquals(expected.getDataPoint(i).getNumericalValues().isSparse(), result.getDataPoint(i).getNumericalValues().isSparse());
+                assertTrue(expected.getDataPoint(i).getNumericalValues().equals(result.getDataPoint(i).getNumericalValues()));
+            }
+        }
+    }
+
+    @Test
+    public void testLoadR_Parallel() throws IOException
+    {
+        System.out.println("loadR parallel");
+        RegressionDataSet expected = LIBSVMLoader.loadR(file);
+        RegressionDataSet result = LIBSVMLoader.loadR(file, 0.5, 500, ex);
+        assertEquals(expected.getSampleSize(), result.getSampleSize());
+        assertEquals(500, result.getNumNumericalVars());
+        for(int i = 0; i < expected.getSampleSize(); i++)
+        {
+            assertEquals(expected.getTargetValue(i), result.getTargetValue(i), 0.0);
+            assertEquals(expected.getDataPoint(i).getNumericalValues().nnz(), result.getDataPoint(i).getNumericalValues().nnz());
+            assertEquals(expected.getDataPoint(i).getNumericalValues().sum(), result.getDataPoint(i).getNumericalValues().sum(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testLoadC_Format() throws IOException
+    {
+        System.out.println("loadC parallel format");
+        File small = File.createTempFile("jsat", ".libsvm");
+        small.deleteOnExit();
+        PrintWriter writer = new PrintWriter(new FileWriter(small));
+        writer.print("1 3:1.5 1:2\r\n");//unsorted, no trailing space, windows line ending
+        writer.print("\n");//blank line
+        writer.print("-1\n");//no values
+        writer.print("+1 2:0 4:-3e2");//explicit zero, no new line at the end
+        writer.close();
+
+        ClassificationDataSet data = LIBSVMLoader.loadC(small, 0.9, -1, ex);
+        assertEquals(3, data.getSampleSize());
+        assertEquals(4, data.getNumNumericalVars());
+        assertEquals(2, data.getClassSize());
+        assertEquals(1, data.getDataPointCategory(0));
+        assertEquals(0, data.getDataPointCategory(1));
+        assertEquals(2.0, data.getDataPoint(0).getNumericalValues().get(0), 0.0);
+        assertEquals(1.5, data.getDataPoint(0).getNumericalValues().get(2), 0.0);
+        assertEquals(0, data.getDataPoint(1).getNumericalValues().nnz());
+        assertEquals(1, data.getDataPoint(2).getNumericalValues().nnz());
+        assertEquals(-300, data.getDataPoint(2).getNumericalValues().get(3), 0.0);
+        small.delete();
+    }
+}
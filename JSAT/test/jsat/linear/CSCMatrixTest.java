@@ -0,0 +1,93 @@
+package jsat.linear;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class CSCMatrixTest extends CompressedMatrixTestBase
+{
+    public CSCMatrixTest()
+    {
+    }
+
+    @Override
+    protected Matrix create(int rows, int cols)
+    {
+        return new CSCMatrix(rows, cols);
+    }
+
+    /**
+     * Test of the multi-threaded matrix-vector products against a dense 
+     * matrix with the same values
+     */
+    @Test
+    public void testMultiplyVec_Executor()
+    {
+        System.out.println("multiply vec executor");
+        Random rand = new Random(13);
+        DenseMatrix truth = randomSparse(301, 207, rand);
+        CSCMatrix S = new CSCMatrix(truth);
+        assertEquals(countNonZero(truth), S.nnz());
+        
+        Vec b = Vec.random(207, rand);
+        Vec expected = truth.multiply(b).multiply(2.0);
+        Vec c = new DenseVector(301);
+        S.multiply(b, 2.0, c, ex);
+        assertTrue(expected.equals(c, 1e-10));
+        c.zeroOut();
+        S.multiply(b, 2.0, c);
+        assertTrue(expected.equals(c, 1e-10));
+        
+        Vec bt = Vec.random(301, rand);
+        expected = truth.transposeMultiply(3.0, bt);
+        Vec x = new DenseVector(207);
+        S.transposeMultiply(3.0, bt, x, ex);
+        assertTrue(expected.equals(x, 1e-10));
+        x.zeroOut();
+        S.transposeMultiply(3.0, bt, x);
+        assertTrue(expected.equals(x, 1e-10));
+    }
+    
+    /**
+     * Test of the sparse times dense matrix products against a dense matrix
+     * with the same values
+     */
+    @Test
+    public void testMultiplyDense_Executor()
+    {
+        System.out.println("multiply dense executor");
+        Random rand = new Random(17);
+        DenseMatrix truth = randomSparse(151, 97, rand);
+        CSCMatrix S = new CSCMatrix(truth);
+        
+        DenseMatrix D = DenseMatrix.random(97, 31, rand);
+        assertTrue(truth.multiply(D).equals(S.multiply(D), 1e-10));
+        assertTrue(truth.multiply(D).equals(S.multiply(D, ex), 1e-10));
+        
+        DenseMatrix Dt = DenseMatrix.random(31, 97, rand);
+        assertTrue(truth.multiplyTranspose(Dt).equals(S.multiplyTranspose(Dt), 1e-10));
+        assertTrue(truth.multiplyTranspose(Dt).equals(S.multiplyTranspose(Dt, ex), 1e-10));
+        
+        DenseMatrix D2 = DenseMatrix.random(151, 31, rand);
+        assertTrue(truth.transposeMultiply(D2).equals(S.transposeMultiply(D2), 1e-10));
+        assertTrue(truth.transposeMultiply(D2).equals(S.transposeMultiply(D2, ex), 1e-10));
+    }
+    
+    /**
+     * Test of toCSR method, of class CSCMatrix.
+     */
+    @Test
+    public void testToCSR()
+    {
+        System.out.println("toCSR");
+        Random rand = new Random(19);
+        DenseMatrix truth = randomSparse(53, 71, rand);
+        CSRMatrix other = new CSCMatrix(truth).toCSR();
+        assertEquals(countNonZero(truth), other.nnz());
+        assertTrue(truth.equals(other, 0.0));
+    }
+}
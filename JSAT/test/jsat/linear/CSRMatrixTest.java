@@ -0,0 +1,161 @@
+package jsat.linear;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class CSRMatrixTest extends CompressedMatrixTestBase
+{
+    public CSRMatrixTest()
+    {
+    }
+
+    @Override
+    protected Matrix create(int rows, int cols)
+    {
+        return new CSRMatrix(rows, cols);
+    }
+
+    /**
+     * Test of the multi-threaded matrix-vector products against a dense 
+     * matrix with the same values
+     */
+    @Test
+    public void testMultiplyVec_Executor()
+    {
+        System.out.println("multiply vec executor");
+        Random rand = new Random(13);
+        DenseMatrix truth = randomSparse(301, 207, rand);
+        CSRMatrix S = new CSRMatrix(truth);
+        assertEquals(countNonZero(truth), S.nnz());
+        
+        Vec b = Vec.random(207, rand);
+        Vec expected = truth.multiply(b).multiply(2.0);
+        Vec c = new DenseVector(301);
+        S.multiply(b, 2.0, c, ex);
+        assertTrue(expected.equals(c, 1e-10));
+        c.zeroOut();
+        S.multiply(b, 2.0, c);
+        assertTrue(expected.equals(c, 1e-10));
+        
+        Vec bt = Vec.random(301, rand);
+        expected = truth.transposeMultiply(3.0, bt);
+        Vec x = new DenseVector(207);
+        S.transposeMultiply(3.0, bt, x, ex);
+        assertTrue(expected.equals(x, 1e-10));
+        x.zeroOut();
+        S.transposeMultiply(3.0, bt, x);
+        assertTrue(expected.equals(x, 1e-10));
+    }
+    
+    /**
+     * Test of the sparse times dense matrix products against a dense matrix
+     * with the same values
+     */
+    @Test
+    public void testMultiplyDense_Executor()
+    {
+        System.out.println("multiply dense executor");
+        Random rand = new Random(17);
+        DenseMatrix truth = randomSparse(151, 97, rand);
+        CSRMatrix S = new CSRMatrix(truth);
+        
+        DenseMatrix D = DenseMatrix.random(97, 31, rand);
+        assertTrue(truth.multiply(D).equals(S.multiply(D), 1e-10));
+        assertTrue(truth.multiply(D).equals(S.multiply(D, ex), 1e-10));
+        
+        DenseMatrix Dt = DenseMatrix.random(31, 97, rand);
+        assertTrue(truth.multiplyTranspose(Dt).equals(S.multiplyTranspose(Dt), 1e-10));
+        assertTrue(truth.multiplyTranspose(Dt).equals(S.multiplyTranspose(Dt, ex), 1e-10));
+        
+        DenseMatrix D2 = DenseMatrix.random(151, 31, rand);
+        assertTrue(truth.transposeMultiply(D2).equals(S.transposeMultiply(D2), 1e-10));
+        assertTrue(truth.transposeMultiply(D2).equals(S.transposeMultiply(D2, ex), 1e-10));
+    }
+    
+    /**
+     * The multi-threaded transposed product should sum every value in the
+     * same order as the single threaded one, including on rows with no non
+     * zeros in some of the column blocks
+     */
+    @Test
+    public void testTransposeMultiplyVec_ExecutorExact()
+    {
+        System.out.println("transposeMultiply vec executor exact");
+        Random rand = new Random(29);
+        DenseMatrix truth = randomSparse(400, 1000, rand);
+        for(int j = 0; j < 500; j++)
+            truth.set(7, j, 0.0);
+        CSRMatrix S = new CSRMatrix(truth);
+        
+        Vec b = Vec.random(400, rand);
+        Vec serial = new DenseVector(1000);
+        S.transposeMultiply(1.5, b, serial);
+        Vec parallel = new DenseVector(1000);
+        S.transposeMultiply(1.5, b, parallel, ex);
+        assertTrue(serial.equals(parallel, 0.0));
+    }
+    
+    /**
+     * An exception thrown by one of the threads should reach the caller
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testMultiplyVec_ExecutorFailure()
+    {
+        System.out.println("multiply vec executor failure");
+        Random rand = new Random(31);
+        CSRMatrix S = new CSRMatrix(randomSparse(301, 207, rand));
+        Vec c = new DenseVector(301)
+        {
+            @Override
+            public void increment(int index, double val)
+            {
+                throw new IllegalStateException("failed to write " + index);
+            }
+        };
+        S.multiply(Vec.random(207, rand), 1.0, c, ex);
+    }
+    
+    /**
+     * Test of toCSC method, of class CSRMatrix.
+     */
+    @Test
+    public void testToCSC()
+    {
+        System.out.println("toCSC");
+        Random rand = new Random(19);
+        DenseMatrix truth = randomSparse(53, 71, rand);
+        CSCMatrix other = new CSRMatrix(truth).toCSC();
+        assertEquals(countNonZero(truth), other.nnz());
+        assertTrue(truth.equals(other, 0.0));
+    }
+
+    /**
+     * Test of creating a CSR matrix from sparse rows
+     */
+    @Test
+    public void testFromRows()
+    {
+        System.out.println("CSRMatrix(List)");
+        Random rand = new Random(23);
+        DenseMatrix truth = randomSparse(40, 60, rand);
+        List<Vec> rows = new ArrayList<Vec>();
+        for(int i = 0; i < truth.rows(); i++)
+            if(i % 2 == 0)
+                rows.add(new SparseVector(truth.getRowView(i)));
+            else
+                rows.add(truth.getRow(i));
+        CSRMatrix S = new CSRMatrix(rows);
+        assertEquals(countNonZero(truth), S.nnz());
+        assertTrue(truth.equals(S, 0.0));
+        //a copy, so altering the rows does not change the matrix
+        rows.get(0).set(0, 100.0);
+        assertEquals(truth.get(0, 0), S.get(0, 0), 0.0);
+    }
+}
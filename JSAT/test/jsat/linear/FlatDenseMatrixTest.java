@@ -0,0 +1,194 @@
+package jsat.linear;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.utils.SystemInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class FlatDenseMatrixTest
+{
+    /**
+     * Sizes chosen to cover single values, partial unrolls of the kernel, and
+     * several packed panels / tiles
+     */
+    private static final int[][] dims = new int[][]
+    {
+        {1, 1, 1},
+        {3, 5, 7},
+        {17, 33, 9},
+        {130, 257, 70},
+        {300, 600, 513},
+        {5, 1000, 3},
+    };
+
+    private static ExecutorService ex;
+
+    public FlatDenseMatrixTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        ex.shutdown();
+    }
+
+    @Test
+    public void testMultiply_Matrix_Matrix()
+    {
+        System.out.println("multiply");
+        Random rand = new Random(13);
+        for(int[] d : dims)
+        {
+            DenseMatrix A = Matrix.random(d[0], d[1], rand);
+            DenseMatrix B = Matrix.random(d[1], d[2], rand);
+            Matrix AB = A.multiply(B);
+
+            FlatDenseMatrix fA = new FlatDenseMatrix(A);
+            for(Matrix b : new Matrix[]{B, new FlatDenseMatrix(B)})
+            {
+                FlatDenseMatrix R = new FlatDenseMatrix(d[0], d[2]);
+                fA.multiply(b, R);
+                assertTrue(AB.equals(R, 1e-10));
+                fA.multiply(b, R);
+                assertTrue(AB.multiply(2).equals(R, 1e-10));
+
+                R = new FlatDenseMatrix(d[0], d[2]);
+                fA.multiply(b, R, ex);
+                assertTrue(AB.equals(R, 1e-10));
+            }
+        }
+
+        try
+        {
+            new FlatDenseMatrix(3, 4).multiply(new FlatDenseMatrix(5, 2), new FlatDenseMatrix(3, 2));
+            fail("Expected error about matrix dimensions");
+        }
+        catch(ArithmeticException ex)
+        {
+            //Good! We expected failure
+        }
+    }
+
+    @Test
+    public void testMultiplyTranspose_Matrix_Matrix()
+    {
+        System.out.println("multiplyTranspose");
+        Random rand = new Random(13);
+        for(int[] d : dims)
+        {
+            DenseMatrix A = Matrix.random(d[0], d[1], rand);
+            DenseMatrix Bt = Matrix.random(d[2], d[1], rand);
+            Matrix ABt = A.multiply(Bt.transpose());
+
+            FlatDenseMatrix fA = new FlatDenseMatrix(A);
+            for(Matrix bt : new Matrix[]{Bt, new FlatDenseMatrix(Bt)})
+            {
+                FlatDenseMatrix R = new FlatDenseMatrix(d[0], d[2]);
+                fA.multiplyTranspose(bt, R);
+                assertTrue(ABt.equals(R, 1e-10));
+
+                R = new FlatDenseMatrix(d[0], d[2]);
+                fA.multiplyTranspose(bt, R, ex);
+                assertTrue(ABt.equals(R, 1e-10));
+            }
+        }
+    }
+
+    @Test
+    public void testTransposeMultiply_Matrix_Matrix()
+    {
+        System.out.println("transposeMultiply");
+        Random rand = new Random(13);
+        for(int[] d : dims)
+        {
+            DenseMatrix At = Matrix.random(d[1], d[0], rand);
+            DenseMatrix B = Matrix.random(d[1], d[2], rand);
+            Matrix AtB = At.transpose().multiply(B);
+
+            FlatDenseMatrix fAt = new FlatDenseMatrix(At);
+            for(Matrix b : new Matrix[]{B, new FlatDenseMatrix(B)})
+            {
+                FlatDenseMatrix R = new FlatDenseMatrix(d[0], d[2]);
+                fAt.transposeMultiply(b, R);
+                assertTrue(AtB.equals(R, 1e-10));
+
+                R = new FlatDenseMatrix(d[0], d[2]);
+                fAt.transposeMultiply(b, R, ex);
+                assertTrue(AtB.equals(R, 1e-10));
+            }
+        }
+    }
+
+    @Test
+    public void testMultiply_Vec()
+    {
+        System.out.println("multiply vec");
+        Random rand = new Random(13);
+        DenseMatrix A = Matrix.random(20, 30, rand);
+        FlatDenseMatrix fA = new FlatDenseMatrix(A);
+        Vec b = DenseVector.random(30, rand);
+        assertTrue(A.multiply(b).equals(fA.multiply(b), 1e-10));
+
+        SparseVector sb = new SparseVector(30);
+        sb.set(3, 1.5);
+        sb.set(17, -2.0);
+        assertTrue(A.multiply(sb).equals(fA.multiply(sb), 1e-10));
+
+        Vec c = DenseVector.random(20, rand);
+        assertTrue(A.transposeMultiply(0.5, c).equals(fA.transposeMultiply(0.5, c), 1e-10));
+    }
+
+    @Test
+    public void testChangeSize()
+    {
+        System.out.println("changeSize");
+        FlatDenseMatrix A = new FlatDenseMatrix(new double[][]
+        {
+            {1, 2, 3},
+            {4, 5, 6},
+        });
+
+        A.changeSize(3, 2);
+        assertEquals(3, A.rows());
+        assertEquals(2, A.cols());
+        assertEquals(1, A.get(0, 0), 0.0);
+        assertEquals(5, A.get(1, 1), 0.0);
+        assertEquals(0, A.get(2, 1), 0.0);
+
+        A.changeSize(1, 4);
+        assertEquals(1, A.rows());
+        assertEquals(4, A.cols());
+        assertEquals(2, A.get(0, 1), 0.0);
+        assertEquals(0, A.get(0, 3), 0.0);
+    }
+
+    @Test
+    public void testTranspose()
+    {
+        System.out.println("transpose");
+        Random rand = new Random(13);
+        DenseMatrix A = Matrix.random(7, 11, rand);
+        FlatDenseMatrix fA = new FlatDenseMatrix(A);
+        assertTrue(A.transpose().equals(fA.transpose()));
+
+        FlatDenseMatrix sq = new FlatDenseMatrix(Matrix.random(6, 6, rand));
+        Matrix sqT = sq.transpose();
+        sq.mutableTranspose();
+        assertTrue(sqT.equals(sq));
+    }
+}
@@ -4,10 +4,16 @@
  */
 package jsat.linear.solvers;
 
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.linear.CSRMatrix;
+import jsat.linear.CholeskyDecomposition;
 import jsat.linear.Matrix;
 import jsat.linear.Vec;
 import jsat.linear.DenseMatrix;
 import jsat.linear.DenseVector;
+import jsat.utils.SystemInfo;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -240,4 +246,38 @@ public class ConjugateGradientTest
         
         assertTrue(A.multiply(x).equals(b, 1e-10));
     }
+
+    @Test
+    public void testSolveCGNR_Regularized_Sparse()
+    {
+        System.out.println("solveCGNR regularized sparse");
+        Random rand = new Random(7);
+        DenseMatrix A = new DenseMatrix(200, 50);
+        for(int i = 0; i < A.rows(); i++)
+            for(int j = 0; j < A.cols(); j++)
+                if(rand.nextInt(5) == 0)
+                    A.set(i, j, rand.nextGaussian());
+        Vec b = Vec.random(A.rows(), rand);
+        double lambda = 0.5;
+        
+        //(A' A + lambda I) x = A' b
+        Matrix H = A.transposeMultiply(A);
+        for(int i = 0; i < H.rows(); i++)
+            H.increment(i, i, lambda);
+        Vec expected = new CholeskyDecomposition(H.clone()).solve(A.transposeMultiply(1.0, b));
+        
+        CSRMatrix S = new CSRMatrix(A);
+        Vec x = ConjugateGradient.solveCGNR(1e-12, S, new DenseVector(A.cols()), b, lambda, null);
+        assertTrue(expected.equals(x, 1e-8));
+        
+        ExecutorService ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+        x = ConjugateGradient.solveCGNR(1e-12, S, new DenseVector(A.cols()), b, lambda, ex);
+        assertTrue(expected.equals(x, 1e-8));
+        
+        //CG also works directly on the sparse normal equations
+        CSRMatrix SH = new CSRMatrix(H);
+        x = ConjugateGradient.solve(1e-12, SH, new DenseVector(A.cols()), A.transposeMultiply(1.0, b), ex);
+        assertTrue(expected.equals(x, 1e-8));
+        ex.shutdown();
+    }
 }
@@ -0,0 +1,419 @@
+package jsat.linear.vectorcollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import jsat.linear.VecPaired;
+import jsat.linear.distancemetrics.ChebyshevDistance;
+import jsat.linear.distancemetrics.CosineDistance;
+import jsat.linear.distancemetrics.DistanceMetric;
+import jsat.linear.distancemetrics.EuclideanDistance;
+import jsat.linear.distancemetrics.ManhattanDistance;
+import jsat.linear.distancemetrics.MinkowskiDistance;
+import jsat.utils.SystemInfo;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class VectorCollectionTest
+{
+    static List<Vec> points;
+    static List<Vec> queries;
+    static ExecutorService ex;
+
+    public VectorCollectionTest()
+    {
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        Random rand = new Random(13);
+        points = randomVecs(2000, rand);
+        queries = randomVecs(300, rand);
+        ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores);
+    }
+
+    private static List<Vec> randomVecs(int n, Random rand)
+    {
+        List<Vec> vecs = new ArrayList<Vec>(n);
+        for(int i = 0; i < n; i++)
+            vecs.add(DenseVector.toDenseVec(rand.nextDouble(), rand.nextDouble(), rand.nextDouble()));
+        return vecs;
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        ex.shutdownNow();
+    }
+
+    private static List<VectorCollection<Vec>> exactCollections(List<Vec> source)
+    {
+        EuclideanDistance dm = new EuclideanDistance();
+        List<VectorCollection<Vec>> collections = new ArrayList<VectorCollection<Vec>>();
+        collections.add(new KDTree<Vec>(source, dm));
+        collections.add(new VPTree<Vec>(source, dm));
+        collections.add(new VPTreeMV<Vec>(source, dm));
+        collections.add(new RandomBallCover<Vec>(source, dm));
+        collections.add(new VectorArray<Vec>(dm, source));
+        collections.add(new EuclideanCollection<Vec>(source));
+        collections.add(new RTree.RTreeFactory<Vec>().getVectorCollection(source, dm));
+        collections.add(new FlatKDTree<Vec>(source, dm));
+        collections.add(new FlatVPTree<Vec>(source, dm));
+        collections.add(new PlainCollection(new VectorArray<Vec>(dm, source)));
+        return collections;
+    }
+
+    /**
+     * A collection that only implements {@link VectorCollection}, like one
+     * from outside of JSAT, so batch searches must match vectors by identity
+     */
+    private static class PlainCollection implements VectorCollection<Vec>
+    {
+        private final VectorCollection<Vec> base;
+
+        public PlainCollection(VectorCollection<Vec> base)
+        {
+            this.base = base;
+        }
+
+        @Override
+        public List<? extends VecPaired<Vec, Double>> search(Vec query, double range)
+        {
+            return base.search(query, range);
+        }
+
+        @Override
+        public List<? extends VecPaired<Vec, Double>> search(Vec query, int neighbors)
+        {
+            return base.search(query, neighbors);
+        }
+
+        @Override
+        public int size()
+        {
+            return base.size();
+        }
+
+        @Override
+        public PlainCollection clone()
+        {
+            return new PlainCollection(base.clone());
+        }
+    }
+
+    /**
+     * Brute force distances from the query to every point, sorted
+     */
+    private static double[] sortedDistances(Vec query, List<Vec> source)
+    {
+        EuclideanDistance dm = new EuclideanDistance();
+        double[] dists = new double[source.size()];
+        for(int i = 0; i < dists.length; i++)
+            dists[i] = dm.dist(query, source.get(i));
+        Arrays.sort(dists);
+        return dists;
+    }
+
+    @Test
+    public void testSearchKNN()
+    {
+        System.out.println("searchKNN");
+        int k = 7;
+        EuclideanDistance dm = new EuclideanDistance();
+        for(VectorCollection<Vec> collection : exactCollections(points))
+        {
+            NeighborResults serial = VectorCollectionUtils.searchKNN(collection, points, queries, k, null, null);
+            NeighborResults parallel = VectorCollectionUtils.searchKNN(collection, points, queries, k, new NeighborResults(), ex);
+            String name = collection.getClass().getSimpleName();
+            assertEquals(name, queries.size(), serial.size());
+            assertEquals(name, queries.size(), parallel.size());
+            for(int q = 0; q < queries.size(); q++)
+            {
+                double[] truth = sortedDistances(queries.get(q), points);
+                assertEquals(name, k, serial.getNeighborCount(q));
+                assertEquals(name, k, parallel.getNeighborCount(q));
+                for(int j = 0; j < k; j++)
+                {
+                    assertEquals(name, truth[j], serial.getDistance(q, j), 1e-10);
+                    assertEquals(name, serial.getNeighbor(q, j), parallel.getNeighbor(q, j));
+                    assertEquals(name, serial.getDistance(q, j), parallel.getDistance(q, j), 0.0);
+                    //the index must point at the vector with that distance
+                    assertEquals(name, serial.getDistance(q, j), dm.dist(queries.get(q), points.get(serial.getNeighbor(q, j))), 1e-10);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSearchRange()
+    {
+        System.out.println("searchRange");
+        double range = 0.15;
+        for(VectorCollection<Vec> collection : exactCollections(points))
+        {
+            NeighborResults serial = VectorCollectionUtils.searchRange(collection, points, queries, range, null, null);
+            NeighborResults parallel = VectorCollectionUtils.searchRange(collection, points, queries, range, null, ex);
+            String name = collection.getClass().getSimpleName();
+            assertEquals(name, queries.size(), serial.size());
+            for(int q = 0; q < queries.size(); q++)
+            {
+                double[] truth = sortedDistances(queries.get(q), points);
+                int inRange = 0;
+                while(inRange < truth.length && truth[inRange] <= range)
+                    inRange++;
+                assertEquals(name, inRange, serial.getNeighborCount(q));
+                assertEquals(name, inRange, parallel.getNeighborCount(q));
+                for(int j = 0; j < inRange; j++)
+                {
+                    assertEquals(name, truth[j], serial.getDistance(q, j), 1e-10);
+                    assertEquals(name, serial.getNeighbor(q, j), parallel.getNeighbor(q, j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFlatTrees()
+    {
+        System.out.println("flatTrees");
+        int k = 5;
+        DistanceMetric[] metrics = new DistanceMetric[]
+        {
+            new EuclideanDistance(), new ManhattanDistance(),
+            new ChebyshevDistance(), new MinkowskiDistance(3)
+        };
+        for(DistanceMetric dm : metrics)
+        {
+            List<VectorCollection<Vec>> collections = new ArrayList<VectorCollection<Vec>>();
+            //small leaves and a thread pool exercise deep trees and parallel building
+            collections.add(new FlatKDTree<Vec>(points, dm, 2, ex));
+            collections.add(new FlatVPTree<Vec>(points, dm, 2, new Random(3), ex));
+            collections.add(new FlatVPTree<Vec>(points, dm, 2, new Random(3), ex).clone());
+            for(VectorCollection<Vec> collection : collections)
+            {
+                String name = collection.getClass().getSimpleName() + " " + dm;
+                assertEquals(name, points.size(), collection.size());
+                for(Vec query : queries.subList(0, 50))
+                {
+                    double[] truth = new double[points.size()];
+                    for(int i = 0; i < truth.length; i++)
+                        truth[i] = dm.dist(query, points.get(i));
+                    Arrays.sort(truth);
+                    List<? extends VecPaired<Vec, Double>> found = collection.search(query, k);
+                    assertEquals(name, k, found.size());
+                    for(int j = 0; j < k; j++)
+                    {
+                        assertEquals(name, truth[j], found.get(j).getPair(), 1e-10);
+                        assertEquals(name, truth[j], dm.dist(query, found.get(j).getVector()), 1e-10);
+                    }
+                    int inRange = 0;
+                    while(truth[inRange] <= 0.2)
+                        inRange++;
+                    assertEquals(name, inRange, collection.search(query, 0.2).size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFlatKDTreeTooLarge()
+    {
+        System.out.println("flatKDTree too large");
+        //3 billion coordinates would wrap around to a negative int
+        List<Vec> many = Collections.nCopies(3000000, (Vec) new SparseVector(1000));
+        try
+        {
+            new FlatKDTree<Vec>(many, new EuclideanDistance());
+            fail("the size of the coordinate storage should have been rejected");
+        }
+        catch(IllegalArgumentException e)
+        {
+            //Good! We expected failure
+        }
+    }
+
+    @Test
+    public void testHNSW()
+    {
+        System.out.println("HNSW");
+        int k = 7;
+        DistanceMetric[] metrics = new DistanceMetric[]
+        {
+            new EuclideanDistance(), new ManhattanDistance(), new CosineDistance()
+        };
+        for(DistanceMetric dm : metrics)
+        {
+            List<VectorCollection<Vec>> collections = new ArrayList<VectorCollection<Vec>>();
+            collections.add(new HNSW<Vec>(points, dm, 8, 100, 50, new Random(3), null));
+            collections.add(new HNSW<Vec>(points, dm, 8, 100, 50, new Random(3), ex));
+            collections.add(new HNSW.HNSWFactory<Vec>().getVectorCollection(points, dm, ex).clone());
+            for(VectorCollection<Vec> collection : collections)
+            {
+                String name = "HNSW " + dm;
+                assertEquals(name, points.size(), collection.size());
+                NeighborResults knn = VectorCollectionUtils.searchKNN(collection, points, queries, k, null, ex);
+                NeighborResults inRange = VectorCollectionUtils.searchRange(collection, points, queries, 0.1, null, null);
+                int hits = 0, rangeHits = 0, rangeTotal = 0;
+                for(int q = 0; q < queries.size(); q++)
+                {
+                    Vec query = queries.get(q);
+                    double[] truth = new double[points.size()];
+                    for(int i = 0; i < truth.length; i++)
+                        truth[i] = dm.dist(query, points.get(i));
+                    Arrays.sort(truth);
+                    assertEquals(name, k, knn.getNeighborCount(q));
+                    for(int j = 0; j < k; j++)
+                    {
+                        //approximate, but the distances must be real and sorted
+                        double d = knn.getDistance(q, j);
+                        assertEquals(name, d, dm.dist(query, points.get(knn.getNeighbor(q, j))), 1e-10);
+                        if(j > 0)
+                            assertTrue(name, knn.getDistance(q, j-1) <= d);
+                        if(d <= truth[k-1]+1e-10)
+                            hits++;
+                    }
+                    for(int j = 0; j < truth.length && truth[j] <= 0.1; j++)
+                        rangeTotal++;
+                    for(int j = 0; j < inRange.getNeighborCount(q); j++)
+                        assertTrue(name, inRange.getDistance(q, j) <= 0.1+1e-10);
+                    rangeHits += inRange.getNeighborCount(q);
+                }
+                assertTrue(name + " recall " + hits, hits >= 0.95*k*queries.size());
+                assertTrue(name + " range recall " + rangeHits, rangeHits >= 0.95*rangeTotal);
+            }
+        }
+    }
+
+    @Test
+    public void testMutable()
+    {
+        System.out.println("mutable");
+        EuclideanDistance dm = new EuclideanDistance();
+        int k = 7;
+        double range = 0.15;
+        List<Vec> initial = points.subList(0, 500);
+
+        List<MutableVectorCollection<Vec>> collections = new ArrayList<MutableVectorCollection<Vec>>();
+        collections.add(new VPTree<Vec>(initial, dm));
+        collections.add(new VPTree<Vec>(new ArrayList<Vec>(), dm));
+        VPTreeMV<Vec> background = new VPTreeMV<Vec>(initial, dm);
+        background.setRebalancePool(ex);
+        collections.add(background);
+        RTree<Vec> rTree = new RTree<Vec>(3, dm, 10);
+        for(Vec v : initial)
+            rTree.add(v);
+        collections.add(rTree);
+
+        for(MutableVectorCollection<Vec> collection : collections)
+        {
+            String name = collection.getClass().getSimpleName();
+            for(int i = collection.size(); i < points.size(); i++)
+                assertEquals(name, i, collection.insert(points.get(i)));
+            boolean[] live = new boolean[points.size()];
+            Arrays.fill(live, true);
+            List<Vec> livePoints = new ArrayList<Vec>();
+            for(int i = 0; i < points.size(); i++)
+                if(i % 3 == 1)
+                {
+                    assertTrue(name, collection.remove(i));
+                    live[i] = false;
+                }
+                else
+                    livePoints.add(points.get(i));
+            assertFalse(name, collection.remove(1));
+            assertEquals(name, livePoints.size(), collection.size());
+
+            for(MutableVectorCollection<Vec> vc : Arrays.asList(collection, collection.clone()))
+            {
+                NeighborResults knn = vc.searchKNN(queries, k, null, null);
+                NeighborResults inRange = vc.searchRange(queries, range, null, null);
+                for(int q = 0; q < queries.size(); q++)
+                {
+                    double[] truth = sortedDistances(queries.get(q), livePoints);
+                    assertEquals(name, k, knn.getNeighborCount(q));
+                    assertEquals(name, k, vc.search(queries.get(q), k).size());
+                    for(int j = 0; j < k; j++)
+                    {
+                        int index = knn.getNeighbor(q, j);
+                        assertTrue(name, live[index]);
+                        assertEquals(name, truth[j], knn.getDistance(q, j), 1e-10);
+                        assertEquals(name, truth[j], dm.dist(queries.get(q), points.get(index)), 1e-10);
+                    }
+                    int count = 0;
+                    while(count < truth.length && truth[count] <= range)
+                        count++;
+                    assertEquals(name, count, inRange.getNeighborCount(q));
+                    for(int j = 0; j < count; j++)
+                        assertTrue(name, live[inRange.getNeighbor(q, j)]);
+                }
+            }
+
+            try
+            {
+                collection.remove(points.size());
+                fail("No vector has that index");
+            }
+            catch(IndexOutOfBoundsException e)
+            {
+                //Good! We expected failure
+            }
+        }
+    }
+
+    @Test
+    public void testResultsReuse()
+    {
+        System.out.println("resultsReuse");
+        List<Vec> small = points.subList(0, 5);
+        KDTree<Vec> tree = new KDTree<Vec>(small, new EuclideanDistance());
+        NeighborResults results = new NeighborResults(1);
+
+        //asking for more neighbors than exist returns them all
+        assertSame(results, tree.searchKNN(queries, 10, results, ex));
+        assertEquals(queries.size(), results.size());
+        for(int q = 0; q < queries.size(); q++)
+            assertEquals(5, results.getNeighborCount(q));
+        assertEquals(queries.size()*5, results.getOffsets()[results.size()]);
+
+        //a smaller batch overwrites the old one
+        assertSame(results, tree.searchKNN(queries.subList(0, 3), 2, results, null));
+        assertEquals(3, results.size());
+        assertEquals(6, results.getOffsets()[3]);
+        for(int q = 0; q < 3; q++)
+            assertTrue(results.getDistance(q, 0) <= results.getDistance(q, 1));
+
+        try
+        {
+            results.getNeighbor(3, 0);
+            fail("Only 3 queries are stored");
+        }
+        catch(IndexOutOfBoundsException e)
+        {
+            //Good! We expected failure
+        }
+
+        try
+        {
+            tree.searchKNN(queries, 0, results, null);
+            fail("Must search for at least one neighbor");
+        }
+        catch(IllegalArgumentException e)
+        {
+            //Good! We expected failure
+        }
+    }
+}
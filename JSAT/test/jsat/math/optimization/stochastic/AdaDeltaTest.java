@@ -0,0 +1,66 @@
+package jsat.math.optimization.stochastic;
+
+import java.util.Random;
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class AdaDeltaTest
+{
+    
+    public AdaDeltaTest()
+    {
+    }
+
+    /**
+     * Test of update method, of class AdaDelta.
+     */
+    @Test
+    public void testUpdate()
+    {
+        System.out.println("update");
+        Random rand = new Random(42);
+        final int d = 50;
+        final double rho = 0.95;
+        final double eps = 0.0001;
+        final double eta = 1.0;
+        AdaDelta instance = new AdaDelta(rho);
+        instance.setup(d);
+        
+        Vec x = new DenseVector(d);
+        //the dense form of the algorithm, decaying every feature every step
+        double[] expectedX = new double[d];
+        double[] gSqrd = new double[d];
+        double[] deltaXSqrd = new double[d];
+        
+        for(int iter = 0; iter < 500; iter++)
+        {
+            Vec grad = new SparseVector(d);
+            for(int j = 0; j < 3; j++)
+                grad.set(rand.nextInt(d), rand.nextGaussian());
+            
+            for(int i = 0; i < d; i++)
+            {
+                final double g_i = grad.get(i);
+                gSqrd[i] = rho*gSqrd[i] + (1-rho)*g_i*g_i;
+                final double deltaX = -Math.sqrt((deltaXSqrd[i]+eps)/(gSqrd[i]+eps))*g_i;
+                expectedX[i] += eta*deltaX;
+                deltaXSqrd[i] = rho*deltaXSqrd[i] + (1-rho)*deltaX*deltaX;
+            }
+            
+            instance.update(x, grad, eta);
+            if(iter == 250)//a copy should pick up from the same state
+                instance = instance.clone();
+        }
+        
+        for(int i = 0; i < d; i++)
+            assertEquals(expectedX[i], x.get(i), 1e-10);
+    }
+    
+}
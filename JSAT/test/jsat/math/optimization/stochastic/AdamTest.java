@@ -0,0 +1,101 @@
+package jsat.math.optimization.stochastic;
+
+import java.util.Random;
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static java.lang.Math.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class AdamTest
+{
+    
+    public AdamTest()
+    {
+    }
+
+    /**
+     * Test of update method, of class Adam.
+     */
+    @Test
+    public void testUpdate()
+    {
+        System.out.println("update");
+        //a lambda near 1 keeps the first moment around, so every feature moves
+        final double alpha = 0.01, beta_1 = 0.1, beta_2 = 0.001, eps = 1e-8, lambda = 0.99;
+        for(boolean sparse : new boolean[]{false, true})
+        {
+            Random rand = new Random(42);
+            final int d = 50;
+            final double eta = 1.0;
+            Adam instance = new Adam(alpha, beta_1, beta_2, eps, lambda);
+            instance.setSparseUpdates(sparse);
+            instance.setup(d);
+
+            Vec x = new DenseVector(d);
+            //the dense form of the algorithm, decaying every feature every step
+            double[] expectedX = new double[d];
+            double[] m = new double[d];
+            double[] v = new double[d];
+
+            for(int t = 1; t <= 500; t++)
+            {
+                Vec grad = new SparseVector(d);
+                for(int j = 0; j < 3; j++)
+                    grad.set(rand.nextInt(d), rand.nextGaussian());
+
+                final double beta_1t = 1 - (1-beta_1)*pow(lambda, t-1);
+                final double cnst = eta*alpha*sqrt(1-pow((1-beta_2), t))/(1-pow((1-beta_1), t));
+                for(int i = 0; i < d; i++)
+                {
+                    final double g_i = grad.get(i);
+                    m[i] = (1-beta_1t)*m[i] + beta_1t*g_i;
+                    v[i] = (1-beta_2)*v[i] + beta_2*g_i*g_i;
+                    if(!sparse || g_i != 0)
+                        expectedX[i] -= cnst*m[i]/(sqrt(v[i])+eps);
+                }
+
+                instance.update(x, grad, eta);
+                if(t == 250)//a copy should pick up from the same state
+                    instance = instance.clone();
+            }
+
+            for(int i = 0; i < d; i++)
+                assertEquals(expectedX[i], x.get(i), 1e-8);
+        }
+    }
+    
+    @Test
+    public void testUpdate_SparseConverges()
+    {
+        System.out.println("update sparse converges");
+        Random rand = new Random(42);
+        final int d = 100;
+        Vec target = DenseVector.random(d, rand);
+        Adam instance = new Adam(0.01, Adam.DEFAULT_BETA_1, Adam.DEFAULT_BETA_2, Adam.DEFAULT_EPS, Adam.DEFAULT_LAMBDA);
+        instance.setSparseUpdates(true);
+        instance.setup(d);
+        
+        Vec x = new DenseVector(d);
+        for(int iter = 0; iter < 20000; iter++)
+        {
+            //gradient of 0.5 ||x-target||^2 on a few random features
+            Vec grad = new SparseVector(d);
+            for(int j = 0; j < 5; j++)
+            {
+                int i = rand.nextInt(d);
+                grad.set(i, x.get(i)-target.get(i));
+            }
+            instance.update(x, grad, 1.0);
+        }
+        
+        for(int i = 0; i < d; i++)
+            assertEquals(target.get(i), x.get(i), 0.05);
+    }
+    
+}
@@ -0,0 +1,63 @@
+package jsat.math.optimization.stochastic;
+
+import java.util.Random;
+import jsat.linear.DenseVector;
+import jsat.linear.SparseVector;
+import jsat.linear.Vec;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class RMSPropTest
+{
+    
+    public RMSPropTest()
+    {
+    }
+
+    /**
+     * Test of update method, of class RMSProp.
+     */
+    @Test
+    public void testUpdate()
+    {
+        System.out.println("update");
+        Random rand = new Random(42);
+        final int d = 50;
+        final double rho = 0.9;
+        final double eta = 0.1;
+        RMSProp instance = new RMSProp(rho);
+        instance.setup(d);
+        
+        Vec x = new DenseVector(d);
+        //the dense form of the algorithm, decaying every feature every step
+        double[] expectedX = new double[d];
+        double[] daigG = new double[d];
+        
+        for(int iter = 0; iter < 500; iter++)
+        {
+            Vec grad = new SparseVector(d);
+            for(int j = 0; j < 3; j++)
+                grad.set(rand.nextInt(d), rand.nextGaussian());
+            
+            for(int i = 0; i < d; i++)
+            {
+                final double g_i = grad.get(i);
+                daigG[i] = rho*daigG[i] + (1-rho)*g_i*g_i;
+                if(g_i != 0)
+                    expectedX[i] -= eta*g_i/Math.max(Math.sqrt(daigG[i]), Math.abs(g_i));
+            }
+            
+            instance.update(x, grad, eta);
+            if(iter == 250)//a copy should pick up from the same state
+                instance = instance.clone();
+        }
+        
+        for(int i = 0; i < d; i++)
+            assertEquals(expectedX[i], x.get(i), 1e-10);
+    }
+    
+}
@@ -0,0 +1,90 @@
+package jsat.utils;
+
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class IndexedMinHeapTest
+{
+    
+    public IndexedMinHeapTest()
+    {
+    }
+
+    @Test
+    public void testSmall()
+    {
+        System.out.println("small");
+        IndexedMinHeap heap = new IndexedMinHeap(10);
+        assertTrue(heap.isEmpty());
+        
+        heap.add(3, 5.0);
+        heap.add(1, 2.0);
+        heap.add(7, 9.0);
+        assertEquals(3, heap.size());
+        assertEquals(1, heap.peek());
+        assertTrue(heap.contains(3));
+        assertFalse(heap.contains(4));
+        assertEquals(9.0, heap.getKey(7), 0.0);
+        
+        heap.decreaseKey(7, 1.0);
+        assertEquals(7, heap.peek());
+        heap.add(4, 1.0);//ties go to the smaller id
+        assertEquals(4, heap.poll());
+        assertEquals(7, heap.poll());
+        assertFalse(heap.contains(7));
+        assertEquals(1, heap.poll());
+        assertEquals(3, heap.poll());
+        assertTrue(heap.isEmpty());
+        
+        heap.add(7, 3.0);//can add back after removal
+        assertEquals(7, heap.peek());
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(7));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testIncreaseKey()
+    {
+        System.out.println("increaseKey");
+        IndexedMinHeap heap = new IndexedMinHeap(10);
+        heap.add(2, 1.0);
+        heap.decreaseKey(2, 2.0);
+    }
+
+    @Test
+    public void testRandom()
+    {
+        System.out.println("random");
+        Random rand = new Random(2);
+        int n = 500;
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        double[] keys = new double[n];
+        for(int i = 0; i < n; i++)
+        {
+            keys[i] = rand.nextInt(100);
+            heap.add(i, keys[i]);
+        }
+        for(int i = 0; i < 2000; i++)
+        {
+            int id = rand.nextInt(n);
+            keys[id] -= rand.nextInt(20);
+            heap.decreaseKey(id, keys[id]);
+        }
+        
+        double prevKey = Double.NEGATIVE_INFINITY;
+        int prevId = -1;
+        while(!heap.isEmpty())
+        {
+            int id = heap.poll();
+            assertTrue(prevKey < keys[id] || (prevKey == keys[id] && prevId < id));
+            prevKey = keys[id];
+            prevId = id;
+        }
+    }
+}
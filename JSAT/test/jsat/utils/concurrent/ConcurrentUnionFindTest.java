@@ -0,0 +1,79 @@
+package jsat.utils.concurrent;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jsat.utils.SystemInfo;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Edward Raff
+ */
+public class ConcurrentUnionFindTest
+{
+    
+    public ConcurrentUnionFindTest()
+    {
+    }
+
+    @Test
+    public void testUnion()
+    {
+        System.out.println("union");
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(10);
+        assertEquals(10, uf.size());
+        assertTrue(uf.union(7, 3));
+        assertTrue(uf.union(9, 7));
+        assertFalse(uf.union(3, 9));
+        assertTrue(uf.union(5, 6));
+        for(int i : new int[]{3, 7, 9})
+            assertEquals(3, uf.find(i));
+        assertEquals(5, uf.find(6));
+        assertEquals(4, uf.find(4));
+        assertTrue(uf.union(6, 9));
+        for(int i : new int[]{3, 5, 6, 7, 9})
+            assertEquals(3, uf.find(i));
+    }
+
+    @Test
+    public void testUnionConcurrent() throws InterruptedException
+    {
+        System.out.println("union concurrent");
+        final int n = 100000;
+        final int groups = 7;
+        final ConcurrentUnionFind uf = new ConcurrentUnionFind(n);
+        ExecutorService ex = Executors.newFixedThreadPool(SystemInfo.LogicalCores+1);
+        final int P = SystemInfo.LogicalCores+1;
+        final CountDownLatch latch = new CountDownLatch(P);
+        for(int id = 0; id < P; id++)
+        {
+            final Random rand = new Random(id);
+            ex.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    //joins every value to others in the same group, in a random order
+                    for(int i = 0; i < n; i++)
+                    {
+                        int a = rand.nextInt(n);
+                        int b = rand.nextInt(n/groups)*groups + a%groups;
+                        if(b < n)
+                            uf.union(a, b);
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        ex.shutdownNow();
+        //make sure every value is joined, then check the groups never mixed
+        for(int i = groups; i < n; i++)
+            uf.union(i, i-groups);
+        for(int i = 0; i < n; i++)
+            assertEquals(i%groups, uf.find(i));
+    }
+}